@@ -0,0 +1,348 @@
+package com.adeprogramming.javagis.analytics.contour;
+
+import com.adeprogramming.javagis.raster.GridSpec;
+import org.locationtech.jts.algorithm.Area;
+import org.locationtech.jts.algorithm.Orientation;
+import org.locationtech.jts.algorithm.PointLocation;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.index.strtree.STRtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Traces the areas of a grid at or above given levels as polygons, by marching squares over the
+ * cell centres. The grid is treated as surrounded by empty cells, and empty (NaN) cells are below
+ * every level, so all contours close; where a contour passes an empty cell it runs halfway
+ * between the cell centres, i.e. along the raster cell edge.
+ * <p>
+ * Every contour point lies on a grid edge between two cell centres and is identified by that
+ * edge. Segments are oriented with the area above the level on their left, so each point starts
+ * exactly one segment and ends exactly one, and rings are formed by following the segments from
+ * edge to edge. The grid is split into strips of rows traced in parallel; strips share the edges
+ * on their boundary rows, which stitches their segments together without comparing coordinates.
+ * Counter-clockwise rings are shells, clockwise rings holes, and each hole belongs to the
+ * smallest shell containing it. Saddle cells are resolved by the mean of their corners.
+ */
+public final class ContourBuilder {
+
+    private static final int ROWS_PER_STRIP = 64;
+
+    private static final int TOP = 0;
+    private static final int RIGHT = 1;
+    private static final int BOTTOM = 2;
+    private static final int LEFT = 3;
+
+    /**
+     * The segments of each marching squares case as (from, to) edge pairs, indexed by the case
+     * bits top-left 8, top-right 4, bottom-right 2, bottom-left 1. The saddle cases 5 and 10
+     * list the connected variant first and the separated variant second.
+     */
+    private static final int[][] SEGMENTS = {
+            {},
+            {BOTTOM, LEFT},
+            {RIGHT, BOTTOM},
+            {RIGHT, LEFT},
+            {TOP, RIGHT},
+            {TOP, LEFT, BOTTOM, RIGHT, BOTTOM, LEFT, TOP, RIGHT},
+            {TOP, BOTTOM},
+            {TOP, LEFT},
+            {LEFT, TOP},
+            {BOTTOM, TOP},
+            {RIGHT, TOP, LEFT, BOTTOM, LEFT, TOP, RIGHT, BOTTOM},
+            {RIGHT, TOP},
+            {LEFT, RIGHT},
+            {BOTTOM, RIGHT},
+            {LEFT, BOTTOM},
+            {}
+    };
+
+    private final GridSpec grid;
+    private final double[] values;
+    private final GeometryFactory geometryFactory;
+
+    /**
+     * @param grid the grid
+     * @param values the cell values row by row from the north, NaN where empty
+     * @param geometryFactory the factory for the resulting polygons, in the coordinate system of the grid
+     */
+    public ContourBuilder(GridSpec grid, double[] values, GeometryFactory geometryFactory) {
+        if (values.length < grid.cellCount()) {
+            throw new IllegalArgumentException("The values do not cover the grid");
+        }
+        this.grid = grid;
+        this.values = values;
+        this.geometryFactory = geometryFactory;
+    }
+
+    /**
+     * Trace the area at or above each level.
+     *
+     * @param levels the levels
+     * @param pool the pool to trace the strips in
+     * @return one (possibly empty) multipolygon per level, in the order of the levels
+     */
+    public List<MultiPolygon> contour(double[] levels, ForkJoinPool pool) {
+        List<MultiPolygon> result = new ArrayList<>(levels.length);
+        for (double level : levels) {
+            Segments segments = pool.invoke(new StripTask(level, -1, grid.rows()));
+            result.add(assemble(segments));
+        }
+        return result;
+    }
+
+    private double value(int row, int column) {
+        if (row < 0 || column < 0 || row >= grid.rows() || column >= grid.columns()) {
+            return Double.NaN;
+        }
+        return values[row * grid.columns() + column];
+    }
+
+    /**
+     * Identify an edge between two cell centres. Horizontal edges run from (row, column) to
+     * (row, column + 1), vertical ones from (row, column) to (row + 1, column); rows and columns
+     * start at -1 for the empty surround.
+     */
+    private long edgeKey(int row, int column, boolean vertical) {
+        return (((long) (row + 1) * (grid.columns() + 2)) + (column + 1)) * 2 + (vertical ? 1 : 0);
+    }
+
+    private long cellEdge(int row, int column, int side) {
+        return switch (side) {
+            case TOP -> edgeKey(row, column, false);
+            case BOTTOM -> edgeKey(row + 1, column, false);
+            case LEFT -> edgeKey(row, column, true);
+            default -> edgeKey(row, column + 1, true);
+        };
+    }
+
+    /**
+     * Locate the contour point of a level on a cell edge, by linear interpolation between the
+     * two cell centres, or halfway if one of them is empty.
+     */
+    private void locate(int row, int column, int side, double level, double[] xy, int offset) {
+        int r = side == BOTTOM ? row + 1 : row;
+        int c = side == RIGHT ? column + 1 : column;
+        boolean vertical = side == LEFT || side == RIGHT;
+        int r2 = vertical ? r + 1 : r;
+        int c2 = vertical ? c : c + 1;
+
+        double a = value(r, c);
+        double b = value(r2, c2);
+        double t = Double.isNaN(a) || Double.isNaN(b) ? 0.5 : (level - a) / (b - a);
+        double x = grid.x(c);
+        double y = grid.y(r);
+        xy[offset] = x + t * (grid.x(c2) - x);
+        xy[offset + 1] = y + t * (grid.y(r2) - y);
+    }
+
+    private void trace(double level, int fromRow, int toRow, Segments out) {
+        for (int row = fromRow; row < toRow; row++) {
+            for (int column = -1; column < grid.columns(); column++) {
+                double tl = value(row, column);
+                double tr = value(row, column + 1);
+                double br = value(row + 1, column + 1);
+                double bl = value(row + 1, column);
+                int index = (tl >= level ? 8 : 0) | (tr >= level ? 4 : 0) | (br >= level ? 2 : 0) | (bl >= level ? 1 : 0);
+                int[] segments = SEGMENTS[index];
+                int from = 0;
+                int to = segments.length;
+                if (segments.length == 8) {
+                    boolean connected = (tl + tr + br + bl) / 4 >= level;
+                    from = connected ? 0 : 4;
+                    to = from + 4;
+                }
+                for (int i = from; i < to; i += 2) {
+                    int slot = out.add(cellEdge(row, column, segments[i]), cellEdge(row, column, segments[i + 1]));
+                    locate(row, column, segments[i], level, out.xy, slot * 2);
+                }
+            }
+        }
+    }
+
+    private MultiPolygon assemble(Segments segments) {
+        EdgeIndex starts = new EdgeIndex(segments.size);
+        for (int i = 0; i < segments.size; i++) {
+            starts.put(segments.from[i], i);
+        }
+
+        boolean[] used = new boolean[segments.size];
+        List<LinearRing> shells = new ArrayList<>();
+        List<LinearRing> holes = new ArrayList<>();
+        List<Coordinate> ring = new ArrayList<>();
+        for (int i = 0; i < segments.size; i++) {
+            if (used[i]) {
+                continue;
+            }
+            ring.clear();
+            int j = i;
+            do {
+                used[j] = true;
+                ring.add(new Coordinate(segments.xy[2 * j], segments.xy[2 * j + 1]));
+                j = starts.get(segments.to[j]);
+                if (j < 0) {
+                    throw new IllegalStateException("Contour segments do not close");
+                }
+            } while (j != i);
+            if (ring.size() < 3) {
+                continue;
+            }
+            ring.add(ring.get(0).copy());
+            Coordinate[] coordinates = ring.toArray(new Coordinate[0]);
+            LinearRing linearRing = geometryFactory.createLinearRing(coordinates);
+            (Orientation.isCCW(coordinates) ? shells : holes).add(linearRing);
+        }
+        return geometryFactory.createMultiPolygon(buildPolygons(shells, holes));
+    }
+
+    private Polygon[] buildPolygons(List<LinearRing> shells, List<LinearRing> holes) {
+        double[] areas = new double[shells.size()];
+        List<List<LinearRing>> shellHoles = new ArrayList<>(shells.size());
+        STRtree index = new STRtree();
+        for (int i = 0; i < shells.size(); i++) {
+            LinearRing shell = shells.get(i);
+            areas[i] = Area.ofRing(shell.getCoordinateSequence());
+            shellHoles.add(new ArrayList<>());
+            index.insert(shell.getEnvelopeInternal(), i);
+        }
+
+        for (LinearRing hole : holes) {
+            Coordinate probe = hole.getCoordinateN(0);
+            int owner = -1;
+            for (Object candidate : index.query(hole.getEnvelopeInternal())) {
+                int i = (Integer) candidate;
+                if ((owner < 0 || areas[i] < areas[owner])
+                        && shells.get(i).getEnvelopeInternal().contains(hole.getEnvelopeInternal())
+                        && PointLocation.isInRing(probe, shells.get(i).getCoordinates())) {
+                    owner = i;
+                }
+            }
+            if (owner >= 0) {
+                shellHoles.get(owner).add(hole);
+            }
+        }
+
+        Polygon[] polygons = new Polygon[shells.size()];
+        for (int i = 0; i < polygons.length; i++) {
+            polygons[i] = geometryFactory.createPolygon(shells.get(i), shellHoles.get(i).toArray(new LinearRing[0]));
+        }
+        return polygons;
+    }
+
+    /**
+     * Traces a strip of cell rows, splitting it in two while it is larger than {@link #ROWS_PER_STRIP}.
+     */
+    private final class StripTask extends RecursiveTask<Segments> {
+
+        private final double level;
+        private final int fromRow;
+        private final int toRow;
+
+        StripTask(double level, int fromRow, int toRow) {
+            this.level = level;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected Segments compute() {
+            if (toRow - fromRow <= ROWS_PER_STRIP) {
+                Segments segments = new Segments();
+                trace(level, fromRow, toRow, segments);
+                return segments;
+            }
+            int middle = (fromRow + toRow) >>> 1;
+            StripTask north = new StripTask(level, fromRow, middle);
+            north.fork();
+            Segments south = new StripTask(level, middle, toRow).compute();
+            return north.join().append(south);
+        }
+    }
+
+    /**
+     * Growable buffer of oriented segments: the edges they start and end on, and the location
+     * of their start point.
+     */
+    private static final class Segments {
+
+        long[] from = new long[256];
+        long[] to = new long[256];
+        double[] xy = new double[512];
+        int size;
+
+        int add(long fromEdge, long toEdge) {
+            if (size == from.length) {
+                from = Arrays.copyOf(from, size * 2);
+                to = Arrays.copyOf(to, size * 2);
+                xy = Arrays.copyOf(xy, size * 4);
+            }
+            from[size] = fromEdge;
+            to[size] = toEdge;
+            return size++;
+        }
+
+        Segments append(Segments other) {
+            int total = size + other.size;
+            if (total > from.length) {
+                from = Arrays.copyOf(from, total);
+                to = Arrays.copyOf(to, total);
+                xy = Arrays.copyOf(xy, total * 2);
+            }
+            System.arraycopy(other.from, 0, from, size, other.size);
+            System.arraycopy(other.to, 0, to, size, other.size);
+            System.arraycopy(other.xy, 0, xy, size * 2, other.size * 2);
+            size = total;
+            return this;
+        }
+    }
+
+    /**
+     * Open-addressing map from edge keys to the segment starting on them.
+     */
+    private static final class EdgeIndex {
+
+        private final long[] keys;
+        private final int[] slots;
+        private final int mask;
+
+        EdgeIndex(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1;
+            keys = new long[capacity];
+            slots = new int[capacity];
+            mask = capacity - 1;
+            Arrays.fill(slots, -1);
+        }
+
+        void put(long key, int slot) {
+            int i = hash(key);
+            while (slots[i] >= 0) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            slots[i] = slot;
+        }
+
+        int get(long key) {
+            int i = hash(key);
+            while (slots[i] >= 0) {
+                if (keys[i] == key) {
+                    return slots[i];
+                }
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        private int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.adeprogramming.javagis.analytics.geodesy;
+
+import org.geotools.referencing.GeodeticCalculator;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Polygon;
+
+/**
+ * Measures WGS 84 geometries on the ellipsoid: areas in square metres and lengths in metres,
+ * as PostGIS measures geographies.
+ * <p>
+ * Areas are exact up to the shape of the edges. The ellipsoid is mapped onto the sphere of the
+ * same surface area by its authalic latitude, which preserves areas, and each polygon is
+ * projected from that sphere with a Lambert azimuthal equal-area projection centred on it, in
+ * which the planar area of its rings equals their area on the ellipsoid. Near the centre great
+ * circles are almost straight in that projection, and edges longer than 0.002 radians (about
+ * 13 km) are split along the great circle first, so for field-sized polygons the result agrees
+ * with geodesic edges to well below a square metre. Polygons must be smaller than a hemisphere.
+ * <p>
+ * Lengths are the sums of the geodesic distances between consecutive vertices. Not thread-safe.
+ */
+public final class GeodesicMeasure {
+
+    /** Semi-major axis of WGS 84. */
+    private static final double A = 6_378_137.0;
+
+    /** Flattening of WGS 84. */
+    private static final double F = 1 / 298.257223563;
+
+    private static final double E2 = F * (2 - F);
+    private static final double E = Math.sqrt(E2);
+
+    /** q at the pole, for the authalic latitude. */
+    private static final double QP = q(1);
+
+    /** Radius of the sphere with the surface area of the ellipsoid. */
+    public static final double AUTHALIC_RADIUS = A * Math.sqrt(QP / 2);
+
+    private static final double MAX_EDGE_RADIANS = 0.002;
+    private static final double MIN_EDGE_COSINE = Math.cos(MAX_EDGE_RADIANS);
+
+    private final GeodeticCalculator calculator = new GeodeticCalculator();
+
+    /**
+     * Get the area of the polygons of a geometry on the ellipsoid.
+     *
+     * @param geometry the geometry (WGS 84, longitude first)
+     * @return the area in square metres, 0 if the geometry has no polygons
+     */
+    public double area(Geometry geometry) {
+        double area = 0;
+        for (int i = 0; i < geometry.getNumGeometries(); i++) {
+            Geometry part = geometry.getGeometryN(i);
+            if (part instanceof Polygon polygon && !polygon.isEmpty()) {
+                area += area(polygon);
+            } else if (part != geometry && part.getNumGeometries() > 0) {
+                area += area(part);
+            }
+        }
+        return area;
+    }
+
+    /**
+     * Get the perimeter of the polygons of a geometry on the ellipsoid, including their holes.
+     *
+     * @param geometry the geometry (WGS 84, longitude first)
+     * @return the perimeter in metres, 0 if the geometry has no polygons
+     */
+    public double perimeter(Geometry geometry) {
+        double perimeter = 0;
+        for (int i = 0; i < geometry.getNumGeometries(); i++) {
+            Geometry part = geometry.getGeometryN(i);
+            if (part instanceof Polygon polygon && !polygon.isEmpty()) {
+                perimeter += length(polygon.getExteriorRing().getCoordinateSequence());
+                for (int h = 0; h < polygon.getNumInteriorRing(); h++) {
+                    perimeter += length(polygon.getInteriorRingN(h).getCoordinateSequence());
+                }
+            } else if (part != geometry && part.getNumGeometries() > 0) {
+                perimeter += perimeter(part);
+            }
+        }
+        return perimeter;
+    }
+
+    /**
+     * Get the length of the lines of a geometry on the ellipsoid.
+     *
+     * @param geometry the geometry (WGS 84, longitude first)
+     * @return the length in metres, 0 if the geometry has no lines
+     */
+    public double length(Geometry geometry) {
+        double length = 0;
+        for (int i = 0; i < geometry.getNumGeometries(); i++) {
+            Geometry part = geometry.getGeometryN(i);
+            if (part instanceof LineString line) {
+                length += length(line.getCoordinateSequence());
+            } else if (part != geometry && part.getNumGeometries() > 0) {
+                length += length(part);
+            }
+        }
+        return length;
+    }
+
+    private double area(Polygon polygon) {
+        // The projection is centred on the middle of the envelope, unwrapped across the antimeridian
+        CoordinateSequence shell = polygon.getExteriorRing().getCoordinateSequence();
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        double reference = shell.getX(0);
+        for (int i = 0; i < shell.size(); i++) {
+            double x = reference + normalize(shell.getX(i) - reference);
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, shell.getY(i));
+            maxY = Math.max(maxY, shell.getY(i));
+        }
+        Projection projection = new Projection((minX + maxX) / 2, (minY + maxY) / 2);
+
+        double area = Math.abs(projection.ringArea(shell));
+        for (int h = 0; h < polygon.getNumInteriorRing(); h++) {
+            area -= Math.abs(projection.ringArea(polygon.getInteriorRingN(h).getCoordinateSequence()));
+        }
+        return Math.max(area, 0) * AUTHALIC_RADIUS * AUTHALIC_RADIUS;
+    }
+
+    private double length(CoordinateSequence sequence) {
+        double length = 0;
+        for (int i = 1; i < sequence.size(); i++) {
+            double x0 = sequence.getX(i - 1);
+            double y0 = sequence.getY(i - 1);
+            double x1 = sequence.getX(i);
+            double y1 = sequence.getY(i);
+            if (x0 == x1 && y0 == y1) {
+                continue;
+            }
+            calculator.setStartingGeographicPoint(normalize(x0), clampLatitude(y0));
+            calculator.setDestinationGeographicPoint(normalize(x1), clampLatitude(y1));
+            length += calculator.getOrthodromicDistance();
+        }
+        return length;
+    }
+
+    /**
+     * Get the authalic latitude, the latitude on the authalic sphere that has the same area
+     * towards the equator as the geodetic latitude on the ellipsoid.
+     *
+     * @param latitude the geodetic latitude in degrees
+     * @return the authalic latitude in radians
+     */
+    public static double authalicLatitude(double latitude) {
+        double sine = Math.sin(Math.toRadians(clampLatitude(latitude)));
+        return Math.asin(Math.max(-1, Math.min(1, q(sine) / QP)));
+    }
+
+    private static double q(double sine) {
+        double eSine = E * sine;
+        return (1 - E2) * (sine / (1 - eSine * eSine) - Math.log((1 - eSine) / (1 + eSine)) / (2 * E));
+    }
+
+    private static double normalize(double longitude) {
+        return longitude - 360 * Math.floor((longitude + 180) / 360);
+    }
+
+    private static double clampLatitude(double latitude) {
+        return Math.max(-90, Math.min(90, latitude));
+    }
+
+    /**
+     * Lambert azimuthal equal-area projection of the unit authalic sphere, computed from unit
+     * vectors: a point at angle c from the centre lies at distance 2 sin(c / 2) from it, in the
+     * direction of its east and north components.
+     */
+    private static final class Projection {
+
+        private final double[] centre;
+        private final double[] east;
+        private final double[] north;
+
+        Projection(double longitude, double latitude) {
+            double lambda = Math.toRadians(longitude);
+            double beta = authalicLatitude(latitude);
+            centre = unitVector(lambda, beta);
+            east = new double[]{-Math.sin(lambda), Math.cos(lambda), 0};
+            north = new double[]{-Math.sin(beta) * Math.cos(lambda), -Math.sin(beta) * Math.sin(lambda),
+                    Math.cos(beta)};
+        }
+
+        /**
+         * Get the signed area of a ring on the unit sphere by the shoelace formula, splitting long
+         * edges along the great circle.
+         */
+        double ringArea(CoordinateSequence ring) {
+            int size = ring.size();
+            if (size < 3) {
+                return 0;
+            }
+            double[] first = vertex(ring, 0);
+            double[] previous = first;
+            double[] from = project(first);
+            double twiceArea = 0;
+            for (int i = 1; i <= size; i++) {
+                double[] current = i < size ? vertex(ring, i) : first;
+                double cosine = dot(previous, current);
+                if (cosine < MIN_EDGE_COSINE) {
+                    double angle = Math.acos(Math.max(-1, cosine));
+                    int steps = (int) Math.ceil(angle / MAX_EDGE_RADIANS);
+                    double sine = Math.sin(angle);
+                    for (int s = 1; s < steps; s++) {
+                        double t = s / (double) steps;
+                        double a = Math.sin((1 - t) * angle) / sine;
+                        double b = Math.sin(t * angle) / sine;
+                        double[] to = project(new double[]{a * previous[0] + b * current[0],
+                                a * previous[1] + b * current[1], a * previous[2] + b * current[2]});
+                        twiceArea += from[0] * to[1] - to[0] * from[1];
+                        from = to;
+                    }
+                }
+                double[] to = project(current);
+                twiceArea += from[0] * to[1] - to[0] * from[1];
+                from = to;
+                previous = current;
+            }
+            return twiceArea / 2;
+        }
+
+        private double[] project(double[] point) {
+            double k = Math.sqrt(2 / Math.max(1 + dot(point, centre), 1e-12));
+            return new double[]{k * dot(point, east), k * dot(point, north)};
+        }
+
+        private static double[] vertex(CoordinateSequence ring, int i) {
+            return unitVector(Math.toRadians(ring.getX(i)), authalicLatitude(ring.getY(i)));
+        }
+
+        private static double[] unitVector(double lambda, double beta) {
+            double cosBeta = Math.cos(beta);
+            return new double[]{cosBeta * Math.cos(lambda), cosBeta * Math.sin(lambda), Math.sin(beta)};
+        }
+
+        private static double dot(double[] a, double[] b) {
+            return a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.adeprogramming.javagis.analytics.interpolation;
+
+import com.adeprogramming.javagis.raster.GridSpec;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Base class of interpolators that fill a raster grid from scattered samples.
+ * Rows are split recursively across a fork-join pool; each leaf task owns one
+ * {@link CellEstimator} with its neighbour and solver buffers, and writes straight into
+ * the shared {@code double[]} grid, so the inner loop does not allocate. Each cell only
+ * considers its nearest samples, found through a {@link KdTree}.
+ */
+public abstract class GridInterpolator {
+
+    private static final int ROWS_PER_TASK = 4;
+
+    protected final SamplePoints samples;
+    protected final KdTree index;
+    protected final int neighbours;
+    protected final double maxDistance;
+
+    /**
+     * @param samples the samples to interpolate between
+     * @param neighbours the number of nearest samples considered per cell
+     * @param maxDistance the radius beyond which samples are ignored; cells without samples in range are NaN
+     */
+    protected GridInterpolator(SamplePoints samples, int neighbours, double maxDistance) {
+        this.samples = samples;
+        this.index = new KdTree(samples.xs(), samples.ys());
+        this.neighbours = neighbours;
+        this.maxDistance = maxDistance;
+    }
+
+    /**
+     * Estimate every cell of a grid.
+     *
+     * @param grid the grid, in the coordinate system of the samples
+     * @param pool the pool to run the row tasks in
+     * @return the cell values row by row, NaN where nothing could be estimated
+     */
+    public double[] interpolate(GridSpec grid, ForkJoinPool pool) {
+        double[] values = new double[Math.toIntExact(grid.cellCount())];
+        interpolate(grid, values, pool);
+        return values;
+    }
+
+    /**
+     * Estimate every cell of a grid into an existing buffer, e.g. one reused across tiles.
+     *
+     * @param grid the grid, in the coordinate system of the samples
+     * @param target receives the cell values row by row; at least as long as the grid has cells
+     * @param pool the pool to run the row tasks in
+     */
+    public void interpolate(GridSpec grid, double[] target, ForkJoinPool pool) {
+        if (target.length < grid.cellCount()) {
+            throw new IllegalArgumentException("Target buffer is smaller than the grid");
+        }
+        pool.invoke(new RowTask(grid, target, 0, grid.rows()));
+    }
+
+    /**
+     * @return a new estimator, used by one thread at a time
+     */
+    protected abstract CellEstimator newCellEstimator();
+
+    /**
+     * Estimates single locations, reusing its buffers between calls.
+     */
+    protected interface CellEstimator {
+
+        /**
+         * @return the estimated value, or NaN if there is no sample in range
+         */
+        double estimate(double x, double y);
+    }
+
+    private final class RowTask extends RecursiveAction {
+
+        private final GridSpec grid;
+        private final double[] values;
+        private final int fromRow;
+        private final int toRow;
+
+        RowTask(GridSpec grid, double[] values, int fromRow, int toRow) {
+            this.grid = grid;
+            this.values = values;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow > ROWS_PER_TASK) {
+                int middle = (fromRow + toRow) >>> 1;
+                invokeAll(new RowTask(grid, values, fromRow, middle), new RowTask(grid, values, middle, toRow));
+                return;
+            }
+            CellEstimator estimator = newCellEstimator();
+            int columns = grid.columns();
+            for (int row = fromRow; row < toRow; row++) {
+                double y = grid.y(row);
+                int offset = row * columns;
+                for (int column = 0; column < columns; column++) {
+                    values[offset + column] = estimator.estimate(grid.x(column), y);
+                }
+            }
+        }
+    }
+}
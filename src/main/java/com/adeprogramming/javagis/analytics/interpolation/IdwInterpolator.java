@@ -0,0 +1,54 @@
+package com.adeprogramming.javagis.analytics.interpolation;
+
+/**
+ * Inverse distance weighting: each cell is the average of its nearest samples, weighted by
+ * {@code 1 / distance^power}. A cell that coincides with a sample takes the sample's value.
+ */
+public class IdwInterpolator extends GridInterpolator {
+
+    private static final double COINCIDENT_DISTANCE_SQUARED = 1e-12;
+
+    private final double power;
+
+    /**
+     * @param samples the samples to interpolate between
+     * @param neighbours the number of nearest samples considered per cell
+     * @param maxDistance the radius beyond which samples are ignored
+     * @param power the distance exponent, usually 2
+     */
+    public IdwInterpolator(SamplePoints samples, int neighbours, double maxDistance, double power) {
+        super(samples, neighbours, maxDistance);
+        if (power <= 0) {
+            throw new IllegalArgumentException("IDW power must be positive");
+        }
+        this.power = power;
+    }
+
+    @Override
+    protected CellEstimator newCellEstimator() {
+        KdTree.Neighbours nearest = new KdTree.Neighbours(neighbours, maxDistance);
+        double[] values = samples.values();
+        // Weights are computed from squared distances, so the exponent is halved
+        double halfPower = power / 2;
+        boolean squared = power == 2;
+
+        return (x, y) -> {
+            int count = index.nearest(x, y, nearest);
+            if (count == 0) {
+                return Double.NaN;
+            }
+            if (nearest.distanceSquared(0) < COINCIDENT_DISTANCE_SQUARED) {
+                return values[nearest.index(0)];
+            }
+            double weightSum = 0;
+            double valueSum = 0;
+            for (int i = 0; i < count; i++) {
+                double d2 = nearest.distanceSquared(i);
+                double weight = squared ? 1 / d2 : 1 / Math.pow(d2, halfPower);
+                weightSum += weight;
+                valueSum += weight * values[nearest.index(i)];
+            }
+            return valueSum / weightSum;
+        };
+    }
+}
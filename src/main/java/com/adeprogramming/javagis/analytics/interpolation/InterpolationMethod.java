@@ -0,0 +1,33 @@
+package com.adeprogramming.javagis.analytics.interpolation;
+
+/**
+ * Spatial interpolation methods for continuous surfaces between stations.
+ */
+public enum InterpolationMethod {
+
+    /**
+     * Inverse distance weighting.
+     */
+    IDW,
+
+    /**
+     * Ordinary kriging with an exponential variogram fitted to the samples.
+     */
+    KRIGING;
+
+    /**
+     * Create an interpolator for this method.
+     *
+     * @param samples the samples to interpolate between
+     * @param neighbours the number of nearest samples considered per cell
+     * @param maxDistance the radius beyond which samples are ignored
+     * @param power the IDW distance exponent, ignored by kriging
+     * @return the interpolator
+     */
+    public GridInterpolator create(SamplePoints samples, int neighbours, double maxDistance, double power) {
+        return switch (this) {
+            case IDW -> new IdwInterpolator(samples, neighbours, maxDistance, power);
+            case KRIGING -> new OrdinaryKrigingInterpolator(samples, neighbours, maxDistance);
+        };
+    }
+}
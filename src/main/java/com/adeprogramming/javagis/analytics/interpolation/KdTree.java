@@ -0,0 +1,245 @@
+package com.adeprogramming.javagis.analytics.interpolation;
+
+/**
+ * Static two-dimensional k-d tree over a set of points, answering k-nearest-neighbour queries.
+ * The tree is stored implicitly in a permutation of the point indices: the median of each range
+ * is its node, split alternately on x and y. Queries write into caller-owned buffers, so a thread
+ * can run millions of them without allocating.
+ */
+public final class KdTree {
+
+    private final double[] xs;
+    private final double[] ys;
+    private final int[] order;
+
+    /**
+     * @param xs the x coordinates of the points
+     * @param ys the y coordinates of the points, parallel to {@code xs}
+     */
+    public KdTree(double[] xs, double[] ys) {
+        if (xs.length != ys.length) {
+            throw new IllegalArgumentException("Coordinate arrays must have the same length");
+        }
+        this.xs = xs;
+        this.ys = ys;
+        this.order = new int[xs.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        build(0, order.length, 0);
+    }
+
+    /**
+     * @return the number of points
+     */
+    public int size() {
+        return order.length;
+    }
+
+    /**
+     * Find the points nearest to a location.
+     *
+     * @param x the x coordinate of the location
+     * @param y the y coordinate of the location
+     * @param neighbours receives the nearest points, nearest first
+     * @return the number of points found
+     */
+    public int nearest(double x, double y, Neighbours neighbours) {
+        neighbours.reset(x, y);
+        if (order.length > 0) {
+            search(0, order.length, 0, neighbours);
+        }
+        neighbours.sort();
+        return neighbours.count;
+    }
+
+    private void build(int from, int to, int depth) {
+        if (to - from <= 1) {
+            return;
+        }
+        int median = (from + to) >>> 1;
+        select(from, to - 1, median, depth & 1);
+        build(from, median, depth + 1);
+        build(median + 1, to, depth + 1);
+    }
+
+    /**
+     * Quickselect: partially order {@code order[left..right]} so that position {@code nth} holds
+     * the point it would hold if the range were sorted on the given axis.
+     */
+    private void select(int left, int right, int nth, int axis) {
+        while (right > left) {
+            double pivot = coordinate(order[(left + right) >>> 1], axis);
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (coordinate(order[i], axis) < pivot) {
+                    i++;
+                }
+                while (coordinate(order[j], axis) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = order[i];
+                    order[i] = order[j];
+                    order[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (nth <= j) {
+                right = j;
+            } else if (nth >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private double coordinate(int point, int axis) {
+        return axis == 0 ? xs[point] : ys[point];
+    }
+
+    private void search(int from, int to, int depth, Neighbours neighbours) {
+        if (from >= to) {
+            return;
+        }
+        int median = (from + to) >>> 1;
+        int point = order[median];
+        double dx = xs[point] - neighbours.x;
+        double dy = ys[point] - neighbours.y;
+        neighbours.offer(point, dx * dx + dy * dy);
+
+        int axis = depth & 1;
+        double delta = axis == 0 ? neighbours.x - xs[point] : neighbours.y - ys[point];
+        // Descend into the side containing the query first; the other side only if it can hold a closer point
+        if (delta < 0) {
+            search(from, median, depth + 1, neighbours);
+            if (delta * delta < neighbours.bound()) {
+                search(median + 1, to, depth + 1, neighbours);
+            }
+        } else {
+            search(median + 1, to, depth + 1, neighbours);
+            if (delta * delta < neighbours.bound()) {
+                search(from, median, depth + 1, neighbours);
+            }
+        }
+    }
+
+    /**
+     * Reusable result buffer of a nearest-neighbour query, owned by one thread.
+     * While a query runs it is a bounded max-heap on distance; afterwards it is sorted nearest first.
+     */
+    public static final class Neighbours {
+
+        private final int k;
+        private final double maxDistanceSquared;
+        private final int[] indices;
+        private final double[] distances;
+        private double x;
+        private double y;
+        private int count;
+
+        /**
+         * @param k the maximum number of points to find
+         * @param maxDistance the search radius, or {@code Double.POSITIVE_INFINITY}
+         */
+        public Neighbours(int k, double maxDistance) {
+            if (k <= 0) {
+                throw new IllegalArgumentException("At least one neighbour must be requested");
+            }
+            this.k = k;
+            this.maxDistanceSquared = maxDistance * maxDistance;
+            this.indices = new int[k];
+            this.distances = new double[k];
+        }
+
+        /**
+         * @return the number of points found by the last query
+         */
+        public int count() {
+            return count;
+        }
+
+        /**
+         * @return the index of the i-th nearest point
+         */
+        public int index(int i) {
+            return indices[i];
+        }
+
+        /**
+         * @return the squared distance to the i-th nearest point
+         */
+        public double distanceSquared(int i) {
+            return distances[i];
+        }
+
+        void reset(double x, double y) {
+            this.x = x;
+            this.y = y;
+            this.count = 0;
+        }
+
+        double bound() {
+            return count < k ? maxDistanceSquared : Math.min(maxDistanceSquared, distances[0]);
+        }
+
+        void offer(int point, double distance) {
+            if (distance > maxDistanceSquared) {
+                return;
+            }
+            if (count < k) {
+                int i = count++;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (distances[parent] >= distance) {
+                        break;
+                    }
+                    indices[i] = indices[parent];
+                    distances[i] = distances[parent];
+                    i = parent;
+                }
+                indices[i] = point;
+                distances[i] = distance;
+            } else if (distance < distances[0]) {
+                siftDown(point, distance, count);
+            }
+        }
+
+        private void siftDown(int point, double distance, int size) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && distances[child + 1] > distances[child]) {
+                    child++;
+                }
+                if (distances[child] <= distance) {
+                    break;
+                }
+                indices[i] = indices[child];
+                distances[i] = distances[child];
+                i = child;
+            }
+            indices[i] = point;
+            distances[i] = distance;
+        }
+
+        /**
+         * Heap sort in place, leaving the nearest point first.
+         */
+        void sort() {
+            for (int size = count - 1; size > 0; size--) {
+                int point = indices[0];
+                double distance = distances[0];
+                siftDown(indices[size], distances[size], size);
+                indices[size] = point;
+                distances[size] = distance;
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.adeprogramming.javagis.analytics.interpolation;
+
+/**
+ * Ordinary kriging with a local neighbourhood: each cell solves the kriging system of its
+ * nearest samples under a fitted {@link Variogram}, with the weights constrained to sum to one.
+ * The system is solved by Gaussian elimination in a per-thread buffer. Where it is singular,
+ * e.g. for duplicate station locations, the cell falls back to the nearest sample.
+ */
+public class OrdinaryKrigingInterpolator extends GridInterpolator {
+
+    private static final double PIVOT_EPSILON = 1e-12;
+
+    private final Variogram variogram;
+
+    /**
+     * @param samples the samples to interpolate between, at least two
+     * @param neighbours the number of nearest samples in each local system
+     * @param maxDistance the radius beyond which samples are ignored
+     */
+    public OrdinaryKrigingInterpolator(SamplePoints samples, int neighbours, double maxDistance) {
+        super(samples, neighbours, maxDistance);
+        this.variogram = Variogram.fit(samples);
+    }
+
+    public Variogram getVariogram() {
+        return variogram;
+    }
+
+    @Override
+    protected CellEstimator newCellEstimator() {
+        KdTree.Neighbours nearest = new KdTree.Neighbours(neighbours, maxDistance);
+        int size = neighbours + 1;
+        // Augmented matrix [A | b] of the largest system, stored row by row
+        double[] system = new double[size * (size + 1)];
+        double[] xs = samples.xs();
+        double[] ys = samples.ys();
+        double[] values = samples.values();
+
+        return (x, y) -> {
+            int count = index.nearest(x, y, nearest);
+            if (count == 0) {
+                return Double.NaN;
+            }
+            if (count == 1) {
+                return values[nearest.index(0)];
+            }
+
+            int n = count + 1;
+            int stride = n + 1;
+            for (int i = 0; i < count; i++) {
+                int a = nearest.index(i);
+                system[i * stride + i] = 0;
+                // The matrix is symmetric; each pair is evaluated once
+                for (int j = i + 1; j < count; j++) {
+                    int b = nearest.index(j);
+                    double gamma = variogram.gamma(Math.hypot(xs[a] - xs[b], ys[a] - ys[b]));
+                    system[i * stride + j] = gamma;
+                    system[j * stride + i] = gamma;
+                }
+                system[i * stride + count] = 1;
+                system[i * stride + n] = variogram.gamma(Math.sqrt(nearest.distanceSquared(i)));
+            }
+            for (int j = 0; j < count; j++) {
+                system[count * stride + j] = 1;
+            }
+            system[count * stride + count] = 0;
+            system[count * stride + n] = 1;
+
+            if (!solve(system, n)) {
+                return values[nearest.index(0)];
+            }
+            double estimate = 0;
+            for (int i = 0; i < count; i++) {
+                estimate += system[i * stride + n] * values[nearest.index(i)];
+            }
+            return estimate;
+        };
+    }
+
+    /**
+     * Solve an n x n system given as an augmented matrix, leaving the solution in the last column.
+     *
+     * @return false if the matrix is singular
+     */
+    private static boolean solve(double[] system, int n) {
+        int stride = n + 1;
+        for (int column = 0; column < n; column++) {
+            int pivot = column;
+            double largest = Math.abs(system[column * stride + column]);
+            for (int row = column + 1; row < n; row++) {
+                double candidate = Math.abs(system[row * stride + column]);
+                if (candidate > largest) {
+                    largest = candidate;
+                    pivot = row;
+                }
+            }
+            if (largest < PIVOT_EPSILON) {
+                return false;
+            }
+            if (pivot != column) {
+                for (int k = column; k <= n; k++) {
+                    double swap = system[column * stride + k];
+                    system[column * stride + k] = system[pivot * stride + k];
+                    system[pivot * stride + k] = swap;
+                }
+            }
+            double diagonal = system[column * stride + column];
+            for (int row = column + 1; row < n; row++) {
+                double factor = system[row * stride + column] / diagonal;
+                if (factor == 0) {
+                    continue;
+                }
+                for (int k = column; k <= n; k++) {
+                    system[row * stride + k] -= factor * system[column * stride + k];
+                }
+            }
+        }
+        for (int row = n - 1; row >= 0; row--) {
+            double sum = system[row * stride + n];
+            for (int k = row + 1; k < n; k++) {
+                sum -= system[row * stride + k] * system[k * stride + n];
+            }
+            system[row * stride + n] = sum / system[row * stride + row];
+        }
+        return true;
+    }
+}
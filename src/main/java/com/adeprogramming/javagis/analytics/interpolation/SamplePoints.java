@@ -0,0 +1,15 @@
+package com.adeprogramming.javagis.analytics.interpolation;
+
+/**
+ * Scattered sample values at projected locations, stored as parallel primitive arrays.
+ *
+ * @param xs the x coordinates
+ * @param ys the y coordinates
+ * @param values the sampled values
+ */
+public record SamplePoints(double[] xs, double[] ys, double[] values) {
+
+    public int size() {
+        return values.length;
+    }
+}
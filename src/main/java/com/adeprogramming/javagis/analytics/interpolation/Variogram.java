@@ -0,0 +1,127 @@
+package com.adeprogramming.javagis.analytics.interpolation;
+
+/**
+ * Exponential semivariogram model {@code gamma(h) = nugget + partialSill * (1 - exp(-3h / range))},
+ * where {@code range} is the practical range at which 95% of the sill is reached.
+ *
+ * @param nugget the semivariance at zero distance
+ * @param partialSill the sill minus the nugget
+ * @param range the practical range
+ */
+public record Variogram(double nugget, double partialSill, double range) {
+
+    private static final int LAG_BINS = 15;
+    private static final int RANGE_CANDIDATES = 30;
+    private static final int MAX_PAIR_SAMPLES = 2_000;
+
+    public double gamma(double distance) {
+        if (distance == 0) {
+            return 0;
+        }
+        return nugget + partialSill * (1 - Math.exp(-3 * distance / range));
+    }
+
+    /**
+     * Fit the model to the empirical semivariogram of the samples.
+     * Pairs are binned by distance up to half the sample extent; for each candidate range the
+     * nugget and partial sill follow from weighted least squares, and the best fit is kept.
+     *
+     * @param samples the samples, at least two
+     * @return the fitted model
+     */
+    public static Variogram fit(SamplePoints samples) {
+        double[] xs = samples.xs();
+        double[] ys = samples.ys();
+        double[] values = samples.values();
+        int n = samples.size();
+        if (n < 2) {
+            throw new IllegalArgumentException("At least two samples are needed to fit a variogram");
+        }
+
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        double mean = 0;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, xs[i]);
+            maxX = Math.max(maxX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxY = Math.max(maxY, ys[i]);
+            mean += values[i];
+        }
+        mean /= n;
+        double variance = 0;
+        for (double value : values) {
+            variance += (value - mean) * (value - mean);
+        }
+        variance /= n;
+        double maxLag = Math.max(Math.hypot(maxX - minX, maxY - minY) / 2, 1e-9);
+
+        // Large networks: use every stride-th station as the first point of a pair
+        int stride = Math.max(1, n / MAX_PAIR_SAMPLES);
+        double[] semivariance = new double[LAG_BINS];
+        double[] lag = new double[LAG_BINS];
+        long[] pairs = new long[LAG_BINS];
+        for (int i = 0; i < n; i += stride) {
+            for (int j = i + 1; j < n; j++) {
+                double h = Math.hypot(xs[i] - xs[j], ys[i] - ys[j]);
+                if (h >= maxLag) {
+                    continue;
+                }
+                int bin = (int) (h / maxLag * LAG_BINS);
+                double difference = values[i] - values[j];
+                semivariance[bin] += 0.5 * difference * difference;
+                lag[bin] += h;
+                pairs[bin]++;
+            }
+        }
+
+        Variogram best = new Variogram(0, Math.max(variance, 1e-12), maxLag);
+        double bestError = Double.POSITIVE_INFINITY;
+        for (int c = 1; c <= RANGE_CANDIDATES; c++) {
+            double range = maxLag * 2 * c / RANGE_CANDIDATES;
+            // Weighted least squares for gamma = nugget + sill * f(h), linear in (nugget, sill)
+            double sw = 0, sf = 0, sff = 0, sg = 0, sfg = 0;
+            for (int b = 0; b < LAG_BINS; b++) {
+                if (pairs[b] == 0) {
+                    continue;
+                }
+                double w = pairs[b];
+                double f = 1 - Math.exp(-3 * (lag[b] / pairs[b]) / range);
+                double g = semivariance[b] / pairs[b];
+                sw += w;
+                sf += w * f;
+                sff += w * f * f;
+                sg += w * g;
+                sfg += w * f * g;
+            }
+            if (sw == 0) {
+                break;
+            }
+            double determinant = sw * sff - sf * sf;
+            double nugget = determinant > 0 ? (sff * sg - sf * sfg) / determinant : 0;
+            double sill = determinant > 0 ? (sw * sfg - sf * sg) / determinant : 0;
+            if (nugget < 0) {
+                nugget = 0;
+                sill = sff > 0 ? sfg / sff : 0;
+            }
+            if (sill <= 0) {
+                continue;
+            }
+
+            double error = 0;
+            for (int b = 0; b < LAG_BINS; b++) {
+                if (pairs[b] == 0) {
+                    continue;
+                }
+                double f = 1 - Math.exp(-3 * (lag[b] / pairs[b]) / range);
+                double residual = semivariance[b] / pairs[b] - nugget - sill * f;
+                error += pairs[b] * residual * residual;
+            }
+            if (error < bestError) {
+                bestError = error;
+                best = new Variogram(nugget, sill, range);
+            }
+        }
+        return best;
+    }
+}
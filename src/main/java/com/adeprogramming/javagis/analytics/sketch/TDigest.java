@@ -0,0 +1,341 @@
+package com.adeprogramming.javagis.analytics.sketch;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch based on the merging t-digest.
+ * Values are buffered and periodically compressed into centroids whose size is bounded by
+ * the arcsine scale function, which keeps the error small at the tails (P95, P98) where
+ * regulatory limits are evaluated. Two digests are merged by feeding one's centroids into the other.
+ *
+ * @see <a href="https://arxiv.org/abs/1902.04023">Dunning and Ertl, Computing Extremely Accurate Quantiles Using t-Digests</a>
+ */
+public class TDigest {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final double compression;
+
+    private double[] means;
+    private double[] weights;
+    private int centroidCount;
+
+    private double[] bufferMeans;
+    private double[] bufferWeights;
+    private int bufferCount;
+
+    private double totalWeight;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * @param compression the accuracy/size trade-off, 100 keeps about 100-200 centroids
+     */
+    public TDigest(double compression) {
+        if (compression < 10) {
+            throw new IllegalArgumentException("Compression must be at least 10");
+        }
+        this.compression = compression;
+        int capacity = (int) Math.ceil(2 * compression) + 10;
+        this.means = new double[capacity];
+        this.weights = new double[capacity];
+        this.bufferMeans = new double[capacity * 5];
+        this.bufferWeights = new double[capacity * 5];
+    }
+
+    /**
+     * Add a single value.
+     *
+     * @param value the value
+     */
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    /**
+     * Add a value with a weight.
+     *
+     * @param value the value
+     * @param weight the weight, usually 1
+     */
+    public void add(double value, double weight) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (bufferCount == bufferMeans.length) {
+            compress();
+        }
+        bufferMeans[bufferCount] = value;
+        bufferWeights[bufferCount] = weight;
+        bufferCount++;
+        totalWeight += weight;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Merge another digest into this one.
+     *
+     * @param other the digest to merge
+     */
+    public void merge(TDigest other) {
+        other.compress();
+        for (int i = 0; i < other.centroidCount; i++) {
+            add(other.means[i], other.weights[i]);
+        }
+        if (other.totalWeight > 0) {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+    }
+
+    /**
+     * @return the number of values added
+     */
+    public long size() {
+        return Math.round(totalWeight);
+    }
+
+    /**
+     * @return the smallest value added, or NaN if empty
+     */
+    public double getMin() {
+        return totalWeight > 0 ? min : Double.NaN;
+    }
+
+    /**
+     * @return the largest value added, or NaN if empty
+     */
+    public double getMax() {
+        return totalWeight > 0 ? max : Double.NaN;
+    }
+
+    /**
+     * Estimate the value at a quantile.
+     *
+     * @param q the quantile, between 0 and 1
+     * @return the estimated value, or NaN if empty
+     */
+    public double quantile(double q) {
+        if (!(q >= 0 && q <= 1)) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1");
+        }
+        compress();
+        if (centroidCount == 0) {
+            return Double.NaN;
+        }
+        if (centroidCount == 1) {
+            return means[0];
+        }
+
+        double index = q * totalWeight;
+        if (index <= weights[0] / 2) {
+            return min + (means[0] - min) * index / (weights[0] / 2);
+        }
+
+        double center = weights[0] / 2;
+        for (int i = 0; i < centroidCount - 1; i++) {
+            double nextCenter = center + (weights[i] + weights[i + 1]) / 2;
+            if (index <= nextCenter) {
+                double fraction = (index - center) / (nextCenter - center);
+                return means[i] + fraction * (means[i + 1] - means[i]);
+            }
+            center = nextCenter;
+        }
+
+        int last = centroidCount - 1;
+        double remaining = totalWeight - center;
+        return remaining <= 0 ? max : means[last] + (max - means[last]) * (index - center) / remaining;
+    }
+
+    /**
+     * Estimate the fraction of values less than or equal to a value.
+     *
+     * @param value the value
+     * @return the estimated fraction, or NaN if empty
+     */
+    public double cdf(double value) {
+        compress();
+        if (centroidCount == 0) {
+            return Double.NaN;
+        }
+        if (value < min) {
+            return 0;
+        }
+        if (value >= max) {
+            return 1;
+        }
+        if (centroidCount == 1) {
+            return (value - min) / (max - min);
+        }
+
+        if (value < means[0]) {
+            return (weights[0] / 2) * (value - min) / (means[0] - min) / totalWeight;
+        }
+
+        double center = weights[0] / 2;
+        for (int i = 0; i < centroidCount - 1; i++) {
+            double nextCenter = center + (weights[i] + weights[i + 1]) / 2;
+            if (value < means[i + 1]) {
+                double span = means[i + 1] - means[i];
+                double fraction = span > 0 ? (value - means[i]) / span : 0;
+                return (center + fraction * (nextCenter - center)) / totalWeight;
+            }
+            center = nextCenter;
+        }
+
+        int last = centroidCount - 1;
+        double fraction = (value - means[last]) / (max - means[last]);
+        return (center + fraction * (totalWeight - center)) / totalWeight;
+    }
+
+    /**
+     * Serialize the digest into a compact byte array.
+     *
+     * @return the serialized digest
+     */
+    public byte[] toBytes() {
+        compress();
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 8 * 3 + 4 + centroidCount * 16);
+        buffer.putInt(FORMAT_VERSION);
+        buffer.putDouble(compression);
+        buffer.putDouble(min);
+        buffer.putDouble(max);
+        buffer.putInt(centroidCount);
+        for (int i = 0; i < centroidCount; i++) {
+            buffer.putDouble(means[i]);
+            buffer.putDouble(weights[i]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Restore a digest serialized with {@link #toBytes()}.
+     *
+     * @param bytes the serialized digest
+     * @return the digest
+     */
+    public static TDigest fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int version = buffer.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported t-digest format version: " + version);
+        }
+        TDigest digest = new TDigest(buffer.getDouble());
+        double min = buffer.getDouble();
+        double max = buffer.getDouble();
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            digest.add(buffer.getDouble(), buffer.getDouble());
+        }
+        digest.min = min;
+        digest.max = max;
+        return digest;
+    }
+
+    /**
+     * Merge buffered values and existing centroids into a new set of centroids.
+     */
+    private void compress() {
+        if (bufferCount == 0) {
+            return;
+        }
+
+        int n = centroidCount + bufferCount;
+        double[] allMeans = Arrays.copyOf(means, n);
+        double[] allWeights = Arrays.copyOf(weights, n);
+        System.arraycopy(bufferMeans, 0, allMeans, centroidCount, bufferCount);
+        System.arraycopy(bufferWeights, 0, allWeights, centroidCount, bufferCount);
+        sortByMean(allMeans, allWeights, n);
+
+        int count = 0;
+        double mergedWeight = 0;
+        double limit = qLimit(0);
+        double currentMean = allMeans[0];
+        double currentWeight = allWeights[0];
+
+        for (int i = 1; i < n; i++) {
+            double proposed = (mergedWeight + currentWeight + allWeights[i]) / totalWeight;
+            if (proposed <= limit) {
+                currentWeight += allWeights[i];
+                currentMean += (allMeans[i] - currentMean) * allWeights[i] / currentWeight;
+            } else {
+                count = appendCentroid(count, currentMean, currentWeight);
+                mergedWeight += currentWeight;
+                limit = qLimit(mergedWeight / totalWeight);
+                currentMean = allMeans[i];
+                currentWeight = allWeights[i];
+            }
+        }
+        centroidCount = appendCentroid(count, currentMean, currentWeight);
+        bufferCount = 0;
+    }
+
+    private int appendCentroid(int index, double mean, double weight) {
+        if (index == means.length) {
+            means = Arrays.copyOf(means, index * 2);
+            weights = Arrays.copyOf(weights, index * 2);
+        }
+        means[index] = mean;
+        weights[index] = weight;
+        return index + 1;
+    }
+
+    /**
+     * The largest quantile a centroid starting at {@code q} may reach under the arcsine scale function.
+     */
+    private double qLimit(double q) {
+        double k = compression / (2 * Math.PI) * Math.asin(2 * q - 1);
+        double next = Math.min(k + 1, compression / 4);
+        return (Math.sin(next * 2 * Math.PI / compression) + 1) / 2;
+    }
+
+    /**
+     * Sort the parallel arrays by value in place, without boxing.
+     */
+    private static void sortByMean(double[] values, double[] weights, int n) {
+        quickSort(values, weights, 0, n - 1);
+    }
+
+    private static void quickSort(double[] values, double[] weights, int low, int high) {
+        while (high - low > 16) {
+            double pivot = values[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(values, weights, i++, j--);
+                }
+            }
+            // Recurse into the smaller half to bound the stack depth
+            if (j - low < high - i) {
+                quickSort(values, weights, low, j);
+                low = i;
+            } else {
+                quickSort(values, weights, i, high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low && values[j - 1] > values[j]; j--) {
+                swap(values, weights, j, j - 1);
+            }
+        }
+    }
+
+    private static void swap(double[] values, double[] weights, int i, int j) {
+        double value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+        double weight = weights[i];
+        weights[i] = weights[j];
+        weights[j] = weight;
+    }
+}
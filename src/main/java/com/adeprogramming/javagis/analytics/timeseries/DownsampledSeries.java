@@ -0,0 +1,38 @@
+package com.adeprogramming.javagis.analytics.timeseries;
+
+/**
+ * Result of a downsampling pass, stored as parallel primitive arrays.
+ */
+public final class DownsampledSeries {
+
+    private final long[] timestamps;
+    private final double[] values;
+    private final long sourceCount;
+
+    public DownsampledSeries(long[] timestamps, double[] values, long sourceCount) {
+        this.timestamps = timestamps;
+        this.values = values;
+        this.sourceCount = sourceCount;
+    }
+
+    /**
+     * @return the point times in epoch milliseconds
+     */
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    /**
+     * @return the point values
+     */
+    public double[] getValues() {
+        return values;
+    }
+
+    /**
+     * @return the number of points read from the source series
+     */
+    public long getSourceCount() {
+        return sourceCount;
+    }
+}
@@ -0,0 +1,32 @@
+package com.adeprogramming.javagis.analytics.timeseries;
+
+/**
+ * Supported downsampling algorithms for chart series.
+ */
+public enum DownsamplingMode {
+
+    /**
+     * Largest-Triangle-Three-Buckets, keeps the visually most significant point per bucket.
+     */
+    LTTB,
+
+    /**
+     * Keeps the minimum and maximum point per bucket, preserving peaks.
+     */
+    MIN_MAX;
+
+    /**
+     * Create a downsampler for the given time range and point budget.
+     *
+     * @param from the start of the time range in epoch milliseconds
+     * @param to the end of the time range in epoch milliseconds
+     * @param points the maximum number of points to return
+     * @return a new downsampler
+     */
+    public StreamingDownsampler create(long from, long to, int points) {
+        return switch (this) {
+            case LTTB -> new LttbDownsampler(from, to, points);
+            case MIN_MAX -> new MinMaxDownsampler(from, to, points);
+        };
+    }
+}
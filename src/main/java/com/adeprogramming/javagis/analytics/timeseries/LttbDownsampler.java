@@ -0,0 +1,122 @@
+package com.adeprogramming.javagis.analytics.timeseries;
+
+/**
+ * Streaming Largest-Triangle-Three-Buckets downsampler.
+ * The time range is split into equal-width buckets up front, so the bucket of a point is known
+ * as soon as it arrives. Only the previous and the current bucket are buffered: a bucket's point
+ * is selected once the following bucket is complete and its average is known.
+ *
+ * @see <a href="https://skemman.is/handle/1946/15343">Steinarsson, Downsampling Time Series for Visual Representation</a>
+ */
+public class LttbDownsampler implements StreamingDownsampler {
+
+    private final long from;
+    private final double bucketWidth;
+    private final int bucketCount;
+    private final PointBuffer output;
+
+    private PointBuffer pending = new PointBuffer(64);
+    private PointBuffer current = new PointBuffer(64);
+    private int currentBucket = -1;
+    private long anchorTime;
+    private double anchorValue;
+    private long sourceCount;
+
+    /**
+     * @param from the start of the time range in epoch milliseconds
+     * @param to the end of the time range in epoch milliseconds
+     * @param points the maximum number of points to return, at least 3
+     */
+    public LttbDownsampler(long from, long to, int points) {
+        if (points < 3) {
+            throw new IllegalArgumentException("LTTB requires a budget of at least 3 points");
+        }
+        this.from = from;
+        this.bucketCount = points - 2;
+        this.bucketWidth = Math.max(1L, to - from) / (double) bucketCount;
+        this.output = new PointBuffer(points);
+    }
+
+    @Override
+    public void accept(long timestamp, double value) {
+        if (sourceCount++ == 0) {
+            // The first point is always kept and anchors the first triangle
+            emit(timestamp, value);
+            return;
+        }
+
+        int bucket = bucketOf(timestamp);
+        if (bucket != currentBucket) {
+            if (current.size > 0) {
+                closeCurrentBucket();
+            }
+            currentBucket = bucket;
+        }
+        current.add(timestamp, value);
+    }
+
+    @Override
+    public DownsampledSeries finish() {
+        if (current.size > 0) {
+            // The last point is always kept and closes the final triangle
+            long lastTime = current.timestamps[current.size - 1];
+            double lastValue = current.values[current.size - 1];
+            current.removeLast();
+
+            if (pending.size > 0) {
+                if (current.size > 0) {
+                    select(pending, current.averageTime(), current.averageValue());
+                } else {
+                    select(pending, lastTime, lastValue);
+                }
+            }
+            if (current.size > 0) {
+                select(current, lastTime, lastValue);
+            }
+            emit(lastTime, lastValue);
+        }
+        return output.toSeries(sourceCount);
+    }
+
+    private void closeCurrentBucket() {
+        if (pending.size > 0) {
+            select(pending, current.averageTime(), current.averageValue());
+        }
+        PointBuffer completed = current;
+        current = pending;
+        pending = completed;
+        current.clear();
+    }
+
+    /**
+     * Pick the point of the bucket forming the largest triangle with the previously selected
+     * point and the average of the next bucket.
+     */
+    private void select(PointBuffer bucket, double nextTime, double nextValue) {
+        double anchorX = anchorTime - from;
+        double nextX = nextTime - from;
+        int best = 0;
+        double bestArea = -1;
+        for (int i = 0; i < bucket.size; i++) {
+            double x = bucket.timestamps[i] - from;
+            double area = Math.abs((anchorX - nextX) * (bucket.values[i] - anchorValue)
+                    - (anchorX - x) * (nextValue - anchorValue));
+            if (area > bestArea) {
+                bestArea = area;
+                best = i;
+            }
+        }
+        emit(bucket.timestamps[best], bucket.values[best]);
+    }
+
+    private void emit(long timestamp, double value) {
+        output.add(timestamp, value);
+        anchorTime = timestamp;
+        anchorValue = value;
+    }
+
+    private int bucketOf(long timestamp) {
+        int bucket = (int) ((timestamp - from) / bucketWidth);
+        return Math.max(0, Math.min(bucketCount - 1, bucket));
+    }
+}
@@ -0,0 +1,84 @@
+package com.adeprogramming.javagis.analytics.timeseries;
+
+/**
+ * Streaming min/max downsampler.
+ * Keeps the minimum and the maximum point of each equal-width time bucket, so short
+ * peaks survive the reduction. Returns at most {@code points} points.
+ */
+public class MinMaxDownsampler implements StreamingDownsampler {
+
+    private final long from;
+    private final double bucketWidth;
+    private final int bucketCount;
+    private final PointBuffer output;
+
+    private int currentBucket = -1;
+    private long minTime;
+    private double minValue;
+    private long maxTime;
+    private double maxValue;
+    private long sourceCount;
+
+    /**
+     * @param from the start of the time range in epoch milliseconds
+     * @param to the end of the time range in epoch milliseconds
+     * @param points the maximum number of points to return, at least 2
+     */
+    public MinMaxDownsampler(long from, long to, int points) {
+        if (points < 2) {
+            throw new IllegalArgumentException("Min/max downsampling requires a budget of at least 2 points");
+        }
+        this.from = from;
+        this.bucketCount = points / 2;
+        this.bucketWidth = Math.max(1L, to - from) / (double) bucketCount;
+        this.output = new PointBuffer(points);
+    }
+
+    @Override
+    public void accept(long timestamp, double value) {
+        sourceCount++;
+        int bucket = bucketOf(timestamp);
+        if (bucket != currentBucket) {
+            flushBucket();
+            currentBucket = bucket;
+            minTime = maxTime = timestamp;
+            minValue = maxValue = value;
+            return;
+        }
+        if (value < minValue) {
+            minTime = timestamp;
+            minValue = value;
+        }
+        if (value > maxValue) {
+            maxTime = timestamp;
+            maxValue = value;
+        }
+    }
+
+    @Override
+    public DownsampledSeries finish() {
+        flushBucket();
+        currentBucket = -1;
+        return output.toSeries(sourceCount);
+    }
+
+    private void flushBucket() {
+        if (currentBucket < 0) {
+            return;
+        }
+        if (minTime == maxTime) {
+            output.add(minTime, minValue);
+        } else if (minTime < maxTime) {
+            output.add(minTime, minValue);
+            output.add(maxTime, maxValue);
+        } else {
+            output.add(maxTime, maxValue);
+            output.add(minTime, minValue);
+        }
+    }
+
+    private int bucketOf(long timestamp) {
+        int bucket = (int) ((timestamp - from) / bucketWidth);
+        return Math.max(0, Math.min(bucketCount - 1, bucket));
+    }
+}
@@ -0,0 +1,57 @@
+package com.adeprogramming.javagis.analytics.timeseries;
+
+import java.util.Arrays;
+
+/**
+ * Growable pair of primitive arrays holding the points of one bucket.
+ */
+final class PointBuffer {
+
+    long[] timestamps;
+    double[] values;
+    int size;
+    private double timeSum;
+    private double valueSum;
+
+    PointBuffer(int initialCapacity) {
+        this.timestamps = new long[initialCapacity];
+        this.values = new double[initialCapacity];
+    }
+
+    void add(long timestamp, double value) {
+        if (size == timestamps.length) {
+            int capacity = Math.max(8, size * 2);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        timestamps[size] = timestamp;
+        values[size] = value;
+        timeSum += timestamp;
+        valueSum += value;
+        size++;
+    }
+
+    void removeLast() {
+        size--;
+        timeSum -= timestamps[size];
+        valueSum -= values[size];
+    }
+
+    double averageTime() {
+        return timeSum / size;
+    }
+
+    double averageValue() {
+        return valueSum / size;
+    }
+
+    void clear() {
+        size = 0;
+        timeSum = 0;
+        valueSum = 0;
+    }
+
+    DownsampledSeries toSeries(long sourceCount) {
+        return new DownsampledSeries(Arrays.copyOf(timestamps, size), Arrays.copyOf(values, size), sourceCount);
+    }
+}
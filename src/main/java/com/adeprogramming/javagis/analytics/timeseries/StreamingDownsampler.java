@@ -0,0 +1,24 @@
+package com.adeprogramming.javagis.analytics.timeseries;
+
+/**
+ * A single-pass downsampler for time-ordered numeric series.
+ * Implementations receive points in ascending time order and keep only a bounded
+ * amount of state, so a series can be reduced while it is being read from the database.
+ */
+public interface StreamingDownsampler {
+
+    /**
+     * Accept the next point of the series.
+     *
+     * @param timestamp the point time in epoch milliseconds
+     * @param value the point value
+     */
+    void accept(long timestamp, double value);
+
+    /**
+     * Finish the pass and return the reduced series.
+     *
+     * @return the downsampled series
+     */
+    DownsampledSeries finish();
+}
@@ -0,0 +1,212 @@
+package com.adeprogramming.javagis.analytics.zonal;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygon;
+
+import java.util.Arrays;
+
+/**
+ * The pixels of a raster whose centres lie inside a polygon, as runs of columns per row.
+ * <p>
+ * The polygon is given in pixel coordinates, x the column and y the row, so the centre of pixel
+ * {@code (column, row)} is {@code (column + 0.5, row + 0.5)}. Each ring edge is visited once,
+ * recording where it crosses the centre line of every row it spans; the sorted crossings of a
+ * row pair up into runs by the even-odd rule, which excludes holes. The work is proportional to
+ * the number of rows and the perimeter, not to the area of the polygon.
+ */
+public final class PolygonMask {
+
+    private static final int[] NO_RUNS = new int[0];
+
+    private final int firstRow;
+    private final int[][] runs;
+    private final int minColumn;
+    private final int endColumn;
+    private final long pixelCount;
+
+    private PolygonMask(int firstRow, int[][] runs) {
+        this.firstRow = firstRow;
+        this.runs = runs;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        long count = 0;
+        for (int[] row : runs) {
+            for (int i = 0; i < row.length; i += 2) {
+                min = Math.min(min, row[i]);
+                max = Math.max(max, row[i + 1]);
+                count += row[i + 1] - row[i];
+            }
+        }
+        this.minColumn = min;
+        this.endColumn = max;
+        this.pixelCount = count;
+    }
+
+    /**
+     * Rasterize the polygons of a geometry onto a grid. Other geometry types cover no pixels.
+     *
+     * @param geometry the geometry in pixel coordinates
+     * @param width the number of columns of the grid
+     * @param height the number of rows of the grid
+     * @return the pixels inside the geometry, clipped to the grid
+     */
+    public static PolygonMask rasterize(Geometry geometry, int width, int height) {
+        double minY = Math.max(geometry.getEnvelopeInternal().getMinY(), 0);
+        double maxY = Math.min(geometry.getEnvelopeInternal().getMaxY(), height);
+        // The rows whose centre lies in [minY, maxY]
+        int firstRow = (int) Math.ceil(minY - 0.5);
+        int endRow = (int) Math.floor(maxY - 0.5) + 1;
+        if (geometry.isEmpty() || endRow <= firstRow) {
+            return new PolygonMask(0, new int[0][]);
+        }
+
+        Crossings crossings = new Crossings(firstRow, endRow - firstRow);
+        for (int i = 0; i < geometry.getNumGeometries(); i++) {
+            if (geometry.getGeometryN(i) instanceof Polygon polygon) {
+                crossings.addRing(polygon.getExteriorRing().getCoordinateSequence());
+                for (int hole = 0; hole < polygon.getNumInteriorRing(); hole++) {
+                    crossings.addRing(polygon.getInteriorRingN(hole).getCoordinateSequence());
+                }
+            }
+        }
+
+        int[][] runs = new int[endRow - firstRow][];
+        for (int row = 0; row < runs.length; row++) {
+            runs[row] = crossings.runs(row, width);
+        }
+        return new PolygonMask(firstRow, runs);
+    }
+
+    public boolean isEmpty() {
+        return pixelCount == 0;
+    }
+
+    /**
+     * @return the number of pixels inside the polygon
+     */
+    public long getPixelCount() {
+        return pixelCount;
+    }
+
+    public int getFirstRow() {
+        return firstRow;
+    }
+
+    /**
+     * @return the row after the last row with pixels inside the polygon
+     */
+    public int getEndRow() {
+        return firstRow + runs.length;
+    }
+
+    public int getMinColumn() {
+        return minColumn;
+    }
+
+    /**
+     * @return the column after the last column with pixels inside the polygon
+     */
+    public int getEndColumn() {
+        return endColumn;
+    }
+
+    /**
+     * @param row a row of the grid
+     * @return the runs of pixels inside the polygon as (first column, end column) pairs, in
+     * ascending order; empty if the row has none
+     */
+    public int[] runs(int row) {
+        return row >= firstRow && row < getEndRow() ? runs[row - firstRow] : NO_RUNS;
+    }
+
+    /**
+     * @return whether any pixel of the rectangle is inside the polygon
+     */
+    public boolean intersects(int x, int y, int width, int height) {
+        for (int row = Math.max(y, firstRow); row < Math.min(y + height, getEndRow()); row++) {
+            int[] rowRuns = runs[row - firstRow];
+            for (int i = 0; i < rowRuns.length; i += 2) {
+                if (rowRuns[i] < x + width && rowRuns[i + 1] > x) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The x coordinates where ring edges cross the centre lines of the rows.
+     */
+    private static final class Crossings {
+
+        private final int firstRow;
+        private final double[][] xs;
+        private final int[] counts;
+
+        Crossings(int firstRow, int rows) {
+            this.firstRow = firstRow;
+            this.xs = new double[rows][];
+            this.counts = new int[rows];
+        }
+
+        void addRing(CoordinateSequence ring) {
+            Coordinate from = new Coordinate();
+            Coordinate to = new Coordinate();
+            for (int i = 0; i + 1 < ring.size(); i++) {
+                ring.getCoordinate(i, from);
+                ring.getCoordinate(i + 1, to);
+                if (from.y == to.y) {
+                    continue;
+                }
+                double lowY = Math.min(from.y, to.y);
+                double highY = Math.max(from.y, to.y);
+                // Half-open in y, so a vertex shared by two edges is crossed once
+                int first = Math.max((int) Math.ceil(lowY - 0.5), firstRow);
+                int end = Math.min((int) Math.ceil(highY - 0.5), firstRow + counts.length);
+                double slope = (to.x - from.x) / (to.y - from.y);
+                for (int row = first; row < end; row++) {
+                    add(row - firstRow, from.x + (row + 0.5 - from.y) * slope);
+                }
+            }
+        }
+
+        private void add(int row, double x) {
+            double[] rowXs = xs[row];
+            if (rowXs == null) {
+                rowXs = xs[row] = new double[4];
+            } else if (counts[row] == rowXs.length) {
+                rowXs = xs[row] = Arrays.copyOf(rowXs, rowXs.length * 2);
+            }
+            rowXs[counts[row]++] = x;
+        }
+
+        int[] runs(int row, int width) {
+            int count = counts[row];
+            if (count < 2) {
+                return NO_RUNS;
+            }
+            double[] rowXs = xs[row];
+            Arrays.sort(rowXs, 0, count);
+            int[] result = new int[count];
+            int size = 0;
+            for (int i = 0; i + 1 < count; i += 2) {
+                // The columns whose centre lies in [x0, x1)
+                int start = Math.max((int) Math.ceil(rowXs[i] - 0.5), 0);
+                int end = Math.min((int) Math.ceil(rowXs[i + 1] - 0.5), width);
+                if (end <= start) {
+                    continue;
+                }
+                if (size > 0 && result[size - 1] >= start) {
+                    result[size - 1] = Math.max(result[size - 1], end);
+                } else {
+                    result[size++] = start;
+                    result[size++] = end;
+                }
+            }
+            xs[row] = null;
+            return size == result.length ? result : Arrays.copyOf(result, size);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.adeprogramming.javagis.analytics.zonal;
+
+/**
+ * Running statistics of the values of one zone: count, mean, minimum, maximum, standard
+ * deviation and a histogram of equal-width bins over a fixed range. The mean and variance are
+ * updated with Welford's algorithm, which stays accurate over millions of pixels. Values outside
+ * the histogram range are counted in its first or last bin.
+ */
+public final class ZonalStatistics {
+
+    private final double histogramMin;
+    private final double binWidth;
+    private final long[] histogram;
+
+    private long count;
+    private double mean;
+    private double sumOfSquares;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * @param histogramMin the lower edge of the first bin
+     * @param histogramMax the upper edge of the last bin
+     * @param bins the number of bins
+     */
+    public ZonalStatistics(double histogramMin, double histogramMax, int bins) {
+        if (bins < 1 || !(histogramMax > histogramMin)) {
+            throw new IllegalArgumentException("The histogram needs at least one bin over a non-empty range");
+        }
+        this.histogramMin = histogramMin;
+        this.binWidth = (histogramMax - histogramMin) / bins;
+        this.histogram = new long[bins];
+    }
+
+    /**
+     * Add a value; NaN is ignored.
+     *
+     * @param value the value
+     */
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        sumOfSquares += delta * (value - mean);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        int bin = (int) Math.floor((value - histogramMin) / binWidth);
+        histogram[Math.max(0, Math.min(histogram.length - 1, bin))]++;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the mean, NaN if there are no values
+     */
+    public double getMean() {
+        return count > 0 ? mean : Double.NaN;
+    }
+
+    /**
+     * @return the minimum, NaN if there are no values
+     */
+    public double getMin() {
+        return count > 0 ? min : Double.NaN;
+    }
+
+    /**
+     * @return the maximum, NaN if there are no values
+     */
+    public double getMax() {
+        return count > 0 ? max : Double.NaN;
+    }
+
+    /**
+     * @return the population standard deviation, NaN if there are no values
+     */
+    public double getStandardDeviation() {
+        return count > 0 ? Math.sqrt(sumOfSquares / count) : Double.NaN;
+    }
+
+    /**
+     * @return the number of values in each bin, from the lowest
+     */
+    public long[] getHistogram() {
+        return histogram.clone();
+    }
+}
@@ -0,0 +1,151 @@
+package com.adeprogramming.javagis.config;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.jpa.boot.spi.JpaSettings;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.hbm2ddl.SchemaValidator;
+import org.hibernate.tool.schema.spi.SchemaManagementException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Validates the database schema against the JPA entities once the application is serving
+ * requests, instead of while it boots. Enabled in the fast-start profile, which turns Hibernate's
+ * {@code ddl-auto} off: the schema is expected to exist already. A mismatch does not prevent
+ * startup; it is logged as an error, kept as the {@linkplain #getResult() result}, and the
+ * application's readiness changes to {@link ReadinessState#REFUSING_TRAFFIC}, so that readiness
+ * probes take the instance out of service.
+ */
+@Component
+@ConditionalOnProperty(name = "schema.validation.background", havingValue = "true")
+public class BackgroundSchemaValidator implements HibernatePropertiesCustomizer, Integrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(BackgroundSchemaValidator.class);
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final Validation validation;
+
+    private volatile Metadata metadata;
+    private volatile SessionFactoryImplementor sessionFactory;
+    private volatile Result result = new Result(Status.PENDING, null, null);
+
+    @Autowired
+    public BackgroundSchemaValidator(ApplicationEventPublisher eventPublisher) {
+        this(eventPublisher, (metadata, serviceRegistry) -> new SchemaValidator().validate(metadata, serviceRegistry));
+    }
+
+    BackgroundSchemaValidator(ApplicationEventPublisher eventPublisher, Validation validation) {
+        this.eventPublisher = eventPublisher;
+        this.validation = validation;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(JpaSettings.INTEGRATOR_PROVIDER, (IntegratorProvider) () -> List.of(this));
+    }
+
+    @Override
+    public void integrate(Metadata metadata, BootstrapContext bootstrapContext,
+                          SessionFactoryImplementor sessionFactory) {
+        this.metadata = metadata;
+        this.sessionFactory = sessionFactory;
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        this.metadata = null;
+        this.sessionFactory = null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Thread validator = new Thread(this::validate, "schema-validator");
+        validator.setDaemon(true);
+        validator.start();
+    }
+
+    /**
+     * @return the outcome of the background validation, {@link Status#PENDING} until it finished
+     */
+    public Result getResult() {
+        return result;
+    }
+
+    void validate() {
+        Metadata captured = metadata;
+        SessionFactoryImplementor factory = sessionFactory;
+        if (captured == null || factory == null) {
+            logger.warn("Schema not validated: the Hibernate metadata was not captured");
+            result = new Result(Status.SKIPPED, "The Hibernate metadata was not captured", LocalDateTime.now());
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            validation.validate(captured, factory.getServiceRegistry());
+            logger.info("Schema validated in {} ms", (System.nanoTime() - start) / 1_000_000);
+            result = new Result(Status.VALID, null, LocalDateTime.now());
+        } catch (SchemaManagementException e) {
+            logger.error("The database schema does not match the entities: {}", e.getMessage());
+            result = new Result(Status.MISMATCH, e.getMessage(), LocalDateTime.now());
+            AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+        } catch (RuntimeException e) {
+            logger.error("Could not validate the database schema", e);
+            result = new Result(Status.FAILED, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName(),
+                    LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Validates a schema against the entities.
+     */
+    @FunctionalInterface
+    interface Validation {
+
+        /**
+         * @throws SchemaManagementException if the schema does not match
+         */
+        void validate(Metadata metadata, ServiceRegistry serviceRegistry);
+    }
+
+    /**
+     * The outcome of a schema validation.
+     */
+    public enum Status {
+        /** Not validated yet. */
+        PENDING,
+        /** The schema matches the entities. */
+        VALID,
+        /** The schema does not match the entities. */
+        MISMATCH,
+        /** The schema could not be read, e.g. as the database was unavailable. */
+        FAILED,
+        /** The application did not boot Hibernate through this validator. */
+        SKIPPED
+    }
+
+    /**
+     * @param status the outcome
+     * @param message why the schema does not match or could not be validated, or null
+     * @param validatedAt when the validation finished, or null while it is pending
+     */
+    public record Result(Status status, String message, LocalDateTime validatedAt) {
+    }
+}
@@ -0,0 +1,98 @@
+package com.adeprogramming.javagis.config;
+
+import org.geotools.api.referencing.FactoryException;
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
+import org.geotools.api.referencing.operation.MathTransform;
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.operation.DefaultCoordinateOperationFactory;
+import org.geotools.util.factory.Hints;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * The coordinate reference systems the application uses, pre-resolved as WKT on the classpath.
+ * Decoding an EPSG code through GeoTools initialises its EPSG database, which takes seconds; the
+ * CRSs here are parsed from their WKT instead, and transforms between them are found by a
+ * coordinate operation factory that does not consult the database either. Codes that are not
+ * embedded are left to {@link CRS#decode(String, boolean)}.
+ */
+public final class CrsRegistry {
+
+    public static final String DEFAULT_RESOURCE = "crs/epsg.properties";
+
+    private final Map<Integer, CoordinateReferenceSystem> crs;
+    private final DefaultCoordinateOperationFactory operationFactory =
+            new DefaultCoordinateOperationFactory(new Hints(Hints.LENIENT_DATUM_SHIFT, Boolean.TRUE));
+
+    private CrsRegistry(Map<Integer, CoordinateReferenceSystem> crs) {
+        this.crs = crs;
+    }
+
+    /**
+     * Load a registry from a properties resource mapping EPSG codes to WKT.
+     *
+     * @param resource the classpath resource
+     * @return the registry
+     * @throws IllegalStateException if the resource is missing or a WKT cannot be parsed
+     */
+    public static CrsRegistry load(String resource) {
+        Properties wkt = new Properties();
+        try (InputStream in = CrsRegistry.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("CRS registry " + resource + " not found");
+            }
+            wkt.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        Map<Integer, CoordinateReferenceSystem> crs = new HashMap<>();
+        for (String code : wkt.stringPropertyNames()) {
+            try {
+                crs.put(Integer.parseInt(code.trim()), CRS.parseWKT(wkt.getProperty(code)));
+            } catch (FactoryException | NumberFormatException e) {
+                throw new IllegalStateException("Invalid CRS registry entry EPSG:" + code, e);
+            }
+        }
+        return new CrsRegistry(crs);
+    }
+
+    /**
+     * @param epsg the EPSG code
+     * @return the CRS, longitude or easting first, or null if it is not embedded
+     */
+    public CoordinateReferenceSystem get(int epsg) {
+        return crs.get(epsg);
+    }
+
+    /**
+     * @return the embedded EPSG codes
+     */
+    public Set<Integer> getCodes() {
+        return Collections.unmodifiableSet(crs.keySet());
+    }
+
+    /**
+     * Find the transform between two embedded CRSs.
+     *
+     * @param source the EPSG code of the source CRS
+     * @param target the EPSG code of the target CRS
+     * @return the transform, or null if either CRS is not embedded
+     * @throws FactoryException if there is no transform between them
+     */
+    public MathTransform findTransform(int source, int target) throws FactoryException {
+        CoordinateReferenceSystem sourceCrs = crs.get(source);
+        CoordinateReferenceSystem targetCrs = crs.get(target);
+        if (sourceCrs == null || targetCrs == null) {
+            return null;
+        }
+        return operationFactory.createOperation(sourceCrs, targetCrs).getMathTransform();
+    }
+}
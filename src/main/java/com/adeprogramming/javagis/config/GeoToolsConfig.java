@@ -1,32 +1,44 @@
 package com.adeprogramming.javagis.config;
 
-import org.geotools.api.referencing.FactoryException;
 import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
-import org.geotools.referencing.CRS;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 /**
  * GeoTools configuration for the BASF Enterprise JavaGIS Application.
  * Configures GeoTools-related beans and settings.
+ * <p>
+ * The CRSs are taken from the embedded {@link CrsRegistry}, so the GeoTools EPSG database is
+ * only initialised if a code outside the registry is requested.
  */
 @Configuration
 public class GeoToolsConfig {
 
+    static {
+        System.setProperty("org.geotools.referencing.forceXY", "true");
+    }
+
+    /**
+     * Pre-resolved coordinate reference systems
+     */
+    @Bean
+    public CrsRegistry crsRegistry() {
+        return CrsRegistry.load(CrsRegistry.DEFAULT_RESOURCE);
+    }
+
     /**
      * Default coordinate reference system (WGS84)
      */
     @Bean
-    public CoordinateReferenceSystem defaultCrs() throws FactoryException {
-        System.setProperty("org.geotools.referencing.forceXY", "true");
-        return CRS.decode("EPSG:4326", true);
+    public CoordinateReferenceSystem defaultCrs(CrsRegistry crsRegistry) {
+        return crsRegistry.get(4326);
     }
 
     /**
      * European ETRS89 coordinate reference system commonly used in Germany
      */
     @Bean
-    public CoordinateReferenceSystem etrs89Crs() throws FactoryException {
-        return CRS.decode("EPSG:3035", true);
+    public CoordinateReferenceSystem etrs89Crs(CrsRegistry crsRegistry) {
+        return crsRegistry.get(3035);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,276 @@
+package com.adeprogramming.javagis.controller.agricultural;
+
+import com.adeprogramming.javagis.model.agricultural.AgriculturalField;
+import com.adeprogramming.javagis.model.environmental.MonitoringStation;
+import com.adeprogramming.javagis.payload.spatial.ImportResponse;
+import com.adeprogramming.javagis.repository.environmental.MonitoringStationRepository;
+import com.adeprogramming.javagis.security.payload.MessageResponse;
+import com.adeprogramming.javagis.service.agricultural.FieldAreaService;
+import com.adeprogramming.javagis.service.agricultural.imports.FieldImportTarget;
+import com.adeprogramming.javagis.service.satellite.ZonalStatisticsService;
+import com.adeprogramming.javagis.service.spatial.CoordinateTransformService;
+import com.adeprogramming.javagis.service.spatial.SpatialIndexService;
+import com.adeprogramming.javagis.service.spatial.imports.FeatureImportService;
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.servlet.http.HttpServletRequest;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * REST controller for agricultural field endpoints.
+ */
+@RestController
+@Validated
+@RequestMapping("/api/agricultural/fields")
+public class AgriculturalFieldController {
+
+    private static final int MAX_NEIGHBOURS = 100;
+
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory(new PrecisionModel(), 4326);
+
+    private final SpatialIndexService spatialIndexService;
+    private final MonitoringStationRepository monitoringStationRepository;
+    private final FieldAreaService fieldAreaService;
+    private final FeatureImportService featureImportService;
+    private final FieldImportTarget fieldImportTarget;
+    private final ZonalStatisticsService zonalStatisticsService;
+
+    @Autowired
+    public AgriculturalFieldController(
+            SpatialIndexService spatialIndexService,
+            MonitoringStationRepository monitoringStationRepository,
+            FieldAreaService fieldAreaService,
+            FeatureImportService featureImportService,
+            FieldImportTarget fieldImportTarget,
+            ZonalStatisticsService zonalStatisticsService) {
+        this.spatialIndexService = spatialIndexService;
+        this.monitoringStationRepository = monitoringStationRepository;
+        this.fieldAreaService = fieldAreaService;
+        this.featureImportService = featureImportService;
+        this.fieldImportTarget = fieldImportTarget;
+        this.zonalStatisticsService = zonalStatisticsService;
+    }
+
+    /**
+     * Find the fields nearest to a point or to a monitoring station, nearest first.
+     *
+     * @param lon the longitude of the point
+     * @param lat the latitude of the point
+     * @param stationId the business ID of the station, instead of a point
+     * @param k the number of fields to find
+     * @param status the status of field to find, any if omitted
+     * @param maxDistance the distance in metres beyond which fields are not returned, unlimited if omitted
+     * @param useIndex whether the in-memory spatial index may be used instead of PostGIS
+     * @return the fields and their distances in metres
+     */
+    @GetMapping("/nearest")
+    public ResponseEntity<?> getNearestFields(
+            @RequestParam(required = false) Double lon,
+            @RequestParam(required = false) Double lat,
+            @RequestParam(required = false) String stationId,
+            @RequestParam(defaultValue = "5") int k,
+            @RequestParam(required = false) AgriculturalField.FieldStatus status,
+            @RequestParam(required = false) Double maxDistance,
+            @RequestParam(defaultValue = "true") boolean useIndex) {
+        if (k < 1 || k > MAX_NEIGHBOURS) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: k must be between 1 and " + MAX_NEIGHBOURS + "!"));
+        }
+        if (maxDistance != null && !(maxDistance >= 0)) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: maxDistance must not be negative!"));
+        }
+
+        Geometry origin;
+        if (stationId != null) {
+            if (lon != null || lat != null) {
+                return ResponseEntity.badRequest()
+                        .body(new MessageResponse("Error: Give either lon and lat or stationId, not both!"));
+            }
+            Optional<Geometry> stationGeometry = monitoringStationRepository.findByStationId(stationId)
+                    .map(MonitoringStation::getGeometry);
+            if (stationGeometry.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            origin = stationGeometry.get();
+        } else if (lon != null && lat != null) {
+            if (lon < -180 || lon > 180 || lat < -90 || lat > 90) {
+                return ResponseEntity.badRequest()
+                        .body(new MessageResponse("Error: lon and lat must be WGS 84 degrees!"));
+            }
+            origin = GEOMETRY_FACTORY.createPoint(new Coordinate(lon, lat));
+        } else {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: Either lon and lat or stationId is required!"));
+        }
+
+        return ResponseEntity.ok(spatialIndexService.findNearestFields(origin, k,
+                maxDistance != null ? maxDistance : Double.POSITIVE_INFINITY, status, useIndex));
+    }
+
+    /**
+     * Measure a boundary on the WGS 84 ellipsoid without storing it, e.g. before a field is created.
+     *
+     * @param geometry the boundary as a GeoJSON Polygon or MultiPolygon (WGS 84)
+     * @return the area and perimeter
+     */
+    @PostMapping("/measure")
+    public ResponseEntity<?> measure(@RequestBody JsonNode geometry) {
+        Geometry boundary;
+        try {
+            boundary = fieldAreaService.readBoundary(geometry.toString());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: " + e.getMessage() + "!"));
+        }
+        return ResponseEntity.ok(FieldAreaService.measure(boundary));
+    }
+
+    /**
+     * Recompute the area and perimeter of every field from its boundary, writing back those that changed.
+     *
+     * @return the numbers of fields read and updated
+     */
+    @PostMapping("/measures/recompute")
+    public ResponseEntity<?> recomputeMeasures() {
+        return ResponseEntity.ok(fieldAreaService.recomputeAll());
+    }
+
+    /**
+     * Get the NDVI time series of a field: its statistics in each satellite scene covering it.
+     *
+     * @param fieldId the business ID of the field
+     * @param from the first acquisition time (inclusive), unbounded if omitted
+     * @param to the last acquisition time (inclusive), unbounded if omitted
+     * @return the statistics per scene, oldest first
+     */
+    @GetMapping("/{fieldId}/ndvi")
+    public ResponseEntity<?> getNdviTimeSeries(
+            @PathVariable String fieldId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: 'from' must not be after 'to'!"));
+        }
+        return zonalStatisticsService.getFieldTimeSeries(fieldId,
+                        from != null ? from : LocalDateTime.of(1900, 1, 1, 0, 0),
+                        to != null ? to : LocalDateTime.of(9999, 12, 31, 23, 59))
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Import field boundaries from a shapefile in the background, upserting the fields by field ID.
+     * The shapefile is either uploaded as a zip archive, or named by its path in the upload
+     * directory, for files too large to upload with a request.
+     *
+     * @param file the zipped shapefile
+     * @param path the path of a {@code .zip} or {@code .shp} file in the upload directory, instead of a file
+     * @param mapping the attribute of each column as {@code column:attribute} pairs, e.g.
+     *                {@code field_id:FLIK,current_crop:KULTUR}; others are read from default attributes
+     * @return the queued import
+     */
+    @PostMapping("/imports/shapefile")
+    public ResponseEntity<?> importShapefile(
+            @RequestParam(required = false) MultipartFile file,
+            @RequestParam(required = false) String path,
+            @RequestParam(required = false) String mapping) {
+        if ((file == null || file.isEmpty()) == (path == null || path.isBlank())) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: Either a file or a path is required, not both!"));
+        }
+        try {
+            return ResponseEntity.accepted().body(file != null && !file.isEmpty()
+                    ? featureImportService.importShapefile(fieldImportTarget, file, mapping)
+                    : featureImportService.importShapefile(fieldImportTarget, path, mapping));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: " + e.getMessage() + "!"));
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError()
+                    .body(new MessageResponse("Error: The upload could not be stored!"));
+        }
+    }
+
+    /**
+     * Import field boundaries from a GeoJSON FeatureCollection in the request body, upserting the
+     * fields by field ID. The body is parsed as it arrives, so it is not subject to the multipart
+     * size limit; it may be gzip-compressed with {@code Content-Encoding: gzip}. A feature's
+     * {@code id} is used as its field ID if its properties have none.
+     *
+     * @param name names the import in its results, e.g. the file name
+     * @param mapping the attribute of each column as {@code column:attribute} pairs; others are
+     *                read from default attributes
+     * @param crs the CRS of the coordinates if the collection does not declare it, WGS 84 if omitted
+     * @return the finished import, with the features that could not be imported
+     */
+    @PostMapping(value = "/imports/geojson", consumes = {"application/geo+json", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<?> importGeoJson(
+            HttpServletRequest request,
+            @RequestParam(defaultValue = "fields.geojson") String name,
+            @RequestParam(required = false) String mapping,
+            @RequestParam(required = false) String crs) {
+        try (InputStream body = requestBody(request)) {
+            ImportResponse result = featureImportService.importGeoJson(fieldImportTarget, body, name, mapping,
+                    crs != null ? CoordinateTransformService.parseEpsg(crs) : null);
+            return result.getStatus() == ImportResponse.ImportStatus.COMPLETED
+                    ? ResponseEntity.ok(result)
+                    : ResponseEntity.unprocessableEntity().body(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: " + e.getMessage() + "!"));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: The request body could not be read!"));
+        }
+    }
+
+    /**
+     * @return the progress of the recent field imports, newest first
+     */
+    @GetMapping("/imports")
+    public ResponseEntity<?> getImports() {
+        return ResponseEntity.ok(featureImportService.getImports(fieldImportTarget));
+    }
+
+    /**
+     * @param id the import ID
+     * @return the progress of the import, with the features that could not be imported
+     */
+    @GetMapping("/imports/{id}")
+    public ResponseEntity<?> getImport(@PathVariable String id) {
+        return featureImportService.getImport(fieldImportTarget, id)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    private static InputStream requestBody(HttpServletRequest request) throws IOException {
+        InputStream body = request.getInputStream();
+        return "gzip".equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING))
+                ? new GZIPInputStream(body, 64 * 1024)
+                : body;
+    }
+}
@@ -0,0 +1,325 @@
+package com.adeprogramming.javagis.controller.environmental;
+
+import com.adeprogramming.javagis.analytics.timeseries.DownsamplingMode;
+import com.adeprogramming.javagis.payload.environmental.AreaAggregationRequest;
+import com.adeprogramming.javagis.payload.environmental.IngestResponse;
+import com.adeprogramming.javagis.payload.environmental.IngestStatsResponse;
+import com.adeprogramming.javagis.payload.environmental.MeasurementReading;
+import com.adeprogramming.javagis.payload.environmental.TimeSeriesResponse;
+import com.adeprogramming.javagis.security.payload.MessageResponse;
+import com.adeprogramming.javagis.service.environmental.MeasurementAggregationService;
+import com.adeprogramming.javagis.service.environmental.MeasurementIngestService;
+import com.adeprogramming.javagis.service.environmental.MeasurementParameterDictionary;
+import com.adeprogramming.javagis.service.environmental.MeasurementStatisticsService;
+import com.adeprogramming.javagis.service.environmental.MeasurementTimeSeriesService;
+import com.adeprogramming.javagis.service.environmental.ingest.WriteBehindIngestPipeline;
+import com.adeprogramming.javagis.service.environmental.ingest.socket.LineProtocolListener;
+import com.adeprogramming.javagis.service.environmental.live.LiveMeasurementDispatcher;
+import jakarta.validation.Valid;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * REST controller for environmental measurement endpoints.
+ */
+@RestController
+@Validated
+@RequestMapping("/api/environmental/measurements")
+public class MeasurementController {
+
+    private static final int MAX_SERIES = 16;
+    private static final int MAX_POINTS = 20_000;
+    private static final int MAX_BUCKETS = 10_000;
+    private static final Duration MIN_BUCKET = Duration.ofMinutes(1);
+
+    private final MeasurementTimeSeriesService measurementTimeSeriesService;
+    private final MeasurementIngestService measurementIngestService;
+    private final MeasurementStatisticsService measurementStatisticsService;
+    private final MeasurementAggregationService measurementAggregationService;
+    private final MeasurementParameterDictionary measurementParameterDictionary;
+    private final WriteBehindIngestPipeline writeBehindIngestPipeline;
+    private final LineProtocolListener lineProtocolListener;
+    private final LiveMeasurementDispatcher liveMeasurementDispatcher;
+
+    @Autowired
+    public MeasurementController(
+            MeasurementTimeSeriesService measurementTimeSeriesService,
+            MeasurementIngestService measurementIngestService,
+            MeasurementStatisticsService measurementStatisticsService,
+            MeasurementAggregationService measurementAggregationService,
+            MeasurementParameterDictionary measurementParameterDictionary,
+            WriteBehindIngestPipeline writeBehindIngestPipeline,
+            LineProtocolListener lineProtocolListener,
+            LiveMeasurementDispatcher liveMeasurementDispatcher) {
+        this.measurementTimeSeriesService = measurementTimeSeriesService;
+        this.measurementIngestService = measurementIngestService;
+        this.measurementStatisticsService = measurementStatisticsService;
+        this.measurementAggregationService = measurementAggregationService;
+        this.measurementParameterDictionary = measurementParameterDictionary;
+        this.writeBehindIngestPipeline = writeBehindIngestPipeline;
+        this.lineProtocolListener = lineProtocolListener;
+        this.liveMeasurementDispatcher = liveMeasurementDispatcher;
+    }
+
+    /**
+     * Ingest a batch of readings from a station gateway.
+     * With the write-behind pipeline enabled, readings are queued and the request returns
+     * 202 Accepted; a full queue is answered with 429 and a {@code Retry-After} hint.
+     *
+     * @param readings the readings to write
+     * @return the number of accepted, deferred and rejected readings
+     * @throws IOException if the ingest journal could not be written
+     */
+    @PostMapping
+    public ResponseEntity<IngestResponse> ingestMeasurements(
+            @Valid @RequestBody List<MeasurementReading> readings) throws IOException {
+        if (!writeBehindIngestPipeline.isEnabled()) {
+            return ResponseEntity.ok(measurementIngestService.ingest(readings));
+        }
+
+        List<MeasurementReading> known = new ArrayList<>(readings.size());
+        List<String> errors = new ArrayList<>();
+        for (MeasurementReading reading : readings) {
+            if (measurementIngestService.isKnownStation(reading.getStationId())) {
+                known.add(reading);
+            } else {
+                errors.add("Unknown station: " + reading.getStationId());
+            }
+        }
+
+        int accepted = writeBehindIngestPipeline.submit(known);
+        IngestResponse response = IngestResponse.builder()
+                .accepted(accepted)
+                .deferred(known.size() - accepted)
+                .rejected(errors.size())
+                .errors(errors)
+                .build();
+
+        if (accepted < known.size()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(writeBehindIngestPipeline.retryAfterSeconds()))
+                    .body(response);
+        }
+        return ResponseEntity.accepted().body(response);
+    }
+
+    /**
+     * Get ingest counters, including how many duplicates were dropped, what the
+     * in-memory duplicate filter costs per reading and the write-behind queue depth.
+     *
+     * @return the ingest counters
+     */
+    @GetMapping("/ingest/stats")
+    public ResponseEntity<IngestStatsResponse> getIngestStats() {
+        return ResponseEntity.ok(new IngestStatsResponse(
+                measurementIngestService.getStats(),
+                writeBehindIngestPipeline.getStats(),
+                lineProtocolListener.getStats(),
+                liveMeasurementDispatcher.getStats()));
+    }
+
+    /**
+     * Stream newly ingested measurements as Server-Sent Events.
+     * Readings are sent as {@code measurement} events, readings above their threshold as
+     * {@code exceedance} events. A client that cannot keep up loses its oldest events and
+     * receives an {@code overflow} event with the number it missed.
+     *
+     * @param stationId the business IDs of the stations to follow, all if omitted
+     * @param parameterName the parameter names to follow, all if omitted
+     * @param bbox the area to follow as {@code minLon,minLat,maxLon,maxLat}, everywhere if omitted
+     * @param exceedancesOnly whether only threshold exceedances should be sent
+     * @return the event stream
+     */
+    @GetMapping(path = "/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMeasurements(
+            @RequestParam(required = false) List<String> stationId,
+            @RequestParam(required = false) List<String> parameterName,
+            @RequestParam(required = false) List<Double> bbox,
+            @RequestParam(defaultValue = "false") boolean exceedancesOnly) {
+        Envelope area = null;
+        if (bbox != null) {
+            if (bbox.size() != 4 || bbox.get(0) > bbox.get(2) || bbox.get(1) > bbox.get(3)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Error: Bbox must be given as minLon,minLat,maxLon,maxLat!");
+            }
+            area = new Envelope(bbox.get(0), bbox.get(2), bbox.get(1), bbox.get(3));
+        }
+
+        try {
+            return liveMeasurementDispatcher
+                    .subscribe(stationId != null ? stationId : List.of(),
+                            parameterName != null ? parameterName : List.of(), area, exceedancesOnly)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                            "Error: Too many live streams are open!"));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Error: " + e.getMessage() + "!");
+        }
+    }
+
+    /**
+     * Get downsampled time series for one or more (station, parameter) pairs.
+     *
+     * @param series the series to read, each as {@code stationId:parameterName}, or as
+     *               {@code stationId:parameterName:unit} if the parameter is recorded in several units
+     * @param from the start of the time range (inclusive)
+     * @param to the end of the time range (exclusive)
+     * @param points the maximum number of points per series, usually the chart width in pixels
+     * @param mode the downsampling algorithm
+     * @return the downsampled series
+     */
+    @GetMapping("/timeseries")
+    public ResponseEntity<?> getTimeSeries(
+            @RequestParam List<String> series,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "1000") int points,
+            @RequestParam(defaultValue = "LTTB") DownsamplingMode mode) {
+        if (series.isEmpty() || series.size() > MAX_SERIES) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: Between 1 and " + MAX_SERIES + " series must be requested!"));
+        }
+        if (points < 3 || points > MAX_POINTS) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: Points must be between 3 and " + MAX_POINTS + "!"));
+        }
+        if (!from.isBefore(to)) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: 'from' must be before 'to'!"));
+        }
+
+        List<MeasurementTimeSeriesService.SeriesKey> keys = new ArrayList<>(series.size());
+        for (String s : series) {
+            String[] parts = s.split(":", 3);
+            if (parts.length < 2 || parts[0].isEmpty() || parts[1].isEmpty()
+                    || (parts.length == 3 && parts[2].isEmpty())) {
+                return ResponseEntity.badRequest()
+                        .body(new MessageResponse("Error: Series must be given as stationId:parameterName[:unit]!"));
+            }
+            String unit = parts.length == 3 ? parts[2] : null;
+            if (unit == null && measurementParameterDictionary.isAmbiguous(parts[1])) {
+                return ResponseEntity.badRequest()
+                        .body(new MessageResponse("Error: Parameter " + parts[1]
+                                + " is recorded in several units, give the series as stationId:parameterName:unit!"));
+            }
+            keys.add(new MeasurementTimeSeriesService.SeriesKey(parts[0], parts[1], unit));
+        }
+
+        TimeSeriesResponse response = measurementTimeSeriesService.getDownsampledSeries(keys, from, to, points, mode);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Get percentile statistics for one parameter at one station over a range of days.
+     * Answered from the daily sketches, without reading raw measurements. Days whose sketches
+     * have not been back-filled yet are left out and listed in the response.
+     *
+     * @param stationId the business ID of the monitoring station
+     * @param parameterName the name of the parameter
+     * @param unit the unit, required only if the parameter is recorded in more than one unit
+     * @param fromDay the first day (inclusive)
+     * @param toDay the last day (inclusive)
+     * @param quantiles the quantiles to estimate, between 0 and 1
+     * @param threshold an optional limit value to estimate the number of exceedances for
+     * @return the statistics
+     */
+    @GetMapping("/statistics")
+    public ResponseEntity<?> getStatistics(
+            @RequestParam String stationId,
+            @RequestParam String parameterName,
+            @RequestParam(required = false) String unit,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDay,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDay,
+            @RequestParam(defaultValue = "0.5,0.95,0.98") List<Double> quantiles,
+            @RequestParam(required = false) Double threshold) {
+        if (toDay.isBefore(fromDay)) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: 'toDay' must not be before 'fromDay'!"));
+        }
+        if (quantiles.stream().anyMatch(q -> q == null || !(q >= 0 && q <= 1))) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: Quantiles must be between 0 and 1!"));
+        }
+
+        if (unit == null && measurementParameterDictionary.isAmbiguous(parameterName)) {
+            return ambiguousUnit();
+        }
+        Integer parameterCode = measurementParameterDictionary.resolve(parameterName, unit);
+        if (parameterCode == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return measurementStatisticsService
+                .getStatistics(stationId, parameterCode, fromDay, toDay, quantiles, threshold)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Aggregate one parameter over all stations inside a polygon, in time buckets.
+     * For example the hourly mean NO2 across all stations of a district for the last month.
+     *
+     * @param request the area, parameter, time range and bucket size
+     * @return the aggregates per bucket in columnar form
+     */
+    @PostMapping("/aggregate")
+    public ResponseEntity<?> aggregateOverArea(@Valid @RequestBody AreaAggregationRequest request) {
+        if (!request.getFrom().isBefore(request.getTo())) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: 'from' must be before 'to'!"));
+        }
+        Duration bucket = request.getBucket();
+        if (bucket.compareTo(MIN_BUCKET) < 0 || bucket.toSeconds() * 1_000 != bucket.toMillis()) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: Bucket must be a whole number of seconds, at least " + MIN_BUCKET + "!"));
+        }
+        long seconds = Duration.between(request.getFrom(), request.getTo()).toSeconds();
+        if (seconds / bucket.toSeconds() >= MAX_BUCKETS) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: At most " + MAX_BUCKETS + " buckets can be requested!"));
+        }
+        if (request.getUnit() == null && measurementParameterDictionary.isAmbiguous(request.getParameterName())) {
+            return ambiguousUnit();
+        }
+        Integer parameterCode = measurementParameterDictionary.resolve(request.getParameterName(), request.getUnit());
+        if (parameterCode == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Geometry area;
+        try {
+            area = measurementAggregationService.readArea(request.getGeometry().toString());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: " + e.getMessage() + "!"));
+        }
+        return ResponseEntity.ok(measurementAggregationService.aggregate(area, parameterCode,
+                request.getFrom(), request.getTo(), bucket, request.isUseRollups()));
+    }
+
+    private static ResponseEntity<?> ambiguousUnit() {
+        return ResponseEntity.badRequest()
+                .body(new MessageResponse("Error: Parameter is recorded in several units, 'unit' is required!"));
+    }
+}
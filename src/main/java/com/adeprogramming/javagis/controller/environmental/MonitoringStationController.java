@@ -0,0 +1,247 @@
+package com.adeprogramming.javagis.controller.environmental;
+
+import com.adeprogramming.javagis.model.agricultural.AgriculturalField;
+import com.adeprogramming.javagis.model.environmental.MonitoringStation;
+import com.adeprogramming.javagis.payload.spatial.ImportResponse;
+import com.adeprogramming.javagis.repository.agricultural.AgriculturalFieldRepository;
+import com.adeprogramming.javagis.security.payload.MessageResponse;
+import com.adeprogramming.javagis.service.environmental.MeasurementParameterDictionary;
+import com.adeprogramming.javagis.service.environmental.MeasurementQueryService;
+import com.adeprogramming.javagis.service.environmental.imports.StationImportTarget;
+import com.adeprogramming.javagis.service.spatial.CoordinateTransformService;
+import com.adeprogramming.javagis.service.spatial.SpatialIndexService;
+import com.adeprogramming.javagis.service.spatial.imports.FeatureImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * REST controller for monitoring station endpoints.
+ */
+@RestController
+@Validated
+@RequestMapping("/api/environmental/stations")
+public class MonitoringStationController {
+
+    private static final int MAX_PAGE_SIZE = 5_000;
+    private static final int MAX_NEIGHBOURS = 100;
+
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory(new PrecisionModel(), 4326);
+
+    private final MeasurementQueryService measurementQueryService;
+    private final MeasurementParameterDictionary measurementParameterDictionary;
+    private final SpatialIndexService spatialIndexService;
+    private final AgriculturalFieldRepository agriculturalFieldRepository;
+    private final FeatureImportService featureImportService;
+    private final StationImportTarget stationImportTarget;
+
+    @Autowired
+    public MonitoringStationController(
+            MeasurementQueryService measurementQueryService,
+            MeasurementParameterDictionary measurementParameterDictionary,
+            SpatialIndexService spatialIndexService,
+            AgriculturalFieldRepository agriculturalFieldRepository,
+            FeatureImportService featureImportService,
+            StationImportTarget stationImportTarget) {
+        this.measurementQueryService = measurementQueryService;
+        this.measurementParameterDictionary = measurementParameterDictionary;
+        this.spatialIndexService = spatialIndexService;
+        this.agriculturalFieldRepository = agriculturalFieldRepository;
+        this.featureImportService = featureImportService;
+        this.stationImportTarget = stationImportTarget;
+    }
+
+    /**
+     * Find the stations nearest to a point or to an agricultural field, nearest first.
+     * For example the five water-quality stations nearest to a field.
+     *
+     * @param lon the longitude of the point
+     * @param lat the latitude of the point
+     * @param fieldId the business ID of the field, instead of a point
+     * @param k the number of stations to find
+     * @param stationType the type of station to find, any if omitted
+     * @param status the status of station to find, any if omitted
+     * @param maxDistance the distance in metres beyond which stations are not returned, unlimited if omitted
+     * @param useIndex whether the in-memory spatial index may be used instead of PostGIS
+     * @return the stations and their distances in metres
+     */
+    @GetMapping("/nearest")
+    public ResponseEntity<?> getNearestStations(
+            @RequestParam(required = false) Double lon,
+            @RequestParam(required = false) Double lat,
+            @RequestParam(required = false) String fieldId,
+            @RequestParam(defaultValue = "5") int k,
+            @RequestParam(required = false) MonitoringStation.StationType stationType,
+            @RequestParam(required = false) MonitoringStation.StationStatus status,
+            @RequestParam(required = false) Double maxDistance,
+            @RequestParam(defaultValue = "true") boolean useIndex) {
+        if (k < 1 || k > MAX_NEIGHBOURS) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: k must be between 1 and " + MAX_NEIGHBOURS + "!"));
+        }
+        if (maxDistance != null && !(maxDistance >= 0)) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: maxDistance must not be negative!"));
+        }
+
+        Geometry origin;
+        if (fieldId != null) {
+            if (lon != null || lat != null) {
+                return ResponseEntity.badRequest()
+                        .body(new MessageResponse("Error: Give either lon and lat or fieldId, not both!"));
+            }
+            Optional<Geometry> fieldGeometry = agriculturalFieldRepository.findByFieldId(fieldId)
+                    .map(AgriculturalField::getGeometry);
+            if (fieldGeometry.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            origin = fieldGeometry.get();
+        } else if (lon != null && lat != null) {
+            if (lon < -180 || lon > 180 || lat < -90 || lat > 90) {
+                return ResponseEntity.badRequest()
+                        .body(new MessageResponse("Error: lon and lat must be WGS 84 degrees!"));
+            }
+            origin = GEOMETRY_FACTORY.createPoint(new Coordinate(lon, lat));
+        } else {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: Either lon and lat or fieldId is required!"));
+        }
+
+        return ResponseEntity.ok(spatialIndexService.findNearestStations(origin, k,
+                maxDistance != null ? maxDistance : Double.POSITIVE_INFINITY, stationType, status, useIndex));
+    }
+
+    /**
+     * Get one page of the measurements of a station in a time window, oldest first.
+     * This is the target of the measurements asset of the station's STAC item.
+     *
+     * @param id the primary key of the monitoring station
+     * @param from the start of the time window (inclusive), by default one day before {@code to};
+     *             later pages keep the window of the first, which need not be repeated
+     * @param to the end of the time window (exclusive), by default the time of the first page
+     * @param parameterName an optional parameter to restrict the page to
+     * @param unit the unit of the parameter, required if it is recorded in several units
+     * @param after the {@code nextCursor} of the previous page
+     * @param limit the maximum number of measurements in the page
+     * @return the page of measurements
+     */
+    @GetMapping("/{id}/measurements")
+    public ResponseEntity<?> getStationMeasurements(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String parameterName,
+            @RequestParam(required = false) String unit,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "500") int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: Limit must be between 1 and " + MAX_PAGE_SIZE + "!"));
+        }
+        if (after == null) {
+            if (to == null) {
+                to = LocalDateTime.now();
+            }
+            if (from == null) {
+                from = to.minusDays(1);
+            }
+        }
+        if (from != null && to != null && !from.isBefore(to)) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: 'from' must be before 'to'!"));
+        }
+        if (parameterName != null && unit == null && measurementParameterDictionary.isAmbiguous(parameterName)) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: Parameter is recorded in several units, 'unit' is required!"));
+        }
+
+        try {
+            return measurementQueryService.getStationMeasurements(id, from, to, parameterName, unit, after, limit)
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElseGet(() -> ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: Invalid cursor, or it belongs to another time window!"));
+        }
+    }
+
+    /**
+     * Import stations from a GeoJSON FeatureCollection of points in the request body, upserting
+     * the stations by station ID. The body is parsed as it arrives, so it is not subject to the
+     * multipart size limit; it may be gzip-compressed with {@code Content-Encoding: gzip}. Every
+     * station needs a station type; a feature's {@code id} is used as its station ID if its
+     * properties have none.
+     *
+     * @param name names the import in its results, e.g. the file name
+     * @param mapping the attribute of each column as {@code column:attribute} pairs, e.g.
+     *                {@code station_id:MESSNETZ_ID,station_type:ART}; others are read from default attributes
+     * @param crs the CRS of the coordinates if the collection does not declare it, WGS 84 if omitted
+     * @return the finished import, with the features that could not be imported
+     */
+    @PostMapping(value = "/imports/geojson", consumes = {"application/geo+json", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<?> importGeoJson(
+            HttpServletRequest request,
+            @RequestParam(defaultValue = "stations.geojson") String name,
+            @RequestParam(required = false) String mapping,
+            @RequestParam(required = false) String crs) {
+        try (InputStream body = requestBody(request)) {
+            ImportResponse result = featureImportService.importGeoJson(stationImportTarget, body, name, mapping,
+                    crs != null ? CoordinateTransformService.parseEpsg(crs) : null);
+            return result.getStatus() == ImportResponse.ImportStatus.COMPLETED
+                    ? ResponseEntity.ok(result)
+                    : ResponseEntity.unprocessableEntity().body(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: " + e.getMessage() + "!"));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: The request body could not be read!"));
+        }
+    }
+
+    /**
+     * @return the progress of the recent station imports, newest first
+     */
+    @GetMapping("/imports")
+    public ResponseEntity<?> getImports() {
+        return ResponseEntity.ok(featureImportService.getImports(stationImportTarget));
+    }
+
+    /**
+     * @param id the import ID
+     * @return the progress of the import, with the features that could not be imported
+     */
+    @GetMapping("/imports/{id}")
+    public ResponseEntity<?> getImport(@PathVariable String id) {
+        return featureImportService.getImport(stationImportTarget, id)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    private static InputStream requestBody(HttpServletRequest request) throws IOException {
+        InputStream body = request.getInputStream();
+        return "gzip".equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING))
+                ? new GZIPInputStream(body, 64 * 1024)
+                : body;
+    }
+}
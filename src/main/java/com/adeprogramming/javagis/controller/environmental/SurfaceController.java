@@ -0,0 +1,247 @@
+package com.adeprogramming.javagis.controller.environmental;
+
+import com.adeprogramming.javagis.analytics.interpolation.InterpolationMethod;
+import com.adeprogramming.javagis.raster.BinaryGridWriter;
+import com.adeprogramming.javagis.raster.GeoTiffWriter;
+import com.adeprogramming.javagis.security.payload.MessageResponse;
+import com.adeprogramming.javagis.service.environmental.MeasurementContourService;
+import com.adeprogramming.javagis.service.environmental.MeasurementParameterDictionary;
+import com.adeprogramming.javagis.service.environmental.MeasurementSurfaceService;
+import com.adeprogramming.javagis.service.environmental.tiles.HeatmapTileService;
+import com.adeprogramming.javagis.service.environmental.tiles.TileMatrixSet;
+import com.adeprogramming.javagis.service.spatial.CoordinateTransformService;
+import org.locationtech.jts.geom.Envelope;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * REST controller for continuous measurement surfaces interpolated between stations.
+ */
+@RestController
+@Validated
+@RequestMapping("/api/environmental/surfaces")
+public class SurfaceController {
+
+    private static final MediaType IMAGE_TIFF = MediaType.parseMediaType("image/tiff");
+    private static final MediaType GEO_JSON = MediaType.parseMediaType("application/geo+json");
+    private static final int MAX_NEIGHBOURS = 64;
+    private static final int MAX_LEVELS = 32;
+
+    private final MeasurementSurfaceService measurementSurfaceService;
+    private final HeatmapTileService heatmapTileService;
+    private final MeasurementContourService measurementContourService;
+    private final MeasurementParameterDictionary measurementParameterDictionary;
+
+    @Autowired
+    public SurfaceController(
+            MeasurementSurfaceService measurementSurfaceService,
+            HeatmapTileService heatmapTileService,
+            MeasurementContourService measurementContourService,
+            MeasurementParameterDictionary measurementParameterDictionary) {
+        this.measurementSurfaceService = measurementSurfaceService;
+        this.heatmapTileService = heatmapTileService;
+        this.measurementContourService = measurementContourService;
+        this.measurementParameterDictionary = measurementParameterDictionary;
+    }
+
+    /**
+     * Interpolate the latest station readings of a parameter onto a grid in EPSG:3035.
+     *
+     * @param parameterName the name of the parameter
+     * @param unit the unit, required only if the parameter is recorded in more than one unit
+     * @param time the time of the surface, by default now
+     * @param lookback how old a station's latest reading may be
+     * @param bbox the area to cover as {@code minLon,minLat,maxLon,maxLat}
+     * @param resolution the cell size in metres
+     * @param method the interpolation method
+     * @param neighbours the number of nearest stations considered per cell
+     * @param maxDistance the radius in metres beyond which stations are ignored, unlimited if omitted
+     * @param power the IDW distance exponent
+     * @param format {@code geotiff} for a 32-bit float GeoTIFF, {@code binary} for the compact grid format
+     * @return the grid
+     */
+    @GetMapping("/grid")
+    public ResponseEntity<?> getGrid(
+            @RequestParam String parameterName,
+            @RequestParam(required = false) String unit,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime time,
+            @RequestParam(defaultValue = "PT1H") Duration lookback,
+            @RequestParam List<Double> bbox,
+            @RequestParam(defaultValue = "1000") double resolution,
+            @RequestParam(defaultValue = "IDW") InterpolationMethod method,
+            @RequestParam(defaultValue = "12") int neighbours,
+            @RequestParam(required = false) Double maxDistance,
+            @RequestParam(defaultValue = "2") double power,
+            @RequestParam(defaultValue = "geotiff") String format) {
+        if (bbox.size() != 4 || bbox.get(0) >= bbox.get(2) || bbox.get(1) >= bbox.get(3)) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: Bbox must be given as minLon,minLat,maxLon,maxLat!"));
+        }
+        if (!(resolution > 0)) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: Resolution must be positive!"));
+        }
+        if (neighbours < 1 || neighbours > MAX_NEIGHBOURS) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: Neighbours must be between 1 and " + MAX_NEIGHBOURS + "!"));
+        }
+        if (!(power > 0) || lookback.isNegative() || lookback.isZero()) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: Power and lookback must be positive!"));
+        }
+        if (!format.equals("geotiff") && !format.equals("binary")) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: Format must be 'geotiff' or 'binary'!"));
+        }
+        if (unit == null && measurementParameterDictionary.isAmbiguous(parameterName)) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: Parameter is recorded in several units, 'unit' is required!"));
+        }
+        Integer parameterCode = measurementParameterDictionary.resolve(parameterName, unit);
+        if (parameterCode == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        MeasurementSurfaceService.Surface surface;
+        try {
+            surface = measurementSurfaceService.interpolate(parameterCode,
+                    time != null ? time : LocalDateTime.now(), lookback,
+                    new Envelope(bbox.get(0), bbox.get(2), bbox.get(1), bbox.get(3)), resolution, method,
+                    neighbours, maxDistance != null ? maxDistance : Double.POSITIVE_INFINITY, power);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: " + e.getMessage() + "!"));
+        }
+
+        boolean geotiff = format.equals("geotiff");
+        byte[] body = geotiff
+                ? new GeoTiffWriter(GeoTiffWriter.DEFAULT_TILE_SIZE, true).write(surface.grid(), surface.values())
+                : BinaryGridWriter.write(surface.grid(), surface.values());
+        String filename = parameterName.replaceAll("[^A-Za-z0-9_-]", "_") + "-" + method.name().toLowerCase()
+                + (geotiff ? ".tif" : ".grid");
+        return ResponseEntity.ok()
+                .contentType(geotiff ? IMAGE_TIFF : MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.inline().filename(filename).build().toString())
+                .header("X-Station-Count", String.valueOf(surface.stationCount()))
+                .body(body);
+    }
+
+    /**
+     * Get an XYZ heatmap tile of the latest station readings of a parameter.
+     *
+     * @param z the zoom level
+     * @param x the tile column
+     * @param y the tile row, from the north
+     * @param parameterName the name of the parameter
+     * @param unit the unit, required only if the parameter is recorded in more than one unit
+     * @param time a time within the time bucket to show, by default now
+     * @param ramp the colour ramp as {@code value:RRGGBB[AA]} stops, e.g. {@code 0:2c7bb6,50:ffffbf,100:d7191c}
+     * @param crs the CRS of the tile grid, EPSG:3857 (Web Mercator) or EPSG:3035 (European ETRS89-LAEA)
+     * @return the PNG tile
+     */
+    @GetMapping("/tiles/{z}/{x}/{y}.png")
+    public ResponseEntity<?> getTile(
+            @PathVariable int z,
+            @PathVariable int x,
+            @PathVariable int y,
+            @RequestParam String parameterName,
+            @RequestParam(required = false) String unit,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime time,
+            @RequestParam(required = false) String ramp,
+            @RequestParam(defaultValue = "EPSG:3857") String crs) {
+        if (unit == null && measurementParameterDictionary.isAmbiguous(parameterName)) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: Parameter is recorded in several units, 'unit' is required!"));
+        }
+        Integer parameterCode = measurementParameterDictionary.resolve(parameterName, unit);
+        if (parameterCode == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        byte[] tile;
+        try {
+            TileMatrixSet tileMatrixSet = TileMatrixSet.of(CoordinateTransformService.parseEpsg(crs));
+            tile = heatmapTileService.getTile(parameterCode, time != null ? time : LocalDateTime.now(),
+                    tileMatrixSet, z, x, y, ramp);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: " + e.getMessage() + "!"));
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_PNG)
+                .cacheControl(CacheControl.maxAge(60, TimeUnit.SECONDS))
+                .body(tile);
+    }
+
+    /**
+     * Get the areas where the latest station readings of a parameter are at or above given levels,
+     * e.g. a limit value, as a GeoJSON FeatureCollection with one (Multi)Polygon feature per level.
+     *
+     * @param parameterName the name of the parameter
+     * @param unit the unit, required only if the parameter is recorded in more than one unit
+     * @param time a time within the time bucket to contour, by default now
+     * @param levels the levels
+     * @param bbox the area to cover as {@code minLon,minLat,maxLon,maxLat}
+     * @param resolution the cell size of the interpolated grid in metres
+     * @return the contours
+     */
+    @GetMapping("/contours")
+    public ResponseEntity<?> getContours(
+            @RequestParam String parameterName,
+            @RequestParam(required = false) String unit,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime time,
+            @RequestParam List<Double> levels,
+            @RequestParam List<Double> bbox,
+            @RequestParam(defaultValue = "1000") double resolution) {
+        if (bbox.size() != 4 || bbox.get(0) >= bbox.get(2) || bbox.get(1) >= bbox.get(3)) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: Bbox must be given as minLon,minLat,maxLon,maxLat!"));
+        }
+        if (!(resolution > 0)) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: Resolution must be positive!"));
+        }
+        if (levels.isEmpty() || levels.size() > MAX_LEVELS || levels.stream().anyMatch(level -> !Double.isFinite(level))) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: Between 1 and " + MAX_LEVELS + " finite levels are required!"));
+        }
+        if (unit == null && measurementParameterDictionary.isAmbiguous(parameterName)) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: Parameter is recorded in several units, 'unit' is required!"));
+        }
+        Integer parameterCode = measurementParameterDictionary.resolve(parameterName, unit);
+        if (parameterCode == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        byte[] contours;
+        try {
+            contours = measurementContourService.getContours(parameterCode,
+                    time != null ? time : LocalDateTime.now(), levels,
+                    new Envelope(bbox.get(0), bbox.get(2), bbox.get(1), bbox.get(3)), resolution);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: " + e.getMessage() + "!"));
+        }
+        return ResponseEntity.ok()
+                .contentType(GEO_JSON)
+                .cacheControl(CacheControl.maxAge(60, TimeUnit.SECONDS))
+                .body(contours);
+    }
+}
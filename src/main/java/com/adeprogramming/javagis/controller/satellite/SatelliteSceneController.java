@@ -0,0 +1,130 @@
+package com.adeprogramming.javagis.controller.satellite;
+
+import com.adeprogramming.javagis.payload.satellite.SceneIngestRequest;
+import com.adeprogramming.javagis.payload.satellite.SceneResponse;
+import com.adeprogramming.javagis.security.payload.MessageResponse;
+import com.adeprogramming.javagis.service.satellite.SatelliteSceneService;
+import com.adeprogramming.javagis.service.satellite.ZonalStatisticsService;
+import com.adeprogramming.javagis.service.spatial.CoordinateTransformService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * REST controller for satellite scene endpoints.
+ * Provides endpoints for ingesting satellite scenes and following their conversion.
+ */
+@RestController
+@RequestMapping("/api/satellite/scenes")
+public class SatelliteSceneController {
+
+    private final SatelliteSceneService satelliteSceneService;
+    private final ZonalStatisticsService zonalStatisticsService;
+
+    @Autowired
+    public SatelliteSceneController(SatelliteSceneService satelliteSceneService,
+                                    ZonalStatisticsService zonalStatisticsService) {
+        this.satelliteSceneService = satelliteSceneService;
+        this.zonalStatisticsService = zonalStatisticsService;
+    }
+
+    /**
+     * Ingest a satellite scene from a multi-band GeoTIFF, which is converted into a
+     * cloud-optimised GeoTIFF in the background. The GeoTIFF is either the request body,
+     * streamed to disk as it arrives so it is not subject to the multipart size limit, or named
+     * by its path in the upload directory. Ingesting a scene ID again replaces the scene.
+     *
+     * @param path the path of a GeoTIFF in the upload directory, instead of the request body
+     * @param name the file name of the GeoTIFF in the request body
+     * @param sceneId the scene ID, by default the file name without its extension
+     * @param datetime the acquisition time, e.g. 2024-06-01T10:30:00Z, if the GeoTIFF has no DateTime
+     * @param bands the common name of each band, e.g. {@code blue,green,red,nir}, by default
+     *              derived from the band descriptions
+     * @param crs the CRS of the scene if the GeoTIFF does not declare one, e.g. EPSG:32632
+     * @param platform the satellite, e.g. sentinel-2a
+     * @return the registered scene
+     */
+    @PostMapping
+    public ResponseEntity<?> ingestScene(
+            HttpServletRequest request,
+            @RequestParam(required = false) String path,
+            @RequestParam(defaultValue = "scene.tif") String name,
+            @RequestParam(required = false) String sceneId,
+            @RequestParam(required = false) String datetime,
+            @RequestParam(required = false) String bands,
+            @RequestParam(required = false) String crs,
+            @RequestParam(required = false) String platform) {
+        try {
+            SceneIngestRequest ingestRequest = SceneIngestRequest.builder()
+                    .sceneId(sceneId)
+                    .datetime(datetime)
+                    .bands(bands != null ? Arrays.asList(bands.split(",", -1)) : null)
+                    .epsg(crs != null ? CoordinateTransformService.parseEpsg(crs) : null)
+                    .platform(platform)
+                    .build();
+            if (path != null && !path.isBlank()) {
+                return ResponseEntity.accepted().body(satelliteSceneService.ingest(path, ingestRequest));
+            }
+            try (InputStream body = request.getInputStream()) {
+                return ResponseEntity.accepted().body(satelliteSceneService.ingest(body, name, ingestRequest));
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: " + e.getMessage() + "!"));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: The GeoTIFF could not be read!"));
+        }
+    }
+
+    /**
+     * @return all satellite scenes, latest acquisition first
+     */
+    @GetMapping
+    public ResponseEntity<List<SceneResponse>> getScenes() {
+        return ResponseEntity.ok(satelliteSceneService.getScenes());
+    }
+
+    /**
+     * @param sceneId the scene ID
+     * @return the scene, with the progress of its conversion
+     */
+    @GetMapping("/{sceneId}")
+    public ResponseEntity<?> getScene(@PathVariable String sceneId) {
+        return satelliteSceneService.getScene(sceneId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Recompute the NDVI statistics of the fields in a ready scene, e.g. after fields were
+     * imported. They are computed once when the scene becomes ready.
+     *
+     * @param sceneId the scene ID
+     * @return the numbers of fields measured, skipped and failed
+     */
+    @PostMapping("/{sceneId}/statistics")
+    public ResponseEntity<?> computeStatistics(@PathVariable String sceneId) {
+        try {
+            return ResponseEntity.ok(zonalStatisticsService.computeScene(sceneId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: " + e.getMessage() + "!"));
+        } catch (UncheckedIOException e) {
+            return ResponseEntity.internalServerError()
+                    .body(new MessageResponse("Error: The scene could not be read!"));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.adeprogramming.javagis.controller.satellite;
+
+import com.adeprogramming.javagis.payload.satellite.SceneChangeResponse;
+import com.adeprogramming.javagis.security.payload.MessageResponse;
+import com.adeprogramming.javagis.service.satellite.ChangeDetectionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * REST controller for NDVI change detection between satellite scenes.
+ */
+@RestController
+@RequestMapping("/api/satellite/changes")
+public class SceneChangeController {
+
+    private final ChangeDetectionService changeDetectionService;
+
+    @Autowired
+    public SceneChangeController(ChangeDetectionService changeDetectionService) {
+        this.changeDetectionService = changeDetectionService;
+    }
+
+    /**
+     * Compute the NDVI change between two co-registered scenes in the background, replacing an
+     * earlier change between them.
+     *
+     * @param before the ID of the earlier scene
+     * @param after the ID of the later scene
+     * @param threshold the NDVI loss at which a field is flagged, e.g. 0.15; the configured default if omitted
+     * @return the change, processing
+     */
+    @PostMapping
+    public ResponseEntity<?> detectChange(
+            @RequestParam String before,
+            @RequestParam String after,
+            @RequestParam(required = false) Double threshold) {
+        try {
+            return ResponseEntity.accepted().body(changeDetectionService.start(before, after, threshold));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: " + e.getMessage() + "!"));
+        }
+    }
+
+    /**
+     * @return all changes, newest first
+     */
+    @GetMapping
+    public ResponseEntity<List<SceneChangeResponse>> getChanges() {
+        return ResponseEntity.ok(changeDetectionService.getChanges());
+    }
+
+    /**
+     * @param id the ID of the change
+     * @param flaggedOnly whether to list only the fields flagged as having lost vegetation
+     * @return the change with the changes of its fields, largest loss first
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getChange(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "false") boolean flaggedOnly) {
+        return changeDetectionService.getChange(id, flaggedOnly)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
@@ -1,5 +1,7 @@
 package com.adeprogramming.javagis.model.agricultural;
 
+import com.adeprogramming.javagis.model.listener.FieldMeasureEntityListener;
+import com.adeprogramming.javagis.model.listener.SpatialEntityListener;
 import com.adeprogramming.javagis.model.spatial.SpatialEntity;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -18,15 +20,25 @@ import java.time.LocalDate;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@EntityListeners({FieldMeasureEntityListener.class, SpatialEntityListener.class})
 @Table(name = "agricultural_fields")
 public class AgriculturalField extends SpatialEntity {
 
     @Column(name = "field_id", nullable = false, unique = true)
     private String fieldId;
 
+    /**
+     * The area on the WGS 84 ellipsoid, set from the geometry whenever the field is written.
+     */
     @Column(name = "area_hectares")
     private Double areaHectares;
 
+    /**
+     * The perimeter on the WGS 84 ellipsoid, set from the geometry whenever the field is written.
+     */
+    @Column(name = "perimeter_metres")
+    private Double perimeterMetres;
+
     @Column(name = "soil_type")
     private String soilType;
 
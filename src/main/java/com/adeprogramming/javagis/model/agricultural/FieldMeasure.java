@@ -0,0 +1,35 @@
+package com.adeprogramming.javagis.model.agricultural;
+
+import com.adeprogramming.javagis.analytics.geodesy.GeodesicMeasure;
+import org.locationtech.jts.geom.Geometry;
+
+/**
+ * The area and perimeter of a field boundary, measured on the WGS 84 ellipsoid.
+ *
+ * @param areaSquareMetres the area in square metres
+ * @param perimeterMetres the length of all rings, holes included, in metres
+ */
+public record FieldMeasure(double areaSquareMetres, double perimeterMetres) {
+
+    public static final double SQUARE_METRES_PER_HECTARE = 10_000;
+
+    private static final ThreadLocal<GeodesicMeasure> MEASURE = ThreadLocal.withInitial(GeodesicMeasure::new);
+
+    /**
+     * Measure a geometry on the ellipsoid.
+     *
+     * @param geometry the geometry (WGS 84)
+     * @return the area and perimeter
+     */
+    public static FieldMeasure of(Geometry geometry) {
+        GeodesicMeasure measure = MEASURE.get();
+        return new FieldMeasure(measure.area(geometry), measure.perimeter(geometry));
+    }
+
+    /**
+     * @return the area in hectares
+     */
+    public double areaHectares() {
+        return areaSquareMetres / SQUARE_METRES_PER_HECTARE;
+    }
+}
@@ -6,6 +6,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
 
 import java.time.LocalDateTime;
 
@@ -17,22 +19,29 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "measurements")
+@Table(name = "measurements",
+        uniqueConstraints = @UniqueConstraint(name = "uk_measurements_station_parameter_time",
+                columnNames = {"station_id", "parameter_code", "measurement_time"}),
+        indexes = {
+                @Index(name = "idx_measurements_parameter_time", columnList = "parameter_code, measurement_time"),
+                @Index(name = "idx_measurements_station_time", columnList = "station_id, measurement_time, id")
+        })
 public class Measurement extends BaseEntity {
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "station_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
     private MonitoringStation station;
 
-    @Column(name = "parameter_name", nullable = false)
-    private String parameterName;
+    /**
+     * Code of the (parameter name, unit) pair in the measurement parameter catalog.
+     */
+    @Column(name = "parameter_code", nullable = false)
+    private Integer parameterCode;
 
     @Column(name = "parameter_value", nullable = false)
     private Double parameterValue;
 
-    @Column(name = "unit", nullable = false)
-    private String unit;
-
     @Column(name = "measurement_time", nullable = false)
     private LocalDateTime measurementTime;
 
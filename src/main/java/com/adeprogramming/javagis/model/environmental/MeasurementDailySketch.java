@@ -0,0 +1,63 @@
+package com.adeprogramming.javagis.model.environmental;
+
+import com.adeprogramming.javagis.model.base.BaseEntity;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.time.LocalDate;
+
+/**
+ * Entity holding the daily summary of one parameter at one monitoring station.
+ * The serialized t-digest allows percentile queries over any range of days by merging rows,
+ * without reading raw measurements.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "measurement_daily_sketches",
+        uniqueConstraints = @UniqueConstraint(name = "uk_measurement_daily_sketches_key",
+                columnNames = {"station_id", "parameter_code", "day"}))
+public class MeasurementDailySketch extends BaseEntity {
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "station_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private MonitoringStation station;
+
+    @Column(name = "parameter_code", nullable = false)
+    private Integer parameterCode;
+
+    @Column(name = "day", nullable = false)
+    private LocalDate day;
+
+    @Column(name = "sample_count", nullable = false)
+    private Long sampleCount = 0L;
+
+    /**
+     * The number of measurements flagged as exceeding their threshold.
+     */
+    @Column(name = "exceedance_count", nullable = false)
+    private Long exceedanceCount = 0L;
+
+    @Column(name = "value_sum", nullable = false)
+    private Double valueSum = 0.0;
+
+    @Column(name = "min_value")
+    private Double minValue;
+
+    @Column(name = "max_value")
+    private Double maxValue;
+
+    /**
+     * The serialized t-digest of all values of the day.
+     */
+    @Column(name = "digest", columnDefinition = "bytea")
+    private byte[] digest;
+}
@@ -0,0 +1,32 @@
+package com.adeprogramming.javagis.model.environmental;
+
+import com.adeprogramming.javagis.model.base.BaseEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * Entity representing an entry of the measurement parameter catalog.
+ * Measurements reference a (parameter name, unit) pair by its integer code instead of
+ * repeating both strings on every row.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "measurement_parameters",
+        uniqueConstraints = @UniqueConstraint(name = "uk_measurement_parameters_name_unit", columnNames = {"name", "unit"}))
+public class MeasurementParameter extends BaseEntity {
+
+    @Column(name = "name", nullable = false)
+    private String name;
+
+    @Column(name = "unit", nullable = false)
+    private String unit;
+}
@@ -1,5 +1,6 @@
 package com.adeprogramming.javagis.model.environmental;
 
+import com.adeprogramming.javagis.model.listener.SpatialEntityListener;
 import com.adeprogramming.javagis.model.spatial.SpatialEntity;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -7,18 +8,19 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
-import java.util.HashSet;
-import java.util.Set;
-
 /**
  * Entity representing an environmental monitoring station.
  * Used for tracking air quality, water quality, and noise pollution.
+ * Measurements reference their station but are not mapped as a collection here, so loading,
+ * merging or saving a station never touches measurement rows; they are read through
+ * {@code MeasurementRepository} instead.
  */
 @Data
 @EqualsAndHashCode(callSuper = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@EntityListeners(SpatialEntityListener.class)
 @Table(name = "monitoring_stations")
 public class MonitoringStation extends SpatialEntity {
 
@@ -42,8 +44,13 @@ public class MonitoringStation extends SpatialEntity {
     @Column(name = "maintenance_date")
     private String maintenanceDate;
 
-    @OneToMany(mappedBy = "station", cascade = CascadeType.ALL, orphanRemoval = true)
-    private Set<Measurement> measurements = new HashSet<>();
+    /**
+     * Whether the daily measurement sketches of the station have been rebuilt from its raw
+     * measurements, after which ingest keeps them complete. Set only by the sketch back-fill.
+     */
+    @Column(name = "sketches_backfilled", columnDefinition = "boolean default false",
+            insertable = false, updatable = false)
+    private Boolean sketchesBackfilled;
 
     /**
      * Enum representing the type of monitoring station.
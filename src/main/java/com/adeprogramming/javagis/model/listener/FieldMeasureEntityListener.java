@@ -0,0 +1,25 @@
+package com.adeprogramming.javagis.model.listener;
+
+import com.adeprogramming.javagis.model.agricultural.AgriculturalField;
+import com.adeprogramming.javagis.model.agricultural.FieldMeasure;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+
+/**
+ * JPA entity listener that sets the area and perimeter of an agricultural field from its
+ * boundary whenever it is written, so they cannot drift from the geometry. Fields without a
+ * geometry keep the area they were given.
+ */
+public class FieldMeasureEntityListener {
+
+    @PrePersist
+    @PreUpdate
+    public void measure(AgriculturalField field) {
+        if (field.getGeometry() == null || field.getGeometry().isEmpty()) {
+            return;
+        }
+        FieldMeasure measure = FieldMeasure.of(field.getGeometry());
+        field.setAreaHectares(measure.areaHectares());
+        field.setPerimeterMetres(measure.perimeterMetres());
+    }
+}
@@ -0,0 +1,13 @@
+package com.adeprogramming.javagis.model.listener;
+
+import com.adeprogramming.javagis.model.spatial.SpatialEntity;
+
+/**
+ * Published by {@link SpatialEntityListener} after a transaction that wrote or removed a spatial
+ * entity has committed, on the thread that committed it. Listeners must be quick.
+ *
+ * @param entity the entity as it was written
+ * @param removed whether the entity was removed
+ */
+public record SpatialEntityChangedEvent(SpatialEntity entity, boolean removed) {
+}
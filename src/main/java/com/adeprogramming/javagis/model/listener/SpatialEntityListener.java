@@ -0,0 +1,52 @@
+package com.adeprogramming.javagis.model.listener;
+
+import com.adeprogramming.javagis.model.spatial.SpatialEntity;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JPA entity listener that publishes a {@link SpatialEntityChangedEvent} for every written or
+ * removed spatial entity, e.g. to keep in-memory indexes of their geometries in sync with the
+ * database. Events are published only once the transaction has committed, so rolled-back writes
+ * never become visible.
+ */
+@Component
+public class SpatialEntityListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    public SpatialEntityListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void saved(SpatialEntity entity) {
+        afterCommit(() -> eventPublisher.publishEvent(new SpatialEntityChangedEvent(entity, false)));
+    }
+
+    @PostRemove
+    public void removed(SpatialEntity entity) {
+        afterCommit(() -> eventPublisher.publishEvent(new SpatialEntityChangedEvent(entity, true)));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
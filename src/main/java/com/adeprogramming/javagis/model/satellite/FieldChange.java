@@ -0,0 +1,66 @@
+package com.adeprogramming.javagis.model.satellite;
+
+import com.adeprogramming.javagis.model.agricultural.AgriculturalField;
+import com.adeprogramming.javagis.model.base.BaseEntity;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * Entity holding the NDVI change of one agricultural field between two scenes, over the pixels
+ * inside the field with an NDVI in both.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "field_changes",
+        uniqueConstraints = @UniqueConstraint(name = "uk_field_changes_key",
+                columnNames = {"change_id", "field_id"}))
+public class FieldChange extends BaseEntity {
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "change_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private SceneChange change;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "field_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private AgriculturalField field;
+
+    /**
+     * The number of pixels inside the field.
+     */
+    @Column(name = "pixel_count", nullable = false)
+    private Long pixelCount;
+
+    /**
+     * The number of those pixels with an NDVI in both scenes.
+     */
+    @Column(name = "valid_pixel_count", nullable = false)
+    private Long validPixelCount;
+
+    @Column(name = "mean_change")
+    private Double meanChange;
+
+    @Column(name = "min_change")
+    private Double minChange;
+
+    @Column(name = "max_change")
+    private Double maxChange;
+
+    @Column(name = "std_dev")
+    private Double stdDev;
+
+    /**
+     * Whether the mean change is a loss of at least the threshold of the change.
+     */
+    @Column(name = "flagged", nullable = false)
+    private Boolean flagged = false;
+}
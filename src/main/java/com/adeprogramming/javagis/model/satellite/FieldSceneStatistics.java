@@ -0,0 +1,73 @@
+package com.adeprogramming.javagis.model.satellite;
+
+import com.adeprogramming.javagis.model.agricultural.AgriculturalField;
+import com.adeprogramming.javagis.model.base.BaseEntity;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity holding the NDVI statistics of one agricultural field in one satellite scene, over the
+ * pixels whose centres lie inside the field. The acquisition time is copied from the scene so a
+ * field's time series is read from this table alone.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "field_scene_statistics",
+        uniqueConstraints = @UniqueConstraint(name = "uk_field_scene_statistics_key",
+                columnNames = {"field_id", "scene_id"}),
+        indexes = @Index(name = "idx_field_scene_statistics_scene", columnList = "scene_id"))
+public class FieldSceneStatistics extends BaseEntity {
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "field_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private AgriculturalField field;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "scene_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private SatelliteScene scene;
+
+    @Column(name = "observation_date", nullable = false)
+    private LocalDateTime observationDate;
+
+    /**
+     * The number of pixels inside the field.
+     */
+    @Column(name = "pixel_count", nullable = false)
+    private Long pixelCount;
+
+    /**
+     * The number of those pixels with an NDVI, i.e. not no data in the red or near-infrared band.
+     */
+    @Column(name = "valid_pixel_count", nullable = false)
+    private Long validPixelCount;
+
+    @Column(name = "ndvi_mean")
+    private Double ndviMean;
+
+    @Column(name = "ndvi_min")
+    private Double ndviMin;
+
+    @Column(name = "ndvi_max")
+    private Double ndviMax;
+
+    @Column(name = "ndvi_std_dev")
+    private Double ndviStdDev;
+
+    /**
+     * The number of valid pixels in each NDVI bin, from the bin starting at -1.
+     */
+    @Column(name = "ndvi_histogram", columnDefinition = "bigint[]")
+    private long[] ndviHistogram;
+}
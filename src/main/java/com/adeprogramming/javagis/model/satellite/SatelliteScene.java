@@ -0,0 +1,89 @@
+package com.adeprogramming.javagis.model.satellite;
+
+import com.adeprogramming.javagis.model.spatial.SpatialEntity;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * Entity representing an ingested satellite scene, stored as a cloud-optimised GeoTIFF.
+ * The geometry is the footprint of the scene in WGS 84 and the observation date its
+ * acquisition time; the metadata holds the band descriptions and the pixel grid.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "satellite_scenes")
+public class SatelliteScene extends SpatialEntity {
+
+    @Column(name = "scene_id", nullable = false, unique = true)
+    private String sceneId;
+
+    @Column(name = "status", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private SceneStatus status = SceneStatus.PROCESSING;
+
+    /**
+     * The satellite, e.g. sentinel-2a.
+     */
+    @Column(name = "platform")
+    private String platform;
+
+    /**
+     * The EPSG code of the CRS of the pixel grid.
+     */
+    @Column(name = "raster_epsg", nullable = false)
+    private Integer rasterEpsg;
+
+    @Column(name = "width", nullable = false)
+    private Integer width;
+
+    @Column(name = "height", nullable = false)
+    private Integer height;
+
+    @Column(name = "band_count", nullable = false)
+    private Integer bandCount;
+
+    /**
+     * The sample type of all bands, e.g. uint16.
+     */
+    @Column(name = "data_type", nullable = false)
+    private String dataType;
+
+    @Column(name = "no_data")
+    private Double noData;
+
+    /**
+     * The pixel size in units of the raster CRS.
+     */
+    @Column(name = "resolution")
+    private Double resolution;
+
+    @Column(name = "cog_path")
+    private String cogPath;
+
+    @Column(name = "cog_size")
+    private Long cogSize;
+
+    @Column(name = "overview_count")
+    private Integer overviewCount;
+
+    /**
+     * Why the scene could not be converted, if it failed.
+     */
+    @Column(name = "error", length = 1000)
+    private String error;
+
+    /**
+     * Enum representing the status of a satellite scene.
+     */
+    public enum SceneStatus {
+        PROCESSING,
+        READY,
+        FAILED
+    }
+}
@@ -0,0 +1,73 @@
+package com.adeprogramming.javagis.model.satellite;
+
+import com.adeprogramming.javagis.model.base.BaseEntity;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * Entity representing the NDVI change between two co-registered satellite scenes: a raster of
+ * the per-pixel difference, after minus before, stored as a cloud-optimised GeoTIFF, and the
+ * fields whose mean change is a loss of at least the threshold.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "scene_changes",
+        uniqueConstraints = @UniqueConstraint(name = "uk_scene_changes_scenes",
+                columnNames = {"before_scene_id", "after_scene_id"}))
+public class SceneChange extends BaseEntity {
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "before_scene_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private SatelliteScene beforeScene;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "after_scene_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private SatelliteScene afterScene;
+
+    @Column(name = "status", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private SatelliteScene.SceneStatus status = SatelliteScene.SceneStatus.PROCESSING;
+
+    /**
+     * The NDVI loss at which a field is flagged, e.g. 0.15 flags a mean change of -0.15 or less.
+     */
+    @Column(name = "threshold", nullable = false)
+    private Double threshold;
+
+    @Column(name = "cog_path")
+    private String cogPath;
+
+    @Column(name = "cog_size")
+    private Long cogSize;
+
+    @Column(name = "overview_count")
+    private Integer overviewCount;
+
+    /**
+     * The number of fields measured.
+     */
+    @Column(name = "field_count")
+    private Integer fieldCount;
+
+    /**
+     * The number of fields flagged as having lost vegetation.
+     */
+    @Column(name = "flagged_count")
+    private Integer flaggedCount;
+
+    /**
+     * Why the change could not be computed, if it failed.
+     */
+    @Column(name = "error", length = 1000)
+    private String error;
+}
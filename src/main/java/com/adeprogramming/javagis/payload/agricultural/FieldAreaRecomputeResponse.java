@@ -0,0 +1,33 @@
+package com.adeprogramming.javagis.payload.agricultural;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Response payload for a bulk recompute of field areas and perimeters.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FieldAreaRecomputeResponse {
+
+    /**
+     * The number of fields read.
+     */
+    private int scanned;
+
+    /**
+     * The number of fields whose area or perimeter changed and was written.
+     */
+    private int updated;
+
+    /**
+     * The number of fields whose geometry could not be read.
+     */
+    private int failed;
+
+    private long millis;
+}
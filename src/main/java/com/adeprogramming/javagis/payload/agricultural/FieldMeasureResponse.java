@@ -0,0 +1,25 @@
+package com.adeprogramming.javagis.payload.agricultural;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Response payload for the area and perimeter of a boundary, measured on the WGS 84 ellipsoid.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FieldMeasureResponse {
+
+    private double areaSquareMetres;
+
+    private double areaHectares;
+
+    /**
+     * The length of all rings, holes included, in metres.
+     */
+    private double perimeterMetres;
+}
@@ -0,0 +1,61 @@
+package com.adeprogramming.javagis.payload.environmental;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Request payload for aggregating one parameter over all stations inside an area.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AreaAggregationRequest {
+
+    /**
+     * The area as a GeoJSON Polygon or MultiPolygon (WGS 84).
+     */
+    @NotNull
+    private JsonNode geometry;
+
+    @NotBlank
+    private String parameterName;
+
+    /**
+     * The unit, required only if the parameter is recorded in more than one unit.
+     */
+    private String unit;
+
+    /**
+     * The start of the time range (inclusive); buckets are aligned to it.
+     */
+    @NotNull
+    private LocalDateTime from;
+
+    /**
+     * The end of the time range (exclusive).
+     */
+    @NotNull
+    private LocalDateTime to;
+
+    /**
+     * The bucket size as an ISO-8601 duration, e.g. {@code PT1H} or {@code P1D}.
+     */
+    @NotNull
+    private Duration bucket;
+
+    /**
+     * Whether daily rollups may be used for whole-day buckets instead of raw measurements.
+     * They are only used once every station in the area has been back-filled, so the result
+     * is the same either way; off by default.
+     */
+    private boolean useRollups;
+}
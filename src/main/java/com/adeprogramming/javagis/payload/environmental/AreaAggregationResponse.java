@@ -0,0 +1,72 @@
+package com.adeprogramming.javagis.payload.environmental;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Response payload for a parameter aggregated over all stations inside an area.
+ * Buckets are returned in columnar form; buckets without measurements are left out.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AreaAggregationResponse {
+
+    private String parameterName;
+
+    private String unit;
+
+    /**
+     * The start of the requested time range (ISO-8601).
+     */
+    private String from;
+
+    /**
+     * The end of the requested time range (ISO-8601).
+     */
+    private String to;
+
+    /**
+     * The bucket size (ISO-8601 duration).
+     */
+    private String bucket;
+
+    /**
+     * Where the aggregates were computed from: {@code measurements} or {@code daily-rollups}.
+     */
+    private String source;
+
+    /**
+     * Bucket start times in epoch milliseconds (UTC).
+     */
+    private long[] timestamps;
+
+    /**
+     * The number of measurements per bucket, parallel to {@link #timestamps}.
+     */
+    private long[] counts;
+
+    /**
+     * The mean of all measurements in the bucket, across stations.
+     */
+    private double[] mean;
+
+    private double[] min;
+
+    private double[] max;
+
+    /**
+     * The number of stations that reported in the bucket.
+     */
+    private int[] stations;
+
+    /**
+     * The number of measurements flagged as exceeding their threshold.
+     */
+    private long[] exceedances;
+}
@@ -0,0 +1,48 @@
+package com.adeprogramming.javagis.payload.environmental;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Response payload for a measurement ingest batch.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class IngestResponse {
+
+    /**
+     * The number of readings written, or queued for writing when ingest is asynchronous.
+     */
+    private int accepted;
+
+    /**
+     * The number of readings skipped because they were already written.
+     */
+    private int duplicates;
+
+    /**
+     * The number of readings not accepted because the ingest queue is full.
+     * They should be sent again after the {@code Retry-After} delay.
+     */
+    private int deferred;
+
+    /**
+     * The number of readings that could not be written.
+     */
+    private int rejected;
+
+    /**
+     * One message per rejected reading.
+     */
+    @Builder.Default
+    private List<String> errors = new ArrayList<>();
+}
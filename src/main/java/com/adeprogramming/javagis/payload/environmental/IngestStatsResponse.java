@@ -0,0 +1,26 @@
+package com.adeprogramming.javagis.payload.environmental;
+
+import com.adeprogramming.javagis.service.environmental.MeasurementIngestService;
+import com.adeprogramming.javagis.service.environmental.ingest.WriteBehindIngestPipeline;
+import com.adeprogramming.javagis.service.environmental.ingest.socket.LineProtocolListener;
+import com.adeprogramming.javagis.service.environmental.live.LiveMeasurementDispatcher;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Response payload for measurement ingest counters.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestStatsResponse {
+
+    private MeasurementIngestService.IngestStats ingest;
+
+    private WriteBehindIngestPipeline.PipelineStats pipeline;
+
+    private LineProtocolListener.ListenerStats socket;
+
+    private LiveMeasurementDispatcher.LiveStats live;
+}
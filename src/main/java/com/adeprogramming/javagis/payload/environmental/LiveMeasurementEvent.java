@@ -0,0 +1,49 @@
+package com.adeprogramming.javagis.payload.environmental;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Payload of a live measurement pushed to stream subscribers.
+ * Sent as a {@code measurement} event, or as an {@code exceedance} event when the reading
+ * crossed its threshold.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class LiveMeasurementEvent {
+
+    private String stationId;
+
+    /**
+     * Longitude of the station (WGS 84).
+     */
+    private double longitude;
+
+    /**
+     * Latitude of the station (WGS 84).
+     */
+    private double latitude;
+
+    private String parameterName;
+
+    private String unit;
+
+    private double value;
+
+    /**
+     * The measurement time (ISO-8601).
+     */
+    private String measurementTime;
+
+    private String qualityFlag;
+
+    private boolean thresholdExceeded;
+
+    private Double thresholdValue;
+}
@@ -0,0 +1,77 @@
+package com.adeprogramming.javagis.payload.environmental;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Response payload for one page of the measurements of a monitoring station.
+ * Pages are chained with an opaque cursor rather than page numbers.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MeasurementPageResponse {
+
+    /**
+     * The business ID of the monitoring station.
+     */
+    private String stationId;
+
+    /**
+     * The start of the requested time window (ISO-8601).
+     */
+    private String from;
+
+    /**
+     * The end of the requested time window (ISO-8601).
+     */
+    private String to;
+
+    /**
+     * The measurements of this page, ordered by measurement time.
+     */
+    @Builder.Default
+    private List<Item> items = new ArrayList<>();
+
+    /**
+     * The cursor to pass as {@code after} to get the next page; absent on the last page.
+     */
+    private String nextCursor;
+
+    /**
+     * A single measurement.
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Item {
+
+        private Long id;
+
+        private String measurementTime;
+
+        private String parameterName;
+
+        private String unit;
+
+        private Double value;
+
+        private String qualityFlag;
+
+        private Boolean thresholdExceeded;
+
+        private Double thresholdValue;
+
+        private String notes;
+    }
+}
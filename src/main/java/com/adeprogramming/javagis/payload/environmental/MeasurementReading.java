@@ -0,0 +1,45 @@
+package com.adeprogramming.javagis.payload.environmental;
+
+import com.adeprogramming.javagis.model.environmental.Measurement;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Request payload for a single reading sent by a station gateway.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MeasurementReading {
+
+    /**
+     * The business ID of the monitoring station.
+     */
+    @NotBlank
+    private String stationId;
+
+    @NotBlank
+    private String parameterName;
+
+    @NotNull
+    private Double value;
+
+    @NotBlank
+    private String unit;
+
+    @NotNull
+    private LocalDateTime measurementTime;
+
+    private Measurement.QualityFlag qualityFlag;
+
+    private Double thresholdValue;
+
+    private String notes;
+}
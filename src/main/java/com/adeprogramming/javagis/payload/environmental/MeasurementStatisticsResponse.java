@@ -0,0 +1,79 @@
+package com.adeprogramming.javagis.payload.environmental;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response payload for percentile statistics of one parameter at one station over a range of days.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MeasurementStatisticsResponse {
+
+    private String stationId;
+
+    private String parameterName;
+
+    private String unit;
+
+    private String fromDay;
+
+    private String toDay;
+
+    /**
+     * The number of days with at least one measurement.
+     */
+    private int daysCovered;
+
+    /**
+     * Whether every day with measurements in the range has a complete sketch.
+     */
+    private boolean complete;
+
+    /**
+     * Days with measurements whose sketch is missing or partial because their readings predate
+     * the sketches and have not been back-filled yet. They are left out of all statistics.
+     */
+    @Builder.Default
+    private List<String> incompleteDays = new ArrayList<>();
+
+    private long count;
+
+    private Double mean;
+
+    private Double min;
+
+    private Double max;
+
+    /**
+     * Estimated percentiles keyed by name, e.g. {@code p95}.
+     */
+    @Builder.Default
+    private Map<String, Double> percentiles = new LinkedHashMap<>();
+
+    /**
+     * The number of measurements flagged as exceeding their threshold on ingest.
+     */
+    private long exceedanceCount;
+
+    /**
+     * The threshold requested for {@link #estimatedCountAboveThreshold}, if any.
+     */
+    private Double threshold;
+
+    /**
+     * The estimated number of measurements above {@link #threshold}.
+     */
+    private Long estimatedCountAboveThreshold;
+}
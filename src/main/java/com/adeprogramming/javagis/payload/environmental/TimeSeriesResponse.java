@@ -0,0 +1,79 @@
+package com.adeprogramming.javagis.payload.environmental;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Response payload for downsampled measurement time series.
+ * Each series is returned in columnar form to keep chart payloads small.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TimeSeriesResponse {
+
+    /**
+     * The start of the requested time range (ISO-8601).
+     */
+    private String from;
+
+    /**
+     * The end of the requested time range (ISO-8601).
+     */
+    private String to;
+
+    /**
+     * The requested point budget per series.
+     */
+    private int points;
+
+    /**
+     * The downsampling algorithm applied.
+     */
+    private String mode;
+
+    /**
+     * The downsampled series, in request order.
+     */
+    @Builder.Default
+    private List<Series> series = new ArrayList<>();
+
+    /**
+     * A single downsampled (station, parameter) series.
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Series {
+
+        private String stationId;
+
+        private String parameterName;
+
+        private String unit;
+
+        /**
+         * The number of raw measurements read for this series.
+         */
+        private long sourceCount;
+
+        /**
+         * Point times in epoch milliseconds (UTC).
+         */
+        private long[] timestamps;
+
+        /**
+         * Point values, parallel to {@link #timestamps}.
+         */
+        private double[] values;
+    }
+}
@@ -0,0 +1,35 @@
+package com.adeprogramming.javagis.payload.satellite;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Response payload for the NDVI change of a field between two scenes.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FieldChangeResponse {
+
+    private String fieldId;
+
+    private long pixelCount;
+
+    /**
+     * The number of pixels inside the field with an NDVI in both scenes.
+     */
+    private long validPixelCount;
+
+    private Double meanChange;
+
+    private Double minChange;
+
+    private Double maxChange;
+
+    private Double stdDev;
+
+    private boolean flagged;
+}
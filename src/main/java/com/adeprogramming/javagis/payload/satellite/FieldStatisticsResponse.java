@@ -0,0 +1,50 @@
+package com.adeprogramming.javagis.payload.satellite;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Response payload for the NDVI statistics of a field in a satellite scene.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FieldStatisticsResponse {
+
+    private String fieldId;
+
+    private String sceneId;
+
+    /**
+     * The acquisition time of the scene (UTC).
+     */
+    private LocalDateTime datetime;
+
+    /**
+     * The number of pixels inside the field.
+     */
+    private long pixelCount;
+
+    /**
+     * The number of pixels inside the field with an NDVI.
+     */
+    private long validPixelCount;
+
+    private Double mean;
+
+    private Double min;
+
+    private Double max;
+
+    private Double stdDev;
+
+    /**
+     * The number of valid pixels in each of the bins of width 0.1 from -1 to 1.
+     */
+    private long[] histogram;
+}
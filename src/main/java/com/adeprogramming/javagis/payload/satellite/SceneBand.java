@@ -0,0 +1,28 @@
+package com.adeprogramming.javagis.payload.satellite;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One band of a satellite scene.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SceneBand {
+
+    /**
+     * The band name from the file, e.g. B04, or band1 if the file does not name it.
+     */
+    private String name;
+
+    /**
+     * The common name of the band in the STAC electro-optical extension, e.g. red or nir.
+     */
+    private String commonName;
+}
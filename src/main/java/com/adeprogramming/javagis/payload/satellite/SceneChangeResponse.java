@@ -0,0 +1,50 @@
+package com.adeprogramming.javagis.payload.satellite;
+
+import com.adeprogramming.javagis.model.satellite.SatelliteScene;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Response payload for the NDVI change between two satellite scenes.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SceneChangeResponse {
+
+    private Long id;
+
+    private String beforeSceneId;
+
+    private String afterSceneId;
+
+    private SatelliteScene.SceneStatus status;
+
+    private double threshold;
+
+    private Long cogSize;
+
+    private Integer overviewCount;
+
+    /**
+     * The number of fields measured.
+     */
+    private Integer fieldCount;
+
+    /**
+     * The number of fields flagged as having lost vegetation.
+     */
+    private Integer flaggedCount;
+
+    private String error;
+
+    /**
+     * The changes of the fields, largest loss first; only set for a single change.
+     */
+    private List<FieldChangeResponse> fields;
+}
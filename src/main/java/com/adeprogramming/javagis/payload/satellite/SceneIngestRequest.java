@@ -0,0 +1,45 @@
+package com.adeprogramming.javagis.payload.satellite;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Request payload for the ingestion of a satellite scene. Everything is optional where the
+ * GeoTIFF itself declares it.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SceneIngestRequest {
+
+    /**
+     * The scene ID, by default the file name without its extension.
+     */
+    private String sceneId;
+
+    /**
+     * The acquisition time, e.g. 2024-06-01T10:30:00Z; by default the TIFF DateTime in UTC.
+     */
+    private String datetime;
+
+    /**
+     * The common name of each band in order, e.g. blue, green, red, nir; by default derived
+     * from the band descriptions.
+     */
+    private List<String> bands;
+
+    /**
+     * The EPSG code of the raster CRS, if the GeoTIFF does not declare one.
+     */
+    private Integer epsg;
+
+    /**
+     * The satellite, e.g. sentinel-2a.
+     */
+    private String platform;
+}
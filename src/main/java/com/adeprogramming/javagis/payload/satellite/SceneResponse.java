@@ -0,0 +1,70 @@
+package com.adeprogramming.javagis.payload.satellite;
+
+import com.adeprogramming.javagis.model.satellite.SatelliteScene;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Response payload for an ingested satellite scene.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SceneResponse {
+
+    private String sceneId;
+
+    private SatelliteScene.SceneStatus status;
+
+    /**
+     * The name of the ingested file.
+     */
+    private String fileName;
+
+    private String platform;
+
+    /**
+     * The acquisition time (UTC).
+     */
+    private LocalDateTime datetime;
+
+    /**
+     * The footprint's bounding box in WGS 84, as [west, south, east, north].
+     */
+    private double[] bbox;
+
+    /**
+     * The EPSG code of the raster CRS.
+     */
+    private Integer epsg;
+
+    private Integer width;
+
+    private Integer height;
+
+    private String dataType;
+
+    private Double noData;
+
+    private List<SceneBand> bands;
+
+    /**
+     * The size of the cloud-optimised GeoTIFF in bytes, once it is written.
+     */
+    private Long cogSize;
+
+    private Integer overviewCount;
+
+    /**
+     * Why the scene could not be converted, if it failed.
+     */
+    private String error;
+}
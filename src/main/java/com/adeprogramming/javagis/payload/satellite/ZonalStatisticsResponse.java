@@ -0,0 +1,45 @@
+package com.adeprogramming.javagis.payload.satellite;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Response payload for computing the field statistics of a satellite scene.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ZonalStatisticsResponse {
+
+    private String sceneId;
+
+    /**
+     * The number of fields intersecting the footprint of the scene.
+     */
+    private int fields;
+
+    /**
+     * The number of fields whose statistics were stored.
+     */
+    private int measured;
+
+    /**
+     * The number of fields covering no pixel centre of the scene.
+     */
+    private int skipped;
+
+    /**
+     * The number of fields whose geometry could not be projected onto the scene.
+     */
+    private int failed;
+
+    /**
+     * The number of tiles read, counting a tile once per field it covers.
+     */
+    private long tilesRead;
+
+    private long millis;
+}
@@ -0,0 +1,79 @@
+package com.adeprogramming.javagis.payload.spatial;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Response payload for the progress and outcome of an import of fields or stations.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportResponse {
+
+    private String id;
+
+    /**
+     * What was imported, e.g. fields.
+     */
+    private String target;
+
+    /**
+     * The format of the imported file, e.g. shapefile.
+     */
+    private String format;
+
+    private String fileName;
+
+    private ImportStatus status;
+
+    /**
+     * The CRS the geometries were reprojected from, null until the file is opened.
+     */
+    private String sourceCrs;
+
+    /**
+     * The number of features in the file, -1 if not known until they are read.
+     */
+    private long total;
+
+    /**
+     * The number of features read so far.
+     */
+    private long processed;
+
+    /**
+     * The number of rows inserted or updated.
+     */
+    private long written;
+
+    /**
+     * The number of features that could not be imported.
+     */
+    private long failed;
+
+    /**
+     * Why features could not be imported, up to a limit, or why the import failed.
+     */
+    private List<String> errors;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime finishedAt;
+
+    /**
+     * Enum representing the status of an import.
+     */
+    public enum ImportStatus {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
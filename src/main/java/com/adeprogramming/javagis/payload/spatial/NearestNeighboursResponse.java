@@ -0,0 +1,57 @@
+package com.adeprogramming.javagis.payload.spatial;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Response payload for a k-nearest-neighbour search over stations or fields, nearest first.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class NearestNeighboursResponse {
+
+    /**
+     * Where the neighbours were found: {@code spatial-index} or {@code database}.
+     */
+    private String source;
+
+    @Builder.Default
+    private List<Neighbour> neighbours = new ArrayList<>();
+
+    /**
+     * One station or field and its distance from the query.
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Neighbour {
+
+        private Long id;
+
+        private String stationId;
+
+        private String fieldId;
+
+        private String name;
+
+        private String stationType;
+
+        private String status;
+
+        /**
+         * The distance from the query on the WGS 84 ellipsoid, in metres.
+         */
+        private double distance;
+    }
+}
@@ -0,0 +1,47 @@
+package com.adeprogramming.javagis.raster;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Writes a grid in a compact binary form for web clients that decode it into a typed array.
+ * <p>
+ * Layout, little-endian: the magic {@code JGRD}, a 16-bit format version, 16 reserved bits,
+ * the 32-bit EPSG code, column count and row count, the 64-bit western edge, northern edge and
+ * cell size, followed by the cell values as 32-bit floats row by row from the north, NaN for no data.
+ */
+public final class BinaryGridWriter {
+
+    public static final int HEADER_SIZE = 44;
+
+    private static final byte[] MAGIC = {'J', 'G', 'R', 'D'};
+    private static final short VERSION = 1;
+
+    private BinaryGridWriter() {
+    }
+
+    /**
+     * Encode a grid.
+     *
+     * @param grid the grid geometry and coordinate reference system
+     * @param values the cell values row by row, NaN for no data
+     * @return the encoded grid
+     */
+    public static byte[] write(GridSpec grid, double[] values) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + values.length * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MAGIC)
+                .putShort(VERSION)
+                .putShort((short) 0)
+                .putInt(grid.epsg())
+                .putInt(grid.columns())
+                .putInt(grid.rows())
+                .putDouble(grid.minX())
+                .putDouble(grid.maxY())
+                .putDouble(grid.cellSize());
+        for (double value : values) {
+            buffer.putFloat((float) value);
+        }
+        return buffer.array();
+    }
+}
@@ -0,0 +1,469 @@
+package com.adeprogramming.javagis.raster;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a multi-band raster as a cloud-optimised GeoTIFF: internally tiled, with overviews
+ * halving the resolution until the image fits one tile, all image file directories at the
+ * start of the file and the tiles of the smallest overview first, so clients read any region
+ * at any scale with a few range requests.
+ * <p>
+ * Rows are written from top to bottom and the overviews are built as the rows arrive: each
+ * level holds one row of tiles, which is compressed to a temporary file once full and averaged
+ * into the next level. Memory use is therefore bounded by the image width, not its size. The
+ * levels are joined into the target file by {@link #finish()}. Samples are stored as they are
+ * given, pixel-interleaved; overview pixels average the valid pixels they cover, skipping no data.
+ */
+public final class CogWriter implements Closeable {
+
+    private static final int TAG_NEW_SUBFILE_TYPE = 254;
+    private static final int TAG_IMAGE_WIDTH = 256;
+    private static final int TAG_IMAGE_LENGTH = 257;
+    private static final int TAG_BITS_PER_SAMPLE = 258;
+    private static final int TAG_COMPRESSION = 259;
+    private static final int TAG_PHOTOMETRIC = 262;
+    private static final int TAG_SAMPLES_PER_PIXEL = 277;
+    private static final int TAG_PLANAR_CONFIGURATION = 284;
+    private static final int TAG_PREDICTOR = 317;
+    private static final int TAG_TILE_WIDTH = 322;
+    private static final int TAG_TILE_LENGTH = 323;
+    private static final int TAG_TILE_OFFSETS = 324;
+    private static final int TAG_TILE_BYTE_COUNTS = 325;
+    private static final int TAG_EXTRA_SAMPLES = 338;
+    private static final int TAG_SAMPLE_FORMAT = 339;
+    private static final int TAG_MODEL_PIXEL_SCALE = 33550;
+    private static final int TAG_MODEL_TIEPOINT = 33922;
+    private static final int TAG_MODEL_TRANSFORMATION = 34264;
+    private static final int TAG_GEO_KEY_DIRECTORY = 34735;
+    private static final int TAG_GEO_DOUBLE_PARAMS = 34736;
+    private static final int TAG_GEO_ASCII_PARAMS = 34737;
+    private static final int TAG_GDAL_METADATA = 42112;
+    private static final int TAG_GDAL_NODATA = 42113;
+
+    private static final int COMPRESSION_NONE = 1;
+    private static final int COMPRESSION_DEFLATE = 8;
+    private static final int PREDICTOR_HORIZONTAL = 2;
+    private static final int SUBFILE_REDUCED_RESOLUTION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    private final Path target;
+    private final int width;
+    private final int height;
+    private final int bands;
+    private final SampleType sampleType;
+    private final Double noData;
+    private final GeoReference geoReference;
+    private final String gdalMetadata;
+    private final int tileSize;
+    private final boolean deflate;
+    private final int pixelBytes;
+    private final List<Level> levels = new ArrayList<>();
+    private final Deflater deflater;
+    private final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    private final byte[] chunk = new byte[64 * 1024];
+
+    /**
+     * @param target the file to write, replaced if it exists
+     * @param width the image width
+     * @param height the image height
+     * @param bands the number of bands
+     * @param sampleType the sample type of all bands
+     * @param noData the no-data value, or null for none
+     * @param geoReference the georeferencing tags to copy, or null for a plain TIFF
+     * @param gdalMetadata GDAL metadata XML to copy, e.g. band descriptions, or null
+     * @param tileSize the tile width and height, a multiple of 16
+     * @param deflate whether tiles are DEFLATE-compressed, with a horizontal predictor for integer samples
+     * @throws IOException if the temporary files cannot be created
+     */
+    public CogWriter(Path target, int width, int height, int bands, SampleType sampleType, Double noData,
+                     GeoReference geoReference, String gdalMetadata, int tileSize, boolean deflate) throws IOException {
+        if (tileSize <= 0 || tileSize % 16 != 0) {
+            throw new IllegalArgumentException("Tile size must be a positive multiple of 16");
+        }
+        if (width <= 0 || height <= 0 || bands <= 0) {
+            throw new IllegalArgumentException("The image must not be empty");
+        }
+        this.target = target;
+        this.width = width;
+        this.height = height;
+        this.bands = bands;
+        this.sampleType = sampleType;
+        this.noData = noData;
+        this.geoReference = geoReference;
+        this.gdalMetadata = gdalMetadata;
+        this.tileSize = tileSize;
+        this.deflate = deflate;
+        this.pixelBytes = bands * sampleType.bytes();
+        this.deflater = deflate ? new Deflater(Deflater.DEFAULT_COMPRESSION) : null;
+
+        try {
+            int levelWidth = width;
+            int levelHeight = height;
+            while (true) {
+                levels.add(new Level(levels.size(), levelWidth, levelHeight));
+                if (levelWidth <= tileSize && levelHeight <= tileSize) {
+                    break;
+                }
+                levelWidth = (levelWidth + 1) / 2;
+                levelHeight = (levelHeight + 1) / 2;
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of overviews below the full resolution
+     */
+    public int getOverviewCount() {
+        return levels.size() - 1;
+    }
+
+    /**
+     * Write the next rows of the full-resolution image.
+     *
+     * @param rows the samples, pixel-interleaved, row by row from index 0, little-endian
+     * @param count the number of rows
+     * @throws IOException if a tile cannot be written
+     * @throws IllegalArgumentException if more rows are written than the image has
+     */
+    public void writeRows(ByteBuffer rows, int count) throws IOException {
+        levels.get(0).add(rows, count);
+    }
+
+    /**
+     * Write the directories and join the levels into the target file.
+     *
+     * @throws IOException if the file cannot be written
+     * @throws IllegalStateException if fewer rows were written than the image has
+     * @throws IllegalArgumentException if the file would exceed the 4 GB of a classic TIFF
+     */
+    public void finish() throws IOException {
+        for (Level level : levels) {
+            level.flush();
+            if (level.rowsWritten != level.height) {
+                throw new IllegalStateException("Only " + levels.get(0).rowsWritten + " of " + height
+                        + " rows were written");
+            }
+        }
+
+        List<TiffDirectory> directories = new ArrayList<>();
+        long position = HEADER_SIZE;
+        for (Level level : levels) {
+            TiffDirectory directory = directory(level);
+            directories.add(directory);
+            position += directory.size();
+        }
+        int directoriesEnd = (int) position;
+        // Tiles of the smallest overview come first, so a client reading the overview view of
+        // an image needs only the start of the file
+        for (int i = levels.size() - 1; i >= 0; i--) {
+            Level level = levels.get(i);
+            for (int tile = 0; tile < level.byteCounts.length; tile++) {
+                level.offsets[tile] = position;
+                position += level.byteCounts[tile];
+            }
+        }
+        if (position > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("Image too large for a classic TIFF");
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(directoriesEnd).order(ByteOrder.LITTLE_ENDIAN);
+        header.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt(HEADER_SIZE);
+        int offset = HEADER_SIZE;
+        for (int i = 0; i < directories.size(); i++) {
+            int next = i + 1 < directories.size() ? offset + directories.get(i).size() : 0;
+            directories.get(i).write(header, offset, next);
+            offset += directories.get(i).size();
+        }
+        header.flip();
+
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            for (int i = levels.size() - 1; i >= 0; i--) {
+                FileChannel tiles = levels.get(i).channel;
+                long length = tiles.size();
+                long copied = 0;
+                while (copied < length) {
+                    copied += tiles.transferTo(copied, length - copied, out);
+                }
+            }
+            out.force(false);
+        }
+        close();
+    }
+
+    /**
+     * Release the temporary files; the target is incomplete unless {@link #finish()} returned.
+     */
+    @Override
+    public void close() throws IOException {
+        if (deflater != null) {
+            deflater.end();
+        }
+        IOException failure = null;
+        for (Level level : levels) {
+            try {
+                level.channel.close();
+                Files.deleteIfExists(level.file);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        levels.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private TiffDirectory directory(Level level) {
+        int[] bits = new int[bands];
+        int[] formats = new int[bands];
+        for (int band = 0; band < bands; band++) {
+            bits[band] = sampleType.bits();
+            formats[band] = sampleType.sampleFormat();
+        }
+        TiffDirectory directory = new TiffDirectory();
+        if (level.index > 0) {
+            directory.putLong(TAG_NEW_SUBFILE_TYPE, SUBFILE_REDUCED_RESOLUTION);
+        }
+        directory.putLong(TAG_IMAGE_WIDTH, level.width);
+        directory.putLong(TAG_IMAGE_LENGTH, level.height);
+        directory.putShort(TAG_BITS_PER_SAMPLE, bits);
+        directory.putShort(TAG_COMPRESSION, deflate ? COMPRESSION_DEFLATE : COMPRESSION_NONE);
+        directory.putShort(TAG_PHOTOMETRIC, 1);
+        directory.putShort(TAG_SAMPLES_PER_PIXEL, bands);
+        directory.putShort(TAG_PLANAR_CONFIGURATION, 1);
+        if (usesPredictor()) {
+            directory.putShort(TAG_PREDICTOR, PREDICTOR_HORIZONTAL);
+        }
+        directory.putShort(TAG_TILE_WIDTH, tileSize);
+        directory.putShort(TAG_TILE_LENGTH, tileSize);
+        directory.putLong(TAG_TILE_OFFSETS, level.offsets);
+        directory.putLong(TAG_TILE_BYTE_COUNTS, level.byteCounts);
+        if (bands > 1) {
+            // Bands beyond the first are unspecified extra samples of a grey-scale image
+            directory.putShort(TAG_EXTRA_SAMPLES, new int[bands - 1]);
+        }
+        directory.putShort(TAG_SAMPLE_FORMAT, formats);
+        if (noData != null) {
+            directory.putAscii(TAG_GDAL_NODATA, noDataText());
+        }
+        if (level.index == 0) {
+            if (geoReference != null) {
+                if (geoReference.pixelScale() != null) {
+                    directory.putDouble(TAG_MODEL_PIXEL_SCALE, geoReference.pixelScale());
+                }
+                if (geoReference.tiePoint() != null) {
+                    directory.putDouble(TAG_MODEL_TIEPOINT, geoReference.tiePoint());
+                }
+                if (geoReference.transformation() != null) {
+                    directory.putDouble(TAG_MODEL_TRANSFORMATION, geoReference.transformation());
+                }
+                directory.putShort(TAG_GEO_KEY_DIRECTORY, geoReference.geoKeys());
+                if (geoReference.geoDoubleParams() != null) {
+                    directory.putDouble(TAG_GEO_DOUBLE_PARAMS, geoReference.geoDoubleParams());
+                }
+                if (geoReference.geoAsciiParams() != null) {
+                    directory.putAscii(TAG_GEO_ASCII_PARAMS, geoReference.geoAsciiParams());
+                }
+            }
+            if (gdalMetadata != null) {
+                directory.putAscii(TAG_GDAL_METADATA, gdalMetadata);
+            }
+        }
+        return directory;
+    }
+
+    private String noDataText() {
+        if (Double.isNaN(noData)) {
+            return "nan";
+        }
+        if (noData.isInfinite()) {
+            return noData > 0 ? "inf" : "-inf";
+        }
+        return noData == Math.rint(noData) ? String.valueOf(noData.longValue()) : String.valueOf(noData);
+    }
+
+    private boolean usesPredictor() {
+        return deflate && sampleType.isInteger();
+    }
+
+    private boolean isNoData(double value) {
+        return noData != null && (Double.isNaN(noData) ? Double.isNaN(value) : value == noData);
+    }
+
+    /**
+     * One resolution level: a buffer for one row of tiles and a temporary file of its compressed tiles.
+     */
+    private final class Level {
+
+        final int index;
+        final int width;
+        final int height;
+        final int tilesAcross;
+        final long[] offsets;
+        final long[] byteCounts;
+        final Path file;
+        final FileChannel channel;
+        final ByteBuffer rows;
+        final ByteBuffer tile;
+        int bufferedRows;
+        int rowsWritten;
+        int tilesWritten;
+
+        Level(int index, int width, int height) throws IOException {
+            this.index = index;
+            this.width = width;
+            this.height = height;
+            this.tilesAcross = (width + tileSize - 1) / tileSize;
+            int tileCount = tilesAcross * ((height + tileSize - 1) / tileSize);
+            this.offsets = new long[tileCount];
+            this.byteCounts = new long[tileCount];
+            this.file = target.resolveSibling(target.getFileName() + ".level" + index);
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.rows = ByteBuffer.allocate(width * tileSize * pixelBytes).order(ByteOrder.LITTLE_ENDIAN);
+            this.tile = ByteBuffer.allocate(tileSize * tileSize * pixelBytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        void add(ByteBuffer source, int count) throws IOException {
+            if (rowsWritten + bufferedRows + count > height) {
+                throw new IllegalArgumentException("More rows than the image height");
+            }
+            int rowBytes = width * pixelBytes;
+            int copied = 0;
+            while (copied < count) {
+                int n = Math.min(count - copied, tileSize - bufferedRows);
+                rows.put(bufferedRows * rowBytes, source, copied * rowBytes, n * rowBytes);
+                bufferedRows += n;
+                copied += n;
+                if (bufferedRows == tileSize) {
+                    flush();
+                }
+            }
+        }
+
+        /**
+         * Write the buffered rows as a row of tiles and pass them on, averaged, to the next level.
+         */
+        void flush() throws IOException {
+            if (bufferedRows == 0) {
+                return;
+            }
+            for (int column = 0; column < tilesAcross; column++) {
+                fillTile(column * tileSize);
+                byte[] data = encode();
+                channel.write(ByteBuffer.wrap(data));
+                byteCounts[tilesWritten++] = data.length;
+            }
+            if (index + 1 < levels.size()) {
+                Level next = levels.get(index + 1);
+                int count = (bufferedRows + 1) / 2;
+                ByteBuffer reduced = ByteBuffer.allocate(next.width * count * pixelBytes).order(ByteOrder.LITTLE_ENDIAN);
+                reduce(reduced, next.width, count);
+                next.add(reduced, count);
+            }
+            rowsWritten += bufferedRows;
+            bufferedRows = 0;
+        }
+
+        private void fillTile(int firstColumn) {
+            int bytes = sampleType.bytes();
+            int columns = Math.min(tileSize, width - firstColumn);
+            for (int row = 0; row < tileSize; row++) {
+                int start = row * tileSize * pixelBytes;
+                int filled = 0;
+                if (row < bufferedRows) {
+                    tile.put(start, rows, (row * width + firstColumn) * pixelBytes, columns * pixelBytes);
+                    filled = columns;
+                }
+                // Edge tiles are padded to full size
+                for (int i = start + filled * pixelBytes; i < start + tileSize * pixelBytes; i += bytes) {
+                    sampleType.put(tile, i, noData != null ? noData : 0);
+                }
+            }
+        }
+
+        private byte[] encode() {
+            byte[] raw = tile.array();
+            if (!deflate) {
+                return raw.clone();
+            }
+            if (usesPredictor()) {
+                applyPredictor();
+            }
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            compressed.reset();
+            while (!deflater.finished()) {
+                int length = deflater.deflate(chunk);
+                compressed.write(chunk, 0, length);
+            }
+            return compressed.toByteArray();
+        }
+
+        /**
+         * Replace each sample with its difference from the same band of the pixel before it.
+         */
+        private void applyPredictor() {
+            int bytes = sampleType.bytes();
+            for (int row = 0; row < tileSize; row++) {
+                int start = row * tileSize * bands;
+                for (int i = start + tileSize * bands - 1; i >= start + bands; i--) {
+                    int at = i * bytes;
+                    int before = (i - bands) * bytes;
+                    switch (bytes) {
+                        case 1 -> tile.put(at, (byte) (tile.get(at) - tile.get(before)));
+                        case 2 -> tile.putShort(at, (short) (tile.getShort(at) - tile.getShort(before)));
+                        default -> tile.putInt(at, tile.getInt(at) - tile.getInt(before));
+                    }
+                }
+            }
+        }
+
+        private void reduce(ByteBuffer reduced, int reducedWidth, int count) {
+            int bytes = sampleType.bytes();
+            for (int row = 0; row < count; row++) {
+                for (int column = 0; column < reducedWidth; column++) {
+                    for (int band = 0; band < bands; band++) {
+                        double sum = 0;
+                        int valid = 0;
+                        for (int dy = 0; dy < 2; dy++) {
+                            int sourceRow = row * 2 + dy;
+                            for (int dx = 0; dx < 2 && sourceRow < bufferedRows; dx++) {
+                                int sourceColumn = column * 2 + dx;
+                                if (sourceColumn < width) {
+                                    double value = sampleType.get(rows,
+                                            ((sourceRow * width + sourceColumn) * bands + band) * bytes);
+                                    if (!isNoData(value) && !Double.isNaN(value)) {
+                                        sum += value;
+                                        valid++;
+                                    }
+                                }
+                            }
+                        }
+                        double average = valid > 0 ? sum / valid : noData != null ? noData : Double.NaN;
+                        sampleType.put(reduced, ((row * reducedWidth + column) * bands + band) * bytes, average);
+                    }
+                }
+            }
+        }
+    }
+}
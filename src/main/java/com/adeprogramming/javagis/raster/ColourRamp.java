@@ -0,0 +1,118 @@
+package com.adeprogramming.javagis.raster;
+
+/**
+ * Maps values to ARGB colours by linear interpolation between colour stops.
+ * The ramp is precomputed into a lookup table, so colouring a pixel is one multiply and one
+ * array read. Values below the first or above the last stop take the colour of that stop;
+ * NaN is fully transparent.
+ */
+public final class ColourRamp {
+
+    private static final int TABLE_SIZE = 1024;
+
+    private final String spec;
+    private final double min;
+    private final double scale;
+    private final int[] table;
+
+    private ColourRamp(String spec, double[] values, int[] colours) {
+        this.spec = spec;
+        this.min = values[0];
+        double span = values[values.length - 1] - values[0];
+        this.scale = span > 0 ? (TABLE_SIZE - 1) / span : 0;
+        this.table = new int[TABLE_SIZE];
+
+        int stop = 0;
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            double value = span > 0 ? min + i / scale : min;
+            while (stop < values.length - 2 && value > values[stop + 1]) {
+                stop++;
+            }
+            double width = values[stop + 1] - values[stop];
+            double t = width > 0 ? Math.min(1, Math.max(0, (value - values[stop]) / width)) : 1;
+            table[i] = blend(colours[stop], colours[stop + 1], t);
+        }
+    }
+
+    /**
+     * Parse a ramp given as comma-separated {@code value:colour} stops in ascending value order,
+     * with colours as {@code RRGGBB} or {@code RRGGBBAA} hex, e.g. {@code 0:2c7bb6,40:ffffbf,80:d7191c}.
+     *
+     * @param spec the ramp definition
+     * @return the ramp
+     * @throws IllegalArgumentException if the definition is malformed
+     */
+    public static ColourRamp parse(String spec) {
+        String[] stops = spec.split(",");
+        if (stops.length < 2) {
+            throw new IllegalArgumentException("A colour ramp needs at least two stops");
+        }
+        double[] values = new double[stops.length];
+        int[] colours = new int[stops.length];
+        for (int i = 0; i < stops.length; i++) {
+            String stop = stops[i].trim();
+            int separator = stop.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Colour stops must be given as value:colour");
+            }
+            try {
+                values[i] = Double.parseDouble(stop.substring(0, separator));
+                colours[i] = parseColour(stop.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid colour stop: " + stop, e);
+            }
+            if (i > 0 && values[i] < values[i - 1]) {
+                throw new IllegalArgumentException("Colour stops must be in ascending value order");
+            }
+        }
+        return new ColourRamp(spec, values, colours);
+    }
+
+    /**
+     * @return the definition the ramp was parsed from
+     */
+    public String getSpec() {
+        return spec;
+    }
+
+    /**
+     * Colour a block of values.
+     *
+     * @param values the values
+     * @param argb receives the colours, parallel to {@code values}
+     * @param length the number of values to colour
+     */
+    public void apply(double[] values, int[] argb, int length) {
+        int last = TABLE_SIZE - 1;
+        for (int i = 0; i < length; i++) {
+            double value = values[i];
+            if (Double.isNaN(value)) {
+                argb[i] = 0;
+                continue;
+            }
+            int index = (int) ((value - min) * scale);
+            argb[i] = table[index < 0 ? 0 : Math.min(index, last)];
+        }
+    }
+
+    private static int parseColour(String hex) {
+        if (hex.length() == 6) {
+            return 0xff000000 | Integer.parseInt(hex, 16);
+        }
+        if (hex.length() == 8) {
+            long rgba = Long.parseLong(hex, 16);
+            return (int) ((rgba & 0xff) << 24 | rgba >>> 8);
+        }
+        throw new NumberFormatException("Colours must be RRGGBB or RRGGBBAA");
+    }
+
+    private static int blend(int from, int to, double t) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int a = (from >>> shift) & 0xff;
+            int b = (to >>> shift) & 0xff;
+            result |= ((int) Math.round(a + (b - a) * t) & 0xff) << shift;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,81 @@
+package com.adeprogramming.javagis.raster;
+
+/**
+ * The georeferencing tags of a GeoTIFF, kept as read so they can be copied into another file.
+ * The grid is given either by a tie point and pixel scale or by a model transformation matrix.
+ *
+ * @param pixelScale the {@code ModelPixelScale} (x, y, z), or null
+ * @param tiePoint the first {@code ModelTiepoint} (i, j, k, x, y, z), or null
+ * @param transformation the row-major 4x4 {@code ModelTransformation}, or null
+ * @param geoKeys the {@code GeoKeyDirectory}
+ * @param geoDoubleParams the {@code GeoDoubleParams}, or null
+ * @param geoAsciiParams the {@code GeoAsciiParams}, or null
+ */
+public record GeoReference(double[] pixelScale, double[] tiePoint, double[] transformation, int[] geoKeys,
+                           double[] geoDoubleParams, String geoAsciiParams) {
+
+    private static final int KEY_MODEL_TYPE = 1024;
+    private static final int KEY_RASTER_TYPE = 1025;
+    private static final int KEY_GEOGRAPHIC_TYPE = 2048;
+    private static final int KEY_PROJECTED_CS_TYPE = 3072;
+
+    private static final int MODEL_TYPE_GEOGRAPHIC = 2;
+    private static final int RASTER_PIXEL_IS_POINT = 2;
+    private static final int USER_DEFINED = 32767;
+
+    /**
+     * @return the EPSG code of the CRS, or null if the CRS is user-defined or not declared
+     */
+    public Integer epsg() {
+        Integer projected = key(KEY_PROJECTED_CS_TYPE);
+        if (projected != null && projected != USER_DEFINED) {
+            return projected;
+        }
+        Integer geographic = key(KEY_GEOGRAPHIC_TYPE);
+        if (geographic != null && geographic != USER_DEFINED
+                && (projected == null || Integer.valueOf(MODEL_TYPE_GEOGRAPHIC).equals(key(KEY_MODEL_TYPE)))) {
+            return geographic;
+        }
+        return null;
+    }
+
+    /**
+     * The affine transform from pixel to CRS coordinates, in GDAL's order:
+     * {@code x = t[0] + column * t[1] + row * t[2]} and {@code y = t[3] + column * t[4] + row * t[5]},
+     * where (0, 0) is the outer corner of the first pixel.
+     *
+     * @return the six coefficients
+     * @throws IllegalArgumentException if the file has neither a transformation nor a tie point and scale
+     */
+    public double[] affine() {
+        double[] t;
+        if (transformation != null && transformation.length >= 8) {
+            t = new double[]{transformation[3], transformation[0], transformation[1],
+                    transformation[7], transformation[4], transformation[5]};
+        } else if (tiePoint != null && tiePoint.length >= 6 && pixelScale != null && pixelScale.length >= 2) {
+            t = new double[]{tiePoint[3] - tiePoint[0] * pixelScale[0], pixelScale[0], 0,
+                    tiePoint[4] + tiePoint[1] * pixelScale[1], 0, -pixelScale[1]};
+        } else {
+            throw new IllegalArgumentException("The file is not georeferenced");
+        }
+        if (Integer.valueOf(RASTER_PIXEL_IS_POINT).equals(key(KEY_RASTER_TYPE))) {
+            // The coordinates are those of pixel centres
+            t[0] -= 0.5 * (t[1] + t[2]);
+            t[3] -= 0.5 * (t[4] + t[5]);
+        }
+        return t;
+    }
+
+    private Integer key(int id) {
+        if (geoKeys == null || geoKeys.length < 4) {
+            return null;
+        }
+        for (int i = 4; i + 3 < geoKeys.length && i < 4 + geoKeys[3] * 4; i += 4) {
+            // Keys stored in the directory itself have no tag location
+            if (geoKeys[i] == id && geoKeys[i + 1] == 0) {
+                return geoKeys[i + 3];
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,732 @@
+package com.adeprogramming.javagis.raster;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads GeoTIFFs, classic or BigTIFF, tiled or stripped, through a {@link FileChannel}.
+ * Opening a file reads only its first image file directory, so the size, sample type,
+ * georeferencing and band metadata of a scene are known without decoding any pixels.
+ * Pixels are read by window, decoding only the tiles or strips the window covers.
+ * <p>
+ * Files of up to 2 GB are memory-mapped, so uncompressed blocks are read without copying;
+ * larger files are read block by block. Uncompressed, LZW, DEFLATE and PackBits blocks with
+ * horizontal or floating-point predictors are supported. A reader is not thread-safe; open
+ * one per thread, which is cheap.
+ */
+public final class GeoTiffReader implements Closeable {
+
+    private static final int TAG_IMAGE_WIDTH = 256;
+    private static final int TAG_IMAGE_LENGTH = 257;
+    private static final int TAG_BITS_PER_SAMPLE = 258;
+    private static final int TAG_COMPRESSION = 259;
+    private static final int TAG_PHOTOMETRIC = 262;
+    private static final int TAG_STRIP_OFFSETS = 273;
+    private static final int TAG_SAMPLES_PER_PIXEL = 277;
+    private static final int TAG_ROWS_PER_STRIP = 278;
+    private static final int TAG_STRIP_BYTE_COUNTS = 279;
+    private static final int TAG_PLANAR_CONFIGURATION = 284;
+    private static final int TAG_DATE_TIME = 306;
+    private static final int TAG_PREDICTOR = 317;
+    private static final int TAG_TILE_WIDTH = 322;
+    private static final int TAG_TILE_LENGTH = 323;
+    private static final int TAG_TILE_OFFSETS = 324;
+    private static final int TAG_TILE_BYTE_COUNTS = 325;
+    private static final int TAG_SAMPLE_FORMAT = 339;
+    private static final int TAG_MODEL_PIXEL_SCALE = 33550;
+    private static final int TAG_MODEL_TIEPOINT = 33922;
+    private static final int TAG_MODEL_TRANSFORMATION = 34264;
+    private static final int TAG_GEO_KEY_DIRECTORY = 34735;
+    private static final int TAG_GEO_DOUBLE_PARAMS = 34736;
+    private static final int TAG_GEO_ASCII_PARAMS = 34737;
+    private static final int TAG_GDAL_METADATA = 42112;
+    private static final int TAG_GDAL_NODATA = 42113;
+
+    private static final int COMPRESSION_NONE = 1;
+    private static final int COMPRESSION_LZW = 5;
+    private static final int COMPRESSION_DEFLATE = 8;
+    private static final int COMPRESSION_ADOBE_DEFLATE = 32946;
+    private static final int COMPRESSION_PACKBITS = 32773;
+    private static final int PREDICTOR_NONE = 1;
+    private static final int PREDICTOR_HORIZONTAL = 2;
+    private static final int PREDICTOR_FLOATING_POINT = 3;
+    private static final int PHOTOMETRIC_YCBCR = 6;
+
+    private static final int LZW_CLEAR = 256;
+    private static final int LZW_END = 257;
+
+    private static final Pattern GDAL_ITEM = Pattern.compile("<Item\\s+([^>]*)>([^<]*)</Item>");
+    private static final Pattern ATTRIBUTE = Pattern.compile("(\\w+)=\"([^\"]*)\"");
+
+    private final FileChannel channel;
+    private final long size;
+    private final ByteBuffer mapped;
+    private final ByteOrder order;
+    private final boolean bigTiff;
+
+    private final int width;
+    private final int height;
+    private final int bands;
+    private final SampleType sampleType;
+    private final int compression;
+    private final int predictor;
+    private final boolean planar;
+    private final boolean tiled;
+    private final int blockWidth;
+    private final int blockHeight;
+    private final int blocksAcross;
+    private final int blocksPerPlane;
+    private final long[] blockOffsets;
+    private final long[] blockByteCounts;
+    private final GeoReference geoReference;
+    private final Double noData;
+    private final String dateTime;
+    private final String gdalMetadata;
+
+    // The last block decoded per plane, as consecutive windows mostly share blocks
+    private final int[] cachedIndex;
+    private final ByteBuffer[] cachedBlock;
+
+    /**
+     * Open a GeoTIFF and read its first image file directory.
+     *
+     * @param file the file
+     * @throws IOException if the file cannot be read or is not a TIFF
+     * @throws IllegalArgumentException if the TIFF uses a layout, sample type or compression
+     * that is not supported
+     */
+    public GeoTiffReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            this.size = channel.size();
+            this.mapped = size <= Integer.MAX_VALUE ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+
+            ByteBuffer header = read(0, (int) Math.min(size, 16), ByteOrder.LITTLE_ENDIAN);
+            if (header.limit() < 8) {
+                throw new IOException("Not a TIFF file");
+            }
+            if (header.get(0) == 'I' && header.get(1) == 'I') {
+                this.order = ByteOrder.LITTLE_ENDIAN;
+            } else if (header.get(0) == 'M' && header.get(1) == 'M') {
+                this.order = ByteOrder.BIG_ENDIAN;
+            } else {
+                throw new IOException("Not a TIFF file");
+            }
+            header.order(order);
+            int version = header.getShort(2);
+            if (version == 42) {
+                this.bigTiff = false;
+            } else if (version == 43 && header.limit() >= 16) {
+                this.bigTiff = true;
+            } else {
+                throw new IOException("Not a TIFF file");
+            }
+            long directoryOffset = bigTiff ? header.getLong(8) : header.getInt(4) & 0xFFFFFFFFL;
+            Map<Integer, Entry> entries = readDirectory(directoryOffset);
+
+            this.width = (int) required(entries, TAG_IMAGE_WIDTH);
+            this.height = (int) required(entries, TAG_IMAGE_LENGTH);
+            this.bands = (int) first(entries, TAG_SAMPLES_PER_PIXEL, 1);
+            this.sampleType = sampleType(entries);
+            this.compression = (int) first(entries, TAG_COMPRESSION, COMPRESSION_NONE);
+            this.predictor = (int) first(entries, TAG_PREDICTOR, PREDICTOR_NONE);
+            this.planar = first(entries, TAG_PLANAR_CONFIGURATION, 1) == 2;
+            if (compression != COMPRESSION_NONE && compression != COMPRESSION_LZW && compression != COMPRESSION_DEFLATE
+                    && compression != COMPRESSION_ADOBE_DEFLATE && compression != COMPRESSION_PACKBITS) {
+                throw new IllegalArgumentException("Unsupported TIFF compression " + compression);
+            }
+            if (predictor < PREDICTOR_NONE || predictor > PREDICTOR_FLOATING_POINT) {
+                throw new IllegalArgumentException("Unsupported TIFF predictor " + predictor);
+            }
+            if (first(entries, TAG_PHOTOMETRIC, 1) == PHOTOMETRIC_YCBCR) {
+                throw new IllegalArgumentException("YCbCr images are not supported");
+            }
+
+            this.tiled = entries.containsKey(TAG_TILE_WIDTH);
+            if (tiled) {
+                this.blockWidth = (int) required(entries, TAG_TILE_WIDTH);
+                this.blockHeight = (int) required(entries, TAG_TILE_LENGTH);
+                this.blockOffsets = longs(entries.get(TAG_TILE_OFFSETS));
+                this.blockByteCounts = longs(entries.get(TAG_TILE_BYTE_COUNTS));
+            } else {
+                this.blockWidth = width;
+                this.blockHeight = (int) Math.min(first(entries, TAG_ROWS_PER_STRIP, height), height);
+                this.blockOffsets = longs(entries.get(TAG_STRIP_OFFSETS));
+                this.blockByteCounts = longs(entries.get(TAG_STRIP_BYTE_COUNTS));
+            }
+            if (width <= 0 || height <= 0 || bands <= 0 || blockWidth <= 0 || blockHeight <= 0) {
+                throw new IOException("Invalid TIFF dimensions");
+            }
+            this.blocksAcross = (width + blockWidth - 1) / blockWidth;
+            this.blocksPerPlane = blocksAcross * ((height + blockHeight - 1) / blockHeight);
+            int blockCount = blocksPerPlane * (planar ? bands : 1);
+            if (blockOffsets == null || blockByteCounts == null
+                    || blockOffsets.length < blockCount || blockByteCounts.length < blockCount) {
+                throw new IOException("The TIFF is missing block offsets");
+            }
+
+            this.geoReference = entries.containsKey(TAG_GEO_KEY_DIRECTORY)
+                    ? new GeoReference(doubles(entries.get(TAG_MODEL_PIXEL_SCALE)),
+                    doubles(entries.get(TAG_MODEL_TIEPOINT)), doubles(entries.get(TAG_MODEL_TRANSFORMATION)),
+                    Arrays.stream(longs(entries.get(TAG_GEO_KEY_DIRECTORY))).mapToInt(value -> (int) value).toArray(),
+                    doubles(entries.get(TAG_GEO_DOUBLE_PARAMS)), ascii(entries.get(TAG_GEO_ASCII_PARAMS)))
+                    : null;
+            this.noData = parseNoData(ascii(entries.get(TAG_GDAL_NODATA)));
+            this.dateTime = ascii(entries.get(TAG_DATE_TIME));
+            this.gdalMetadata = ascii(entries.get(TAG_GDAL_METADATA));
+
+            int planes = planar ? bands : 1;
+            this.cachedIndex = new int[planes];
+            Arrays.fill(cachedIndex, -1);
+            this.cachedBlock = new ByteBuffer[planes];
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getBandCount() {
+        return bands;
+    }
+
+    public SampleType getSampleType() {
+        return sampleType;
+    }
+
+    /**
+     * @return the width of the tiles, or the image width if the file is stripped
+     */
+    public int getBlockWidth() {
+        return blockWidth;
+    }
+
+    /**
+     * @return the height of the tiles, or the rows per strip if the file is stripped
+     */
+    public int getBlockHeight() {
+        return blockHeight;
+    }
+
+    public boolean isTiled() {
+        return tiled;
+    }
+
+    /**
+     * @return the georeferencing tags, or null if the file is a plain TIFF
+     */
+    public GeoReference getGeoReference() {
+        return geoReference;
+    }
+
+    /**
+     * @return the GDAL no-data value, or null if none is declared
+     */
+    public Double getNoData() {
+        return noData;
+    }
+
+    /**
+     * @return the TIFF {@code DateTime}, formatted {@code yyyy:MM:dd HH:mm:ss}, or null
+     */
+    public String getDateTime() {
+        return dateTime;
+    }
+
+    /**
+     * @return the GDAL metadata XML, or null
+     */
+    public String getGdalMetadata() {
+        return gdalMetadata;
+    }
+
+    /**
+     * @return the band descriptions from the GDAL metadata, null for bands without one
+     */
+    public List<String> getBandDescriptions() {
+        List<String> descriptions = new ArrayList<>(Collections.nCopies(bands, (String) null));
+        if (gdalMetadata == null) {
+            return descriptions;
+        }
+        Matcher item = GDAL_ITEM.matcher(gdalMetadata);
+        while (item.find()) {
+            Map<String, String> attributes = new HashMap<>();
+            Matcher attribute = ATTRIBUTE.matcher(item.group(1));
+            while (attribute.find()) {
+                attributes.put(attribute.group(1).toLowerCase(Locale.ROOT), attribute.group(2));
+            }
+            if ("description".equals(attributes.get("role")) && attributes.containsKey("sample")) {
+                try {
+                    int band = Integer.parseInt(attributes.get("sample"));
+                    if (band >= 0 && band < bands) {
+                        descriptions.set(band, unescape(item.group(2)));
+                    }
+                } catch (NumberFormatException e) {
+                    // Not a band item
+                }
+            }
+        }
+        return descriptions;
+    }
+
+    /**
+     * Read the samples of all bands in a window, pixel by pixel and row by row: the sample of
+     * band {@code b} at {@code (x + column, y + row)} is at byte index
+     * {@code ((row * width + column) * bands + b) * bytes}, in the target's byte order.
+     *
+     * @param x the first column
+     * @param y the first row
+     * @param width the number of columns
+     * @param height the number of rows
+     * @param target the buffer to write the samples to, from index 0
+     * @throws IOException if a block cannot be read or decoded
+     * @throws IllegalArgumentException if the window is not inside the image or the buffer is too small
+     */
+    public void readWindow(int x, int y, int width, int height, ByteBuffer target) throws IOException {
+        int bytes = sampleType.bytes();
+        if (x < 0 || y < 0 || width <= 0 || height <= 0 || x + width > this.width || y + height > this.height) {
+            throw new IllegalArgumentException("Window outside the image");
+        }
+        if ((long) width * height * bands * bytes > target.capacity()) {
+            throw new IllegalArgumentException("Buffer too small for the window");
+        }
+        int samplesPerBlockPixel = planar ? 1 : bands;
+        for (int plane = 0; plane < (planar ? bands : 1); plane++) {
+            for (int blockRow = y / blockHeight; blockRow <= (y + height - 1) / blockHeight; blockRow++) {
+                for (int blockColumn = x / blockWidth; blockColumn <= (x + width - 1) / blockWidth; blockColumn++) {
+                    ByteBuffer block = block(plane, blockRow * blocksAcross + blockColumn);
+                    int blockX = blockColumn * blockWidth;
+                    int blockY = blockRow * blockHeight;
+                    int firstColumn = Math.max(x, blockX);
+                    int lastColumn = Math.min(x + width, blockX + blockWidth);
+                    int firstRow = Math.max(y, blockY);
+                    int lastRow = Math.min(y + height, blockY + blockHeight);
+                    int columns = lastColumn - firstColumn;
+                    for (int row = firstRow; row < lastRow; row++) {
+                        int source = ((row - blockY) * blockWidth + firstColumn - blockX) * samplesPerBlockPixel * bytes;
+                        int destination = (((row - y) * width + firstColumn - x) * bands + plane) * bytes;
+                        if (!planar && block.order() == target.order()) {
+                            target.put(destination, block, source, columns * bands * bytes);
+                        } else {
+                            int stride = bands * bytes;
+                            for (int i = 0; i < columns * samplesPerBlockPixel; i++) {
+                                int to = planar ? destination + i * stride : destination + i * bytes;
+                                copySample(block, source + i * bytes, target, to, bytes);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer block(int plane, int index) throws IOException {
+        if (cachedIndex[plane] != index) {
+            cachedBlock[plane] = decode(plane * blocksPerPlane + index, index / blocksAcross);
+            cachedIndex[plane] = index;
+        }
+        return cachedBlock[plane];
+    }
+
+    private ByteBuffer decode(int block, int blockRow) throws IOException {
+        int rows = tiled ? blockHeight : Math.min(blockHeight, height - blockRow * blockHeight);
+        int samplesPerRow = blockWidth * (planar ? 1 : bands);
+        int expected = rows * samplesPerRow * sampleType.bytes();
+        long offset = blockOffsets[block];
+        long byteCount = blockByteCounts[block];
+        if (byteCount == 0) {
+            // A sparse block, which GDAL reads as no data
+            ByteBuffer empty = ByteBuffer.allocate(expected).order(ByteOrder.LITTLE_ENDIAN);
+            if (noData != null && noData != 0) {
+                for (int i = 0; i < expected; i += sampleType.bytes()) {
+                    sampleType.put(empty, i, noData);
+                }
+            }
+            return empty;
+        }
+        if (byteCount > Integer.MAX_VALUE) {
+            throw new IOException("TIFF block too large");
+        }
+        ByteBuffer encoded = read(offset, (int) byteCount, order);
+
+        ByteBuffer decoded;
+        switch (compression) {
+            case COMPRESSION_NONE -> {
+                if (encoded.limit() >= expected && predictor == PREDICTOR_NONE) {
+                    return encoded.limit(expected).slice().order(order);
+                }
+                byte[] copy = new byte[expected];
+                encoded.get(copy, 0, Math.min(expected, encoded.remaining()));
+                decoded = ByteBuffer.wrap(copy);
+            }
+            case COMPRESSION_LZW -> decoded = ByteBuffer.wrap(decodeLzw(encoded, expected));
+            case COMPRESSION_PACKBITS -> decoded = ByteBuffer.wrap(decodePackBits(encoded, expected));
+            default -> decoded = ByteBuffer.wrap(inflate(encoded, expected));
+        }
+        decoded.order(order);
+        if (predictor == PREDICTOR_HORIZONTAL) {
+            undoHorizontalPredictor(decoded, rows, samplesPerRow, planar ? 1 : bands, sampleType.bytes());
+        } else if (predictor == PREDICTOR_FLOATING_POINT) {
+            decoded = undoFloatingPointPredictor(decoded.array(), rows, samplesPerRow, planar ? 1 : bands,
+                    sampleType.bytes());
+        }
+        return decoded;
+    }
+
+    private Map<Integer, Entry> readDirectory(long offset) throws IOException {
+        int countSize = bigTiff ? 8 : 2;
+        int entrySize = bigTiff ? 20 : 12;
+        ByteBuffer countBuffer = read(offset, countSize, order);
+        long count = bigTiff ? countBuffer.getLong(0) : countBuffer.getShort(0) & 0xFFFF;
+        if (count <= 0 || count > 4096) {
+            throw new IOException("Invalid TIFF directory");
+        }
+        ByteBuffer directory = read(offset + countSize, (int) count * entrySize, order);
+        Map<Integer, Entry> entries = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            int position = i * entrySize;
+            int tag = directory.getShort(position) & 0xFFFF;
+            int type = directory.getShort(position + 2) & 0xFFFF;
+            long valueCount = bigTiff ? directory.getLong(position + 4) : directory.getInt(position + 4) & 0xFFFFFFFFL;
+            int valuePosition = position + (bigTiff ? 12 : 8);
+            long bytes = valueCount * typeSize(type);
+            long dataOffset = bytes <= (bigTiff ? 8 : 4)
+                    ? offset + countSize + valuePosition
+                    : bigTiff ? directory.getLong(valuePosition) : directory.getInt(valuePosition) & 0xFFFFFFFFL;
+            if (typeSize(type) > 0 && bytes <= Integer.MAX_VALUE) {
+                entries.put(tag, new Entry(type, (int) valueCount, dataOffset));
+            }
+        }
+        return entries;
+    }
+
+    private ByteBuffer read(long offset, int length, ByteOrder byteOrder) throws IOException {
+        if (offset < 0 || offset + length > size) {
+            throw new EOFException("Truncated TIFF file");
+        }
+        if (mapped != null) {
+            return mapped.slice((int) offset, length).order(byteOrder);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Truncated TIFF file");
+            }
+        }
+        return buffer.flip().order(byteOrder);
+    }
+
+    private SampleType sampleType(Map<Integer, Entry> entries) throws IOException {
+        long[] bits = longs(entries.get(TAG_BITS_PER_SAMPLE));
+        long[] formats = longs(entries.get(TAG_SAMPLE_FORMAT));
+        int bitsPerSample = bits != null ? (int) bits[0] : 1;
+        int format = formats != null ? (int) formats[0] : 1;
+        for (int i = 1; bits != null && i < bits.length; i++) {
+            if (bits[i] != bitsPerSample) {
+                throw new IllegalArgumentException("Bands of different sample types are not supported");
+            }
+        }
+        for (int i = 1; formats != null && i < formats.length; i++) {
+            if (formats[i] != format) {
+                throw new IllegalArgumentException("Bands of different sample types are not supported");
+            }
+        }
+        return SampleType.of(bitsPerSample, format);
+    }
+
+    private long required(Map<Integer, Entry> entries, int tag) throws IOException {
+        long[] values = longs(entries.get(tag));
+        if (values == null || values.length == 0) {
+            throw new IOException("The TIFF is missing tag " + tag);
+        }
+        return values[0];
+    }
+
+    private long first(Map<Integer, Entry> entries, int tag, long defaultValue) throws IOException {
+        long[] values = longs(entries.get(tag));
+        return values != null && values.length > 0 ? values[0] : defaultValue;
+    }
+
+    private long[] longs(Entry entry) throws IOException {
+        if (entry == null) {
+            return null;
+        }
+        ByteBuffer data = read(entry.offset, entry.count * typeSize(entry.type), order);
+        long[] values = new long[entry.count];
+        for (int i = 0; i < entry.count; i++) {
+            values[i] = switch (entry.type) {
+                case 1, 7 -> data.get(i) & 0xFF;
+                case 6 -> data.get(i);
+                case 3 -> data.getShort(i * 2) & 0xFFFF;
+                case 8 -> data.getShort(i * 2);
+                case 4 -> data.getInt(i * 4) & 0xFFFFFFFFL;
+                case 9 -> data.getInt(i * 4);
+                case 16, 17, 18 -> data.getLong(i * 8);
+                default -> throw new IOException("Tag of type " + entry.type + " is not an integer");
+            };
+        }
+        return values;
+    }
+
+    private double[] doubles(Entry entry) throws IOException {
+        if (entry == null) {
+            return null;
+        }
+        if (entry.type != 5 && entry.type != 10 && entry.type != 11 && entry.type != 12) {
+            return Arrays.stream(longs(entry)).asDoubleStream().toArray();
+        }
+        ByteBuffer data = read(entry.offset, entry.count * typeSize(entry.type), order);
+        double[] values = new double[entry.count];
+        for (int i = 0; i < entry.count; i++) {
+            values[i] = switch (entry.type) {
+                case 5 -> (data.getInt(i * 8) & 0xFFFFFFFFL) / (double) (data.getInt(i * 8 + 4) & 0xFFFFFFFFL);
+                case 10 -> data.getInt(i * 8) / (double) data.getInt(i * 8 + 4);
+                case 11 -> data.getFloat(i * 4);
+                default -> data.getDouble(i * 8);
+            };
+        }
+        return values;
+    }
+
+    private String ascii(Entry entry) throws IOException {
+        if (entry == null) {
+            return null;
+        }
+        ByteBuffer data = read(entry.offset, entry.count * typeSize(entry.type), order);
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        int length = bytes.length;
+        while (length > 0 && bytes[length - 1] == 0) {
+            length--;
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static int typeSize(int type) {
+        return switch (type) {
+            case 1, 2, 6, 7 -> 1;
+            case 3, 8 -> 2;
+            case 4, 9, 11 -> 4;
+            case 5, 10, 12, 16, 17, 18 -> 8;
+            default -> 0;
+        };
+    }
+
+    private static Double parseNoData(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String trimmed = value.trim().toLowerCase(Locale.ROOT);
+        return switch (trimmed) {
+            case "nan", "-nan" -> Double.NaN;
+            case "inf", "+inf" -> Double.POSITIVE_INFINITY;
+            case "-inf" -> Double.NEGATIVE_INFINITY;
+            default -> {
+                try {
+                    yield Double.parseDouble(trimmed);
+                } catch (NumberFormatException e) {
+                    yield null;
+                }
+            }
+        };
+    }
+
+    private static String unescape(String text) {
+        return text.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+                .replace("&apos;", "'").replace("&amp;", "&").trim();
+    }
+
+    private static void copySample(ByteBuffer source, int from, ByteBuffer target, int to, int bytes) {
+        switch (bytes) {
+            case 1 -> target.put(to, source.get(from));
+            case 2 -> target.putShort(to, source.getShort(from));
+            case 4 -> target.putInt(to, source.getInt(from));
+            default -> target.putLong(to, source.getLong(from));
+        }
+    }
+
+    private static byte[] inflate(ByteBuffer input, int expected) throws IOException {
+        byte[] output = new byte[expected];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            int position = 0;
+            while (position < expected && !inflater.finished()) {
+                int length = inflater.inflate(output, position, expected - position);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                position += length;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt DEFLATE block", e);
+        } finally {
+            inflater.end();
+        }
+        return output;
+    }
+
+    private static byte[] decodeLzw(ByteBuffer input, int expected) throws IOException {
+        byte[] output = new byte[expected];
+        int[] prefix = new int[4096];
+        byte[] suffix = new byte[4096];
+        byte[] first = new byte[4096];
+        int[] length = new int[4096];
+        for (int i = 0; i < 256; i++) {
+            suffix[i] = (byte) i;
+            first[i] = (byte) i;
+            length[i] = 1;
+        }
+        int next = LZW_END + 1;
+        int codeLength = 9;
+        int previous = -1;
+        int position = 0;
+        long bits = 0;
+        int bitCount = 0;
+        while (position < expected) {
+            while (bitCount < codeLength && input.hasRemaining()) {
+                bits = bits << 8 | (input.get() & 0xFF);
+                bitCount += 8;
+            }
+            if (bitCount < codeLength) {
+                break;
+            }
+            int code = (int) (bits >>> (bitCount - codeLength)) & ((1 << codeLength) - 1);
+            bitCount -= codeLength;
+            bits &= (1L << bitCount) - 1;
+            if (code == LZW_END) {
+                break;
+            }
+            if (code == LZW_CLEAR) {
+                next = LZW_END + 1;
+                codeLength = 9;
+                previous = -1;
+                continue;
+            }
+            if (previous < 0) {
+                if (code > 255) {
+                    throw new IOException("Corrupt LZW block");
+                }
+            } else {
+                if (code > next || (code == next && next == 4096)) {
+                    throw new IOException("Corrupt LZW block");
+                }
+                if (next < 4096) {
+                    // The new entry is the previous string and the first byte of this one, which
+                    // is the previous string's own first byte if this code is the new entry itself
+                    prefix[next] = previous;
+                    suffix[next] = code < next ? first[code] : first[previous];
+                    first[next] = first[previous];
+                    length[next] = length[previous] + 1;
+                    next++;
+                    if (next >= (1 << codeLength) - 1 && codeLength < 12) {
+                        codeLength++;
+                    }
+                }
+            }
+            int entry = code;
+            for (int i = length[code] - 1; i >= 0; i--) {
+                if (position + i < expected) {
+                    output[position + i] = suffix[entry];
+                }
+                entry = prefix[entry];
+            }
+            position += length[code];
+            previous = code;
+        }
+        return output;
+    }
+
+    private static byte[] decodePackBits(ByteBuffer input, int expected) {
+        byte[] output = new byte[expected];
+        int position = 0;
+        while (position < expected && input.hasRemaining()) {
+            int header = input.get();
+            if (header >= 0) {
+                int count = Math.min(header + 1, Math.min(input.remaining(), expected - position));
+                input.get(output, position, count);
+                position += count;
+            } else if (header != -128 && input.hasRemaining()) {
+                byte value = input.get();
+                int count = Math.min(1 - header, expected - position);
+                Arrays.fill(output, position, position + count, value);
+                position += count;
+            }
+        }
+        return output;
+    }
+
+    private static void undoHorizontalPredictor(ByteBuffer data, int rows, int samplesPerRow, int samplesPerPixel,
+                                                int bytes) {
+        for (int row = 0; row < rows; row++) {
+            int start = row * samplesPerRow;
+            for (int i = start + samplesPerPixel; i < start + samplesPerRow; i++) {
+                int at = i * bytes;
+                int before = (i - samplesPerPixel) * bytes;
+                switch (bytes) {
+                    case 1 -> data.put(at, (byte) (data.get(at) + data.get(before)));
+                    case 2 -> data.putShort(at, (short) (data.getShort(at) + data.getShort(before)));
+                    case 4 -> data.putInt(at, data.getInt(at) + data.getInt(before));
+                    default -> data.putLong(at, data.getLong(at) + data.getLong(before));
+                }
+            }
+        }
+    }
+
+    /**
+     * The floating-point predictor differences the bytes of each row, after splitting the
+     * samples into planes of their bytes, most significant first.
+     *
+     * @return the samples, big-endian
+     */
+    private static ByteBuffer undoFloatingPointPredictor(byte[] data, int rows, int samplesPerRow,
+                                                         int samplesPerPixel, int bytes) {
+        byte[] output = new byte[data.length];
+        int rowBytes = samplesPerRow * bytes;
+        for (int row = 0; row < rows; row++) {
+            int start = row * rowBytes;
+            for (int i = start + samplesPerPixel; i < start + rowBytes; i++) {
+                data[i] += data[i - samplesPerPixel];
+            }
+            for (int sample = 0; sample < samplesPerRow; sample++) {
+                for (int b = 0; b < bytes; b++) {
+                    output[start + sample * bytes + b] = data[start + b * samplesPerRow + sample];
+                }
+            }
+        }
+        return ByteBuffer.wrap(output).order(ByteOrder.BIG_ENDIAN);
+    }
+
+    private record Entry(int type, int count, long offset) {
+    }
+}
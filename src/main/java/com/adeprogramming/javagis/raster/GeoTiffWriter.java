@@ -0,0 +1,164 @@
+package com.adeprogramming.javagis.raster;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a single-band 32-bit float grid as a tiled GeoTIFF, optionally DEFLATE-compressed.
+ * The directory is written before the tile data and cells without a value are NaN, declared
+ * through the GDAL no-data tag, so GDAL, QGIS and GeoTools read the files directly.
+ */
+public final class GeoTiffWriter {
+
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    private static final int TAG_IMAGE_WIDTH = 256;
+    private static final int TAG_IMAGE_LENGTH = 257;
+    private static final int TAG_BITS_PER_SAMPLE = 258;
+    private static final int TAG_COMPRESSION = 259;
+    private static final int TAG_PHOTOMETRIC = 262;
+    private static final int TAG_SAMPLES_PER_PIXEL = 277;
+    private static final int TAG_PLANAR_CONFIGURATION = 284;
+    private static final int TAG_TILE_WIDTH = 322;
+    private static final int TAG_TILE_LENGTH = 323;
+    private static final int TAG_TILE_OFFSETS = 324;
+    private static final int TAG_TILE_BYTE_COUNTS = 325;
+    private static final int TAG_SAMPLE_FORMAT = 339;
+    private static final int TAG_MODEL_PIXEL_SCALE = 33550;
+    private static final int TAG_MODEL_TIEPOINT = 33922;
+    private static final int TAG_GEO_KEY_DIRECTORY = 34735;
+    private static final int TAG_GDAL_NODATA = 42113;
+
+    private static final int COMPRESSION_NONE = 1;
+    private static final int COMPRESSION_DEFLATE = 8;
+    private static final int SAMPLE_FORMAT_IEEE_FLOAT = 3;
+
+    private static final int GEO_KEY_MODEL_TYPE = 1024;
+    private static final int GEO_KEY_RASTER_TYPE = 1025;
+    private static final int GEO_KEY_GEOGRAPHIC_TYPE = 2048;
+    private static final int GEO_KEY_PROJECTED_CS_TYPE = 3072;
+    private static final int MODEL_TYPE_PROJECTED = 1;
+    private static final int MODEL_TYPE_GEOGRAPHIC = 2;
+    private static final int RASTER_PIXEL_IS_AREA = 1;
+
+    private final int tileSize;
+    private final boolean deflate;
+
+    /**
+     * @param tileSize the tile width and height, a multiple of 16
+     * @param deflate whether tiles are DEFLATE-compressed
+     */
+    public GeoTiffWriter(int tileSize, boolean deflate) {
+        if (tileSize <= 0 || tileSize % 16 != 0) {
+            throw new IllegalArgumentException("Tile size must be a positive multiple of 16");
+        }
+        this.tileSize = tileSize;
+        this.deflate = deflate;
+    }
+
+    /**
+     * Encode a grid.
+     *
+     * @param grid the grid geometry and coordinate reference system
+     * @param values the cell values row by row, NaN for no data
+     * @return the GeoTIFF file contents
+     */
+    public byte[] write(GridSpec grid, double[] values) {
+        int tilesAcross = (grid.columns() + tileSize - 1) / tileSize;
+        int tilesDown = (grid.rows() + tileSize - 1) / tileSize;
+        byte[][] tiles = new byte[tilesAcross * tilesDown][];
+
+        ByteBuffer raw = ByteBuffer.allocate(tileSize * tileSize * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        Deflater deflater = deflate ? new Deflater(Deflater.DEFAULT_COMPRESSION) : null;
+        try {
+            for (int tileRow = 0; tileRow < tilesDown; tileRow++) {
+                for (int tileColumn = 0; tileColumn < tilesAcross; tileColumn++) {
+                    fillTile(raw, grid, values, tileRow * tileSize, tileColumn * tileSize);
+                    tiles[tileRow * tilesAcross + tileColumn] =
+                            deflater != null ? compress(deflater, raw.array()) : raw.array().clone();
+                }
+            }
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+
+        TiffDirectory directory = new TiffDirectory();
+        directory.putLong(TAG_IMAGE_WIDTH, grid.columns());
+        directory.putLong(TAG_IMAGE_LENGTH, grid.rows());
+        directory.putShort(TAG_BITS_PER_SAMPLE, 32);
+        directory.putShort(TAG_COMPRESSION, deflate ? COMPRESSION_DEFLATE : COMPRESSION_NONE);
+        directory.putShort(TAG_PHOTOMETRIC, 1);
+        directory.putShort(TAG_SAMPLES_PER_PIXEL, 1);
+        directory.putShort(TAG_PLANAR_CONFIGURATION, 1);
+        directory.putShort(TAG_TILE_WIDTH, tileSize);
+        directory.putShort(TAG_TILE_LENGTH, tileSize);
+        directory.putShort(TAG_SAMPLE_FORMAT, SAMPLE_FORMAT_IEEE_FLOAT);
+        directory.putDouble(TAG_MODEL_PIXEL_SCALE, grid.cellSize(), grid.cellSize(), 0);
+        directory.putDouble(TAG_MODEL_TIEPOINT, 0, 0, 0, grid.minX(), grid.maxY(), 0);
+        directory.putShort(TAG_GEO_KEY_DIRECTORY, geoKeys(grid.epsg()));
+        directory.putAscii(TAG_GDAL_NODATA, "nan");
+
+        long[] byteCounts = new long[tiles.length];
+        long[] offsets = new long[tiles.length];
+        // Placeholders of the final length, so the directory size is known before the offsets
+        directory.putLong(TAG_TILE_OFFSETS, offsets);
+        directory.putLong(TAG_TILE_BYTE_COUNTS, byteCounts);
+
+        int directoryOffset = 8;
+        long position = directoryOffset + directory.size();
+        for (int i = 0; i < tiles.length; i++) {
+            offsets[i] = position;
+            byteCounts[i] = tiles[i].length;
+            position += tiles[i].length;
+        }
+        if (position > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Grid too large for a classic TIFF");
+        }
+
+        ByteBuffer file = ByteBuffer.allocate((int) position).order(ByteOrder.LITTLE_ENDIAN);
+        file.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt(directoryOffset);
+        directory.write(file, directoryOffset, 0);
+        for (byte[] tile : tiles) {
+            file.put(tile);
+        }
+        return file.array();
+    }
+
+    private void fillTile(ByteBuffer raw, GridSpec grid, double[] values, int firstRow, int firstColumn) {
+        raw.clear();
+        for (int row = firstRow; row < firstRow + tileSize; row++) {
+            for (int column = firstColumn; column < firstColumn + tileSize; column++) {
+                // Edge tiles are padded to full size
+                boolean inside = row < grid.rows() && column < grid.columns();
+                raw.putFloat(inside ? (float) values[row * grid.columns() + column] : Float.NaN);
+            }
+        }
+    }
+
+    private static byte[] compress(Deflater deflater, byte[] input) {
+        deflater.reset();
+        deflater.setInput(input);
+        deflater.finish();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(input.length / 4);
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) {
+            int length = deflater.deflate(chunk);
+            output.write(chunk, 0, length);
+        }
+        return output.toByteArray();
+    }
+
+    private static int[] geoKeys(int epsg) {
+        boolean geographic = epsg == 4326;
+        return new int[]{
+                1, 1, 0, 3,
+                GEO_KEY_MODEL_TYPE, 0, 1, geographic ? MODEL_TYPE_GEOGRAPHIC : MODEL_TYPE_PROJECTED,
+                GEO_KEY_RASTER_TYPE, 0, 1, RASTER_PIXEL_IS_AREA,
+                geographic ? GEO_KEY_GEOGRAPHIC_TYPE : GEO_KEY_PROJECTED_CS_TYPE, 0, 1, epsg
+        };
+    }
+}
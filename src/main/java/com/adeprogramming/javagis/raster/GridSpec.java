@@ -0,0 +1,41 @@
+package com.adeprogramming.javagis.raster;
+
+/**
+ * A north-up raster grid of square cells in a projected coordinate reference system.
+ * Row 0 is the northernmost row; cell values are stored row by row.
+ *
+ * @param minX the western edge of the grid
+ * @param maxY the northern edge of the grid
+ * @param cellSize the cell width and height in CRS units
+ * @param columns the number of columns
+ * @param rows the number of rows
+ * @param epsg the EPSG code of the coordinate reference system
+ */
+public record GridSpec(double minX, double maxY, double cellSize, int columns, int rows, int epsg) {
+
+    /**
+     * @return the x coordinate of the centre of a column
+     */
+    public double x(int column) {
+        return minX + (column + 0.5) * cellSize;
+    }
+
+    /**
+     * @return the y coordinate of the centre of a row
+     */
+    public double y(int row) {
+        return maxY - (row + 0.5) * cellSize;
+    }
+
+    public double maxX() {
+        return minX + columns * cellSize;
+    }
+
+    public double minY() {
+        return maxY - rows * cellSize;
+    }
+
+    public long cellCount() {
+        return (long) columns * rows;
+    }
+}
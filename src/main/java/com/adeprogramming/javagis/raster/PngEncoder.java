@@ -0,0 +1,105 @@
+package com.adeprogramming.javagis.raster;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes ARGB pixel buffers as 8-bit RGBA PNG images.
+ * An encoder keeps its scanline buffer and deflater between images, so it is meant to be
+ * reused by one thread at a time. Scanlines use the Sub filter, which suits smooth gradients.
+ */
+public final class PngEncoder {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final int COLOUR_TYPE_RGBA = 6;
+    private static final int FILTER_SUB = 1;
+
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final byte[] chunk = new byte[16 * 1024];
+    private byte[] scanlines = new byte[0];
+
+    /**
+     * @param level the DEFLATE compression level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}
+     */
+    public PngEncoder(int level) {
+        this.deflater = new Deflater(level);
+    }
+
+    /**
+     * Encode an image.
+     *
+     * @param argb the pixels row by row, as non-premultiplied ARGB
+     * @param width the image width
+     * @param height the image height
+     * @return the PNG file contents
+     */
+    public byte[] encode(int[] argb, int width, int height) {
+        int stride = width * 4 + 1;
+        if (scanlines.length < stride * height) {
+            scanlines = new byte[stride * height];
+        }
+        int p = 0;
+        for (int y = 0; y < height; y++) {
+            scanlines[p++] = FILTER_SUB;
+            int previous = 0;
+            for (int x = 0; x < width; x++) {
+                int pixel = argb[y * width + x];
+                // Sub filter: each byte minus the same channel of the pixel to its left
+                scanlines[p++] = (byte) ((pixel >>> 16) - (previous >>> 16));
+                scanlines[p++] = (byte) ((pixel >>> 8) - (previous >>> 8));
+                scanlines[p++] = (byte) (pixel - previous);
+                scanlines[p++] = (byte) ((pixel >>> 24) - (previous >>> 24));
+                previous = pixel;
+            }
+        }
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream(p / 4 + 64);
+        png.writeBytes(SIGNATURE);
+
+        ByteBuffer header = ByteBuffer.allocate(13);
+        header.putInt(width).putInt(height).put((byte) 8).put((byte) COLOUR_TYPE_RGBA)
+                .put((byte) 0).put((byte) 0).put((byte) 0);
+        writeChunk(png, "IHDR", header.array(), header.array().length);
+
+        deflater.reset();
+        deflater.setInput(scanlines, 0, p);
+        deflater.finish();
+        ByteArrayOutputStream data = new ByteArrayOutputStream(p / 4 + 64);
+        while (!deflater.finished()) {
+            int length = deflater.deflate(chunk);
+            data.write(chunk, 0, length);
+        }
+        writeChunk(png, "IDAT", data.toByteArray(), data.size());
+        writeChunk(png, "IEND", new byte[0], 0);
+        return png.toByteArray();
+    }
+
+    /**
+     * Release the native deflater memory.
+     */
+    public void close() {
+        deflater.end();
+    }
+
+    private void writeChunk(ByteArrayOutputStream png, String type, byte[] data, int length) {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        writeInt(png, length);
+        png.writeBytes(typeBytes);
+        png.write(data, 0, length);
+        crc.reset();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        writeInt(png, (int) crc.getValue());
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+}
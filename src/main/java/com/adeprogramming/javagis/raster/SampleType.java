@@ -0,0 +1,115 @@
+package com.adeprogramming.javagis.raster;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * The data types of raster samples, as declared by the TIFF {@code BitsPerSample} and
+ * {@code SampleFormat} tags. Samples are read and written at absolute byte indexes of a buffer,
+ * in the buffer's byte order.
+ */
+public enum SampleType {
+
+    UINT8(1, 1),
+    INT8(1, 2),
+    UINT16(2, 1),
+    INT16(2, 2),
+    UINT32(4, 1),
+    INT32(4, 2),
+    FLOAT32(4, 3),
+    FLOAT64(8, 3);
+
+    private static final int FORMAT_FLOAT = 3;
+
+    private final int bytes;
+    private final int sampleFormat;
+
+    SampleType(int bytes, int sampleFormat) {
+        this.bytes = bytes;
+        this.sampleFormat = sampleFormat;
+    }
+
+    /**
+     * @param bitsPerSample the TIFF {@code BitsPerSample}
+     * @param sampleFormat the TIFF {@code SampleFormat}: 1 unsigned, 2 signed, 3 floating point
+     * @return the sample type
+     * @throws IllegalArgumentException if the combination is not supported
+     */
+    public static SampleType of(int bitsPerSample, int sampleFormat) {
+        for (SampleType type : values()) {
+            if (type.bytes * 8 == bitsPerSample && type.sampleFormat == sampleFormat) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported sample type: " + bitsPerSample + "-bit samples of format "
+                + sampleFormat);
+    }
+
+    public int bytes() {
+        return bytes;
+    }
+
+    public int bits() {
+        return bytes * 8;
+    }
+
+    public int sampleFormat() {
+        return sampleFormat;
+    }
+
+    public boolean isInteger() {
+        return sampleFormat != FORMAT_FLOAT;
+    }
+
+    /**
+     * @return the name of the type in the STAC raster extension, e.g. {@code uint16}
+     */
+    public String dataType() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param buffer the samples
+     * @param index the byte index of the sample
+     * @return the sample value
+     */
+    public double get(ByteBuffer buffer, int index) {
+        return switch (this) {
+            case UINT8 -> buffer.get(index) & 0xFF;
+            case INT8 -> buffer.get(index);
+            case UINT16 -> buffer.getShort(index) & 0xFFFF;
+            case INT16 -> buffer.getShort(index);
+            case UINT32 -> buffer.getInt(index) & 0xFFFFFFFFL;
+            case INT32 -> buffer.getInt(index);
+            case FLOAT32 -> buffer.getFloat(index);
+            case FLOAT64 -> buffer.getDouble(index);
+        };
+    }
+
+    /**
+     * Write a sample, rounding and clamping it to the range of integer types.
+     *
+     * @param buffer the samples
+     * @param index the byte index of the sample
+     * @param value the sample value
+     */
+    public void put(ByteBuffer buffer, int index, double value) {
+        switch (this) {
+            case UINT8 -> buffer.put(index, (byte) clamp(value, 0, 0xFF));
+            case INT8 -> buffer.put(index, (byte) clamp(value, Byte.MIN_VALUE, Byte.MAX_VALUE));
+            case UINT16 -> buffer.putShort(index, (short) clamp(value, 0, 0xFFFF));
+            case INT16 -> buffer.putShort(index, (short) clamp(value, Short.MIN_VALUE, Short.MAX_VALUE));
+            case UINT32 -> buffer.putInt(index, (int) clamp(value, 0, 0xFFFFFFFFL));
+            case INT32 -> buffer.putInt(index, (int) clamp(value, Integer.MIN_VALUE, Integer.MAX_VALUE));
+            case FLOAT32 -> buffer.putFloat(index, (float) value);
+            case FLOAT64 -> buffer.putDouble(index, value);
+        }
+    }
+
+    private static long clamp(double value, long min, long max) {
+        if (Double.isNaN(value)) {
+            return 0;
+        }
+        return Math.max(min, Math.min(max, Math.round(value)));
+    }
+}
@@ -0,0 +1,131 @@
+package com.adeprogramming.javagis.raster;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.TreeMap;
+
+/**
+ * One TIFF image file directory (IFD) under construction, written little-endian.
+ * Entries are kept sorted by tag as the format requires; values that do not fit into the
+ * four bytes of an entry are written to an area directly after the directory.
+ */
+final class TiffDirectory {
+
+    static final short TYPE_ASCII = 2;
+    static final short TYPE_SHORT = 3;
+    static final short TYPE_LONG = 4;
+    static final short TYPE_DOUBLE = 12;
+
+    private final TreeMap<Integer, Entry> entries = new TreeMap<>();
+
+    void putShort(int tag, int... values) {
+        entries.put(tag, new Entry(TYPE_SHORT, values.length, values, null, null));
+    }
+
+    void putLong(int tag, long... values) {
+        entries.put(tag, new Entry(TYPE_LONG, values.length, null, values, null));
+    }
+
+    void putDouble(int tag, double... values) {
+        entries.put(tag, new Entry(TYPE_DOUBLE, values.length, null, null, values));
+    }
+
+    void putAscii(int tag, String value) {
+        byte[] bytes = (value + '\0').getBytes(StandardCharsets.US_ASCII);
+        int[] chars = new int[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i] = bytes[i];
+        }
+        entries.put(tag, new Entry(TYPE_ASCII, bytes.length, chars, null, null));
+    }
+
+    /**
+     * @return the number of bytes taken by the directory and its out-of-line values
+     */
+    int size() {
+        int size = 2 + entries.size() * 12 + 4;
+        for (Entry entry : entries.values()) {
+            int bytes = entry.byteCount();
+            if (bytes > 4) {
+                size += bytes + (bytes & 1);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Write the directory at the buffer's position, which must equal {@code offset} in the file.
+     *
+     * @param buffer the little-endian target buffer
+     * @param offset the file offset of the directory
+     * @param nextDirectory the file offset of the next directory, 0 for the last one
+     */
+    void write(ByteBuffer buffer, int offset, int nextDirectory) {
+        int overflow = offset + 2 + entries.size() * 12 + 4;
+        int overflowPosition = buffer.position() + (overflow - offset);
+
+        buffer.putShort((short) entries.size());
+        for (var tagged : entries.entrySet()) {
+            Entry entry = tagged.getValue();
+            buffer.putShort(tagged.getKey().shortValue());
+            buffer.putShort(entry.type);
+            buffer.putInt(entry.count);
+            int bytes = entry.byteCount();
+            if (bytes <= 4) {
+                int start = buffer.position();
+                entry.writeValues(buffer);
+                buffer.position(start + 4);
+            } else {
+                buffer.putInt(overflow);
+                int resume = buffer.position();
+                buffer.position(overflowPosition);
+                entry.writeValues(buffer);
+                if ((bytes & 1) != 0) {
+                    buffer.put((byte) 0);
+                }
+                overflowPosition = buffer.position();
+                overflow += bytes + (bytes & 1);
+                buffer.position(resume);
+            }
+        }
+        buffer.putInt(nextDirectory);
+        buffer.position(overflowPosition);
+    }
+
+    private record Entry(short type, int count, int[] ints, long[] longs, double[] doubles) {
+
+        int byteCount() {
+            return switch (type) {
+                case TYPE_ASCII -> count;
+                case TYPE_SHORT -> count * 2;
+                case TYPE_LONG -> count * 4;
+                default -> count * 8;
+            };
+        }
+
+        void writeValues(ByteBuffer buffer) {
+            switch (type) {
+                case TYPE_ASCII -> {
+                    for (int value : ints) {
+                        buffer.put((byte) value);
+                    }
+                }
+                case TYPE_SHORT -> {
+                    for (int value : ints) {
+                        buffer.putShort((short) value);
+                    }
+                }
+                case TYPE_LONG -> {
+                    for (long value : longs) {
+                        buffer.putInt((int) value);
+                    }
+                }
+                default -> {
+                    for (double value : doubles) {
+                        buffer.putDouble(value);
+                    }
+                }
+            }
+        }
+    }
+}
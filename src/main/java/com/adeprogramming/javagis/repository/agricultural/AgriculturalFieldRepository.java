@@ -2,6 +2,7 @@ package com.adeprogramming.javagis.repository.agricultural;
 
 import com.adeprogramming.javagis.model.agricultural.AgriculturalField;
 import org.locationtech.jts.geom.Geometry;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -50,13 +51,16 @@ public interface AgriculturalFieldRepository extends JpaRepository<AgriculturalF
     List<AgriculturalField> findByOwnerName(String ownerName);
 
     /**
-     * Find all agricultural fields within a specified distance from a point.
+     * Find all agricultural fields within a specified distance from a geometry.
+     * The distance is measured on the WGS 84 spheroid, through the GiST index on the
+     * geography cast of the geometry column.
      *
-     * @param geometry the point geometry
+     * @param geometry the geometry (WGS 84)
      * @param distance the distance in meters
      * @return a list of agricultural fields
      */
-    @Query(value = "SELECT af FROM AgriculturalField af WHERE ST_DWithin(af.geometry, :geometry, :distance)")
+    @Query(value = "SELECT af.* FROM agricultural_fields af WHERE ST_DWithin(CAST(af.geometry AS geography), " +
+            "CAST(ST_SetSRID(CAST(:geometry AS geometry), 4326) AS geography), :distance)", nativeQuery = true)
     List<AgriculturalField> findWithinDistance(@Param("geometry") Geometry geometry, @Param("distance") double distance);
 
     /**
@@ -84,4 +88,13 @@ public interface AgriculturalFieldRepository extends JpaRepository<AgriculturalF
      * @return a list of agricultural fields
      */
     List<AgriculturalField> findByAreaHectaresGreaterThan(Double areaHectares);
-}
\ No newline at end of file
+
+    /**
+     * Find the next page of agricultural fields by ascending ID, for reading all of them in batches.
+     *
+     * @param id the last ID of the previous page
+     * @param pageable the page size
+     * @return a list of agricultural fields
+     */
+    List<AgriculturalField> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+}
@@ -0,0 +1,35 @@
+package com.adeprogramming.javagis.repository.environmental;
+
+import com.adeprogramming.javagis.model.environmental.MeasurementDailySketch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Repository interface for MeasurementDailySketch entities.
+ * Provides methods for reading daily measurement summaries.
+ */
+@Repository
+public interface MeasurementDailySketchRepository extends JpaRepository<MeasurementDailySketch, Long> {
+
+    /**
+     * Find the daily sketches of one parameter at one station for a range of days.
+     *
+     * @param stationKey the primary key of the monitoring station
+     * @param parameterCode the catalog code of the parameter
+     * @param fromDay the first day (inclusive)
+     * @param toDay the last day (inclusive)
+     * @return a list of daily sketches
+     */
+    @Query("SELECT s FROM MeasurementDailySketch s WHERE s.station.id = :stationKey " +
+            "AND s.parameterCode = :parameterCode AND s.day BETWEEN :fromDay AND :toDay")
+    List<MeasurementDailySketch> findForDays(
+            @Param("stationKey") Long stationKey,
+            @Param("parameterCode") Integer parameterCode,
+            @Param("fromDay") LocalDate fromDay,
+            @Param("toDay") LocalDate toDay);
+}
@@ -0,0 +1,24 @@
+package com.adeprogramming.javagis.repository.environmental;
+
+import com.adeprogramming.javagis.model.environmental.MeasurementParameter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * Repository interface for MeasurementParameter entities.
+ * Provides methods for accessing the measurement parameter catalog.
+ */
+@Repository
+public interface MeasurementParameterRepository extends JpaRepository<MeasurementParameter, Long> {
+
+    /**
+     * Find a catalog entry by parameter name and unit.
+     *
+     * @param name the parameter name
+     * @param unit the unit of measurement
+     * @return an Optional containing the catalog entry if found
+     */
+    Optional<MeasurementParameter> findByNameAndUnit(String name, String unit);
+}
@@ -3,12 +3,14 @@ package com.adeprogramming.javagis.repository.environmental;
 import com.adeprogramming.javagis.model.environmental.Measurement;
 
 import com.adeprogramming.javagis.model.environmental.MonitoringStation;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -37,11 +39,12 @@ public interface MeasurementRepository extends JpaRepository<Measurement, Long>
 
     /**
      * Find all measurements for a specific parameter.
+     * A parameter name maps to one catalog code per unit, see {@code MeasurementParameterDictionary#codesForName}.
      *
-     * @param parameterName the name of the parameter
+     * @param parameterCodes the catalog codes of the parameter
      * @return a list of measurements
      */
-    List<Measurement> findByParameterName(String parameterName);
+    List<Measurement> findByParameterCodeIn(Collection<Integer> parameterCodes);
 
     /**
      * Find all measurements taken between two dates.
@@ -56,32 +59,32 @@ public interface MeasurementRepository extends JpaRepository<Measurement, Long>
      * Find all measurements for a specific station and parameter.
      *
      * @param station the monitoring station
-     * @param parameterName the name of the parameter
+     * @param parameterCodes the catalog codes of the parameter
      * @return a list of measurements
      */
-    List<Measurement> findByStationAndParameterName(MonitoringStation station, String parameterName);
+    List<Measurement> findByStationAndParameterCodeIn(MonitoringStation station, Collection<Integer> parameterCodes);
 
     /**
      * Find all measurements for a specific station and parameter between two dates.
      *
      * @param station the monitoring station
-     * @param parameterName the name of the parameter
+     * @param parameterCodes the catalog codes of the parameter
      * @param startTime the start date and time
      * @param endTime the end date and time
      * @return a list of measurements
      */
-    List<Measurement> findByStationAndParameterNameAndMeasurementTimeBetween(
-            MonitoringStation station, String parameterName, LocalDateTime startTime, LocalDateTime endTime);
+    List<Measurement> findByStationAndParameterCodeInAndMeasurementTimeBetween(
+            MonitoringStation station, Collection<Integer> parameterCodes, LocalDateTime startTime, LocalDateTime endTime);
 
     /**
      * Find all measurements where the parameter value exceeds a threshold.
      *
-     * @param parameterName the name of the parameter
+     * @param parameterCodes the catalog codes of the parameter
      * @param thresholdValue the threshold value
      * @return a list of measurements
      */
-    @Query("SELECT m FROM Measurement m WHERE m.parameterName = :parameterName AND m.parameterValue > :thresholdValue")
-    List<Measurement> findExceedingThreshold(@Param("parameterName") String parameterName, @Param("thresholdValue") Double thresholdValue);
+    @Query("SELECT m FROM Measurement m WHERE m.parameterCode IN :parameterCodes AND m.parameterValue > :thresholdValue")
+    List<Measurement> findExceedingThreshold(@Param("parameterCodes") Collection<Integer> parameterCodes, @Param("thresholdValue") Double thresholdValue);
 
     /**
      * Find the latest measurement for each station.
@@ -90,5 +93,55 @@ public interface MeasurementRepository extends JpaRepository<Measurement, Long>
      */
     @Query("SELECT m FROM Measurement m WHERE m.measurementTime = (SELECT MAX(m2.measurementTime) FROM Measurement m2 WHERE m2.station = m.station)")
     List<Measurement> findLatestMeasurements();
-}
 
+    /**
+     * Find the next page of measurements of a station in a time window, ordered by time.
+     * Uses keyset pagination on (measurement time, id), so each page is an index range scan
+     * on {@code idx_measurements_station_time} regardless of how deep the client has paged.
+     *
+     * @param stationKey the primary key of the monitoring station
+     * @param from the start of the time window (inclusive)
+     * @param to the end of the time window (exclusive)
+     * @param afterTime the measurement time of the last row of the previous page
+     * @param afterId the id of the last row of the previous page, 0 for the first page
+     * @param limit the page size
+     * @return a list of measurements
+     */
+    @Query("SELECT m FROM Measurement m WHERE m.station.id = :stationKey " +
+            "AND m.measurementTime >= :from AND m.measurementTime < :to " +
+            "AND (m.measurementTime > :afterTime OR (m.measurementTime = :afterTime AND m.id > :afterId)) " +
+            "ORDER BY m.measurementTime, m.id")
+    List<Measurement> findStationPage(
+            @Param("stationKey") Long stationKey,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            @Param("afterTime") LocalDateTime afterTime,
+            @Param("afterId") Long afterId,
+            Pageable limit);
+
+    /**
+     * Find the next page of measurements of one parameter at a station in a time window,
+     * ordered by time.
+     *
+     * @param stationKey the primary key of the monitoring station
+     * @param parameterCode the catalog code of the parameter
+     * @param from the start of the time window (inclusive)
+     * @param to the end of the time window (exclusive)
+     * @param afterTime the measurement time of the last row of the previous page
+     * @param afterId the id of the last row of the previous page, 0 for the first page
+     * @param limit the page size
+     * @return a list of measurements
+     */
+    @Query("SELECT m FROM Measurement m WHERE m.station.id = :stationKey AND m.parameterCode = :parameterCode " +
+            "AND m.measurementTime >= :from AND m.measurementTime < :to " +
+            "AND (m.measurementTime > :afterTime OR (m.measurementTime = :afterTime AND m.id > :afterId)) " +
+            "ORDER BY m.measurementTime, m.id")
+    List<Measurement> findStationParameterPage(
+            @Param("stationKey") Long stationKey,
+            @Param("parameterCode") Integer parameterCode,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            @Param("afterTime") LocalDateTime afterTime,
+            @Param("afterId") Long afterId,
+            Pageable limit);
+}
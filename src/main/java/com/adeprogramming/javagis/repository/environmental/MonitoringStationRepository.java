@@ -2,6 +2,7 @@ package com.adeprogramming.javagis.repository.environmental;
 
 import com.adeprogramming.javagis.model.environmental.MonitoringStation;
 import org.locationtech.jts.geom.Geometry;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -25,6 +26,16 @@ public interface MonitoringStationRepository extends JpaRepository<MonitoringSta
      */
     Optional<MonitoringStation> findByStationId(String stationId);
 
+    /**
+     * Find the primary key of a monitoring station by its unique station ID,
+     * without loading the station itself.
+     *
+     * @param stationId the station ID
+     * @return an Optional containing the primary key if found
+     */
+    @Query("SELECT ms.id FROM MonitoringStation ms WHERE ms.stationId = :stationId")
+    Optional<Long> findIdByStationId(@Param("stationId") String stationId);
+
     /**
      * Find all monitoring stations of a specific type.
      *
@@ -42,13 +53,16 @@ public interface MonitoringStationRepository extends JpaRepository<MonitoringSta
     List<MonitoringStation> findByStatus(MonitoringStation.StationStatus status);
 
     /**
-     * Find all monitoring stations within a specified distance from a point.
+     * Find all monitoring stations within a specified distance from a geometry.
+     * The distance is measured on the WGS 84 spheroid, through the GiST index on the
+     * geography cast of the geometry column.
      *
-     * @param geometry the point geometry
+     * @param geometry the geometry (WGS 84)
      * @param distance the distance in meters
      * @return a list of monitoring stations
      */
-    @Query(value = "SELECT ms FROM MonitoringStation ms WHERE ST_DWithin(ms.geometry, :geometry, :distance)")
+    @Query(value = "SELECT ms.* FROM monitoring_stations ms WHERE ST_DWithin(CAST(ms.geometry AS geography), " +
+            "CAST(ST_SetSRID(CAST(:geometry AS geometry), 4326) AS geography), :distance)", nativeQuery = true)
     List<MonitoringStation> findWithinDistance(@Param("geometry") Geometry geometry, @Param("distance") double distance);
 
     /**
@@ -59,4 +73,30 @@ public interface MonitoringStationRepository extends JpaRepository<MonitoringSta
      */
     @Query(value = "SELECT ms FROM MonitoringStation ms WHERE ST_Within(ms.geometry, :geometry) = true")
     List<MonitoringStation> findWithinGeometry(@Param("geometry") Geometry geometry);
+
+    /**
+     * Find all monitoring stations that intersect with a specified geometry.
+     *
+     * @param geometry the geometry to check for intersection
+     * @return a list of monitoring stations
+     */
+    @Query(value = "SELECT ms FROM MonitoringStation ms WHERE ST_Intersects(ms.geometry, :geometry) = true")
+    List<MonitoringStation> findIntersectingGeometry(@Param("geometry") Geometry geometry);
+
+    /**
+     * Find the next page of monitoring stations by ascending ID, for reading all of them in batches.
+     *
+     * @param id the last ID of the previous page
+     * @param pageable the page size
+     * @return a list of monitoring stations
+     */
+    List<MonitoringStation> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    /**
+     * Find the business IDs of all monitoring stations.
+     *
+     * @return the station IDs
+     */
+    @Query("SELECT ms.stationId FROM MonitoringStation ms")
+    List<String> findAllStationIds();
 }
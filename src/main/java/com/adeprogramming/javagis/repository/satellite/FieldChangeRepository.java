@@ -0,0 +1,38 @@
+package com.adeprogramming.javagis.repository.satellite;
+
+import com.adeprogramming.javagis.model.satellite.FieldChange;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository interface for FieldChange entities.
+ * Provides methods for reading the NDVI changes of fields.
+ */
+@Repository
+public interface FieldChangeRepository extends JpaRepository<FieldChange, Long> {
+
+    /**
+     * Find the field changes of one scene change, largest loss first.
+     *
+     * @param changeKey the primary key of the scene change
+     * @return a list of field changes, with their fields
+     */
+    @Query("SELECT f FROM FieldChange f JOIN FETCH f.field WHERE f.change.id = :changeKey " +
+            "ORDER BY f.meanChange ASC NULLS LAST")
+    List<FieldChange> findForChange(@Param("changeKey") Long changeKey);
+
+    /**
+     * Delete the field changes of one scene change.
+     *
+     * @param changeKey the primary key of the scene change
+     * @return the number of rows deleted
+     */
+    @Modifying
+    @Query("DELETE FROM FieldChange f WHERE f.change.id = :changeKey")
+    int deleteForChange(@Param("changeKey") Long changeKey);
+}
@@ -0,0 +1,54 @@
+package com.adeprogramming.javagis.repository.satellite;
+
+import com.adeprogramming.javagis.model.satellite.FieldSceneStatistics;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository interface for FieldSceneStatistics entities.
+ * Provides methods for reading the statistics of fields per satellite scene.
+ */
+@Repository
+public interface FieldSceneStatisticsRepository extends JpaRepository<FieldSceneStatistics, Long> {
+
+    /**
+     * Find the statistics of one field for a range of acquisition times, oldest first.
+     *
+     * @param fieldId the business ID of the field
+     * @param from the start of the time range (inclusive)
+     * @param to the end of the time range (inclusive)
+     * @return a list of statistics, with their scenes
+     */
+    @Query("SELECT s FROM FieldSceneStatistics s JOIN FETCH s.scene WHERE s.field.fieldId = :fieldId " +
+            "AND s.observationDate BETWEEN :from AND :to ORDER BY s.observationDate")
+    List<FieldSceneStatistics> findTimeSeries(
+            @Param("fieldId") String fieldId,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to);
+
+    /**
+     * Find the statistics of all fields in one scene.
+     *
+     * @param sceneKey the primary key of the scene
+     * @return a list of statistics, with their fields, by field ID
+     */
+    @Query("SELECT s FROM FieldSceneStatistics s JOIN FETCH s.field WHERE s.scene.id = :sceneKey " +
+            "ORDER BY s.field.fieldId")
+    List<FieldSceneStatistics> findForScene(@Param("sceneKey") Long sceneKey);
+
+    /**
+     * Delete the statistics of all fields in one scene.
+     *
+     * @param sceneKey the primary key of the scene
+     * @return the number of rows deleted
+     */
+    @Modifying
+    @Query("DELETE FROM FieldSceneStatistics s WHERE s.scene.id = :sceneKey")
+    int deleteForScene(@Param("sceneKey") Long sceneKey);
+}
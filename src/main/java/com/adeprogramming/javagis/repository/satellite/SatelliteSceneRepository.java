@@ -0,0 +1,34 @@
+package com.adeprogramming.javagis.repository.satellite;
+
+import com.adeprogramming.javagis.model.satellite.SatelliteScene;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * Repository interface for SatelliteScene entities.
+ * Provides methods for accessing ingested satellite scenes.
+ */
+@Repository
+public interface SatelliteSceneRepository extends JpaRepository<SatelliteScene, Long> {
+
+    /**
+     * Find a satellite scene by its unique scene ID.
+     *
+     * @param sceneId the scene ID
+     * @return an Optional containing the scene if found
+     */
+    Optional<SatelliteScene> findBySceneId(String sceneId);
+
+    /**
+     * Find the satellite scenes with a specific status.
+     *
+     * @param status the status of the scenes
+     * @param pageable pagination information
+     * @return a page of satellite scenes
+     */
+    Page<SatelliteScene> findByStatus(SatelliteScene.SceneStatus status, Pageable pageable);
+}
@@ -0,0 +1,58 @@
+package com.adeprogramming.javagis.repository.satellite;
+
+import com.adeprogramming.javagis.model.satellite.SatelliteScene;
+import com.adeprogramming.javagis.model.satellite.SceneChange;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository interface for SceneChange entities.
+ * Provides methods for accessing NDVI changes between satellite scenes.
+ */
+@Repository
+public interface SceneChangeRepository extends JpaRepository<SceneChange, Long> {
+
+    /**
+     * Find a change with its scenes.
+     *
+     * @param id the ID of the change
+     * @return an Optional containing the change if found
+     */
+    @Query("SELECT c FROM SceneChange c JOIN FETCH c.beforeScene JOIN FETCH c.afterScene WHERE c.id = :id")
+    Optional<SceneChange> findWithScenes(@Param("id") Long id);
+
+    /**
+     * Find the change between two scenes.
+     *
+     * @param beforeScene the earlier scene
+     * @param afterScene the later scene
+     * @return an Optional containing the change if found
+     */
+    Optional<SceneChange> findByBeforeSceneAndAfterScene(SatelliteScene beforeScene, SatelliteScene afterScene);
+
+    /**
+     * Find all changes with their scenes, newest first.
+     *
+     * @return a list of changes
+     */
+    @Query("SELECT c FROM SceneChange c JOIN FETCH c.beforeScene JOIN FETCH c.afterScene ORDER BY c.createdAt DESC")
+    List<SceneChange> findAllWithScenes();
+
+    /**
+     * Find the changes to a scene with a specific status.
+     *
+     * @param sceneKey the primary key of the later scene
+     * @param status the status of the changes
+     * @return a list of changes, with their earlier scenes
+     */
+    @Query("SELECT c FROM SceneChange c JOIN FETCH c.beforeScene WHERE c.afterScene.id = :sceneKey " +
+            "AND c.status = :status")
+    List<SceneChange> findForAfterScene(
+            @Param("sceneKey") Long sceneKey,
+            @Param("status") SatelliteScene.SceneStatus status);
+}
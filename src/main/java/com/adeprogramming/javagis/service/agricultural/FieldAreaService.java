@@ -0,0 +1,181 @@
+package com.adeprogramming.javagis.service.agricultural;
+
+import com.adeprogramming.javagis.model.agricultural.FieldMeasure;
+import com.adeprogramming.javagis.payload.agricultural.FieldAreaRecomputeResponse;
+import com.adeprogramming.javagis.payload.agricultural.FieldMeasureResponse;
+import jakarta.annotation.PreDestroy;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygonal;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.geojson.GeoJsonReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Service for the areas and perimeters of agricultural fields, measured on the WGS 84 ellipsoid
+ * from their boundaries. Fields are measured when they are written, see
+ * {@link com.adeprogramming.javagis.model.listener.FieldMeasureEntityListener}; the whole table can be recomputed in bulk, e.g. after
+ * boundaries were changed in the database directly.
+ * <p>
+ * A bulk recompute reads the fields in pages ordered by ID, measures each page in parallel on a
+ * dedicated fork-join pool and writes back only the fields whose area or perimeter changed,
+ * with one batched statement per page.
+ */
+@Service
+public class FieldAreaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FieldAreaService.class);
+
+    /** Differences below this are rounding noise, not a changed boundary. */
+    private static final double AREA_TOLERANCE_HECTARES = 1e-4;
+    private static final double PERIMETER_TOLERANCE_METRES = 1e-2;
+
+    private static final String SELECT_PAGE =
+            "SELECT id, ST_AsBinary(geometry), area_hectares, perimeter_metres FROM agricultural_fields " +
+            "WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final String UPDATE_MEASURES =
+            "UPDATE agricultural_fields SET area_hectares = ?, perimeter_metres = ? WHERE id = ?";
+
+    /** Marks a field whose geometry cannot be read. */
+    private static final Object[] FAILED = new Object[0];
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ForkJoinPool pool;
+    private final int pageSize;
+
+    @Autowired
+    public FieldAreaService(
+            JdbcTemplate jdbcTemplate,
+            @Value("${fields.area.parallelism:0}") int parallelism,
+            @Value("${fields.area.page-size:5000}") int pageSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Measure a geometry on the ellipsoid.
+     *
+     * @param geometry the geometry (WGS 84)
+     * @return the area in square metres and the perimeter in metres
+     */
+    public static FieldMeasureResponse measure(Geometry geometry) {
+        FieldMeasure measure = FieldMeasure.of(geometry);
+        return FieldMeasureResponse.builder()
+                .areaSquareMetres(measure.areaSquareMetres())
+                .areaHectares(measure.areaHectares())
+                .perimeterMetres(measure.perimeterMetres())
+                .build();
+    }
+
+    /**
+     * Read a GeoJSON Polygon or MultiPolygon to measure.
+     *
+     * @param geoJson the GeoJSON geometry
+     * @return the geometry
+     * @throws IllegalArgumentException if the GeoJSON is not a valid polygonal geometry
+     */
+    public Geometry readBoundary(String geoJson) {
+        Geometry boundary;
+        try {
+            boundary = new GeoJsonReader().read(geoJson);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Invalid GeoJSON geometry", e);
+        }
+        if (!(boundary instanceof Polygonal) || !boundary.isValid()) {
+            throw new IllegalArgumentException("The boundary must be a valid Polygon or MultiPolygon");
+        }
+        return boundary;
+    }
+
+    /**
+     * Recompute the area and perimeter of every field and update those that changed.
+     *
+     * @return the numbers of fields read and updated
+     */
+    public FieldAreaRecomputeResponse recomputeAll() {
+        long start = System.nanoTime();
+        long lastId = 0;
+        int scanned = 0;
+        int updated = 0;
+        int failed = 0;
+        while (true) {
+            List<FieldRow> page = jdbcTemplate.query(SELECT_PAGE, (rs, rowNum) -> new FieldRow(
+                    rs.getLong(1), rs.getBytes(2), rs.getObject(3, Double.class), rs.getObject(4, Double.class)),
+                    lastId, pageSize);
+            if (page.isEmpty()) {
+                break;
+            }
+            lastId = page.get(page.size() - 1).id();
+            scanned += page.size();
+
+            Object[][] measured = new Object[page.size()][];
+            pool.submit(() -> IntStream.range(0, page.size()).parallel()
+                    .forEach(i -> measured[i] = remeasure(page.get(i)))).join();
+
+            List<Object[]> changed = new ArrayList<>();
+            for (Object[] row : measured) {
+                if (row == FAILED) {
+                    failed++;
+                } else if (row != null) {
+                    changed.add(row);
+                }
+            }
+            if (!changed.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_MEASURES, changed);
+                updated += changed.size();
+            }
+        }
+
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        logger.info("Recomputed field areas: {} read, {} updated, {} unreadable in {} ms", scanned, updated, failed, millis);
+        return FieldAreaRecomputeResponse.builder()
+                .scanned(scanned)
+                .updated(updated)
+                .failed(failed)
+                .millis(millis)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * @return the update parameters if the measures changed, null if not, {@link #FAILED} if the
+     * geometry cannot be read
+     */
+    private static Object[] remeasure(FieldRow row) {
+        if (row.wkb() == null) {
+            return null;
+        }
+        Geometry geometry;
+        try {
+            geometry = new WKBReader().read(row.wkb());
+        } catch (ParseException e) {
+            return FAILED;
+        }
+        FieldMeasure measure = FieldMeasure.of(geometry);
+        if (row.areaHectares() != null && row.perimeterMetres() != null
+                && Math.abs(row.areaHectares() - measure.areaHectares()) < AREA_TOLERANCE_HECTARES
+                && Math.abs(row.perimeterMetres() - measure.perimeterMetres()) < PERIMETER_TOLERANCE_METRES) {
+            return null;
+        }
+        return new Object[]{measure.areaHectares(), measure.perimeterMetres(), row.id()};
+    }
+
+    private record FieldRow(long id, byte[] wkb, Double areaHectares, Double perimeterMetres) {
+    }
+}
@@ -0,0 +1,64 @@
+package com.adeprogramming.javagis.service.agricultural.imports;
+
+import com.adeprogramming.javagis.model.agricultural.AgriculturalField;
+import com.adeprogramming.javagis.service.spatial.imports.ImportColumn;
+
+import java.util.List;
+
+/**
+ * The columns of {@code agricultural_fields} that imports map attributes to, with their default
+ * attribute names, e.g. {@code FIELD_ID}, {@code PARCEL_ID} or {@code ID} for the field ID.
+ */
+public enum FieldColumn implements ImportColumn {
+
+    FIELD_ID("field_id", ValueType.TEXT, "field_id", "fieldid", "parcel_id", "parcelid", "parcel", "id"),
+    NAME("name", ValueType.TEXT, "name", "field_name", "fieldname", "bezeichn"),
+    DESCRIPTION("description", ValueType.TEXT, "description", "descriptio", "descr", "desc"),
+    SOIL_TYPE("soil_type", ValueType.TEXT, "soil_type", "soiltype", "soil"),
+    CURRENT_CROP("current_crop", ValueType.TEXT, "current_crop", "curr_crop", "crop"),
+    PLANTING_DATE("planting_date", ValueType.DATE, "planting_date", "planting_d", "plant_date", "planted"),
+    EXPECTED_HARVEST_DATE("expected_harvest_date", ValueType.DATE, "expected_harvest_date", "expected_h",
+            "harvest_date", "harvest_da", "harvest"),
+    LAST_SPRAY_DATE("last_spray_date", ValueType.DATE, "last_spray_date", "last_spray", "spray_date"),
+    LAST_SPRAY_PRODUCT("last_spray_product", ValueType.TEXT, "last_spray_product", "last_spr_p", "spray_prod",
+            "product"),
+    OWNER_NAME("owner_name", ValueType.TEXT, "owner_name", "owner"),
+    CONTACT_INFORMATION("contact_information", ValueType.TEXT, "contact_information", "contact_in", "contact"),
+    NOTES("notes", ValueType.TEXT, "notes", "note", "remarks"),
+    STATUS("status", ValueType.ENUM, "status");
+
+    private final String columnName;
+    private final ValueType valueType;
+    private final List<String> defaultAttributes;
+
+    FieldColumn(String columnName, ValueType valueType, String... defaultAttributes) {
+        this.columnName = columnName;
+        this.valueType = valueType;
+        this.defaultAttributes = List.of(defaultAttributes);
+    }
+
+    @Override
+    public String getColumnName() {
+        return columnName;
+    }
+
+    @Override
+    public ValueType getValueType() {
+        return valueType;
+    }
+
+    @Override
+    public List<String> getDefaultAttributes() {
+        return defaultAttributes;
+    }
+
+    @Override
+    public Class<? extends Enum<?>> getEnumType() {
+        return this == STATUS ? AgriculturalField.FieldStatus.class : null;
+    }
+
+    @Override
+    public String getInsertDefault() {
+        return this == STATUS ? AgriculturalField.FieldStatus.ACTIVE.name() : null;
+    }
+}
@@ -0,0 +1,90 @@
+package com.adeprogramming.javagis.service.agricultural.imports;
+
+import com.adeprogramming.javagis.model.agricultural.FieldMeasure;
+import com.adeprogramming.javagis.service.spatial.SpatialIndexService;
+import com.adeprogramming.javagis.service.spatial.imports.AttributeMapping;
+import com.adeprogramming.javagis.service.spatial.imports.ImportTarget;
+import com.adeprogramming.javagis.service.spatial.imports.UpsertStatement;
+import com.adeprogramming.javagis.service.spatial.imports.UpsertStatement.FixedColumn;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygonal;
+import org.locationtech.jts.io.WKBWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Imports agricultural fields, upserted by field ID. A field's name defaults to its field ID and
+ * its status to active; its area and perimeter are measured on the ellipsoid, as the entity
+ * listener would.
+ */
+@Component
+public class FieldImportTarget implements ImportTarget {
+
+    private static final UpsertStatement<FieldColumn> UPSERT = new UpsertStatement<>(
+            "agricultural_fields", FieldColumn.class, FieldColumn.FIELD_ID, List.of(
+            new FixedColumn("geometry", "ST_SetSRID(ST_GeomFromWKB(?), 4326)", Types.BINARY, true),
+            FixedColumn.constant("srid", "4326", true),
+            FixedColumn.parameter("area_hectares", Types.DOUBLE, true),
+            FixedColumn.parameter("perimeter_metres", Types.DOUBLE, true),
+            FixedColumn.parameter("source", Types.VARCHAR, true),
+            FixedColumn.constant("active", "TRUE", true),
+            FixedColumn.parameter("created_at", Types.TIMESTAMP, false),
+            FixedColumn.parameter("updated_at", Types.TIMESTAMP, true)));
+
+    private final SpatialIndexService spatialIndexService;
+
+    @Autowired
+    public FieldImportTarget(SpatialIndexService spatialIndexService) {
+        this.spatialIndexService = spatialIndexService;
+    }
+
+    @Override
+    public String getName() {
+        return "fields";
+    }
+
+    @Override
+    public AttributeMapping<FieldColumn> parseMapping(String spec) {
+        return AttributeMapping.parse(FieldColumn.class, spec);
+    }
+
+    @Override
+    public void checkGeometryType(Geometry geometry) {
+        if (!(geometry instanceof Polygonal)) {
+            throw new IllegalArgumentException("The geometry is a " + geometry.getGeometryType() + ", not a polygon");
+        }
+    }
+
+    @Override
+    public Object[] toRow(Object[] values, Geometry geometry, String source) {
+        if (values[FieldColumn.FIELD_ID.ordinal()] == null) {
+            throw new IllegalArgumentException("No field ID");
+        }
+        if (values[FieldColumn.NAME.ordinal()] == null) {
+            values[FieldColumn.NAME.ordinal()] = values[FieldColumn.FIELD_ID.ordinal()];
+        }
+        FieldMeasure measure = FieldMeasure.of(geometry);
+        LocalDateTime now = LocalDateTime.now();
+        return UPSERT.parameters(values, new WKBWriter(2).write(geometry), measure.areaHectares(),
+                measure.perimeterMetres(), source, now, now);
+    }
+
+    @Override
+    public String getUpsertSql() {
+        return UPSERT.getSql();
+    }
+
+    @Override
+    public int[] getUpsertTypes() {
+        return UPSERT.getTypes();
+    }
+
+    @Override
+    public void rowsWrittenSince(LocalDateTime since) {
+        spatialIndexService.fieldsWrittenSince(since);
+    }
+}
@@ -0,0 +1,194 @@
+package com.adeprogramming.javagis.service.environmental;
+
+import com.adeprogramming.javagis.analytics.interpolation.SamplePoints;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Least-recently-used cache of encoded products derived from measurements, such as tiles or
+ * contours, bounded by total size. Entries are grouped by (parameter, time bucket) so that all
+ * entries of a bucket can be dropped at once when new readings land in it. Each bucket also holds
+ * the station readings its entries are computed from.
+ * <p>
+ * A computation first takes the {@link Bucket} and stores its result against it afterwards; if
+ * the bucket was invalidated in between, the now stale result is discarded instead of cached.
+ *
+ * @param <K> the key of an entry within its bucket
+ */
+public final class BucketCache<K> {
+
+    private final long maxBytes;
+    private final int maxBuckets;
+
+    private final LinkedHashMap<EntryKey<K>, byte[]> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final LinkedHashMap<BucketKey, Bucket> buckets = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long invalidations;
+
+    /**
+     * @param maxBytes the total size of the cached entries
+     * @param maxBuckets the number of buckets to keep
+     */
+    public BucketCache(long maxBytes, int maxBuckets) {
+        this.maxBytes = maxBytes;
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * @return the cached entry, or null
+     */
+    public synchronized byte[] get(BucketKey bucket, K key) {
+        byte[] entry = entries.get(new EntryKey<>(bucket, key));
+        if (entry != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return entry;
+    }
+
+    /**
+     * @return the bucket, created if it is not cached
+     */
+    public synchronized Bucket bucket(BucketKey key) {
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new Bucket(key);
+            buckets.put(key, bucket);
+            if (buckets.size() > maxBuckets) {
+                drop(buckets.keySet().iterator().next());
+            }
+        }
+        return bucket;
+    }
+
+    /**
+     * Cache an entry, unless its bucket has been invalidated since it was taken.
+     */
+    public synchronized void put(Bucket bucket, K key, byte[] value) {
+        if (buckets.get(bucket.key) != bucket) {
+            return;
+        }
+        EntryKey<K> entryKey = new EntryKey<>(bucket.key, key);
+        byte[] previous = entries.put(entryKey, value);
+        if (previous != null) {
+            bytes -= previous.length;
+        }
+        bytes += value.length;
+        bucket.entries.add(entryKey);
+
+        Iterator<Map.Entry<EntryKey<K>, byte[]>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<EntryKey<K>, byte[]> entry = eldest.next();
+            bytes -= entry.getValue().length;
+            Bucket owner = buckets.get(entry.getKey().bucket());
+            if (owner != null) {
+                owner.entries.remove(entry.getKey());
+            }
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Drop a bucket with its entries and readings.
+     */
+    public synchronized void invalidate(BucketKey key) {
+        if (drop(key)) {
+            invalidations++;
+        }
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(entries.size(), bytes, buckets.size(), hits, misses, invalidations);
+    }
+
+    private boolean drop(BucketKey key) {
+        Bucket bucket = buckets.remove(key);
+        if (bucket == null) {
+            return false;
+        }
+        for (EntryKey<?> entryKey : new ArrayList<>(bucket.entries)) {
+            byte[] entry = entries.remove(entryKey);
+            if (entry != null) {
+                bytes -= entry.length;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Identifies a parameter at one time bucket.
+     *
+     * @param parameterCode the catalog code of the parameter
+     * @param bucketEnd the end of the time bucket in epoch milliseconds
+     */
+    public record BucketKey(int parameterCode, long bucketEnd) {
+
+        /**
+         * Get the bucket containing a time. Buckets are closed at the end, like the lookback
+         * window of {@link MeasurementSurfaceService#latestReadings}.
+         *
+         * @param parameterCode the catalog code of the parameter
+         * @param millis the time in epoch milliseconds
+         * @param bucketMillis the bucket size in milliseconds
+         * @return the bucket
+         */
+        public static BucketKey of(int parameterCode, long millis, long bucketMillis) {
+            return new BucketKey(parameterCode, -Math.floorDiv(-millis, bucketMillis) * bucketMillis);
+        }
+    }
+
+    private record EntryKey<K>(BucketKey bucket, K key) {
+    }
+
+    /**
+     * The cached state of one bucket. Entry keys are guarded by the cache lock.
+     */
+    public static final class Bucket {
+
+        private final BucketKey key;
+        private final Set<EntryKey<?>> entries = new HashSet<>();
+        private final Map<Integer, SamplePoints> samples = new ConcurrentHashMap<>();
+
+        Bucket(BucketKey key) {
+            this.key = key;
+        }
+
+        public BucketKey getKey() {
+            return key;
+        }
+
+        /**
+         * @param epsg the EPSG code of the coordinate system the readings are projected to
+         * @return the station readings of the bucket, or null if they have not been read yet
+         */
+        public SamplePoints getSamples(int epsg) {
+            return samples.get(epsg);
+        }
+
+        public void setSamples(int epsg, SamplePoints samples) {
+            this.samples.put(epsg, samples);
+        }
+    }
+
+    /**
+     * Cache counters.
+     *
+     * @param entries the number of cached entries
+     * @param bytes the size of the cached entries
+     * @param buckets the number of cached time buckets
+     * @param hits the number of entries served from the cache
+     * @param misses the number of entries computed
+     * @param invalidations the number of buckets dropped because new readings arrived
+     */
+    public record Stats(int entries, long bytes, int buckets, long hits, long misses, long invalidations) {
+    }
+}
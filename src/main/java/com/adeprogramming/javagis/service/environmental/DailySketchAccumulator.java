@@ -0,0 +1,86 @@
+package com.adeprogramming.javagis.service.environmental;
+
+import com.adeprogramming.javagis.analytics.sketch.TDigest;
+
+/**
+ * In-memory summary of the values of one (station, parameter, day), mergeable with
+ * other accumulators and with persisted daily sketches.
+ */
+public class DailySketchAccumulator {
+
+    public static final double COMPRESSION = 100;
+
+    private final TDigest digest;
+    private long sampleCount;
+    private long exceedanceCount;
+    private double valueSum;
+
+    public DailySketchAccumulator() {
+        this(new TDigest(COMPRESSION));
+    }
+
+    private DailySketchAccumulator(TDigest digest) {
+        this.digest = digest;
+    }
+
+    /**
+     * Restore an accumulator from its persisted columns.
+     *
+     * @param digest the serialized digest, may be null for an empty day
+     * @param sampleCount the number of values
+     * @param exceedanceCount the number of flagged threshold exceedances
+     * @param valueSum the sum of all values
+     * @return the accumulator
+     */
+    public static DailySketchAccumulator restore(byte[] digest, long sampleCount, long exceedanceCount, double valueSum) {
+        DailySketchAccumulator accumulator = new DailySketchAccumulator(
+                digest != null ? TDigest.fromBytes(digest) : new TDigest(COMPRESSION));
+        accumulator.sampleCount = sampleCount;
+        accumulator.exceedanceCount = exceedanceCount;
+        accumulator.valueSum = valueSum;
+        return accumulator;
+    }
+
+    /**
+     * Add a single measurement value.
+     *
+     * @param value the measured value
+     * @param thresholdExceeded whether the measurement exceeded its threshold
+     */
+    public void add(double value, boolean thresholdExceeded) {
+        digest.add(value);
+        sampleCount++;
+        valueSum += value;
+        if (thresholdExceeded) {
+            exceedanceCount++;
+        }
+    }
+
+    /**
+     * Merge another accumulator into this one.
+     *
+     * @param other the accumulator to merge
+     */
+    public void merge(DailySketchAccumulator other) {
+        digest.merge(other.digest);
+        sampleCount += other.sampleCount;
+        exceedanceCount += other.exceedanceCount;
+        valueSum += other.valueSum;
+    }
+
+    public TDigest getDigest() {
+        return digest;
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    public long getExceedanceCount() {
+        return exceedanceCount;
+    }
+
+    public double getValueSum() {
+        return valueSum;
+    }
+}
@@ -0,0 +1,203 @@
+package com.adeprogramming.javagis.service.environmental;
+
+import com.adeprogramming.javagis.payload.environmental.AreaAggregationResponse;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygonal;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.geojson.GeoJsonReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Service for aggregating one parameter over all monitoring stations inside an area.
+ * The stations are resolved spatially and the measurements bucketed and aggregated by the
+ * database in a single query, so only one row per non-empty bucket leaves it. When the buckets
+ * are whole days and the caller asks for it, the daily rollups maintained by
+ * {@link MeasurementStatisticsService} are aggregated instead of the raw measurements, provided
+ * every station in the area has had its rollups back-filled by {@link MeasurementSketchBackfill}.
+ */
+@Service
+public class MeasurementAggregationService {
+
+    public static final String SOURCE_MEASUREMENTS = "measurements";
+    public static final String SOURCE_DAILY_ROLLUPS = "daily-rollups";
+
+    private static final long SECONDS_PER_DAY = Duration.ofDays(1).toSeconds();
+
+    private static final String AREA_STATIONS =
+            "WITH area_stations AS (SELECT id, sketches_backfilled FROM monitoring_stations " +
+            "WHERE active = true AND ST_Intersects(geometry, ST_GeomFromText(?, 4326))) ";
+
+    private static final String AGGREGATE_MEASUREMENTS = AREA_STATIONS +
+            "SELECT CAST(FLOOR(EXTRACT(EPOCH FROM (m.measurement_time - CAST(? AS TIMESTAMP))) / ?) AS BIGINT) AS bucket, " +
+            "COUNT(*), SUM(m.parameter_value), MIN(m.parameter_value), MAX(m.parameter_value), " +
+            "COUNT(DISTINCT m.station_id), COUNT(*) FILTER (WHERE m.threshold_exceeded) " +
+            "FROM measurements m JOIN area_stations s ON s.id = m.station_id " +
+            "WHERE m.parameter_code = ? AND m.measurement_time >= ? AND m.measurement_time < ? " +
+            "GROUP BY bucket ORDER BY bucket";
+
+    private static final String AGGREGATE_DAILY_ROLLUPS = AREA_STATIONS +
+            "SELECT CAST((d.day - CAST(? AS DATE)) / ? AS BIGINT) AS bucket, " +
+            "SUM(d.sample_count), SUM(d.value_sum), MIN(d.min_value), MAX(d.max_value), " +
+            "COUNT(DISTINCT d.station_id), SUM(d.exceedance_count) " +
+            "FROM measurement_daily_sketches d JOIN area_stations s ON s.id = d.station_id " +
+            "WHERE d.parameter_code = ? AND d.day >= ? AND d.day < ? AND d.sample_count > 0 " +
+            "GROUP BY bucket ORDER BY bucket";
+
+    private static final String ROLLUPS_COMPLETE = AREA_STATIONS +
+            "SELECT NOT EXISTS (SELECT 1 FROM area_stations WHERE sketches_backfilled IS NOT TRUE)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeasurementParameterDictionary measurementParameterDictionary;
+
+    @Autowired
+    public MeasurementAggregationService(
+            JdbcTemplate jdbcTemplate,
+            MeasurementParameterDictionary measurementParameterDictionary) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.measurementParameterDictionary = measurementParameterDictionary;
+    }
+
+    /**
+     * Read a GeoJSON Polygon or MultiPolygon.
+     *
+     * @param geoJson the GeoJSON geometry
+     * @return the area
+     * @throws IllegalArgumentException if the GeoJSON is not a valid polygonal geometry
+     */
+    public Geometry readArea(String geoJson) {
+        Geometry area;
+        try {
+            area = new GeoJsonReader().read(geoJson);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Invalid GeoJSON geometry", e);
+        }
+        if (!(area instanceof Polygonal) || !area.isValid()) {
+            throw new IllegalArgumentException("The area must be a valid Polygon or MultiPolygon");
+        }
+        return area;
+    }
+
+    /**
+     * Aggregate one parameter over all stations inside an area, in time buckets aligned to {@code from}.
+     * Daily rollups only hold readings from before their rollout once the station has been
+     * back-filled, so they are only read when every station in the area has been; otherwise the
+     * raw measurements are aggregated and {@code source} says so.
+     *
+     * @param area the area (WGS 84)
+     * @param parameterCode the catalog code of the parameter
+     * @param from the start of the time range (inclusive)
+     * @param to the end of the time range (exclusive)
+     * @param bucket the bucket size
+     * @param useRollups whether daily rollups may be used when the buckets are whole days and complete
+     * @return the aggregates per non-empty bucket
+     */
+    @Transactional(readOnly = true)
+    public AreaAggregationResponse aggregate(Geometry area, int parameterCode, LocalDateTime from,
+                                             LocalDateTime to, Duration bucket, boolean useRollups) {
+        long bucketSeconds = bucket.toSeconds();
+        int maxBuckets = (int) ((Duration.between(from, to).toSeconds() + bucketSeconds - 1) / bucketSeconds);
+        long originMillis = from.toInstant(ZoneOffset.UTC).toEpochMilli();
+        long bucketMillis = bucket.toMillis();
+        Columns columns = new Columns(maxBuckets);
+
+        String source;
+        if (useRollups && isDayAligned(from, to, bucketSeconds) && rollupsComplete(area)) {
+            source = SOURCE_DAILY_ROLLUPS;
+            long bucketDays = bucketSeconds / SECONDS_PER_DAY;
+            jdbcTemplate.query(AGGREGATE_DAILY_ROLLUPS, (RowCallbackHandler) rs -> columns.add(
+                            originMillis + rs.getLong(1) * bucketMillis,
+                            rs.getLong(2), rs.getDouble(3), rs.getDouble(4), rs.getDouble(5),
+                            rs.getInt(6), rs.getLong(7)),
+                    area.toText(), Date.valueOf(from.toLocalDate()), bucketDays,
+                    parameterCode, Date.valueOf(from.toLocalDate()), Date.valueOf(to.toLocalDate()));
+        } else {
+            source = SOURCE_MEASUREMENTS;
+            jdbcTemplate.query(AGGREGATE_MEASUREMENTS, (RowCallbackHandler) rs -> columns.add(
+                            originMillis + rs.getLong(1) * bucketMillis,
+                            rs.getLong(2), rs.getDouble(3), rs.getDouble(4), rs.getDouble(5),
+                            rs.getInt(6), rs.getLong(7)),
+                    area.toText(), Timestamp.valueOf(from), bucketSeconds,
+                    parameterCode, Timestamp.valueOf(from), Timestamp.valueOf(to));
+        }
+
+        MeasurementParameterDictionary.Entry parameter = measurementParameterDictionary.decode(parameterCode);
+        return columns.toResponse(AreaAggregationResponse.builder()
+                .parameterName(parameter != null ? parameter.name() : null)
+                .unit(parameter != null ? parameter.unit() : null)
+                .from(from.toString())
+                .to(to.toString())
+                .bucket(bucket.toString())
+                .source(source));
+    }
+
+    private boolean rollupsComplete(Geometry area) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(ROLLUPS_COMPLETE, Boolean.class, area.toText()));
+    }
+
+    private static boolean isDayAligned(LocalDateTime from, LocalDateTime to, long bucketSeconds) {
+        return bucketSeconds % SECONDS_PER_DAY == 0
+                && from.toLocalTime().equals(LocalTime.MIDNIGHT)
+                && to.toLocalTime().equals(LocalTime.MIDNIGHT);
+    }
+
+    /**
+     * Column arrays sized for the largest possible number of buckets and trimmed at the end.
+     */
+    private static final class Columns {
+
+        private final long[] timestamps;
+        private final long[] counts;
+        private final double[] mean;
+        private final double[] min;
+        private final double[] max;
+        private final int[] stations;
+        private final long[] exceedances;
+        private int size;
+
+        Columns(int capacity) {
+            timestamps = new long[capacity];
+            counts = new long[capacity];
+            mean = new double[capacity];
+            min = new double[capacity];
+            max = new double[capacity];
+            stations = new int[capacity];
+            exceedances = new long[capacity];
+        }
+
+        void add(long timestamp, long count, double sum, double minValue, double maxValue,
+                 int stationCount, long exceedanceCount) {
+            timestamps[size] = timestamp;
+            counts[size] = count;
+            mean[size] = sum / count;
+            min[size] = minValue;
+            max[size] = maxValue;
+            stations[size] = stationCount;
+            exceedances[size] = exceedanceCount;
+            size++;
+        }
+
+        AreaAggregationResponse toResponse(AreaAggregationResponse.AreaAggregationResponseBuilder builder) {
+            return builder
+                    .timestamps(Arrays.copyOf(timestamps, size))
+                    .counts(Arrays.copyOf(counts, size))
+                    .mean(Arrays.copyOf(mean, size))
+                    .min(Arrays.copyOf(min, size))
+                    .max(Arrays.copyOf(max, size))
+                    .stations(Arrays.copyOf(stations, size))
+                    .exceedances(Arrays.copyOf(exceedances, size))
+                    .build();
+        }
+    }
+}
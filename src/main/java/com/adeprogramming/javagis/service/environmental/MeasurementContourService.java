@@ -0,0 +1,156 @@
+package com.adeprogramming.javagis.service.environmental;
+
+import com.adeprogramming.javagis.analytics.interpolation.InterpolationMethod;
+import com.adeprogramming.javagis.analytics.interpolation.SamplePoints;
+import com.adeprogramming.javagis.service.environmental.live.LiveMeasurement;
+import com.adeprogramming.javagis.service.spatial.CoordinateTransformService;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.io.geojson.GeoJsonWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Service for contours of measurement surfaces, e.g. the area where PM10 is at or above a limit
+ * value. The latest reading of every station within a time bucket is interpolated onto an
+ * EPSG:3035 grid and the area at or above each level traced as polygons; areas are therefore in
+ * square metres. The polygons are returned in WGS 84 as a GeoJSON FeatureCollection, cached per
+ * (parameter, time bucket, levels, bbox, resolution) until new readings land in the bucket.
+ */
+@Service
+public class MeasurementContourService {
+
+    private static final int COORDINATE_DECIMALS = 7;
+
+    private final MeasurementSurfaceService measurementSurfaceService;
+    private final CoordinateTransformService coordinateTransformService;
+    private final BucketCache<ContourKey> cache;
+    private final long bucketMillis;
+    private final InterpolationMethod method;
+    private final int neighbours;
+    private final double maxDistance;
+    private final double power;
+
+    @Autowired
+    public MeasurementContourService(
+            MeasurementSurfaceService measurementSurfaceService,
+            CoordinateTransformService coordinateTransformService,
+            @Value("${measurements.contours.bucket:PT1H}") Duration bucket,
+            @Value("${measurements.contours.cache-size:16MB}") DataSize cacheSize,
+            @Value("${measurements.contours.max-buckets:64}") int maxBuckets,
+            @Value("${measurements.contours.method:IDW}") InterpolationMethod method,
+            @Value("${measurements.contours.neighbours:12}") int neighbours,
+            @Value("${measurements.contours.max-distance:50000}") double maxDistance,
+            @Value("${measurements.contours.power:2}") double power) {
+        this.measurementSurfaceService = measurementSurfaceService;
+        this.coordinateTransformService = coordinateTransformService;
+        this.cache = new BucketCache<>(cacheSize.toBytes(), maxBuckets);
+        this.bucketMillis = bucket.toMillis();
+        this.method = method;
+        this.neighbours = neighbours;
+        this.maxDistance = maxDistance;
+        this.power = power;
+    }
+
+    /**
+     * Get the contours of a parameter, computing them if they are not cached.
+     *
+     * @param parameterCode the catalog code of the parameter
+     * @param time a time within the bucket to contour
+     * @param levels the levels
+     * @param bbox the area to cover (WGS 84)
+     * @param resolution the cell size of the interpolated grid in metres
+     * @return the GeoJSON FeatureCollection, one feature per level, UTF-8 encoded
+     * @throws IllegalArgumentException if the grid is too large or there are no readings in the bucket
+     */
+    public byte[] getContours(int parameterCode, LocalDateTime time, List<Double> levels,
+                              Envelope bbox, double resolution) {
+        BucketCache.BucketKey bucketKey = BucketCache.BucketKey.of(
+                parameterCode, time.toInstant(ZoneOffset.UTC).toEpochMilli(), bucketMillis);
+        ContourKey contourKey = new ContourKey(List.copyOf(levels),
+                List.of(bbox.getMinX(), bbox.getMinY(), bbox.getMaxX(), bbox.getMaxY()), resolution);
+
+        byte[] contours = cache.get(bucketKey, contourKey);
+        if (contours != null) {
+            return contours;
+        }
+
+        BucketCache.Bucket bucket = cache.bucket(bucketKey);
+        LocalDateTime end = LocalDateTime.ofInstant(Instant.ofEpochMilli(bucketKey.bucketEnd()), ZoneOffset.UTC);
+        SamplePoints samples = bucket.getSamples(MeasurementSurfaceService.GRID_EPSG);
+        if (samples == null) {
+            samples = measurementSurfaceService.gridReadings(parameterCode, end, Duration.ofMillis(bucketMillis));
+            bucket.setSamples(MeasurementSurfaceService.GRID_EPSG, samples);
+        }
+
+        MeasurementSurfaceService.Surface surface = measurementSurfaceService.interpolate(samples,
+                measurementSurfaceService.gridFor(bbox, resolution), method, neighbours, maxDistance, power);
+        double[] levelValues = levels.stream().mapToDouble(Double::doubleValue).toArray();
+        List<MultiPolygon> areas = measurementSurfaceService.contour(surface, levelValues);
+
+        contours = toFeatureCollection(levelValues, areas, end.minus(Duration.ofMillis(bucketMillis)), end,
+                surface.stationCount()).getBytes(StandardCharsets.UTF_8);
+        cache.put(bucket, contourKey, contours);
+        return contours;
+    }
+
+    /**
+     * @return contour cache counters
+     */
+    public BucketCache.Stats getStats() {
+        return cache.getStats();
+    }
+
+    @EventListener
+    public void onMeasurementsCommitted(MeasurementsCommittedEvent event) {
+        Set<BucketCache.BucketKey> touched = new HashSet<>();
+        for (LiveMeasurement measurement : event.measurements()) {
+            touched.add(BucketCache.BucketKey.of(
+                    measurement.parameterCode(), measurement.measurementMillis(), bucketMillis));
+        }
+        for (BucketCache.BucketKey key : touched) {
+            cache.invalidate(key);
+        }
+    }
+
+    private String toFeatureCollection(double[] levels, List<MultiPolygon> areas, LocalDateTime from,
+                                       LocalDateTime to, int stationCount) {
+        GeoJsonWriter writer = new GeoJsonWriter(COORDINATE_DECIMALS);
+        writer.setEncodeCRS(false);
+
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\"type\":\"FeatureCollection\",\"from\":\"").append(from)
+                .append("\",\"to\":\"").append(to)
+                .append("\",\"stationCount\":").append(stationCount)
+                .append(",\"features\":[");
+        for (int i = 0; i < levels.length; i++) {
+            MultiPolygon area = areas.get(i);
+            double squareMetres = area.getArea();
+            Geometry wgs84 = coordinateTransformService.transform(area,
+                    MeasurementSurfaceService.GRID_EPSG, CoordinateTransformService.WGS84);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"type\":\"Feature\",\"properties\":{\"level\":").append(levels[i])
+                    .append(",\"areaSquareMetres\":").append(Math.round(squareMetres))
+                    .append("},\"geometry\":").append(writer.write(wgs84)).append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private record ContourKey(List<Double> levels, List<Double> bbox, double resolution) {
+    }
+}
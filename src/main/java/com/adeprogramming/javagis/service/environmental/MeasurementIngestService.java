@@ -0,0 +1,365 @@
+package com.adeprogramming.javagis.service.environmental;
+
+import com.adeprogramming.javagis.model.environmental.Measurement;
+import com.adeprogramming.javagis.payload.environmental.IngestResponse;
+import com.adeprogramming.javagis.payload.environmental.MeasurementReading;
+import com.adeprogramming.javagis.repository.environmental.MonitoringStationRepository;
+import com.adeprogramming.javagis.service.environmental.ingest.DuplicateReadingFilter;
+import com.adeprogramming.javagis.service.environmental.live.LiveMeasurement;
+import com.adeprogramming.javagis.service.environmental.live.LiveMeasurementDispatcher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service for writing measurement readings received from station gateways.
+ * Readings are encoded through the {@link MeasurementParameterDictionary} and written
+ * with a single JDBC batch insert per request. The daily statistics sketches are updated
+ * in the same transaction.
+ * <p>
+ * Ingest is idempotent: a reading is identified by (station, parameter, measurement time).
+ * Retransmitted readings are dropped by the {@link DuplicateReadingFilter} before they reach
+ * the database, and any that slip past it are ignored by the unique key on the table.
+ * Once committed, newly inserted readings are handed to the {@link LiveMeasurementDispatcher}
+ * for live stream subscribers.
+ * <p>
+ * Station keys are cached by business ID. Entries are evicted when a station changes on this
+ * node and expire after {@code measurements.ingest.station-cache-ttl}, so readings for a
+ * station deleted on another node are rejected as unknown once that time has passed.
+ */
+@Service
+public class MeasurementIngestService {
+
+    private static final String INSERT_MEASUREMENT =
+            "INSERT INTO measurements (station_id, parameter_code, parameter_value, measurement_time, " +
+            "quality_flag, threshold_exceeded, threshold_value, notes, created_at, active) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, now(), true) " +
+            "ON CONFLICT (station_id, parameter_code, measurement_time) DO NOTHING";
+
+    /**
+     * The readings inserted by the current transaction: its rows carry its 32-bit ID in xmin.
+     */
+    private static final String INSERTED_BY_TRANSACTION =
+            "SELECT station_id, parameter_code, CAST(EXTRACT(EPOCH FROM measurement_time) * 1000 AS BIGINT) " +
+            "FROM measurements WHERE station_id = ANY(?) AND measurement_time BETWEEN ? AND ? " +
+            "AND xmin::text = (txid_current() % 4294967296)::text";
+
+    private static final int[] INSERT_TYPES = {
+            Types.BIGINT, Types.INTEGER, Types.DOUBLE, Types.TIMESTAMP,
+            Types.VARCHAR, Types.BOOLEAN, Types.DOUBLE, Types.VARCHAR};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MonitoringStationRepository monitoringStationRepository;
+    private final MeasurementParameterDictionary measurementParameterDictionary;
+    private final MeasurementStatisticsService measurementStatisticsService;
+    private final DuplicateReadingFilter duplicateReadingFilter;
+    private final LiveMeasurementDispatcher liveMeasurementDispatcher;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final long stationCacheTtlNanos;
+    private final Map<String, CachedStation> stationKeys = new ConcurrentHashMap<>();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder filteredDuplicates = new LongAdder();
+    private final LongAdder databaseDuplicates = new LongAdder();
+
+    @Autowired
+    public MeasurementIngestService(
+            JdbcTemplate jdbcTemplate,
+            MonitoringStationRepository monitoringStationRepository,
+            MeasurementParameterDictionary measurementParameterDictionary,
+            MeasurementStatisticsService measurementStatisticsService,
+            DuplicateReadingFilter duplicateReadingFilter,
+            LiveMeasurementDispatcher liveMeasurementDispatcher,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${measurements.ingest.station-cache-ttl:PT5M}") Duration stationCacheTtl) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.monitoringStationRepository = monitoringStationRepository;
+        this.measurementParameterDictionary = measurementParameterDictionary;
+        this.measurementStatisticsService = measurementStatisticsService;
+        this.duplicateReadingFilter = duplicateReadingFilter;
+        this.liveMeasurementDispatcher = liveMeasurementDispatcher;
+        this.eventPublisher = eventPublisher;
+        this.stationCacheTtlNanos = stationCacheTtl.toNanos();
+    }
+
+    /**
+     * Write a batch of readings.
+     * Readings for unknown stations are rejected and duplicates are skipped;
+     * the rest of the batch is still written.
+     *
+     * @param readings the readings to write
+     * @return the number of accepted, duplicate and rejected readings
+     */
+    @Transactional
+    public IngestResponse ingest(List<MeasurementReading> readings) {
+        List<PreparedReading> prepared = new ArrayList<>(readings.size());
+        Set<ReadingKey> batchKeys = new HashSet<>();
+        List<String> errors = new ArrayList<>();
+        int duplicates = 0;
+
+        for (MeasurementReading reading : readings) {
+            Long stationKey = resolveStation(reading.getStationId());
+            if (stationKey == null) {
+                errors.add("Unknown station: " + reading.getStationId());
+                continue;
+            }
+            PreparedReading row = prepare(stationKey, reading);
+            if (duplicateReadingFilter.isDuplicate(stationKey, row.parameterCode(), row.measurementMillis())
+                    || !batchKeys.add(new ReadingKey(stationKey, row.parameterCode(), row.measurementMillis()))) {
+                duplicates++;
+                continue;
+            }
+            prepared.add(row);
+        }
+        filteredDuplicates.add(duplicates);
+
+        List<PreparedReading> inserted = write(prepared);
+        int conflicts = prepared.size() - inserted.size();
+        databaseDuplicates.add(conflicts);
+
+        return IngestResponse.builder()
+                .accepted(inserted.size())
+                .duplicates(duplicates + conflicts)
+                .rejected(errors.size())
+                .errors(errors)
+                .build();
+    }
+
+    /**
+     * Check whether readings for a station can be written.
+     *
+     * @param stationId the business ID of the monitoring station
+     * @return true if the station exists
+     */
+    public boolean isKnownStation(String stationId) {
+        return resolveStation(stationId) != null;
+    }
+
+    /**
+     * @return counters describing written readings and dropped duplicates
+     */
+    public IngestStats getStats() {
+        return new IngestStats(written.sum(), filteredDuplicates.sum(), databaseDuplicates.sum(),
+                duplicateReadingFilter.getStats());
+    }
+
+    /**
+     * Drop cached station keys when stations are changed or removed, so readings for a deleted
+     * station are rejected as unknown instead of failing its foreign key.
+     *
+     * @param event the changed stations
+     */
+    @EventListener
+    public void onStationsChanged(MonitoringStationsChangedEvent event) {
+        if (event.stationKey() == null) {
+            stationKeys.clear();
+        } else {
+            stationKeys.values().removeIf(cached -> cached.key() == event.stationKey());
+        }
+    }
+
+    /**
+     * Insert the readings, update the daily sketches for those actually inserted and, once
+     * the transaction commits, remember them in the duplicate filter, publish them live and
+     * announce them with a {@link MeasurementsCommittedEvent}.
+     */
+    private List<PreparedReading> write(List<PreparedReading> prepared) {
+        if (prepared.isEmpty()) {
+            return prepared;
+        }
+
+        List<Object[]> rows = new ArrayList<>(prepared.size());
+        for (PreparedReading reading : prepared) {
+            rows.add(reading.toInsertParameters());
+        }
+        int[] counts = jdbcTemplate.batchUpdate(INSERT_MEASUREMENT, rows, INSERT_TYPES);
+
+        List<PreparedReading> inserted = new ArrayList<>(prepared.size());
+        List<PreparedReading> unknown = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == Statement.SUCCESS_NO_INFO) {
+                // The driver ran the batch without row counts, e.g. with reWriteBatchedInserts
+                unknown.add(prepared.get(i));
+            } else if (counts[i] > 0) {
+                // 0 means the unique key rejected a duplicate the filter did not know about
+                inserted.add(prepared.get(i));
+            }
+        }
+        if (!unknown.isEmpty()) {
+            inserted.addAll(insertedByThisTransaction(unknown));
+        }
+
+        Map<MeasurementStatisticsService.DailySketchKey, DailySketchAccumulator> sketches = new HashMap<>();
+        for (PreparedReading reading : inserted) {
+            sketches.computeIfAbsent(reading.sketchKey(), key -> new DailySketchAccumulator())
+                    .add(reading.value(), reading.thresholdExceeded());
+        }
+
+        if (!sketches.isEmpty()) {
+            measurementStatisticsService.mergeDaily(sketches);
+        }
+        afterCommit(() -> {
+            for (PreparedReading reading : prepared) {
+                duplicateReadingFilter.markWritten(
+                        reading.stationKey(), reading.parameterCode(), reading.measurementMillis());
+            }
+            written.add(inserted.size());
+            if (inserted.isEmpty()) {
+                return;
+            }
+            List<LiveMeasurement> committed = new ArrayList<>(inserted.size());
+            for (PreparedReading reading : inserted) {
+                committed.add(reading.toLiveMeasurement());
+            }
+            if (liveMeasurementDispatcher.hasSubscribers()) {
+                liveMeasurementDispatcher.publish(committed);
+            }
+            eventPublisher.publishEvent(new MeasurementsCommittedEvent(committed));
+        });
+        return inserted;
+    }
+
+    /**
+     * Find which of the readings whose batch count is unknown were inserted, rather than
+     * skipped by the unique key as duplicates of rows written earlier.
+     */
+    private List<PreparedReading> insertedByThisTransaction(List<PreparedReading> readings) {
+        Long[] stations = readings.stream().map(PreparedReading::stationKey).distinct().toArray(Long[]::new);
+        Timestamp first = readings.get(0).measurementTime();
+        Timestamp last = first;
+        for (PreparedReading reading : readings) {
+            first = reading.measurementTime().before(first) ? reading.measurementTime() : first;
+            last = reading.measurementTime().after(last) ? reading.measurementTime() : last;
+        }
+
+        Set<ReadingKey> keys = new HashSet<>();
+        jdbcTemplate.query(INSERTED_BY_TRANSACTION,
+                (RowCallbackHandler) rs -> keys.add(new ReadingKey(rs.getLong(1), rs.getInt(2), rs.getLong(3))),
+                stations, first, last);
+
+        List<PreparedReading> inserted = new ArrayList<>(readings.size());
+        for (PreparedReading reading : readings) {
+            if (keys.contains(new ReadingKey(reading.stationKey(), reading.parameterCode(), reading.measurementMillis()))) {
+                inserted.add(reading);
+            }
+        }
+        return inserted;
+    }
+
+    private PreparedReading prepare(Long stationKey, MeasurementReading reading) {
+        int parameterCode = measurementParameterDictionary.encode(reading.getParameterName(), reading.getUnit());
+        Measurement.QualityFlag qualityFlag = reading.getQualityFlag() != null
+                ? reading.getQualityFlag() : Measurement.QualityFlag.VALID;
+        Double thresholdValue = reading.getThresholdValue();
+        boolean thresholdExceeded = thresholdValue != null && reading.getValue() > thresholdValue;
+
+        return new PreparedReading(
+                stationKey,
+                parameterCode,
+                reading.getMeasurementTime().toInstant(ZoneOffset.UTC).toEpochMilli(),
+                reading.getValue(),
+                Timestamp.valueOf(reading.getMeasurementTime()),
+                qualityFlag,
+                thresholdExceeded,
+                thresholdValue,
+                reading.getNotes());
+    }
+
+    private Long resolveStation(String stationId) {
+        long now = System.nanoTime();
+        CachedStation cached = stationKeys.get(stationId);
+        if (cached != null && now - cached.loadedNanos() < stationCacheTtlNanos) {
+            return cached.key();
+        }
+        Long stationKey = monitoringStationRepository.findIdByStationId(stationId).orElse(null);
+        if (stationKey != null) {
+            stationKeys.put(stationId, new CachedStation(stationKey, now));
+        } else if (cached != null) {
+            stationKeys.remove(stationId, cached);
+        }
+        return stationKey;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * A reading resolved to station and parameter keys, ready to be inserted.
+     */
+    private record PreparedReading(
+            long stationKey,
+            int parameterCode,
+            long measurementMillis,
+            double value,
+            Timestamp measurementTime,
+            Measurement.QualityFlag qualityFlag,
+            boolean thresholdExceeded,
+            Double thresholdValue,
+            String notes) {
+
+        Object[] toInsertParameters() {
+            return new Object[]{stationKey, parameterCode, value, measurementTime,
+                    qualityFlag.name(), thresholdExceeded, thresholdValue, notes};
+        }
+
+        LiveMeasurement toLiveMeasurement() {
+            return new LiveMeasurement(stationKey, parameterCode, measurementMillis, value,
+                    qualityFlag, thresholdExceeded, thresholdValue);
+        }
+
+        MeasurementStatisticsService.DailySketchKey sketchKey() {
+            LocalDate day = measurementTime.toLocalDateTime().toLocalDate();
+            return new MeasurementStatisticsService.DailySketchKey(stationKey, parameterCode, day);
+        }
+    }
+
+    private record ReadingKey(long stationKey, int parameterCode, long measurementMillis) {
+    }
+
+    private record CachedStation(long key, long loadedNanos) {
+    }
+
+    /**
+     * Ingest counters since startup.
+     *
+     * @param written the number of readings written
+     * @param filteredDuplicates the number of duplicates dropped in memory
+     * @param databaseDuplicates the number of duplicates rejected by the unique key
+     * @param filter the duplicate filter counters
+     */
+    public record IngestStats(long written, long filteredDuplicates, long databaseDuplicates,
+                              DuplicateReadingFilter.Stats filter) {
+    }
+}
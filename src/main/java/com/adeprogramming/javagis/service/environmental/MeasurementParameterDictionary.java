@@ -0,0 +1,203 @@
+package com.adeprogramming.javagis.service.environmental;
+
+import com.adeprogramming.javagis.model.environmental.MeasurementParameter;
+import com.adeprogramming.javagis.repository.environmental.MeasurementParameterRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory bidirectional dictionary over the measurement parameter catalog.
+ * Maps (parameter name, unit) pairs to small integer codes on ingest and codes back to
+ * shared name/unit instances on read. Lookups are lock-free; only registering a new pair
+ * touches the database.
+ */
+@Component
+public class MeasurementParameterDictionary {
+
+    private static final Logger logger = LoggerFactory.getLogger(MeasurementParameterDictionary.class);
+    private static final int[] NO_CODES = new int[0];
+
+    private final MeasurementParameterRepository measurementParameterRepository;
+    private final TransactionTemplate newTransaction;
+
+    private final Map<Key, Integer> codesByKey = new ConcurrentHashMap<>();
+    private final Map<String, int[]> codesByName = new ConcurrentHashMap<>();
+    private volatile Entry[] entriesByCode = new Entry[0];
+
+    @Autowired
+    public MeasurementParameterDictionary(
+            MeasurementParameterRepository measurementParameterRepository,
+            PlatformTransactionManager transactionManager) {
+        this.measurementParameterRepository = measurementParameterRepository;
+        // New pairs are committed on their own so a failed ingest never rolls back a shared code
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Load the full catalog into memory.
+     */
+    @PostConstruct
+    public synchronized void reload() {
+        codesByKey.clear();
+        codesByName.clear();
+        entriesByCode = new Entry[0];
+        List<MeasurementParameter> parameters = measurementParameterRepository.findAll();
+        for (MeasurementParameter parameter : parameters) {
+            register(parameter);
+        }
+        logger.info("Loaded {} measurement parameters into the dictionary", parameters.size());
+    }
+
+    /**
+     * Get the code of a (parameter name, unit) pair, adding it to the catalog if it is new.
+     *
+     * @param name the parameter name
+     * @param unit the unit of measurement
+     * @return the catalog code
+     */
+    public int encode(String name, String unit) {
+        Integer code = codesByKey.get(new Key(name, unit));
+        return code != null ? code : insert(name, unit);
+    }
+
+    /**
+     * Get the code of a (parameter name, unit) pair without registering it.
+     *
+     * @param name the parameter name
+     * @param unit the unit of measurement
+     * @return the catalog code, or null if the pair is unknown
+     */
+    public Integer find(String name, String unit) {
+        return codesByKey.get(new Key(name, unit));
+    }
+
+    /**
+     * Get the (parameter name, unit) pair for a code.
+     *
+     * @param code the catalog code
+     * @return the dictionary entry, or null if the code is unknown
+     */
+    public Entry decode(int code) {
+        Entry[] entries = entriesByCode;
+        Entry entry = code >= 0 && code < entries.length ? entries[code] : null;
+        return entry != null || code < 0 ? entry : load(code);
+    }
+
+    /**
+     * Get all codes registered for a parameter name, one per unit.
+     *
+     * @param name the parameter name
+     * @return the catalog codes, empty if the parameter is unknown
+     */
+    public int[] codesForName(String name) {
+        return codesByName.getOrDefault(name, NO_CODES);
+    }
+
+    /**
+     * Resolve a parameter given by a client. The unit may be omitted if the parameter
+     * is recorded in a single unit.
+     *
+     * @param name the parameter name
+     * @param unit the unit, or null
+     * @return the catalog code, or null if the parameter is unknown or, without a unit, ambiguous
+     */
+    public Integer resolve(String name, String unit) {
+        if (unit != null) {
+            return find(name, unit);
+        }
+        int[] codes = codesForName(name);
+        return codes.length == 1 ? codes[0] : null;
+    }
+
+    /**
+     * Check whether a parameter is recorded in more than one unit, so a unit is needed to resolve it.
+     *
+     * @param name the parameter name
+     * @return true if several units are registered for the name
+     */
+    public boolean isAmbiguous(String name) {
+        return codesForName(name).length > 1;
+    }
+
+    private synchronized int insert(String name, String unit) {
+        Integer existing = codesByKey.get(new Key(name, unit));
+        if (existing != null) {
+            return existing;
+        }
+
+        MeasurementParameter parameter;
+        try {
+            MeasurementParameter created = new MeasurementParameter();
+            created.setName(name);
+            created.setUnit(unit);
+            parameter = newTransaction.execute(status -> measurementParameterRepository.saveAndFlush(created));
+        } catch (DataIntegrityViolationException e) {
+            // Another node registered the same pair concurrently
+            parameter = measurementParameterRepository.findByNameAndUnit(name, unit)
+                    .orElseThrow(() -> e);
+        }
+        return register(parameter);
+    }
+
+    /**
+     * Look up a code registered by another node, or by the legacy column trigger, since the
+     * catalog was loaded.
+     */
+    private synchronized Entry load(int code) {
+        Entry[] entries = entriesByCode;
+        if (code < entries.length && entries[code] != null) {
+            return entries[code];
+        }
+        return measurementParameterRepository.findById((long) code)
+                .map(parameter -> entriesByCode[register(parameter)])
+                .orElse(null);
+    }
+
+    private synchronized int register(MeasurementParameter parameter) {
+        int code = Math.toIntExact(parameter.getId());
+        Entry entry = new Entry(code, parameter.getName(), parameter.getUnit());
+
+        Entry[] entries = entriesByCode;
+        if (code >= entries.length) {
+            entries = Arrays.copyOf(entries, Math.max(code + 1, entries.length * 2));
+        } else {
+            entries = entries.clone();
+        }
+        entries[code] = entry;
+        entriesByCode = entries;
+
+        codesByName.merge(entry.name(), new int[]{code}, (current, added) -> {
+            int[] merged = Arrays.copyOf(current, current.length + 1);
+            merged[current.length] = added[0];
+            return merged;
+        });
+        codesByKey.put(new Key(entry.name(), entry.unit()), code);
+        return code;
+    }
+
+    /**
+     * A catalog entry. Instances are shared by all readers of the same code.
+     *
+     * @param code the catalog code
+     * @param name the parameter name
+     * @param unit the unit of measurement
+     */
+    public record Entry(int code, String name, String unit) {
+    }
+
+    private record Key(String name, String unit) {
+    }
+}
@@ -0,0 +1,164 @@
+package com.adeprogramming.javagis.service.environmental;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Migrates measurements stored with free-text parameter names and units to catalog codes
+ * on application startup, in two steps so that nodes on the previous version keep working
+ * during a rolling restart.
+ * <p>
+ * The first step only adds: the {@code parameter_code} column is created and back-filled,
+ * and a trigger keeps the legacy {@code parameter_name} and {@code unit} columns and the code
+ * in step on every insert, whichever of them the writing node sets. The back-fill runs in
+ * ranges of IDs and the code index is built {@code CONCURRENTLY}, so other nodes go on
+ * inserting throughout. The step is marked done on the column once it completes, and an
+ * interrupted run resumes on the next start. The second step makes the code mandatory and
+ * drops the legacy columns and the trigger. It runs only when
+ * {@code measurements.migration.drop-legacy-columns} is set, which is safe once every node
+ * runs this version. Does nothing once the legacy columns are gone. Each statement commits
+ * on its own; none runs in a transaction.
+ */
+@Component
+@Order(1)
+public class MeasurementParameterInitializer implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(MeasurementParameterInitializer.class);
+
+    private static final String SYNC_FUNCTION =
+            "CREATE OR REPLACE FUNCTION measurements_sync_parameter() RETURNS trigger AS $$ " +
+            "BEGIN " +
+            "  IF NEW.parameter_code IS NULL AND NEW.parameter_name IS NOT NULL THEN " +
+            "    INSERT INTO measurement_parameters (name, unit, created_at, active) " +
+            "    VALUES (NEW.parameter_name, NEW.unit, now(), true) ON CONFLICT (name, unit) DO NOTHING; " +
+            "    SELECT id INTO NEW.parameter_code FROM measurement_parameters " +
+            "    WHERE name = NEW.parameter_name AND unit = NEW.unit; " +
+            "  ELSIF NEW.parameter_name IS NULL AND NEW.parameter_code IS NOT NULL THEN " +
+            "    SELECT name, unit INTO NEW.parameter_name, NEW.unit FROM measurement_parameters " +
+            "    WHERE id = NEW.parameter_code; " +
+            "  END IF; " +
+            "  RETURN NEW; " +
+            "END $$ LANGUAGE plpgsql";
+
+    static final String INDEX_NAME = "idx_measurements_parameter_time";
+    static final String BACK_FILLED = "back-filled from parameter_name and unit";
+    private static final long UPDATE_ID_RANGE = 100_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeasurementParameterDictionary measurementParameterDictionary;
+    private final boolean dropLegacyColumns;
+
+    @Autowired
+    public MeasurementParameterInitializer(
+            JdbcTemplate jdbcTemplate,
+            MeasurementParameterDictionary measurementParameterDictionary,
+            @Value("${measurements.migration.drop-legacy-columns:false}") boolean dropLegacyColumns) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.measurementParameterDictionary = measurementParameterDictionary;
+        this.dropLegacyColumns = dropLegacyColumns;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        Integer legacyColumns = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.columns " +
+                "WHERE table_name = 'measurements' AND column_name = 'parameter_name'",
+                Integer.class);
+        if (legacyColumns == null || legacyColumns == 0) {
+            return;
+        }
+
+        String marker = jdbcTemplate.queryForObject(
+                "SELECT col_description('measurements'::regclass, (SELECT attnum FROM pg_attribute " +
+                "WHERE attrelid = 'measurements'::regclass AND attname = 'parameter_code' AND NOT attisdropped))",
+                String.class);
+        if (!BACK_FILLED.equals(marker)) {
+            addParameterCodes();
+        }
+
+        if (dropLegacyColumns) {
+            dropLegacyColumns();
+        } else {
+            logger.info("Keeping the legacy measurement parameter_name and unit columns; set " +
+                    "measurements.migration.drop-legacy-columns once all nodes run this version");
+        }
+        measurementParameterDictionary.reload();
+    }
+
+    private void addParameterCodes() {
+        logger.info("Migrating measurement parameter names and units to catalog codes");
+        jdbcTemplate.execute("ALTER TABLE measurements ADD COLUMN IF NOT EXISTS parameter_code INTEGER");
+        jdbcTemplate.execute(SYNC_FUNCTION);
+        Integer triggers = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_trigger WHERE tgname = 'measurements_sync_parameter'",
+                Integer.class);
+        if (triggers == null || triggers == 0) {
+            // Creating the trigger waits for inserts in flight and commits before the back-fill,
+            // so every later row gets its code from the trigger and every earlier one is in range
+            jdbcTemplate.execute("CREATE TRIGGER measurements_sync_parameter BEFORE INSERT ON measurements " +
+                    "FOR EACH ROW EXECUTE FUNCTION measurements_sync_parameter()");
+        }
+
+        long migrated = backFill();
+
+        Boolean valid = jdbcTemplate.queryForObject(
+                "SELECT COALESCE((SELECT indisvalid FROM pg_index WHERE indexrelid = to_regclass(?)), true)",
+                Boolean.class, INDEX_NAME);
+        if (!Boolean.TRUE.equals(valid)) {
+            // A build that was interrupted leaves an invalid index behind
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + INDEX_NAME);
+        }
+        jdbcTemplate.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + INDEX_NAME +
+                " ON measurements (parameter_code, measurement_time)");
+        jdbcTemplate.execute("COMMENT ON COLUMN measurements.parameter_code IS '" + BACK_FILLED + "'");
+        logger.info("Migrated {} measurements to catalog codes", migrated);
+    }
+
+    private void dropLegacyColumns() {
+        logger.info("Dropping the legacy measurement parameter_name and unit columns");
+        long late = backFill();
+        if (late > 0) {
+            logger.info("Migrated {} further measurements to catalog codes", late);
+        }
+        // A validated check lets SET NOT NULL skip its scan, and validating only blocks other DDL
+        jdbcTemplate.execute("ALTER TABLE measurements DROP CONSTRAINT IF EXISTS measurements_parameter_code_not_null");
+        jdbcTemplate.execute("ALTER TABLE measurements ADD CONSTRAINT measurements_parameter_code_not_null " +
+                "CHECK (parameter_code IS NOT NULL) NOT VALID");
+        jdbcTemplate.execute("ALTER TABLE measurements VALIDATE CONSTRAINT measurements_parameter_code_not_null");
+        jdbcTemplate.execute("ALTER TABLE measurements ALTER COLUMN parameter_code SET NOT NULL");
+        jdbcTemplate.execute("ALTER TABLE measurements DROP CONSTRAINT measurements_parameter_code_not_null");
+        jdbcTemplate.execute("DROP TRIGGER IF EXISTS measurements_sync_parameter ON measurements");
+        jdbcTemplate.execute("DROP FUNCTION IF EXISTS measurements_sync_parameter()");
+        jdbcTemplate.execute("ALTER TABLE measurements DROP COLUMN parameter_name, DROP COLUMN unit");
+        jdbcTemplate.execute("COMMENT ON COLUMN measurements.parameter_code IS NULL");
+    }
+
+    /**
+     * Register the pairs of rows without a code and set their codes, in ranges of IDs, each
+     * committed on its own, so the row locks taken are short-lived.
+     */
+    private long backFill() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM measurements", Long.class);
+        long migrated = 0;
+        for (long from = 0; maxId != null && from <= maxId; from += UPDATE_ID_RANGE) {
+            jdbcTemplate.update(
+                    "INSERT INTO measurement_parameters (name, unit, created_at, active) " +
+                    "SELECT DISTINCT parameter_name, unit, now(), true FROM measurements " +
+                    "WHERE id >= ? AND id < ? AND parameter_code IS NULL " +
+                    "ON CONFLICT (name, unit) DO NOTHING",
+                    from, from + UPDATE_ID_RANGE);
+            migrated += jdbcTemplate.update(
+                    "UPDATE measurements m SET parameter_code = p.id FROM measurement_parameters p " +
+                    "WHERE m.id >= ? AND m.id < ? AND m.parameter_code IS NULL " +
+                    "AND p.name = m.parameter_name AND p.unit = m.unit",
+                    from, from + UPDATE_ID_RANGE);
+        }
+        return migrated;
+    }
+}
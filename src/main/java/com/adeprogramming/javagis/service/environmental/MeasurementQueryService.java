@@ -0,0 +1,175 @@
+package com.adeprogramming.javagis.service.environmental;
+
+import com.adeprogramming.javagis.model.environmental.Measurement;
+import com.adeprogramming.javagis.model.environmental.MonitoringStation;
+import com.adeprogramming.javagis.payload.environmental.MeasurementPageResponse;
+import com.adeprogramming.javagis.repository.environmental.MeasurementRepository;
+import com.adeprogramming.javagis.repository.environmental.MonitoringStationRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Service for reading the raw measurements of a monitoring station page by page.
+ * Pages are addressed by a keyset cursor on (measurement time, id), so a client walking
+ * a long time window costs one bounded index range scan per page, independent of its depth.
+ * The cursor also carries the time window of the first page, so a window ending at "now"
+ * stays where it was while the client pages through it.
+ */
+@Service
+public class MeasurementQueryService {
+
+    private final MeasurementRepository measurementRepository;
+    private final MonitoringStationRepository monitoringStationRepository;
+    private final MeasurementParameterDictionary measurementParameterDictionary;
+
+    @Autowired
+    public MeasurementQueryService(
+            MeasurementRepository measurementRepository,
+            MonitoringStationRepository monitoringStationRepository,
+            MeasurementParameterDictionary measurementParameterDictionary) {
+        this.measurementRepository = measurementRepository;
+        this.monitoringStationRepository = monitoringStationRepository;
+        this.measurementParameterDictionary = measurementParameterDictionary;
+    }
+
+    /**
+     * Get one page of the measurements of a station in a time window.
+     *
+     * @param stationKey the primary key of the monitoring station
+     * @param from the start of the time window (inclusive); taken from the cursor if null
+     * @param to the end of the time window (exclusive); taken from the cursor if null
+     * @param parameterName an optional parameter to restrict the page to
+     * @param unit the unit of the parameter, needed if it is recorded in several units
+     * @param after the cursor returned with the previous page, or null for the first page
+     * @param limit the maximum number of measurements in the page
+     * @return the page, or empty if the station does not exist
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to another time
+     * window, or the parameter is recorded in several units and none is given
+     */
+    @Transactional(readOnly = true)
+    public Optional<MeasurementPageResponse> getStationMeasurements(
+            Long stationKey, LocalDateTime from, LocalDateTime to, String parameterName, String unit, String after,
+            int limit) {
+        Optional<MonitoringStation> station = monitoringStationRepository.findById(stationKey);
+        if (station.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Cursor cursor;
+        if (after != null) {
+            cursor = Cursor.decode(after);
+            if ((from != null && !from.equals(cursor.from())) || (to != null && !to.equals(cursor.to()))) {
+                throw new IllegalArgumentException("The cursor belongs to another time window");
+            }
+            from = cursor.from();
+            to = cursor.to();
+        } else {
+            if (from == null || to == null) {
+                throw new IllegalArgumentException("The first page needs a time window");
+            }
+            cursor = new Cursor(from, to, from, 0L);
+        }
+
+        // Reading one extra row tells whether another page follows without a count query
+        Pageable window = PageRequest.of(0, limit + 1);
+        List<Measurement> measurements;
+        if (parameterName != null) {
+            if (unit == null && measurementParameterDictionary.isAmbiguous(parameterName)) {
+                throw new IllegalArgumentException("Parameter " + parameterName + " is recorded in several units");
+            }
+            Integer code = measurementParameterDictionary.resolve(parameterName, unit);
+            measurements = code == null
+                    ? List.of()
+                    : measurementRepository.findStationParameterPage(
+                            stationKey, code, from, to, cursor.time(), cursor.id(), window);
+        } else {
+            measurements = measurementRepository.findStationPage(
+                    stationKey, from, to, cursor.time(), cursor.id(), window);
+        }
+
+        boolean hasMore = measurements.size() > limit;
+        List<MeasurementPageResponse.Item> items = new ArrayList<>(Math.min(measurements.size(), limit));
+        for (int i = 0; i < measurements.size() && i < limit; i++) {
+            items.add(toItem(measurements.get(i)));
+        }
+
+        String nextCursor = null;
+        if (hasMore) {
+            Measurement last = measurements.get(limit - 1);
+            nextCursor = new Cursor(from, to, last.getMeasurementTime(), last.getId()).encode();
+        }
+
+        return Optional.of(MeasurementPageResponse.builder()
+                .stationId(station.get().getStationId())
+                .from(from.toString())
+                .to(to.toString())
+                .items(items)
+                .nextCursor(nextCursor)
+                .build());
+    }
+
+    private MeasurementPageResponse.Item toItem(Measurement measurement) {
+        MeasurementParameterDictionary.Entry parameter =
+                measurementParameterDictionary.decode(measurement.getParameterCode());
+        return MeasurementPageResponse.Item.builder()
+                .id(measurement.getId())
+                .measurementTime(measurement.getMeasurementTime().toString())
+                .parameterName(parameter != null ? parameter.name() : null)
+                .unit(parameter != null ? parameter.unit() : null)
+                .value(measurement.getParameterValue())
+                .qualityFlag(measurement.getQualityFlag() != null ? measurement.getQualityFlag().name() : null)
+                .thresholdExceeded(measurement.getThresholdExceeded())
+                .thresholdValue(measurement.getThresholdValue())
+                .notes(measurement.getNotes())
+                .build();
+    }
+
+    /**
+     * Position after the last measurement of a page, with the time window being paged,
+     * exchanged with clients as an opaque URL-safe token.
+     *
+     * @param from the start of the time window (inclusive)
+     * @param to the end of the time window (exclusive)
+     * @param time the measurement time of the last measurement returned
+     * @param id the primary key of the last measurement returned
+     */
+    record Cursor(LocalDateTime from, LocalDateTime to, LocalDateTime time, Long id) {
+
+        String encode() {
+            String raw = from + "|" + to + "|" + time + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * @throws IllegalArgumentException if the token is not a cursor
+         */
+        static Cursor decode(String token) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                String[] parts = raw.split("\\|", -1);
+                if (parts.length != 4) {
+                    throw new IllegalArgumentException("Invalid cursor");
+                }
+                Cursor cursor = new Cursor(LocalDateTime.parse(parts[0]), LocalDateTime.parse(parts[1]),
+                        LocalDateTime.parse(parts[2]), Long.parseLong(parts[3]));
+                if (!cursor.from().isBefore(cursor.to())) {
+                    throw new IllegalArgumentException("Invalid cursor");
+                }
+                return cursor;
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+        }
+    }
+}
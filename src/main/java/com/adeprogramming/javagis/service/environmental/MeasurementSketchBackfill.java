@@ -0,0 +1,83 @@
+package com.adeprogramming.javagis.service.environmental;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Rebuilds the daily sketches of readings written before the sketches existed, once the
+ * application is serving requests. Works station by station: the sketches of a station that
+ * are missing or do not count as many values as its raw measurements are rebuilt, one
+ * (station, parameter, day) per transaction, and the station is then marked back-filled,
+ * after which ingest keeps its sketches complete. Stations added later are checked on the
+ * next start; until then their statistics are checked against the raw counts.
+ */
+@Component
+@ConditionalOnProperty(name = "measurements.statistics.backfill.enabled", havingValue = "true", matchIfMissing = true)
+public class MeasurementSketchBackfill {
+
+    private static final Logger logger = LoggerFactory.getLogger(MeasurementSketchBackfill.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeasurementStatisticsService measurementStatisticsService;
+
+    @Autowired
+    public MeasurementSketchBackfill(
+            JdbcTemplate jdbcTemplate,
+            MeasurementStatisticsService measurementStatisticsService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.measurementStatisticsService = measurementStatisticsService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Thread backfill = new Thread(this::backfill, "sketch-backfill");
+        backfill.setDaemon(true);
+        backfill.start();
+    }
+
+    void backfill() {
+        List<Long> stations = jdbcTemplate.queryForList(
+                "SELECT id FROM monitoring_stations WHERE sketches_backfilled IS NOT TRUE ORDER BY id", Long.class);
+        if (stations.isEmpty()) {
+            return;
+        }
+        logger.info("Back-filling the daily sketches of {} stations", stations.size());
+        long start = System.nanoTime();
+        int rebuilt = 0;
+        int failed = 0;
+        for (long stationKey : stations) {
+            try {
+                rebuilt += backfill(stationKey);
+            } catch (RuntimeException e) {
+                // Left unmarked, so it is retried on the next start
+                failed++;
+                logger.error("Could not back-fill the daily sketches of station {}", stationKey, e);
+            }
+        }
+        logger.info("Rebuilt {} daily sketches of {} stations in {} s, {} stations failed",
+                rebuilt, stations.size() - failed, (System.nanoTime() - start) / 1_000_000_000, failed);
+    }
+
+    /**
+     * Rebuild the incomplete sketches of one station and mark it back-filled.
+     *
+     * @return the number of sketches rebuilt
+     */
+    int backfill(long stationKey) {
+        List<MeasurementStatisticsService.DailySketchKey> keys =
+                measurementStatisticsService.findIncompleteSketches(stationKey);
+        for (MeasurementStatisticsService.DailySketchKey key : keys) {
+            measurementStatisticsService.rebuildDaily(key);
+        }
+        jdbcTemplate.update("UPDATE monitoring_stations SET sketches_backfilled = true WHERE id = ?", stationKey);
+        return keys.size();
+    }
+}
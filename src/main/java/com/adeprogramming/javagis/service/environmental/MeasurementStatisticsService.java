@@ -0,0 +1,302 @@
+package com.adeprogramming.javagis.service.environmental;
+
+import com.adeprogramming.javagis.model.environmental.MeasurementDailySketch;
+import com.adeprogramming.javagis.payload.environmental.MeasurementStatisticsResponse;
+import com.adeprogramming.javagis.repository.environmental.MeasurementDailySketchRepository;
+import com.adeprogramming.javagis.repository.environmental.MonitoringStationRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Service for per-station, per-parameter measurement statistics.
+ * Maintains one t-digest sketch per (station, parameter, day), merged on ingest, and answers
+ * percentile queries over day ranges by merging the sketches instead of scanning raw measurements.
+ * <p>
+ * Sketches of readings written before they existed are rebuilt from the raw measurements by
+ * {@link MeasurementSketchBackfill}, station by station. Until a station is back-filled, its
+ * sketches are checked against the raw row counts of the requested days, and days whose
+ * sketch is missing or partial are left out of the statistics and listed in the response.
+ */
+@Service
+public class MeasurementStatisticsService {
+
+    private static final String INSERT_EMPTY_SKETCH =
+            "INSERT INTO measurement_daily_sketches (station_id, parameter_code, day, sample_count, " +
+            "exceedance_count, value_sum, created_at, active) VALUES (?, ?, ?, 0, 0, 0, now(), true) " +
+            "ON CONFLICT (station_id, parameter_code, day) DO NOTHING";
+
+    private static final String SELECT_SKETCH_FOR_UPDATE =
+            "SELECT id, digest, sample_count, exceedance_count, value_sum FROM measurement_daily_sketches " +
+            "WHERE station_id = ? AND parameter_code = ? AND day = ? FOR UPDATE";
+
+    private static final String UPDATE_SKETCH =
+            "UPDATE measurement_daily_sketches SET digest = ?, sample_count = ?, exceedance_count = ?, " +
+            "value_sum = ?, min_value = ?, max_value = ?, updated_at = now() WHERE id = ?";
+
+    private static final String REPLACE_SKETCH =
+            "UPDATE measurement_daily_sketches SET digest = ?, sample_count = ?, exceedance_count = ?, " +
+            "value_sum = ?, min_value = ?, max_value = ?, updated_at = now() " +
+            "WHERE station_id = ? AND parameter_code = ? AND day = ?";
+
+    private static final String SELECT_DAY_VALUES =
+            "SELECT parameter_value, threshold_exceeded FROM measurements " +
+            "WHERE station_id = ? AND parameter_code = ? AND measurement_time >= ? AND measurement_time < ?";
+
+    /**
+     * Days of one parameter whose sketch does not count as many values as there are raw rows.
+     */
+    private static final String SELECT_INCOMPLETE_DAYS =
+            "SELECT r.day FROM (SELECT CAST(measurement_time AS date) AS day, COUNT(*) AS samples " +
+            "FROM measurements WHERE station_id = ? AND parameter_code = ? " +
+            "AND measurement_time >= ? AND measurement_time < ? GROUP BY 1) r " +
+            "LEFT JOIN measurement_daily_sketches s ON s.station_id = ? AND s.parameter_code = ? AND s.day = r.day " +
+            "WHERE s.sample_count IS DISTINCT FROM r.samples ORDER BY r.day";
+
+    /**
+     * Days of all parameters of a station whose sketch does not count as many values as there
+     * are raw rows, including sketches left over after raw rows were deleted.
+     */
+    private static final String SELECT_INCOMPLETE_STATION_DAYS =
+            "SELECT COALESCE(r.parameter_code, s.parameter_code) AS parameter_code, COALESCE(r.day, s.day) AS day " +
+            "FROM (SELECT parameter_code, CAST(measurement_time AS date) AS day, COUNT(*) AS samples " +
+            "FROM measurements WHERE station_id = ? GROUP BY 1, 2) r " +
+            "FULL JOIN (SELECT parameter_code, day, sample_count FROM measurement_daily_sketches " +
+            "WHERE station_id = ? AND sample_count > 0) s ON s.parameter_code = r.parameter_code AND s.day = r.day " +
+            "WHERE s.sample_count IS DISTINCT FROM r.samples ORDER BY 1, 2";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeasurementDailySketchRepository measurementDailySketchRepository;
+    private final MonitoringStationRepository monitoringStationRepository;
+    private final MeasurementParameterDictionary measurementParameterDictionary;
+
+    @Autowired
+    public MeasurementStatisticsService(
+            JdbcTemplate jdbcTemplate,
+            MeasurementDailySketchRepository measurementDailySketchRepository,
+            MonitoringStationRepository monitoringStationRepository,
+            MeasurementParameterDictionary measurementParameterDictionary) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.measurementDailySketchRepository = measurementDailySketchRepository;
+        this.monitoringStationRepository = monitoringStationRepository;
+        this.measurementParameterDictionary = measurementParameterDictionary;
+    }
+
+    /**
+     * Merge freshly ingested values into the persisted daily sketches.
+     * Must run in the transaction that writes the measurements, so sketches and raw rows stay consistent.
+     *
+     * @param deltas the accumulated values per (station, parameter, day)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void mergeDaily(Map<DailySketchKey, DailySketchAccumulator> deltas) {
+        // Lock rows in a fixed order so concurrent ingest batches cannot deadlock
+        List<DailySketchKey> keys = deltas.keySet().stream()
+                .sorted(DailySketchKey.ORDER)
+                .toList();
+
+        for (DailySketchKey key : keys) {
+            Date day = Date.valueOf(key.day());
+            jdbcTemplate.update(INSERT_EMPTY_SKETCH, key.stationKey(), key.parameterCode(), day);
+            SketchRow row = jdbcTemplate.queryForObject(SELECT_SKETCH_FOR_UPDATE,
+                    (rs, rowNum) -> new SketchRow(rs.getLong("id"), DailySketchAccumulator.restore(
+                            rs.getBytes("digest"),
+                            rs.getLong("sample_count"),
+                            rs.getLong("exceedance_count"),
+                            rs.getDouble("value_sum"))),
+                    key.stationKey(), key.parameterCode(), day);
+
+            DailySketchAccumulator merged = row.accumulator();
+            merged.merge(deltas.get(key));
+            jdbcTemplate.update(UPDATE_SKETCH,
+                    merged.getDigest().toBytes(),
+                    merged.getSampleCount(),
+                    merged.getExceedanceCount(),
+                    merged.getValueSum(),
+                    merged.getDigest().getMin(),
+                    merged.getDigest().getMax(),
+                    row.id());
+        }
+    }
+
+    /**
+     * Replace the sketch of one (station, parameter, day) with one built from its raw measurements.
+     * The sketch row is locked before the values are read, so readings ingested meanwhile are
+     * counted exactly once: either in the values read here or in a merge that waits for this
+     * transaction.
+     *
+     * @param key the sketch to rebuild
+     * @return the number of values in the rebuilt sketch
+     */
+    @Transactional
+    public long rebuildDaily(DailySketchKey key) {
+        Date day = Date.valueOf(key.day());
+        jdbcTemplate.update(INSERT_EMPTY_SKETCH, key.stationKey(), key.parameterCode(), day);
+        jdbcTemplate.queryForList(SELECT_SKETCH_FOR_UPDATE, key.stationKey(), key.parameterCode(), day);
+
+        DailySketchAccumulator rebuilt = new DailySketchAccumulator();
+        jdbcTemplate.query(SELECT_DAY_VALUES,
+                (RowCallbackHandler) rs -> rebuilt.add(rs.getDouble(1), rs.getBoolean(2)),
+                key.stationKey(), key.parameterCode(),
+                Timestamp.valueOf(key.day().atStartOfDay()),
+                Timestamp.valueOf(key.day().plusDays(1).atStartOfDay()));
+
+        boolean empty = rebuilt.getSampleCount() == 0;
+        jdbcTemplate.update(REPLACE_SKETCH,
+                empty ? null : rebuilt.getDigest().toBytes(),
+                rebuilt.getSampleCount(),
+                rebuilt.getExceedanceCount(),
+                rebuilt.getValueSum(),
+                empty ? null : rebuilt.getDigest().getMin(),
+                empty ? null : rebuilt.getDigest().getMax(),
+                key.stationKey(), key.parameterCode(), day);
+        return rebuilt.getSampleCount();
+    }
+
+    /**
+     * Find the sketches of a station that are missing or do not match its raw measurements.
+     *
+     * @param stationKey the primary key of the monitoring station
+     * @return the keys of the sketches to rebuild
+     */
+    @Transactional(readOnly = true)
+    public List<DailySketchKey> findIncompleteSketches(long stationKey) {
+        return jdbcTemplate.query(SELECT_INCOMPLETE_STATION_DAYS,
+                (rs, rowNum) -> new DailySketchKey(stationKey, rs.getInt(1), rs.getDate(2).toLocalDate()),
+                stationKey, stationKey);
+    }
+
+    /**
+     * Find the days of one parameter at one station whose sketch is missing or partial,
+     * unless the station has been back-filled, after which every sketch is complete.
+     *
+     * @param stationKey the primary key of the monitoring station
+     * @param parameterCode the catalog code of the parameter
+     * @param fromDay the first day (inclusive)
+     * @param toDay the last day (inclusive)
+     * @return the incomplete days in ascending order
+     */
+    @Transactional(readOnly = true)
+    public List<LocalDate> findIncompleteDays(long stationKey, int parameterCode, LocalDate fromDay, LocalDate toDay) {
+        if (isBackfilled(stationKey)) {
+            return List.of();
+        }
+        return jdbcTemplate.query(SELECT_INCOMPLETE_DAYS,
+                (rs, rowNum) -> rs.getDate(1).toLocalDate(),
+                stationKey, parameterCode,
+                Timestamp.valueOf(fromDay.atStartOfDay()),
+                Timestamp.valueOf(toDay.plusDays(1).atStartOfDay()),
+                stationKey, parameterCode);
+    }
+
+    private boolean isBackfilled(long stationKey) {
+        List<Boolean> backfilled = jdbcTemplate.queryForList(
+                "SELECT sketches_backfilled FROM monitoring_stations WHERE id = ?", Boolean.class, stationKey);
+        return !backfilled.isEmpty() && Boolean.TRUE.equals(backfilled.get(0));
+    }
+
+    /**
+     * Get percentile statistics for one parameter at one station over a range of days.
+     *
+     * @param stationId the business ID of the monitoring station
+     * @param parameterCode the catalog code of the parameter
+     * @param fromDay the first day (inclusive)
+     * @param toDay the last day (inclusive)
+     * @param quantiles the quantiles to estimate, between 0 and 1
+     * @param threshold an optional limit value to estimate the number of exceedances for
+     * @return the statistics over the days with complete sketches, or empty if the station is unknown
+     */
+    @Transactional(readOnly = true)
+    public Optional<MeasurementStatisticsResponse> getStatistics(
+            String stationId, int parameterCode, LocalDate fromDay, LocalDate toDay,
+            List<Double> quantiles, Double threshold) {
+        Optional<Long> stationKey = monitoringStationRepository.findIdByStationId(stationId);
+        if (stationKey.isEmpty()) {
+            return Optional.empty();
+        }
+
+        List<LocalDate> incompleteDays = findIncompleteDays(stationKey.get(), parameterCode, fromDay, toDay);
+        Set<LocalDate> excluded = new HashSet<>(incompleteDays);
+        List<MeasurementDailySketch> sketches =
+                measurementDailySketchRepository.findForDays(stationKey.get(), parameterCode, fromDay, toDay);
+        DailySketchAccumulator total = new DailySketchAccumulator();
+        int daysCovered = 0;
+        for (MeasurementDailySketch sketch : sketches) {
+            if (sketch.getSampleCount() == 0 || excluded.contains(sketch.getDay())) {
+                continue;
+            }
+            total.merge(DailySketchAccumulator.restore(
+                    sketch.getDigest(), sketch.getSampleCount(), sketch.getExceedanceCount(), sketch.getValueSum()));
+            daysCovered++;
+        }
+
+        MeasurementParameterDictionary.Entry parameter = measurementParameterDictionary.decode(parameterCode);
+        MeasurementStatisticsResponse response = MeasurementStatisticsResponse.builder()
+                .stationId(stationId)
+                .parameterName(parameter != null ? parameter.name() : null)
+                .unit(parameter != null ? parameter.unit() : null)
+                .fromDay(fromDay.toString())
+                .toDay(toDay.toString())
+                .daysCovered(daysCovered)
+                .complete(incompleteDays.isEmpty())
+                .incompleteDays(incompleteDays.stream().map(LocalDate::toString).toList())
+                .count(total.getSampleCount())
+                .exceedanceCount(total.getExceedanceCount())
+                .threshold(threshold)
+                .build();
+
+        if (total.getSampleCount() > 0) {
+            response.setMean(total.getValueSum() / total.getSampleCount());
+            response.setMin(total.getDigest().getMin());
+            response.setMax(total.getDigest().getMax());
+            for (Double q : quantiles) {
+                response.getPercentiles().put(percentileName(q), total.getDigest().quantile(q));
+            }
+            if (threshold != null) {
+                double above = 1 - total.getDigest().cdf(threshold);
+                response.setEstimatedCountAboveThreshold(Math.round(above * total.getSampleCount()));
+            }
+        }
+        return Optional.of(response);
+    }
+
+    /**
+     * Name a quantile as a percentile, e.g. p95 or p99.9. Decimal arithmetic keeps binary
+     * rounding out of the name, which {@code q * 100} gives for 0.07 or 0.29.
+     */
+    private static String percentileName(double q) {
+        return "p" + BigDecimal.valueOf(q).movePointRight(2).stripTrailingZeros().toPlainString();
+    }
+
+    private record SketchRow(long id, DailySketchAccumulator accumulator) {
+    }
+
+    /**
+     * Identifies a daily sketch.
+     *
+     * @param stationKey the primary key of the monitoring station
+     * @param parameterCode the catalog code of the parameter
+     * @param day the UTC day of the measurements
+     */
+    public record DailySketchKey(long stationKey, int parameterCode, LocalDate day) {
+
+        static final Comparator<DailySketchKey> ORDER = Comparator
+                .comparingLong(DailySketchKey::stationKey)
+                .thenComparingInt(DailySketchKey::parameterCode)
+                .thenComparing(DailySketchKey::day);
+    }
+}
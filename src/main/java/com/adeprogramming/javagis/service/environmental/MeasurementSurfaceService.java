@@ -0,0 +1,262 @@
+package com.adeprogramming.javagis.service.environmental;
+
+import com.adeprogramming.javagis.analytics.contour.ContourBuilder;
+import com.adeprogramming.javagis.analytics.interpolation.IdwInterpolator;
+import com.adeprogramming.javagis.analytics.interpolation.InterpolationMethod;
+import com.adeprogramming.javagis.analytics.interpolation.SamplePoints;
+import com.adeprogramming.javagis.raster.GridSpec;
+import com.adeprogramming.javagis.service.spatial.CoordinateTransformService;
+import jakarta.annotation.PreDestroy;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Service for continuous measurement surfaces between monitoring stations.
+ * The latest reading of every station within a lookback window is projected to ETRS89-LAEA
+ * (EPSG:3035), so distances are in metres, and interpolated onto a regular grid on a dedicated
+ * fork-join pool. The pool is shared with the heatmap tile renderer and the contour tracer.
+ */
+@Service
+public class MeasurementSurfaceService {
+
+    public static final int GRID_EPSG = 3035;
+
+    private static final String SELECT_LATEST_READINGS =
+            "SELECT DISTINCT ON (m.station_id) ST_X(ST_PointOnSurface(s.geometry)), " +
+            "ST_Y(ST_PointOnSurface(s.geometry)), m.parameter_value " +
+            "FROM measurements m JOIN monitoring_stations s ON s.id = m.station_id " +
+            "WHERE s.active = true AND m.parameter_code = ? AND m.measurement_time <= ? " +
+            "AND m.measurement_time > ? AND m.quality_flag NOT IN ('INVALID', 'MISSING') " +
+            "ORDER BY m.station_id, m.measurement_time DESC";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final GeometryFactory gridGeometryFactory = new GeometryFactory(new PrecisionModel(), GRID_EPSG);
+    private final CoordinateTransformService coordinateTransformService;
+    private final ForkJoinPool pool;
+    private final long maxCells;
+
+    @Autowired
+    public MeasurementSurfaceService(
+            JdbcTemplate jdbcTemplate,
+            CoordinateTransformService coordinateTransformService,
+            @Value("${measurements.surface.parallelism:0}") int parallelism,
+            @Value("${measurements.surface.max-cells:4000000}") long maxCells) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.coordinateTransformService = coordinateTransformService;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.maxCells = maxCells;
+    }
+
+    /**
+     * Interpolate the latest readings of a parameter onto a grid.
+     *
+     * @param parameterCode the catalog code of the parameter
+     * @param time the time of the surface
+     * @param lookback how old a station's latest reading may be to be used
+     * @param bbox the area to cover (WGS 84)
+     * @param resolution the cell size in metres
+     * @param method the interpolation method
+     * @param neighbours the number of nearest stations considered per cell
+     * @param maxDistance the radius in metres beyond which stations are ignored
+     * @param power the IDW distance exponent
+     * @return the surface
+     * @throws IllegalArgumentException if the grid is too large or there are too few readings
+     */
+    public Surface interpolate(int parameterCode, LocalDateTime time, Duration lookback, Envelope bbox,
+                               double resolution, InterpolationMethod method, int neighbours,
+                               double maxDistance, double power) {
+        GridSpec grid = gridFor(bbox, resolution);
+        checkSize(grid);
+        return interpolate(gridReadings(parameterCode, time, lookback), grid, method, neighbours, maxDistance, power);
+    }
+
+    /**
+     * Interpolate readings already projected to the grid onto a grid.
+     *
+     * @param samples the readings, in EPSG:3035
+     * @param grid the grid
+     * @param method the interpolation method
+     * @param neighbours the number of nearest stations considered per cell
+     * @param maxDistance the radius in metres beyond which stations are ignored
+     * @param power the IDW distance exponent
+     * @return the surface
+     * @throws IllegalArgumentException if the grid is too large or there are too few readings
+     */
+    public Surface interpolate(SamplePoints samples, GridSpec grid, InterpolationMethod method,
+                               int neighbours, double maxDistance, double power) {
+        checkSize(grid);
+        int required = method == InterpolationMethod.KRIGING ? 2 : 1;
+        if (samples.size() < required) {
+            throw new IllegalArgumentException("Not enough station readings in the lookback window");
+        }
+
+        double[] values = method.create(samples, neighbours, maxDistance, power).interpolate(grid, pool);
+        return new Surface(grid, values, samples.size());
+    }
+
+    /**
+     * Interpolate samples onto a grid with IDW, writing into a caller-owned buffer.
+     *
+     * @param samples the samples, in the coordinate system of the grid
+     * @param grid the grid
+     * @param target receives the cell values; at least as long as the grid has cells
+     * @param neighbours the number of nearest samples considered per cell
+     * @param maxDistance the radius in grid units beyond which samples are ignored
+     * @param power the IDW distance exponent
+     */
+    public void interpolate(SamplePoints samples, GridSpec grid, double[] target,
+                            int neighbours, double maxDistance, double power) {
+        new IdwInterpolator(samples, neighbours, maxDistance, power).interpolate(grid, target, pool);
+    }
+
+    /**
+     * Trace the areas of a surface at or above each level.
+     *
+     * @param surface the surface
+     * @param levels the levels
+     * @return one multipolygon per level, in the coordinate system of the grid
+     */
+    public List<MultiPolygon> contour(Surface surface, double[] levels) {
+        return new ContourBuilder(surface.grid(), surface.values(), gridGeometryFactory).contour(levels, pool);
+    }
+
+    /**
+     * Get the latest valid reading of every active station.
+     *
+     * @param parameterCode the catalog code of the parameter
+     * @param time the reference time
+     * @param lookback how old a reading may be
+     * @return the readings at the station locations (WGS 84)
+     */
+    public SamplePoints latestReadings(int parameterCode, LocalDateTime time, Duration lookback) {
+        Readings readings = new Readings();
+        jdbcTemplate.query(SELECT_LATEST_READINGS,
+                (RowCallbackHandler) rs -> readings.add(rs.getDouble(1), rs.getDouble(2), rs.getDouble(3)),
+                parameterCode, Timestamp.valueOf(time), Timestamp.valueOf(time.minus(lookback)));
+
+        return new SamplePoints(Arrays.copyOf(readings.xs, readings.size),
+                Arrays.copyOf(readings.ys, readings.size), Arrays.copyOf(readings.values, readings.size));
+    }
+
+    /**
+     * Get the latest valid reading of every active station, projected to EPSG:3035.
+     *
+     * @param parameterCode the catalog code of the parameter
+     * @param time the reference time
+     * @param lookback how old a reading may be
+     * @return the readings at the station locations (EPSG:3035)
+     */
+    public SamplePoints gridReadings(int parameterCode, LocalDateTime time, Duration lookback) {
+        return project(latestReadings(parameterCode, time, lookback), CoordinateTransformService.WGS84, GRID_EPSG);
+    }
+
+    /**
+     * Transform sample locations in one bulk call.
+     *
+     * @param samples the samples
+     * @param source the EPSG code of their coordinate system
+     * @param target the EPSG code of the coordinate system to project them to
+     * @return the samples at the transformed locations
+     */
+    public SamplePoints project(SamplePoints samples, int source, int target) {
+        int size = samples.size();
+        double[] coordinates = new double[size * 2];
+        for (int i = 0; i < size; i++) {
+            coordinates[2 * i] = samples.xs()[i];
+            coordinates[2 * i + 1] = samples.ys()[i];
+        }
+        try {
+            coordinateTransformService.transform(source, target, coordinates, size);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Could not project station locations", e);
+        }
+        double[] xs = new double[size];
+        double[] ys = new double[size];
+        for (int i = 0; i < size; i++) {
+            xs[i] = coordinates[2 * i];
+            ys[i] = coordinates[2 * i + 1];
+        }
+        return new SamplePoints(xs, ys, samples.values());
+    }
+
+    /**
+     * Get the grid covering a WGS 84 bbox. The projected bbox is found by sampling its edges,
+     * and the grid origin is snapped to multiples of the resolution, so grids of different
+     * requests line up.
+     *
+     * @param bbox the area to cover (WGS 84)
+     * @param resolution the cell size in metres
+     * @return the grid in EPSG:3035
+     */
+    public GridSpec gridFor(Envelope bbox, double resolution) {
+        Envelope projected;
+        try {
+            projected = coordinateTransformService.transform(bbox, CoordinateTransformService.WGS84, GRID_EPSG);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("The bbox cannot be projected to EPSG:" + GRID_EPSG, e);
+        }
+        double minX = Math.floor(projected.getMinX() / resolution) * resolution;
+        double maxY = Math.ceil(projected.getMaxY() / resolution) * resolution;
+        int columns = (int) Math.ceil((projected.getMaxX() - minX) / resolution);
+        int rows = (int) Math.ceil((maxY - projected.getMinY()) / resolution);
+        return new GridSpec(minX, maxY, resolution, Math.max(columns, 1), Math.max(rows, 1), GRID_EPSG);
+    }
+
+    private void checkSize(GridSpec grid) {
+        if (grid.cellCount() > maxCells) {
+            throw new IllegalArgumentException("The grid would have " + grid.cellCount()
+                    + " cells, at most " + maxCells + " are allowed");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * An interpolated surface.
+     *
+     * @param grid the grid geometry
+     * @param values the cell values row by row from the north, NaN where no station is in range
+     * @param stationCount the number of station readings used
+     */
+    public record Surface(GridSpec grid, double[] values, int stationCount) {
+    }
+
+    /**
+     * Growable buffer of station readings.
+     */
+    private static final class Readings {
+
+        double[] xs = new double[128];
+        double[] ys = new double[128];
+        double[] values = new double[128];
+        int size;
+
+        void add(double x, double y, double value) {
+            if (size == values.length) {
+                xs = Arrays.copyOf(xs, size * 2);
+                ys = Arrays.copyOf(ys, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            xs[size] = x;
+            ys[size] = y;
+            values[size++] = value;
+        }
+    }
+}
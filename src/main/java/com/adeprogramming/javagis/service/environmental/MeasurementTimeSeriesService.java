@@ -0,0 +1,140 @@
+package com.adeprogramming.javagis.service.environmental;
+
+import com.adeprogramming.javagis.analytics.timeseries.DownsampledSeries;
+import com.adeprogramming.javagis.analytics.timeseries.DownsamplingMode;
+import com.adeprogramming.javagis.analytics.timeseries.StreamingDownsampler;
+import com.adeprogramming.javagis.payload.environmental.TimeSeriesResponse;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Service for reading downsampled measurement time series for charts.
+ * Raw rows are streamed through a JDBC cursor straight into a {@link StreamingDownsampler},
+ * so no {@code Measurement} entities are created and memory stays bounded by the point budget.
+ * Multiple series of one request are read in parallel.
+ */
+@Service
+public class MeasurementTimeSeriesService {
+
+    private static final String SERIES_QUERY =
+            "SELECT CAST(EXTRACT(EPOCH FROM m.measurement_time) * 1000 AS BIGINT), m.parameter_value " +
+            "FROM measurements m JOIN monitoring_stations s ON s.id = m.station_id " +
+            "WHERE s.station_id = ? AND m.parameter_code = ? " +
+            "AND m.measurement_time >= ? AND m.measurement_time < ? " +
+            "ORDER BY m.measurement_time";
+
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final MeasurementParameterDictionary measurementParameterDictionary;
+    private final ExecutorService executor;
+
+    @Autowired
+    public MeasurementTimeSeriesService(
+            DataSource dataSource,
+            PlatformTransactionManager transactionManager,
+            MeasurementParameterDictionary measurementParameterDictionary,
+            @Value("${measurements.timeseries.fetch-size:10000}") int fetchSize,
+            @Value("${measurements.timeseries.parallelism:4}") int parallelism) {
+        // PostgreSQL only streams with a fetch size inside a transaction, otherwise it buffers the whole result
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.measurementParameterDictionary = measurementParameterDictionary;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "timeseries-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Read and downsample one or more (station, parameter) series.
+     *
+     * @param series the requested series
+     * @param from the start of the time range (inclusive)
+     * @param to the end of the time range (exclusive)
+     * @param points the maximum number of points per series
+     * @param mode the downsampling algorithm
+     * @return the downsampled series, in request order
+     */
+    public TimeSeriesResponse getDownsampledSeries(
+            List<SeriesKey> series, LocalDateTime from, LocalDateTime to, int points, DownsamplingMode mode) {
+        List<CompletableFuture<TimeSeriesResponse.Series>> futures = new ArrayList<>(series.size());
+        for (SeriesKey key : series) {
+            futures.add(CompletableFuture.supplyAsync(() -> readSeries(key, from, to, points, mode), executor));
+        }
+
+        List<TimeSeriesResponse.Series> results = new ArrayList<>(series.size());
+        for (CompletableFuture<TimeSeriesResponse.Series> future : futures) {
+            results.add(future.join());
+        }
+
+        return TimeSeriesResponse.builder()
+                .from(from.toString())
+                .to(to.toString())
+                .points(points)
+                .mode(mode.name())
+                .series(results)
+                .build();
+    }
+
+    private TimeSeriesResponse.Series readSeries(
+            SeriesKey key, LocalDateTime from, LocalDateTime to, int points, DownsamplingMode mode) {
+        long fromMillis = from.toInstant(ZoneOffset.UTC).toEpochMilli();
+        long toMillis = to.toInstant(ZoneOffset.UTC).toEpochMilli();
+        StreamingDownsampler downsampler = mode.create(fromMillis, toMillis, points);
+
+        Integer parameterCode = measurementParameterDictionary.resolve(key.parameterName(), key.unit());
+        if (parameterCode != null) {
+            readOnlyTransaction.executeWithoutResult(status -> streamingJdbcTemplate.query(
+                    SERIES_QUERY,
+                    (RowCallbackHandler) rs -> downsampler.accept(rs.getLong(1), rs.getDouble(2)),
+                    key.stationId(), parameterCode, Timestamp.valueOf(from), Timestamp.valueOf(to)));
+        }
+
+        DownsampledSeries result = downsampler.finish();
+        return TimeSeriesResponse.Series.builder()
+                .stationId(key.stationId())
+                .parameterName(key.parameterName())
+                .unit(parameterCode != null ? measurementParameterDictionary.decode(parameterCode).unit() : key.unit())
+                .sourceCount(result.getSourceCount())
+                .timestamps(result.getTimestamps())
+                .values(result.getValues())
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Identifies a measurement series by station and parameter.
+     *
+     * @param stationId the business ID of the monitoring station
+     * @param parameterName the name of the measured parameter
+     * @param unit the unit, or null if the parameter is recorded in a single unit
+     */
+    public record SeriesKey(String stationId, String parameterName, String unit) {
+    }
+}
@@ -0,0 +1,98 @@
+package com.adeprogramming.javagis.service.environmental;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Adds the (station, parameter, measurement time) unique key to the measurements table on
+ * application startup, which the idempotent ingest relies on. Does nothing once the
+ * constraint exists.
+ * <p>
+ * The unique index is built {@code CONCURRENTLY}, so ingest and queries go on while it is
+ * built, and is then attached as the constraint, which only locks the table briefly.
+ * Duplicates written before ingest was idempotent prevent the index: they are counted and
+ * logged, and removed only when {@code measurements.migration.remove-duplicates} is set,
+ * keeping the first written copy of each reading. Otherwise startup fails with the count, so
+ * no rows are deleted unasked. Each statement commits on its own; none runs in a transaction.
+ */
+@Component
+@Order(2)
+public class MeasurementUniqueKeyInitializer implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(MeasurementUniqueKeyInitializer.class);
+
+    private static final String CONSTRAINT_NAME = "uk_measurements_station_parameter_time";
+    private static final long DELETE_ID_RANGE = 100_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean removeDuplicates;
+
+    @Autowired
+    public MeasurementUniqueKeyInitializer(
+            JdbcTemplate jdbcTemplate,
+            @Value("${measurements.migration.remove-duplicates:false}") boolean removeDuplicates) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.removeDuplicates = removeDuplicates;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        Integer existing = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.table_constraints " +
+                "WHERE table_name = 'measurements' AND constraint_name = ?",
+                Integer.class, CONSTRAINT_NAME);
+        if (existing != null && existing > 0) {
+            return;
+        }
+
+        Long duplicates = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(copies - 1), 0) FROM (SELECT COUNT(*) AS copies FROM measurements " +
+                "GROUP BY station_id, parameter_code, measurement_time HAVING COUNT(*) > 1) d",
+                Long.class);
+        if (duplicates != null && duplicates > 0) {
+            if (!removeDuplicates) {
+                throw new IllegalStateException("The measurements table holds " + duplicates +
+                        " duplicate readings, which prevent the unique key " + CONSTRAINT_NAME +
+                        "; set measurements.migration.remove-duplicates to delete all but the first copy of each");
+            }
+            logger.warn("Deleting {} duplicate measurements, keeping the first written copy of each reading",
+                    duplicates);
+            long removed = deleteDuplicates();
+            logger.info("Deleted {} duplicate measurements", removed);
+        }
+
+        logger.info("Building the unique index {} concurrently", CONSTRAINT_NAME);
+        // A build that was interrupted leaves an invalid index behind
+        jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + CONSTRAINT_NAME);
+        jdbcTemplate.execute("CREATE UNIQUE INDEX CONCURRENTLY " + CONSTRAINT_NAME +
+                " ON measurements (station_id, parameter_code, measurement_time)");
+        jdbcTemplate.execute("ALTER TABLE measurements ADD CONSTRAINT " + CONSTRAINT_NAME +
+                " UNIQUE USING INDEX " + CONSTRAINT_NAME);
+        jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS idx_measurements_station_parameter_time");
+        logger.info("Added unique key {}", CONSTRAINT_NAME);
+    }
+
+    /**
+     * Delete later copies of readings in ranges of IDs, each in its own transaction, so the
+     * locks taken are short-lived.
+     */
+    private long deleteDuplicates() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM measurements", Long.class);
+        long removed = 0;
+        for (long from = 0; maxId != null && from <= maxId; from += DELETE_ID_RANGE) {
+            removed += jdbcTemplate.update(
+                    "DELETE FROM measurements m USING measurements d " +
+                    "WHERE m.id >= ? AND m.id < ? " +
+                    "AND m.station_id = d.station_id AND m.parameter_code = d.parameter_code " +
+                    "AND m.measurement_time = d.measurement_time AND m.id > d.id",
+                    from, from + DELETE_ID_RANGE);
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,14 @@
+package com.adeprogramming.javagis.service.environmental;
+
+import com.adeprogramming.javagis.service.environmental.live.LiveMeasurement;
+
+import java.util.List;
+
+/**
+ * Published by {@link MeasurementIngestService} after a transaction that inserted measurements
+ * has committed, on the thread that wrote them. Listeners must be quick, e.g. invalidate caches.
+ *
+ * @param measurements the newly inserted measurements
+ */
+public record MeasurementsCommittedEvent(List<LiveMeasurement> measurements) {
+}
@@ -0,0 +1,11 @@
+package com.adeprogramming.javagis.service.environmental;
+
+/**
+ * Published after a transaction that created, updated or removed monitoring stations has
+ * committed, e.g. a station was moved or deactivated. Listeners must be quick, e.g. invalidate caches.
+ *
+ * @param stationKey the primary key of the changed station, or null if any station may have
+ *                   changed, as after a bulk import
+ */
+public record MonitoringStationsChangedEvent(Long stationKey) {
+}
@@ -0,0 +1,64 @@
+package com.adeprogramming.javagis.service.environmental;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Makes the station foreign keys of measurements and daily sketches {@code ON DELETE CASCADE}
+ * on application startup, which deleting a station relies on since it no longer removes its
+ * measurements through the entity. {@code ddl-auto: update} creates the key with the cascade
+ * on a new schema but never rewrites an existing one. Does nothing once the keys cascade.
+ * <p>
+ * The key is dropped and added again {@code NOT VALID} in a single statement, so the table is
+ * never without it and only locked briefly, and is then validated without blocking writes.
+ */
+@Component
+@Order(4)
+public class StationForeignKeyInitializer implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(StationForeignKeyInitializer.class);
+
+    private static final List<String> TABLES = List.of("measurements", "measurement_daily_sketches");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public StationForeignKeyInitializer(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        for (String table : TABLES) {
+            List<Map<String, Object>> keys = jdbcTemplate.queryForList(
+                    "SELECT c.conname, c.confdeltype::text AS on_delete FROM pg_constraint c " +
+                    "JOIN pg_attribute a ON a.attrelid = c.conrelid AND a.attname = 'station_id' " +
+                    "WHERE c.contype = 'f' AND c.conrelid = to_regclass(?) " +
+                    "AND c.confrelid = to_regclass('monitoring_stations') AND c.conkey = ARRAY[a.attnum]",
+                    table);
+            for (Map<String, Object> key : keys) {
+                if (!"c".equals(key.get("on_delete"))) {
+                    cascade(table, (String) key.get("conname"));
+                }
+            }
+        }
+    }
+
+    private void cascade(String table, String constraint) {
+        logger.info("Recreating foreign key {} on {} with ON DELETE CASCADE", constraint, table);
+        String name = '"' + constraint + '"';
+        jdbcTemplate.execute("ALTER TABLE " + table + " DROP CONSTRAINT " + name +
+                ", ADD CONSTRAINT " + name + " FOREIGN KEY (station_id) " +
+                "REFERENCES monitoring_stations (id) ON DELETE CASCADE NOT VALID");
+        jdbcTemplate.execute("ALTER TABLE " + table + " VALIDATE CONSTRAINT " + name);
+        logger.info("Foreign key {} on {} now cascades", constraint, table);
+    }
+}
@@ -0,0 +1,61 @@
+package com.adeprogramming.javagis.service.environmental.imports;
+
+import com.adeprogramming.javagis.model.environmental.MonitoringStation;
+import com.adeprogramming.javagis.service.spatial.imports.ImportColumn;
+
+import java.util.List;
+
+/**
+ * The columns of {@code monitoring_stations} that imports map attributes to, with their default
+ * attribute names, e.g. {@code STATION_ID}, {@code STATION} or {@code ID} for the station ID.
+ */
+public enum StationColumn implements ImportColumn {
+
+    STATION_ID("station_id", ValueType.TEXT, "station_id", "stationid", "station", "id"),
+    NAME("name", ValueType.TEXT, "name", "station_name", "station_na"),
+    DESCRIPTION("description", ValueType.TEXT, "description", "descriptio", "descr", "desc"),
+    STATION_TYPE("station_type", ValueType.ENUM, "station_type", "station_ty", "stationtyp", "type"),
+    STATUS("status", ValueType.ENUM, "status"),
+    LOCATION_DESCRIPTION("location_description", ValueType.TEXT, "location_description", "location_d", "location"),
+    INSTALLATION_DATE("installation_date", ValueType.TEXT, "installation_date", "installati", "installed"),
+    MAINTENANCE_DATE("maintenance_date", ValueType.TEXT, "maintenance_date", "maintenanc", "maintained");
+
+    private final String columnName;
+    private final ValueType valueType;
+    private final List<String> defaultAttributes;
+
+    StationColumn(String columnName, ValueType valueType, String... defaultAttributes) {
+        this.columnName = columnName;
+        this.valueType = valueType;
+        this.defaultAttributes = List.of(defaultAttributes);
+    }
+
+    @Override
+    public String getColumnName() {
+        return columnName;
+    }
+
+    @Override
+    public ValueType getValueType() {
+        return valueType;
+    }
+
+    @Override
+    public List<String> getDefaultAttributes() {
+        return defaultAttributes;
+    }
+
+    @Override
+    public Class<? extends Enum<?>> getEnumType() {
+        return switch (this) {
+            case STATION_TYPE -> MonitoringStation.StationType.class;
+            case STATUS -> MonitoringStation.StationStatus.class;
+            default -> null;
+        };
+    }
+
+    @Override
+    public String getInsertDefault() {
+        return this == STATUS ? MonitoringStation.StationStatus.ACTIVE.name() : null;
+    }
+}
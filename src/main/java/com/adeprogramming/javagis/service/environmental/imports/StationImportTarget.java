@@ -0,0 +1,92 @@
+package com.adeprogramming.javagis.service.environmental.imports;
+
+import com.adeprogramming.javagis.service.environmental.MonitoringStationsChangedEvent;
+import com.adeprogramming.javagis.service.spatial.SpatialIndexService;
+import com.adeprogramming.javagis.service.spatial.imports.AttributeMapping;
+import com.adeprogramming.javagis.service.spatial.imports.ImportTarget;
+import com.adeprogramming.javagis.service.spatial.imports.UpsertStatement;
+import com.adeprogramming.javagis.service.spatial.imports.UpsertStatement.FixedColumn;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.io.WKBWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Imports monitoring stations, upserted by station ID. Every station needs a station type, as
+ * the column is required; its name defaults to its station ID and its status to active.
+ */
+@Component
+public class StationImportTarget implements ImportTarget {
+
+    private static final UpsertStatement<StationColumn> UPSERT = new UpsertStatement<>(
+            "monitoring_stations", StationColumn.class, StationColumn.STATION_ID, List.of(
+            new FixedColumn("geometry", "ST_SetSRID(ST_GeomFromWKB(?), 4326)", Types.BINARY, true),
+            FixedColumn.constant("srid", "4326", true),
+            FixedColumn.parameter("source", Types.VARCHAR, true),
+            FixedColumn.constant("active", "TRUE", true),
+            FixedColumn.parameter("created_at", Types.TIMESTAMP, false),
+            FixedColumn.parameter("updated_at", Types.TIMESTAMP, true)));
+
+    private final SpatialIndexService spatialIndexService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    public StationImportTarget(SpatialIndexService spatialIndexService, ApplicationEventPublisher eventPublisher) {
+        this.spatialIndexService = spatialIndexService;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public String getName() {
+        return "stations";
+    }
+
+    @Override
+    public AttributeMapping<StationColumn> parseMapping(String spec) {
+        return AttributeMapping.parse(StationColumn.class, spec);
+    }
+
+    @Override
+    public void checkGeometryType(Geometry geometry) {
+        if (!(geometry instanceof Point)) {
+            throw new IllegalArgumentException("The geometry is a " + geometry.getGeometryType() + ", not a point");
+        }
+    }
+
+    @Override
+    public Object[] toRow(Object[] values, Geometry geometry, String source) {
+        if (values[StationColumn.STATION_ID.ordinal()] == null) {
+            throw new IllegalArgumentException("No station ID");
+        }
+        if (values[StationColumn.STATION_TYPE.ordinal()] == null) {
+            throw new IllegalArgumentException("No station type");
+        }
+        if (values[StationColumn.NAME.ordinal()] == null) {
+            values[StationColumn.NAME.ordinal()] = values[StationColumn.STATION_ID.ordinal()];
+        }
+        LocalDateTime now = LocalDateTime.now();
+        return UPSERT.parameters(values, new WKBWriter(2).write(geometry), source, now, now);
+    }
+
+    @Override
+    public String getUpsertSql() {
+        return UPSERT.getSql();
+    }
+
+    @Override
+    public int[] getUpsertTypes() {
+        return UPSERT.getTypes();
+    }
+
+    @Override
+    public void rowsWrittenSince(LocalDateTime since) {
+        spatialIndexService.stationsWrittenSince(since);
+        eventPublisher.publishEvent(new MonitoringStationsChangedEvent(null));
+    }
+}
@@ -0,0 +1,142 @@
+package com.adeprogramming.javagis.service.environmental.ingest;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-station in-memory filter for readings that were already written.
+ * Each station keeps the exact (parameter, measurement time) keys of recently written readings
+ * in two generations of primitive hash sets; the older generation is discarded once per window,
+ * or earlier if the station exceeds its entry budget. Retransmitted batches are therefore
+ * dropped without a database round trip, while memory stays bounded per station. Readings
+ * older than the window fall through to the unique key on the measurements table.
+ */
+@Component
+public class DuplicateReadingFilter {
+
+    private final long windowMillis;
+    private final int maxEntriesPerStation;
+    private final Map<Long, StationWindow> windows = new ConcurrentHashMap<>();
+
+    private final LongAdder checked = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder checkNanos = new LongAdder();
+
+    public DuplicateReadingFilter(
+            @Value("${measurements.ingest.dedup.window:PT6H}") Duration window,
+            @Value("${measurements.ingest.dedup.max-entries-per-station:200000}") int maxEntriesPerStation) {
+        this.windowMillis = window.toMillis();
+        this.maxEntriesPerStation = maxEntriesPerStation;
+    }
+
+    /**
+     * Check whether a reading was recently written.
+     *
+     * @param stationKey the primary key of the monitoring station
+     * @param parameterCode the catalog code of the parameter
+     * @param measurementMillis the measurement time in epoch milliseconds
+     * @return true if the reading is a known duplicate
+     */
+    public boolean isDuplicate(long stationKey, int parameterCode, long measurementMillis) {
+        long start = System.nanoTime();
+        StationWindow window = windows.get(stationKey);
+        boolean duplicate = window != null && window.contains(key(parameterCode, measurementMillis));
+        checkNanos.add(System.nanoTime() - start);
+        checked.increment();
+        if (duplicate) {
+            dropped.increment();
+        }
+        return duplicate;
+    }
+
+    /**
+     * Remember a reading once it has been committed.
+     *
+     * @param stationKey the primary key of the monitoring station
+     * @param parameterCode the catalog code of the parameter
+     * @param measurementMillis the measurement time in epoch milliseconds
+     */
+    public void markWritten(long stationKey, int parameterCode, long measurementMillis) {
+        windows.computeIfAbsent(stationKey, k -> new StationWindow())
+                .add(key(parameterCode, measurementMillis));
+    }
+
+    /**
+     * @return counters describing the cost and effect of the filter
+     */
+    public Stats getStats() {
+        long entries = 0;
+        for (StationWindow window : windows.values()) {
+            entries += window.size();
+        }
+        long checks = checked.sum();
+        return new Stats(checks, dropped.sum(), checks > 0 ? checkNanos.sum() / (double) checks : 0,
+                windows.size(), entries);
+    }
+
+    /**
+     * Pack the parameter code into the low 22 bits and the time into the upper bits,
+     * which keeps keys exact for any time before the year 2109.
+     */
+    static long key(int parameterCode, long measurementMillis) {
+        return (measurementMillis << 22) | (parameterCode & 0x3FFFFF);
+    }
+
+    /**
+     * The two generations of recently written keys of one station.
+     */
+    private final class StationWindow {
+
+        private LongHashSet current = new LongHashSet(1024);
+        private LongHashSet previous = new LongHashSet(16);
+        private long generationStart = System.currentTimeMillis();
+
+        synchronized boolean contains(long key) {
+            rotateIfDue();
+            return current.contains(key) || previous.contains(key);
+        }
+
+        synchronized void add(long key) {
+            rotateIfDue();
+            if (current.size() >= maxEntriesPerStation / 2) {
+                rotate();
+            }
+            current.add(key);
+        }
+
+        synchronized int size() {
+            return current.size() + previous.size();
+        }
+
+        private void rotateIfDue() {
+            if (System.currentTimeMillis() - generationStart >= windowMillis) {
+                rotate();
+            }
+        }
+
+        private void rotate() {
+            LongHashSet discarded = previous;
+            previous = current;
+            discarded.clear();
+            current = discarded;
+            generationStart = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Duplicate filter counters.
+     *
+     * @param checked the number of readings checked
+     * @param dropped the number of readings dropped as duplicates
+     * @param averageCheckNanos the average time spent per check in nanoseconds
+     * @param stations the number of stations tracked
+     * @param entries the number of keys held in memory
+     */
+    public record Stats(long checked, long dropped, double averageCheckNanos, int stations, long entries) {
+    }
+}
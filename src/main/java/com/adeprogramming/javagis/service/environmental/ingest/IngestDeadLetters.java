@@ -0,0 +1,87 @@
+package com.adeprogramming.javagis.service.environmental.ingest;
+
+import com.adeprogramming.javagis.payload.environmental.MeasurementReading;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only file of accepted readings that the database rejected, e.g. because a note is too
+ * long for its column. Each line is a JSON object with the time, the error and the reading, so
+ * the readings can be inspected, corrected and posted to the ingest endpoint again. Readings
+ * end up here instead of being retried forever, so one bad reading cannot hold up the others.
+ */
+public class IngestDeadLetters {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestDeadLetters.class);
+
+    private final Path file;
+    private final ObjectMapper objectMapper;
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * @param file the dead-letter file, created with its directory on the first rejected reading
+     * @param objectMapper writes the readings as JSON
+     */
+    public IngestDeadLetters(Path file, ObjectMapper objectMapper) {
+        this.file = file;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Durably append a rejected reading. Failing to write the file is logged with the reading,
+     * which is then only kept in the log.
+     *
+     * @param reading the reading
+     * @param error why the reading was rejected
+     */
+    public synchronized void add(MeasurementReading reading, String error) {
+        count.incrementAndGet();
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("rejectedAt", Instant.now().toString());
+        entry.put("error", error);
+        entry.put("reading", reading);
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            ByteBuffer line = ByteBuffer.wrap((objectMapper.writeValueAsString(entry) + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            try (FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                while (line.hasRemaining()) {
+                    channel.write(line);
+                }
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            logger.error("Could not write rejected reading {} to {}: {}", reading, file, e.getMessage());
+        }
+    }
+
+    /**
+     * @return the number of readings rejected since startup
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return the dead-letter file
+     */
+    public Path getFile() {
+        return file;
+    }
+}
@@ -0,0 +1,303 @@
+package com.adeprogramming.javagis.service.environmental.ingest;
+
+import com.adeprogramming.javagis.model.environmental.Measurement;
+import com.adeprogramming.javagis.payload.environmental.MeasurementReading;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only local journal of accepted readings for the write-behind ingest pipeline.
+ * Every submitted batch is written as one checksummed record and fsynced before it is
+ * acknowledged. The journal is split into segments; a segment file is deleted once it is
+ * rolled and all its readings are committed to the database. Segments left over from a
+ * crash are replayed on startup, which is safe because ingest is idempotent.
+ */
+public class IngestJournal implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestJournal.class);
+
+    private static final String SEGMENT_PREFIX = "ingest-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    /** Version 2 keeps measurement times to the nanosecond; version 1 kept milliseconds. */
+    private static final int FORMAT_VERSION = 2;
+    private static final int MILLIS_FORMAT_VERSION = 1;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final List<Path> recoveredSegments;
+
+    private long nextSegmentNumber;
+    private Segment current;
+
+    /**
+     * Open the journal, collecting segments left over from a previous run for {@link #replay}.
+     *
+     * @param directory the journal directory
+     * @param segmentBytes the size after which a segment is rolled
+     * @throws IOException if the directory cannot be read or the first segment cannot be created
+     */
+    public IngestJournal(Path directory, long segmentBytes) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentBytes = segmentBytes;
+        this.recoveredSegments = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                recoveredSegments.add(path);
+                nextSegmentNumber = Math.max(nextSegmentNumber, segmentNumber(path) + 1);
+            }
+        }
+        recoveredSegments.sort(null);
+        this.current = openSegment();
+    }
+
+    /**
+     * Durably append a batch of readings.
+     *
+     * @param readings the readings
+     * @return the segment holding the readings, to report commits against
+     * @throws IOException if the batch could not be written and synced
+     */
+    public synchronized Segment append(List<MeasurementReading> readings) throws IOException {
+        byte[] payload = encode(readings);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer record = ByteBuffer.allocate(8 + payload.length + 8);
+        record.putInt(payload.length);
+        record.putInt(readings.size());
+        record.put(payload);
+        record.putLong(crc.getValue());
+        record.flip();
+        while (record.hasRemaining()) {
+            current.channel.write(record);
+        }
+        current.channel.force(false);
+
+        Segment segment = current;
+        segment.appended.addAndGet(readings.size());
+        if (segment.channel.size() >= segmentBytes) {
+            roll();
+        }
+        return segment;
+    }
+
+    /**
+     * Record that readings of a segment were committed to the database.
+     *
+     * @param segment the segment returned by {@link #append}
+     * @param count the number of committed readings
+     */
+    public void markCommitted(Segment segment, int count) {
+        segment.committed.addAndGet(count);
+        deleteIfComplete(segment);
+    }
+
+    /**
+     * Replay the segments left over from a previous run, deleting each once all its records
+     * are written. A segment with a record that could not be written is kept for the next
+     * start; the records after it are still replayed.
+     *
+     * @param writer writes the readings of each journal record, returning false if some of
+     *               them could not be written
+     */
+    public void replay(Predicate<List<MeasurementReading>> writer) {
+        for (Path path : recoveredSegments) {
+            int records = 0;
+            int failed = 0;
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+                while (true) {
+                    List<MeasurementReading> readings = readRecord(in);
+                    if (readings == null) {
+                        break;
+                    }
+                    boolean complete;
+                    try {
+                        complete = writer.test(readings);
+                    } catch (RuntimeException e) {
+                        logger.error("Could not replay a record of {} readings from {}: {}",
+                                readings.size(), path.getFileName(), e.getMessage());
+                        complete = false;
+                    }
+                    records++;
+                    if (!complete) {
+                        failed++;
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("Could not replay ingest journal segment {}: {}", path, e.getMessage());
+                continue;
+            }
+
+            if (failed > 0) {
+                logger.error("Keeping ingest journal segment {} for the next start, {} of its {} records were not written",
+                        path.getFileName(), failed, records);
+                continue;
+            }
+            try {
+                Files.delete(path);
+                logger.info("Replayed {} records from ingest journal segment {}", records, path.getFileName());
+            } catch (IOException e) {
+                logger.warn("Could not delete replayed ingest journal segment {}: {}", path, e.getMessage());
+            }
+        }
+        recoveredSegments.clear();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        current.channel.close();
+        current.closed = true;
+        deleteIfComplete(current);
+    }
+
+    private void roll() throws IOException {
+        Segment previous = current;
+        current = openSegment();
+        previous.channel.close();
+        previous.closed = true;
+        deleteIfComplete(previous);
+    }
+
+    private Segment openSegment() throws IOException {
+        Path path = directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, nextSegmentNumber++, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return new Segment(path, channel);
+    }
+
+    private void deleteIfComplete(Segment segment) {
+        if (segment.closed && segment.committed.get() >= segment.appended.get()) {
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                logger.warn("Could not delete committed ingest journal segment {}: {}", segment.path, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Read one record, returning null at the end of the file or at a torn or corrupt tail.
+     */
+    private static List<MeasurementReading> readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            int count = in.readInt();
+            if (length < 0 || count < 0) {
+                return null;
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            long checksum = in.readLong();
+
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if (crc.getValue() != checksum) {
+                logger.warn("Ignoring ingest journal record with bad checksum");
+                return null;
+            }
+            return decode(payload, count);
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static byte[] encode(List<MeasurementReading> readings) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(readings.size() * 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(FORMAT_VERSION);
+        for (MeasurementReading reading : readings) {
+            out.writeUTF(reading.getStationId());
+            out.writeUTF(reading.getParameterName());
+            out.writeUTF(reading.getUnit());
+            out.writeDouble(reading.getValue());
+            // Full precision, so a replayed reading has the same key as the one already committed
+            out.writeLong(reading.getMeasurementTime().toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(reading.getMeasurementTime().getNano());
+            out.writeByte(reading.getQualityFlag() != null ? reading.getQualityFlag().ordinal() : -1);
+            out.writeBoolean(reading.getThresholdValue() != null);
+            if (reading.getThresholdValue() != null) {
+                out.writeDouble(reading.getThresholdValue());
+            }
+            out.writeBoolean(reading.getNotes() != null);
+            if (reading.getNotes() != null) {
+                out.writeUTF(reading.getNotes());
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static List<MeasurementReading> decode(byte[] payload, int count) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int version = in.readByte();
+        if (version != FORMAT_VERSION && version != MILLIS_FORMAT_VERSION) {
+            throw new IOException("Unsupported ingest journal format version: " + version);
+        }
+        Measurement.QualityFlag[] flags = Measurement.QualityFlag.values();
+        List<MeasurementReading> readings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            MeasurementReading reading = new MeasurementReading();
+            reading.setStationId(in.readUTF());
+            reading.setParameterName(in.readUTF());
+            reading.setUnit(in.readUTF());
+            reading.setValue(in.readDouble());
+            reading.setMeasurementTime(version == MILLIS_FORMAT_VERSION
+                    ? LocalDateTime.ofInstant(Instant.ofEpochMilli(in.readLong()), ZoneOffset.UTC)
+                    : LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC));
+            int flag = in.readByte();
+            reading.setQualityFlag(flag >= 0 ? flags[flag] : null);
+            if (in.readBoolean()) {
+                reading.setThresholdValue(in.readDouble());
+            }
+            if (in.readBoolean()) {
+                reading.setNotes(in.readUTF());
+            }
+            readings.add(reading);
+        }
+        return readings;
+    }
+
+    private static long segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * A journal segment file and its commit progress.
+     */
+    public static final class Segment {
+
+        private final Path path;
+        private final FileChannel channel;
+        private final AtomicLong appended = new AtomicLong();
+        private final AtomicLong committed = new AtomicLong();
+        private volatile boolean closed;
+
+        private Segment(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package com.adeprogramming.javagis.service.environmental.ingest;
+
+import com.adeprogramming.javagis.payload.environmental.MeasurementReading;
+import com.adeprogramming.javagis.service.environmental.MeasurementIngestService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous write-behind pipeline between the ingest endpoints and the database.
+ * Producers put readings on a bounded lock-free queue and return immediately; a small set of
+ * writer threads drain it and write through {@link MeasurementIngestService} in batches, flushing
+ * when a batch is full or the flush interval has passed. A full queue is reported to the caller
+ * so it can answer with backpressure instead of blocking. With the journal enabled, accepted
+ * readings survive a crash and are replayed on the next start.
+ * <p>
+ * Callers that must never block, like the selector thread of the socket listener, hand readings
+ * over with {@link #enqueue}: their queue slots are reserved at once and a journal thread of the
+ * pipeline makes them durable before queueing them, so the caller never waits for an fsync.
+ * <p>
+ * A batch the database rejects because of its data is written again one reading at a time,
+ * and the readings rejected on their own go to {@link IngestDeadLetters}, so one bad reading
+ * neither drops the acknowledged readings batched with it nor stops the journal replay.
+ */
+@Component
+public class WriteBehindIngestPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindIngestPipeline.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int MAX_RETRY_AFTER_SECONDS = 30;
+
+    private final MeasurementIngestService measurementIngestService;
+    private final BoundedMpmcQueue<QueuedReading> queue;
+    private final boolean enabled;
+    private final int writerThreads;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final int maxAttempts;
+    private final IngestJournal journal;
+    private final IngestDeadLetters deadLetters;
+
+    private final List<Thread> writers = new ArrayList<>();
+    private final BlockingQueue<List<MeasurementReading>> toJournal = new LinkedBlockingQueue<>();
+    /**
+     * Queue slots promised to readings waiting for the journal thread.
+     */
+    private final AtomicInteger reserved = new AtomicInteger();
+    private Thread journalWriter;
+    private volatile boolean journaling;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile double writeRatePerSecond;
+    private volatile boolean running;
+
+    @Autowired
+    public WriteBehindIngestPipeline(
+            MeasurementIngestService measurementIngestService,
+            ObjectMapper objectMapper,
+            @Value("${measurements.ingest.async.enabled:true}") boolean enabled,
+            @Value("${measurements.ingest.async.queue-capacity:65536}") int queueCapacity,
+            @Value("${measurements.ingest.async.writer-threads:2}") int writerThreads,
+            @Value("${measurements.ingest.async.batch-size:1000}") int batchSize,
+            @Value("${measurements.ingest.async.flush-interval:200ms}") Duration flushInterval,
+            @Value("${measurements.ingest.async.max-attempts:5}") int maxAttempts,
+            @Value("${measurements.ingest.journal.enabled:false}") boolean journalEnabled,
+            @Value("${measurements.ingest.journal.dir:./data/ingest-journal}") Path journalDir,
+            @Value("${measurements.ingest.journal.segment-size:64MB}") DataSize segmentSize,
+            @Value("${measurements.ingest.dead-letter-file:./data/ingest-dead-letters.jsonl}") Path deadLetterFile)
+            throws IOException {
+        this.measurementIngestService = measurementIngestService;
+        this.enabled = enabled;
+        this.queue = new BoundedMpmcQueue<>(queueCapacity);
+        this.writerThreads = writerThreads;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.maxAttempts = maxAttempts;
+        this.journal = enabled && journalEnabled ? new IngestJournal(journalDir, segmentSize.toBytes()) : null;
+        this.deadLetters = new IngestDeadLetters(deadLetterFile, objectMapper);
+    }
+
+    /**
+     * @return true if ingest should go through this pipeline rather than straight to the database
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Replay the journal and start the writer threads once the application, including its
+     * schema initializers, is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (journal != null) {
+            journal.replay(readings -> {
+                boolean complete = true;
+                for (int from = 0; from < readings.size(); from += batchSize) {
+                    for (Outcome outcome : write(readings.subList(from, Math.min(readings.size(), from + batchSize)))) {
+                        complete &= outcome != Outcome.FAILED;
+                    }
+                }
+                return complete;
+            });
+        }
+
+        running = true;
+        if (journal != null) {
+            journaling = true;
+            journalWriter = new Thread(this::journalLoop, "ingest-journal");
+            journalWriter.setDaemon(true);
+            journalWriter.start();
+        }
+        for (int i = 0; i < writerThreads; i++) {
+            Thread writer = new Thread(this::writeLoop, "ingest-writer-" + (i + 1));
+            writer.setDaemon(true);
+            writer.start();
+            writers.add(writer);
+        }
+        logger.info("Started {} ingest writer threads (queue capacity {}, batch size {}, journal {})",
+                writerThreads, queue.capacity(), batchSize, journal != null ? "enabled" : "disabled");
+    }
+
+    /**
+     * Accept readings for asynchronous writing.
+     * Stops at the first reading that does not fit; the caller should ask the client to retry
+     * the remainder later, which is safe because ingest is idempotent.
+     *
+     * @param readings the readings to write
+     * @return the number of readings accepted
+     * @throws IOException if the journal is enabled and the readings could not be made durable
+     */
+    public int submit(List<MeasurementReading> readings) throws IOException {
+        int room = queue.capacity() - queue.size() - reserved.get();
+        List<MeasurementReading> accepted = readings.size() <= room ? readings : readings.subList(0, Math.max(0, room));
+        if (accepted.isEmpty()) {
+            return 0;
+        }
+
+        IngestJournal.Segment segment = journal != null ? journal.append(accepted) : null;
+        int offered = 0;
+        for (MeasurementReading reading : accepted) {
+            if (!queue.offer(new QueuedReading(reading, segment))) {
+                break;
+            }
+            offered++;
+        }
+        if (segment != null && offered < accepted.size()) {
+            // Lost the race for the last free slots; the journaled copies are dropped and the client retries them
+            journal.markCommitted(segment, accepted.size() - offered);
+        }
+        return offered;
+    }
+
+    /**
+     * Accept readings for asynchronous writing without waiting for the journal.
+     * Like {@link #submit}, stops at the first reading that does not fit. With the journal
+     * enabled, the accepted readings are journaled and queued by the journal thread, so a crash
+     * before that loses them; callers must not acknowledge them as durable.
+     *
+     * @param readings the readings to write
+     * @return the number of readings accepted
+     */
+    public int enqueue(List<MeasurementReading> readings) {
+        if (journal == null) {
+            try {
+                return submit(readings);
+            } catch (IOException e) {
+                throw new IllegalStateException("Readings are not journaled, so submitting them cannot fail", e);
+            }
+        }
+        while (true) {
+            int taken = reserved.get();
+            int room = queue.capacity() - queue.size() - taken;
+            int accepted = Math.max(0, Math.min(readings.size(), room));
+            if (accepted == 0) {
+                return 0;
+            }
+            if (reserved.compareAndSet(taken, taken + accepted)) {
+                toJournal.add(new ArrayList<>(readings.subList(0, accepted)));
+                return accepted;
+            }
+        }
+    }
+
+    /**
+     * Journal readings handed over with {@link #enqueue} and queue them for writing, waiting
+     * for their reserved slots if other producers took them meanwhile.
+     */
+    private void journalLoop() {
+        while (journaling || !toJournal.isEmpty()) {
+            List<MeasurementReading> readings;
+            try {
+                readings = toJournal.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (readings == null) {
+                continue;
+            }
+            IngestJournal.Segment segment = null;
+            try {
+                segment = journal.append(readings);
+            } catch (IOException e) {
+                // Still written, only not durable
+                logger.error("Could not journal {} readings: {}", readings.size(), e.getMessage());
+            }
+            for (MeasurementReading reading : readings) {
+                while (!queue.offer(new QueuedReading(reading, segment))) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                reserved.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Estimate how long a client should wait before retrying, from the queue depth
+     * and the recent write rate.
+     *
+     * @return the suggested delay in seconds
+     */
+    public int retryAfterSeconds() {
+        double rate = writeRatePerSecond;
+        if (rate <= 0) {
+            return MAX_RETRY_AFTER_SECONDS;
+        }
+        return (int) Math.max(1, Math.min(MAX_RETRY_AFTER_SECONDS, Math.ceil(queue.size() / rate)));
+    }
+
+    /**
+     * @return counters describing the state of the pipeline
+     */
+    public PipelineStats getStats() {
+        return new PipelineStats(enabled, queue.size(), queue.capacity(), written.get(), dropped.get(),
+                deadLetters.getCount(), writeRatePerSecond, journal != null);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        // Readings handed over for journaling are queued before the writers are told to stop
+        journaling = false;
+        if (journalWriter != null) {
+            journalWriter.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        running = false;
+        for (Thread writer : writers) {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private void writeLoop() {
+        List<QueuedReading> batch = new ArrayList<>(batchSize);
+        long batchStarted = 0;
+
+        while (running || queue.size() > 0) {
+            if (batch.isEmpty()) {
+                batchStarted = System.nanoTime();
+            }
+            queue.drainTo(batch, batchSize - batch.size());
+
+            if (batch.size() >= batchSize
+                    || (!batch.isEmpty() && System.nanoTime() - batchStarted >= flushIntervalNanos)
+                    || (!running && !batch.isEmpty())) {
+                flush(batch);
+                batch.clear();
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        if (!batch.isEmpty()) {
+            flush(batch);
+        }
+    }
+
+    private void flush(List<QueuedReading> batch) {
+        List<MeasurementReading> readings = new ArrayList<>(batch.size());
+        for (QueuedReading queued : batch) {
+            readings.add(queued.reading());
+        }
+
+        long started = System.nanoTime();
+        Outcome[] outcomes = write(readings);
+        int writtenCount = 0;
+        int failedCount = 0;
+        for (Outcome outcome : outcomes) {
+            if (outcome == Outcome.WRITTEN) {
+                writtenCount++;
+            } else if (outcome == Outcome.FAILED) {
+                failedCount++;
+            }
+        }
+        if (writtenCount > 0) {
+            written.addAndGet(writtenCount);
+            double seconds = Math.max(1e-3, (System.nanoTime() - started) / 1e9);
+            double rate = writtenCount / seconds * writerThreads;
+            writeRatePerSecond = writeRatePerSecond <= 0 ? rate : 0.8 * writeRatePerSecond + 0.2 * rate;
+        }
+        dropped.addAndGet(failedCount);
+
+        if (journal != null) {
+            // Dead-lettered readings are settled too; failed ones stay on disk and are replayed on the next start
+            Map<IngestJournal.Segment, Integer> perSegment = new IdentityHashMap<>();
+            for (int i = 0; i < batch.size(); i++) {
+                // Readings the journal thread could not append have no segment
+                if (outcomes[i] != Outcome.FAILED && batch.get(i).segment() != null) {
+                    perSegment.merge(batch.get(i).segment(), 1, Integer::sum);
+                }
+            }
+            perSegment.forEach(journal::markCommitted);
+        }
+    }
+
+    /**
+     * Write a batch, falling back to one reading at a time if the database rejects its data.
+     *
+     * @return the outcome for each reading
+     */
+    private Outcome[] write(List<MeasurementReading> readings) {
+        Outcome[] outcomes = new Outcome[readings.size()];
+        RuntimeException failure = writeWithRetry(readings);
+        if (failure == null) {
+            Arrays.fill(outcomes, Outcome.WRITTEN);
+            return outcomes;
+        }
+        Arrays.fill(outcomes, Outcome.FAILED);
+        if (!isDataError(failure)) {
+            logger.error("Dropping batch of {} readings after {} attempts: {}",
+                    readings.size(), maxAttempts, failure.getMessage());
+            return outcomes;
+        }
+
+        logger.warn("Database rejected a batch of {} readings, writing them one at a time: {}",
+                readings.size(), failure.getMessage());
+        for (int i = 0; i < readings.size(); i++) {
+            MeasurementReading reading = readings.get(i);
+            failure = writeWithRetry(List.of(reading));
+            if (failure == null) {
+                outcomes[i] = Outcome.WRITTEN;
+            } else if (isDataError(failure)) {
+                deadLetters.add(reading, failure.getMessage());
+                outcomes[i] = Outcome.DEAD_LETTERED;
+            } else {
+                logger.error("Dropping {} readings after {} attempts: {}",
+                        readings.size() - i, maxAttempts, failure.getMessage());
+                break;
+            }
+        }
+        return outcomes;
+    }
+
+    /**
+     * @return null once the readings are written, otherwise the last failure; failures caused
+     * by the data are not retried
+     */
+    private RuntimeException writeWithRetry(List<MeasurementReading> readings) {
+        long backoffMillis = 100;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                measurementIngestService.ingest(readings);
+                return null;
+            } catch (RuntimeException e) {
+                if (isDataError(e) || attempt >= maxAttempts) {
+                    return e;
+                }
+                logger.warn("Ingest batch failed (attempt {} of {}), retrying in {} ms: {}",
+                        attempt, maxAttempts, backoffMillis, e.getMessage());
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(backoffMillis));
+                backoffMillis = Math.min(backoffMillis * 2, 5_000);
+            }
+        }
+    }
+
+    /**
+     * Whether a failure is caused by the readings themselves, e.g. a constraint violation or a
+     * value out of range, so writing them again cannot succeed. Connection and transaction
+     * failures are taken as the database being unavailable.
+     */
+    static boolean isDataError(RuntimeException e) {
+        if (e instanceof IllegalArgumentException) {
+            return true;
+        }
+        return e instanceof NonTransientDataAccessException && !(e instanceof DataAccessResourceFailureException);
+    }
+
+    private enum Outcome {
+        WRITTEN,
+        DEAD_LETTERED,
+        FAILED
+    }
+
+    private record QueuedReading(MeasurementReading reading, IngestJournal.Segment segment) {
+    }
+
+    /**
+     * Write-behind pipeline counters.
+     *
+     * @param enabled whether ingest goes through the pipeline
+     * @param queued the number of readings waiting to be written
+     * @param capacity the queue capacity
+     * @param written the number of readings written since startup
+     * @param dropped the number of readings given up after repeated failures
+     * @param deadLettered the number of readings rejected by the database and written to the dead-letter file
+     * @param writeRatePerSecond the smoothed write throughput
+     * @param journalEnabled whether accepted readings are journaled
+     */
+    public record PipelineStats(boolean enabled, int queued, int capacity, long written, long dropped,
+                                long deadLettered, double writeRatePerSecond, boolean journalEnabled) {
+    }
+}
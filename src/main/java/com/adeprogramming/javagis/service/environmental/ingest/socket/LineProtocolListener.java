@@ -0,0 +1,386 @@
+package com.adeprogramming.javagis.service.environmental.ingest.socket;
+
+import com.adeprogramming.javagis.payload.environmental.MeasurementReading;
+import com.adeprogramming.javagis.repository.environmental.MonitoringStationRepository;
+import com.adeprogramming.javagis.service.environmental.MonitoringStationsChangedEvent;
+import com.adeprogramming.javagis.service.environmental.ingest.WriteBehindIngestPipeline;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Optional TCP listener for the sensor gateway line protocol.
+ * A single selector thread accepts connections and reads into pooled direct buffers; complete
+ * lines are parsed in place by {@link LineProtocolParser} and handed to the write-behind ingest
+ * pipeline. When the pipeline is full the connection stops being read until the backlog is
+ * accepted, so backpressure reaches the gateway through TCP flow control. The listener needs
+ * the pipeline, so the selector thread never waits for the database to write readings, and
+ * hands readings over without waiting for the journal, which the pipeline's own thread writes.
+ * <p>
+ * Lines for unknown stations are counted and skipped, like the rejected readings of the
+ * HTTP endpoint. Station IDs are checked against a set of all stations, loaded before the
+ * socket opens and reloaded by a background thread every minute and whenever stations change
+ * on this node, so the selector thread never looks a station up in the database.
+ * <p>
+ * If a token is configured, the first line of every connection must be {@code AUTH <token>}.
+ * Authentication therefore happens once per connection instead of once per request.
+ */
+@Component
+public class LineProtocolListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(LineProtocolListener.class);
+
+    private static final long SELECT_TIMEOUT_MILLIS = 100;
+    private static final int MAX_POOLED_BUFFERS = 256;
+    private static final long STATION_RELOAD_MINUTES = 1;
+
+    private final WriteBehindIngestPipeline writeBehindIngestPipeline;
+    private final MonitoringStationRepository monitoringStationRepository;
+    private final boolean enabled;
+    private final String bindAddress;
+    private final int port;
+    private final int bufferSize;
+    private final byte[] authLine;
+
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong lines = new AtomicLong();
+    private final AtomicLong malformed = new AtomicLong();
+    private final AtomicLong unknownStation = new AtomicLong();
+    /**
+     * The IDs of all stations, replaced as a whole on every reload.
+     */
+    private volatile Set<String> knownStations = Set.of();
+
+    private ScheduledExecutorService stationLoader;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    @Autowired
+    public LineProtocolListener(
+            WriteBehindIngestPipeline writeBehindIngestPipeline,
+            MonitoringStationRepository monitoringStationRepository,
+            @Value("${measurements.ingest.socket.enabled:false}") boolean enabled,
+            @Value("${measurements.ingest.socket.bind-address:0.0.0.0}") String bindAddress,
+            @Value("${measurements.ingest.socket.port:7070}") int port,
+            @Value("${measurements.ingest.socket.buffer-size:64KB}") DataSize bufferSize,
+            @Value("${measurements.ingest.socket.token:}") String token) {
+        this.writeBehindIngestPipeline = writeBehindIngestPipeline;
+        this.monitoringStationRepository = monitoringStationRepository;
+        this.enabled = enabled;
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.bufferSize = Math.toIntExact(bufferSize.toBytes());
+        this.authLine = token.isEmpty() ? null : ("AUTH " + token).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Open the server socket and start the selector thread once the application is ready.
+     *
+     * @throws IOException if the port cannot be bound
+     * @throws IllegalStateException if the write-behind ingest pipeline is disabled
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        if (!writeBehindIngestPipeline.isEnabled()) {
+            throw new IllegalStateException("measurements.ingest.socket.enabled requires " +
+                    "measurements.ingest.async.enabled, the listener cannot write to the database itself");
+        }
+        loadStations();
+        stationLoader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "line-protocol-stations");
+            thread.setDaemon(true);
+            return thread;
+        });
+        stationLoader.scheduleWithFixedDelay(this::reloadStations,
+                STATION_RELOAD_MINUTES, STATION_RELOAD_MINUTES, TimeUnit.MINUTES);
+
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(bindAddress, port), 1024);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        selectorThread = new Thread(this::selectLoop, "line-protocol-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        logger.info("Line protocol listener accepting gateway connections on {}:{}", bindAddress, port);
+    }
+
+    /**
+     * @return counters describing the listener
+     */
+    public ListenerStats getStats() {
+        return new ListenerStats(enabled, connections.get(), lines.get(), malformed.get(), unknownStation.get());
+    }
+
+    /**
+     * Reload the known stations in the background when stations are added or removed.
+     *
+     * @param event the changed stations
+     */
+    @EventListener
+    public void onStationsChanged(MonitoringStationsChangedEvent event) {
+        ScheduledExecutorService loader = stationLoader;
+        if (loader != null && !loader.isShutdown()) {
+            loader.execute(this::reloadStations);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        stationLoader.shutdownNow();
+        selector.wakeup();
+        selectorThread.join(5_000);
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    private void selectLoop() {
+        DirectBufferPool bufferPool = new DirectBufferPool(bufferSize, MAX_POOLED_BUFFERS);
+        LineProtocolParser parser = new LineProtocolParser();
+        Set<Connection> deferred = new LinkedHashSet<>();
+
+        while (running) {
+            try {
+                selector.select(SELECT_TIMEOUT_MILLIS);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        Connection connection = (Connection) key.attachment();
+                        read(connection, bufferPool, parser);
+                        submitPending(connection, deferred);
+                    }
+                }
+                retryDeferred(deferred);
+            } catch (IOException e) {
+                logger.error("Line protocol selector failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(key, authLine == null));
+        connections.incrementAndGet();
+    }
+
+    private void read(Connection connection, DirectBufferPool bufferPool, LineProtocolParser parser) {
+        if (connection.buffer == null) {
+            connection.buffer = bufferPool.acquire();
+        }
+        ByteBuffer buffer = connection.buffer;
+        try {
+            int read = ((SocketChannel) connection.key.channel()).read(buffer);
+            if (read < 0) {
+                close(connection, bufferPool);
+                return;
+            }
+        } catch (IOException e) {
+            close(connection, bufferPool);
+            return;
+        }
+
+        buffer.flip();
+        int lineStart = buffer.position();
+        int limit = buffer.limit();
+        for (int i = lineStart; i < limit; i++) {
+            if (buffer.get(i) != '\n') {
+                continue;
+            }
+            if (!connection.authenticated) {
+                if (!isAuthLine(buffer, lineStart, i)) {
+                    logger.warn("Closing line protocol connection with missing or wrong AUTH line");
+                    close(connection, bufferPool);
+                    return;
+                }
+                connection.authenticated = true;
+            } else {
+                MeasurementReading reading = parser.parse(buffer, lineStart, i);
+                lines.incrementAndGet();
+                if (reading == null) {
+                    malformed.incrementAndGet();
+                } else if (!isKnownStation(reading.getStationId())) {
+                    unknownStation.incrementAndGet();
+                } else {
+                    connection.pending.add(reading);
+                }
+            }
+            lineStart = i + 1;
+        }
+
+        buffer.position(lineStart);
+        buffer.compact();
+        if (buffer.position() == buffer.capacity()) {
+            logger.warn("Closing line protocol connection sending a line longer than {} bytes", bufferSize);
+            close(connection, bufferPool);
+        } else if (buffer.position() == 0) {
+            bufferPool.release(buffer);
+            connection.buffer = null;
+        }
+    }
+
+    /**
+     * Hand parsed readings to the pipeline; if it is full, stop reading from the connection.
+     * Readings of a connection closed by the gateway are still handed over.
+     */
+    private void submitPending(Connection connection, Set<Connection> deferred) {
+        if (connection.pending.isEmpty()) {
+            deferred.remove(connection);
+            return;
+        }
+        try {
+            int accepted = writeBehindIngestPipeline.enqueue(connection.pending);
+            if (accepted == connection.pending.size()) {
+                connection.pending.clear();
+                if (deferred.remove(connection) && connection.key.isValid()) {
+                    connection.key.interestOps(SelectionKey.OP_READ);
+                }
+            } else {
+                connection.pending = new ArrayList<>(connection.pending.subList(accepted, connection.pending.size()));
+                if (connection.key.isValid()) {
+                    connection.key.interestOps(0);
+                }
+                deferred.add(connection);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Could not hand {} line protocol readings to ingest: {}",
+                    connection.pending.size(), e.getMessage());
+            connection.pending.clear();
+            deferred.remove(connection);
+            closeQuietly(connection);
+        }
+    }
+
+    private void retryDeferred(Set<Connection> deferred) {
+        for (Connection connection : new ArrayList<>(deferred)) {
+            submitPending(connection, deferred);
+        }
+    }
+
+    private boolean isKnownStation(String stationId) {
+        return knownStations.contains(stationId);
+    }
+
+    private void loadStations() {
+        knownStations = new HashSet<>(monitoringStationRepository.findAllStationIds());
+    }
+
+    private void reloadStations() {
+        try {
+            loadStations();
+        } catch (RuntimeException e) {
+            // The previous set stays in use until the next reload
+            logger.warn("Could not reload the stations known to the line protocol listener: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Compare the line with the expected AUTH line in constant time, so the token cannot be
+     * guessed byte by byte from response times.
+     */
+    private boolean isAuthLine(ByteBuffer buffer, int start, int end) {
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        byte[] line = new byte[end - start];
+        buffer.get(start, line);
+        return MessageDigest.isEqual(line, authLine);
+    }
+
+    private void close(Connection connection, DirectBufferPool bufferPool) {
+        closeQuietly(connection);
+        if (connection.buffer != null) {
+            bufferPool.release(connection.buffer);
+            connection.buffer = null;
+        }
+    }
+
+    private void closeQuietly(Connection connection) {
+        connection.key.cancel();
+        try {
+            connection.key.channel().close();
+        } catch (IOException e) {
+            logger.debug("Error closing line protocol connection: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Per-connection state, owned by the selector thread.
+     */
+    private static final class Connection {
+
+        private final SelectionKey key;
+        private boolean authenticated;
+        private ByteBuffer buffer;
+        private List<MeasurementReading> pending = new ArrayList<>();
+
+        private Connection(SelectionKey key, boolean authenticated) {
+            this.key = key;
+            this.authenticated = authenticated;
+        }
+    }
+
+    /**
+     * Line protocol listener counters.
+     *
+     * @param enabled whether the listener is enabled
+     * @param connections the number of connections accepted since startup
+     * @param lines the number of lines received
+     * @param malformed the number of lines that could not be parsed
+     * @param unknownStation the number of lines skipped because their station does not exist
+     */
+    public record ListenerStats(boolean enabled, long connections, long lines, long malformed,
+                                long unknownStation) {
+    }
+}
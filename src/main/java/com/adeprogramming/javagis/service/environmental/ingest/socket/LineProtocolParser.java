@@ -0,0 +1,188 @@
+package com.adeprogramming.javagis.service.environmental.ingest.socket;
+
+import com.adeprogramming.javagis.payload.environmental.MeasurementReading;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Parser for the sensor gateway line protocol.
+ * Each line is {@code station_id,parameter,value,unit,timestamp} terminated by {@code \n},
+ * where the timestamp is in epoch milliseconds (UTC). Fields are parsed in place from the
+ * receive buffer: numbers are decoded from the bytes directly and the few distinct station,
+ * parameter and unit names are served from a cache, so a well-formed line allocates no
+ * intermediate strings. Not thread-safe; use one parser per selector thread.
+ */
+final class LineProtocolParser {
+
+    private static final int FIELD_COUNT = 5;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18};
+
+    private final AsciiStringCache names = new AsciiStringCache(4096);
+    private final int[] fieldStarts = new int[FIELD_COUNT];
+    private final int[] fieldEnds = new int[FIELD_COUNT];
+
+    /**
+     * Parse one line.
+     *
+     * @param buffer the buffer holding the line
+     * @param start the index of the first byte of the line
+     * @param end the index of the line terminator
+     * @return the reading, or null if the line is malformed
+     */
+    MeasurementReading parse(ByteBuffer buffer, int start, int end) {
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        int field = 0;
+        fieldStarts[0] = start;
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == ',') {
+                if (field == FIELD_COUNT - 1) {
+                    return null;
+                }
+                fieldEnds[field++] = i;
+                fieldStarts[field] = i + 1;
+            }
+        }
+        if (field != FIELD_COUNT - 1) {
+            return null;
+        }
+        fieldEnds[field] = end;
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            if (fieldEnds[i] == fieldStarts[i]) {
+                return null;
+            }
+        }
+
+        double value = parseDouble(buffer, fieldStarts[2], fieldEnds[2]);
+        long timestamp = parseLong(buffer, fieldStarts[4], fieldEnds[4]);
+        if (!Double.isFinite(value) || timestamp == Long.MIN_VALUE) {
+            return null;
+        }
+
+        MeasurementReading reading = new MeasurementReading();
+        reading.setStationId(names.get(buffer, fieldStarts[0], fieldEnds[0]));
+        reading.setParameterName(names.get(buffer, fieldStarts[1], fieldEnds[1]));
+        reading.setValue(value);
+        reading.setUnit(names.get(buffer, fieldStarts[3], fieldEnds[3]));
+        reading.setMeasurementTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneOffset.UTC));
+        return reading;
+    }
+
+    /**
+     * Decode a plain decimal number; falls back to {@link Double#parseDouble} for exponents
+     * or more digits than a double represents exactly.
+     */
+    private static double parseDouble(ByteBuffer buffer, int start, int end) {
+        int i = start;
+        boolean negative = buffer.get(i) == '-';
+        if (negative || buffer.get(i) == '+') {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                return parseDoubleSlow(buffer, start, end);
+            }
+        }
+        if (digits == 0) {
+            return Double.NaN;
+        }
+        if (digits > 15 || fractionDigits >= POWERS_OF_TEN.length) {
+            return parseDoubleSlow(buffer, start, end);
+        }
+        double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+        return negative ? -value : value;
+    }
+
+    private static double parseDoubleSlow(ByteBuffer buffer, int start, int end) {
+        try {
+            return Double.parseDouble(decode(buffer, start, end));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static long parseLong(ByteBuffer buffer, int start, int end) {
+        if (end - start > 18) {
+            return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private static String decode(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Direct-mapped cache of decoded names keyed by their bytes.
+     */
+    private static final class AsciiStringCache {
+
+        private final byte[][] keys;
+        private final String[] values;
+        private final int mask;
+
+        AsciiStringCache(int size) {
+            this.keys = new byte[size][];
+            this.values = new String[size];
+            this.mask = size - 1;
+        }
+
+        String get(ByteBuffer buffer, int start, int end) {
+            int hash = 1;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + buffer.get(i);
+            }
+            int slot = (hash ^ (hash >>> 16)) & mask;
+
+            byte[] key = keys[slot];
+            if (key != null && matches(key, buffer, start, end)) {
+                return values[slot];
+            }
+            String value = decode(buffer, start, end);
+            keys[slot] = value.getBytes(StandardCharsets.UTF_8);
+            values[slot] = value;
+            return value;
+        }
+
+        private static boolean matches(byte[] key, ByteBuffer buffer, int start, int end) {
+            if (key.length != end - start) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != buffer.get(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
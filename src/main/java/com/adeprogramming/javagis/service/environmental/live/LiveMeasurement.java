@@ -0,0 +1,24 @@
+package com.adeprogramming.javagis.service.environmental.live;
+
+import com.adeprogramming.javagis.model.environmental.Measurement;
+
+/**
+ * A measurement that has just been committed, as handed to the {@link LiveMeasurementDispatcher}.
+ *
+ * @param stationKey the primary key of the monitoring station
+ * @param parameterCode the catalog code of the parameter
+ * @param measurementMillis the measurement time in epoch milliseconds (UTC)
+ * @param value the measured value
+ * @param qualityFlag the quality of the measurement
+ * @param thresholdExceeded whether the value crossed its threshold
+ * @param thresholdValue the threshold, if any
+ */
+public record LiveMeasurement(
+        long stationKey,
+        int parameterCode,
+        long measurementMillis,
+        double value,
+        Measurement.QualityFlag qualityFlag,
+        boolean thresholdExceeded,
+        Double thresholdValue) {
+}
@@ -0,0 +1,610 @@
+package com.adeprogramming.javagis.service.environmental.live;
+
+import com.adeprogramming.javagis.payload.environmental.LiveMeasurementEvent;
+import com.adeprogramming.javagis.repository.environmental.MonitoringStationRepository;
+import com.adeprogramming.javagis.service.environmental.MeasurementParameterDictionary;
+import com.adeprogramming.javagis.service.environmental.MonitoringStationsChangedEvent;
+import com.adeprogramming.javagis.service.environmental.ingest.BoundedMpmcQueue;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.locationtech.jts.geom.Envelope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pushes freshly committed measurements to Server-Sent Events subscribers.
+ * <p>
+ * The ingest path only hands each committed batch to a bounded queue and never waits. A single
+ * dispatcher thread matches the measurements against the subscriptions, using an immutable routing
+ * snapshot indexed by station, and copies each match into the subscriber's own drop-oldest buffer,
+ * so a slow client only ever loses its own oldest events and never holds up ingest.
+ * <p>
+ * A small pool of sender threads writes the buffered events to the connections. A sender writes
+ * what one subscriber has buffered and then moves on, so a busy stream cannot keep a thread from
+ * the others. Writes block, so a client that stops reading holds its sender thread; once a write
+ * has been blocked longer than the write timeout, the stream gets no more events, a spare sender
+ * thread takes over from the blocked one until the container gives up on the write, and the stream
+ * is then completed with an error.
+ * <p>
+ * The dispatcher thread never touches the database. Station locations are loaded on a separate
+ * loader thread before the first stream opens and reloaded when stations change. A measurement
+ * of a station that is not cached yet, such as one created on another node, waits until the loader
+ * has looked it up and is then queued again.
+ */
+@Component
+public class LiveMeasurementDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(LiveMeasurementDispatcher.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int DRAIN_BATCHES = 64;
+    private static final long WATCHDOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    static final String SELECT_STATION_LOCATIONS =
+            "SELECT id, station_id, ST_X(ST_PointOnSurface(geometry)), ST_Y(ST_PointOnSurface(geometry)) " +
+            "FROM monitoring_stations";
+
+    static final String SELECT_STATION_LOCATION = SELECT_STATION_LOCATIONS + " WHERE id = ?";
+
+    private static final RowMapper<StationLocation> STATION_LOCATION_MAPPER = (rs, rowNum) ->
+            new StationLocation(rs.getLong(1), rs.getString(2), rs.getDouble(3), rs.getDouble(4));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MonitoringStationRepository monitoringStationRepository;
+    private final MeasurementParameterDictionary measurementParameterDictionary;
+    private final BoundedMpmcQueue<List<LiveMeasurement>> queue;
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final int senderThreads;
+    private final long timeoutMillis;
+    private final long heartbeatNanos;
+    private final long writeTimeoutNanos;
+    private final int maxSpareSenders;
+
+    private final Map<Long, StationLocation> stationLocations = new ConcurrentHashMap<>();
+    private final Map<Long, List<LiveMeasurement>> awaitingLocation = new ConcurrentHashMap<>();
+    private volatile boolean locationsLoaded;
+    private final List<LiveSubscriber> subscribers = new ArrayList<>();
+    private volatile Routing routing = Routing.EMPTY;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+    private final LongAdder droppedBatches = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    private ThreadPoolExecutor senders;
+    private ExecutorService stationLoader;
+    private int blockedSenders;
+    private Thread dispatcher;
+    private volatile boolean running;
+
+    @Autowired
+    public LiveMeasurementDispatcher(
+            JdbcTemplate jdbcTemplate,
+            MonitoringStationRepository monitoringStationRepository,
+            MeasurementParameterDictionary measurementParameterDictionary,
+            @Value("${measurements.live.queue-capacity:4096}") int queueCapacity,
+            @Value("${measurements.live.buffer-size:256}") int bufferSize,
+            @Value("${measurements.live.max-subscribers:10000}") int maxSubscribers,
+            @Value("${measurements.live.sender-threads:4}") int senderThreads,
+            @Value("${measurements.live.timeout:PT30M}") Duration timeout,
+            @Value("${measurements.live.heartbeat:PT20S}") Duration heartbeat,
+            @Value("${measurements.live.write-timeout:PT10S}") Duration writeTimeout,
+            @Value("${measurements.live.max-spare-senders:16}") int maxSpareSenders) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.monitoringStationRepository = monitoringStationRepository;
+        this.measurementParameterDictionary = measurementParameterDictionary;
+        this.queue = new BoundedMpmcQueue<>(queueCapacity);
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.senderThreads = senderThreads;
+        this.timeoutMillis = timeout.toMillis();
+        this.heartbeatNanos = heartbeat.toNanos();
+        this.writeTimeoutNanos = writeTimeout.toNanos();
+        this.maxSpareSenders = maxSpareSenders;
+    }
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadCount = new AtomicInteger();
+        senders = new ThreadPoolExecutor(senderThreads, senderThreads, 1, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "live-sender-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        stationLoader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "live-stations");
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        dispatcher = new Thread(this::dispatchLoop, "live-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Open a live stream.
+     *
+     * @param stationIds the business IDs of the stations to follow, empty for all
+     * @param parameterNames the parameter names to follow, empty for all
+     * @param bbox the area (WGS 84) to follow, or null for everywhere
+     * @param exceedancesOnly whether only threshold exceedances should be sent
+     * @return the stream, or empty if the subscriber limit has been reached
+     * @throws IllegalArgumentException if a station does not exist
+     */
+    public Optional<SseEmitter> subscribe(Collection<String> stationIds, Collection<String> parameterNames,
+                                          Envelope bbox, boolean exceedancesOnly) {
+        Set<Long> stationKeys = new HashSet<>();
+        for (String stationId : stationIds) {
+            Long stationKey = monitoringStationRepository.findIdByStationId(stationId)
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown station: " + stationId));
+            stationKeys.add(stationKey);
+        }
+        LiveSubscription subscription =
+                new LiveSubscription(stationKeys, Set.copyOf(parameterNames), bbox, exceedancesOnly);
+
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        if (!register(new LiveSubscriber(emitter, subscription, bufferSize))) {
+            return Optional.empty();
+        }
+        return Optional.of(emitter);
+    }
+
+    /**
+     * Start routing events to a subscriber, loading the station locations first if no stream
+     * has needed them yet.
+     *
+     * @return false if the subscriber limit has been reached
+     */
+    boolean register(LiveSubscriber subscriber) {
+        if (!locationsLoaded) {
+            awaitLoader(this::loadLocations);
+        }
+        synchronized (subscribers) {
+            if (subscribers.size() >= maxSubscribers) {
+                return false;
+            }
+            subscribers.add(subscriber);
+            routing = Routing.of(subscribers);
+        }
+        subscriber.emitter.onCompletion(() -> unsubscribe(subscriber));
+        subscriber.emitter.onTimeout(() -> unsubscribe(subscriber));
+        subscriber.emitter.onError(e -> unsubscribe(subscriber));
+        return true;
+    }
+
+    /**
+     * Hand over measurements that have just been committed. Never blocks; if the dispatcher
+     * has fallen far behind, the batch is dropped for live subscribers only.
+     *
+     * @param measurements the committed measurements
+     */
+    public void publish(List<LiveMeasurement> measurements) {
+        if (measurements.isEmpty()) {
+            return;
+        }
+        if (queue.offer(measurements)) {
+            published.add(measurements.size());
+        } else {
+            droppedBatches.increment();
+        }
+    }
+
+    /**
+     * @return true if at least one stream is open, so callers can skip building events otherwise
+     */
+    public boolean hasSubscribers() {
+        return routing.size() > 0;
+    }
+
+    /**
+     * @return counters describing the live streams
+     */
+    public LiveStats getStats() {
+        return new LiveStats(routing.size(), queue.size(), published.sum(), delivered.sum(),
+                overflowed.sum(), droppedBatches.sum(), evicted.sum());
+    }
+
+    /**
+     * Reload cached station locations when stations are added, moved, deactivated or removed.
+     * The reload runs on the loader thread, so it is ordered with the lookups already queued there.
+     *
+     * @param event the changed stations
+     */
+    @EventListener
+    public void onStationsChanged(MonitoringStationsChangedEvent event) {
+        Long stationKey = event.stationKey();
+        if (stationKey == null) {
+            stationLoader.execute(() -> {
+                locationsLoaded = false;
+                if (hasSubscribers()) {
+                    loadLocations();
+                } else {
+                    stationLocations.clear();
+                }
+            });
+        } else {
+            stationLoader.execute(() -> {
+                if (locationsLoaded) {
+                    loadLocation(stationKey);
+                } else {
+                    stationLocations.remove(stationKey);
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (dispatcher != null) {
+            dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        if (senders != null) {
+            senders.shutdownNow();
+        }
+        if (stationLoader != null) {
+            stationLoader.shutdownNow();
+        }
+        List<LiveSubscriber> open;
+        synchronized (subscribers) {
+            open = new ArrayList<>(subscribers);
+        }
+        for (LiveSubscriber subscriber : open) {
+            subscriber.emitter.complete();
+        }
+    }
+
+    private void unsubscribe(LiveSubscriber subscriber) {
+        synchronized (subscribers) {
+            if (subscribers.remove(subscriber)) {
+                routing = Routing.of(subscribers);
+            }
+        }
+    }
+
+    private void dispatchLoop() {
+        List<List<LiveMeasurement>> batches = new ArrayList<>(DRAIN_BATCHES);
+        long nextHeartbeat = System.nanoTime() + heartbeatNanos;
+        long nextWatchdog = System.nanoTime() + WATCHDOG_INTERVAL_NANOS;
+
+        while (running) {
+            if (System.nanoTime() - nextWatchdog >= 0) {
+                evictBlocked();
+                nextWatchdog = System.nanoTime() + WATCHDOG_INTERVAL_NANOS;
+            }
+            if (System.nanoTime() - nextHeartbeat >= 0) {
+                for (LiveSubscriber subscriber : routing.all()) {
+                    subscriber.requestHeartbeat();
+                    schedule(subscriber);
+                }
+                nextHeartbeat = System.nanoTime() + heartbeatNanos;
+            }
+
+            if (queue.drainTo(batches, DRAIN_BATCHES) == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            Routing current = routing;
+            for (List<LiveMeasurement> batch : batches) {
+                for (LiveMeasurement measurement : batch) {
+                    try {
+                        dispatch(current, measurement);
+                    } catch (RuntimeException e) {
+                        logger.warn("Could not dispatch live measurement of station {}: {}",
+                                measurement.stationKey(), e.getMessage());
+                    }
+                }
+            }
+            batches.clear();
+        }
+    }
+
+    private void dispatch(Routing current, LiveMeasurement measurement) {
+        LiveSubscriber[] byStation = current.byStation().getOrDefault(measurement.stationKey(), Routing.NONE);
+        if (byStation.length == 0 && current.unkeyed().length == 0) {
+            return;
+        }
+        StationLocation location = stationLocations.get(measurement.stationKey());
+        if (location == null) {
+            holdUntilLocated(measurement);
+            return;
+        }
+        MeasurementParameterDictionary.Entry parameter =
+                measurementParameterDictionary.decode(measurement.parameterCode());
+        String parameterName = parameter != null ? parameter.name() : null;
+
+        // Built on the first match and shared by all matching subscribers
+        LiveMeasurementEvent event = null;
+        for (LiveSubscriber[] candidates : new LiveSubscriber[][]{byStation, current.unkeyed()}) {
+            for (LiveSubscriber subscriber : candidates) {
+                if (!subscriber.subscription.matches(
+                        measurement, parameterName, location.longitude(), location.latitude())) {
+                    continue;
+                }
+                if (event == null) {
+                    event = toEvent(measurement, parameter, location);
+                }
+                if (subscriber.enqueue(event)) {
+                    overflowed.increment();
+                }
+                schedule(subscriber);
+            }
+        }
+    }
+
+    /**
+     * Keep a measurement of a station that is not cached until the loader thread has looked the
+     * station up. The first held measurement of a station queues the lookup; at most a buffer's
+     * worth is held per station.
+     */
+    private void holdUntilLocated(LiveMeasurement measurement) {
+        awaitingLocation.compute(measurement.stationKey(), (stationKey, held) -> {
+            if (held == null) {
+                held = new ArrayList<>();
+                stationLoader.execute(() -> releaseHeld(stationKey));
+            }
+            if (held.size() < bufferSize) {
+                held.add(measurement);
+            } else {
+                overflowed.increment();
+            }
+            return held;
+        });
+    }
+
+    /**
+     * Look up a station whose measurements are being held and queue them again, or drop them if
+     * the station no longer exists.
+     */
+    private void releaseHeld(long stationKey) {
+        StationLocation location = stationLocations.get(stationKey);
+        if (location == null) {
+            location = loadLocation(stationKey);
+        }
+        List<LiveMeasurement> held = awaitingLocation.remove(stationKey);
+        if (held != null && location != null && !queue.offer(held)) {
+            droppedBatches.increment();
+        }
+    }
+
+    /**
+     * Replace the cached locations with those of all stations. Runs on the loader thread.
+     */
+    private void loadLocations() {
+        try {
+            Map<Long, StationLocation> loaded = new HashMap<>();
+            for (StationLocation location : jdbcTemplate.query(SELECT_STATION_LOCATIONS, STATION_LOCATION_MAPPER)) {
+                loaded.put(location.stationKey(), location);
+            }
+            stationLocations.putAll(loaded);
+            stationLocations.keySet().retainAll(loaded.keySet());
+            locationsLoaded = true;
+        } catch (DataAccessException e) {
+            logger.warn("Could not load station locations: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reload the cached location of one station. Runs on the loader thread.
+     *
+     * @return the location, or null if the station does not exist or could not be looked up
+     */
+    private StationLocation loadLocation(long stationKey) {
+        try {
+            List<StationLocation> found =
+                    jdbcTemplate.query(SELECT_STATION_LOCATION, STATION_LOCATION_MAPPER, stationKey);
+            if (found.isEmpty()) {
+                stationLocations.remove(stationKey);
+                return null;
+            }
+            stationLocations.put(stationKey, found.get(0));
+            return found.get(0);
+        } catch (DataAccessException e) {
+            logger.warn("Could not locate station {}: {}", stationKey, e.getMessage());
+            return null;
+        }
+    }
+
+    private void awaitLoader(Runnable task) {
+        try {
+            stationLoader.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.warn("Could not load station locations: {}", e.getCause().getMessage());
+        }
+    }
+
+    private static LiveMeasurementEvent toEvent(LiveMeasurement measurement,
+                                                MeasurementParameterDictionary.Entry parameter,
+                                                StationLocation location) {
+        return LiveMeasurementEvent.builder()
+                .stationId(location.stationId())
+                .longitude(location.longitude())
+                .latitude(location.latitude())
+                .parameterName(parameter != null ? parameter.name() : null)
+                .unit(parameter != null ? parameter.unit() : null)
+                .value(measurement.value())
+                .measurementTime(LocalDateTime.ofInstant(
+                        Instant.ofEpochMilli(measurement.measurementMillis()), ZoneOffset.UTC).toString())
+                .qualityFlag(measurement.qualityFlag().name())
+                .thresholdExceeded(measurement.thresholdExceeded())
+                .thresholdValue(measurement.thresholdValue())
+                .build();
+    }
+
+    private void schedule(LiveSubscriber subscriber) {
+        if (subscriber.scheduled.compareAndSet(false, true)) {
+            senders.execute(() -> send(subscriber));
+        }
+    }
+
+    /**
+     * Write what is buffered for a subscriber, then release it. Anything buffered meanwhile is
+     * written on a later turn, after the subscribers already waiting for a sender.
+     */
+    private void send(LiveSubscriber subscriber) {
+        List<LiveMeasurementEvent> events = new ArrayList<>();
+        LiveSubscriber.Pending pending = subscriber.drainTo(events);
+        boolean failed = false;
+        subscriber.startSend();
+        try {
+            if (pending.dropped() > 0) {
+                subscriber.emitter.send(SseEmitter.event()
+                        .name("overflow")
+                        .data(Map.of("dropped", pending.dropped()), MediaType.APPLICATION_JSON));
+            }
+            for (LiveMeasurementEvent event : events) {
+                subscriber.emitter.send(SseEmitter.event()
+                        .name(event.isThresholdExceeded() ? "exceedance" : "measurement")
+                        .data(event, MediaType.APPLICATION_JSON));
+            }
+            if (pending.heartbeat() && events.isEmpty()) {
+                subscriber.emitter.send(SseEmitter.event().comment("keepalive"));
+            }
+            delivered.add(events.size());
+        } catch (IOException | IllegalStateException e) {
+            // The client went away; the container reports the error and completes the emitter
+            failed = true;
+        }
+
+        // A subscriber that failed or was evicted stays scheduled, so it is never sent to again
+        if (subscriber.finishSend()) {
+            resizeSenders(-1);
+            if (!failed) {
+                subscriber.emitter.completeWithError(new IOException("Live stream write timed out"));
+            }
+            return;
+        }
+        if (failed) {
+            unsubscribe(subscriber);
+            return;
+        }
+        subscriber.scheduled.set(false);
+        // An event may have arrived between the drain and the release
+        if (subscriber.hasPending()) {
+            schedule(subscriber);
+        }
+    }
+
+    /**
+     * Stop routing events to streams whose current write has been blocked longer than the write
+     * timeout, and add a spare sender thread for each while it stays blocked, so the other streams
+     * keep their senders. The emitter is not completed here, as that would wait for the blocked write.
+     */
+    private void evictBlocked() {
+        long deadline = System.nanoTime() - writeTimeoutNanos;
+        for (LiveSubscriber subscriber : routing.all()) {
+            if (subscriber.evictIfBlockedSince(deadline)) {
+                unsubscribe(subscriber);
+                evicted.increment();
+                logger.warn("Evicting live stream blocked in a write for more than {} ms",
+                        TimeUnit.NANOSECONDS.toMillis(writeTimeoutNanos));
+                resizeSenders(1);
+            }
+        }
+    }
+
+    /**
+     * Track the number of evicted streams still blocking a sender thread, keeping
+     * {@code max-spare-senders} extra threads at most.
+     */
+    private synchronized void resizeSenders(int change) {
+        blockedSenders += change;
+        int size = senderThreads + Math.min(blockedSenders, maxSpareSenders);
+        if (size > senders.getCorePoolSize()) {
+            senders.setMaximumPoolSize(size);
+            senders.setCorePoolSize(size);
+        } else if (size < senders.getCorePoolSize()) {
+            senders.setCorePoolSize(size);
+            senders.setMaximumPoolSize(size);
+        }
+    }
+
+    record StationLocation(long stationKey, String stationId, double longitude, double latitude) {
+    }
+
+    /**
+     * Immutable view of the open subscriptions, replaced on every subscribe and unsubscribe.
+     * Subscribers following specific stations are indexed by station key; all others are
+     * checked for every measurement.
+     */
+    private record Routing(Map<Long, LiveSubscriber[]> byStation, LiveSubscriber[] unkeyed, LiveSubscriber[] all) {
+
+        static final LiveSubscriber[] NONE = new LiveSubscriber[0];
+        static final Routing EMPTY = new Routing(Map.of(), NONE, NONE);
+
+        static Routing of(List<LiveSubscriber> subscribers) {
+            Map<Long, List<LiveSubscriber>> byStation = new HashMap<>();
+            List<LiveSubscriber> unkeyed = new ArrayList<>();
+            for (LiveSubscriber subscriber : subscribers) {
+                Set<Long> stationKeys = subscriber.subscription.stationKeys();
+                if (stationKeys.isEmpty()) {
+                    unkeyed.add(subscriber);
+                }
+                for (Long stationKey : stationKeys) {
+                    byStation.computeIfAbsent(stationKey, key -> new ArrayList<>()).add(subscriber);
+                }
+            }
+            Map<Long, LiveSubscriber[]> index = new HashMap<>(byStation.size() * 2);
+            byStation.forEach((stationKey, list) -> index.put(stationKey, list.toArray(NONE)));
+            return new Routing(index, unkeyed.toArray(NONE), subscribers.toArray(NONE));
+        }
+
+        int size() {
+            return all.length;
+        }
+    }
+
+    /**
+     * Live stream counters since startup.
+     *
+     * @param subscribers the number of open streams
+     * @param queued the number of committed batches waiting for the dispatcher
+     * @param published the number of measurements handed over by ingest
+     * @param delivered the number of events written to streams
+     * @param overflowed the number of events dropped from full subscriber buffers
+     * @param droppedBatches the number of batches dropped because the dispatcher queue was full
+     * @param evicted the number of streams dropped because a write stayed blocked
+     */
+    public record LiveStats(int subscribers, int queued, long published, long delivered,
+                            long overflowed, long droppedBatches, long evicted) {
+    }
+}
@@ -0,0 +1,140 @@
+package com.adeprogramming.javagis.service.environmental.live;
+
+import com.adeprogramming.javagis.payload.environmental.LiveMeasurementEvent;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One open live stream. Events wait in a small ring buffer until a sender thread writes them
+ * to the connection; when a slow client lets the buffer fill up, the oldest events are dropped
+ * and the client is told how many it missed. The buffer grows with the backlog up to its
+ * capacity and is released whenever a sender drains it, so a connection without events
+ * waiting costs a few dozen bytes, whether or not events arrived before.
+ */
+final class LiveSubscriber {
+
+    private static final int INITIAL_SIZE = 8;
+
+    final SseEmitter emitter;
+    final LiveSubscription subscription;
+
+    /**
+     * Set while a sender task owns this subscriber, so at most one thread writes to the connection.
+     */
+    final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final int capacity;
+    private LiveMeasurementEvent[] ring;
+    private int head;
+    private int count;
+    private long dropped;
+    private boolean heartbeatDue;
+    private long sendStartedNanos;
+    private boolean evicted;
+
+    LiveSubscriber(SseEmitter emitter, LiveSubscription subscription, int capacity) {
+        this.emitter = emitter;
+        this.subscription = subscription;
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return true if the oldest buffered event had to be dropped to make room
+     */
+    synchronized boolean enqueue(LiveMeasurementEvent event) {
+        if (ring == null) {
+            ring = new LiveMeasurementEvent[Math.min(INITIAL_SIZE, capacity)];
+        } else if (count == ring.length && ring.length < capacity) {
+            grow();
+        }
+        boolean overflow = count == capacity;
+        if (overflow) {
+            ring[head] = null;
+            head = (head + 1) % capacity;
+            count--;
+            dropped++;
+        }
+        ring[(head + count) % ring.length] = event;
+        count++;
+        return overflow;
+    }
+
+    private void grow() {
+        LiveMeasurementEvent[] grown = new LiveMeasurementEvent[Math.min(capacity, ring.length * 2)];
+        for (int i = 0; i < count; i++) {
+            grown[i] = ring[(head + i) % ring.length];
+        }
+        ring = grown;
+        head = 0;
+    }
+
+    synchronized void requestHeartbeat() {
+        heartbeatDue = true;
+    }
+
+    /**
+     * Move the buffered events to the target list and reset the pending state.
+     *
+     * @return what has to be sent besides the events
+     */
+    synchronized Pending drainTo(List<LiveMeasurementEvent> target) {
+        for (int i = 0; i < count; i++) {
+            target.add(ring[(head + i) % ring.length]);
+        }
+        ring = null;
+        head = 0;
+        count = 0;
+        Pending pending = new Pending(dropped, heartbeatDue);
+        dropped = 0;
+        heartbeatDue = false;
+        return pending;
+    }
+
+    /**
+     * @return the number of buffer slots currently allocated
+     */
+    synchronized int allocated() {
+        return ring != null ? ring.length : 0;
+    }
+
+    synchronized boolean hasPending() {
+        return count > 0 || dropped > 0 || heartbeatDue;
+    }
+
+    synchronized void startSend() {
+        sendStartedNanos = System.nanoTime();
+    }
+
+    /**
+     * Mark the current write to the connection as finished.
+     *
+     * @return true if the stream was evicted while writing
+     */
+    synchronized boolean finishSend() {
+        sendStartedNanos = 0;
+        return evicted;
+    }
+
+    /**
+     * Evict the stream if its current write started before a deadline.
+     *
+     * @param deadlineNanos the {@link System#nanoTime()} before which the write must have finished
+     * @return true if the stream was evicted by this call
+     */
+    synchronized boolean evictIfBlockedSince(long deadlineNanos) {
+        if (evicted || sendStartedNanos == 0 || sendStartedNanos - deadlineNanos > 0) {
+            return false;
+        }
+        evicted = true;
+        return true;
+    }
+
+    /**
+     * @param dropped the number of events dropped since the last drain
+     * @param heartbeat whether a keep-alive is due
+     */
+    record Pending(long dropped, boolean heartbeat) {
+    }
+}
@@ -0,0 +1,29 @@
+package com.adeprogramming.javagis.service.environmental.live;
+
+import org.locationtech.jts.geom.Envelope;
+
+import java.util.Set;
+
+/**
+ * What a live stream subscriber wants to receive. Every criterion left empty matches everything.
+ *
+ * @param stationKeys the primary keys of the stations to follow
+ * @param parameterNames the parameter names to follow
+ * @param bbox the area (WGS 84) the stations must lie in
+ * @param exceedancesOnly whether only threshold exceedances are wanted
+ */
+record LiveSubscription(Set<Long> stationKeys, Set<String> parameterNames, Envelope bbox, boolean exceedancesOnly) {
+
+    boolean matches(LiveMeasurement measurement, String parameterName, double longitude, double latitude) {
+        if (exceedancesOnly && !measurement.thresholdExceeded()) {
+            return false;
+        }
+        if (!stationKeys.isEmpty() && !stationKeys.contains(measurement.stationKey())) {
+            return false;
+        }
+        if (!parameterNames.isEmpty() && !parameterNames.contains(parameterName)) {
+            return false;
+        }
+        return bbox == null || bbox.contains(longitude, latitude);
+    }
+}
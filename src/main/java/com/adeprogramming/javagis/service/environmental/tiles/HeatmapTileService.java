@@ -0,0 +1,195 @@
+package com.adeprogramming.javagis.service.environmental.tiles;
+
+import com.adeprogramming.javagis.analytics.interpolation.SamplePoints;
+import com.adeprogramming.javagis.raster.ColourRamp;
+import com.adeprogramming.javagis.raster.GridSpec;
+import com.adeprogramming.javagis.raster.PngEncoder;
+import com.adeprogramming.javagis.service.environmental.BucketCache;
+import com.adeprogramming.javagis.service.environmental.MeasurementSurfaceService;
+import com.adeprogramming.javagis.service.environmental.MeasurementsCommittedEvent;
+import com.adeprogramming.javagis.service.environmental.live.LiveMeasurement;
+import com.adeprogramming.javagis.service.spatial.CoordinateTransformService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * Service for XYZ heatmap tiles of interpolated measurements, in Web Mercator (EPSG:3857) or on
+ * the European ETRS89-LAEA grid (EPSG:3035), see {@link TileMatrixSet}.
+ * Each tile is interpolated only over its own extent, from the stations within the search radius
+ * of it, so the work per tile does not depend on how much of the map is being viewed. Tiles use
+ * IDW only: its estimate at a point depends only on the stations around it, so neighbouring
+ * tiles rendered separately meet without seams.
+ * <p>
+ * Time is divided into buckets; a tile shows the latest reading of every station within the
+ * bucket and is cached per (parameter, bucket, tile matrix set, z/x/y, ramp). Station readings
+ * are projected once per bucket and tile matrix set. When new readings are committed for a
+ * bucket, its tiles and station readings are dropped from the cache.
+ */
+@Service
+public class HeatmapTileService {
+
+    public static final int TILE_SIZE = 256;
+    public static final int MAX_ZOOM = 22;
+
+    private final MeasurementSurfaceService measurementSurfaceService;
+    private final BucketCache<TileKey> cache;
+    private final long bucketMillis;
+    private final int neighbours;
+    private final double maxDistance;
+    private final double power;
+    private final ColourRamp defaultRamp;
+    private final byte[] emptyTile;
+
+    private final ThreadLocal<Canvas> canvas = ThreadLocal.withInitial(Canvas::new);
+
+    @Autowired
+    public HeatmapTileService(
+            MeasurementSurfaceService measurementSurfaceService,
+            @Value("${measurements.tiles.bucket:PT1H}") Duration bucket,
+            @Value("${measurements.tiles.cache-size:64MB}") DataSize cacheSize,
+            @Value("${measurements.tiles.max-buckets:256}") int maxBuckets,
+            @Value("${measurements.tiles.neighbours:12}") int neighbours,
+            @Value("${measurements.tiles.max-distance:50000}") double maxDistance,
+            @Value("${measurements.tiles.power:2}") double power,
+            @Value("${measurements.tiles.default-ramp:0:2c7bb6,25:abd9e9,50:ffffbf,75:fdae61,100:d7191c}") String defaultRamp) {
+        this.measurementSurfaceService = measurementSurfaceService;
+        this.cache = new BucketCache<>(cacheSize.toBytes(), maxBuckets);
+        this.bucketMillis = bucket.toMillis();
+        this.neighbours = neighbours;
+        this.maxDistance = maxDistance;
+        this.power = power;
+        this.defaultRamp = ColourRamp.parse(defaultRamp);
+        PngEncoder encoder = new PngEncoder(Deflater.BEST_COMPRESSION);
+        this.emptyTile = encoder.encode(new int[TILE_SIZE * TILE_SIZE], TILE_SIZE, TILE_SIZE);
+        encoder.close();
+    }
+
+    /**
+     * Get a heatmap tile, rendering it if it is not cached.
+     *
+     * @param parameterCode the catalog code of the parameter
+     * @param time a time within the bucket to show
+     * @param tileMatrixSet the tile matrix set
+     * @param z the zoom level
+     * @param x the tile column
+     * @param y the tile row, from the north
+     * @param ramp the colour ramp definition, or null for the default
+     * @return the PNG tile
+     * @throws IllegalArgumentException if the tile does not exist or the ramp is malformed
+     */
+    public byte[] getTile(int parameterCode, LocalDateTime time, TileMatrixSet tileMatrixSet,
+                          int z, int x, int y, String ramp) {
+        if (z < 0 || z > MAX_ZOOM || x < 0 || y < 0 || x >= 1 << z || y >= 1 << z) {
+            throw new IllegalArgumentException("There is no tile " + z + "/" + x + "/" + y);
+        }
+        String rampSpec = ramp != null ? ramp : defaultRamp.getSpec();
+        BucketCache.BucketKey bucketKey = BucketCache.BucketKey.of(parameterCode,
+                time.toInstant(ZoneOffset.UTC).toEpochMilli(), bucketMillis);
+        TileKey tileKey = new TileKey(tileMatrixSet, z, x, y, rampSpec);
+
+        byte[] tile = cache.get(bucketKey, tileKey);
+        if (tile != null) {
+            return tile;
+        }
+        ColourRamp colourRamp = ramp != null ? ColourRamp.parse(ramp) : defaultRamp;
+
+        BucketCache.Bucket bucket = cache.bucket(bucketKey);
+        SamplePoints samples = bucket.getSamples(tileMatrixSet.getEpsg());
+        if (samples == null) {
+            SamplePoints wgs84 = bucket.getSamples(CoordinateTransformService.WGS84);
+            if (wgs84 == null) {
+                LocalDateTime end = LocalDateTime.ofInstant(Instant.ofEpochMilli(bucketKey.bucketEnd()), ZoneOffset.UTC);
+                wgs84 = measurementSurfaceService.latestReadings(parameterCode, end, Duration.ofMillis(bucketMillis));
+                bucket.setSamples(CoordinateTransformService.WGS84, wgs84);
+            }
+            samples = measurementSurfaceService.project(wgs84, CoordinateTransformService.WGS84,
+                    tileMatrixSet.getEpsg());
+            bucket.setSamples(tileMatrixSet.getEpsg(), samples);
+        }
+
+        tile = render(samples, tileMatrixSet, z, x, y, colourRamp);
+        cache.put(bucket, tileKey, tile);
+        return tile;
+    }
+
+    /**
+     * @return tile cache counters
+     */
+    public BucketCache.Stats getStats() {
+        return cache.getStats();
+    }
+
+    @EventListener
+    public void onMeasurementsCommitted(MeasurementsCommittedEvent event) {
+        Set<BucketCache.BucketKey> touched = new HashSet<>();
+        for (LiveMeasurement measurement : event.measurements()) {
+            touched.add(BucketCache.BucketKey.of(
+                    measurement.parameterCode(), measurement.measurementMillis(), bucketMillis));
+        }
+        for (BucketCache.BucketKey key : touched) {
+            cache.invalidate(key);
+        }
+    }
+
+    private byte[] render(SamplePoints samples, TileMatrixSet tileMatrixSet, int z, int x, int y, ColourRamp ramp) {
+        double span = tileMatrixSet.tileSpan(z);
+        double minX = tileMatrixSet.getMinX() + x * span;
+        double maxY = tileMatrixSet.getMaxY() - y * span;
+        double radius = maxDistance * tileMatrixSet.scaleFactor(maxY - span / 2);
+
+        SamplePoints nearby = within(samples, minX - radius, maxY - span - radius,
+                minX + span + radius, maxY + radius);
+        if (nearby.size() == 0) {
+            return emptyTile;
+        }
+
+        Canvas target = canvas.get();
+        GridSpec grid = new GridSpec(minX, maxY, span / TILE_SIZE, TILE_SIZE, TILE_SIZE, tileMatrixSet.getEpsg());
+        measurementSurfaceService.interpolate(nearby, grid, target.values, neighbours, radius, power);
+        ramp.apply(target.values, target.argb, target.values.length);
+        return target.encoder.encode(target.argb, TILE_SIZE, TILE_SIZE);
+    }
+
+    private static SamplePoints within(SamplePoints samples, double minX, double minY, double maxX, double maxY) {
+        int size = samples.size();
+        double[] xs = new double[size];
+        double[] ys = new double[size];
+        double[] values = new double[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            double px = samples.xs()[i];
+            double py = samples.ys()[i];
+            if (px >= minX && px <= maxX && py >= minY && py <= maxY) {
+                xs[count] = px;
+                ys[count] = py;
+                values[count++] = samples.values()[i];
+            }
+        }
+        return new SamplePoints(Arrays.copyOf(xs, count), Arrays.copyOf(ys, count), Arrays.copyOf(values, count));
+    }
+
+    private record TileKey(TileMatrixSet tileMatrixSet, int z, int x, int y, String ramp) {
+    }
+
+    /**
+     * Per-thread buffers a tile is rendered into, reused across tiles.
+     */
+    private static final class Canvas {
+
+        final double[] values = new double[TILE_SIZE * TILE_SIZE];
+        final int[] argb = new int[TILE_SIZE * TILE_SIZE];
+        final PngEncoder encoder = new PngEncoder(Deflater.BEST_SPEED);
+    }
+}
@@ -0,0 +1,88 @@
+package com.adeprogramming.javagis.service.environmental.tiles;
+
+import java.util.Locale;
+
+/**
+ * The tile matrix sets heatmap tiles can be rendered in. Each is a square at zoom 0, split in
+ * two along both axes at every further zoom level, with rows numbered from the north.
+ */
+public enum TileMatrixSet {
+
+    /** The XYZ grid of web maps, in Web Mercator (EPSG:3857). */
+    WEB_MERCATOR_QUAD(3857, -Math.PI * 6378137.0, Math.PI * 6378137.0, 2 * Math.PI * 6378137.0) {
+        @Override
+        double scaleFactor(double y) {
+            // Web Mercator stretches distances by 1 / cos(latitude)
+            return 1 / Math.cos(Math.atan(Math.sinh(y / 6378137.0)));
+        }
+    },
+
+    /** The OGC EuropeanETRS89_LAEAQuad grid, in ETRS89-LAEA (EPSG:3035). */
+    EUROPEAN_ETRS89_LAEA_QUAD(3035, 2_000_000, 5_500_000, 4_500_000) {
+        @Override
+        double scaleFactor(double y) {
+            return 1;
+        }
+    };
+
+    private final int epsg;
+    private final double minX;
+    private final double maxY;
+    private final double span;
+
+    TileMatrixSet(int epsg, double minX, double maxY, double span) {
+        this.epsg = epsg;
+        this.minX = minX;
+        this.maxY = maxY;
+        this.span = span;
+    }
+
+    /**
+     * Get the tile matrix set of a CRS.
+     *
+     * @param epsg the EPSG code of the CRS
+     * @return the tile matrix set
+     * @throws IllegalArgumentException if tiles are not available in the CRS
+     */
+    public static TileMatrixSet of(int epsg) {
+        for (TileMatrixSet set : values()) {
+            if (set.epsg == epsg) {
+                return set;
+            }
+        }
+        throw new IllegalArgumentException(String.format(Locale.ROOT,
+                "Tiles are not available in EPSG:%d, only in EPSG:3857 and EPSG:3035", epsg));
+    }
+
+    public int getEpsg() {
+        return epsg;
+    }
+
+    /**
+     * @return the west edge of the zoom 0 tile, in CRS units
+     */
+    public double getMinX() {
+        return minX;
+    }
+
+    /**
+     * @return the north edge of the zoom 0 tile, in CRS units
+     */
+    public double getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * @param z the zoom level
+     * @return the width and height of a tile at the zoom level, in CRS units
+     */
+    public double tileSpan(int z) {
+        return span / (1 << z);
+    }
+
+    /**
+     * Get how much the projection stretches distances on the ground at a northing, to scale
+     * search radii given in metres.
+     */
+    abstract double scaleFactor(double y);
+}
@@ -0,0 +1,455 @@
+package com.adeprogramming.javagis.service.satellite;
+
+import com.adeprogramming.javagis.analytics.zonal.ZonalStatistics;
+import com.adeprogramming.javagis.model.agricultural.AgriculturalField;
+import com.adeprogramming.javagis.model.satellite.FieldChange;
+import com.adeprogramming.javagis.model.satellite.SatelliteScene;
+import com.adeprogramming.javagis.model.satellite.SceneChange;
+import com.adeprogramming.javagis.payload.satellite.FieldChangeResponse;
+import com.adeprogramming.javagis.payload.satellite.SceneChangeResponse;
+import com.adeprogramming.javagis.raster.CogWriter;
+import com.adeprogramming.javagis.raster.GeoTiffReader;
+import com.adeprogramming.javagis.raster.SampleType;
+import com.adeprogramming.javagis.repository.agricultural.AgriculturalFieldRepository;
+import com.adeprogramming.javagis.repository.satellite.FieldChangeRepository;
+import com.adeprogramming.javagis.repository.satellite.SatelliteSceneRepository;
+import com.adeprogramming.javagis.repository.satellite.SceneChangeRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Service for the NDVI change between two co-registered satellite scenes.
+ * <p>
+ * A change is computed in the background. The difference raster, NDVI after minus NDVI before,
+ * is computed tile by tile on the tile grid of the earlier scene: workers take the next tile,
+ * each reading both scenes through readers of its own, while the coordinating thread collects
+ * the tiles of each row in order and streams the row into a cloud-optimised GeoTIFF. At most
+ * one row of tiles plus one tile per worker is held in memory, whatever the size of the scenes.
+ * The mean change of every field in the scenes is then measured on the difference raster, and
+ * fields that lost at least the threshold are flagged.
+ */
+@Service
+public class ChangeDetectionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeDetectionService.class);
+
+    /** The range of an NDVI difference. */
+    private static final double CHANGE_MIN = -2;
+    private static final double CHANGE_MAX = 2;
+    private static final int HISTOGRAM_BINS = 40;
+
+    private static final String GDAL_METADATA = "<GDALMetadata>\n"
+            + "  <Item name=\"DESCRIPTION\" sample=\"0\" role=\"description\">ndvi_change</Item>\n"
+            + "</GDALMetadata>";
+
+    private final SatelliteSceneRepository satelliteSceneRepository;
+    private final SceneChangeRepository sceneChangeRepository;
+    private final FieldChangeRepository fieldChangeRepository;
+    private final AgriculturalFieldRepository agriculturalFieldRepository;
+    private final SatelliteSceneService satelliteSceneService;
+    private final ZonalStatisticsService zonalStatisticsService;
+    private final TransactionTemplate transactionTemplate;
+    private final Path cogDirectory;
+    private final boolean deflate;
+    private final double defaultThreshold;
+    private final int parallelism;
+    private final ExecutorService coordinator;
+    private final ExecutorService workers;
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public ChangeDetectionService(
+            SatelliteSceneRepository satelliteSceneRepository,
+            SceneChangeRepository sceneChangeRepository,
+            FieldChangeRepository fieldChangeRepository,
+            AgriculturalFieldRepository agriculturalFieldRepository,
+            SatelliteSceneService satelliteSceneService,
+            ZonalStatisticsService zonalStatisticsService,
+            PlatformTransactionManager transactionManager,
+            @Value("${satellite.cog.dir:./data/satellite/cog}") Path cogDirectory,
+            @Value("${satellite.cog.deflate:true}") boolean deflate,
+            @Value("${satellite.change.threshold:0.15}") double defaultThreshold,
+            @Value("${satellite.change.parallelism:0}") int parallelism) {
+        this.satelliteSceneRepository = satelliteSceneRepository;
+        this.sceneChangeRepository = sceneChangeRepository;
+        this.fieldChangeRepository = fieldChangeRepository;
+        this.agriculturalFieldRepository = agriculturalFieldRepository;
+        this.satelliteSceneService = satelliteSceneService;
+        this.zonalStatisticsService = zonalStatisticsService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.cogDirectory = cogDirectory.toAbsolutePath().normalize();
+        this.deflate = deflate;
+        this.defaultThreshold = defaultThreshold;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+
+        this.coordinator = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ndvi-change");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(this.parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "ndvi-change-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start computing the change between two scenes, replacing an earlier change between them.
+     *
+     * @param beforeSceneId the ID of the earlier scene
+     * @param afterSceneId the ID of the later scene
+     * @param threshold the NDVI loss at which a field is flagged, the configured default if null
+     * @return the change, processing
+     * @throws IllegalArgumentException if either scene is not ready, they are not co-registered,
+     * either has no red or near-infrared band, or the change is already being computed
+     */
+    public SceneChangeResponse start(String beforeSceneId, String afterSceneId, Double threshold) {
+        double loss = threshold != null ? threshold : defaultThreshold;
+        if (!(loss > 0 && loss <= CHANGE_MAX)) {
+            throw new IllegalArgumentException("The threshold must be above 0 and at most " + CHANGE_MAX);
+        }
+        if (beforeSceneId.equals(afterSceneId)) {
+            throw new IllegalArgumentException("The scenes must differ");
+        }
+        SatelliteScene before = readyScene(beforeSceneId);
+        SatelliteScene after = readyScene(afterSceneId);
+        SceneMetadata beforeMetadata = satelliteSceneService.getMetadata(before);
+        SceneMetadata afterMetadata = satelliteSceneService.getMetadata(after);
+        RasterGrid beforeGrid = RasterGrid.of(before, beforeMetadata);
+        RasterGrid afterGrid = RasterGrid.of(after, afterMetadata);
+        if (!beforeGrid.isAlignedWith(afterGrid)) {
+            throw new IllegalArgumentException("Scenes " + beforeSceneId + " and " + afterSceneId
+                    + " are not co-registered");
+        }
+        // Both scenes need the bands of an NDVI
+        NdviBands.of(beforeSceneId, beforeMetadata.bands(), beforeGrid.sampleType(), before.getNoData());
+        NdviBands.of(afterSceneId, afterMetadata.bands(), afterGrid.sampleType(), after.getNoData());
+
+        String key = beforeSceneId + "/" + afterSceneId;
+        if (!running.add(key)) {
+            throw new IllegalArgumentException("The change from " + beforeSceneId + " to " + afterSceneId
+                    + " is already being computed");
+        }
+        SceneChange change;
+        try {
+            change = sceneChangeRepository.findByBeforeSceneAndAfterScene(before, after).orElseGet(SceneChange::new);
+            change.setBeforeScene(before);
+            change.setAfterScene(after);
+            change.setThreshold(loss);
+            change.setStatus(SatelliteScene.SceneStatus.PROCESSING);
+            change.setFieldCount(null);
+            change.setFlaggedCount(null);
+            change.setError(null);
+            change = sceneChangeRepository.save(change);
+        } catch (RuntimeException e) {
+            running.remove(key);
+            throw e;
+        }
+
+        Long id = change.getId();
+        coordinator.execute(() -> {
+            try {
+                compute(id);
+            } finally {
+                running.remove(key);
+            }
+        });
+        return toResponse(change, null);
+    }
+
+    /**
+     * @return all changes, newest first
+     */
+    public List<SceneChangeResponse> getChanges() {
+        return sceneChangeRepository.findAllWithScenes().stream()
+                .map(change -> toResponse(change, null))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param id the ID of the change
+     * @param flaggedOnly whether to list only the flagged fields
+     * @return the change with its fields, largest loss first; empty if there is no such change
+     */
+    public Optional<SceneChangeResponse> getChange(Long id, boolean flaggedOnly) {
+        return sceneChangeRepository.findWithScenes(id).map(change -> toResponse(change,
+                fieldChangeRepository.findForChange(id).stream()
+                        .filter(fieldChange -> !flaggedOnly || fieldChange.getFlagged())
+                        .map(ChangeDetectionService::toResponse)
+                        .collect(Collectors.toList())));
+    }
+
+    /**
+     * @param id the ID of the change
+     * @return the cloud-optimised GeoTIFF of the change, empty if there is no such computed change
+     */
+    public Optional<Path> getCogFile(Long id) {
+        return sceneChangeRepository.findById(id)
+                .filter(change -> change.getStatus() == SatelliteScene.SceneStatus.READY && change.getCogPath() != null)
+                .map(change -> Path.of(change.getCogPath()));
+    }
+
+    /**
+     * @param scene a scene
+     * @return the computed changes from earlier scenes to this one, with their earlier scenes
+     */
+    public List<SceneChange> getChangesTo(SatelliteScene scene) {
+        return sceneChangeRepository.findForAfterScene(scene.getId(), SatelliteScene.SceneStatus.READY);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private SatelliteScene readyScene(String sceneId) {
+        return satelliteSceneRepository.findBySceneId(sceneId)
+                .filter(scene -> scene.getStatus() == SatelliteScene.SceneStatus.READY)
+                .orElseThrow(() -> new IllegalArgumentException("No ready scene " + sceneId));
+    }
+
+    private void compute(Long id) {
+        SceneChange change = sceneChangeRepository.findWithScenes(id).orElse(null);
+        if (change == null) {
+            return;
+        }
+        SatelliteScene before = change.getBeforeScene();
+        SatelliteScene after = change.getAfterScene();
+        Path cog = cogDirectory.resolve("change-" + before.getSceneId() + "-" + after.getSceneId() + ".tif");
+        Path partial = cogDirectory.resolve(cog.getFileName() + ".partial");
+        long started = System.nanoTime();
+        try {
+            Files.createDirectories(cogDirectory);
+            SceneMetadata beforeMetadata = satelliteSceneService.getMetadata(before);
+            SceneMetadata afterMetadata = satelliteSceneService.getMetadata(after);
+            RasterGrid beforeGrid = RasterGrid.of(before, beforeMetadata);
+            RasterGrid afterGrid = RasterGrid.of(after, afterMetadata);
+            int overviews = writeDifference(
+                    Path.of(before.getCogPath()), beforeGrid,
+                    NdviBands.of(before.getSceneId(), beforeMetadata.bands(), beforeGrid.sampleType(), before.getNoData()),
+                    Path.of(after.getCogPath()), afterGrid,
+                    NdviBands.of(after.getSceneId(), afterMetadata.bands(), afterGrid.sampleType(), after.getNoData()),
+                    partial);
+            Files.move(partial, cog, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            List<AgriculturalField> fields = agriculturalFieldRepository.findIntersectingGeometry(after.getGeometry());
+            RasterGrid changeGrid = RasterGrid.of(beforeGrid.epsg(), beforeGrid.transform(),
+                    beforeGrid.width(), beforeGrid.height(), 1, SampleType.FLOAT32);
+            ZonalStatisticsService.ZonalResult result = zonalStatisticsService.measure(cog, changeGrid, fields,
+                    ByteBuffer::getFloat, () -> new ZonalStatistics(CHANGE_MIN, CHANGE_MAX, HISTOGRAM_BINS));
+            List<FieldChange> fieldChanges = new ArrayList<>();
+            for (int i = 0; i < fields.size(); i++) {
+                if (result.zones()[i] != null) {
+                    fieldChanges.add(toEntity(change, fields.get(i), result.zones()[i]));
+                }
+            }
+
+            change.setStatus(SatelliteScene.SceneStatus.READY);
+            change.setCogPath(cog.toString());
+            change.setCogSize(Files.size(cog));
+            change.setOverviewCount(overviews);
+            change.setFieldCount(fieldChanges.size());
+            change.setFlaggedCount((int) fieldChanges.stream().filter(FieldChange::getFlagged).count());
+            transactionTemplate.executeWithoutResult(status -> {
+                fieldChangeRepository.deleteForChange(id);
+                fieldChangeRepository.saveAll(fieldChanges);
+                sceneChangeRepository.save(change);
+            });
+            logger.info("Computed the NDVI change from {} to {} in {} ms, {} of {} fields flagged",
+                    before.getSceneId(), after.getSceneId(), (System.nanoTime() - started) / 1_000_000,
+                    change.getFlaggedCount(), change.getFieldCount());
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not compute the NDVI change from {} to {}", before.getSceneId(), after.getSceneId(), e);
+            change.setStatus(SatelliteScene.SceneStatus.FAILED);
+            String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            change.setError(message.length() > 1000 ? message.substring(0, 1000) : message);
+            try {
+                Files.deleteIfExists(partial);
+            } catch (IOException deleteFailure) {
+                logger.warn("Could not delete {}", partial, deleteFailure);
+            }
+            sceneChangeRepository.save(change);
+        }
+    }
+
+    /**
+     * Write the NDVI difference of two aligned scenes as a single-band float COG, on the tile
+     * grid of the earlier scene.
+     *
+     * @return the number of overviews written
+     */
+    int writeDifference(Path beforeCog, RasterGrid beforeGrid, NdviBands beforeNdvi,
+                        Path afterCog, RasterGrid afterGrid, NdviBands afterNdvi,
+                        Path target) throws IOException {
+        int tileSize;
+        try (GeoTiffReader reader = new GeoTiffReader(beforeCog)) {
+            tileSize = reader.getBlockWidth();
+            int width = beforeGrid.width();
+            int height = beforeGrid.height();
+            int across = (width + tileSize - 1) / tileSize;
+            int tileCount = across * ((height + tileSize - 1) / tileSize);
+            int workerCount = Math.min(parallelism, tileCount);
+
+            @SuppressWarnings("unchecked")
+            CompletableFuture<float[]>[] tiles = new CompletableFuture[tileCount];
+            for (int i = 0; i < tileCount; i++) {
+                tiles[i] = new CompletableFuture<>();
+            }
+            CompletableFuture<float[]> failure = new CompletableFuture<>();
+            AtomicInteger next = new AtomicInteger();
+            // Tiles taken but not yet written: a row of tiles and one per worker
+            Semaphore window = new Semaphore(across + workerCount);
+
+            for (int i = 0; i < workerCount; i++) {
+                workers.execute(() -> {
+                    try (GeoTiffReader beforeReader = new GeoTiffReader(beforeCog);
+                         GeoTiffReader afterReader = new GeoTiffReader(afterCog)) {
+                        ByteBuffer beforeTile = ByteBuffer.allocate(tileSize * tileSize * beforeGrid.pixelBytes())
+                                .order(ByteOrder.LITTLE_ENDIAN);
+                        ByteBuffer afterTile = ByteBuffer.allocate(tileSize * tileSize * afterGrid.pixelBytes())
+                                .order(ByteOrder.LITTLE_ENDIAN);
+                        while (true) {
+                            window.acquireUninterruptibly();
+                            int tile = next.getAndIncrement();
+                            if (tile >= tileCount) {
+                                return;
+                            }
+                            int x = tile % across * tileSize;
+                            int y = tile / across * tileSize;
+                            int tileWidth = Math.min(tileSize, width - x);
+                            int tileHeight = Math.min(tileSize, height - y);
+                            beforeReader.readWindow(x, y, tileWidth, tileHeight, beforeTile);
+                            afterReader.readWindow(x, y, tileWidth, tileHeight, afterTile);
+                            float[] difference = new float[tileWidth * tileHeight];
+                            for (int pixel = 0; pixel < difference.length; pixel++) {
+                                difference[pixel] = (float) (afterNdvi.ndvi(afterTile, pixel * afterGrid.pixelBytes())
+                                        - beforeNdvi.ndvi(beforeTile, pixel * beforeGrid.pixelBytes()));
+                            }
+                            tiles[tile].complete(difference);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        failure.completeExceptionally(e);
+                    }
+                });
+            }
+
+            ByteBuffer rows = ByteBuffer.allocate(width * tileSize * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            try (CogWriter writer = new CogWriter(target, width, height, 1, SampleType.FLOAT32, Double.NaN,
+                    reader.getGeoReference(), GDAL_METADATA, tileSize, deflate)) {
+                for (int y = 0; y < height; y += tileSize) {
+                    int rowCount = Math.min(tileSize, height - y);
+                    for (int column = 0; column < across; column++) {
+                        int tile = y / tileSize * across + column;
+                        float[] difference = await(tiles[tile], failure);
+                        tiles[tile] = null;
+                        window.release();
+                        int x = column * tileSize;
+                        int tileWidth = Math.min(tileSize, width - x);
+                        for (int row = 0; row < rowCount; row++) {
+                            for (int i = 0; i < tileWidth; i++) {
+                                rows.putFloat((row * width + x + i) * Float.BYTES, difference[row * tileWidth + i]);
+                            }
+                        }
+                    }
+                    writer.writeRows(rows, rowCount);
+                }
+                int overviews = writer.getOverviewCount();
+                writer.finish();
+                return overviews;
+            } finally {
+                // Let the workers run out of tiles, after a failure
+                next.set(tileCount);
+                window.release(tileCount);
+            }
+        }
+    }
+
+    private static float[] await(CompletableFuture<float[]> tile, CompletableFuture<float[]> failure)
+            throws IOException {
+        try {
+            return (float[]) CompletableFuture.anyOf(tile, failure).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof UncheckedIOException cause) {
+                throw cause.getCause();
+            }
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private static FieldChange toEntity(SceneChange change, AgriculturalField field, ZonalStatisticsService.Zone zone) {
+        ZonalStatistics statistics = zone.statistics();
+        boolean valid = statistics.getCount() > 0;
+        FieldChange fieldChange = new FieldChange();
+        fieldChange.setChange(change);
+        fieldChange.setField(field);
+        fieldChange.setPixelCount(zone.pixelCount());
+        fieldChange.setValidPixelCount(statistics.getCount());
+        fieldChange.setMeanChange(valid ? statistics.getMean() : null);
+        fieldChange.setMinChange(valid ? statistics.getMin() : null);
+        fieldChange.setMaxChange(valid ? statistics.getMax() : null);
+        fieldChange.setStdDev(valid ? statistics.getStandardDeviation() : null);
+        fieldChange.setFlagged(valid && statistics.getMean() <= -change.getThreshold());
+        return fieldChange;
+    }
+
+    private static SceneChangeResponse toResponse(SceneChange change, List<FieldChangeResponse> fields) {
+        return SceneChangeResponse.builder()
+                .id(change.getId())
+                .beforeSceneId(change.getBeforeScene().getSceneId())
+                .afterSceneId(change.getAfterScene().getSceneId())
+                .status(change.getStatus())
+                .threshold(change.getThreshold())
+                .cogSize(change.getCogSize())
+                .overviewCount(change.getOverviewCount())
+                .fieldCount(change.getFieldCount())
+                .flaggedCount(change.getFlaggedCount())
+                .error(change.getError())
+                .fields(fields)
+                .build();
+    }
+
+    private static FieldChangeResponse toResponse(FieldChange fieldChange) {
+        return FieldChangeResponse.builder()
+                .fieldId(fieldChange.getField().getFieldId())
+                .pixelCount(fieldChange.getPixelCount())
+                .validPixelCount(fieldChange.getValidPixelCount())
+                .meanChange(fieldChange.getMeanChange())
+                .minChange(fieldChange.getMinChange())
+                .maxChange(fieldChange.getMaxChange())
+                .stdDev(fieldChange.getStdDev())
+                .flagged(fieldChange.getFlagged())
+                .build();
+    }
+}
@@ -0,0 +1,59 @@
+package com.adeprogramming.javagis.service.satellite;
+
+import com.adeprogramming.javagis.payload.satellite.SceneBand;
+import com.adeprogramming.javagis.raster.SampleType;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Reads the NDVI of pixels of a scene, (nir - red) / (nir + red), from its red and near-infrared
+ * bands. A pixel has no NDVI if either band has no data there or both are zero.
+ *
+ * @param sampleType the sample type of all bands
+ * @param redOffset the byte offset of the red sample within a pixel
+ * @param nirOffset the byte offset of the near-infrared sample within a pixel
+ * @param noData the no-data value of the bands, or null for none
+ */
+record NdviBands(SampleType sampleType, int redOffset, int nirOffset, Double noData) {
+
+    /**
+     * @param bands the bands of the scene in file order
+     * @throws IllegalArgumentException if the scene has no red or no near-infrared band
+     */
+    static NdviBands of(String sceneId, List<SceneBand> bands, SampleType sampleType, Double noData) {
+        int red = band(bands, "red");
+        int nir = band(bands, "nir");
+        if (nir < 0) {
+            nir = band(bands, "nir08");
+        }
+        if (red < 0 || nir < 0) {
+            throw new IllegalArgumentException("Scene " + sceneId + " has no red or no near-infrared band");
+        }
+        return new NdviBands(sampleType, red * sampleType.bytes(), nir * sampleType.bytes(), noData);
+    }
+
+    /**
+     * @param samples pixel-interleaved samples
+     * @param pixel the byte index of the first sample of the pixel
+     * @return the NDVI of the pixel, NaN if it has none
+     */
+    double ndvi(ByteBuffer samples, int pixel) {
+        double red = sampleType.get(samples, pixel + redOffset);
+        double nir = sampleType.get(samples, pixel + nirOffset);
+        if (noData != null && (red == noData || nir == noData)) {
+            return Double.NaN;
+        }
+        double sum = nir + red;
+        return sum != 0 ? (nir - red) / sum : Double.NaN;
+    }
+
+    private static int band(List<SceneBand> bands, String commonName) {
+        for (int i = 0; i < bands.size(); i++) {
+            if (commonName.equals(bands.get(i).getCommonName())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
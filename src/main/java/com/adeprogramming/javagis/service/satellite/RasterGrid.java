@@ -0,0 +1,73 @@
+package com.adeprogramming.javagis.service.satellite;
+
+import com.adeprogramming.javagis.model.satellite.SatelliteScene;
+import com.adeprogramming.javagis.raster.SampleType;
+import org.locationtech.jts.geom.util.AffineTransformation;
+import org.locationtech.jts.geom.util.NoninvertibleTransformationException;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The pixel grid and sample layout of a raster stored as a cloud-optimised GeoTIFF.
+ *
+ * @param epsg the EPSG code of the CRS of the grid
+ * @param transform the affine transform from pixel to CRS coordinates, in GDAL's order
+ * @param toPixels the inverse of the transform
+ * @param width the number of columns
+ * @param height the number of rows
+ * @param bands the number of bands
+ * @param sampleType the sample type of all bands
+ */
+record RasterGrid(int epsg, double[] transform, AffineTransformation toPixels, int width, int height, int bands,
+                  SampleType sampleType) {
+
+    /** The largest difference between the transforms of grids that are treated as the same. */
+    private static final double TRANSFORM_TOLERANCE = 1e-6;
+
+    /**
+     * @throws IllegalArgumentException if the transform is degenerate
+     */
+    static RasterGrid of(int epsg, double[] transform, int width, int height, int bands, SampleType sampleType) {
+        AffineTransformation toPixels;
+        try {
+            toPixels = new AffineTransformation(transform[1], transform[2], transform[0],
+                    transform[4], transform[5], transform[3]).getInverse();
+        } catch (NoninvertibleTransformationException e) {
+            throw new IllegalArgumentException("Degenerate pixel grid " + Arrays.toString(transform));
+        }
+        return new RasterGrid(epsg, transform, toPixels, width, height, bands, sampleType);
+    }
+
+    /**
+     * @return the grid of all bands of a scene
+     */
+    static RasterGrid of(SatelliteScene scene, SceneMetadata metadata) {
+        return of(scene.getRasterEpsg(), metadata.transform(), scene.getWidth(), scene.getHeight(),
+                scene.getBandCount(), SampleType.valueOf(scene.getDataType().toUpperCase(Locale.ROOT)));
+    }
+
+    /**
+     * @return the number of bytes of all samples of a pixel
+     */
+    int pixelBytes() {
+        return bands * sampleType.bytes();
+    }
+
+    /**
+     * @return whether the other grid has the same CRS, size and pixel positions, so pixels at the
+     * same column and row cover the same ground
+     */
+    boolean isAlignedWith(RasterGrid other) {
+        if (epsg != other.epsg || width != other.width || height != other.height) {
+            return false;
+        }
+        double pixelSize = Math.hypot(transform[1], transform[4]);
+        for (int i = 0; i < transform.length; i++) {
+            if (Math.abs(transform[i] - other.transform[i]) > TRANSFORM_TOLERANCE * Math.max(pixelSize, 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,503 @@
+package com.adeprogramming.javagis.service.satellite;
+
+import com.adeprogramming.javagis.model.satellite.SatelliteScene;
+import com.adeprogramming.javagis.payload.satellite.SceneBand;
+import com.adeprogramming.javagis.payload.satellite.SceneIngestRequest;
+import com.adeprogramming.javagis.payload.satellite.SceneResponse;
+import com.adeprogramming.javagis.raster.CogWriter;
+import com.adeprogramming.javagis.raster.GeoReference;
+import com.adeprogramming.javagis.raster.GeoTiffReader;
+import com.adeprogramming.javagis.repository.satellite.SatelliteSceneRepository;
+import com.adeprogramming.javagis.service.spatial.CoordinateTransformService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Service for ingesting satellite scenes from multi-band GeoTIFFs.
+ * <p>
+ * A scene is registered from the file headers alone: its footprint, acquisition time, grid
+ * and bands are read from the first image file directory without decoding pixels, so a file
+ * that cannot be used is rejected at once. The file is then rewritten in the background into
+ * a cloud-optimised GeoTIFF with overviews, reading and writing one row of tiles at a time,
+ * and the scene becomes ready, announced with a {@link SceneReadyEvent}. Ready scenes are listed as items of the satellite-scenes STAC
+ * collection.
+ * <p>
+ * Conversions do not survive a restart. Scenes still processing at startup are marked failed, to
+ * be ingested again, and the uploads and partial COGs they left behind are deleted.
+ */
+@Service
+public class SatelliteSceneService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SatelliteSceneService.class);
+
+    private static final Pattern SCENE_ID = Pattern.compile("[A-Za-z0-9._-]{1,100}");
+    private static final DateTimeFormatter TIFF_DATE_TIME = DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
+    private static final int FOOTPRINT_EDGE_POINTS = 16;
+    private static final String PARTIAL_SUFFIX = ".tif.partial";
+
+    /** The band common names of the STAC electro-optical extension. */
+    private static final Set<String> COMMON_NAMES = Set.of("coastal", "blue", "green", "red", "yellow", "pan",
+            "rededge", "nir", "nir08", "nir09", "cirrus", "swir16", "swir22", "lwir", "lwir11", "lwir12");
+
+    private static final Pattern SENTINEL_2_BAND = Pattern.compile("B0?(\\d{1,2}|8A)");
+    private static final Map<String, String> SENTINEL_2_COMMON_NAMES = Map.ofEntries(
+            Map.entry("1", "coastal"), Map.entry("2", "blue"), Map.entry("3", "green"), Map.entry("4", "red"),
+            Map.entry("5", "rededge"), Map.entry("6", "rededge"), Map.entry("7", "rededge"), Map.entry("8", "nir"),
+            Map.entry("8A", "nir08"), Map.entry("9", "nir09"), Map.entry("10", "cirrus"), Map.entry("11", "swir16"),
+            Map.entry("12", "swir22"));
+
+    private final SatelliteSceneRepository satelliteSceneRepository;
+    private final CoordinateTransformService coordinateTransformService;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Path uploadDirectory;
+    private final Path cogDirectory;
+    private final int tileSize;
+    private final boolean deflate;
+    private final ExecutorService executor;
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+    private final Set<String> converting = ConcurrentHashMap.newKeySet();
+    private final Instant startedAt = Instant.now();
+
+    @Autowired
+    public SatelliteSceneService(
+            SatelliteSceneRepository satelliteSceneRepository,
+            CoordinateTransformService coordinateTransformService,
+            ObjectMapper objectMapper,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${geotools.satellite.upload-dir:./uploads/satellite}") Path uploadDirectory,
+            @Value("${satellite.cog.dir:./data/satellite/cog}") Path cogDirectory,
+            @Value("${satellite.cog.tile-size:512}") int tileSize,
+            @Value("${satellite.cog.deflate:true}") boolean deflate) {
+        this.satelliteSceneRepository = satelliteSceneRepository;
+        this.coordinateTransformService = coordinateTransformService;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.uploadDirectory = uploadDirectory.toAbsolutePath().normalize();
+        this.cogDirectory = cogDirectory.toAbsolutePath().normalize();
+        this.tileSize = tileSize;
+        this.deflate = deflate;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "scene-ingest");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Ingest a scene streamed with the request. The GeoTIFF is stored in the upload directory
+     * until it is converted.
+     *
+     * @param in the GeoTIFF
+     * @param fileName the name of the file
+     * @param request the scene metadata the file does not declare
+     * @return the registered scene, processing
+     * @throws IllegalArgumentException if the file is not a usable GeoTIFF or the metadata is invalid
+     * @throws IOException if the upload cannot be stored
+     */
+    public SceneResponse ingest(InputStream in, String fileName, SceneIngestRequest request) throws IOException {
+        Files.createDirectories(uploadDirectory);
+        Path upload = uploadDirectory.resolve(".upload-" + UUID.randomUUID() + ".tif");
+        Files.copy(in, upload);
+        try {
+            return register(upload, Path.of(fileName).getFileName().toString(), true, request);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(upload);
+            throw e;
+        }
+    }
+
+    /**
+     * Ingest a scene from the upload directory, e.g. one copied there by a download job.
+     *
+     * @param path the path of the GeoTIFF, relative to the upload directory
+     * @param request the scene metadata the file does not declare
+     * @return the registered scene, processing
+     * @throws IllegalArgumentException if there is no such file, it is not a usable GeoTIFF or
+     * the metadata is invalid
+     * @throws IOException if the file cannot be read
+     */
+    public SceneResponse ingest(String path, SceneIngestRequest request) throws IOException {
+        Path file = uploadDirectory.resolve(path).normalize();
+        if (!file.startsWith(uploadDirectory) || !Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("No file " + path + " in the upload directory");
+        }
+        return register(file, file.getFileName().toString(), false, request);
+    }
+
+    /**
+     * @param sceneId the scene ID
+     * @return the scene, empty if there is no such scene
+     */
+    public Optional<SceneResponse> getScene(String sceneId) {
+        return satelliteSceneRepository.findBySceneId(sceneId).map(this::toResponse);
+    }
+
+    /**
+     * @param sceneId the scene ID
+     * @return the cloud-optimised GeoTIFF of the scene, empty if there is no such ready scene
+     */
+    public Optional<Path> getCogFile(String sceneId) {
+        return satelliteSceneRepository.findBySceneId(sceneId)
+                .filter(scene -> scene.getStatus() == SatelliteScene.SceneStatus.READY && scene.getCogPath() != null)
+                .map(scene -> Path.of(scene.getCogPath()));
+    }
+
+    /**
+     * @return all scenes, latest acquisition first
+     */
+    public List<SceneResponse> getScenes() {
+        return satelliteSceneRepository.findAll(Sort.by(Sort.Direction.DESC, "observationDate")).stream()
+                .map(this::toResponse)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param scene a scene
+     * @return its bands and pixel grid
+     */
+    public SceneMetadata getMetadata(SatelliteScene scene) {
+        try {
+            return objectMapper.readValue(scene.getMetadata(), SceneMetadata.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Invalid metadata of scene " + scene.getSceneId(), e);
+        }
+    }
+
+    /**
+     * Clean up after the conversions a restart cut short. Scenes registered and files written
+     * since startup are left alone.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverInterrupted() {
+        for (SatelliteScene scene : satelliteSceneRepository
+                .findByStatus(SatelliteScene.SceneStatus.PROCESSING, Pageable.unpaged())) {
+            if (converting.contains(scene.getSceneId())) {
+                continue;
+            }
+            logger.warn("The conversion of scene {} was interrupted by a restart", scene.getSceneId());
+            scene.setStatus(SatelliteScene.SceneStatus.FAILED);
+            scene.setError("The conversion was interrupted by a restart; ingest the scene again");
+            satelliteSceneRepository.save(scene);
+        }
+        deleteLeftovers(uploadDirectory, ".upload-*.tif");
+        deleteLeftovers(cogDirectory, "*" + PARTIAL_SUFFIX);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private SceneResponse register(Path file, String fileName, boolean deleteAfter, SceneIngestRequest request)
+            throws IOException {
+        String sceneId = request.getSceneId() != null ? request.getSceneId() : stem(fileName);
+        if (!SCENE_ID.matcher(sceneId).matches()) {
+            throw new IllegalArgumentException("Scene IDs may only contain letters, digits, '.', '_' and '-'");
+        }
+
+        SatelliteScene scene = satelliteSceneRepository.findBySceneId(sceneId).orElseGet(SatelliteScene::new);
+        try (GeoTiffReader reader = new GeoTiffReader(file)) {
+            GeoReference geoReference = reader.getGeoReference();
+            if (geoReference == null) {
+                throw new IllegalArgumentException("The file is not a GeoTIFF");
+            }
+            Integer epsg = request.getEpsg() != null ? request.getEpsg() : geoReference.epsg();
+            if (epsg == null) {
+                throw new IllegalArgumentException("The GeoTIFF declares no EPSG code; give the CRS of the scene");
+            }
+            double[] transform = geoReference.affine();
+            Geometry footprint = coordinateTransformService.transform(
+                    outline(transform, reader.getWidth(), reader.getHeight()), epsg, CoordinateTransformService.WGS84);
+
+            scene.setSceneId(sceneId);
+            scene.setName(sceneId);
+            scene.setSource(fileName);
+            scene.setPlatform(request.getPlatform());
+            scene.setGeometry(footprint);
+            scene.setSrid(CoordinateTransformService.WGS84);
+            scene.setObservationDate(acquisitionTime(request.getDatetime(), reader.getDateTime()));
+            scene.setRasterEpsg(epsg);
+            scene.setWidth(reader.getWidth());
+            scene.setHeight(reader.getHeight());
+            scene.setBandCount(reader.getBandCount());
+            scene.setDataType(reader.getSampleType().dataType());
+            scene.setNoData(reader.getNoData() != null && !reader.getNoData().isInfinite() ? reader.getNoData() : null);
+            scene.setResolution(Math.hypot(transform[1], transform[4]));
+            scene.setMetadata(objectMapper.writeValueAsString(
+                    new SceneMetadata(bands(reader.getBandDescriptions(), request.getBands()), transform)));
+        }
+        if (!converting.add(sceneId)) {
+            throw new IllegalArgumentException("Scene " + sceneId + " is already being ingested");
+        }
+        try {
+            scene.setStatus(SatelliteScene.SceneStatus.PROCESSING);
+            scene.setError(null);
+            scene = satelliteSceneRepository.save(scene);
+        } catch (RuntimeException e) {
+            converting.remove(sceneId);
+            throw e;
+        }
+
+        Long id = scene.getId();
+        executor.execute(() -> {
+            try {
+                convert(id, file);
+            } finally {
+                converting.remove(sceneId);
+                if (deleteAfter) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        logger.warn("Could not delete the upload {}", file, e);
+                    }
+                }
+            }
+        });
+        return toResponse(scene);
+    }
+
+    private void convert(Long id, Path file) {
+        SatelliteScene scene = satelliteSceneRepository.findById(id).orElse(null);
+        if (scene == null) {
+            return;
+        }
+        Path cog = cogDirectory.resolve(scene.getSceneId() + ".tif");
+        Path partial = cogDirectory.resolve(scene.getSceneId() + PARTIAL_SUFFIX);
+        long started = System.nanoTime();
+        try {
+            Files.createDirectories(cogDirectory);
+            int overviews;
+            try (GeoTiffReader reader = new GeoTiffReader(file);
+                 CogWriter writer = new CogWriter(partial, reader.getWidth(), reader.getHeight(),
+                         reader.getBandCount(), reader.getSampleType(), reader.getNoData(),
+                         reader.getGeoReference(), reader.getGdalMetadata(), tileSize, deflate)) {
+                long rowBytes = (long) reader.getWidth() * reader.getBandCount() * reader.getSampleType().bytes();
+                if (rowBytes * tileSize > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("The scene is too wide");
+                }
+                ByteBuffer rows = ByteBuffer.allocate((int) (rowBytes * tileSize)).order(ByteOrder.LITTLE_ENDIAN);
+                for (int y = 0; y < reader.getHeight(); y += tileSize) {
+                    int count = Math.min(tileSize, reader.getHeight() - y);
+                    reader.readWindow(0, y, reader.getWidth(), count, rows);
+                    writer.writeRows(rows, count);
+                }
+                overviews = writer.getOverviewCount();
+                writer.finish();
+            }
+            Files.move(partial, cog, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            scene.setStatus(SatelliteScene.SceneStatus.READY);
+            scene.setCogPath(cog.toString());
+            scene.setCogSize(Files.size(cog));
+            scene.setOverviewCount(overviews);
+            logger.info("Converted scene {} into a {}-byte COG with {} overviews in {} ms", scene.getSceneId(),
+                    scene.getCogSize(), overviews, (System.nanoTime() - started) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not convert scene {}", scene.getSceneId(), e);
+            scene.setStatus(SatelliteScene.SceneStatus.FAILED);
+            String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            scene.setError(message.length() > 1000 ? message.substring(0, 1000) : message);
+            try {
+                Files.deleteIfExists(partial);
+            } catch (IOException deleteFailure) {
+                logger.warn("Could not delete {}", partial, deleteFailure);
+            }
+        }
+        satelliteSceneRepository.save(scene);
+        if (scene.getStatus() == SatelliteScene.SceneStatus.READY) {
+            eventPublisher.publishEvent(new SceneReadyEvent(scene.getSceneId()));
+        }
+    }
+
+    /**
+     * Delete the files matching a glob that were written before startup and do not belong to a
+     * scene being converted.
+     */
+    private void deleteLeftovers(Path directory, String glob) {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, glob)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(PARTIAL_SUFFIX)
+                        && converting.contains(name.substring(0, name.length() - PARTIAL_SUFFIX.length()))) {
+                    continue;
+                }
+                try {
+                    if (Files.getLastModifiedTime(file).toInstant().isBefore(startedAt)) {
+                        Files.deleteIfExists(file);
+                        logger.info("Deleted {}, left behind by an interrupted scene ingest", file);
+                    }
+                } catch (IOException e) {
+                    logger.warn("Could not delete {}", file, e);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not list {}", directory, e);
+        }
+    }
+
+    /**
+     * @return the outline of the pixel grid, with points along its edges so it follows their
+     * curvature once reprojected
+     */
+    private Geometry outline(double[] transform, int width, int height) {
+        double[][] corners = {{0, 0}, {width, 0}, {width, height}, {0, height}};
+        Coordinate[] ring = new Coordinate[FOOTPRINT_EDGE_POINTS * 4 + 1];
+        for (int edge = 0; edge < 4; edge++) {
+            double[] from = corners[edge];
+            double[] to = corners[(edge + 1) % 4];
+            for (int i = 0; i < FOOTPRINT_EDGE_POINTS; i++) {
+                double t = i / (double) FOOTPRINT_EDGE_POINTS;
+                double column = from[0] + t * (to[0] - from[0]);
+                double row = from[1] + t * (to[1] - from[1]);
+                ring[edge * FOOTPRINT_EDGE_POINTS + i] = new Coordinate(
+                        transform[0] + column * transform[1] + row * transform[2],
+                        transform[3] + column * transform[4] + row * transform[5]);
+            }
+        }
+        ring[ring.length - 1] = ring[0].copy();
+        return geometryFactory.createPolygon(ring);
+    }
+
+    private static LocalDateTime acquisitionTime(String requested, String tiffDateTime) {
+        if (requested != null) {
+            try {
+                return OffsetDateTime.parse(requested).withOffsetSameInstant(ZoneOffset.UTC).toLocalDateTime();
+            } catch (DateTimeParseException e) {
+                // Not an offset time
+            }
+            try {
+                return LocalDateTime.parse(requested);
+            } catch (DateTimeParseException e) {
+                // Not a local time
+            }
+            try {
+                return LocalDate.parse(requested).atStartOfDay();
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid datetime: " + requested);
+            }
+        }
+        if (tiffDateTime != null) {
+            try {
+                return LocalDateTime.parse(tiffDateTime.trim(), TIFF_DATE_TIME);
+            } catch (DateTimeParseException e) {
+                // Fall through to the error
+            }
+        }
+        throw new IllegalArgumentException("The GeoTIFF has no acquisition time; give the datetime of the scene");
+    }
+
+    private static List<SceneBand> bands(List<String> descriptions, List<String> commonNames) {
+        if (commonNames != null && commonNames.size() != descriptions.size()) {
+            throw new IllegalArgumentException("Expected " + descriptions.size() + " band names, not "
+                    + commonNames.size());
+        }
+        List<SceneBand> bands = new ArrayList<>();
+        for (int i = 0; i < descriptions.size(); i++) {
+            String description = descriptions.get(i);
+            String commonName;
+            if (commonNames != null) {
+                commonName = commonNames.get(i).isBlank() ? null : commonNames.get(i).trim().toLowerCase(Locale.ROOT);
+                if (commonName != null && !COMMON_NAMES.contains(commonName)) {
+                    throw new IllegalArgumentException("Unknown band common name: " + commonNames.get(i));
+                }
+            } else {
+                commonName = commonName(description);
+            }
+            bands.add(SceneBand.builder()
+                    .name(description != null && !description.isBlank() ? description : "band" + (i + 1))
+                    .commonName(commonName)
+                    .build());
+        }
+        return bands;
+    }
+
+    /**
+     * @return the common name of a band described by its common name or its Sentinel-2 band
+     * number, e.g. B04 or B8A; null otherwise
+     */
+    private static String commonName(String description) {
+        if (description == null) {
+            return null;
+        }
+        String trimmed = description.trim();
+        if (COMMON_NAMES.contains(trimmed.toLowerCase(Locale.ROOT))) {
+            return trimmed.toLowerCase(Locale.ROOT);
+        }
+        Matcher band = SENTINEL_2_BAND.matcher(trimmed.toUpperCase(Locale.ROOT));
+        return band.matches() ? SENTINEL_2_COMMON_NAMES.get(band.group(1)) : null;
+    }
+
+    private static String stem(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+
+    private SceneResponse toResponse(SatelliteScene scene) {
+        Envelope bbox = scene.getGeometry() != null ? scene.getGeometry().getEnvelopeInternal() : null;
+        return SceneResponse.builder()
+                .sceneId(scene.getSceneId())
+                .status(scene.getStatus())
+                .fileName(scene.getSource())
+                .platform(scene.getPlatform())
+                .datetime(scene.getObservationDate())
+                .bbox(bbox != null ? new double[]{bbox.getMinX(), bbox.getMinY(), bbox.getMaxX(), bbox.getMaxY()} : null)
+                .epsg(scene.getRasterEpsg())
+                .width(scene.getWidth())
+                .height(scene.getHeight())
+                .dataType(scene.getDataType())
+                .noData(scene.getNoData())
+                .bands(scene.getMetadata() != null ? getMetadata(scene).bands() : null)
+                .cogSize(scene.getCogSize())
+                .overviewCount(scene.getOverviewCount())
+                .error(scene.getError())
+                .build();
+    }
+}
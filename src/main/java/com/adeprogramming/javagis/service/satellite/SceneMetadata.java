@@ -0,0 +1,14 @@
+package com.adeprogramming.javagis.service.satellite;
+
+import com.adeprogramming.javagis.payload.satellite.SceneBand;
+
+import java.util.List;
+
+/**
+ * The metadata of a satellite scene kept as JSON with the scene: its bands and its pixel grid.
+ *
+ * @param bands the bands in file order
+ * @param transform the affine transform from pixel to CRS coordinates, in GDAL's order
+ */
+public record SceneMetadata(List<SceneBand> bands, double[] transform) {
+}
@@ -0,0 +1,10 @@
+package com.adeprogramming.javagis.service.satellite;
+
+/**
+ * Published by {@link SatelliteSceneService} once a scene has been converted and saved as ready,
+ * on the background thread that converted it, so listeners may do lengthy work with the scene.
+ *
+ * @param sceneId the scene ID
+ */
+public record SceneReadyEvent(String sceneId) {
+}
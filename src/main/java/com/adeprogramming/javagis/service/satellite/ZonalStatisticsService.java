@@ -0,0 +1,345 @@
+package com.adeprogramming.javagis.service.satellite;
+
+import com.adeprogramming.javagis.analytics.zonal.PolygonMask;
+import com.adeprogramming.javagis.analytics.zonal.ZonalStatistics;
+import com.adeprogramming.javagis.model.agricultural.AgriculturalField;
+import com.adeprogramming.javagis.model.satellite.FieldSceneStatistics;
+import com.adeprogramming.javagis.model.satellite.SatelliteScene;
+import com.adeprogramming.javagis.payload.satellite.FieldStatisticsResponse;
+import com.adeprogramming.javagis.payload.satellite.ZonalStatisticsResponse;
+import com.adeprogramming.javagis.raster.GeoTiffReader;
+import com.adeprogramming.javagis.repository.agricultural.AgriculturalFieldRepository;
+import com.adeprogramming.javagis.repository.satellite.FieldSceneStatisticsRepository;
+import com.adeprogramming.javagis.repository.satellite.SatelliteSceneRepository;
+import com.adeprogramming.javagis.service.spatial.CoordinateTransformService;
+import jakarta.annotation.PreDestroy;
+import org.locationtech.jts.geom.Geometry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Service for the NDVI statistics of agricultural fields per satellite scene: mean, minimum,
+ * maximum, standard deviation and a histogram over the pixels whose centres lie inside each
+ * field. Statistics are computed for every field intersecting a scene once the scene is ready,
+ * and stored per (field, scene), replacing those of an earlier computation.
+ * <p>
+ * Each field boundary is projected into the CRS of the scene and then into pixel coordinates,
+ * and rasterized against the scene grid into runs of pixels per row. Only the tiles of the
+ * cloud-optimised GeoTIFF that contain one of those pixels are read. Fields are measured in
+ * parallel on a dedicated pool; each worker opens its own reader of the scene, as readers cache
+ * decoded tiles and are not thread-safe, and takes the next field when it finishes one.
+ */
+@Service
+public class ZonalStatisticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ZonalStatisticsService.class);
+
+    public static final double HISTOGRAM_MIN = -1;
+    public static final double HISTOGRAM_MAX = 1;
+    public static final int HISTOGRAM_BINS = 20;
+
+    private final SatelliteSceneRepository satelliteSceneRepository;
+    private final AgriculturalFieldRepository agriculturalFieldRepository;
+    private final FieldSceneStatisticsRepository fieldSceneStatisticsRepository;
+    private final SatelliteSceneService satelliteSceneService;
+    private final CoordinateTransformService coordinateTransformService;
+    private final TransactionTemplate transactionTemplate;
+    private final int parallelism;
+    private final ExecutorService executor;
+
+    @Autowired
+    public ZonalStatisticsService(
+            SatelliteSceneRepository satelliteSceneRepository,
+            AgriculturalFieldRepository agriculturalFieldRepository,
+            FieldSceneStatisticsRepository fieldSceneStatisticsRepository,
+            SatelliteSceneService satelliteSceneService,
+            CoordinateTransformService coordinateTransformService,
+            PlatformTransactionManager transactionManager,
+            @Value("${satellite.zonal.parallelism:0}") int parallelism) {
+        this.satelliteSceneRepository = satelliteSceneRepository;
+        this.agriculturalFieldRepository = agriculturalFieldRepository;
+        this.fieldSceneStatisticsRepository = fieldSceneStatisticsRepository;
+        this.satelliteSceneService = satelliteSceneService;
+        this.coordinateTransformService = coordinateTransformService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "zonal-statistics-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener
+    public void onSceneReady(SceneReadyEvent event) {
+        try {
+            ZonalStatisticsResponse response = computeScene(event.sceneId());
+            logger.info("Measured {} of {} fields in scene {} in {} ms", response.getMeasured(),
+                    response.getFields(), response.getSceneId(), response.getMillis());
+        } catch (IllegalArgumentException e) {
+            logger.info("No field statistics for scene {}: {}", event.sceneId(), e.getMessage());
+        } catch (RuntimeException e) {
+            logger.warn("Could not compute the field statistics of scene {}", event.sceneId(), e);
+        }
+    }
+
+    /**
+     * Compute and store the statistics of every field intersecting a scene.
+     *
+     * @param sceneId the scene ID
+     * @return the numbers of fields measured, skipped and failed
+     * @throws IllegalArgumentException if there is no such ready scene, or it has no red or no
+     * near-infrared band
+     * @throws UncheckedIOException if the scene cannot be read
+     */
+    public ZonalStatisticsResponse computeScene(String sceneId) {
+        long start = System.nanoTime();
+        SatelliteScene scene = satelliteSceneRepository.findBySceneId(sceneId)
+                .filter(found -> found.getStatus() == SatelliteScene.SceneStatus.READY)
+                .orElseThrow(() -> new IllegalArgumentException("No ready scene " + sceneId));
+        SceneMetadata metadata = satelliteSceneService.getMetadata(scene);
+        RasterGrid grid = RasterGrid.of(scene, metadata);
+        NdviBands ndvi = NdviBands.of(sceneId, metadata.bands(), grid.sampleType(), scene.getNoData());
+
+        List<AgriculturalField> fields = agriculturalFieldRepository.findIntersectingGeometry(scene.getGeometry());
+        ZonalResult result = measure(Path.of(scene.getCogPath()), grid, fields, ndvi::ndvi,
+                () -> new ZonalStatistics(HISTOGRAM_MIN, HISTOGRAM_MAX, HISTOGRAM_BINS));
+
+        List<FieldSceneStatistics> measured = new ArrayList<>();
+        for (int i = 0; i < fields.size(); i++) {
+            Zone zone = result.zones()[i];
+            if (zone != null) {
+                measured.add(toEntity(fields.get(i), scene, zone));
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            fieldSceneStatisticsRepository.deleteForScene(scene.getId());
+            fieldSceneStatisticsRepository.saveAll(measured);
+        });
+
+        return ZonalStatisticsResponse.builder()
+                .sceneId(sceneId)
+                .fields(fields.size())
+                .measured(measured.size())
+                .skipped(fields.size() - measured.size() - result.failed())
+                .failed(result.failed())
+                .tilesRead(result.tilesRead())
+                .millis((System.nanoTime() - start) / 1_000_000)
+                .build();
+    }
+
+    /**
+     * Measure a value of the pixels of each field in a raster, in parallel.
+     *
+     * @param raster the cloud-optimised GeoTIFF
+     * @param grid its grid
+     * @param fields the fields
+     * @param value the value of a pixel, read from its samples
+     * @param statistics creates the statistics of a field
+     * @return the statistics of each field, null for fields covering no pixel centre or that
+     * could not be projected onto the grid
+     * @throws UncheckedIOException if the raster cannot be read
+     */
+    ZonalResult measure(Path raster, RasterGrid grid, List<AgriculturalField> fields, PixelValue value,
+                        Supplier<ZonalStatistics> statistics) {
+        Zone[] zones = new Zone[fields.size()];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicLong tilesRead = new AtomicLong();
+
+        int workers = Math.min(parallelism, fields.size());
+        List<CompletableFuture<Void>> futures = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                try (GeoTiffReader reader = new GeoTiffReader(raster)) {
+                    ByteBuffer tile = ByteBuffer.allocate(
+                                    reader.getBlockWidth() * reader.getBlockHeight() * grid.pixelBytes())
+                            .order(ByteOrder.LITTLE_ENDIAN);
+                    for (int index = next.getAndIncrement(); index < fields.size(); index = next.getAndIncrement()) {
+                        AgriculturalField field = fields.get(index);
+                        PolygonMask mask;
+                        try {
+                            mask = mask(field, grid);
+                        } catch (RuntimeException e) {
+                            logger.warn("Could not project field {} onto {}", field.getFieldId(), raster, e);
+                            failed.incrementAndGet();
+                            continue;
+                        }
+                        if (!mask.isEmpty()) {
+                            ZonalStatistics zone = statistics.get();
+                            tilesRead.addAndGet(measure(reader, tile, mask, grid, value, zone));
+                            zones[index] = new Zone(mask.getPixelCount(), zone);
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not read " + raster, e);
+                }
+            }, executor));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        return new ZonalResult(zones, failed.get(), tilesRead.get());
+    }
+
+    /**
+     * @param fieldId the business ID of the field
+     * @param from the start of the time range (inclusive)
+     * @param to the end of the time range (inclusive)
+     * @return the statistics of the field in each scene of the range, oldest first; empty if
+     * there is no such field
+     */
+    public Optional<List<FieldStatisticsResponse>> getFieldTimeSeries(
+            String fieldId, LocalDateTime from, LocalDateTime to) {
+        return agriculturalFieldRepository.findByFieldId(fieldId)
+                .map(field -> fieldSceneStatisticsRepository.findTimeSeries(fieldId, from, to).stream()
+                        .map(statistics -> toResponse(statistics, fieldId, statistics.getScene().getSceneId()))
+                        .collect(Collectors.toList()));
+    }
+
+    /**
+     * @param scene a scene
+     * @return the statistics of the fields in the scene, by field ID
+     */
+    public List<FieldStatisticsResponse> getSceneStatistics(SatelliteScene scene) {
+        return fieldSceneStatisticsRepository.findForScene(scene.getId()).stream()
+                .map(statistics -> toResponse(statistics, statistics.getField().getFieldId(), scene.getSceneId()))
+                .collect(Collectors.toList());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private PolygonMask mask(AgriculturalField field, RasterGrid grid) {
+        int srid = field.getSrid() != null ? field.getSrid() : CoordinateTransformService.WGS84;
+        Geometry projected = coordinateTransformService.transform(field.getGeometry(), srid, grid.epsg());
+        return PolygonMask.rasterize(grid.toPixels().transform(projected), grid.width(), grid.height());
+    }
+
+    /**
+     * Add the value of every pixel of a mask to the statistics, reading only the tiles that
+     * contain one of its pixels.
+     *
+     * @return the number of tiles read
+     */
+    private static int measure(GeoTiffReader reader, ByteBuffer tile, PolygonMask mask, RasterGrid grid,
+                               PixelValue value, ZonalStatistics statistics) throws IOException {
+        int blockWidth = reader.getBlockWidth();
+        int blockHeight = reader.getBlockHeight();
+        int pixelBytes = grid.pixelBytes();
+        int tiles = 0;
+        for (int tileY = mask.getFirstRow() / blockHeight * blockHeight; tileY < mask.getEndRow(); tileY += blockHeight) {
+            int tileHeight = Math.min(blockHeight, grid.height() - tileY);
+            for (int tileX = mask.getMinColumn() / blockWidth * blockWidth; tileX < mask.getEndColumn(); tileX += blockWidth) {
+                int tileWidth = Math.min(blockWidth, grid.width() - tileX);
+                if (!mask.intersects(tileX, tileY, tileWidth, tileHeight)) {
+                    continue;
+                }
+                reader.readWindow(tileX, tileY, tileWidth, tileHeight, tile);
+                tiles++;
+                for (int row = tileY; row < tileY + tileHeight; row++) {
+                    int[] runs = mask.runs(row);
+                    for (int i = 0; i < runs.length; i += 2) {
+                        int first = Math.max(runs[i], tileX);
+                        int end = Math.min(runs[i + 1], tileX + tileWidth);
+                        for (int column = first; column < end; column++) {
+                            statistics.add(value.read(tile, ((row - tileY) * tileWidth + column - tileX) * pixelBytes));
+                        }
+                    }
+                }
+            }
+        }
+        return tiles;
+    }
+
+    private static FieldSceneStatistics toEntity(AgriculturalField field, SatelliteScene scene, Zone zone) {
+        ZonalStatistics statistics = zone.statistics();
+        boolean valid = statistics.getCount() > 0;
+        FieldSceneStatistics entity = new FieldSceneStatistics();
+        entity.setField(field);
+        entity.setScene(scene);
+        entity.setObservationDate(scene.getObservationDate());
+        entity.setPixelCount(zone.pixelCount());
+        entity.setValidPixelCount(statistics.getCount());
+        entity.setNdviMean(valid ? statistics.getMean() : null);
+        entity.setNdviMin(valid ? statistics.getMin() : null);
+        entity.setNdviMax(valid ? statistics.getMax() : null);
+        entity.setNdviStdDev(valid ? statistics.getStandardDeviation() : null);
+        entity.setNdviHistogram(statistics.getHistogram());
+        return entity;
+    }
+
+    private static FieldStatisticsResponse toResponse(FieldSceneStatistics statistics, String fieldId, String sceneId) {
+        return FieldStatisticsResponse.builder()
+                .fieldId(fieldId)
+                .sceneId(sceneId)
+                .datetime(statistics.getObservationDate())
+                .pixelCount(statistics.getPixelCount())
+                .validPixelCount(statistics.getValidPixelCount())
+                .mean(statistics.getNdviMean())
+                .min(statistics.getNdviMin())
+                .max(statistics.getNdviMax())
+                .stdDev(statistics.getNdviStdDev())
+                .histogram(statistics.getNdviHistogram())
+                .build();
+    }
+
+    /**
+     * Reads the value of a pixel from pixel-interleaved samples.
+     */
+    @FunctionalInterface
+    interface PixelValue {
+
+        /**
+         * @param samples the samples
+         * @param pixel the byte index of the first sample of the pixel
+         * @return the value, NaN if the pixel has none
+         */
+        double read(ByteBuffer samples, int pixel);
+    }
+
+    /**
+     * @param pixelCount the number of pixels inside the field
+     * @param statistics the statistics of their values
+     */
+    record Zone(long pixelCount, ZonalStatistics statistics) {
+    }
+
+    /**
+     * @param zones the statistics of each field, in the order of the fields
+     * @param failed the number of fields that could not be projected onto the grid
+     * @param tilesRead the number of tiles read
+     */
+    record ZonalResult(Zone[] zones, int failed, long tilesRead) {
+    }
+}
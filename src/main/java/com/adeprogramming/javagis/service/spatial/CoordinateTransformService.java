@@ -0,0 +1,345 @@
+package com.adeprogramming.javagis.service.spatial;
+
+import com.adeprogramming.javagis.config.CrsRegistry;
+import jakarta.annotation.PreDestroy;
+import org.geotools.api.referencing.FactoryException;
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
+import org.geotools.api.referencing.operation.MathTransform;
+import org.geotools.api.referencing.operation.TransformException;
+import org.geotools.referencing.CRS;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Service for reprojecting coordinates between EPSG coordinate reference systems.
+ * Decoded CRSs and the {@link MathTransform} of every (source, target) pair are cached, as
+ * finding a transform costs far more than applying it; transforms are immutable and shared by all
+ * threads. All CRSs are decoded with longitude (easting) first. CRSs in the {@link CrsRegistry}
+ * are taken from it, and only other codes are decoded from the GeoTools EPSG database.
+ * <p>
+ * Coordinates are transformed in bulk from packed {@code x, y} arrays, split into chunks that
+ * are transformed in parallel on a dedicated fork-join pool once there are enough of them.
+ * Geometries are transformed the same way, by packing the coordinates of all their sequences.
+ */
+@Service
+public class CoordinateTransformService {
+
+    public static final int WGS84 = 4326;
+
+    private static final int ENVELOPE_EDGE_SAMPLES = 16;
+
+    private final CrsRegistry crsRegistry;
+    private final ConcurrentHashMap<Integer, CoordinateReferenceSystem> crs = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, MathTransform> transforms = new ConcurrentHashMap<>();
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    @Autowired
+    public CoordinateTransformService(
+            CrsRegistry crsRegistry,
+            @Value("${crs.transform.parallelism:0}") int parallelism,
+            @Value("${crs.transform.chunk-size:16384}") int chunkSize) {
+        this.crsRegistry = crsRegistry;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Parse a CRS as requested by clients: {@code EPSG:3035}, {@code 3035} or an OGC URN or URI
+     * such as {@code http://www.opengis.net/def/crs/EPSG/0/3035}. {@code CRS84} is taken as EPSG:4326,
+     * which is decoded with the same axis order.
+     *
+     * @param code the CRS
+     * @return the EPSG code
+     * @throws IllegalArgumentException if the CRS is not given by an EPSG code
+     */
+    public static int parseEpsg(String code) {
+        String trimmed = code.trim();
+        if (trimmed.toUpperCase(Locale.ROOT).endsWith("CRS84")) {
+            return WGS84;
+        }
+        int separator = Math.max(trimmed.lastIndexOf(':'), trimmed.lastIndexOf('/'));
+        String prefix = trimmed.substring(0, separator + 1).toUpperCase(Locale.ROOT);
+        if (separator >= 0 && !prefix.contains("EPSG")) {
+            throw new IllegalArgumentException("Only EPSG coordinate reference systems are supported: " + code);
+        }
+        try {
+            return Integer.parseInt(trimmed.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid EPSG code: " + code, e);
+        }
+    }
+
+    /**
+     * Get a CRS, decoding it on first use.
+     *
+     * @param epsg the EPSG code
+     * @return the CRS, longitude or easting first
+     * @throws IllegalArgumentException if the code is unknown
+     */
+    public CoordinateReferenceSystem getCrs(int epsg) {
+        CoordinateReferenceSystem embedded = crsRegistry.get(epsg);
+        if (embedded != null) {
+            return embedded;
+        }
+        return crs.computeIfAbsent(epsg, code -> {
+            try {
+                return CRS.decode("EPSG:" + code, true);
+            } catch (FactoryException e) {
+                throw new IllegalArgumentException("Unknown coordinate reference system EPSG:" + code, e);
+            }
+        });
+    }
+
+    /**
+     * Get the transform between two CRSs, finding it on first use.
+     *
+     * @param source the EPSG code of the source CRS
+     * @param target the EPSG code of the target CRS
+     * @return the transform
+     * @throws IllegalArgumentException if a code is unknown or there is no transform between them
+     */
+    public MathTransform getTransform(int source, int target) {
+        long key = (long) source << 32 | (target & 0xFFFFFFFFL);
+        MathTransform transform = transforms.get(key);
+        if (transform != null) {
+            return transform;
+        }
+        CoordinateReferenceSystem sourceCrs = getCrs(source);
+        CoordinateReferenceSystem targetCrs = getCrs(target);
+        return transforms.computeIfAbsent(key, pair -> {
+            try {
+                MathTransform embedded = crsRegistry.findTransform(source, target);
+                return embedded != null ? embedded : CRS.findMathTransform(sourceCrs, targetCrs, true);
+            } catch (FactoryException e) {
+                throw new IllegalArgumentException("No transform from EPSG:" + source + " to EPSG:" + target, e);
+            }
+        });
+    }
+
+    /**
+     * Find the transform from a CRS given by its definition, e.g. read from a {@code .prj} file.
+     * The transform is cached only if the CRS is identified by an EPSG code.
+     *
+     * @param source the source CRS
+     * @param target the EPSG code of the target CRS
+     * @return the transform, or null if the source CRS is the target CRS
+     * @throws IllegalArgumentException if there is no transform between them
+     */
+    public MathTransform findTransform(CoordinateReferenceSystem source, int target) {
+        CoordinateReferenceSystem targetCrs = getCrs(target);
+        if (CRS.equalsIgnoreMetadata(source, targetCrs)) {
+            return null;
+        }
+        try {
+            Integer epsg = CRS.lookupEpsgCode(source, false);
+            if (epsg != null) {
+                return epsg == target ? null : getTransform(epsg, target);
+            }
+            return CRS.findMathTransform(source, targetCrs, true);
+        } catch (FactoryException e) {
+            throw new IllegalArgumentException("No transform from " + source.getName() + " to EPSG:" + target, e);
+        }
+    }
+
+    /**
+     * Transform packed coordinates in place.
+     *
+     * @param source the EPSG code of the source CRS
+     * @param target the EPSG code of the target CRS
+     * @param coordinates the coordinates as {@code x0, y0, x1, y1, ...}
+     * @param count the number of points to transform
+     * @throws IllegalArgumentException if a point cannot be transformed
+     */
+    public void transform(int source, int target, double[] coordinates, int count) {
+        if (source == target || count == 0) {
+            return;
+        }
+        transform(getTransform(source, target), coordinates, count);
+    }
+
+    private void transform(MathTransform transform, double[] coordinates, int count) {
+        if (count == 0) {
+            return;
+        }
+        if (count <= chunkSize) {
+            transformChunk(transform, coordinates, 0, count);
+        } else {
+            pool.invoke(new TransformTask(transform, coordinates, 0, count, chunkSize));
+        }
+    }
+
+    /**
+     * Transform a geometry, packing the coordinates of all its sequences into one bulk transform.
+     *
+     * @param geometry the geometry, which is not modified
+     * @param source the EPSG code of its CRS
+     * @param target the EPSG code of the target CRS
+     * @return a transformed copy, with the SRID of the target CRS
+     * @throws IllegalArgumentException if a point cannot be transformed
+     */
+    public Geometry transform(Geometry geometry, int source, int target) {
+        if (source == target) {
+            Geometry copy = geometry.copy();
+            copy.setSRID(target);
+            return copy;
+        }
+        return transform(geometry, getTransform(source, target), target);
+    }
+
+    /**
+     * Transform a geometry with a given transform, e.g. from a CRS that has no EPSG code.
+     *
+     * @param geometry the geometry, which is not modified
+     * @param transform the transform
+     * @param targetSrid the SRID of the transformed geometry
+     * @return a transformed copy
+     * @throws IllegalArgumentException if a point cannot be transformed
+     */
+    public Geometry transform(Geometry geometry, MathTransform transform, int targetSrid) {
+        Geometry copy = geometry.copy();
+        copy.setSRID(targetSrid);
+
+        List<CoordinateSequence> sequences = new ArrayList<>();
+        copy.apply(new SequenceCollector(sequences));
+        int count = 0;
+        for (CoordinateSequence sequence : sequences) {
+            count += sequence.size();
+        }
+        double[] coordinates = new double[count * 2];
+        int k = 0;
+        for (CoordinateSequence sequence : sequences) {
+            for (int i = 0; i < sequence.size(); i++) {
+                coordinates[k++] = sequence.getX(i);
+                coordinates[k++] = sequence.getY(i);
+            }
+        }
+        transform(transform, coordinates, count);
+        k = 0;
+        for (CoordinateSequence sequence : sequences) {
+            for (int i = 0; i < sequence.size(); i++) {
+                sequence.setOrdinate(i, 0, coordinates[k++]);
+                sequence.setOrdinate(i, 1, coordinates[k++]);
+            }
+        }
+        copy.geometryChanged();
+        return copy;
+    }
+
+    /**
+     * Transform an envelope. Its edges are sampled, so the result covers the curved outline of
+     * the envelope in the target CRS, not just its transformed corners.
+     *
+     * @param envelope the envelope
+     * @param source the EPSG code of its CRS
+     * @param target the EPSG code of the target CRS
+     * @return the envelope of the transformed outline
+     * @throws IllegalArgumentException if the envelope cannot be transformed
+     */
+    public Envelope transform(Envelope envelope, int source, int target) {
+        if (source == target) {
+            return new Envelope(envelope);
+        }
+        double[] edge = new double[ENVELOPE_EDGE_SAMPLES * 4 * 2];
+        int k = 0;
+        for (int i = 0; i < ENVELOPE_EDGE_SAMPLES; i++) {
+            double t = i / (double) ENVELOPE_EDGE_SAMPLES;
+            double x = envelope.getMinX() + t * envelope.getWidth();
+            double y = envelope.getMinY() + t * envelope.getHeight();
+            edge[k++] = x;
+            edge[k++] = envelope.getMinY();
+            edge[k++] = envelope.getMaxX();
+            edge[k++] = y;
+            edge[k++] = envelope.getMaxX() - t * envelope.getWidth();
+            edge[k++] = envelope.getMaxY();
+            edge[k++] = envelope.getMinX();
+            edge[k++] = envelope.getMaxY() - t * envelope.getHeight();
+        }
+        transform(source, target, edge, edge.length / 2);
+
+        Envelope transformed = new Envelope();
+        for (int i = 0; i < edge.length; i += 2) {
+            transformed.expandToInclude(edge[i], edge[i + 1]);
+        }
+        return transformed;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private static void transformChunk(MathTransform transform, double[] coordinates, int first, int count) {
+        try {
+            transform.transform(coordinates, 2 * first, coordinates, 2 * first, count);
+        } catch (TransformException e) {
+            throw new IllegalArgumentException("Coordinates cannot be transformed", e);
+        }
+    }
+
+    /**
+     * Splits a range of points in halves until it fits in a chunk.
+     */
+    private static final class TransformTask extends RecursiveAction {
+
+        private final MathTransform transform;
+        private final double[] coordinates;
+        private final int first;
+        private final int count;
+        private final int chunkSize;
+
+        TransformTask(MathTransform transform, double[] coordinates, int first, int count, int chunkSize) {
+            this.transform = transform;
+            this.coordinates = coordinates;
+            this.first = first;
+            this.count = count;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (count <= chunkSize) {
+                transformChunk(transform, coordinates, first, count);
+                return;
+            }
+            int half = count / 2;
+            invokeAll(new TransformTask(transform, coordinates, first, half, chunkSize),
+                    new TransformTask(transform, coordinates, first + half, count - half, chunkSize));
+        }
+    }
+
+    /**
+     * Collects the coordinate sequences of a geometry.
+     */
+    private record SequenceCollector(List<CoordinateSequence> sequences) implements CoordinateSequenceFilter {
+
+        @Override
+        public void filter(CoordinateSequence sequence, int index) {
+            if (index == 0) {
+                sequences.add(sequence);
+            }
+        }
+
+        @Override
+        public boolean isDone() {
+            return false;
+        }
+
+        @Override
+        public boolean isGeometryChanged() {
+            return false;
+        }
+    }
+}
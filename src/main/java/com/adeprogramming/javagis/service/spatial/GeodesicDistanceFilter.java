@@ -0,0 +1,205 @@
+package com.adeprogramming.javagis.service.spatial;
+
+import org.geotools.referencing.GeodeticCalculator;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.util.AffineTransformation;
+import org.locationtech.jts.operation.distance.DistanceOp;
+
+import java.util.function.Predicate;
+
+/**
+ * Tests whether WGS 84 geometries lie within a distance in metres of a query geometry,
+ * measured on the WGS 84 ellipsoid like PostGIS measures geography distances.
+ * <p>
+ * The closest points of a candidate and the query are found in a local plane, in which longitudes
+ * are scaled by the cosine of the query latitude, and the geodesic distance between them is compared
+ * with the limit. That distance is never shorter than the true one, so a geometry beyond the limit is
+ * never accepted; one within a few millimetres of the limit may be missed when the plane and the
+ * ellipsoid disagree on which points are closest. Not thread-safe.
+ * <p>
+ * For nearest searches, the distance to anything inside an envelope is bounded from below by the
+ * great-circle distance on a sphere no larger than the ellipsoid is anywhere: with radius
+ * a(1 - e²), the smallest radius of curvature of WGS 84, every path is at least as long on the
+ * ellipsoid as on the sphere.
+ */
+final class GeodesicDistanceFilter implements Predicate<Geometry>, SpatialIndex.Distance {
+
+    /** Length of a degree of latitude at the equator, the shortest anywhere. */
+    private static final double MIN_METRES_PER_DEGREE_LATITUDE = 110_574;
+
+    /** Length of a degree of longitude on the equatorial circle, a lower bound once scaled by cos(lat). */
+    private static final double MIN_METRES_PER_DEGREE_LONGITUDE = 111_319;
+
+    private static final double MIN_LONGITUDE_SCALE = 1e-3;
+
+    /** Meridional radius of curvature of WGS 84 at the equator, its smallest radius of curvature. */
+    private static final double MIN_RADIUS = 6_335_439;
+
+    private final double distance;
+    private final double longitudeScale;
+    private final Geometry localQuery;
+    private final Envelope searchEnvelope;
+    private final GeodeticCalculator calculator = new GeodeticCalculator();
+    private final double centreLongitude;
+    private final double centreLatitude;
+    private final double queryRadius;
+
+    /**
+     * @param query the query geometry (WGS 84)
+     * @param distance the distance in metres
+     */
+    GeodesicDistanceFilter(Geometry query, double distance) {
+        if (distance < 0 || Double.isNaN(distance)) {
+            throw new IllegalArgumentException("The distance must not be negative");
+        }
+        Envelope envelope = query.getEnvelopeInternal();
+        this.distance = distance;
+        this.longitudeScale = Math.max(Math.cos(Math.toRadians((envelope.getMinY() + envelope.getMaxY()) / 2)),
+                MIN_LONGITUDE_SCALE);
+        this.localQuery = toLocal(query);
+        this.searchEnvelope = searchEnvelope(envelope, distance);
+        this.centreLongitude = (envelope.getMinX() + envelope.getMaxX()) / 2;
+        this.centreLatitude = (envelope.getMinY() + envelope.getMaxY()) / 2;
+        this.queryRadius = queryRadius(envelope);
+    }
+
+    /**
+     * @return an envelope in degrees containing every point within the distance of the query
+     */
+    Envelope getSearchEnvelope() {
+        return searchEnvelope;
+    }
+
+    @Override
+    public boolean test(Geometry candidate) {
+        if (!searchEnvelope.intersects(candidate.getEnvelopeInternal())) {
+            return false;
+        }
+        return distance(candidate) <= distance;
+    }
+
+    /**
+     * Get the geodesic distance between the closest points of a geometry and the query.
+     *
+     * @param candidate the geometry (WGS 84)
+     * @return the distance in metres
+     */
+    @Override
+    public double distance(Geometry candidate) {
+        Coordinate[] closest = DistanceOp.nearestPoints(localQuery, toLocal(candidate));
+        return geodesicDistance(closest[0], closest[1]);
+    }
+
+    /**
+     * Get a lower bound on the distance from the query to anything inside a WGS 84 envelope:
+     * the sphere distance from the centre of the query envelope, less the distance from that
+     * centre to the farthest corner of the query envelope.
+     */
+    @Override
+    public double distance(double minX, double minY, double maxX, double maxY) {
+        return Math.max(sphereDistance(centreLongitude, centreLatitude, minX, minY, maxX, maxY) - queryRadius, 0);
+    }
+
+    /**
+     * Get the great-circle distance on the smallest sphere from a point to a longitude-latitude
+     * box. If the point's meridian crosses the box, the box is straight north or south of it;
+     * otherwise the closest point is on one of the two bounding meridians.
+     */
+    static double sphereDistance(double longitude, double latitude,
+                                 double minX, double minY, double maxX, double maxY) {
+        if (longitude >= minX && longitude <= maxX) {
+            if (latitude < minY) {
+                return Math.toRadians(minY - latitude) * MIN_RADIUS;
+            }
+            return latitude > maxY ? Math.toRadians(latitude - maxY) * MIN_RADIUS : 0;
+        }
+        return Math.min(meridianDistance(longitude, latitude, minX, minY, maxY),
+                meridianDistance(longitude, latitude, maxX, minY, maxY));
+    }
+
+    private static double meridianDistance(double longitude, double latitude,
+                                           double meridian, double minY, double maxY) {
+        double phi = Math.toRadians(latitude);
+        double deltaLambda = Math.toRadians(meridian - longitude);
+        // cos(d) = sin(phi) sin(phi') + cos(phi) cos(phi') cos(deltaLambda) peaks at this phi', which
+        // lies beyond a pole when the meridian is on the far side; otherwise an end is closest
+        double peak = Math.toDegrees(Math.atan2(Math.sin(phi), Math.cos(phi) * Math.cos(deltaLambda)));
+        double distance = Math.min(sphereDistance(phi, deltaLambda, minY), sphereDistance(phi, deltaLambda, maxY));
+        if (peak > minY && peak < maxY) {
+            distance = Math.min(distance, sphereDistance(phi, deltaLambda, peak));
+        }
+        return distance;
+    }
+
+    private static double sphereDistance(double phi, double deltaLambda, double latitude) {
+        double phiPrime = Math.toRadians(latitude);
+        double cosine = Math.sin(phi) * Math.sin(phiPrime)
+                + Math.cos(phi) * Math.cos(phiPrime) * Math.cos(deltaLambda);
+        return Math.acos(Math.max(-1, Math.min(1, cosine))) * MIN_RADIUS;
+    }
+
+    /**
+     * Get the geodesic distance from the centre of the query envelope to its farthest corner,
+     * with a margin for edges bulging beyond the corners on the ellipsoid.
+     */
+    private double queryRadius(Envelope envelope) {
+        if (envelope.getWidth() == 0 && envelope.getHeight() == 0) {
+            return 0;
+        }
+        double radius = 0;
+        for (double x : new double[]{envelope.getMinX(), envelope.getMaxX()}) {
+            for (double y : new double[]{envelope.getMinY(), envelope.getMaxY()}) {
+                calculator.setStartingGeographicPoint(centreLongitude, centreLatitude);
+                calculator.setDestinationGeographicPoint(x, y);
+                radius = Math.max(radius, calculator.getOrthodromicDistance());
+            }
+        }
+        return radius * 1.01 + 1;
+    }
+
+    /**
+     * Get the distance between two local plane points on the ellipsoid.
+     */
+    private double geodesicDistance(Coordinate a, Coordinate b) {
+        if (a.equals2D(b)) {
+            return 0;
+        }
+        calculator.setStartingGeographicPoint(clampLongitude(a.x / longitudeScale), clampLatitude(a.y));
+        calculator.setDestinationGeographicPoint(clampLongitude(b.x / longitudeScale), clampLatitude(b.y));
+        return calculator.getOrthodromicDistance();
+    }
+
+    private Geometry toLocal(Geometry geometry) {
+        return AffineTransformation.scaleInstance(longitudeScale, 1).transform(geometry);
+    }
+
+    /**
+     * Grow the query envelope by the distance, using the shortest degree lengths so nothing
+     * within the distance is cut off. Near the poles and across the antimeridian every
+     * longitude is searched.
+     */
+    private static Envelope searchEnvelope(Envelope envelope, double distance) {
+        double latitudeMargin = distance / MIN_METRES_PER_DEGREE_LATITUDE;
+        double minY = Math.max(envelope.getMinY() - latitudeMargin, -90);
+        double maxY = Math.min(envelope.getMaxY() + latitudeMargin, 90);
+        double cosine = Math.cos(Math.toRadians(Math.max(Math.abs(minY), Math.abs(maxY))));
+        double longitudeMargin = distance / (MIN_METRES_PER_DEGREE_LONGITUDE * cosine);
+        double minX = envelope.getMinX() - longitudeMargin;
+        double maxX = envelope.getMaxX() + longitudeMargin;
+        if (!(minX >= -180 && maxX <= 180)) {
+            minX = -180;
+            maxX = 180;
+        }
+        return new Envelope(minX, maxX, minY, maxY);
+    }
+
+    private static double clampLongitude(double longitude) {
+        return Math.max(-180, Math.min(180, longitude));
+    }
+
+    private static double clampLatitude(double latitude) {
+        return Math.max(-90, Math.min(90, latitude));
+    }
+}
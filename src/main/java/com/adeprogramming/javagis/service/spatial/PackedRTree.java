@@ -0,0 +1,639 @@
+package com.adeprogramming.javagis.service.spatial;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A read-only R-tree of geometries packed into a file, opened by memory-mapping it.
+ * <p>
+ * The items are tiled Sort-Tile-Recursive style: sorted into vertical slices by the x of their
+ * envelope centre and within each slice by y, then grouped into leaf nodes of
+ * {@link #NODE_CAPACITY} consecutive items; every higher level groups consecutive nodes of the
+ * level below. Because children are always consecutive, nodes store only their envelope and the
+ * tree needs no pointers. Opening a file therefore costs a header read and one mapping, whatever
+ * the number of items.
+ * <p>
+ * File layout, little-endian:
+ * <pre>
+ * header   magic, format version, item count, node capacity, watermark,
+ *          and the offsets of the following sections
+ * wkb      the geometry of each item as WKB, in the order the items were added
+ * items    per item: id, minX, minY, maxX, maxY, WKB offset and length, in tree order
+ * nodes    per node: minX, minY, maxX, maxY, level by level from the leaves up
+ * ids      the item ids in ascending order, followed by the tree position of each
+ * </pre>
+ * Only the sections from {@code items} onwards are mapped; geometries are read with positional
+ * reads, so the WKB section may exceed the 2 GB limit of a single mapping.
+ */
+public final class PackedRTree implements Closeable {
+
+    public static final int FORMAT_VERSION = 1;
+    public static final int NODE_CAPACITY = 16;
+
+    private static final int MAGIC = 0x5853494A; // "JISX"
+    private static final int HEADER_BYTES = 64;
+    private static final int ITEM_BYTES = 52;
+    private static final int NODE_BYTES = 32;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final ByteBuffer index;
+    private final int size;
+    private final long watermark;
+    private final int nodesStart;
+    private final int idsStart;
+    private final int[] levelStarts;
+    private final int[] levelCounts;
+
+    private PackedRTree(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(header, 0);
+            header.flip();
+            if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION
+                    || header.getInt(12) != NODE_CAPACITY) {
+                throw new IOException("Not a spatial index snapshot of format " + FORMAT_VERSION + ": " + file);
+            }
+            this.size = header.getInt(8);
+            this.watermark = header.getLong(16);
+            long itemsOffset = header.getLong(24);
+            long mapped = channel.size() - itemsOffset;
+            if (mapped > Integer.MAX_VALUE) {
+                throw new IOException("Spatial index snapshot too large to map: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, itemsOffset, mapped);
+            this.index = buffer.order(ByteOrder.LITTLE_ENDIAN);
+            this.nodesStart = (int) (header.getLong(32) - itemsOffset);
+            this.idsStart = (int) (header.getLong(40) - itemsOffset);
+
+            int[] counts = levelCounts(size);
+            this.levelCounts = counts;
+            this.levelStarts = new int[counts.length];
+            for (int level = 1; level < counts.length; level++) {
+                levelStarts[level] = levelStarts[level - 1] + counts[level - 1];
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open a packed tree file.
+     *
+     * @param file the file
+     * @return the tree
+     * @throws IOException if the file cannot be read or is not a snapshot of the current format
+     */
+    public static PackedRTree open(Path file) throws IOException {
+        return new PackedRTree(file);
+    }
+
+    /**
+     * Start writing a packed tree file. The file only appears once the writer is finished.
+     *
+     * @param file the file to create
+     * @return the writer
+     */
+    public static Writer writer(Path file) throws IOException {
+        return new Writer(file);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return the number of items
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the latest modification time of the items in epoch milliseconds, as given by the writer
+     */
+    public long getWatermark() {
+        return watermark;
+    }
+
+    /**
+     * Start a best-first traversal, which returns the items in increasing order of a lower bound
+     * on their distance from a query. Nodes and items whose bound is infinite are skipped.
+     *
+     * @param bound the lower bound on the distance from the query to anything inside an envelope
+     * @return the traversal
+     */
+    public NearestCursor nearest(EnvelopeDistance bound) {
+        return new NearestCursor(bound);
+    }
+
+    /**
+     * Visit the items whose envelope intersects a search envelope.
+     *
+     * @param search the search envelope
+     * @param visitor receives the tree position of each item
+     */
+    public void query(Envelope search, IntConsumer visitor) {
+        if (size == 0) {
+            return;
+        }
+        double minX = search.getMinX();
+        double minY = search.getMinY();
+        double maxX = search.getMaxX();
+        double maxY = search.getMaxY();
+
+        int top = levelCounts.length - 1;
+        int[] levels = new int[levelCounts.length * NODE_CAPACITY];
+        int[] nodes = new int[levels.length];
+        int depth = 0;
+        levels[depth] = top;
+        nodes[depth++] = 0;
+        while (depth > 0) {
+            int level = levels[--depth];
+            int node = nodes[depth];
+            if (!intersects(nodesStart + (levelStarts[level] + node) * NODE_BYTES, minX, minY, maxX, maxY)) {
+                continue;
+            }
+            int first = node * NODE_CAPACITY;
+            if (level == 0) {
+                int last = Math.min(first + NODE_CAPACITY, size);
+                for (int item = first; item < last; item++) {
+                    if (intersects(item * ITEM_BYTES + 8, minX, minY, maxX, maxY)) {
+                        visitor.accept(item);
+                    }
+                }
+            } else {
+                int last = Math.min(first + NODE_CAPACITY, levelCounts[level - 1]);
+                for (int child = first; child < last; child++) {
+                    levels[depth] = level - 1;
+                    nodes[depth++] = child;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the id of the item at a tree position
+     */
+    public long id(int item) {
+        return index.getLong(item * ITEM_BYTES);
+    }
+
+    /**
+     * @return the envelope of the item at a tree position
+     */
+    public Envelope envelope(int item) {
+        int position = item * ITEM_BYTES + 8;
+        return new Envelope(index.getDouble(position), index.getDouble(position + 16),
+                index.getDouble(position + 8), index.getDouble(position + 24));
+    }
+
+    /**
+     * @return the WKB of the item at a tree position
+     */
+    public byte[] wkb(int item) {
+        int position = item * ITEM_BYTES;
+        byte[] wkb = new byte[index.getInt(position + 48)];
+        try {
+            readFully(ByteBuffer.wrap(wkb), index.getLong(position + 40));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return wkb;
+    }
+
+    /**
+     * @return the geometry of the item at a tree position
+     */
+    public Geometry geometry(int item, WKBReader reader) {
+        try {
+            return reader.read(wkb(item));
+        } catch (ParseException e) {
+            throw new IllegalStateException("Corrupt geometry in " + file, e);
+        }
+    }
+
+    /**
+     * Find the tree position of an item.
+     *
+     * @param id the item id
+     * @return the tree position, or -1 if there is no such item
+     */
+    public int find(long id) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long candidate = sortedId(middle);
+            if (candidate < id) {
+                low = middle + 1;
+            } else if (candidate > id) {
+                high = middle - 1;
+            } else {
+                return index.getInt(idsStart + size * 8 + middle * 4);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the k-th smallest item id
+     */
+    public long sortedId(int k) {
+        return index.getLong(idsStart + k * 8);
+    }
+
+    /**
+     * Close the file. The mapping stays valid until it is garbage collected, but geometries
+     * can no longer be read.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private boolean intersects(int position, double minX, double minY, double maxX, double maxY) {
+        return index.getDouble(position) <= maxX && index.getDouble(position + 16) >= minX
+                && index.getDouble(position + 8) <= maxY && index.getDouble(position + 24) >= minY;
+    }
+
+    private void readFully(ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            int read = channel.read(target, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of " + file);
+            }
+            position += read;
+        }
+    }
+
+    private static int[] levelCounts(int items) {
+        if (items == 0) {
+            return new int[0];
+        }
+        int[] counts = new int[32];
+        int levels = 0;
+        int count = items;
+        do {
+            count = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+            counts[levels++] = count;
+        } while (count > 1);
+        return Arrays.copyOf(counts, levels);
+    }
+
+    /**
+     * Lower bound on the distance from a query to anything inside an envelope.
+     */
+    @FunctionalInterface
+    public interface EnvelopeDistance {
+
+        double distance(double minX, double minY, double maxX, double maxY);
+    }
+
+    /**
+     * Best-first traversal of the tree: nodes and items are kept in a binary heap keyed by the
+     * lower bound of their envelope, and a node is expanded when it reaches the top of the heap.
+     * Only the nodes whose bound is below that of the items returned so far are expanded.
+     * Not thread-safe.
+     */
+    public final class NearestCursor {
+
+        private final EnvelopeDistance bound;
+        private double[] keys = new double[64];
+        // Node level + 1 in the high half, 0 for items; node or item index in the low half
+        private long[] refs = new long[64];
+        private int count;
+        private double distance;
+
+        private NearestCursor(EnvelopeDistance bound) {
+            this.bound = bound;
+            if (size > 0) {
+                int top = levelCounts.length - 1;
+                push(envelopeBound(nodesStart + levelStarts[top] * NODE_BYTES), top + 1, 0);
+            }
+        }
+
+        /**
+         * @return the tree position of the next item, or -1 if there are none left
+         */
+        public int next() {
+            while (count > 0) {
+                double key = keys[0];
+                long ref = refs[0];
+                pop();
+                int level = (int) (ref >>> 32) - 1;
+                int index = (int) ref;
+                if (level < 0) {
+                    distance = key;
+                    return index;
+                }
+                int first = index * NODE_CAPACITY;
+                if (level == 0) {
+                    int last = Math.min(first + NODE_CAPACITY, size);
+                    for (int item = first; item < last; item++) {
+                        push(envelopeBound(item * ITEM_BYTES + 8), 0, item);
+                    }
+                } else {
+                    int last = Math.min(first + NODE_CAPACITY, levelCounts[level - 1]);
+                    for (int child = first; child < last; child++) {
+                        push(envelopeBound(nodesStart + (levelStarts[level - 1] + child) * NODE_BYTES), level, child);
+                    }
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return the bound of the item last returned by {@link #next()}; no later item has a lower one
+         */
+        public double distance() {
+            return distance;
+        }
+
+        private double envelopeBound(int position) {
+            return bound.distance(index.getDouble(position), index.getDouble(position + 8),
+                    index.getDouble(position + 16), index.getDouble(position + 24));
+        }
+
+        private void push(double key, int level, int index) {
+            if (key == Double.POSITIVE_INFINITY) {
+                return;
+            }
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+                refs = Arrays.copyOf(refs, count * 2);
+            }
+            long ref = (long) level << 32 | (index & 0xFFFFFFFFL);
+            int slot = count++;
+            while (slot > 0) {
+                int parent = (slot - 1) >>> 1;
+                if (keys[parent] <= key) {
+                    break;
+                }
+                keys[slot] = keys[parent];
+                refs[slot] = refs[parent];
+                slot = parent;
+            }
+            keys[slot] = key;
+            refs[slot] = ref;
+        }
+
+        private void pop() {
+            double key = keys[--count];
+            long ref = refs[count];
+            int slot = 0;
+            int half = count >>> 1;
+            while (slot < half) {
+                int child = 2 * slot + 1;
+                if (child + 1 < count && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (key <= keys[child]) {
+                    break;
+                }
+                keys[slot] = keys[child];
+                refs[slot] = refs[child];
+                slot = child;
+            }
+            keys[slot] = key;
+            refs[slot] = ref;
+        }
+    }
+
+    /**
+     * Writes a packed tree file. Geometries are streamed to the file as they are added; only the
+     * envelopes and ids are kept in memory until the tree is packed.
+     */
+    public static final class Writer implements Closeable {
+
+        private final Path file;
+        private final Path temporary;
+        private final FileChannel channel;
+        private long position = HEADER_BYTES;
+
+        private long[] ids = new long[1024];
+        private double[] envelopes = new double[4 * 1024];
+        private long[] wkbOffsets = new long[1024];
+        private int[] wkbLengths = new int[1024];
+        private int size;
+        private long watermark = Long.MIN_VALUE;
+
+        private Writer(Path file) throws IOException {
+            this.file = file;
+            this.temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            this.channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        /**
+         * Add an item.
+         *
+         * @param id the item id, unique within the tree
+         * @param envelope the envelope of the geometry
+         * @param wkb the geometry as WKB
+         * @param modified the modification time of the item in epoch milliseconds
+         */
+        public void add(long id, Envelope envelope, byte[] wkb, long modified) throws IOException {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                envelopes = Arrays.copyOf(envelopes, capacity * 4);
+                wkbOffsets = Arrays.copyOf(wkbOffsets, capacity);
+                wkbLengths = Arrays.copyOf(wkbLengths, capacity);
+            }
+            ids[size] = id;
+            envelopes[4 * size] = envelope.getMinX();
+            envelopes[4 * size + 1] = envelope.getMinY();
+            envelopes[4 * size + 2] = envelope.getMaxX();
+            envelopes[4 * size + 3] = envelope.getMaxY();
+            wkbOffsets[size] = position;
+            wkbLengths[size] = wkb.length;
+            size++;
+            watermark = Math.max(watermark, modified);
+            position += writeFully(ByteBuffer.wrap(wkb), position);
+        }
+
+        /**
+         * Pack the tree, write it and open the finished file.
+         *
+         * @return the tree
+         */
+        public PackedRTree finish() throws IOException {
+            int[] order = tileOrder();
+            int[] levelCounts = levelCounts(size);
+            int nodeCount = Arrays.stream(levelCounts).sum();
+
+            long itemsOffset = position;
+            ByteBuffer items = ByteBuffer.allocate(size * ITEM_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int item : order) {
+                items.putLong(ids[item]);
+                items.putDouble(envelopes[4 * item]).putDouble(envelopes[4 * item + 1])
+                        .putDouble(envelopes[4 * item + 2]).putDouble(envelopes[4 * item + 3]);
+                items.putLong(wkbOffsets[item]).putInt(wkbLengths[item]);
+            }
+            position += writeFully(items.flip(), position);
+
+            long nodesOffset = position;
+            double[] below = new double[size * 4];
+            for (int i = 0; i < size; i++) {
+                System.arraycopy(envelopes, 4 * order[i], below, 4 * i, 4);
+            }
+            ByteBuffer nodes = ByteBuffer.allocate(nodeCount * NODE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            int belowCount = size;
+            for (int count : levelCounts) {
+                double[] level = new double[count * 4];
+                for (int node = 0; node < count; node++) {
+                    double minX = Double.POSITIVE_INFINITY;
+                    double minY = Double.POSITIVE_INFINITY;
+                    double maxX = Double.NEGATIVE_INFINITY;
+                    double maxY = Double.NEGATIVE_INFINITY;
+                    int last = Math.min((node + 1) * NODE_CAPACITY, belowCount);
+                    for (int child = node * NODE_CAPACITY; child < last; child++) {
+                        minX = Math.min(minX, below[4 * child]);
+                        minY = Math.min(minY, below[4 * child + 1]);
+                        maxX = Math.max(maxX, below[4 * child + 2]);
+                        maxY = Math.max(maxY, below[4 * child + 3]);
+                    }
+                    level[4 * node] = minX;
+                    level[4 * node + 1] = minY;
+                    level[4 * node + 2] = maxX;
+                    level[4 * node + 3] = maxY;
+                    nodes.putDouble(minX).putDouble(minY).putDouble(maxX).putDouble(maxY);
+                }
+                below = level;
+                belowCount = count;
+            }
+            position += writeFully(nodes.flip(), position);
+
+            long idsOffset = position;
+            long[] treeIds = new long[size];
+            for (int i = 0; i < size; i++) {
+                treeIds[i] = ids[order[i]];
+            }
+            long[] sortedIds = treeIds.clone();
+            Arrays.sort(sortedIds);
+            int[] treePositions = new int[size];
+            for (int k = 0; k < size; k++) {
+                if (k > 0 && sortedIds[k] == sortedIds[k - 1]) {
+                    throw new IllegalStateException("Duplicate id " + sortedIds[k]);
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                treePositions[Arrays.binarySearch(sortedIds, treeIds[i])] = i;
+            }
+            ByteBuffer idSection = ByteBuffer.allocate(size * 12).order(ByteOrder.LITTLE_ENDIAN);
+            for (long id : sortedIds) {
+                idSection.putLong(id);
+            }
+            for (int treePosition : treePositions) {
+                idSection.putInt(treePosition);
+            }
+            position += writeFully(idSection.flip(), position);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(size).putInt(NODE_CAPACITY)
+                    .putLong(size > 0 ? watermark : 0).putLong(itemsOffset).putLong(nodesOffset).putLong(idsOffset);
+            header.position(HEADER_BYTES);
+            writeFully(header.flip(), 0);
+
+            channel.force(true);
+            channel.close();
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return open(file);
+        }
+
+        /**
+         * Discard an unfinished file.
+         */
+        @Override
+        public void close() throws IOException {
+            if (channel.isOpen()) {
+                channel.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+
+        /**
+         * Order the items into tiles: vertical slices by envelope centre x, each sorted by centre y.
+         */
+        private int[] tileOrder() {
+            if (size == 0) {
+                return new int[0];
+            }
+            double[] cx = new double[size];
+            double[] cy = new double[size];
+            for (int i = 0; i < size; i++) {
+                cx[i] = (envelopes[4 * i] + envelopes[4 * i + 2]) / 2;
+                cy[i] = (envelopes[4 * i + 1] + envelopes[4 * i + 3]) / 2;
+            }
+            long[] byX = quantised(cx);
+            Arrays.sort(byX);
+
+            int leaves = (size + NODE_CAPACITY - 1) / NODE_CAPACITY;
+            int slices = (int) Math.ceil(Math.sqrt(leaves));
+            int sliceSize = slices * NODE_CAPACITY;
+            long[] byY = quantised(cy);
+            int[] order = new int[size];
+            long[] slice = new long[Math.min(sliceSize, size)];
+            for (int from = 0; from < size; from += sliceSize) {
+                int to = Math.min(from + sliceSize, size);
+                for (int i = from; i < to; i++) {
+                    slice[i - from] = byY[(int) byX[i]];
+                }
+                Arrays.sort(slice, 0, to - from);
+                for (int i = from; i < to; i++) {
+                    order[i] = (int) slice[i - from];
+                }
+            }
+            return order;
+        }
+
+        /**
+         * Pack each coordinate, scaled to 31 bits over the range of all of them, above the item
+         * index, so that sorting the longs sorts the items by coordinate.
+         */
+        private long[] quantised(double[] coordinates) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (double value : coordinates) {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            double scale = max > min ? Integer.MAX_VALUE / (max - min) : 0;
+            long[] keys = new long[coordinates.length];
+            for (int i = 0; i < coordinates.length; i++) {
+                long quantised = (long) ((coordinates[i] - min) * scale);
+                keys[i] = quantised << 32 | i;
+            }
+            return keys;
+        }
+
+        private int writeFully(ByteBuffer source, long at) throws IOException {
+            int written = 0;
+            while (source.hasRemaining()) {
+                written += channel.write(source, at + written);
+            }
+            return written;
+        }
+    }
+}
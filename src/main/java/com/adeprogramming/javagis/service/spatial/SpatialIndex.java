@@ -0,0 +1,538 @@
+package com.adeprogramming.javagis.service.spatial;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Spatial index of entity geometries by entity ID, for queries that must not wait for the database.
+ * <p>
+ * Readers work on an immutable {@link Snapshot}: a {@link PackedRTree} file, plus a small delta of
+ * geometries changed since the file was written and the set of packed IDs those changes supersede.
+ * Writers copy the delta on each change and publish a new snapshot, so readers never lock. Once the
+ * delta outgrows the compaction threshold, a new file is written in the background and changes
+ * made meanwhile are replayed onto it.
+ * <p>
+ * The files double as on-disk snapshots: they are named {@code <name>-<generation>.jsix} and on
+ * startup the newest one is mapped and caught up with what changed since its watermark, instead of
+ * reading every geometry again.
+ */
+public final class SpatialIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpatialIndex.class);
+
+    private static final String SUFFIX = ".jsix";
+    private static final long CLOSE_DELAY_SECONDS = 60;
+
+    private final String name;
+    private final Path directory;
+    private final int compactThreshold;
+    private final ScheduledExecutorService worker;
+
+    private volatile Snapshot snapshot;
+    private long generation;
+
+    // Changes made while a file is being written or caught up, replayed onto it; guarded by this
+    private Changes pending;
+
+    /**
+     * @param name the name of the index, used for its files
+     * @param directory the directory of the files
+     * @param compactThreshold the delta size at which a new file is written
+     * @param worker runs compactions and closes replaced files
+     */
+    public SpatialIndex(String name, Path directory, int compactThreshold, ScheduledExecutorService worker) {
+        this.name = name;
+        this.directory = directory;
+        this.compactThreshold = compactThreshold;
+        this.worker = worker;
+    }
+
+    /**
+     * @return true once the index has been loaded
+     */
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    /**
+     * @return the number of indexed geometries, or 0 if the index is not loaded
+     */
+    public int size() {
+        Snapshot current = snapshot;
+        return current != null ? current.size() : 0;
+    }
+
+    /**
+     * Load the index from the newest snapshot file, caught up through the source, or from the
+     * source alone if there is no usable snapshot. Changes made while loading are kept.
+     *
+     * @param source the source of the geometries
+     */
+    public void load(Source source) throws IOException {
+        synchronized (this) {
+            if (pending != null) {
+                throw new IllegalStateException("The index is already being loaded");
+            }
+            pending = new Changes();
+        }
+        try {
+            PackedRTree tree = openNewest();
+            Changes changes = new Changes();
+            if (tree != null) {
+                long start = System.nanoTime();
+                source.readChanges(tree, changes);
+                logger.info("Spatial index {} caught up {} changes since snapshot {} in {} ms", name,
+                        changes.size(), tree.getFile().getFileName(), (System.nanoTime() - start) / 1_000_000);
+            } else {
+                PackedRTree.Writer writer = PackedRTree.writer(nextFile());
+                try (writer) {
+                    source.writeAll(writer);
+                    tree = writer.finish();
+                }
+            }
+            install(tree, changes);
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                pending = null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Add or replace a geometry.
+     *
+     * @param id the entity ID
+     * @param geometry the geometry, which must not be modified afterwards
+     * @param modified the modification time of the entity in epoch milliseconds
+     */
+    public synchronized void upsert(long id, Geometry geometry, long modified) {
+        // Computes and caches the envelope before the geometry is shared between threads
+        geometry.getEnvelopeInternal();
+        if (pending != null) {
+            pending.upsert(id, geometry, modified);
+        }
+        Snapshot current = snapshot;
+        if (current != null) {
+            snapshot = current.withUpsert(id, new Entry(geometry, modified));
+            compactIfNeeded();
+        }
+    }
+
+    /**
+     * Remove a geometry.
+     *
+     * @param id the entity ID
+     */
+    public synchronized void remove(long id) {
+        if (pending != null) {
+            pending.remove(id);
+        }
+        Snapshot current = snapshot;
+        if (current != null) {
+            snapshot = current.withRemoval(id);
+            compactIfNeeded();
+        }
+    }
+
+    /**
+     * Find the entities whose geometry's envelope intersects a search envelope and whose
+     * geometry passes a test.
+     *
+     * @param search the search envelope
+     * @param refine the exact test of a candidate geometry
+     * @return the IDs of the matching entities
+     * @throws IllegalStateException if the index is not loaded
+     */
+    public List<Long> query(Envelope search, Predicate<Geometry> refine) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            throw new IllegalStateException("The spatial index is not loaded");
+        }
+        WKBReader reader = new WKBReader();
+        List<Long> result = new ArrayList<>();
+        current.tree.query(search, item -> {
+            long id = current.tree.id(item);
+            if (!current.superseded.contains(id) && refine.test(current.tree.geometry(item, reader))) {
+                result.add(id);
+            }
+        });
+        for (Map.Entry<Long, Entry> entry : current.delta.entrySet()) {
+            Geometry geometry = entry.getValue().geometry();
+            if (search.intersects(geometry.getEnvelopeInternal()) && refine.test(geometry)) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Start a search for the geometries nearest to a query, nearest first. Packed geometries are
+     * visited best-first through the tree, so only those that could be nearer than the ones
+     * already found are read.
+     *
+     * @param distance the distance from the query
+     * @param maxDistance the distance beyond which geometries are not returned
+     * @return the search, to be advanced by the caller
+     * @throws IllegalStateException if the index is not loaded
+     */
+    public NearestCursor nearest(Distance distance, double maxDistance) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            throw new IllegalStateException("The spatial index is not loaded");
+        }
+        return new NearestCursor(current, distance, maxDistance);
+    }
+
+    private void compactIfNeeded() {
+        Snapshot current = snapshot;
+        if (pending != null || current.delta.size() + current.superseded.size() < compactThreshold) {
+            return;
+        }
+        compact();
+    }
+
+    /**
+     * Write the current state to a new file in the background. Must hold the lock.
+     */
+    private void compact() {
+        Snapshot current = snapshot;
+        pending = new Changes();
+        try {
+            worker.execute(() -> {
+                try {
+                    install(current.write(nextFile()), new Changes());
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Could not compact spatial index {}", name, e);
+                    synchronized (this) {
+                        pending = null;
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending = null;
+        }
+    }
+
+    private synchronized void install(PackedRTree tree, Changes changes) {
+        Snapshot next = new Snapshot(tree, Map.of(), Set.of());
+        next = changes.applyTo(next);
+        next = pending.applyTo(next);
+        pending = null;
+
+        Snapshot previous = snapshot;
+        snapshot = next;
+        if (previous != null && previous.tree != tree) {
+            retire(previous.tree);
+        }
+        deleteOlderFiles(tree.getFile());
+        if (!changes.isEmpty()) {
+            // Persist the catch-up, so the next start begins from here
+            compact();
+        }
+    }
+
+    /**
+     * Close a replaced file once queries still running on it have finished.
+     */
+    private void retire(PackedRTree tree) {
+        try {
+            worker.schedule(() -> {
+                try {
+                    tree.close();
+                } catch (IOException e) {
+                    logger.warn("Could not close spatial index file {}", tree.getFile(), e);
+                }
+            }, CLOSE_DELAY_SECONDS, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the file is deleted on the next start
+        }
+    }
+
+    private PackedRTree openNewest() {
+        for (Path file : files()) {
+            try {
+                return PackedRTree.open(file);
+            } catch (IOException e) {
+                logger.warn("Ignoring unusable spatial index snapshot {}: {}", file, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private void deleteOlderFiles(Path current) {
+        for (Path file : files()) {
+            if (generationOf(file) < generationOf(current)) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    logger.warn("Could not delete spatial index file {}", file, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the snapshot files of this index, newest first
+     */
+    private List<Path> files() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(file -> generationOf(file) >= 0)
+                    .sorted((a, b) -> Long.compare(generationOf(b), generationOf(a)))
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized Path nextFile() {
+        List<Path> existing = files();
+        long newest = existing.isEmpty() ? 0 : generationOf(existing.get(0));
+        generation = Math.max(Math.max(generation + 1, newest + 1), System.currentTimeMillis());
+        return directory.resolve(name + "-" + generation + SUFFIX);
+    }
+
+    private long generationOf(Path file) {
+        String fileName = file.getFileName().toString();
+        String prefix = name + "-";
+        if (!fileName.startsWith(prefix) || !fileName.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(fileName.substring(prefix.length(), fileName.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Reads the geometries the index is built from.
+     */
+    public interface Source {
+
+        /**
+         * Add every geometry to a new file.
+         */
+        void writeAll(PackedRTree.Writer writer) throws IOException;
+
+        /**
+         * Collect what changed since a snapshot was written, i.e. geometries modified since its
+         * watermark and entities added or removed without being seen by the index.
+         */
+        void readChanges(PackedRTree snapshot, Changes changes);
+    }
+
+    /**
+     * A batch of changes, later ones replacing earlier ones for the same ID.
+     */
+    public static final class Changes {
+
+        private final Map<Long, Entry> upserts = new HashMap<>();
+        private final Set<Long> removals = new HashSet<>();
+
+        public void upsert(long id, Geometry geometry, long modified) {
+            geometry.getEnvelopeInternal();
+            removals.remove(id);
+            upserts.put(id, new Entry(geometry, modified));
+        }
+
+        public void remove(long id) {
+            upserts.remove(id);
+            removals.add(id);
+        }
+
+        public boolean contains(long id) {
+            return upserts.containsKey(id) || removals.contains(id);
+        }
+
+        public int size() {
+            return upserts.size() + removals.size();
+        }
+
+        public boolean isEmpty() {
+            return upserts.isEmpty() && removals.isEmpty();
+        }
+
+        Snapshot applyTo(Snapshot snapshot) {
+            Snapshot next = snapshot;
+            for (Long id : removals) {
+                next = next.withRemoval(id);
+            }
+            for (Map.Entry<Long, Entry> entry : upserts.entrySet()) {
+                next = next.withUpsert(entry.getKey(), entry.getValue());
+            }
+            return next;
+        }
+    }
+
+    /**
+     * Distance from a query, in any unit, as long as the bound on envelopes is in the same one.
+     */
+    public interface Distance extends PackedRTree.EnvelopeDistance {
+
+        /**
+         * @param geometry a geometry
+         * @return its distance from the query
+         */
+        double distance(Geometry geometry);
+    }
+
+    /**
+     * An entity found by a nearest search.
+     *
+     * @param id the entity ID
+     * @param distance its distance from the query
+     */
+    public record Neighbour(long id, double distance) {
+    }
+
+    /**
+     * Incremental nearest search over one snapshot. Candidates read from the tree are held in a
+     * queue by exact distance until the tree's frontier has passed them, so the geometries changed
+     * since the file was written, which are all queued up front, come out in the right place.
+     * Not thread-safe.
+     */
+    public static final class NearestCursor {
+
+        private final Snapshot snapshot;
+        private final Distance distance;
+        private final double maxDistance;
+        private final PackedRTree.NearestCursor tree;
+        private final PriorityQueue<Neighbour> candidates =
+                new PriorityQueue<>(Comparator.comparingDouble(Neighbour::distance));
+        private final WKBReader reader = new WKBReader();
+        private int pending;
+
+        private NearestCursor(Snapshot snapshot, Distance distance, double maxDistance) {
+            this.snapshot = snapshot;
+            this.distance = distance;
+            this.maxDistance = maxDistance;
+            this.tree = snapshot.tree.nearest((minX, minY, maxX, maxY) -> {
+                double bound = distance.distance(minX, minY, maxX, maxY);
+                return bound <= maxDistance ? bound : Double.POSITIVE_INFINITY;
+            });
+            for (Map.Entry<Long, Entry> entry : snapshot.delta.entrySet()) {
+                offer(entry.getKey(), entry.getValue().geometry());
+            }
+            this.pending = tree.next();
+        }
+
+        /**
+         * @return the next nearest entity, or null if there are none left within the maximum distance
+         */
+        public Neighbour next() {
+            while (true) {
+                Neighbour nearest = candidates.peek();
+                if (nearest != null && (pending < 0 || nearest.distance() <= tree.distance())) {
+                    return candidates.poll();
+                }
+                if (pending < 0) {
+                    return null;
+                }
+                long id = snapshot.tree.id(pending);
+                if (!snapshot.superseded.contains(id)) {
+                    offer(id, snapshot.tree.geometry(pending, reader));
+                }
+                pending = tree.next();
+            }
+        }
+
+        private void offer(long id, Geometry geometry) {
+            double d = distance.distance(geometry);
+            if (d <= maxDistance) {
+                candidates.add(new Neighbour(id, d));
+            }
+        }
+    }
+
+    private record Entry(Geometry geometry, long modified) {
+    }
+
+    /**
+     * An immutable state of the index.
+     *
+     * @param tree the packed file
+     * @param delta the geometries added or changed since the file was written
+     * @param superseded the IDs of packed geometries that were changed or removed since
+     */
+    private record Snapshot(PackedRTree tree, Map<Long, Entry> delta, Set<Long> superseded) {
+
+        Snapshot withUpsert(long id, Entry entry) {
+            Map<Long, Entry> nextDelta = new HashMap<>(delta);
+            nextDelta.put(id, entry);
+            return new Snapshot(tree, Collections.unmodifiableMap(nextDelta), supersede(id));
+        }
+
+        Snapshot withRemoval(long id) {
+            Map<Long, Entry> nextDelta = delta;
+            if (delta.containsKey(id)) {
+                nextDelta = new HashMap<>(delta);
+                nextDelta.remove(id);
+                nextDelta = Collections.unmodifiableMap(nextDelta);
+            }
+            return new Snapshot(tree, nextDelta, supersede(id));
+        }
+
+        private Set<Long> supersede(long id) {
+            if (superseded.contains(id) || tree.find(id) < 0) {
+                return superseded;
+            }
+            Set<Long> next = new HashSet<>(superseded);
+            next.add(id);
+            return Collections.unmodifiableSet(next);
+        }
+
+        /**
+         * Write the live geometries to a new file, copying packed ones without decoding them.
+         */
+        PackedRTree write(Path file) throws IOException {
+            PackedRTree.Writer writer = PackedRTree.writer(file);
+            try (writer) {
+                for (int item = 0; item < tree.size(); item++) {
+                    long id = tree.id(item);
+                    if (!superseded.contains(id)) {
+                        writer.add(id, tree.envelope(item), tree.wkb(item), tree.getWatermark());
+                    }
+                }
+                WKBWriter wkbWriter = new WKBWriter(2);
+                for (Map.Entry<Long, Entry> entry : delta.entrySet()) {
+                    Geometry geometry = entry.getValue().geometry();
+                    writer.add(entry.getKey(), geometry.getEnvelopeInternal(), wkbWriter.write(geometry),
+                            entry.getValue().modified());
+                }
+                return writer.finish();
+            }
+        }
+
+        int size() {
+            return tree.size() - superseded.size() + delta.size();
+        }
+    }
+}
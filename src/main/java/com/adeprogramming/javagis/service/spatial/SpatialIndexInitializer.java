@@ -0,0 +1,69 @@
+package com.adeprogramming.javagis.service.spatial;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Creates the GiST indexes behind the spatial queries on agricultural fields and monitoring
+ * stations on application startup: one on the geometry column for the topological predicates, and
+ * one on its cast to geography for distances in metres, which PostGIS only uses when the query
+ * casts the column the same way. Does nothing once the indexes exist.
+ * <p>
+ * The indexes are built {@code CONCURRENTLY}, so writes to large tables go on while they are
+ * built, and a table is only analyzed when one of its indexes was created. Each statement
+ * commits on its own; none runs in a transaction.
+ */
+@Component
+@Order(3)
+public class SpatialIndexInitializer implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpatialIndexInitializer.class);
+
+    private static final List<String> TABLES = List.of("agricultural_fields", "monitoring_stations");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public SpatialIndexInitializer(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        for (String table : TABLES) {
+            boolean created = createIndex("idx_" + table + "_geometry", table, "geometry");
+            created |= createIndex("idx_" + table + "_geography", table, "(CAST(geometry AS geography))");
+            if (created) {
+                jdbcTemplate.execute("ANALYZE " + table);
+            }
+        }
+    }
+
+    /**
+     * @return true if the index had to be built
+     */
+    private boolean createIndex(String name, String table, String expression) {
+        Boolean valid = jdbcTemplate.queryForObject(
+                "SELECT (SELECT indisvalid FROM pg_index WHERE indexrelid = to_regclass(?))",
+                Boolean.class, name);
+        if (Boolean.TRUE.equals(valid)) {
+            return false;
+        }
+        long start = System.nanoTime();
+        if (valid != null) {
+            // A build that was interrupted leaves an invalid index behind
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + name);
+        }
+        jdbcTemplate.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + name + " ON " + table +
+                " USING GIST (" + expression + ")");
+        logger.info("Created spatial index {} in {} ms", name, (System.nanoTime() - start) / 1_000_000);
+        return true;
+    }
+}
@@ -0,0 +1,635 @@
+package com.adeprogramming.javagis.service.spatial;
+
+import com.adeprogramming.javagis.model.agricultural.AgriculturalField;
+import com.adeprogramming.javagis.model.base.BaseEntity;
+import com.adeprogramming.javagis.model.environmental.MonitoringStation;
+import com.adeprogramming.javagis.model.listener.SpatialEntityChangedEvent;
+import com.adeprogramming.javagis.model.spatial.SpatialEntity;
+import com.adeprogramming.javagis.payload.spatial.NearestNeighboursResponse;
+import com.adeprogramming.javagis.repository.agricultural.AgriculturalFieldRepository;
+import com.adeprogramming.javagis.repository.environmental.MonitoringStationRepository;
+import com.adeprogramming.javagis.service.environmental.MonitoringStationsChangedEvent;
+import jakarta.annotation.PreDestroy;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * Service for spatial queries on agricultural fields and monitoring stations.
+ * When enabled, the geometries of both are held in {@link SpatialIndex}es, which are kept in sync
+ * by the {@link SpatialEntityChangedEvent}s published once writes have committed. Candidates are found through the packed R-tree and
+ * refined against the query geometry prepared once per query; the matching entities are then
+ * loaded by primary key. Distances are in metres on the WGS 84 ellipsoid, as in the PostGIS
+ * geography queries. Nearest-neighbour searches walk the tree best first, loading entities in
+ * batches until enough pass the attribute filters, or let PostGIS walk its geography index with
+ * the {@code <->} operator. Until an index is loaded, or when it is disabled, the queries go to PostGIS.
+ * <p>
+ * Each index is persisted as a snapshot file. On startup the newest snapshot is mapped and caught
+ * up with the rows modified since its watermark, less a safety margin for transactions that
+ * committed late, and with rows added or deleted behind its back, found by comparing IDs. Only
+ * without a snapshot are all geometries read from the database.
+ */
+@Service
+public class SpatialIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpatialIndexService.class);
+
+    private static final int FETCH_SIZE = 10_000;
+    private static final int FETCH_BY_ID_BATCH = 1_000;
+
+    private static final String SELECT_GEOMETRIES =
+            "SELECT id, ST_AsBinary(geometry), ST_XMin(geometry), ST_YMin(geometry), ST_XMax(geometry), " +
+            "ST_YMax(geometry), COALESCE(updated_at, created_at) FROM %s WHERE geometry IS NOT NULL";
+    private static final String SELECT_MODIFIED_SINCE = SELECT_GEOMETRIES + " AND COALESCE(updated_at, created_at) > ?";
+    private static final String SELECT_BY_IDS = SELECT_GEOMETRIES + " AND id = ANY(?)";
+    private static final String SELECT_IDS = "SELECT id FROM %s WHERE geometry IS NOT NULL ORDER BY id";
+
+    public static final String SOURCE_SPATIAL_INDEX = "spatial-index";
+    public static final String SOURCE_DATABASE = "database";
+
+    private static final int MAX_NEAREST_BATCH = 1_024;
+
+    // The query geography must be a constant for the <-> ordering to walk the geography index
+    private static final String QUERY_GEOGRAPHY = "CAST(ST_GeomFromText(?, 4326) AS geography)";
+    private static final String SELECT_NEAREST =
+            "SELECT id, ST_Distance(CAST(geometry AS geography), " + QUERY_GEOGRAPHY + ") FROM %s " +
+            "WHERE geometry IS NOT NULL%s ORDER BY CAST(geometry AS geography) <-> " + QUERY_GEOGRAPHY + " LIMIT ?";
+    private static final String WITHIN_DISTANCE =
+            " AND ST_DWithin(CAST(geometry AS geography), " + QUERY_GEOGRAPHY + ", ?)";
+
+    private final AgriculturalFieldRepository agriculturalFieldRepository;
+    private final MonitoringStationRepository monitoringStationRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final long catchUpMarginMillis;
+    private final ScheduledExecutorService worker;
+    private final SpatialIndex fields;
+    private final SpatialIndex stations;
+
+    @Autowired
+    public SpatialIndexService(
+            AgriculturalFieldRepository agriculturalFieldRepository,
+            MonitoringStationRepository monitoringStationRepository,
+            DataSource dataSource,
+            PlatformTransactionManager transactionManager,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${spatial-index.enabled:true}") boolean enabled,
+            @Value("${spatial-index.directory:./data/spatial-index}") Path directory,
+            @Value("${spatial-index.compact-threshold:4096}") int compactThreshold,
+            @Value("${spatial-index.catch-up-margin:PT5M}") Duration catchUpMargin) {
+        this.agriculturalFieldRepository = agriculturalFieldRepository;
+        this.monitoringStationRepository = monitoringStationRepository;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.catchUpMarginMillis = catchUpMargin.toMillis();
+        this.worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "spatial-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.fields = new SpatialIndex("agricultural-fields", directory, compactThreshold, worker);
+        this.stations = new SpatialIndex("monitoring-stations", directory, compactThreshold, worker);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        worker.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                fields.load(new TableSource("agricultural_fields"));
+                stations.load(new TableSource("monitoring_stations"));
+            } catch (IOException | RuntimeException e) {
+                logger.error("Could not load the spatial index, queries will use the database", e);
+                return;
+            }
+            logger.info("Spatial index loaded {} fields and {} stations in {} ms",
+                    fields.size(), stations.size(), (System.nanoTime() - start) / 1_000_000);
+        });
+    }
+
+    /**
+     * Find all agricultural fields within a distance of a geometry.
+     *
+     * @param geometry the geometry (WGS 84)
+     * @param distance the distance in metres
+     * @return the fields
+     */
+    public List<AgriculturalField> findFieldsWithinDistance(Geometry geometry, double distance) {
+        if (!useIndex(fields)) {
+            return agriculturalFieldRepository.findWithinDistance(geometry, distance);
+        }
+        return findAllById(agriculturalFieldRepository, withinDistance(fields, geometry, distance));
+    }
+
+    /**
+     * Find all agricultural fields lying within a geometry.
+     *
+     * @param geometry the geometry to search within
+     * @return the fields
+     */
+    public List<AgriculturalField> findFieldsWithinGeometry(Geometry geometry) {
+        if (!useIndex(fields)) {
+            return agriculturalFieldRepository.findWithinGeometry(geometry);
+        }
+        PreparedGeometry prepared = PreparedGeometryFactory.prepare(geometry);
+        return findAllById(agriculturalFieldRepository, fields.query(geometry.getEnvelopeInternal(), prepared::contains));
+    }
+
+    /**
+     * Find all agricultural fields intersecting a geometry.
+     *
+     * @param geometry the geometry
+     * @return the fields
+     */
+    public List<AgriculturalField> findFieldsIntersecting(Geometry geometry) {
+        if (!useIndex(fields)) {
+            return agriculturalFieldRepository.findIntersectingGeometry(geometry);
+        }
+        PreparedGeometry prepared = PreparedGeometryFactory.prepare(geometry);
+        return findAllById(agriculturalFieldRepository, fields.query(geometry.getEnvelopeInternal(), prepared::intersects));
+    }
+
+    /**
+     * Find all monitoring stations within a distance of a geometry.
+     *
+     * @param geometry the geometry (WGS 84)
+     * @param distance the distance in metres
+     * @return the stations
+     */
+    public List<MonitoringStation> findStationsWithinDistance(Geometry geometry, double distance) {
+        if (!useIndex(stations)) {
+            return monitoringStationRepository.findWithinDistance(geometry, distance);
+        }
+        return findAllById(monitoringStationRepository, withinDistance(stations, geometry, distance));
+    }
+
+    /**
+     * Find all monitoring stations lying within a geometry.
+     *
+     * @param geometry the geometry to search within
+     * @return the stations
+     */
+    public List<MonitoringStation> findStationsWithinGeometry(Geometry geometry) {
+        if (!useIndex(stations)) {
+            return monitoringStationRepository.findWithinGeometry(geometry);
+        }
+        PreparedGeometry prepared = PreparedGeometryFactory.prepare(geometry);
+        return findAllById(monitoringStationRepository, stations.query(geometry.getEnvelopeInternal(), prepared::contains));
+    }
+
+    /**
+     * Find all monitoring stations intersecting a geometry.
+     *
+     * @param geometry the geometry
+     * @return the stations
+     */
+    public List<MonitoringStation> findStationsIntersecting(Geometry geometry) {
+        if (!useIndex(stations)) {
+            return monitoringStationRepository.findIntersectingGeometry(geometry);
+        }
+        PreparedGeometry prepared = PreparedGeometryFactory.prepare(geometry);
+        return findAllById(monitoringStationRepository, stations.query(geometry.getEnvelopeInternal(), prepared::intersects));
+    }
+
+    /**
+     * Find the monitoring stations nearest to a geometry, nearest first.
+     *
+     * @param geometry the geometry (WGS 84)
+     * @param k the number of stations to find
+     * @param maxDistance the distance in metres beyond which stations are not returned
+     * @param stationType the type of station to find, or null for any
+     * @param status the status of station to find, or null for any
+     * @param useIndex whether the spatial index may be used instead of PostGIS
+     * @return the stations and their distances
+     */
+    public NearestNeighboursResponse findNearestStations(Geometry geometry, int k, double maxDistance,
+                                                         MonitoringStation.StationType stationType,
+                                                         MonitoringStation.StationStatus status, boolean useIndex) {
+        if (useIndex && useIndex(stations)) {
+            Predicate<MonitoringStation> filter = station ->
+                    (stationType == null || station.getStationType() == stationType)
+                            && (status == null || station.getStatus() == status);
+            return nearestResponse(SOURCE_SPATIAL_INDEX, nearestInIndex(stations, monitoringStationRepository,
+                    geometry, k, maxDistance, stationType == null && status == null ? null : filter),
+                    SpatialIndexService::stationNeighbour);
+        }
+
+        StringBuilder conditions = new StringBuilder();
+        List<Object> arguments = new ArrayList<>();
+        if (stationType != null) {
+            conditions.append(" AND station_type = ?");
+            arguments.add(stationType.name());
+        }
+        if (status != null) {
+            conditions.append(" AND status = ?");
+            arguments.add(status.name());
+        }
+        return nearestResponse(SOURCE_DATABASE, nearestInDatabase("monitoring_stations", monitoringStationRepository,
+                geometry, k, maxDistance, conditions, arguments), SpatialIndexService::stationNeighbour);
+    }
+
+    /**
+     * Find the agricultural fields nearest to a geometry, nearest first.
+     *
+     * @param geometry the geometry (WGS 84)
+     * @param k the number of fields to find
+     * @param maxDistance the distance in metres beyond which fields are not returned
+     * @param status the status of field to find, or null for any
+     * @param useIndex whether the spatial index may be used instead of PostGIS
+     * @return the fields and their distances
+     */
+    public NearestNeighboursResponse findNearestFields(Geometry geometry, int k, double maxDistance,
+                                                       AgriculturalField.FieldStatus status, boolean useIndex) {
+        if (useIndex && useIndex(fields)) {
+            return nearestResponse(SOURCE_SPATIAL_INDEX, nearestInIndex(fields, agriculturalFieldRepository,
+                    geometry, k, maxDistance, status == null ? null : field -> field.getStatus() == status),
+                    SpatialIndexService::fieldNeighbour);
+        }
+
+        StringBuilder conditions = new StringBuilder();
+        List<Object> arguments = new ArrayList<>();
+        if (status != null) {
+            conditions.append(" AND status = ?");
+            arguments.add(status.name());
+        }
+        return nearestResponse(SOURCE_DATABASE, nearestInDatabase("agricultural_fields", agriculturalFieldRepository,
+                geometry, k, maxDistance, conditions, arguments), SpatialIndexService::fieldNeighbour);
+    }
+
+    /**
+     * Apply fields written through JDBC, e.g. by a bulk import, which the entity listener does not
+     * see: the rows modified since the given time are read on the index worker.
+     *
+     * @param since the time the writes started, on the clock that sets {@code updated_at}
+     */
+    public void fieldsWrittenSince(LocalDateTime since) {
+        writtenSince("agricultural_fields", fields, since);
+    }
+
+    /**
+     * Apply stations written through JDBC, as {@link #fieldsWrittenSince(LocalDateTime)}.
+     *
+     * @param since the time the writes started, on the clock that sets {@code updated_at}
+     */
+    public void stationsWrittenSince(LocalDateTime since) {
+        writtenSince("monitoring_stations", stations, since);
+    }
+
+    private void writtenSince(String table, SpatialIndex index, LocalDateTime since) {
+        if (!enabled) {
+            return;
+        }
+        worker.execute(() -> {
+            try {
+                new TableSource(table).upsertModifiedSince(since, index);
+            } catch (RuntimeException e) {
+                logger.error("Could not apply imported rows of {} to the spatial index", table, e);
+            }
+        });
+    }
+
+    /**
+     * Apply a committed write to the matching index, and announce changed monitoring stations
+     * with a {@link MonitoringStationsChangedEvent}.
+     */
+    @EventListener
+    public void onSpatialEntityChanged(SpatialEntityChangedEvent event) {
+        if (event.removed()) {
+            removed(event.entity());
+        } else {
+            saved(event.entity());
+        }
+        if (event.entity() instanceof MonitoringStation station) {
+            eventPublisher.publishEvent(new MonitoringStationsChangedEvent(station.getId()));
+        }
+    }
+
+    /**
+     * Apply a committed insert or update to the matching index.
+     */
+    private void saved(SpatialEntity entity) {
+        SpatialIndex index = indexOf(entity);
+        if (index == null || entity.getId() == null) {
+            return;
+        }
+        if (entity.getGeometry() == null) {
+            index.remove(entity.getId());
+        } else {
+            index.upsert(entity.getId(), entity.getGeometry().copy(), modified(entity));
+        }
+    }
+
+    /**
+     * Apply a committed delete to the matching index.
+     */
+    private void removed(SpatialEntity entity) {
+        SpatialIndex index = indexOf(entity);
+        if (index != null && entity.getId() != null) {
+            index.remove(entity.getId());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    private SpatialIndex indexOf(SpatialEntity entity) {
+        if (entity instanceof AgriculturalField) {
+            return fields;
+        }
+        if (entity instanceof MonitoringStation) {
+            return stations;
+        }
+        return null;
+    }
+
+    private boolean useIndex(SpatialIndex index) {
+        return enabled && index.isReady();
+    }
+
+    private static List<Long> withinDistance(SpatialIndex index, Geometry geometry, double distance) {
+        GeodesicDistanceFilter filter = new GeodesicDistanceFilter(geometry, distance);
+        return index.query(filter.getSearchEnvelope(), filter);
+    }
+
+    /**
+     * Walk the index nearest first, loading the entities in growing batches until enough of them
+     * pass the filter. Without a filter the first batch is the answer.
+     */
+    private static <T extends SpatialEntity> List<Nearest<T>> nearestInIndex(
+            SpatialIndex index, JpaRepository<T, Long> repository, Geometry geometry, int k,
+            double maxDistance, Predicate<T> filter) {
+        SpatialIndex.NearestCursor cursor = index.nearest(new GeodesicDistanceFilter(geometry, maxDistance), maxDistance);
+        List<Nearest<T>> nearest = new ArrayList<>(k);
+        int batch = k;
+        while (nearest.size() < k) {
+            List<SpatialIndex.Neighbour> found = new ArrayList<>(batch);
+            SpatialIndex.Neighbour neighbour;
+            while (found.size() < batch && (neighbour = cursor.next()) != null) {
+                found.add(neighbour);
+            }
+            Map<Long, T> entities = byId(repository.findAllById(found.stream().map(SpatialIndex.Neighbour::id).toList()));
+            for (SpatialIndex.Neighbour candidate : found) {
+                T entity = entities.get(candidate.id());
+                if (entity != null && (filter == null || filter.test(entity)) && nearest.size() < k) {
+                    nearest.add(new Nearest<>(entity, candidate.distance()));
+                }
+            }
+            if (found.size() < batch) {
+                break;
+            }
+            batch = Math.min(batch * 2, MAX_NEAREST_BATCH);
+        }
+        return nearest;
+    }
+
+    /**
+     * Let PostGIS walk the geography index with the {@code <->} operator. It orders by the distance
+     * on a sphere, so the few rows returned are sorted again by their distance on the ellipsoid.
+     */
+    private <T extends SpatialEntity> List<Nearest<T>> nearestInDatabase(
+            String table, JpaRepository<T, Long> repository, Geometry geometry, int k, double maxDistance,
+            StringBuilder conditions, List<Object> arguments) {
+        String wkt = geometry.toText();
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(wkt);
+        parameters.addAll(arguments);
+        if (maxDistance < Double.POSITIVE_INFINITY) {
+            conditions.append(WITHIN_DISTANCE);
+            parameters.add(wkt);
+            parameters.add(maxDistance);
+        }
+        parameters.add(wkt);
+        parameters.add(k);
+
+        List<Long> ids = new ArrayList<>(k);
+        Map<Long, Double> distances = new HashMap<>();
+        jdbcTemplate.query(SELECT_NEAREST.formatted(table, conditions), (RowCallbackHandler) rs -> {
+            ids.add(rs.getLong(1));
+            distances.put(rs.getLong(1), rs.getDouble(2));
+        }, parameters.toArray());
+
+        Map<Long, T> entities = byId(repository.findAllById(ids));
+        List<Nearest<T>> nearest = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            T entity = entities.get(id);
+            if (entity != null) {
+                nearest.add(new Nearest<>(entity, distances.get(id)));
+            }
+        }
+        nearest.sort(Comparator.comparingDouble(Nearest::distance));
+        return nearest;
+    }
+
+    private static <T extends SpatialEntity> NearestNeighboursResponse nearestResponse(
+            String source, List<Nearest<T>> nearest, BiFunction<T, Double, NearestNeighboursResponse.Neighbour> mapper) {
+        List<NearestNeighboursResponse.Neighbour> neighbours = new ArrayList<>(nearest.size());
+        for (Nearest<T> entry : nearest) {
+            neighbours.add(mapper.apply(entry.entity(), entry.distance()));
+        }
+        return NearestNeighboursResponse.builder()
+                .source(source)
+                .neighbours(neighbours)
+                .build();
+    }
+
+    private static NearestNeighboursResponse.Neighbour stationNeighbour(MonitoringStation station, double distance) {
+        return NearestNeighboursResponse.Neighbour.builder()
+                .id(station.getId())
+                .stationId(station.getStationId())
+                .name(station.getName())
+                .stationType(station.getStationType() != null ? station.getStationType().name() : null)
+                .status(station.getStatus() != null ? station.getStatus().name() : null)
+                .distance(distance)
+                .build();
+    }
+
+    private static NearestNeighboursResponse.Neighbour fieldNeighbour(AgriculturalField field, double distance) {
+        return NearestNeighboursResponse.Neighbour.builder()
+                .id(field.getId())
+                .fieldId(field.getFieldId())
+                .name(field.getName())
+                .status(field.getStatus() != null ? field.getStatus().name() : null)
+                .distance(distance)
+                .build();
+    }
+
+    /**
+     * Load the entities found in an index in batches, so a large result stays within the bind
+     * parameter limit of the database, and return them in the order of the IDs.
+     */
+    private static <T extends SpatialEntity> List<T> findAllById(JpaRepository<T, Long> repository, List<Long> ids) {
+        List<T> entities = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += FETCH_BY_ID_BATCH) {
+            List<Long> batch = ids.subList(from, Math.min(from + FETCH_BY_ID_BATCH, ids.size()));
+            Map<Long, T> loaded = byId(repository.findAllById(batch));
+            for (Long id : batch) {
+                T entity = loaded.get(id);
+                if (entity != null) {
+                    entities.add(entity);
+                }
+            }
+        }
+        return entities;
+    }
+
+    private static <T extends SpatialEntity> Map<Long, T> byId(List<T> entities) {
+        Map<Long, T> byId = new HashMap<>(entities.size() * 2);
+        for (T entity : entities) {
+            byId.put(entity.getId(), entity);
+        }
+        return byId;
+    }
+
+    private static long modified(BaseEntity entity) {
+        LocalDateTime modified = entity.getUpdatedAt() != null ? entity.getUpdatedAt() : entity.getCreatedAt();
+        return modified != null ? toMillis(modified) : System.currentTimeMillis();
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * An entity found by a nearest search and its distance in metres.
+     */
+    private record Nearest<T>(T entity, double distance) {
+    }
+
+    /**
+     * Reads the geometries of one table, streaming the rows in a read-only transaction.
+     */
+    private final class TableSource implements SpatialIndex.Source {
+
+        private final String table;
+
+        TableSource(String table) {
+            this.table = table;
+        }
+
+        @Override
+        public void writeAll(PackedRTree.Writer writer) throws IOException {
+            try {
+                stream(SELECT_GEOMETRIES.formatted(table), rs -> {
+                    try {
+                        writer.add(rs.getLong(1), envelope(rs), rs.getBytes(2), modified(rs));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        @Override
+        public void readChanges(PackedRTree snapshot, SpatialIndex.Changes changes) {
+            WKBReader reader = new WKBReader();
+            Timestamp since = Timestamp.valueOf(LocalDateTime.ofInstant(
+                    Instant.ofEpochMilli(snapshot.getWatermark() - catchUpMarginMillis), ZoneOffset.UTC));
+            stream(SELECT_MODIFIED_SINCE.formatted(table), rs -> changes.upsert(rs.getLong(1),
+                    geometry(reader, rs), modified(rs)), since);
+
+            // Merge the sorted IDs of the table with those of the snapshot
+            List<Long> missing = new ArrayList<>();
+            int[] next = {0};
+            stream(SELECT_IDS.formatted(table), rs -> {
+                long id = rs.getLong(1);
+                while (next[0] < snapshot.size() && snapshot.sortedId(next[0]) < id) {
+                    changes.remove(snapshot.sortedId(next[0]++));
+                }
+                if (next[0] < snapshot.size() && snapshot.sortedId(next[0]) == id) {
+                    next[0]++;
+                } else if (!changes.contains(id)) {
+                    missing.add(id);
+                }
+            });
+            while (next[0] < snapshot.size()) {
+                changes.remove(snapshot.sortedId(next[0]++));
+            }
+
+            for (int from = 0; from < missing.size(); from += FETCH_BY_ID_BATCH) {
+                List<Long> batch = missing.subList(from, Math.min(from + FETCH_BY_ID_BATCH, missing.size()));
+                streamingJdbcTemplate.query(SELECT_BY_IDS.formatted(table), ps -> ps.setArray(1,
+                                ps.getConnection().createArrayOf("bigint", batch.toArray())),
+                        (RowCallbackHandler) rs -> changes.upsert(rs.getLong(1), geometry(reader, rs), modified(rs)));
+            }
+        }
+
+        void upsertModifiedSince(LocalDateTime since, SpatialIndex index) {
+            WKBReader reader = new WKBReader();
+            stream(SELECT_MODIFIED_SINCE.formatted(table), rs -> index.upsert(rs.getLong(1),
+                    geometry(reader, rs), modified(rs)), Timestamp.valueOf(since));
+        }
+
+        private void stream(String sql, RowCallbackHandler handler, Object... parameters) {
+            readOnlyTransaction.executeWithoutResult(status -> streamingJdbcTemplate.query(sql, handler, parameters));
+        }
+
+        private Envelope envelope(ResultSet rs) throws SQLException {
+            return new Envelope(rs.getDouble(3), rs.getDouble(5), rs.getDouble(4), rs.getDouble(6));
+        }
+
+        private Geometry geometry(WKBReader reader, ResultSet rs) throws SQLException {
+            try {
+                return reader.read(rs.getBytes(2));
+            } catch (ParseException e) {
+                throw new SQLException("Invalid geometry in " + table + " " + rs.getLong(1), e);
+            }
+        }
+
+        private long modified(ResultSet rs) throws SQLException {
+            Timestamp modified = rs.getTimestamp(7);
+            return modified != null ? toMillis(modified.toLocalDateTime()) : 0;
+        }
+    }
+}
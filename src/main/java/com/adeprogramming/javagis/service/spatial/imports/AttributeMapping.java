@@ -0,0 +1,151 @@
+package com.adeprogramming.javagis.service.spatial.imports;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Maps the attributes of imported features to the columns of a table. Each column is read from
+ * the first of its attribute names that the feature has, ignoring case. By default these are
+ * common names for the column, including their forms shortened to the ten characters a
+ * shapefile allows; a mapping can name the attribute to use for some columns instead.
+ * <p>
+ * Numbers are written as text without a fraction if they are integers, dates are accepted as
+ * dates or ISO-8601 text, and enum values must name a constant of the column's enum.
+ *
+ * @param <C> the columns of the table
+ */
+public final class AttributeMapping<C extends Enum<C> & ImportColumn> {
+
+    private final Class<C> columnType;
+    private final Map<C, String> attributes;
+
+    private AttributeMapping(Class<C> columnType, Map<C, String> attributes) {
+        this.columnType = columnType;
+        this.attributes = attributes;
+    }
+
+    /**
+     * Parse a mapping given as comma-separated {@code column:attribute} pairs, e.g.
+     * {@code field_id:FLIK,current_crop:KULTUR}. Columns not given are read from their default
+     * attributes.
+     *
+     * @param columnType the columns of the table
+     * @param spec the mapping, or null or blank for the default mapping
+     * @return the mapping
+     * @throws IllegalArgumentException if the mapping is malformed or names an unknown column
+     */
+    public static <C extends Enum<C> & ImportColumn> AttributeMapping<C> parse(Class<C> columnType, String spec) {
+        Map<C, String> attributes = new EnumMap<>(columnType);
+        if (spec == null || spec.isBlank()) {
+            return new AttributeMapping<>(columnType, attributes);
+        }
+        for (String pair : spec.split(",")) {
+            int separator = pair.indexOf(':');
+            if (separator <= 0 || separator == pair.length() - 1) {
+                throw new IllegalArgumentException("Mappings must be given as column:attribute");
+            }
+            C column = columnOf(columnType, pair.substring(0, separator).trim());
+            if (attributes.put(column, pair.substring(separator + 1).trim()) != null) {
+                throw new IllegalArgumentException("Column " + column.getColumnName() + " is mapped twice");
+            }
+        }
+        return new AttributeMapping<>(columnType, attributes);
+    }
+
+    /**
+     * Map the attributes of a feature to column values.
+     *
+     * @param featureAttributes the attributes, looked up ignoring case
+     * @return the values indexed by the ordinals of the columns, null where the feature has none;
+     * enum values are given by name
+     * @throws IllegalArgumentException if a value cannot be converted
+     */
+    public Object[] map(Map<String, Object> featureAttributes) {
+        C[] columns = columnType.getEnumConstants();
+        Object[] values = new Object[columns.length];
+        for (C column : columns) {
+            Object value = lookup(column, featureAttributes);
+            try {
+                values[column.ordinal()] = convert(column, value);
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid " + column.getColumnName() + " '" + value + "'");
+            }
+        }
+        return values;
+    }
+
+    private Object lookup(C column, Map<String, Object> featureAttributes) {
+        String attribute = attributes.get(column);
+        if (attribute != null) {
+            return featureAttributes.get(attribute);
+        }
+        for (String name : column.getDefaultAttributes()) {
+            if (featureAttributes.containsKey(name)) {
+                return featureAttributes.get(name);
+            }
+        }
+        return null;
+    }
+
+    private static <C extends Enum<C> & ImportColumn> C columnOf(Class<C> columnType, String name) {
+        for (C column : columnType.getEnumConstants()) {
+            if (column.getColumnName().equalsIgnoreCase(name)) {
+                return column;
+            }
+        }
+        throw new IllegalArgumentException("Unknown column: " + name);
+    }
+
+    private static Object convert(ImportColumn column, Object value) {
+        if (value == null || value instanceof String text && text.isBlank()) {
+            return null;
+        }
+        return switch (column.getValueType()) {
+            case TEXT -> text(value);
+            case DATE -> date(value);
+            case ENUM -> constant(column.getEnumType(), text(value));
+        };
+    }
+
+    private static String constant(Class<? extends Enum<?>> enumType, String name) {
+        for (Enum<?> constant : enumType.getEnumConstants()) {
+            if (constant.name().equalsIgnoreCase(name)) {
+                return constant.name();
+            }
+        }
+        throw new IllegalArgumentException("No constant " + name);
+    }
+
+    private static String text(Object value) {
+        if (value instanceof Double || value instanceof Float || value instanceof BigDecimal) {
+            // dBase stores numbers as decimals, so an ID of 17 is read as 17.0
+            BigDecimal number = new BigDecimal(value.toString()).stripTrailingZeros();
+            return number.scale() <= 0 ? number.toBigInteger().toString() : number.toPlainString();
+        }
+        if (value instanceof Date) {
+            return date(value).toString();
+        }
+        return value.toString().trim();
+    }
+
+    private static LocalDate date(Object value) {
+        if (value instanceof LocalDate date) {
+            return date;
+        }
+        if (value instanceof Date date) {
+            // Shapefile dates are read as midnight UTC
+            return date.toInstant().atOffset(ZoneOffset.UTC).toLocalDate();
+        }
+        String text = value.toString().trim();
+        if (text.length() == 8 && text.chars().allMatch(Character::isDigit)) {
+            return LocalDate.parse(text, DateTimeFormatter.BASIC_ISO_DATE);
+        }
+        return LocalDate.parse(text.length() > 10 ? text.substring(0, 10) : text);
+    }
+}
@@ -0,0 +1,315 @@
+package com.adeprogramming.javagis.service.spatial.imports;
+
+import com.adeprogramming.javagis.payload.spatial.ImportResponse;
+import com.adeprogramming.javagis.service.spatial.CoordinateTransformService;
+import jakarta.annotation.PreDestroy;
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
+import org.geotools.api.referencing.operation.MathTransform;
+import org.geotools.referencing.CRS;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.operation.valid.IsValidOp;
+import org.locationtech.jts.operation.valid.TopologyValidationError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Service for bulk imports of fields and stations from files, e.g. zipped shapefiles or GeoJSON
+ * FeatureCollections with hundreds of thousands of features. Their progress is reported by job ID.
+ * <p>
+ * Features are read one at a time, so memory use does not grow with the file. Each feature's
+ * attributes are mapped to columns by an {@link AttributeMapping}, its geometry is reprojected
+ * to WGS 84 and validated, and the rows are upserted by business ID in JDBC batches. A batch
+ * that fails is retried one row at a time, so a bad feature fails on its own and is reported
+ * with its reason; columns a feature has no value for keep their current value. As the writes
+ * bypass JPA, the {@link ImportTarget} is told which rows changed at the end of each import.
+ * <p>
+ * Shapefiles are imported one at a time in the background. GeoJSON is imported while it is
+ * streamed from the request, on the request thread.
+ */
+@Service
+public class FeatureImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeatureImportService.class);
+
+    /** Finished jobs beyond this number are forgotten, oldest first. */
+    private static final int MAX_JOBS = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CoordinateTransformService coordinateTransformService;
+    private final Path uploadDirectory;
+    private final int batchSize;
+    private final int maxErrors;
+    private final ExecutorService executor;
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public FeatureImportService(
+            JdbcTemplate jdbcTemplate,
+            CoordinateTransformService coordinateTransformService,
+            @Value("${geotools.shapefile.upload-dir:./uploads/shapefiles}") Path uploadDirectory,
+            @Value("${imports.batch-size:1000}") int batchSize,
+            @Value("${imports.max-errors:1000}") int maxErrors) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.coordinateTransformService = coordinateTransformService;
+        this.uploadDirectory = uploadDirectory.toAbsolutePath().normalize();
+        this.batchSize = batchSize;
+        this.maxErrors = maxErrors;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "feature-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Import a shapefile uploaded with the request in the background. The upload is stored in the
+     * upload directory until the import finishes.
+     *
+     * @param target the table to import into
+     * @param file the zipped shapefile
+     * @param mapping the attribute mapping, or null for the default mapping
+     * @return the queued job
+     * @throws IllegalArgumentException if the file is not a zip archive or the mapping is malformed
+     * @throws IOException if the upload cannot be stored
+     */
+    public ImportResponse importShapefile(ImportTarget target, MultipartFile file, String mapping) throws IOException {
+        AttributeMapping<?> attributeMapping = target.parseMapping(mapping);
+        String fileName = file.getOriginalFilename() != null
+                ? Path.of(file.getOriginalFilename()).getFileName().toString()
+                : "upload.zip";
+        if (!fileName.toLowerCase(Locale.ROOT).endsWith(".zip")) {
+            throw new IllegalArgumentException("Uploaded shapefiles must be zip archives");
+        }
+        String id = UUID.randomUUID().toString();
+        Files.createDirectories(uploadDirectory);
+        Path upload = uploadDirectory.resolve(".upload-" + id + ".zip");
+        file.transferTo(upload);
+        return submitShapefile(id, target, fileName, upload, attributeMapping, true);
+    }
+
+    /**
+     * Import a shapefile from the upload directory in the background, e.g. one too large to
+     * upload with a request.
+     *
+     * @param target the table to import into
+     * @param path the path of the {@code .zip} or {@code .shp} file, relative to the upload directory
+     * @param mapping the attribute mapping, or null for the default mapping
+     * @return the queued job
+     * @throws IllegalArgumentException if the path is outside the upload directory, there is no
+     * such file or the mapping is malformed
+     */
+    public ImportResponse importShapefile(ImportTarget target, String path, String mapping) {
+        AttributeMapping<?> attributeMapping = target.parseMapping(mapping);
+        Path file = uploadDirectory.resolve(path).normalize();
+        if (!file.startsWith(uploadDirectory) || !Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("No file " + path + " in the upload directory");
+        }
+        return submitShapefile(UUID.randomUUID().toString(), target, uploadDirectory.relativize(file).toString(),
+                file, attributeMapping, false);
+    }
+
+    /**
+     * Import a GeoJSON FeatureCollection while it is read from a stream, e.g. a request body.
+     * The import is listed with its progress while it runs.
+     *
+     * @param target the table to import into
+     * @param in the GeoJSON
+     * @param name names the import in results, e.g. the file name
+     * @param mapping the attribute mapping, or null for the default mapping
+     * @param epsg the EPSG code of the coordinates if the collection does not declare it, or null
+     *             for WGS 84
+     * @return the finished job
+     * @throws IllegalArgumentException if the mapping is malformed or the CRS unknown
+     */
+    public ImportResponse importGeoJson(ImportTarget target, InputStream in, String name, String mapping,
+                                        Integer epsg) {
+        AttributeMapping<?> attributeMapping = target.parseMapping(mapping);
+        CoordinateReferenceSystem defaultCrs = epsg != null ? coordinateTransformService.getCrs(epsg) : null;
+        ImportJob job = register(UUID.randomUUID().toString(), target, "geojson", name);
+        run(job, target, () -> new GeoJsonFeatureReader(in, coordinateTransformService::getCrs, defaultCrs),
+                attributeMapping, "geojson:" + name);
+        return job.toResponse();
+    }
+
+    /**
+     * @param target the table imported into
+     * @param id the job ID
+     * @return the progress of the import, empty if there is no such import into the table
+     */
+    public Optional<ImportResponse> getImport(ImportTarget target, String id) {
+        return Optional.ofNullable(jobs.get(id))
+                .map(ImportJob::toResponse)
+                .filter(job -> job.getTarget().equals(target.getName()));
+    }
+
+    /**
+     * @param target the table imported into
+     * @return the progress of the recent imports into the table, newest first
+     */
+    public List<ImportResponse> getImports(ImportTarget target) {
+        return jobs.values().stream()
+                .map(ImportJob::toResponse)
+                .filter(job -> job.getTarget().equals(target.getName()))
+                .sorted(Comparator.comparing(ImportResponse::getStartedAt,
+                        Comparator.nullsLast(Comparator.<LocalDateTime>naturalOrder())).reversed())
+                .collect(Collectors.toList());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private ImportResponse submitShapefile(String id, ImportTarget target, String fileName, Path file,
+                                           AttributeMapping<?> mapping, boolean deleteAfter) {
+        ImportJob job = register(id, target, "shapefile", fileName);
+        Path workDirectory = uploadDirectory.resolve(".import-" + id);
+        executor.execute(() -> {
+            try {
+                run(job, target, () -> new ShapefileFeatureReader(file, workDirectory), mapping,
+                        "shapefile:" + fileName);
+            } finally {
+                if (deleteAfter) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        logger.warn("Could not delete the upload {}", file, e);
+                    }
+                }
+            }
+        });
+        return job.toResponse();
+    }
+
+    private ImportJob register(String id, ImportTarget target, String format, String name) {
+        List<ImportJob> finished = jobs.values().stream()
+                .filter(ImportJob::isFinished)
+                .sorted(Comparator.comparing(ImportJob::getFinishedAt))
+                .collect(Collectors.toList());
+        for (int i = 0; i < finished.size() - MAX_JOBS + 1; i++) {
+            jobs.remove(finished.get(i).getId());
+        }
+        ImportJob job = new ImportJob(id, target.getName(), format, name, maxErrors);
+        jobs.put(id, job);
+        return job;
+    }
+
+    private void run(ImportJob job, ImportTarget target, ReaderOpener opener, AttributeMapping<?> mapping,
+                     String source) {
+        job.start();
+        LocalDateTime since = LocalDateTime.now();
+        long start = System.nanoTime();
+        try (FeatureReader reader = opener.open()) {
+            CoordinateReferenceSystem crs = reader.getCrs();
+            MathTransform transform = crs != null
+                    ? coordinateTransformService.findTransform(crs, CoordinateTransformService.WGS84)
+                    : null;
+            job.opened(crs != null ? CRS.toSRS(crs) : "EPSG:" + CoordinateTransformService.WGS84,
+                    reader.getFeatureCount());
+
+            List<Object[]> rows = new ArrayList<>(batchSize);
+            List<String> references = new ArrayList<>(batchSize);
+            ImportFeature feature;
+            while ((feature = reader.next()) != null) {
+                try {
+                    rows.add(toRow(feature, target, mapping, transform, source));
+                    references.add(feature.reference());
+                } catch (IllegalArgumentException e) {
+                    job.featureFailed(feature.reference(), e.getMessage());
+                }
+                job.processed();
+                if (rows.size() >= batchSize) {
+                    write(job, target, rows, references);
+                }
+            }
+            write(job, target, rows, references);
+            job.complete();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Import {} failed", job.getId(), e);
+            job.abort(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        } finally {
+            if (job.getWritten() > 0) {
+                target.rowsWrittenSince(since);
+            }
+        }
+        ImportResponse result = job.toResponse();
+        logger.info("Import {} of {} {} into {} {}: {} read, {} written, {} failed in {} ms", job.getId(),
+                result.getFormat(), result.getFileName(), result.getTarget(), result.getStatus(),
+                result.getProcessed(), result.getWritten(), result.getFailed(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * @return the upsert parameters of a feature
+     * @throws IllegalArgumentException if the feature cannot be imported
+     */
+    private Object[] toRow(ImportFeature feature, ImportTarget target, AttributeMapping<?> mapping,
+                           MathTransform transform, String source) {
+        if (feature.error() != null) {
+            throw new IllegalArgumentException(feature.error());
+        }
+        Object[] values = mapping.map(feature.attributes());
+        Geometry geometry = feature.geometry();
+        if (geometry == null || geometry.isEmpty()) {
+            throw new IllegalArgumentException("No geometry");
+        }
+        target.checkGeometryType(geometry);
+        if (transform != null) {
+            geometry = coordinateTransformService.transform(geometry, transform, CoordinateTransformService.WGS84);
+        }
+        TopologyValidationError error = new IsValidOp(geometry).getValidationError();
+        if (error != null) {
+            throw new IllegalArgumentException("Invalid geometry: " + error);
+        }
+        return target.toRow(values, geometry, source);
+    }
+
+    private void write(ImportJob job, ImportTarget target, List<Object[]> rows, List<String> references) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(target.getUpsertSql(), rows, target.getUpsertTypes());
+            job.written(rows.size());
+        } catch (DataAccessException e) {
+            // Find the rows that cannot be written; the upserts of the others are repeated harmlessly
+            for (int i = 0; i < rows.size(); i++) {
+                try {
+                    jdbcTemplate.update(target.getUpsertSql(), rows.get(i), target.getUpsertTypes());
+                    job.written(1);
+                } catch (DataAccessException rowException) {
+                    job.featureFailed(references.get(i), rowException.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+        rows.clear();
+        references.clear();
+    }
+
+    @FunctionalInterface
+    private interface ReaderOpener {
+        FeatureReader open() throws IOException;
+    }
+}
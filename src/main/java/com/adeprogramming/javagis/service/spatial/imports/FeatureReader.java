@@ -0,0 +1,32 @@
+package com.adeprogramming.javagis.service.spatial.imports;
+
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads the features of an import file one at a time, so files of any size can be imported
+ * without holding them in memory.
+ */
+public interface FeatureReader extends Closeable {
+
+    /**
+     * @return the CRS of the geometries, or null if the file does not say, in which case WGS 84
+     * is assumed
+     */
+    CoordinateReferenceSystem getCrs();
+
+    /**
+     * @return the number of features in the file, or -1 if it is not known before reading them
+     */
+    long getFeatureCount();
+
+    /**
+     * Read the next feature.
+     *
+     * @return the feature, or null at the end of the file
+     * @throws IOException if the file cannot be read any further
+     */
+    ImportFeature next() throws IOException;
+}
@@ -0,0 +1,413 @@
+package com.adeprogramming.javagis.service.spatial.imports;
+
+import com.adeprogramming.javagis.service.spatial.CoordinateTransformService;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+
+/**
+ * Reads the features of a GeoJSON FeatureCollection from a stream, one feature at a time, with
+ * the Jackson streaming parser, so collections of any size are read in constant memory. The JTS
+ * geometries are built from the token stream: the positions of each line or ring are packed
+ * into one coordinate array as they are parsed, without an intermediate JSON tree.
+ * <p>
+ * The CRS is WGS 84 unless the collection declares another one by EPSG code in a legacy
+ * {@code crs} member before its features, or the caller gives one. Properties keep their JSON
+ * types; nested objects and arrays are read as JSON text. A feature with a malformed geometry
+ * is reported with an error and reading continues; malformed JSON ends the file.
+ */
+public final class GeoJsonFeatureReader implements FeatureReader {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .enable(StreamReadFeature.USE_FAST_DOUBLE_PARSER)
+            .build();
+
+    /** Returned by {@link #readCoordinates()} for a position, which is left in {@link #position}. */
+    private static final Object POSITION = new Object();
+
+    /** Returned by {@link #readCoordinates()} for coordinates that are not nested arrays of numbers. */
+    private static final Object MALFORMED = new Object();
+
+    private final JsonParser parser;
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+    private final CoordinateReferenceSystem crs;
+    private final double[] position = new double[2];
+    private boolean inFeatures;
+    private long count;
+
+    /**
+     * Open a collection and read up to its features.
+     *
+     * @param in the GeoJSON, which is closed with the reader
+     * @param crsLookup decodes a CRS declared by the collection from its EPSG code
+     * @param defaultCrs the CRS if the collection does not declare one, or null for WGS 84
+     * @throws IOException if the stream is not a GeoJSON FeatureCollection
+     * @throws IllegalArgumentException if the declared CRS is not known
+     */
+    public GeoJsonFeatureReader(InputStream in, IntFunction<CoordinateReferenceSystem> crsLookup,
+                                CoordinateReferenceSystem defaultCrs) throws IOException {
+        this.parser = JSON_FACTORY.createParser(in);
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a GeoJSON FeatureCollection");
+            }
+            CoordinateReferenceSystem declared = null;
+            while (!inFeatures && parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (name) {
+                    case "type" -> {
+                        if (!"FeatureCollection".equals(parser.getText())) {
+                            throw new JsonParseException(parser, "Expected a FeatureCollection, not " + parser.getText());
+                        }
+                    }
+                    case "crs" -> declared = readCrs(crsLookup);
+                    case "features" -> {
+                        if (value != JsonToken.START_ARRAY) {
+                            throw new JsonParseException(parser, "The features must be an array");
+                        }
+                        inFeatures = true;
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            this.crs = declared != null ? declared : defaultCrs;
+        } catch (IOException | RuntimeException e) {
+            parser.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public CoordinateReferenceSystem getCrs() {
+        return crs;
+    }
+
+    /**
+     * @return -1, as the features of a stream are not known before they are read
+     */
+    @Override
+    public long getFeatureCount() {
+        return -1;
+    }
+
+    @Override
+    public ImportFeature next() throws IOException {
+        if (!inFeatures) {
+            return null;
+        }
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            inFeatures = false;
+            return null;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected a feature");
+        }
+        count++;
+
+        Map<String, Object> attributes = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        String id = null;
+        RawGeometry geometry = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (name) {
+                case "id" -> {
+                    if (value.isScalarValue() && value != JsonToken.VALUE_NULL) {
+                        id = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                case "properties" -> readProperties(attributes);
+                case "geometry" -> geometry = value == JsonToken.VALUE_NULL ? null : readGeometry();
+                default -> parser.skipChildren();
+            }
+        }
+        if (id != null) {
+            attributes.putIfAbsent("id", id);
+        }
+
+        String reference = "feature " + count + (id != null ? " (" + id + ")" : "");
+        if (geometry == null) {
+            return new ImportFeature(reference, attributes, null);
+        }
+        try {
+            return new ImportFeature(reference, attributes, build(geometry));
+        } catch (IllegalArgumentException e) {
+            return new ImportFeature(reference, attributes, null, "Malformed geometry: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    private CoordinateReferenceSystem readCrs(IntFunction<CoordinateReferenceSystem> crsLookup) throws IOException {
+        JsonNode member = MAPPER.readTree(parser);
+        String name = member.path("properties").path("name").asText(null);
+        if (name == null) {
+            throw new JsonParseException(parser, "Only CRSs given by name are supported");
+        }
+        return crsLookup.apply(CoordinateTransformService.parseEpsg(name));
+    }
+
+    private void readProperties(Map<String, Object> attributes) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            attributes.put(name, switch (value) {
+                case VALUE_STRING -> parser.getText();
+                case VALUE_NUMBER_INT -> parser.getNumberValue();
+                case VALUE_NUMBER_FLOAT -> parser.getDoubleValue();
+                case VALUE_TRUE, VALUE_FALSE -> parser.getBooleanValue();
+                case VALUE_NULL -> null;
+                default -> MAPPER.readTree(parser).toString();
+            });
+        }
+    }
+
+    /**
+     * Read a geometry object. It is only built once it has been read completely, as its type
+     * may follow its coordinates.
+     */
+    private RawGeometry readGeometry() throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return new RawGeometry(null, MALFORMED, null);
+        }
+        String type = null;
+        Object coordinates = null;
+        List<RawGeometry> geometries = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (name) {
+                case "type" -> {
+                    if (value == JsonToken.VALUE_STRING) {
+                        type = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                case "coordinates" -> {
+                    coordinates = readCoordinates();
+                    if (coordinates == POSITION) {
+                        coordinates = new Coordinate(position[0], position[1]);
+                    }
+                }
+                case "geometries" -> {
+                    if (value == JsonToken.START_ARRAY) {
+                        geometries = new ArrayList<>();
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            geometries.add(readGeometry());
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        return new RawGeometry(type, coordinates, geometries);
+    }
+
+    /**
+     * Read the coordinates array at the current token.
+     *
+     * @return {@link #POSITION} for a position, {@link Positions} for an array of positions, a
+     * list for deeper nesting, or {@link #MALFORMED}
+     */
+    private Object readCoordinates() throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return MALFORMED;
+        }
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return List.of();
+        }
+        if (token.isNumeric()) {
+            // A position; elevations and measures are dropped
+            double x = parser.getDoubleValue();
+            double y = Double.NaN;
+            int ordinates = 1;
+            boolean malformed = false;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (!token.isNumeric()) {
+                    parser.skipChildren();
+                    malformed = true;
+                } else if (ordinates++ == 1) {
+                    y = parser.getDoubleValue();
+                }
+            }
+            if (malformed || ordinates < 2) {
+                return MALFORMED;
+            }
+            position[0] = x;
+            position[1] = y;
+            return POSITION;
+        }
+
+        Object first = readCoordinates();
+        if (first == POSITION) {
+            Positions positions = new Positions();
+            positions.add(position);
+            boolean malformed = false;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (readCoordinates() == POSITION) {
+                    positions.add(position);
+                } else {
+                    malformed = true;
+                }
+            }
+            return malformed ? MALFORMED : positions;
+        }
+        List<Object> children = new ArrayList<>();
+        children.add(first);
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            children.add(readCoordinates());
+        }
+        return children;
+    }
+
+    private Geometry build(RawGeometry raw) {
+        if (raw.type() == null) {
+            throw new IllegalArgumentException("no type");
+        }
+        Object coordinates = raw.coordinates();
+        switch (raw.type()) {
+            case "Point":
+                if (isEmpty(coordinates)) {
+                    return geometryFactory.createPoint();
+                }
+                if (!(coordinates instanceof Coordinate coordinate)) {
+                    throw new IllegalArgumentException("a Point needs a position");
+                }
+                return geometryFactory.createPoint(coordinate);
+            case "MultiPoint":
+                return isEmpty(coordinates) ? geometryFactory.createMultiPoint()
+                        : geometryFactory.createMultiPoint(positions(coordinates).toSequence());
+            case "LineString":
+                return isEmpty(coordinates) ? geometryFactory.createLineString()
+                        : geometryFactory.createLineString(positions(coordinates).toSequence());
+            case "MultiLineString": {
+                List<?> parts = list(coordinates);
+                LineString[] lines = new LineString[parts.size()];
+                for (int i = 0; i < lines.length; i++) {
+                    lines[i] = geometryFactory.createLineString(positions(parts.get(i)).toSequence());
+                }
+                return geometryFactory.createMultiLineString(lines);
+            }
+            case "Polygon":
+                return polygon(coordinates);
+            case "MultiPolygon": {
+                List<?> parts = list(coordinates);
+                Polygon[] polygons = new Polygon[parts.size()];
+                for (int i = 0; i < polygons.length; i++) {
+                    polygons[i] = polygon(parts.get(i));
+                }
+                return geometryFactory.createMultiPolygon(polygons);
+            }
+            case "GeometryCollection": {
+                if (raw.geometries() == null) {
+                    throw new IllegalArgumentException("a GeometryCollection needs geometries");
+                }
+                Geometry[] members = new Geometry[raw.geometries().size()];
+                for (int i = 0; i < members.length; i++) {
+                    members[i] = build(raw.geometries().get(i));
+                }
+                return geometryFactory.createGeometryCollection(members);
+            }
+            default:
+                throw new IllegalArgumentException("unsupported type " + raw.type());
+        }
+    }
+
+    private Polygon polygon(Object coordinates) {
+        List<?> rings = list(coordinates);
+        if (rings.isEmpty()) {
+            return geometryFactory.createPolygon();
+        }
+        LinearRing shell = geometryFactory.createLinearRing(positions(rings.get(0)).toSequence());
+        LinearRing[] holes = new LinearRing[rings.size() - 1];
+        for (int i = 0; i < holes.length; i++) {
+            holes[i] = geometryFactory.createLinearRing(positions(rings.get(i + 1)).toSequence());
+        }
+        return geometryFactory.createPolygon(shell, holes);
+    }
+
+    private static boolean isEmpty(Object coordinates) {
+        return coordinates instanceof List<?> list && list.isEmpty();
+    }
+
+    private static Positions positions(Object coordinates) {
+        if (coordinates instanceof Positions positions) {
+            return positions;
+        }
+        throw new IllegalArgumentException("expected an array of positions");
+    }
+
+    private static List<?> list(Object coordinates) {
+        if (coordinates instanceof List<?> list) {
+            return list;
+        }
+        if (coordinates instanceof Positions) {
+            throw new IllegalArgumentException("expected arrays of positions, not positions");
+        }
+        throw new IllegalArgumentException("malformed coordinates");
+    }
+
+    private record RawGeometry(String type, Object coordinates, List<RawGeometry> geometries) {
+    }
+
+    /**
+     * The positions of a line or ring, packed as {@code x, y} pairs.
+     */
+    private static final class Positions {
+
+        private double[] xy = new double[16];
+        private int size;
+
+        void add(double[] position) {
+            if (size + 2 > xy.length) {
+                xy = Arrays.copyOf(xy, xy.length * 2);
+            }
+            xy[size++] = position[0];
+            xy[size++] = position[1];
+        }
+
+        PackedCoordinateSequence.Double toSequence() {
+            return new PackedCoordinateSequence.Double(Arrays.copyOf(xy, size), 2, 0);
+        }
+    }
+}
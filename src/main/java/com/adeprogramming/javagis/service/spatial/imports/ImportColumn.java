@@ -0,0 +1,53 @@
+package com.adeprogramming.javagis.service.spatial.imports;
+
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * A column that imported features are mapped to, implemented by an enum of the columns of a table.
+ */
+public interface ImportColumn {
+
+    /**
+     * The types of imported values.
+     */
+    enum ValueType {
+        /** Text; numbers are written without a fraction if they are integers, dates as ISO-8601. */
+        TEXT,
+        /** A date, given as a date or ISO-8601 text. */
+        DATE,
+        /** The name of a constant of {@link #getEnumType()}, ignoring case. */
+        ENUM
+    }
+
+    String getColumnName();
+
+    ValueType getValueType();
+
+    /**
+     * @return the attributes the column is read from by default, in order of preference
+     */
+    List<String> getDefaultAttributes();
+
+    /**
+     * @return the enum whose constants the values name, for {@link ValueType#ENUM} columns
+     */
+    default Class<? extends Enum<?>> getEnumType() {
+        return null;
+    }
+
+    /**
+     * @return the value of the column in inserted rows without one, e.g. an initial status; null
+     * for none. Such columns must be text or enum columns.
+     */
+    default String getInsertDefault() {
+        return null;
+    }
+
+    /**
+     * @return the JDBC type of the mapped values
+     */
+    default int getSqlType() {
+        return getValueType() == ValueType.DATE ? Types.DATE : Types.VARCHAR;
+    }
+}
@@ -0,0 +1,21 @@
+package com.adeprogramming.javagis.service.spatial.imports;
+
+import org.locationtech.jts.geom.Geometry;
+
+import java.util.Map;
+
+/**
+ * A feature read from an import file, before its attributes are mapped to columns.
+ *
+ * @param reference identifies the feature in error messages, e.g. its position in the file
+ * @param attributes the attribute values by name, looked up ignoring case
+ * @param geometry the geometry in the CRS of the file, or null if the feature has none
+ * @param error why the feature cannot be imported although the file can be read further, e.g. a
+ *              malformed geometry, or null
+ */
+public record ImportFeature(String reference, Map<String, Object> attributes, Geometry geometry, String error) {
+
+    public ImportFeature(String reference, Map<String, Object> attributes, Geometry geometry) {
+        this(reference, attributes, geometry, null);
+    }
+}
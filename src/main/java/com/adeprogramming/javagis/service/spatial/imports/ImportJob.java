@@ -0,0 +1,123 @@
+package com.adeprogramming.javagis.service.spatial.imports;
+
+import com.adeprogramming.javagis.payload.spatial.ImportResponse;
+import com.adeprogramming.javagis.payload.spatial.ImportResponse.ImportStatus;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The progress of an import, updated by the import thread and read by status requests.
+ * Feature errors are kept up to a limit; beyond it they are only counted.
+ */
+final class ImportJob {
+
+    private final String id;
+    private final String target;
+    private final String format;
+    private final String fileName;
+    private final int maxErrors;
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final List<String> errors = new ArrayList<>();
+    private volatile ImportStatus status = ImportStatus.QUEUED;
+    private volatile String sourceCrs;
+    private volatile String failure;
+    private volatile long total = -1;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+
+    ImportJob(String id, String target, String format, String fileName, int maxErrors) {
+        this.id = id;
+        this.target = target;
+        this.format = format;
+        this.fileName = fileName;
+        this.maxErrors = maxErrors;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    boolean isFinished() {
+        return finishedAt != null;
+    }
+
+    LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    void start() {
+        startedAt = LocalDateTime.now();
+        status = ImportStatus.RUNNING;
+    }
+
+    void opened(String sourceCrs, long total) {
+        this.sourceCrs = sourceCrs;
+        this.total = total;
+    }
+
+    void processed() {
+        processed.incrementAndGet();
+    }
+
+    void written(int count) {
+        written.addAndGet(count);
+    }
+
+    long getWritten() {
+        return written.get();
+    }
+
+    void featureFailed(String reference, String message) {
+        failed.incrementAndGet();
+        addError(reference + ": " + message);
+    }
+
+    void complete() {
+        finishedAt = LocalDateTime.now();
+        status = ImportStatus.COMPLETED;
+    }
+
+    void abort(String message) {
+        failure = "Import aborted: " + message;
+        finishedAt = LocalDateTime.now();
+        status = ImportStatus.FAILED;
+    }
+
+    ImportResponse toResponse() {
+        List<String> errorsSoFar;
+        synchronized (errors) {
+            errorsSoFar = new ArrayList<>(errors);
+        }
+        if (failure != null) {
+            errorsSoFar.add(failure);
+        }
+        return ImportResponse.builder()
+                .id(id)
+                .target(target)
+                .format(format)
+                .fileName(fileName)
+                .status(status)
+                .sourceCrs(sourceCrs)
+                .total(total)
+                .processed(processed.get())
+                .written(written.get())
+                .failed(failed.get())
+                .errors(errorsSoFar)
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .build();
+    }
+
+    private void addError(String error) {
+        synchronized (errors) {
+            if (errors.size() < maxErrors) {
+                errors.add(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.adeprogramming.javagis.service.spatial.imports;
+
+import org.locationtech.jts.geom.Geometry;
+
+import java.time.LocalDateTime;
+
+/**
+ * A table that features are imported into, upserting rows by their business ID.
+ */
+public interface ImportTarget {
+
+    /**
+     * @return the name of the imported entities in job results, e.g. {@code fields}
+     */
+    String getName();
+
+    /**
+     * @param spec the mapping as {@code column:attribute} pairs, or null for the default mapping
+     * @return the attribute mapping of the table
+     * @throws IllegalArgumentException if the mapping is malformed
+     */
+    AttributeMapping<?> parseMapping(String spec);
+
+    /**
+     * Check that a feature's geometry can be imported, before it is reprojected.
+     *
+     * @throws IllegalArgumentException if the table does not hold geometries of its type
+     */
+    void checkGeometryType(Geometry geometry);
+
+    /**
+     * Get the parameters of {@link #getUpsertSql()} for a feature.
+     *
+     * @param values the mapped attributes
+     * @param geometry the valid geometry in WGS 84
+     * @param source the source recorded with the row
+     * @return the parameters
+     * @throws IllegalArgumentException if the feature cannot be imported, e.g. has no business ID
+     */
+    Object[] toRow(Object[] values, Geometry geometry, String source);
+
+    String getUpsertSql();
+
+    /**
+     * @return the JDBC types of the parameters of {@link #getUpsertSql()}
+     */
+    int[] getUpsertTypes();
+
+    /**
+     * Called after an import wrote rows through JDBC, e.g. to refresh caches of the table.
+     *
+     * @param since the time the import started
+     */
+    void rowsWrittenSince(LocalDateTime since);
+}
@@ -0,0 +1,196 @@
+package com.adeprogramming.javagis.service.spatial.imports;
+
+import org.geotools.api.data.Query;
+import org.geotools.api.data.SimpleFeatureSource;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.feature.type.AttributeDescriptor;
+import org.geotools.api.feature.type.GeometryDescriptor;
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.locationtech.jts.geom.Geometry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Reads the features of a shapefile, given as its {@code .shp} file or as a zip archive holding
+ * one shapefile. An archive is extracted to a work directory first, as the shapefile reader needs
+ * random access to its files; the directory is deleted on close. Records are read one at a time
+ * from the {@code .shp} and {@code .dbf} files, and the attribute encoding is taken from the
+ * {@code .cpg} file, ISO-8859-1 by default as dBase files have no encoding of their own. Dates
+ * are read as midnight UTC.
+ */
+public final class ShapefileFeatureReader implements FeatureReader {
+
+    private static final Set<String> SHAPEFILE_EXTENSIONS = Set.of("shp", "shx", "dbf", "prj", "cpg", "qix", "fix");
+
+    private final Path workDirectory;
+    private final ShapefileDataStore dataStore;
+    private final SimpleFeatureIterator features;
+    private final CoordinateReferenceSystem crs;
+    private final long featureCount;
+    private final List<String> attributeNames = new ArrayList<>();
+    private long position;
+
+    /**
+     * @param file the {@code .shp} file or a {@code .zip} archive
+     * @param workDirectory the directory to extract an archive to, which must not exist
+     * @throws IllegalArgumentException if the file is not a shapefile or an archive of exactly one
+     * @throws IOException if the file cannot be read
+     */
+    public ShapefileFeatureReader(Path file, Path workDirectory) throws IOException {
+        String fileName = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        boolean archive = fileName.endsWith(".zip");
+        if (!archive && !fileName.endsWith(".shp")) {
+            throw new IllegalArgumentException("Expected a .shp file or a .zip archive of a shapefile");
+        }
+        this.workDirectory = archive ? workDirectory : null;
+
+        ShapefileDataStore store = null;
+        try {
+            Path shp = archive ? extract(file, workDirectory) : file;
+            store = new ShapefileDataStore(shp.toUri().toURL());
+            store.setCharset(charsetOf(shp));
+            store.setTimeZone(TimeZone.getTimeZone("UTC"));
+            store.setIndexCreationEnabled(false);
+            SimpleFeatureSource source = store.getFeatureSource();
+            SimpleFeatureType schema = source.getSchema();
+            for (AttributeDescriptor descriptor : schema.getAttributeDescriptors()) {
+                if (!(descriptor instanceof GeometryDescriptor)) {
+                    attributeNames.add(descriptor.getLocalName());
+                }
+            }
+            this.crs = schema.getCoordinateReferenceSystem();
+            this.featureCount = source.getCount(Query.ALL);
+            this.features = source.getFeatures().features();
+            this.dataStore = store;
+        } catch (IOException | RuntimeException e) {
+            if (store != null) {
+                store.dispose();
+            }
+            deleteWorkDirectory();
+            throw e;
+        }
+    }
+
+    @Override
+    public CoordinateReferenceSystem getCrs() {
+        return crs;
+    }
+
+    @Override
+    public long getFeatureCount() {
+        return featureCount;
+    }
+
+    @Override
+    public ImportFeature next() throws IOException {
+        SimpleFeature feature;
+        try {
+            if (!features.hasNext()) {
+                return null;
+            }
+            feature = features.next();
+        } catch (RuntimeException e) {
+            throw new IOException("Cannot read the shapefile after record " + position, e);
+        }
+        position++;
+
+        Map<String, Object> attributes = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (String name : attributeNames) {
+            attributes.put(name, feature.getAttribute(name));
+        }
+        return new ImportFeature("record " + position, attributes, (Geometry) feature.getDefaultGeometry());
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            features.close();
+            dataStore.dispose();
+        } finally {
+            deleteWorkDirectory();
+        }
+    }
+
+    /**
+     * Extract the shapefile members of an archive, ignoring its directories.
+     *
+     * @return the extracted {@code .shp} file
+     */
+    private static Path extract(Path archive, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> shapefiles = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.isDirectory() || entry.getName().startsWith("__MACOSX/")) {
+                    continue;
+                }
+                // Only the file name is kept, so entries cannot be written outside the directory
+                String name = Path.of(entry.getName()).getFileName().toString();
+                int dot = name.lastIndexOf('.');
+                String extension = dot >= 0 ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+                if (!SHAPEFILE_EXTENSIONS.contains(extension)) {
+                    continue;
+                }
+                Path target = directory.resolve(name);
+                Files.copy(zip, target, StandardCopyOption.REPLACE_EXISTING);
+                if (extension.equals("shp")) {
+                    shapefiles.add(target);
+                }
+            }
+        }
+        if (shapefiles.size() != 1) {
+            throw new IllegalArgumentException("The archive must hold exactly one shapefile, it holds " + shapefiles.size());
+        }
+        return shapefiles.get(0);
+    }
+
+    private static Charset charsetOf(Path shp) throws IOException {
+        String base = shp.getFileName().toString();
+        Path cpg = shp.resolveSibling(base.substring(0, base.length() - 4) + ".cpg");
+        if (!Files.exists(cpg)) {
+            return StandardCharsets.ISO_8859_1;
+        }
+        String name;
+        try (InputStream in = Files.newInputStream(cpg)) {
+            name = new String(in.readNBytes(64), StandardCharsets.US_ASCII).trim();
+        }
+        try {
+            // Code pages are often given by number only, e.g. 1252
+            return Charset.forName(name.chars().allMatch(Character::isDigit) ? "windows-" + name : name);
+        } catch (IllegalArgumentException e) {
+            return StandardCharsets.ISO_8859_1;
+        }
+    }
+
+    private void deleteWorkDirectory() throws IOException {
+        if (workDirectory == null || !Files.exists(workDirectory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(workDirectory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
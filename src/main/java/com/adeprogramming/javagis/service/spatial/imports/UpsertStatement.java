@@ -0,0 +1,132 @@
+package com.adeprogramming.javagis.service.spatial.imports;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The statement that upserts imported rows into a table by a unique business ID. The mapped
+ * columns are followed by the fixed columns of the target, e.g. its geometry. On update, mapped
+ * columns without a value keep their current value; on insert they take their
+ * {@linkplain ImportColumn#getInsertDefault() insert default}, if any, which is why the values of
+ * such columns are bound a second time for the update.
+ *
+ * @param <C> the mapped columns
+ */
+public final class UpsertStatement<C extends Enum<C> & ImportColumn> {
+
+    /**
+     * A column written for every row.
+     *
+     * @param name the column
+     * @param value the SQL of its value, with at most one parameter
+     * @param sqlType the JDBC type of the parameter, if any
+     * @param updated whether the value also replaces the current value on update
+     */
+    public record FixedColumn(String name, String value, int sqlType, boolean updated) {
+
+        public static FixedColumn parameter(String name, int sqlType, boolean updated) {
+            return new FixedColumn(name, "?", sqlType, updated);
+        }
+
+        public static FixedColumn constant(String name, String value, boolean updated) {
+            return new FixedColumn(name, value, Types.NULL, updated);
+        }
+
+        boolean hasParameter() {
+            return value.indexOf('?') >= 0;
+        }
+    }
+
+    private final String sql;
+    private final int[] types;
+    private final List<C> defaulted = new ArrayList<>();
+    private final int fixedParameters;
+
+    /**
+     * @param table the table
+     * @param columnType the mapped columns
+     * @param key the column of the business ID, which must be unique
+     * @param fixedColumns the other columns
+     */
+    public UpsertStatement(String table, Class<C> columnType, C key, List<FixedColumn> fixedColumns) {
+        StringBuilder columns = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        StringBuilder updates = new StringBuilder();
+        List<Integer> parameterTypes = new ArrayList<>();
+        for (C column : columnType.getEnumConstants()) {
+            String name = column.getColumnName();
+            append(columns, name);
+            parameterTypes.add(column.getSqlType());
+            if (column.getInsertDefault() != null) {
+                append(values, "COALESCE(?, '" + column.getInsertDefault() + "')");
+                defaulted.add(column);
+            } else {
+                append(values, "?");
+                if (column != key) {
+                    append(updates, name + " = COALESCE(EXCLUDED." + name + ", " + table + "." + name + ")");
+                }
+            }
+        }
+        int fixed = 0;
+        for (FixedColumn column : fixedColumns) {
+            append(columns, column.name());
+            append(values, column.value());
+            if (column.hasParameter()) {
+                parameterTypes.add(column.sqlType());
+                fixed++;
+            }
+            if (column.updated()) {
+                append(updates, column.name() + " = EXCLUDED." + column.name());
+            }
+        }
+        for (C column : defaulted) {
+            String name = column.getColumnName();
+            append(updates, name + " = COALESCE(CAST(? AS VARCHAR), " + table + "." + name + ")");
+            parameterTypes.add(column.getSqlType());
+        }
+        this.fixedParameters = fixed;
+        this.sql = "INSERT INTO " + table + " (" + columns + ") VALUES (" + values + ") " +
+                "ON CONFLICT (" + key.getColumnName() + ") DO UPDATE SET " + updates;
+        this.types = parameterTypes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return the JDBC types of the parameters
+     */
+    public int[] getTypes() {
+        return types;
+    }
+
+    /**
+     * Get the parameters of a row.
+     *
+     * @param values the mapped values, indexed by the ordinals of the columns
+     * @param fixedValues the values of the fixed columns that have a parameter, in order
+     * @return the parameters
+     */
+    public Object[] parameters(Object[] values, Object... fixedValues) {
+        if (fixedValues.length != fixedParameters) {
+            throw new IllegalArgumentException("Expected " + fixedParameters + " fixed values");
+        }
+        Object[] parameters = new Object[types.length];
+        System.arraycopy(values, 0, parameters, 0, values.length);
+        System.arraycopy(fixedValues, 0, parameters, values.length, fixedValues.length);
+        int i = values.length + fixedValues.length;
+        for (C column : defaulted) {
+            parameters[i++] = values[column.ordinal()];
+        }
+        return parameters;
+    }
+
+    private static void append(StringBuilder list, String item) {
+        if (!list.isEmpty()) {
+            list.append(", ");
+        }
+        list.append(item);
+    }
+}
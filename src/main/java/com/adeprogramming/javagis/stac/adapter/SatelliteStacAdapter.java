@@ -0,0 +1,218 @@
+package com.adeprogramming.javagis.stac.adapter;
+
+import com.adeprogramming.javagis.model.satellite.SatelliteScene;
+import com.adeprogramming.javagis.model.satellite.SceneChange;
+import com.adeprogramming.javagis.payload.satellite.FieldStatisticsResponse;
+import com.adeprogramming.javagis.payload.satellite.SceneBand;
+import com.adeprogramming.javagis.service.satellite.ChangeDetectionService;
+import com.adeprogramming.javagis.service.satellite.SatelliteSceneService;
+import com.adeprogramming.javagis.service.satellite.SceneMetadata;
+import com.adeprogramming.javagis.service.satellite.ZonalStatisticsService;
+import com.adeprogramming.javagis.stac.model.StacAsset;
+import com.adeprogramming.javagis.stac.model.StacItem;
+import com.adeprogramming.javagis.stac.model.StacLink;
+import com.adeprogramming.javagis.stac.service.StacItemService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.io.geojson.GeoJsonWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adapter for converting satellite scenes to STAC items. The cloud-optimised GeoTIFF is the
+ * item's data asset, described with the electro-optical, raster and projection extensions;
+ * the projection fields are set on the asset, as they describe its pixel grid. The NDVI
+ * statistics of the fields in the scene are listed in the item properties, without histograms,
+ * and the NDVI changes from earlier scenes are further assets of the item. Asset files are
+ * served under {@code /stac/assets}, where they can be read with range requests.
+ */
+@Component
+public class SatelliteStacAdapter {
+
+    public static final String COLLECTION_ID = "satellite-scenes";
+
+    public static final String COG_MEDIA_TYPE = "image/tiff; application=geotiff; profile=cloud-optimized";
+
+    private static final String EO_EXTENSION = "https://stac-extensions.github.io/eo/v1.1.0/schema.json";
+    private static final String RASTER_EXTENSION = "https://stac-extensions.github.io/raster/v1.1.0/schema.json";
+    private static final DateTimeFormatter ISO_FORMATTER = DateTimeFormatter.ISO_DATE_TIME;
+    private static final int GEOMETRY_DECIMALS = 7;
+
+    private final SatelliteSceneService satelliteSceneService;
+    private final ZonalStatisticsService zonalStatisticsService;
+    private final ChangeDetectionService changeDetectionService;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public SatelliteStacAdapter(SatelliteSceneService satelliteSceneService,
+                                ZonalStatisticsService zonalStatisticsService,
+                                ChangeDetectionService changeDetectionService, ObjectMapper objectMapper) {
+        this.satelliteSceneService = satelliteSceneService;
+        this.zonalStatisticsService = zonalStatisticsService;
+        this.changeDetectionService = changeDetectionService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Convert a ready SatelliteScene to a STAC Item.
+     *
+     * @param scene the satellite scene
+     * @param baseUrl the base URL for generating links
+     * @return the STAC item
+     */
+    public StacItem satelliteSceneToStacItem(SatelliteScene scene, String baseUrl) {
+        String itemId = "scene-" + scene.getSceneId();
+        SceneMetadata metadata = satelliteSceneService.getMetadata(scene);
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("datetime", scene.getObservationDate().atZone(ZoneOffset.UTC).format(ISO_FORMATTER));
+        properties.put("title", scene.getName());
+        properties.put("platform", scene.getPlatform());
+        properties.put("gsd", scene.getResolution());
+        properties.put("created", scene.getCreatedAt().atZone(ZoneOffset.UTC).format(ISO_FORMATTER));
+
+        List<Map<String, Object>> fieldStatistics = new ArrayList<>();
+        for (FieldStatisticsResponse statistics : zonalStatisticsService.getSceneStatistics(scene)) {
+            Map<String, Object> field = new LinkedHashMap<>();
+            field.put("field_id", statistics.getFieldId());
+            field.put("pixel_count", statistics.getPixelCount());
+            field.put("valid_pixel_count", statistics.getValidPixelCount());
+            field.put("ndvi_mean", statistics.getMean());
+            field.put("ndvi_min", statistics.getMin());
+            field.put("ndvi_max", statistics.getMax());
+            field.put("ndvi_stddev", statistics.getStdDev());
+            fieldStatistics.add(field);
+        }
+        properties.put("field_statistics", fieldStatistics);
+
+        List<Map<String, Object>> eoBands = new ArrayList<>();
+        List<Map<String, Object>> rasterBands = new ArrayList<>();
+        for (SceneBand band : metadata.bands()) {
+            Map<String, Object> eoBand = new LinkedHashMap<>();
+            eoBand.put("name", band.getName());
+            if (band.getCommonName() != null) {
+                eoBand.put("common_name", band.getCommonName());
+            }
+            eoBands.add(eoBand);
+
+            Map<String, Object> rasterBand = new LinkedHashMap<>();
+            rasterBand.put("data_type", scene.getDataType());
+            if (scene.getNoData() != null) {
+                rasterBand.put("nodata", Double.isNaN(scene.getNoData()) ? "nan" : scene.getNoData());
+            }
+            rasterBand.put("spatial_resolution", scene.getResolution());
+            rasterBands.add(rasterBand);
+        }
+
+        double[] t = metadata.transform();
+        Map<String, Object> cogProperties = new HashMap<>();
+        cogProperties.put("eo:bands", eoBands);
+        cogProperties.put("raster:bands", rasterBands);
+        cogProperties.put("proj:epsg", scene.getRasterEpsg());
+        cogProperties.put("proj:shape", new int[]{scene.getHeight(), scene.getWidth()});
+        // The projection extension orders the coefficients like the rows of the affine matrix
+        double[] projTransform = {t[1], t[2], t[0], t[4], t[5], t[3]};
+        cogProperties.put("proj:transform", projTransform);
+        cogProperties.put("file:size", scene.getCogSize());
+
+        Map<String, StacAsset> assets = new HashMap<>();
+        assets.put("data", StacAsset.builder()
+                .href(baseUrl + "/stac/assets/scenes/" + scene.getSceneId())
+                .title("Cloud-optimised GeoTIFF")
+                .description("All bands of the scene, tiled, with " + scene.getOverviewCount() + " overviews")
+                .type(COG_MEDIA_TYPE)
+                .roles(new String[]{"data"})
+                .properties(cogProperties)
+                .build());
+
+        for (SceneChange change : changeDetectionService.getChangesTo(scene)) {
+            Map<String, Object> rasterBand = new LinkedHashMap<>();
+            rasterBand.put("data_type", "float32");
+            rasterBand.put("nodata", "nan");
+            rasterBand.put("spatial_resolution", scene.getResolution());
+
+            Map<String, Object> changeProperties = new HashMap<>();
+            changeProperties.put("raster:bands", List.of(rasterBand));
+            changeProperties.put("proj:epsg", scene.getRasterEpsg());
+            changeProperties.put("proj:shape", new int[]{scene.getHeight(), scene.getWidth()});
+            changeProperties.put("proj:transform", projTransform);
+            changeProperties.put("file:size", change.getCogSize());
+
+            String beforeSceneId = change.getBeforeScene().getSceneId();
+            assets.put("ndvi-change-" + beforeSceneId, StacAsset.builder()
+                    .href(baseUrl + "/stac/assets/changes/" + change.getId())
+                    .title("NDVI change since " + beforeSceneId)
+                    .description("NDVI of this scene minus NDVI of scene " + beforeSceneId + "; "
+                            + change.getFlaggedCount() + " of " + change.getFieldCount()
+                            + " fields lost at least " + change.getThreshold())
+                    .type(COG_MEDIA_TYPE)
+                    .roles(new String[]{"data"})
+                    .properties(changeProperties)
+                    .build());
+        }
+
+        List<StacLink> links = new ArrayList<>();
+        links.add(StacLink.builder()
+                .href(baseUrl + "/stac/collections/" + COLLECTION_ID + "/items/" + itemId)
+                .rel("self")
+                .type("application/json")
+                .title("Satellite Scene " + scene.getSceneId())
+                .build());
+
+        links.add(StacLink.builder()
+                .href(baseUrl + "/stac/collections/" + COLLECTION_ID)
+                .rel("parent")
+                .type("application/json")
+                .title("Satellite Scenes Collection")
+                .build());
+
+        links.add(StacLink.builder()
+                .href(baseUrl + "/stac/collections/" + COLLECTION_ID)
+                .rel("collection")
+                .type("application/json")
+                .title("Satellite Scenes Collection")
+                .build());
+
+        links.add(StacLink.builder()
+                .href(baseUrl + "/stac")
+                .rel("root")
+                .type("application/json")
+                .title("Root STAC Catalog")
+                .build());
+
+        Envelope bbox = scene.getGeometry().getEnvelopeInternal();
+        return StacItem.builder()
+                .stac_version("1.0.0")
+                .stac_extensions(List.of(EO_EXTENSION, RASTER_EXTENSION, StacItemService.PROJECTION_EXTENSION))
+                .id(itemId)
+                .type("Feature")
+                .geometry(geometryToMap(scene))
+                .bbox(new double[]{bbox.getMinX(), bbox.getMinY(), bbox.getMaxX(), bbox.getMaxY()})
+                .properties(properties)
+                .links(links)
+                .assets(assets)
+                .collection(COLLECTION_ID)
+                .build();
+    }
+
+    private Map<String, Object> geometryToMap(SatelliteScene scene) {
+        GeoJsonWriter writer = new GeoJsonWriter(GEOMETRY_DECIMALS);
+        writer.setEncodeCRS(false);
+        try {
+            return objectMapper.readValue(writer.write(scene.getGeometry()), new TypeReference<>() {
+            });
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not encode the footprint of scene " + scene.getSceneId(), e);
+        }
+    }
+}
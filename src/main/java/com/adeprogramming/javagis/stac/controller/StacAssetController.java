@@ -0,0 +1,81 @@
+package com.adeprogramming.javagis.stac.controller;
+
+import com.adeprogramming.javagis.service.satellite.ChangeDetectionService;
+import com.adeprogramming.javagis.service.satellite.SatelliteSceneService;
+import com.adeprogramming.javagis.stac.adapter.SatelliteStacAdapter;
+import com.adeprogramming.javagis.stac.service.StacAssetService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * REST controller for the files behind STAC assets.
+ * Serves the cloud-optimised GeoTIFFs of satellite scenes and NDVI changes with support for
+ * range requests, so they can be read tile by tile, e.g. by GDAL through {@code /vsicurl/}.
+ */
+@RestController
+@RequestMapping("/stac/assets")
+public class StacAssetController {
+
+    private final SatelliteSceneService satelliteSceneService;
+    private final ChangeDetectionService changeDetectionService;
+    private final StacAssetService stacAssetService;
+
+    @Autowired
+    public StacAssetController(SatelliteSceneService satelliteSceneService,
+                               ChangeDetectionService changeDetectionService,
+                               StacAssetService stacAssetService) {
+        this.satelliteSceneService = satelliteSceneService;
+        this.changeDetectionService = changeDetectionService;
+        this.stacAssetService = stacAssetService;
+    }
+
+    /**
+     * Get the cloud-optimised GeoTIFF of a ready satellite scene, or byte ranges of it.
+     *
+     * @param sceneId the scene ID
+     * @param request the HTTP request
+     * @param response the HTTP response
+     */
+    @RequestMapping(value = "/scenes/{sceneId}", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void getSceneAsset(@PathVariable String sceneId, HttpServletRequest request,
+                              HttpServletResponse response) throws IOException {
+        serve(satelliteSceneService.getCogFile(sceneId), request, response);
+    }
+
+    /**
+     * Get the cloud-optimised GeoTIFF of a computed NDVI change, or byte ranges of it.
+     *
+     * @param id the ID of the change
+     * @param request the HTTP request
+     * @param response the HTTP response
+     */
+    @RequestMapping(value = "/changes/{id}", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void getChangeAsset(@PathVariable Long id, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+        serve(changeDetectionService.getCogFile(id), request, response);
+    }
+
+    private void serve(Optional<Path> file, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (file.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        try {
+            stacAssetService.serve(file.get(), SatelliteStacAdapter.COG_MEDIA_TYPE, request, response);
+        } catch (NoSuchFileException e) {
+            // Replaced or removed since it was looked up
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        }
+    }
+}
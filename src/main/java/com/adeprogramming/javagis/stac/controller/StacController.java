@@ -1,17 +1,24 @@
 package com.adeprogramming.javagis.stac.controller;
 
+import com.adeprogramming.javagis.security.payload.MessageResponse;
+import com.adeprogramming.javagis.service.spatial.CoordinateTransformService;
 import com.adeprogramming.javagis.stac.model.StacCatalog;
 import com.adeprogramming.javagis.stac.model.StacCollection;
+import com.adeprogramming.javagis.stac.model.StacItem;
 import com.adeprogramming.javagis.stac.service.StacCatalogService;
+import com.adeprogramming.javagis.stac.service.StacItemService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.servlet.http.HttpServletRequest;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * REST controller for STAC catalog endpoints.
@@ -21,11 +28,15 @@ import java.util.List;
 @RequestMapping("/stac")
 public class StacController {
 
+    private static final int MAX_LIMIT = 1000;
+
     private final StacCatalogService stacCatalogService;
+    private final StacItemService stacItemService;
 
     @Autowired
-    public StacController(StacCatalogService stacCatalogService) {
+    public StacController(StacCatalogService stacCatalogService, StacItemService stacItemService) {
         this.stacCatalogService = stacCatalogService;
+        this.stacItemService = stacItemService;
     }
 
     /**
@@ -73,6 +84,66 @@ public class StacController {
         return ResponseEntity.ok(collection);
     }
 
+    /**
+     * Get the items of a STAC collection.
+     *
+     * @param collectionId the ID of the collection
+     * @param page the page number, from 0
+     * @param limit the number of items per page
+     * @param crs a CRS to add the projected geometries in with the projection extension, e.g. EPSG:3035
+     * @param request the HTTP request
+     * @return the STAC items
+     */
+    @GetMapping("/collections/{collectionId}/items")
+    public ResponseEntity<?> getItems(
+            @PathVariable String collectionId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) String crs,
+            HttpServletRequest request) {
+        if (page < 0 || limit < 1 || limit > MAX_LIMIT) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: Page must not be negative and limit must be between 1 and " + MAX_LIMIT + "!"));
+        }
+        if (stacCatalogService.getCollection(collectionId, getBaseUrl(request)) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            List<StacItem> items = stacItemService.getItemsByCollection(collectionId, getBaseUrl(request),
+                    PageRequest.of(page, limit), crs != null ? CoordinateTransformService.parseEpsg(crs) : null);
+            return ResponseEntity.ok(items);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: " + e.getMessage() + "!"));
+        }
+    }
+
+    /**
+     * Get a specific STAC item.
+     *
+     * @param collectionId the ID of the collection
+     * @param itemId the ID of the item
+     * @param crs a CRS to add the projected geometry in with the projection extension, e.g. EPSG:3035
+     * @param request the HTTP request
+     * @return the STAC item
+     */
+    @GetMapping("/collections/{collectionId}/items/{itemId}")
+    public ResponseEntity<?> getItem(
+            @PathVariable String collectionId,
+            @PathVariable String itemId,
+            @RequestParam(required = false) String crs,
+            HttpServletRequest request) {
+        Optional<StacItem> item;
+        try {
+            item = stacItemService.getItem(collectionId, itemId, getBaseUrl(request),
+                    crs != null ? CoordinateTransformService.parseEpsg(crs) : null);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: " + e.getMessage() + "!"));
+        }
+        return item.<ResponseEntity<?>>map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
     /**
      * Get the base URL from the HTTP request.
      *
@@ -1,5 +1,6 @@
 package com.adeprogramming.javagis.stac.model;
 
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -48,8 +49,10 @@ public class StacAsset {
     private String[] roles;
 
     /**
-     * Additional fields not defined in the STAC specification.
+     * Additional fields not defined in the STAC specification, e.g. those of extensions,
+     * written as fields of the asset itself.
      */
+    @JsonAnyGetter
     @Builder.Default
     private Map<String, Object> properties = new HashMap<>();
 }
@@ -29,6 +29,11 @@ public class StacItem {
      */
     private String stac_version;
 
+    /**
+     * The URLs of the JSON schemas of the extensions the item implements.
+     */
+    private List<String> stac_extensions;
+
     /**
      * The ID of the item.
      */
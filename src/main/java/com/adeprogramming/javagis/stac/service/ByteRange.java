@@ -0,0 +1,119 @@
+package com.adeprogramming.javagis.stac.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A range of bytes of a file, both ends inclusive as in the {@code Content-Range} header.
+ *
+ * @param start the first byte
+ * @param end the last byte
+ */
+record ByteRange(long start, long end) {
+
+    private static final String BYTES_UNIT = "bytes=";
+
+    long length() {
+        return end - start + 1;
+    }
+
+    String contentRange(long fileLength) {
+        return "bytes " + start + "-" + end + "/" + fileLength;
+    }
+
+    /**
+     * Parse a {@code Range} header against a file. Ranges reaching past the end of the file are
+     * cut short and ranges starting after it are dropped. The remaining ranges are sorted, and
+     * ranges that overlap or touch are merged, so no byte is sent twice.
+     *
+     * @param header the value of the header
+     * @param fileLength the length of the file
+     * @param maxRanges the most ranges a request may ask for
+     * @return the ranges to send, an empty list if none is satisfiable; empty if the header is
+     * malformed, uses another unit or asks for too many ranges, and is to be ignored
+     */
+    static Optional<List<ByteRange>> parse(String header, long fileLength, int maxRanges) {
+        if (header == null || !header.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+            return Optional.empty();
+        }
+        String[] specs = header.substring(BYTES_UNIT.length()).split(",");
+        if (specs.length > maxRanges) {
+            return Optional.empty();
+        }
+
+        List<ByteRange> ranges = new ArrayList<>();
+        boolean any = false;
+        for (String spec : specs) {
+            spec = spec.trim();
+            if (spec.isEmpty()) {
+                continue;
+            }
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return Optional.empty();
+            }
+            long first = parseNumber(spec.substring(0, dash));
+            long last = parseNumber(spec.substring(dash + 1));
+            if (dash == 0) {
+                // A suffix range: the last bytes of the file
+                if (last < 0) {
+                    return Optional.empty();
+                }
+                if (last > 0 && fileLength > 0) {
+                    ranges.add(new ByteRange(Math.max(fileLength - last, 0), fileLength - 1));
+                }
+            } else {
+                if (first < 0 || (dash + 1 < spec.length() && (last < 0 || last < first))) {
+                    return Optional.empty();
+                }
+                if (first < fileLength) {
+                    long end = dash + 1 < spec.length() ? Math.min(last, fileLength - 1) : fileLength - 1;
+                    ranges.add(new ByteRange(first, end));
+                }
+            }
+            any = true;
+        }
+        if (!any) {
+            return Optional.empty();
+        }
+        return Optional.of(coalesce(ranges));
+    }
+
+    private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+        ranges.sort(Comparator.comparingLong(ByteRange::start));
+        List<ByteRange> merged = new ArrayList<>();
+        ByteRange current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            ByteRange next = ranges.get(i);
+            if (next.start() <= current.end() + 1) {
+                current = new ByteRange(current.start(), Math.max(current.end(), next.end()));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+    /**
+     * @return the number, -1 if the text is not a number of at most 18 digits
+     */
+    private static long parseNumber(String text) {
+        text = text.trim();
+        if (text.isEmpty() || text.length() > 18) {
+            return -1;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) < '0' || text.charAt(i) > '9') {
+                return -1;
+            }
+        }
+        return Long.parseLong(text);
+    }
+}
@@ -0,0 +1,249 @@
+package com.adeprogramming.javagis.stac.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Service for sending asset files over HTTP, so that clients such as GDAL can read the tiles of
+ * a cloud-optimised GeoTIFF with range requests instead of downloading the whole file.
+ * <p>
+ * Single and multiple byte ranges are supported, the latter as {@code multipart/byteranges},
+ * along with the conditional headers against an ETag derived from the size and modification
+ * time of the file. A whole file or a single range is handed to Tomcat's sendfile when the
+ * connector supports it, which transfers the bytes from the page cache to the socket without
+ * copying them through the heap. Multiple ranges, and single ranges without sendfile, are written
+ * with {@link FileChannel#transferTo} to a channel over the servlet output stream, which copies
+ * the bytes through a heap buffer.
+ */
+@Service
+public class StacAssetService {
+
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final int maxRanges;
+
+    public StacAssetService(@Value("${stac.assets.max-ranges:100}") int maxRanges) {
+        this.maxRanges = maxRanges;
+    }
+
+    /**
+     * Answer a GET or HEAD request for a file.
+     *
+     * @param file the file
+     * @param contentType the media type of the file
+     * @param request the HTTP request
+     * @param response the HTTP response
+     * @throws java.nio.file.NoSuchFileException if the file does not exist, before anything is sent
+     * @throws IOException if the file could not be read or the client went away
+     */
+    public void serve(Path file, String contentType, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            // HTTP dates have a resolution of one second
+            long lastModified = Files.getLastModifiedTime(file).toMillis() / 1000 * 1000;
+            String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            response.setHeader(HttpHeaders.ETAG, etag);
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+
+            int precondition = evaluatePreconditions(request, etag, lastModified);
+            if (precondition != HttpServletResponse.SC_OK) {
+                response.setStatus(precondition);
+                return;
+            }
+
+            Optional<List<ByteRange>> ranges = rangeApplies(request, etag, lastModified)
+                    ? ByteRange.parse(request.getHeader(HttpHeaders.RANGE), length, maxRanges)
+                    : Optional.empty();
+            boolean head = "HEAD".equals(request.getMethod());
+
+            if (ranges.isEmpty()) {
+                response.setStatus(HttpServletResponse.SC_OK);
+                response.setContentType(contentType);
+                response.setContentLengthLong(length);
+                if (!head) {
+                    send(file, channel, new ByteRange(0, length - 1), request, response);
+                }
+            } else if (ranges.get().isEmpty()) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            } else if (ranges.get().size() == 1) {
+                ByteRange range = ranges.get().get(0);
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setContentType(contentType);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, range.contentRange(length));
+                response.setContentLengthLong(range.length());
+                if (!head) {
+                    send(file, channel, range, request, response);
+                }
+            } else {
+                sendMultipart(channel, length, ranges.get(), contentType, head, response);
+            }
+        }
+    }
+
+    /**
+     * Evaluate the conditional headers in the order of RFC 9110 section 13.2.2.
+     *
+     * @return 200 to go on with the request, otherwise the status to answer with
+     */
+    private static int evaluatePreconditions(HttpServletRequest request, String etag, long lastModified) {
+        String ifMatch = request.getHeader(HttpHeaders.IF_MATCH);
+        if (ifMatch != null) {
+            if (!matches(ifMatch, etag, false)) {
+                return HttpServletResponse.SC_PRECONDITION_FAILED;
+            }
+        } else {
+            long ifUnmodifiedSince = dateHeader(request, HttpHeaders.IF_UNMODIFIED_SINCE);
+            if (ifUnmodifiedSince >= 0 && lastModified > ifUnmodifiedSince) {
+                return HttpServletResponse.SC_PRECONDITION_FAILED;
+            }
+        }
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            if (matches(ifNoneMatch, etag, true)) {
+                return HttpServletResponse.SC_NOT_MODIFIED;
+            }
+        } else {
+            long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+            if (ifModifiedSince >= 0 && lastModified <= ifModifiedSince) {
+                return HttpServletResponse.SC_NOT_MODIFIED;
+            }
+        }
+        return HttpServletResponse.SC_OK;
+    }
+
+    /**
+     * @return whether the Range header is to be honoured: there is no If-Range header, or it
+     * names the current version of the file
+     */
+    private static boolean rangeApplies(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.trim().startsWith("\"") || ifRange.trim().startsWith("W/")) {
+            return matches(ifRange, etag, false);
+        }
+        return dateHeader(request, HttpHeaders.IF_RANGE) == lastModified;
+    }
+
+    /**
+     * @param header a list of entity tags, or {@code *}
+     * @param etag the strong entity tag of the file
+     * @param weak whether to use the weak comparison, which ignores the {@code W/} prefix
+     */
+    private static boolean matches(String header, String etag, boolean weak) {
+        for (String tag : header.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                if (!weak) {
+                    continue;
+                }
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the date in milliseconds, -1 if the header is missing or not a date
+     */
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private static void send(Path file, FileChannel channel, ByteRange range, HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        if (range.length() <= 0) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            // Tomcat sends the range once the request has been handled; the end is exclusive
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, range.start());
+            request.setAttribute(SENDFILE_END, range.end() + 1);
+            return;
+        }
+        OutputStream out = response.getOutputStream();
+        transfer(channel, range, Channels.newChannel(out));
+        out.flush();
+    }
+
+    private static void sendMultipart(FileChannel channel, long length, List<ByteRange> ranges, String contentType,
+                                      boolean head, HttpServletResponse response) throws IOException {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        byte[][] partHeaders = new byte[ranges.size()][];
+        byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        long contentLength = end.length;
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRange range = ranges.get(i);
+            partHeaders[i] = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + range.contentRange(length) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            contentLength += partHeaders[i].length + range.length();
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (head) {
+            return;
+        }
+        OutputStream out = response.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        for (int i = 0; i < ranges.size(); i++) {
+            out.write(partHeaders[i]);
+            transfer(channel, ranges.get(i), target);
+        }
+        out.write(end);
+        out.flush();
+    }
+
+    private static void transfer(FileChannel channel, ByteRange range, WritableByteChannel target)
+            throws IOException {
+        long position = range.start();
+        long end = range.end() + 1;
+        while (position < end) {
+            long sent = channel.transferTo(position, end - position, target);
+            if (sent <= 0) {
+                throw new EOFException("The file ended at byte " + position + " while sending it");
+            }
+            position += sent;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.adeprogramming.javagis.stac.service;
 
+import com.adeprogramming.javagis.stac.adapter.SatelliteStacAdapter;
 import com.adeprogramming.javagis.stac.model.*;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -81,6 +82,9 @@ public class StacCatalogService {
         // Agricultural Assets Collection
         collections.add(createAgriculturalAssetsCollection(baseUrl));
 
+        // Satellite Scenes Collection
+        collections.add(createSatelliteScenesCollection(baseUrl));
+
         return collections;
     }
 
@@ -96,6 +100,8 @@ public class StacCatalogService {
             return createEnvironmentalMonitoringCollection(baseUrl);
         } else if ("agricultural-assets".equals(collectionId)) {
             return createAgriculturalAssetsCollection(baseUrl);
+        } else if (SatelliteStacAdapter.COLLECTION_ID.equals(collectionId)) {
+            return createSatelliteScenesCollection(baseUrl);
         }
         return null;
     }
@@ -233,5 +239,71 @@ public class StacCatalogService {
                 .extent(extent)
                 .build();
     }
-}
 
+    /**
+     * Create the Satellite Scenes STAC collection.
+     *
+     * @param baseUrl the base URL for generating links
+     * @return the Satellite Scenes STAC collection
+     */
+    private StacCollection createSatelliteScenesCollection(String baseUrl) {
+        List<StacLink> links = new ArrayList<>();
+        links.add(StacLink.builder()
+                .href(baseUrl + "/stac/collections/" + SatelliteStacAdapter.COLLECTION_ID)
+                .rel("self")
+                .type("application/json")
+                .title("Satellite Scenes Collection")
+                .build());
+
+        links.add(StacLink.builder()
+                .href(baseUrl + "/stac")
+                .rel("parent")
+                .type("application/json")
+                .title("Root STAC Catalog")
+                .build());
+
+        links.add(StacLink.builder()
+                .href(baseUrl + "/stac/collections/" + SatelliteStacAdapter.COLLECTION_ID + "/items")
+                .rel("items")
+                .type("application/json")
+                .title("Satellite Scenes Items")
+                .build());
+
+        // Create spatial extent (covering Germany)
+        double[][] bbox = {{5.866, 47.270, 15.042, 55.099}};
+        StacExtent.SpatialExtent spatialExtent = StacExtent.SpatialExtent.builder()
+                .bbox(bbox)
+                .build();
+
+        // Create temporal extent (open-ended)
+        String[][] interval = {{"2020-01-01T00:00:00Z", null}};
+        StacExtent.TemporalExtent temporalExtent = StacExtent.TemporalExtent.builder()
+                .interval(interval)
+                .build();
+
+        StacExtent extent = StacExtent.builder()
+                .spatial(spatialExtent)
+                .temporal(temporalExtent)
+                .build();
+
+        // Create provider
+        StacProvider provider = StacProvider.builder()
+                .name("BASF GmbH")
+                .url("https://agriculture.basf.com")
+                .roles(new String[]{"processor", "host"})
+                .description("BASF Agricultural Solutions")
+                .build();
+
+        return StacCollection.builder()
+                .stac_version(catalogVersion)
+                .id(SatelliteStacAdapter.COLLECTION_ID)
+                .title("Satellite Scenes")
+                .description("Multi-band satellite scenes stored as cloud-optimised GeoTIFFs, for crop health monitoring")
+                .type("Collection")
+                .links(links)
+                .license("proprietary")
+                .providers(Arrays.asList(provider))
+                .extent(extent)
+                .build();
+    }
+}
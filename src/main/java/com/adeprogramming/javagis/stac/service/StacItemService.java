@@ -3,12 +3,22 @@ package com.adeprogramming.javagis.stac.service;
 import com.adeprogramming.javagis.model.agricultural.AgriculturalField;
 import com.adeprogramming.javagis.model.agricultural.SprayRecommendation;
 import com.adeprogramming.javagis.model.environmental.MonitoringStation;
+import com.adeprogramming.javagis.model.satellite.SatelliteScene;
 import com.adeprogramming.javagis.repository.agricultural.AgriculturalFieldRepository;
 import com.adeprogramming.javagis.repository.agricultural.SprayRecommendationRepository;
 import com.adeprogramming.javagis.repository.environmental.MonitoringStationRepository;
+import com.adeprogramming.javagis.repository.satellite.SatelliteSceneRepository;
+import com.adeprogramming.javagis.service.spatial.CoordinateTransformService;
 import com.adeprogramming.javagis.stac.adapter.AgriculturalStacAdapter;
 import com.adeprogramming.javagis.stac.adapter.EnvironmentalMonitoringStacAdapter;
+import com.adeprogramming.javagis.stac.adapter.SatelliteStacAdapter;
 import com.adeprogramming.javagis.stac.model.StacItem;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.geojson.GeoJsonWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -16,34 +26,54 @@ import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
  * Service for managing STAC items.
  * Provides methods for retrieving STAC items from the database.
+ * <p>
+ * Item geometries are always WGS 84, as GeoJSON requires. When items are requested in another
+ * CRS, the reprojected geometry and bbox are added with the STAC projection extension.
  */
 @Service
 public class StacItemService {
 
+    public static final String PROJECTION_EXTENSION = "https://stac-extensions.github.io/projection/v1.1.0/schema.json";
+
+    private static final int PROJECTED_DECIMALS = 3;
+
     private final MonitoringStationRepository monitoringStationRepository;
     private final AgriculturalFieldRepository agriculturalFieldRepository;
     private final SprayRecommendationRepository sprayRecommendationRepository;
+    private final SatelliteSceneRepository satelliteSceneRepository;
     private final EnvironmentalMonitoringStacAdapter environmentalMonitoringStacAdapter;
     private final AgriculturalStacAdapter agriculturalStacAdapter;
+    private final SatelliteStacAdapter satelliteStacAdapter;
+    private final CoordinateTransformService coordinateTransformService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
     public StacItemService(
             MonitoringStationRepository monitoringStationRepository,
             AgriculturalFieldRepository agriculturalFieldRepository,
             SprayRecommendationRepository sprayRecommendationRepository,
+            SatelliteSceneRepository satelliteSceneRepository,
             EnvironmentalMonitoringStacAdapter environmentalMonitoringStacAdapter,
-            AgriculturalStacAdapter agriculturalStacAdapter) {
+            AgriculturalStacAdapter agriculturalStacAdapter,
+            SatelliteStacAdapter satelliteStacAdapter,
+            CoordinateTransformService coordinateTransformService,
+            ObjectMapper objectMapper) {
         this.monitoringStationRepository = monitoringStationRepository;
         this.agriculturalFieldRepository = agriculturalFieldRepository;
         this.sprayRecommendationRepository = sprayRecommendationRepository;
+        this.satelliteSceneRepository = satelliteSceneRepository;
         this.environmentalMonitoringStacAdapter = environmentalMonitoringStacAdapter;
         this.agriculturalStacAdapter = agriculturalStacAdapter;
+        this.satelliteStacAdapter = satelliteStacAdapter;
+        this.coordinateTransformService = coordinateTransformService;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -52,21 +82,26 @@ public class StacItemService {
      * @param collectionId the ID of the collection
      * @param baseUrl the base URL for generating links
      * @param pageable pagination information
+     * @param epsg the EPSG code of the CRS to add projected geometries in, or null for WGS 84 only
      * @return a list of STAC items
+     * @throws IllegalArgumentException if the geometries cannot be projected to the CRS
      */
-    public List<StacItem> getItemsByCollection(String collectionId, String baseUrl, Pageable pageable) {
+    public List<StacItem> getItemsByCollection(String collectionId, String baseUrl, Pageable pageable,
+                                               Integer epsg) {
         List<StacItem> items = new ArrayList<>();
 
         if ("environmental-monitoring".equals(collectionId)) {
             Page<MonitoringStation> stations = monitoringStationRepository.findAll(pageable);
             items = stations.stream()
-                    .map(station -> environmentalMonitoringStacAdapter.monitoringStationToStacItem(station, baseUrl))
+                    .map(station -> project(environmentalMonitoringStacAdapter.monitoringStationToStacItem(
+                            station, baseUrl), station.getGeometry(), epsg))
                     .collect(Collectors.toList());
         } else if ("agricultural-assets".equals(collectionId)) {
             // Get agricultural fields
             Page<AgriculturalField> fields = agriculturalFieldRepository.findAll(pageable);
             List<StacItem> fieldItems = fields.stream()
-                    .map(field -> agriculturalStacAdapter.agriculturalFieldToStacItem(field, baseUrl))
+                    .map(field -> project(agriculturalStacAdapter.agriculturalFieldToStacItem(field, baseUrl),
+                            field.getGeometry(), epsg))
                     .toList();
             items.addAll(fieldItems);
 
@@ -75,10 +110,18 @@ public class StacItemService {
                 int remainingItems = pageable.getPageSize() - items.size();
                 Page<SprayRecommendation> recommendations = sprayRecommendationRepository.findAll(pageable.withPage(0).withPage(remainingItems));
                 List<StacItem> recommendationItems = recommendations.stream()
-                        .map(recommendation -> agriculturalStacAdapter.sprayRecommendationToStacItem(recommendation, baseUrl))
+                        .map(recommendation -> project(agriculturalStacAdapter.sprayRecommendationToStacItem(
+                                recommendation, baseUrl), geometryOf(recommendation), epsg))
                         .toList();
                 items.addAll(recommendationItems);
             }
+        } else if (SatelliteStacAdapter.COLLECTION_ID.equals(collectionId)) {
+            Page<SatelliteScene> scenes = satelliteSceneRepository.findByStatus(
+                    SatelliteScene.SceneStatus.READY, pageable);
+            items = scenes.stream()
+                    .map(scene -> project(satelliteStacAdapter.satelliteSceneToStacItem(scene, baseUrl),
+                            scene.getGeometry(), epsg))
+                    .collect(Collectors.toList());
         }
 
         return items;
@@ -90,33 +133,88 @@ public class StacItemService {
      * @param collectionId the ID of the collection
      * @param itemId the ID of the item
      * @param baseUrl the base URL for generating links
+     * @param epsg the EPSG code of the CRS to add the projected geometry in, or null for WGS 84 only
      * @return the STAC item
+     * @throws IllegalArgumentException if the geometry cannot be projected to the CRS
      */
-    public Optional<StacItem> getItem(String collectionId, String itemId, String baseUrl) {
+    public Optional<StacItem> getItem(String collectionId, String itemId, String baseUrl, Integer epsg) {
         if ("environmental-monitoring".equals(collectionId)) {
             if (itemId.startsWith("station-")) {
                 String stationId = itemId.substring("station-".length());
                 Optional<MonitoringStation> station = monitoringStationRepository.findByStationId(stationId);
-                return station.map(s -> environmentalMonitoringStacAdapter.monitoringStationToStacItem(s, baseUrl));
+                return station.map(s -> project(environmentalMonitoringStacAdapter.monitoringStationToStacItem(
+                        s, baseUrl), s.getGeometry(), epsg));
             }
         } else if ("agricultural-assets".equals(collectionId)) {
             if (itemId.startsWith("field-")) {
                 String fieldId = itemId.substring("field-".length());
                 Optional<AgriculturalField> field = agriculturalFieldRepository.findByFieldId(fieldId);
-                return field.map(f -> agriculturalStacAdapter.agriculturalFieldToStacItem(f, baseUrl));
+                return field.map(f -> project(agriculturalStacAdapter.agriculturalFieldToStacItem(f, baseUrl),
+                        f.getGeometry(), epsg));
             } else if (itemId.startsWith("recommendation-")) {
                 String recommendationId = itemId.substring("recommendation-".length());
                 try {
                     Long id = Long.parseLong(recommendationId);
                     Optional<SprayRecommendation> recommendation = sprayRecommendationRepository.findById(id);
-                    return recommendation.map(r -> agriculturalStacAdapter.sprayRecommendationToStacItem(r, baseUrl));
+                    return recommendation.map(r -> project(agriculturalStacAdapter.sprayRecommendationToStacItem(
+                            r, baseUrl), geometryOf(r), epsg));
                 } catch (NumberFormatException e) {
                     return Optional.empty();
                 }
             }
+        } else if (SatelliteStacAdapter.COLLECTION_ID.equals(collectionId)) {
+            if (itemId.startsWith("scene-")) {
+                String sceneId = itemId.substring("scene-".length());
+                return satelliteSceneRepository.findBySceneId(sceneId)
+                        .filter(scene -> scene.getStatus() == SatelliteScene.SceneStatus.READY)
+                        .map(scene -> project(satelliteStacAdapter.satelliteSceneToStacItem(scene, baseUrl),
+                                scene.getGeometry(), epsg));
+            }
         }
 
         return Optional.empty();
     }
-}
 
+    /**
+     * Add the projection extension fields of an item in a CRS other than WGS 84.
+     *
+     * @param item the item
+     * @param geometry the geometry the item was built from (WGS 84)
+     * @param epsg the EPSG code of the CRS, or null to leave the item as it is
+     * @return the item
+     */
+    private StacItem project(StacItem item, Geometry geometry, Integer epsg) {
+        if (epsg == null || geometry == null) {
+            return item;
+        }
+        Geometry projected = coordinateTransformService.transform(geometry, CoordinateTransformService.WGS84, epsg);
+        Envelope bbox = projected.getEnvelopeInternal();
+
+        GeoJsonWriter writer = new GeoJsonWriter(PROJECTED_DECIMALS);
+        writer.setEncodeCRS(false);
+        Map<String, Object> projectedGeometry;
+        try {
+            projectedGeometry = objectMapper.readValue(writer.write(projected), new TypeReference<>() {
+            });
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not encode the projected geometry", e);
+        }
+
+        item.getProperties().put("proj:epsg", epsg);
+        item.getProperties().put("proj:geometry", projectedGeometry);
+        item.getProperties().put("proj:bbox",
+                new double[]{bbox.getMinX(), bbox.getMinY(), bbox.getMaxX(), bbox.getMaxY()});
+        List<String> extensions = item.getStac_extensions() != null
+                ? new ArrayList<>(item.getStac_extensions()) : new ArrayList<>();
+        if (!extensions.contains(PROJECTION_EXTENSION)) {
+            extensions.add(PROJECTION_EXTENSION);
+        }
+        item.setStac_extensions(extensions);
+        return item;
+    }
+
+    private static Geometry geometryOf(SprayRecommendation recommendation) {
+        return recommendation.getTargetArea() != null
+                ? recommendation.getTargetArea() : recommendation.getField().getGeometry();
+    }
+}
@@ -0,0 +1,111 @@
+package com.adeprogramming.javagis;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the time from launching the application to it answering its first request, in
+ * the default mode, the fast-start profile, and the fast-start profile with the AOT-processed
+ * context and a CDS archive (only if {@code javagis.jsa} exists next to the jar, see README).
+ * Each mode is started the given number of times; the application log of the last run of each
+ * mode is kept in the temporary directory.
+ * <p>
+ * Usage: {@code StartupBenchmark <jar> [runs] [port]}. The database must be running.
+ */
+public class StartupBenchmark {
+
+    private static final Duration TIMEOUT = Duration.ofMinutes(3);
+    private static final long POLL_MILLIS = 10;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: StartupBenchmark <jar> [runs] [port]");
+            System.exit(1);
+        }
+        Path jar = Path.of(args[0]).toAbsolutePath();
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 18080;
+
+        Map<String, List<String>> modes = new LinkedHashMap<>();
+        modes.put("default", List.of());
+        modes.put("fast-start", List.of("-Dspring.profiles.active=fast-start"));
+        Path archive = jar.resolveSibling("javagis.jsa");
+        if (Files.exists(archive)) {
+            modes.put("aot+cds", List.of("-XX:SharedArchiveFile=" + archive, "-Dspring.aot.enabled=true",
+                    "-Dspring.profiles.active=fast-start"));
+        } else {
+            System.out.println("No CDS archive at " + archive + ", skipping the AOT+CDS mode");
+        }
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        URI probe = URI.create("http://localhost:" + port + "/api/stac");
+        for (Map.Entry<String, List<String>> mode : modes.entrySet()) {
+            long[] millis = new long[runs];
+            for (int i = 0; i < runs; i++) {
+                millis[i] = timeToFirstRequest(client, probe, jar, port, mode.getKey(), mode.getValue());
+            }
+            print(mode.getKey(), millis);
+        }
+    }
+
+    private static long timeToFirstRequest(HttpClient client, URI probe, Path jar, int port, String mode,
+                                           List<String> jvmOptions) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        command.add("-jar");
+        command.add(jar.toString());
+        command.add("--server.port=" + port);
+        File log = new File(System.getProperty("java.io.tmpdir"), "javagis-startup-" + mode + ".log");
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log)
+                .start();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(probe).timeout(Duration.ofSeconds(5)).GET().build();
+            long deadline = start + TIMEOUT.toNanos();
+            while (System.nanoTime() < deadline) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("The application exited with " + process.exitValue()
+                            + ", see " + log);
+                }
+                try {
+                    client.send(request, HttpResponse.BodyHandlers.discarding());
+                    return (System.nanoTime() - start) / 1_000_000;
+                } catch (IOException e) {
+                    Thread.sleep(POLL_MILLIS);
+                }
+            }
+            throw new IllegalStateException("No response within " + TIMEOUT + ", see " + log);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static void print(String mode, long[] millis) {
+        long[] sorted = millis.clone();
+        Arrays.sort(sorted);
+        System.out.printf(Locale.ROOT, "%-10s mean %7.0f ms  min %6d ms  median %6d ms  max %6d ms%n", mode,
+                Arrays.stream(sorted).average().orElse(0), sorted[0], sorted[sorted.length / 2],
+                sorted[sorted.length - 1]);
+    }
+}
@@ -0,0 +1,190 @@
+package com.adeprogramming.javagis.analytics.contour;
+
+import com.adeprogramming.javagis.raster.GridSpec;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.algorithm.PointLocation;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Polygon;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the traced polygons against the cells they enclose: every cell centre at or above the
+ * level lies inside, every other one outside, including on grids of several strips, around
+ * empty cells and at saddles.
+ */
+class ContourBuilderTest {
+
+    private static final double CELL = 10;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+    private final Random random = new Random(11);
+
+    @Test
+    void singlePeakIsADiamond() {
+        double[] values = new double[25];
+        values[12] = 10;
+        MultiPolygon contour = contour(grid(5, 5), values, 5);
+
+        assertEquals(1, contour.getNumGeometries());
+        Polygon peak = (Polygon) contour.getGeometryN(0);
+        assertEquals(0, peak.getNumInteriorRing());
+        // Vertices halfway to the four neighbours
+        assertEquals(0.5 * CELL * CELL, peak.getArea(), 1e-9);
+    }
+
+    @Test
+    void ringOfHighValuesHasAHole() {
+        double[] values = new double[49];
+        for (int row = 1; row < 6; row++) {
+            for (int column = 1; column < 6; column++) {
+                values[row * 7 + column] = row == 3 && column == 3 ? 0 : 10;
+            }
+        }
+        MultiPolygon contour = contour(grid(7, 7), values, 5);
+
+        assertEquals(1, contour.getNumGeometries());
+        assertEquals(1, ((Polygon) contour.getGeometryN(0)).getNumInteriorRing());
+        assertCellsClassified(grid(7, 7), values, 5, contour);
+    }
+
+    @Test
+    void saddleIsResolvedByTheMeanOfItsCorners() {
+        GridSpec grid = grid(2, 2);
+
+        // Mean 5 is at the level: the high corners are connected
+        MultiPolygon connected = contour(grid, new double[]{10, 0, 0, 10}, 5);
+        assertEquals(1, connected.getNumGeometries());
+
+        // Mean 4.75 is below the level: the high corners are separate
+        MultiPolygon separated = contour(grid, new double[]{10, 0, 0, 9}, 5);
+        assertEquals(2, separated.getNumGeometries());
+
+        // The same for the other diagonal
+        assertEquals(1, contour(grid, new double[]{0, 10, 10, 0}, 5).getNumGeometries());
+        assertEquals(2, contour(grid, new double[]{0, 10, 9, 0}, 5).getNumGeometries());
+    }
+
+    @Test
+    void emptyCellsAreBelowEveryLevel() {
+        double[] values = new double[25];
+        Arrays.fill(values, 10);
+        values[12] = Double.NaN;
+        MultiPolygon contour = contour(grid(5, 5), values, -1000);
+
+        assertEquals(1, contour.getNumGeometries());
+        Polygon polygon = (Polygon) contour.getGeometryN(0);
+        assertEquals(1, polygon.getNumInteriorRing());
+        // The hole runs along the edges of the empty cell, cut at its corners
+        assertEquals(CELL * CELL - 4 * 0.125 * CELL * CELL, area(polygon.getInteriorRingN(0).getCoordinates()), 1e-9);
+        assertCellsClassified(grid(5, 5), values, -1000, contour);
+    }
+
+    @Test
+    void bandAcrossStripsIsOnePolygon() {
+        // 300 rows are traced in several strips
+        GridSpec grid = grid(10, 300);
+        double[] values = new double[3000];
+        for (int row = 0; row < 300; row++) {
+            for (int column = 3; column < 6; column++) {
+                values[row * 10 + column] = 1;
+            }
+            // A frame in the middle of the band, crossing strip boundaries
+            if (row >= 50 && row < 250) {
+                values[row * 10 + 4] = row == 50 || row == 249 ? 1 : 0;
+            }
+        }
+        MultiPolygon contour = contour(grid, values, 0.5);
+
+        assertEquals(1, contour.getNumGeometries());
+        Polygon band = (Polygon) contour.getGeometryN(0);
+        assertEquals(1, band.getNumInteriorRing());
+        // Three columns, the corners at the edge of the grid cut off, and a slot of
+        // 198 cells with pointed ends taken out
+        assertEquals((3 * 300 - 4 * 0.125 - 197 - 2 * 0.25) * CELL * CELL, band.getArea(), 1e-6);
+        assertCellsClassified(grid, values, 0.5, contour);
+    }
+
+    @Test
+    void randomFieldsAreClassifiedCorrectly() {
+        for (int run = 0; run < 20; run++) {
+            int columns = 1 + random.nextInt(120);
+            int rows = 1 + random.nextInt(200);
+            GridSpec grid = grid(columns, rows);
+            double[] values = new double[columns * rows];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = random.nextInt(20) == 0 ? Double.NaN : random.nextDouble() * 100;
+            }
+            double[] levels = {10, 50, 90};
+            List<MultiPolygon> contours = new ContourBuilder(grid, values, geometryFactory)
+                    .contour(levels, ForkJoinPool.commonPool());
+
+            assertEquals(levels.length, contours.size());
+            double previousArea = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < levels.length; i++) {
+                assertCellsClassified(grid, values, levels[i], contours.get(i));
+                assertTrue(contours.get(i).getArea() <= previousArea);
+                previousArea = contours.get(i).getArea();
+            }
+        }
+    }
+
+    @Test
+    void levelAboveAllValuesIsEmpty() {
+        MultiPolygon contour = contour(grid(3, 3), new double[]{1, 2, 3, 4, 5, 6, 7, 8, 9}, 10);
+        assertTrue(contour.isEmpty());
+    }
+
+    private static GridSpec grid(int columns, int rows) {
+        return new GridSpec(1000, 5000, CELL, columns, rows, 3035);
+    }
+
+    private MultiPolygon contour(GridSpec grid, double[] values, double level) {
+        return new ContourBuilder(grid, values, geometryFactory)
+                .contour(new double[]{level}, ForkJoinPool.commonPool()).get(0);
+    }
+
+    private static void assertCellsClassified(GridSpec grid, double[] values, double level, MultiPolygon contour) {
+        for (int row = 0; row < grid.rows(); row++) {
+            for (int column = 0; column < grid.columns(); column++) {
+                double value = values[row * grid.columns() + column];
+                boolean above = value >= level;
+                assertEquals(above, contains(contour, new Coordinate(grid.x(column), grid.y(row))),
+                        "cell " + row + "," + column + " with " + value + " at level " + level);
+            }
+        }
+    }
+
+    private static boolean contains(MultiPolygon contour, Coordinate point) {
+        for (int i = 0; i < contour.getNumGeometries(); i++) {
+            Polygon polygon = (Polygon) contour.getGeometryN(i);
+            if (!PointLocation.isInRing(point, polygon.getExteriorRing().getCoordinates())) {
+                continue;
+            }
+            boolean inHole = false;
+            for (int h = 0; h < polygon.getNumInteriorRing(); h++) {
+                inHole |= PointLocation.isInRing(point, polygon.getInteriorRingN(h).getCoordinates());
+            }
+            if (!inHole) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double area(Coordinate[] ring) {
+        double sum = 0;
+        for (int i = 0; i < ring.length - 1; i++) {
+            sum += ring[i].x * ring[i + 1].y - ring[i + 1].x * ring[i].y;
+        }
+        return Math.abs(sum / 2);
+    }
+}
@@ -0,0 +1,85 @@
+package com.adeprogramming.javagis.analytics.geodesy;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.PrecisionModel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks ellipsoidal areas against closed forms. The area between two parallels and two
+ * meridians is exact on the authalic sphere; small cells are used so the difference between
+ * their parallel edges and geodesic ones stays negligible. The octant bounded by the equator and
+ * two meridians has only geodesic edges and is an eighth of the ellipsoid.
+ */
+class GeodesicMeasureTest {
+
+    private static final double RADIUS = GeodesicMeasure.AUTHALIC_RADIUS;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+    private final GeodesicMeasure measure = new GeodesicMeasure();
+
+    @Test
+    void smallCellsMatchTheAuthalicSphere() {
+        for (double latitude = -80; latitude <= 80; latitude += 10) {
+            double expected = cellArea(10, latitude, 10.01, latitude + 0.01);
+            assertEquals(expected, measure.area(cell(10, latitude, 10.01, latitude + 0.01)), expected * 1e-7);
+        }
+    }
+
+    @Test
+    void octantIsAnEighthOfTheEllipsoid() {
+        Polygon octant = polygon(0, 0, 90, 0, 0, 90, 0, 0);
+        double expected = Math.PI * RADIUS * RADIUS / 2;
+
+        assertEquals(expected, measure.area(octant), expected * 1e-5);
+        // A quarter of the equator and two meridian quadrants
+        assertEquals(10_018_754.171 + 2 * 10_001_965.729, measure.perimeter(octant), 0.01);
+    }
+
+    @Test
+    void holesAreSubtracted() {
+        Polygon shell = cell(10, 50, 10.01, 50.01);
+        Polygon hole = cell(10.002, 50.002, 10.004, 50.004);
+        Polygon field = geometryFactory.createPolygon(shell.getExteriorRing(),
+                new LinearRing[]{hole.getExteriorRing()});
+
+        assertEquals(cellArea(10, 50, 10.01, 50.01) - cellArea(10.002, 50.002, 10.004, 50.004),
+                measure.area(field), 0.05);
+        assertEquals(measure.perimeter(shell) + measure.perimeter(hole), measure.perimeter(field), 1e-6);
+    }
+
+    @Test
+    void cellsAcrossTheAntimeridianAreNotWrapped() {
+        double expected = cellArea(179.995, -20, 180.005, -19.99);
+
+        assertEquals(expected, measure.area(cell(179.995, -20, -179.995, -19.99)), expected * 1e-7);
+    }
+
+    @Test
+    void areaIsIndependentOfOrientation() {
+        Polygon clockwise = polygon(10, 50, 10, 50.01, 10.01, 50.01, 10.01, 50, 10, 50);
+
+        assertEquals(measure.area(cell(10, 50, 10.01, 50.01)), measure.area(clockwise), 1e-6);
+    }
+
+    private static double cellArea(double minLon, double minLat, double maxLon, double maxLat) {
+        return Math.toRadians(maxLon - minLon) * RADIUS * RADIUS
+                * (Math.sin(GeodesicMeasure.authalicLatitude(maxLat)) - Math.sin(GeodesicMeasure.authalicLatitude(minLat)));
+    }
+
+    private Polygon cell(double minLon, double minLat, double maxLon, double maxLat) {
+        return polygon(minLon, minLat, maxLon, minLat, maxLon, maxLat, minLon, maxLat, minLon, minLat);
+    }
+
+    private Polygon polygon(double... ordinates) {
+        Coordinate[] coordinates = new Coordinate[ordinates.length / 2];
+        for (int i = 0; i < coordinates.length; i++) {
+            coordinates[i] = new Coordinate(ordinates[2 * i], ordinates[2 * i + 1]);
+        }
+        return geometryFactory.createPolygon(coordinates);
+    }
+}
@@ -0,0 +1,108 @@
+package com.adeprogramming.javagis.analytics.interpolation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares k-nearest-neighbour queries against a brute-force scan, on uniform and clustered
+ * points with duplicates, with and without a search radius.
+ */
+class KdTreeTest {
+
+    private final Random random = new Random(3);
+
+    @Test
+    void nearestMatchesBruteForce() {
+        for (int run = 0; run < 50; run++) {
+            int n = 1 + random.nextInt(500);
+            double[] xs = new double[n];
+            double[] ys = new double[n];
+            for (int i = 0; i < n; i++) {
+                if (i > 0 && random.nextInt(10) == 0) {
+                    // Duplicate location, as for co-located stations
+                    int other = random.nextInt(i);
+                    xs[i] = xs[other];
+                    ys[i] = ys[other];
+                } else if (run % 2 == 0) {
+                    xs[i] = random.nextDouble() * 1000;
+                    ys[i] = random.nextDouble() * 1000;
+                } else {
+                    xs[i] = 500 + random.nextGaussian() * 20;
+                    ys[i] = 500 + random.nextGaussian() * 200;
+                }
+            }
+            KdTree tree = new KdTree(xs, ys);
+            assertEquals(n, tree.size());
+
+            int k = 1 + random.nextInt(12);
+            double radius = run % 3 == 0 ? Double.POSITIVE_INFINITY : 20 + random.nextDouble() * 200;
+            KdTree.Neighbours neighbours = new KdTree.Neighbours(k, radius);
+            for (int query = 0; query < 100; query++) {
+                double x = random.nextDouble() * 1200 - 100;
+                double y = random.nextDouble() * 1200 - 100;
+                int count = tree.nearest(x, y, neighbours);
+
+                double[] expected = bruteForce(xs, ys, x, y, radius);
+                assertEquals(Math.min(k, expected.length), count);
+                assertEquals(count, neighbours.count());
+                for (int i = 0; i < count; i++) {
+                    // Ties may be broken either way, so compare distances rather than indices
+                    assertEquals(expected[i], neighbours.distanceSquared(i), 1e-9);
+                    int index = neighbours.index(i);
+                    double dx = xs[index] - x;
+                    double dy = ys[index] - y;
+                    assertEquals(dx * dx + dy * dy, neighbours.distanceSquared(i), 1e-9);
+                }
+            }
+        }
+    }
+
+    @Test
+    void neighboursAreSortedNearestFirst() {
+        double[] xs = {0, 10, 20, 30, 40, 50};
+        double[] ys = {0, 0, 0, 0, 0, 0};
+        KdTree.Neighbours neighbours = new KdTree.Neighbours(4, Double.POSITIVE_INFINITY);
+
+        assertEquals(4, new KdTree(xs, ys).nearest(21, 1, neighbours));
+        assertEquals(2, neighbours.index(0));
+        assertEquals(3, neighbours.index(1));
+        assertEquals(1, neighbours.index(2));
+        assertEquals(4, neighbours.index(3));
+    }
+
+    @Test
+    void emptyTreeAndRadiusFindNothing() {
+        KdTree.Neighbours neighbours = new KdTree.Neighbours(3, 5);
+        assertEquals(0, new KdTree(new double[0], new double[0]).nearest(0, 0, neighbours));
+        assertEquals(0, new KdTree(new double[]{10}, new double[]{10}).nearest(0, 0, neighbours));
+    }
+
+    @Test
+    void invalidArgumentsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new KdTree(new double[2], new double[3]));
+        assertThrows(IllegalArgumentException.class, () -> new KdTree.Neighbours(0, 1));
+    }
+
+    private static double[] bruteForce(double[] xs, double[] ys, double x, double y, double radius) {
+        double[] distances = new double[xs.length];
+        int count = 0;
+        for (int i = 0; i < xs.length; i++) {
+            double dx = xs[i] - x;
+            double dy = ys[i] - y;
+            double distance = dx * dx + dy * dy;
+            if (distance <= radius * radius) {
+                distances[count++] = distance;
+            }
+        }
+        double[] found = Arrays.copyOf(distances, count);
+        Arrays.sort(found);
+        assertTrue(found.length == 0 || found[0] >= 0);
+        return found;
+    }
+}
@@ -0,0 +1,173 @@
+package com.adeprogramming.javagis.analytics.interpolation;
+
+import com.adeprogramming.javagis.raster.GridSpec;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the local kriging systems solved in place against a separately written dense solver,
+ * and the properties of ordinary kriging: exact at the samples, unbiased for a constant field,
+ * and falling back to the nearest sample where the system is singular.
+ */
+class OrdinaryKrigingInterpolatorTest {
+
+    private static final int NEIGHBOURS = 8;
+
+    private final Random random = new Random(5);
+
+    @Test
+    void estimatesMatchReferenceSolver() {
+        SamplePoints samples = randomSamples(60);
+        OrdinaryKrigingInterpolator interpolator =
+                new OrdinaryKrigingInterpolator(samples, NEIGHBOURS, Double.POSITIVE_INFINITY);
+        Variogram variogram = interpolator.getVariogram();
+        assertTrue(variogram.partialSill() > 0);
+        assertTrue(variogram.range() > 0);
+
+        GridInterpolator.CellEstimator estimator = interpolator.newCellEstimator();
+        KdTree.Neighbours nearest = new KdTree.Neighbours(NEIGHBOURS, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < 200; i++) {
+            double x = random.nextDouble() * 10_000;
+            double y = random.nextDouble() * 10_000;
+            int count = interpolator.index.nearest(x, y, nearest);
+            double expected = reference(samples, variogram, nearest, count, x, y);
+            assertEquals(expected, estimator.estimate(x, y), 1e-6 * Math.max(1, Math.abs(expected)));
+        }
+    }
+
+    @Test
+    void samplesAreReproducedExactly() {
+        // Samples at the cell centres of a 10 x 10 grid of 100 m cells
+        GridSpec grid = new GridSpec(0, 1000, 100, 10, 10, 3035);
+        double[] xs = new double[grid.rows() * grid.columns()];
+        double[] ys = new double[xs.length];
+        double[] values = new double[xs.length];
+        for (int row = 0; row < grid.rows(); row++) {
+            for (int column = 0; column < grid.columns(); column++) {
+                int i = row * grid.columns() + column;
+                xs[i] = grid.x(column);
+                ys[i] = grid.y(row);
+                values[i] = Math.sin(xs[i] / 300) * 10 + ys[i] / 100 + random.nextGaussian();
+            }
+        }
+
+        double[] estimates = new OrdinaryKrigingInterpolator(new SamplePoints(xs, ys, values), NEIGHBOURS, 1000)
+                .interpolate(grid, ForkJoinPool.commonPool());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], estimates[i], 1e-9);
+        }
+    }
+
+    @Test
+    void constantFieldStaysConstant() {
+        SamplePoints locations = randomSamples(40);
+        double[] constant = new double[locations.size()];
+        Arrays.fill(constant, 42);
+        // The fitted variogram has no sill, which the weights summing to one must not depend on
+        OrdinaryKrigingInterpolator interpolator = new OrdinaryKrigingInterpolator(
+                new SamplePoints(locations.xs(), locations.ys(), constant), NEIGHBOURS, Double.POSITIVE_INFINITY);
+
+        GridSpec grid = new GridSpec(0, 10_000, 500, 20, 20, 3035);
+        for (double estimate : interpolator.interpolate(grid, ForkJoinPool.commonPool())) {
+            assertEquals(42, estimate, 1e-9);
+        }
+    }
+
+    @Test
+    void duplicateLocationsFallBackToNearestSample() {
+        double[] xs = {0, 0, 1000};
+        double[] ys = {0, 0, 0};
+        double[] values = {1, 3, 10};
+        OrdinaryKrigingInterpolator interpolator =
+                new OrdinaryKrigingInterpolator(new SamplePoints(xs, ys, values), 2, Double.POSITIVE_INFINITY);
+
+        double estimate = interpolator.newCellEstimator().estimate(10, 5);
+        assertFalse(Double.isNaN(estimate));
+        assertTrue(estimate == 1 || estimate == 3, "estimate " + estimate);
+    }
+
+    @Test
+    void cellsOutOfRangeAreNaN() {
+        SamplePoints samples = new SamplePoints(new double[]{0, 100}, new double[]{0, 0}, new double[]{1, 2});
+        OrdinaryKrigingInterpolator interpolator = new OrdinaryKrigingInterpolator(samples, 2, 500);
+        assertTrue(Double.isNaN(interpolator.newCellEstimator().estimate(5000, 5000)));
+        assertEquals(1, interpolator.newCellEstimator().estimate(-450, 0), 1e-9);
+    }
+
+    @Test
+    void fewerThanTwoSamplesAreRejected() {
+        SamplePoints one = new SamplePoints(new double[]{0}, new double[]{0}, new double[]{1});
+        assertThrows(IllegalArgumentException.class, () -> new OrdinaryKrigingInterpolator(one, 4, 100));
+    }
+
+    private SamplePoints randomSamples(int n) {
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = random.nextDouble() * 10_000;
+            ys[i] = random.nextDouble() * 10_000;
+            values[i] = 20 + 5 * Math.sin(xs[i] / 2000) + 3 * Math.cos(ys[i] / 1500) + random.nextGaussian();
+        }
+        return new SamplePoints(xs, ys, values);
+    }
+
+    /**
+     * Ordinary kriging estimate from the full (n + 1) x (n + 1) system, solved by Gauss-Jordan
+     * elimination on a two-dimensional array.
+     */
+    private static double reference(SamplePoints samples, Variogram variogram, KdTree.Neighbours nearest,
+                                    int count, double x, double y) {
+        int n = count + 1;
+        double[][] a = new double[n][n + 1];
+        for (int i = 0; i < count; i++) {
+            int p = nearest.index(i);
+            for (int j = 0; j < count; j++) {
+                int q = nearest.index(j);
+                a[i][j] = variogram.gamma(Math.hypot(samples.xs()[p] - samples.xs()[q], samples.ys()[p] - samples.ys()[q]));
+            }
+            a[i][count] = 1;
+            a[count][i] = 1;
+            a[i][n] = variogram.gamma(Math.hypot(samples.xs()[p] - x, samples.ys()[p] - y));
+        }
+        a[count][n] = 1;
+
+        for (int column = 0; column < n; column++) {
+            int pivot = column;
+            for (int row = column + 1; row < n; row++) {
+                if (Math.abs(a[row][column]) > Math.abs(a[pivot][column])) {
+                    pivot = row;
+                }
+            }
+            double[] swap = a[column];
+            a[column] = a[pivot];
+            a[pivot] = swap;
+            for (int row = 0; row < n; row++) {
+                if (row != column) {
+                    double factor = a[row][column] / a[column][column];
+                    for (int k = column; k <= n; k++) {
+                        a[row][k] -= factor * a[column][k];
+                    }
+                }
+            }
+        }
+
+        double estimate = 0;
+        double weights = 0;
+        for (int i = 0; i < count; i++) {
+            double weight = a[i][n] / a[i][i];
+            estimate += weight * samples.values()[nearest.index(i)];
+            weights += weight;
+        }
+        assertEquals(1, weights, 1e-9);
+        return estimate;
+    }
+}
@@ -0,0 +1,142 @@
+package com.adeprogramming.javagis.analytics.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the t-digest estimates against exact quantiles of the same values, for a single
+ * digest, for digests merged from parts as the daily sketches are, and after serialization.
+ */
+class TDigestTest {
+
+    private static final double COMPRESSION = 100;
+    private static final double[] QUANTILES = {0.001, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.95, 0.98, 0.99, 0.999};
+
+    private final Random random = new Random(3);
+
+    @Test
+    void quantilesMatchExactRanks() {
+        double[] values = skewedValues(100_000);
+        TDigest digest = new TDigest(COMPRESSION);
+        for (double value : values) {
+            digest.add(value);
+        }
+
+        assertAccurate(digest, values);
+        assertEquals(values.length, digest.size());
+    }
+
+    @Test
+    void mergedDigestsMatchExactRanks() {
+        double[] values = skewedValues(100_000);
+        TDigest merged = new TDigest(COMPRESSION);
+        int parts = 24;
+        for (int part = 0; part < parts; part++) {
+            TDigest digest = new TDigest(COMPRESSION);
+            for (int i = part; i < values.length; i += parts) {
+                digest.add(values[i]);
+            }
+            merged.merge(digest);
+        }
+
+        assertAccurate(merged, values);
+        assertEquals(values.length, merged.size());
+    }
+
+    @Test
+    void serializationRoundTripKeepsEstimates() {
+        double[] values = skewedValues(20_000);
+        TDigest digest = new TDigest(COMPRESSION);
+        for (double value : values) {
+            digest.add(value);
+        }
+
+        TDigest restored = TDigest.fromBytes(digest.toBytes());
+
+        assertEquals(digest.size(), restored.size());
+        assertEquals(digest.getMin(), restored.getMin());
+        assertEquals(digest.getMax(), restored.getMax());
+        for (double q : QUANTILES) {
+            assertEquals(digest.quantile(q), restored.quantile(q), 0, "q=" + q);
+        }
+        assertEquals(digest.cdf(40), restored.cdf(40), 0);
+    }
+
+    @Test
+    void emptyDigestHasNoEstimates() {
+        TDigest digest = new TDigest(COMPRESSION);
+
+        assertTrue(Double.isNaN(digest.quantile(0.5)));
+        assertTrue(Double.isNaN(digest.cdf(1)));
+        assertTrue(Double.isNaN(TDigest.fromBytes(digest.toBytes()).quantile(0.5)));
+    }
+
+    @Test
+    void extremesAreExact() {
+        double[] values = skewedValues(10_000);
+        TDigest digest = new TDigest(COMPRESSION);
+        for (double value : values) {
+            digest.add(value);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values[0], digest.quantile(0));
+        assertEquals(values[values.length - 1], digest.quantile(1));
+        assertEquals(0, digest.cdf(values[0] - 1));
+        assertEquals(1, digest.cdf(values[values.length - 1]));
+    }
+
+    @Test
+    void invalidQuantilesAreRejected() {
+        TDigest digest = new TDigest(COMPRESSION);
+        digest.add(1);
+
+        assertThrows(IllegalArgumentException.class, () -> digest.quantile(1.5));
+        assertThrows(IllegalArgumentException.class, () -> digest.quantile(Double.NaN));
+    }
+
+    /**
+     * Assert that the rank of each estimate is close to the requested quantile; the allowed
+     * error shrinks towards the tails, as the scale function promises.
+     */
+    private static void assertAccurate(TDigest digest, double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (double q : QUANTILES) {
+            double estimate = digest.quantile(q);
+            double rank = (double) rank(sorted, estimate) / sorted.length;
+            double tolerance = Math.max(0.0002, 0.02 * Math.sqrt(q * (1 - q)));
+            assertEquals(q, rank, tolerance, "q=" + q + " estimated " + estimate);
+            assertEquals(q, digest.cdf(sorted[(int) Math.min(sorted.length - 1, q * sorted.length)]), tolerance,
+                    "cdf at q=" + q);
+        }
+    }
+
+    private static int rank(double[] sorted, double value) {
+        int index = Arrays.binarySearch(sorted, value);
+        if (index < 0) {
+            return -index - 1;
+        }
+        while (index < sorted.length && sorted[index] == value) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Log-normal values, skewed like pollutant concentrations.
+     */
+    private double[] skewedValues(int count) {
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = Math.exp(3 + 0.8 * random.nextGaussian());
+        }
+        return values;
+    }
+}
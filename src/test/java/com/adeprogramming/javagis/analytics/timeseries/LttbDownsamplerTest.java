@@ -0,0 +1,172 @@
+package com.adeprogramming.javagis.analytics.timeseries;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the streaming downsampler against a direct implementation of LTTB over the same
+ * equal-width time buckets, which holds the whole series in memory.
+ */
+class LttbDownsamplerTest {
+
+    private final Random random = new Random(7);
+
+    @Test
+    void firstAndLastPointsAreKept() {
+        LttbDownsampler downsampler = new LttbDownsampler(0, 1000, 10);
+        for (long t = 0; t <= 1000; t += 10) {
+            downsampler.accept(t, Math.sin(t / 50.0));
+        }
+        DownsampledSeries series = downsampler.finish();
+
+        assertEquals(10, series.getTimestamps().length);
+        assertEquals(0, series.getTimestamps()[0]);
+        assertEquals(1000, series.getTimestamps()[9]);
+        assertEquals(101, series.getSourceCount());
+    }
+
+    @Test
+    void spikeIsSelected() {
+        LttbDownsampler downsampler = new LttbDownsampler(0, 999, 12);
+        for (long t = 0; t < 1000; t++) {
+            downsampler.accept(t, t == 437 ? 100 : 1);
+        }
+        DownsampledSeries series = downsampler.finish();
+
+        boolean found = false;
+        for (int i = 0; i < series.getTimestamps().length; i++) {
+            found |= series.getTimestamps()[i] == 437 && series.getValues()[i] == 100;
+        }
+        assertTrue(found, "the spike at t=437 was dropped");
+    }
+
+    @Test
+    void shortSeriesAreReturnedWhole() {
+        LttbDownsampler empty = new LttbDownsampler(0, 100, 5);
+        assertEquals(0, empty.finish().getTimestamps().length);
+
+        LttbDownsampler two = new LttbDownsampler(0, 100, 5);
+        two.accept(10, 1);
+        two.accept(90, 2);
+        assertArrayEquals(new long[]{10, 90}, two.finish().getTimestamps());
+    }
+
+    @Test
+    void matchesReferenceOnIrregularSeries() {
+        for (int run = 0; run < 200; run++) {
+            int points = 3 + random.nextInt(40);
+            long from = random.nextInt(1000);
+            long to = from + 1 + random.nextInt(100_000);
+            long[] timestamps = irregularTimes(from, to, 1 + random.nextInt(2000));
+            double[] values = new double[timestamps.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = random.nextGaussian() * 10 + Math.sin(i / 20.0) * 50;
+            }
+
+            LttbDownsampler downsampler = new LttbDownsampler(from, to, points);
+            for (int i = 0; i < timestamps.length; i++) {
+                downsampler.accept(timestamps[i], values[i]);
+            }
+            DownsampledSeries series = downsampler.finish();
+            DownsampledSeries expected = reference(timestamps, values, from, to, points);
+
+            assertArrayEquals(expected.getTimestamps(), series.getTimestamps(), "run " + run);
+            assertArrayEquals(expected.getValues(), series.getValues());
+            assertTrue(series.getTimestamps().length <= points);
+        }
+    }
+
+    @Test
+    void budgetBelowThreeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new LttbDownsampler(0, 100, 2));
+    }
+
+    /**
+     * Sorted, possibly repeated times with gaps, so some buckets are empty.
+     */
+    private long[] irregularTimes(long from, long to, int count) {
+        long[] times = new long[count];
+        long gapStart = from + (long) (random.nextDouble() * (to - from));
+        long gapEnd = gapStart + (long) (random.nextDouble() * (to - gapStart) / 2);
+        for (int i = 0; i < count; i++) {
+            long t;
+            do {
+                t = from + (long) (random.nextDouble() * (to - from + 1));
+            } while (t >= gapStart && t < gapEnd);
+            times[i] = t;
+        }
+        Arrays.sort(times);
+        return times;
+    }
+
+    private static DownsampledSeries reference(long[] timestamps, double[] values, long from, long to, int points) {
+        int n = timestamps.length;
+        if (n <= 2) {
+            return new DownsampledSeries(timestamps.clone(), values.clone(), n);
+        }
+        int bucketCount = points - 2;
+        double bucketWidth = Math.max(1L, to - from) / (double) bucketCount;
+        List<List<Integer>> buckets = new ArrayList<>();
+        int lastBucket = -1;
+        for (int i = 1; i < n - 1; i++) {
+            int bucket = Math.max(0, Math.min(bucketCount - 1, (int) ((timestamps[i] - from) / bucketWidth)));
+            if (bucket != lastBucket) {
+                buckets.add(new ArrayList<>());
+                lastBucket = bucket;
+            }
+            buckets.get(buckets.size() - 1).add(i);
+        }
+
+        List<Integer> selected = new ArrayList<>();
+        selected.add(0);
+        int anchor = 0;
+        for (int b = 0; b < buckets.size(); b++) {
+            double nextTime;
+            double nextValue;
+            if (b + 1 < buckets.size()) {
+                nextTime = 0;
+                nextValue = 0;
+                for (int i : buckets.get(b + 1)) {
+                    nextTime += timestamps[i];
+                    nextValue += values[i];
+                }
+                nextTime /= buckets.get(b + 1).size();
+                nextValue /= buckets.get(b + 1).size();
+            } else {
+                nextTime = timestamps[n - 1];
+                nextValue = values[n - 1];
+            }
+            int best = -1;
+            double bestArea = -1;
+            for (int i : buckets.get(b)) {
+                double anchorX = timestamps[anchor] - from;
+                double area = Math.abs((anchorX - (nextTime - from)) * (values[i] - values[anchor])
+                        - (anchorX - (timestamps[i] - from)) * (nextValue - values[anchor]));
+                if (area > bestArea) {
+                    bestArea = area;
+                    best = i;
+                }
+            }
+            selected.add(best);
+            anchor = best;
+        }
+        selected.add(n - 1);
+
+        long[] t = new long[selected.size()];
+        double[] v = new double[selected.size()];
+        for (int i = 0; i < t.length; i++) {
+            t[i] = timestamps[selected.get(i)];
+            v[i] = values[selected.get(i)];
+        }
+        return new DownsampledSeries(t, v, n);
+    }
+}
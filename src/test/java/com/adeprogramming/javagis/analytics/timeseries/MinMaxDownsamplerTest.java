@@ -0,0 +1,69 @@
+package com.adeprogramming.javagis.analytics.timeseries;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the minimum and maximum of every time bucket survive, in time order.
+ */
+class MinMaxDownsamplerTest {
+
+    @Test
+    void keepsMinimumAndMaximumOfEachBucketInTimeOrder() {
+        MinMaxDownsampler downsampler = new MinMaxDownsampler(0, 100, 4);
+        double[] values = {5, 9, 1, 4, 3, 7, 2, 8};
+        long[] times = {0, 10, 20, 30, 60, 70, 80, 90};
+        for (int i = 0; i < values.length; i++) {
+            downsampler.accept(times[i], values[i]);
+        }
+        DownsampledSeries series = downsampler.finish();
+
+        assertArrayEquals(new long[]{10, 20, 80, 90}, series.getTimestamps());
+        assertArrayEquals(new double[]{9, 1, 2, 8}, series.getValues());
+        assertEquals(8, series.getSourceCount());
+    }
+
+    @Test
+    void constantBucketYieldsOnePoint() {
+        MinMaxDownsampler downsampler = new MinMaxDownsampler(0, 100, 2);
+        downsampler.accept(10, 3);
+        downsampler.accept(20, 3);
+
+        assertArrayEquals(new long[]{10}, downsampler.finish().getTimestamps());
+    }
+
+    @Test
+    void extremesOfRandomSeriesSurviveWithinBudget() {
+        Random random = new Random(11);
+        for (int run = 0; run < 100; run++) {
+            int points = 2 + random.nextInt(60);
+            int n = 1 + random.nextInt(5000);
+            MinMaxDownsampler downsampler = new MinMaxDownsampler(0, n, points);
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int t = 0; t < n; t++) {
+                double value = random.nextGaussian();
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                downsampler.accept(t, value);
+            }
+            DownsampledSeries series = downsampler.finish();
+
+            assertTrue(series.getTimestamps().length <= points);
+            double seriesMin = Double.POSITIVE_INFINITY;
+            double seriesMax = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < series.getValues().length; i++) {
+                seriesMin = Math.min(seriesMin, series.getValues()[i]);
+                seriesMax = Math.max(seriesMax, series.getValues()[i]);
+                assertTrue(i == 0 || series.getTimestamps()[i] > series.getTimestamps()[i - 1]);
+            }
+            assertEquals(min, seriesMin);
+            assertEquals(max, seriesMax);
+        }
+    }
+}
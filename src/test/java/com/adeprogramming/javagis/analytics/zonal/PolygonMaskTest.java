@@ -0,0 +1,94 @@
+package com.adeprogramming.javagis.analytics.zonal;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.algorithm.locate.IndexedPointInAreaLocator;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Location;
+import org.locationtech.jts.geom.Polygon;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the scanline rasterization against point-in-polygon tests of the pixel centres.
+ */
+class PolygonMaskTest {
+
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+
+    @Test
+    void rectangleCoversThePixelsWhoseCentresItContains() {
+        PolygonMask mask = PolygonMask.rasterize(rectangle(2, 1, 5, 3), 10, 10);
+
+        assertEquals(6, mask.getPixelCount());
+        assertEquals(1, mask.getFirstRow());
+        assertEquals(3, mask.getEndRow());
+        assertArrayEquals(new int[]{2, 5}, mask.runs(1));
+        assertArrayEquals(new int[0], mask.runs(3));
+        assertTrue(mask.intersects(4, 2, 4, 4));
+        assertFalse(mask.intersects(5, 0, 4, 4));
+    }
+
+    @Test
+    void holesAreExcluded() {
+        Polygon field = geometryFactory.createPolygon(rectangle(0, 0, 10, 10).getExteriorRing(),
+                new LinearRing[]{rectangle(3, 3, 7, 7).getExteriorRing()});
+
+        PolygonMask mask = PolygonMask.rasterize(field, 10, 10);
+
+        assertEquals(84, mask.getPixelCount());
+        assertArrayEquals(new int[]{0, 3, 7, 10}, mask.runs(5));
+    }
+
+    @Test
+    void pixelsOutsideTheGridAreClipped() {
+        PolygonMask mask = PolygonMask.rasterize(rectangle(-5, -5, 3, 3), 10, 10);
+
+        assertEquals(9, mask.getPixelCount());
+        assertEquals(0, mask.getMinColumn());
+        assertTrue(PolygonMask.rasterize(rectangle(20, 20, 30, 30), 10, 10).isEmpty());
+    }
+
+    @Test
+    void starMatchesPointInPolygon() {
+        int points = 23;
+        Coordinate[] ring = new Coordinate[points + 1];
+        for (int i = 0; i < points; i++) {
+            double angle = 2 * Math.PI * i / points;
+            double radius = i % 2 == 0 ? 48.3 : 17.9;
+            ring[i] = new Coordinate(50.2 + radius * Math.cos(angle), 49.7 + radius * Math.sin(angle));
+        }
+        ring[points] = ring[0];
+        Polygon star = geometryFactory.createPolygon(ring);
+        IndexedPointInAreaLocator locator = new IndexedPointInAreaLocator(star);
+
+        PolygonMask mask = PolygonMask.rasterize(star, 100, 100);
+
+        long inside = 0;
+        for (int row = 0; row < 100; row++) {
+            boolean[] masked = new boolean[100];
+            int[] runs = mask.runs(row);
+            for (int i = 0; i < runs.length; i += 2) {
+                for (int column = runs[i]; column < runs[i + 1]; column++) {
+                    masked[column] = true;
+                }
+            }
+            for (int column = 0; column < 100; column++) {
+                boolean expected = locator.locate(new Coordinate(column + 0.5, row + 0.5)) == Location.INTERIOR;
+                assertEquals(expected, masked[column], "pixel " + column + "," + row);
+                inside += expected ? 1 : 0;
+            }
+        }
+        assertEquals(inside, mask.getPixelCount());
+    }
+
+    private Polygon rectangle(double minX, double minY, double maxX, double maxY) {
+        return geometryFactory.createPolygon(new Coordinate[]{
+                new Coordinate(minX, minY), new Coordinate(maxX, minY), new Coordinate(maxX, maxY),
+                new Coordinate(minX, maxY), new Coordinate(minX, minY)});
+    }
+}
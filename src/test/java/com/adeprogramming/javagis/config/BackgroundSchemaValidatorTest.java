@@ -0,0 +1,89 @@
+package com.adeprogramming.javagis.config;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.tool.schema.spi.SchemaManagementException;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * Checks that a schema mismatch found in the background is kept as the result and turns the
+ * application's readiness to refusing traffic, while other outcomes leave readiness alone.
+ */
+class BackgroundSchemaValidatorTest {
+
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+
+    @Test
+    void mismatchIsReported() {
+        BackgroundSchemaValidator validator = integrated((metadata, serviceRegistry) -> {
+            throw new SchemaManagementException(
+                    "Schema-validation: missing column [cloud_cover] in table [satellite_scenes]");
+        });
+        assertEquals(BackgroundSchemaValidator.Status.PENDING, validator.getResult().status());
+
+        validator.validate();
+
+        BackgroundSchemaValidator.Result result = validator.getResult();
+        assertEquals(BackgroundSchemaValidator.Status.MISMATCH, result.status());
+        assertEquals("Schema-validation: missing column [cloud_cover] in table [satellite_scenes]", result.message());
+        assertNotNull(result.validatedAt());
+
+        ArgumentCaptor<AvailabilityChangeEvent<?>> event = ArgumentCaptor.forClass(AvailabilityChangeEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(ReadinessState.REFUSING_TRAFFIC, event.getValue().getState());
+    }
+
+    @Test
+    void matchingSchemaIsValid() {
+        BackgroundSchemaValidator validator = integrated((metadata, serviceRegistry) -> {
+        });
+
+        validator.validate();
+
+        assertEquals(BackgroundSchemaValidator.Status.VALID, validator.getResult().status());
+        assertNull(validator.getResult().message());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void validationErrorsAreReportedApartFromMismatches() {
+        BackgroundSchemaValidator validator = integrated((metadata, serviceRegistry) -> {
+            throw new IllegalStateException("Connection refused");
+        });
+
+        validator.validate();
+
+        assertEquals(BackgroundSchemaValidator.Status.FAILED, validator.getResult().status());
+        assertEquals("Connection refused", validator.getResult().message());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void schemaIsNotValidatedWithoutMetadata() {
+        BackgroundSchemaValidator validator = new BackgroundSchemaValidator(eventPublisher, (metadata, serviceRegistry) -> {
+            throw new AssertionError("not validated");
+        });
+
+        validator.validate();
+
+        assertEquals(BackgroundSchemaValidator.Status.SKIPPED, validator.getResult().status());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    private BackgroundSchemaValidator integrated(BackgroundSchemaValidator.Validation validation) {
+        BackgroundSchemaValidator validator = new BackgroundSchemaValidator(eventPublisher, validation);
+        validator.integrate(mock(Metadata.class), null, mock(SessionFactoryImplementor.class));
+        return validator;
+    }
+}
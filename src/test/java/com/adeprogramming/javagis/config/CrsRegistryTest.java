@@ -0,0 +1,111 @@
+package com.adeprogramming.javagis.config;
+
+import org.geotools.api.metadata.extent.GeographicBoundingBox;
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
+import org.geotools.api.referencing.crs.GeographicCRS;
+import org.geotools.api.referencing.operation.MathTransform;
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the embedded CRSs against the GeoTools EPSG database: each must equal the decoded CRS or
+ * transform to it as the identity, and the transforms between them must give the same
+ * coordinates as those found through the database, over the area both CRSs are valid in.
+ */
+class CrsRegistryTest {
+
+    private static final int GRID = 9;
+
+    private final CrsRegistry registry = CrsRegistry.load(CrsRegistry.DEFAULT_RESOURCE);
+
+    @Test
+    void applicationCrsAreEmbedded() {
+        assertEquals(Set.of(4326, 3035, 3857), registry.getCodes());
+        assertNull(registry.get(32632));
+        assertThrows(IllegalStateException.class, () -> CrsRegistry.load("crs/missing.properties"));
+    }
+
+    @Test
+    void embeddedCrsMatchTheEpsgDatabase() throws Exception {
+        for (int code : registry.getCodes()) {
+            CoordinateReferenceSystem embedded = registry.get(code);
+            CoordinateReferenceSystem decoded = CRS.decode("EPSG:" + code, true);
+            assertEquals("EPSG:" + code, CRS.toSRS(embedded));
+            if (CRS.equalsIgnoreMetadata(embedded, decoded)) {
+                continue;
+            }
+            MathTransform toDecoded = CRS.findMathTransform(embedded, decoded, true);
+            double[] points = samples(decoded, decoded);
+            double[] transformed = new double[points.length];
+            toDecoded.transform(points, 0, transformed, 0, points.length / 2);
+            assertClose(points, transformed, decoded, "EPSG:" + code);
+        }
+    }
+
+    @Test
+    void embeddedTransformsMatchTheEpsgDatabase() throws Exception {
+        for (int source : registry.getCodes()) {
+            for (int target : registry.getCodes()) {
+                CoordinateReferenceSystem sourceCrs = CRS.decode("EPSG:" + source, true);
+                CoordinateReferenceSystem targetCrs = CRS.decode("EPSG:" + target, true);
+                double[] points = samples(sourceCrs, targetCrs);
+                double[] embedded = new double[points.length];
+                double[] decoded = new double[points.length];
+
+                MathTransform transform = registry.findTransform(source, target);
+                assertNotNull(transform);
+                transform.transform(points, 0, embedded, 0, points.length / 2);
+                CRS.findMathTransform(sourceCrs, targetCrs, true).transform(points, 0, decoded, 0, points.length / 2);
+                assertClose(decoded, embedded, targetCrs, "EPSG:" + source + " to EPSG:" + target);
+            }
+        }
+        assertNull(registry.findTransform(4326, 32632));
+    }
+
+    /**
+     * A grid of points in a CRS, over the inner part of the area it and another CRS are both
+     * valid in.
+     *
+     * @return the points as {@code x0, y0, x1, y1, ...} in {@code crs}
+     */
+    private static double[] samples(CoordinateReferenceSystem crs, CoordinateReferenceSystem other) throws Exception {
+        GeographicBoundingBox area = CRS.getGeographicBoundingBox(crs);
+        GeographicBoundingBox otherArea = CRS.getGeographicBoundingBox(other);
+        assertNotNull(area, crs.getName().toString());
+        assertNotNull(otherArea, other.getName().toString());
+        double west = Math.max(area.getWestBoundLongitude(), otherArea.getWestBoundLongitude());
+        double east = Math.min(area.getEastBoundLongitude(), otherArea.getEastBoundLongitude());
+        double south = Math.max(area.getSouthBoundLatitude(), otherArea.getSouthBoundLatitude());
+        double north = Math.min(area.getNorthBoundLatitude(), otherArea.getNorthBoundLatitude());
+
+        double[] points = new double[GRID * GRID * 2];
+        int k = 0;
+        for (int i = 0; i < GRID; i++) {
+            for (int j = 0; j < GRID; j++) {
+                points[k++] = west + (east - west) * (0.1 + 0.8 * i / (GRID - 1));
+                points[k++] = south + (north - south) * (0.1 + 0.8 * j / (GRID - 1));
+            }
+        }
+        CRS.findMathTransform(DefaultGeographicCRS.WGS84, crs, true).transform(points, 0, points, 0, GRID * GRID);
+        return points;
+    }
+
+    private static void assertClose(double[] expected, double[] actual, CoordinateReferenceSystem crs, String message) {
+        // About a millimetre, in degrees or metres
+        double tolerance = crs instanceof GeographicCRS ? 1e-8 : 1e-3;
+        for (int i = 0; i < expected.length; i++) {
+            assertTrue(Math.abs(expected[i] - actual[i]) <= tolerance, message + ": point " + i / 2 + " is "
+                    + actual[i - i % 2] + " " + actual[i - i % 2 + 1] + ", expected "
+                    + expected[i - i % 2] + " " + expected[i - i % 2 + 1]);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.adeprogramming.javagis.raster;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Writes cloud-optimised GeoTIFFs and reads them back with {@link GeoTiffReader}: the full
+ * resolution image, each overview as the average of the valid pixels below it, and the layout
+ * of directories and tiles in the file.
+ */
+class CogWriterTest {
+
+    private static final int TILE = 32;
+
+    @TempDir
+    Path directory;
+
+    private final Random random = new Random(23);
+
+    @Test
+    void deflatedIntegerImageReadsBack() throws IOException {
+        GeoReference geoReference = new GeoReference(new double[]{10, 10, 0},
+                new double[]{0, 0, 0, 600000, 5300000, 0}, null,
+                new int[]{1, 1, 0, 2, 1024, 0, 1, 1, 3072, 0, 1, 32632}, null, null);
+        String metadata = "<GDALMetadata><Item name=\"DESCRIPTION\" sample=\"0\" role=\"description\">B04</Item>"
+                + "</GDALMetadata>";
+        Image image = randomImage(100, 70, 3, SampleType.UINT16, 0.0);
+        Path file = write(image, geoReference, metadata, true);
+
+        try (GeoTiffReader reader = new GeoTiffReader(file)) {
+            assertEquals(100, reader.getWidth());
+            assertEquals(70, reader.getHeight());
+            assertEquals(3, reader.getBandCount());
+            assertEquals(SampleType.UINT16, reader.getSampleType());
+            assertTrue(reader.isTiled());
+            assertEquals(TILE, reader.getBlockWidth());
+            assertEquals(0.0, reader.getNoData());
+            assertEquals(32632, reader.getGeoReference().epsg());
+            assertArrayEquals(new double[]{600000, 10, 0, 5300000, 0, -10}, reader.getGeoReference().affine());
+            assertEquals(Arrays.asList("B04", null, null), reader.getBandDescriptions());
+            assertArrayEquals(image.samples, readAll(reader));
+        }
+    }
+
+    @Test
+    void uncompressedFloatImageReadsBack() throws IOException {
+        Image image = randomImage(47, 33, 1, SampleType.FLOAT32, Double.NaN);
+        Path file = write(image, null, null, false);
+
+        try (GeoTiffReader reader = new GeoTiffReader(file)) {
+            assertTrue(Double.isNaN(reader.getNoData()));
+            assertEquals(null, reader.getGeoReference());
+            assertArrayEquals(image.samples, readAll(reader));
+        }
+    }
+
+    @Test
+    void overviewsAverageValidPixels() throws IOException {
+        for (SampleType type : new SampleType[]{SampleType.INT16, SampleType.FLOAT32}) {
+            Image image = randomImage(150, 90, 2, type, -9999.0);
+            Path file = write(image, null, null, type.isInteger());
+
+            List<Long> directories = directories(file);
+            // 150 x 90, 75 x 45, 38 x 23 and 19 x 12, which fits a tile
+            assertEquals(4, directories.size());
+            Image expected = image;
+            for (int level = 0; level < directories.size(); level++) {
+                if (level > 0) {
+                    expected = expected.reduced();
+                }
+                try (GeoTiffReader reader = new GeoTiffReader(atDirectory(file, directories.get(level)))) {
+                    assertEquals(expected.width, reader.getWidth(), "level " + level);
+                    assertEquals(expected.height, reader.getHeight());
+                    assertArrayEquals(expected.samples, readAll(reader), type + " level " + level);
+                }
+            }
+        }
+    }
+
+    @Test
+    void directoriesPrecedeTilesOfSmallestOverviewFirst() throws IOException {
+        Image image = randomImage(200, 130, 1, SampleType.UINT8, null);
+        Path file = write(image, null, null, true);
+        List<Long> directories = directories(file);
+        assertEquals(4, directories.size());
+
+        long end = 0;
+        for (int level = directories.size() - 1; level >= 0; level--) {
+            long[] range = tileRange(file, directories.get(level));
+            if (level == directories.size() - 1) {
+                for (long directoryOffset : directories) {
+                    assertTrue(directoryOffset < range[0], "the directories come before the tiles");
+                }
+            } else {
+                assertEquals(end, range[0], "level " + level + " follows the smaller ones");
+            }
+            end = range[1];
+            try (GeoTiffReader reader = new GeoTiffReader(atDirectory(file, directories.get(level)))) {
+                assertEquals((200 + (1 << level) - 1) >> level, reader.getWidth());
+            }
+        }
+        assertEquals(Files.size(file), end);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.filter(f -> f.getFileName().toString().contains(".level")).count(),
+                    "the temporary level files are deleted");
+        }
+    }
+
+    @Test
+    void rowCountIsChecked() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> new CogWriter(directory.resolve("a.tif"), 10, 10, 1,
+                SampleType.UINT8, null, null, null, 24, false));
+
+        try (CogWriter writer = new CogWriter(directory.resolve("b.tif"), 10, 10, 1, SampleType.UINT8, null, null,
+                null, TILE, false)) {
+            writer.writeRows(ByteBuffer.allocate(100), 8);
+            assertThrows(IllegalArgumentException.class, () -> writer.writeRows(ByteBuffer.allocate(30), 3));
+            assertThrows(IllegalStateException.class, writer::finish);
+        }
+    }
+
+    private Path write(Image image, GeoReference geoReference, String metadata, boolean deflate) throws IOException {
+        Path file = directory.resolve("scene.tif");
+        int rowBytes = image.width * image.bands * image.type.bytes();
+        ByteBuffer source = image.toBuffer();
+        try (CogWriter writer = new CogWriter(file, image.width, image.height, image.bands, image.type, image.noData,
+                geoReference, metadata, TILE, deflate)) {
+            // Rows arrive in chunks that do not line up with the tiles
+            int row = 0;
+            while (row < image.height) {
+                int count = Math.min(image.height - row, 1 + random.nextInt(40));
+                ByteBuffer chunk = ByteBuffer.allocate(count * rowBytes).order(ByteOrder.LITTLE_ENDIAN);
+                chunk.put(0, source, row * rowBytes, count * rowBytes);
+                writer.writeRows(chunk, count);
+                row += count;
+            }
+            writer.finish();
+        }
+        return file;
+    }
+
+    private static double[] readAll(GeoTiffReader reader) throws IOException {
+        int bytes = reader.getSampleType().bytes();
+        int count = reader.getWidth() * reader.getHeight() * reader.getBandCount();
+        ByteBuffer window = ByteBuffer.allocate(count * bytes).order(ByteOrder.LITTLE_ENDIAN);
+        reader.readWindow(0, 0, reader.getWidth(), reader.getHeight(), window);
+        double[] samples = new double[count];
+        for (int i = 0; i < count; i++) {
+            samples[i] = reader.getSampleType().get(window, i * bytes);
+        }
+        return samples;
+    }
+
+    /**
+     * @return the offset of each image file directory, following the chain from the header
+     */
+    private static List<Long> directories(Path file) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        List<Long> directories = new ArrayList<>();
+        long offset = data.getInt(4) & 0xFFFFFFFFL;
+        while (offset != 0) {
+            directories.add(offset);
+            int entries = data.getShort((int) offset) & 0xFFFF;
+            offset = data.getInt((int) offset + 2 + entries * 12) & 0xFFFFFFFFL;
+        }
+        return directories;
+    }
+
+    /**
+     * @return the first and end offset of the tiles of the image at a directory
+     */
+    private static long[] tileRange(Path file, long directoryOffset) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        int entries = data.getShort((int) directoryOffset) & 0xFFFF;
+        long[] offsets = null;
+        long[] counts = null;
+        for (int i = 0; i < entries; i++) {
+            int position = (int) directoryOffset + 2 + i * 12;
+            int tag = data.getShort(position) & 0xFFFF;
+            if (tag == 324 || tag == 325) {
+                int count = data.getInt(position + 4);
+                int at = count == 1 ? position + 8 : data.getInt(position + 8);
+                long[] values = new long[count];
+                for (int j = 0; j < count; j++) {
+                    values[j] = data.getInt(at + j * 4) & 0xFFFFFFFFL;
+                }
+                if (tag == 324) {
+                    offsets = values;
+                } else {
+                    counts = values;
+                }
+            }
+        }
+        long first = Long.MAX_VALUE;
+        long end = 0;
+        for (int i = 0; i < offsets.length; i++) {
+            first = Math.min(first, offsets[i]);
+            end = Math.max(end, offsets[i] + counts[i]);
+        }
+        return new long[]{first, end};
+    }
+
+    /**
+     * Copy a file with the header pointing at one of its directories, so that the reader,
+     * which reads the first directory only, opens that image.
+     */
+    private Path atDirectory(Path file, long offset) throws IOException {
+        byte[] data = Files.readAllBytes(file);
+        ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).putInt(4, (int) offset);
+        Path copy = directory.resolve("directory-" + offset + ".tif");
+        Files.write(copy, data);
+        return copy;
+    }
+
+    private Image randomImage(int width, int height, int bands, SampleType type, Double noData) {
+        double[] samples = new double[width * height * bands];
+        ByteBuffer scratch = ByteBuffer.allocate(8);
+        for (int i = 0; i < samples.length; i++) {
+            double value;
+            if (noData != null && random.nextInt(7) == 0) {
+                value = noData;
+            } else {
+                int pixel = i / bands;
+                value = 1000 + 500 * Math.sin(pixel % width / 9.0) * Math.cos(pixel / width / 7.0)
+                        + random.nextDouble() * 50 + i % bands * 100;
+                if (type == SampleType.UINT8) {
+                    value /= 10;
+                }
+            }
+            type.put(scratch, 0, value);
+            samples[i] = type.get(scratch, 0);
+        }
+        return new Image(width, height, bands, type, noData, samples);
+    }
+
+    private record Image(int width, int height, int bands, SampleType type, Double noData, double[] samples) {
+
+        ByteBuffer toBuffer() {
+            ByteBuffer buffer = ByteBuffer.allocate(samples.length * type.bytes()).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < samples.length; i++) {
+                type.put(buffer, i * type.bytes(), samples[i]);
+            }
+            return buffer;
+        }
+
+        /**
+         * The next overview: each pixel the average of the valid pixels of the 2 x 2 block below it.
+         */
+        Image reduced() {
+            int reducedWidth = (width + 1) / 2;
+            int reducedHeight = (height + 1) / 2;
+            double[] reduced = new double[reducedWidth * reducedHeight * bands];
+            ByteBuffer scratch = ByteBuffer.allocate(8);
+            for (int row = 0; row < reducedHeight; row++) {
+                for (int column = 0; column < reducedWidth; column++) {
+                    for (int band = 0; band < bands; band++) {
+                        double sum = 0;
+                        int valid = 0;
+                        for (int y = row * 2; y < Math.min(row * 2 + 2, height); y++) {
+                            for (int x = column * 2; x < Math.min(column * 2 + 2, width); x++) {
+                                double value = samples[(y * width + x) * bands + band];
+                                if (!isNoData(value)) {
+                                    sum += value;
+                                    valid++;
+                                }
+                            }
+                        }
+                        type.put(scratch, 0, valid > 0 ? sum / valid : noData);
+                        reduced[(row * reducedWidth + column) * bands + band] = type.get(scratch, 0);
+                    }
+                }
+            }
+            return new Image(reducedWidth, reducedHeight, bands, type, noData, reduced);
+        }
+
+        private boolean isNoData(double value) {
+            return Double.isNaN(value) || noData != null && value == noData;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.adeprogramming.javagis.raster;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks parsing of colour ramp definitions, the interpolated colours between stops, clamping
+ * outside the ramp and transparency of NaN.
+ */
+class ColourRampTest {
+
+    @Test
+    void stopsTakeTheirOwnColour() {
+        ColourRamp ramp = ColourRamp.parse("0:2c7bb6, 40:ffffbf ,80:d7191c");
+
+        assertEquals("0:2c7bb6, 40:ffffbf ,80:d7191c", ramp.getSpec());
+        int[] colours = apply(ramp, 0, 80);
+        assertEquals(0xff2c7bb6, colours[0]);
+        assertEquals(0xffd7191c, colours[1]);
+    }
+
+    @Test
+    void coloursAreInterpolatedBetweenStops() {
+        ColourRamp ramp = ColourRamp.parse("0:000000,100:ffffff");
+
+        for (double value = 0; value <= 100; value += 12.5) {
+            int colour = apply(ramp, value)[0];
+            assertEquals(0xff, colour >>> 24);
+            int red = (colour >>> 16) & 0xff;
+            assertEquals(red, (colour >>> 8) & 0xff);
+            assertEquals(red, colour & 0xff);
+            // The lookup table has 1024 steps, each at most 1/4 of a colour level
+            assertEquals(value * 2.55, red, 1.0, "value " + value);
+        }
+    }
+
+    @Test
+    void eachSegmentInterpolatesItsOwnStops() {
+        ColourRamp ramp = ColourRamp.parse("0:ff0000,10:00ff00,20:0000ff");
+
+        int lower = apply(ramp, 5)[0];
+        assertEquals(0x80, (lower >>> 16) & 0xff, 2);
+        assertEquals(0x80, (lower >>> 8) & 0xff, 2);
+        assertEquals(0, lower & 0xff);
+
+        int upper = apply(ramp, 15)[0];
+        assertEquals(0, (upper >>> 16) & 0xff);
+        assertEquals(0x80, (upper >>> 8) & 0xff, 2);
+        assertEquals(0x80, upper & 0xff, 2);
+    }
+
+    @Test
+    void valuesOutsideTheRampAreClamped() {
+        int[] colours = apply(ColourRamp.parse("-10:0000ff,10:ff0000"), -1e9, -10.5, 10.5, 1e9,
+                Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY);
+
+        assertEquals(0xff0000ff, colours[0]);
+        assertEquals(0xff0000ff, colours[1]);
+        assertEquals(0xffff0000, colours[2]);
+        assertEquals(0xffff0000, colours[3]);
+        assertEquals(0xffff0000, colours[4]);
+        assertEquals(0xff0000ff, colours[5]);
+    }
+
+    @Test
+    void nanIsTransparent() {
+        assertEquals(0, apply(ColourRamp.parse("0:000000,1:ffffff"), Double.NaN)[0]);
+    }
+
+    @Test
+    void alphaIsReadFromTheLastByte() {
+        ColourRamp ramp = ColourRamp.parse("0:ff000080,1:00ff0000");
+
+        assertEquals(0x80ff0000, apply(ramp, 0)[0]);
+        assertEquals(0x0000ff00, apply(ramp, 1)[0]);
+        int middle = apply(ramp, 0.5)[0];
+        assertTrue(Math.abs((middle >>> 24) - 0x40) <= 1, Integer.toHexString(middle));
+    }
+
+    @Test
+    void onlyTheGivenLengthIsColoured() {
+        int[] argb = {1, 2, 3};
+        ColourRamp.parse("0:000000,1:ffffff").apply(new double[]{0, 1, 1}, argb, 2);
+
+        assertEquals(0xff000000, argb[0]);
+        assertEquals(0xffffffff, argb[1]);
+        assertEquals(3, argb[2]);
+    }
+
+    @Test
+    void malformedRampsAreRejected() {
+        for (String spec : new String[]{"", "0:ff0000", "0-ff0000,1:00ff00", ":ff0000,1:00ff00",
+                "0:ff0000,1:", "0:fff,1:000000", "0:ff00000,1:000000", "0:gg0000,1:000000",
+                "low:ff0000,1:000000", "10:ff0000,0:00ff00"}) {
+            assertThrows(IllegalArgumentException.class, () -> ColourRamp.parse(spec), spec);
+        }
+    }
+
+    private static int[] apply(ColourRamp ramp, double... values) {
+        int[] argb = new int[values.length];
+        ramp.apply(values, argb, values.length);
+        return argb;
+    }
+}
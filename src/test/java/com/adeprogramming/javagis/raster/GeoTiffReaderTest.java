@@ -0,0 +1,606 @@
+package com.adeprogramming.javagis.raster;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Encodes TIFFs of every supported layout, compression and predictor, classic and BigTIFF in
+ * both byte orders, and compares windows read from them with the samples written.
+ */
+class GeoTiffReaderTest {
+
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 29;
+    private static final int BANDS = 3;
+
+    @TempDir
+    Path directory;
+
+    private final Random random = new Random(19);
+
+    @Test
+    void readsEveryCompressionAndPredictor() throws IOException {
+        int files = 0;
+        for (int compression : new int[]{1, 5, 8, 32773}) {
+            for (SampleType type : SampleType.values()) {
+                for (int predictor : new int[]{1, type.isInteger() ? 2 : 3}) {
+                    TiffFile tiff = new TiffFile(type, random.nextBoolean() ? 3 : 1);
+                    tiff.compression = compression;
+                    tiff.predictor = predictor;
+                    tiff.tiled = random.nextBoolean();
+                    tiff.planar = random.nextInt(3) == 0;
+                    tiff.order = random.nextBoolean() ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+                    tiff.bigTiff = random.nextBoolean();
+                    assertReadsBack(tiff, "file-" + files++ + ".tif");
+                }
+            }
+        }
+    }
+
+    @Test
+    void readsEveryLayout() throws IOException {
+        int files = 0;
+        for (boolean bigTiff : new boolean[]{false, true}) {
+            for (ByteOrder order : new ByteOrder[]{ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+                for (boolean tiled : new boolean[]{false, true}) {
+                    for (boolean planar : new boolean[]{false, true}) {
+                        TiffFile tiff = new TiffFile(SampleType.INT16, BANDS);
+                        tiff.compression = 5;
+                        tiff.predictor = 2;
+                        tiff.bigTiff = bigTiff;
+                        tiff.order = order;
+                        tiff.tiled = tiled;
+                        tiff.planar = planar;
+                        assertReadsBack(tiff, "layout-" + files++ + ".tif");
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void longLzwBlocksResetTheTable() throws IOException {
+        // Noise does not compress, so the code table fills up and is cleared several times
+        TiffFile tiff = new TiffFile(SampleType.UINT8, 1);
+        tiff.width = 300;
+        tiff.height = 200;
+        tiff.values = new double[300 * 200];
+        for (int i = 0; i < tiff.values.length; i++) {
+            tiff.values[i] = random.nextInt(256);
+        }
+        tiff.compression = 5;
+        tiff.rowsPerStrip = 200;
+        assertReadsBack(tiff, "noise.tif");
+    }
+
+    @Test
+    void readsMetadataWithoutPixels() throws IOException {
+        TiffFile tiff = new TiffFile(SampleType.UINT16, 2);
+        tiff.ascii.put(306, "2024:06:01 10:30:00");
+        tiff.ascii.put(42113, "65535");
+        tiff.ascii.put(42112, "<GDALMetadata><Item name=\"DESCRIPTION\" sample=\"1\" role=\"description\">"
+                + "NIR &amp; red edge</Item><Item name=\"SCALE\" sample=\"0\" role=\"scale\">0.0001</Item></GDALMetadata>");
+        tiff.doubles.put(33550, new double[]{10, 10, 0});
+        tiff.doubles.put(33922, new double[]{0, 0, 0, 600000, 5300000, 0});
+        tiff.shorts.put(34735, new int[]{1, 1, 0, 3, 1024, 0, 1, 1, 1025, 0, 1, 1, 3072, 0, 1, 32632});
+        Path file = tiff.write(directory.resolve("metadata.tif"));
+
+        try (GeoTiffReader reader = new GeoTiffReader(file)) {
+            assertEquals(WIDTH, reader.getWidth());
+            assertEquals(HEIGHT, reader.getHeight());
+            assertEquals(2, reader.getBandCount());
+            assertEquals(SampleType.UINT16, reader.getSampleType());
+            assertEquals("2024:06:01 10:30:00", reader.getDateTime());
+            assertEquals(65535.0, reader.getNoData());
+            assertEquals(Arrays.asList(null, "NIR & red edge"), reader.getBandDescriptions());
+            assertEquals(32632, reader.getGeoReference().epsg());
+            assertArrayEquals(new double[]{600000, 10, 0, 5300000, 0, -10}, reader.getGeoReference().affine());
+        }
+
+        TiffFile plain = new TiffFile(SampleType.UINT8, 1);
+        try (GeoTiffReader reader = new GeoTiffReader(plain.write(directory.resolve("plain.tif")))) {
+            assertNull(reader.getGeoReference());
+            assertNull(reader.getNoData());
+            assertEquals(Arrays.asList((String) null), reader.getBandDescriptions());
+        }
+    }
+
+    @Test
+    void sparseBlocksAreNoData() throws IOException {
+        TiffFile tiff = new TiffFile(SampleType.INT16, 1);
+        tiff.tiled = true;
+        tiff.ascii.put(42113, "-9999");
+        tiff.sparseBlock = 0;
+        Path file = tiff.write(directory.resolve("sparse.tif"));
+
+        try (GeoTiffReader reader = new GeoTiffReader(file)) {
+            ByteBuffer window = ByteBuffer.allocate(WIDTH * HEIGHT * 2).order(ByteOrder.LITTLE_ENDIAN);
+            reader.readWindow(0, 0, WIDTH, HEIGHT, window);
+            for (int row = 0; row < HEIGHT; row++) {
+                for (int column = 0; column < WIDTH; column++) {
+                    double expected = row < 16 && column < 16 ? -9999 : tiff.values[row * WIDTH + column];
+                    assertEquals(expected, SampleType.INT16.get(window, (row * WIDTH + column) * 2));
+                }
+            }
+        }
+    }
+
+    @Test
+    void invalidFilesAndWindowsAreRejected() throws IOException {
+        Path text = directory.resolve("text.tif");
+        Files.writeString(text, "not a tiff at all");
+        assertThrows(IOException.class, () -> new GeoTiffReader(text));
+
+        TiffFile tiff = new TiffFile(SampleType.UINT8, 1);
+        Path file = tiff.write(directory.resolve("valid.tif"));
+        byte[] truncated = Arrays.copyOf(Files.readAllBytes(file), 100);
+        Path cut = directory.resolve("truncated.tif");
+        Files.write(cut, truncated);
+        assertThrows(IOException.class, () -> new GeoTiffReader(cut));
+
+        TiffFile jpeg = new TiffFile(SampleType.UINT8, 1);
+        jpeg.compression = 7;
+        Path jpegFile = jpeg.write(directory.resolve("jpeg.tif"));
+        assertThrows(IllegalArgumentException.class, () -> new GeoTiffReader(jpegFile));
+
+        try (GeoTiffReader reader = new GeoTiffReader(file)) {
+            ByteBuffer buffer = ByteBuffer.allocate(WIDTH * HEIGHT);
+            assertThrows(IllegalArgumentException.class, () -> reader.readWindow(1, 0, WIDTH, 1, buffer));
+            assertThrows(IllegalArgumentException.class, () -> reader.readWindow(0, -1, 1, 1, buffer));
+            assertThrows(IllegalArgumentException.class,
+                    () -> reader.readWindow(0, 0, WIDTH, HEIGHT, ByteBuffer.allocate(10)));
+        }
+    }
+
+    private void assertReadsBack(TiffFile tiff, String name) throws IOException {
+        Path file = tiff.write(directory.resolve(name));
+        String description = name + " " + tiff;
+        try (GeoTiffReader reader = new GeoTiffReader(file)) {
+            assertEquals(tiff.width, reader.getWidth());
+            assertEquals(tiff.height, reader.getHeight());
+            assertEquals(tiff.bands, reader.getBandCount());
+            assertEquals(tiff.type, reader.getSampleType());
+            assertEquals(tiff.tiled, reader.isTiled());
+
+            int bytes = tiff.type.bytes();
+            for (int i = 0; i < 20; i++) {
+                int x = i == 0 ? 0 : random.nextInt(tiff.width);
+                int y = i == 0 ? 0 : random.nextInt(tiff.height);
+                int width = i == 0 ? tiff.width : 1 + random.nextInt(tiff.width - x);
+                int height = i == 0 ? tiff.height : 1 + random.nextInt(tiff.height - y);
+                ByteOrder order = i % 2 == 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+                ByteBuffer window = ByteBuffer.allocate(width * height * tiff.bands * bytes).order(order);
+                reader.readWindow(x, y, width, height, window);
+                for (int row = 0; row < height; row++) {
+                    for (int column = 0; column < width; column++) {
+                        for (int band = 0; band < tiff.bands; band++) {
+                            double expected = tiff.values[((y + row) * tiff.width + x + column) * tiff.bands + band];
+                            double actual = tiff.type.get(window, ((row * width + column) * tiff.bands + band) * bytes);
+                            if (expected != actual) {
+                                assertEquals(expected, actual, description + " at " + (x + column) + "," + (y + row));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A TIFF to be written, with random samples in the range of its sample type.
+     */
+    private final class TiffFile {
+
+        final SampleType type;
+        final int bands;
+        int width = WIDTH;
+        int height = HEIGHT;
+        double[] values;
+        int compression = 1;
+        int predictor = 1;
+        boolean tiled;
+        boolean planar;
+        boolean bigTiff;
+        ByteOrder order = ByteOrder.LITTLE_ENDIAN;
+        int rowsPerStrip = 5;
+        int sparseBlock = -1;
+        final Map<Integer, String> ascii = new HashMap<>();
+        final Map<Integer, double[]> doubles = new HashMap<>();
+        final Map<Integer, int[]> shorts = new HashMap<>();
+
+        TiffFile(SampleType type, int bands) {
+            this.type = type;
+            this.bands = bands;
+            this.values = new double[WIDTH * HEIGHT * bands];
+            ByteBuffer scratch = ByteBuffer.allocate(8);
+            for (int i = 0; i < values.length; i++) {
+                // Smooth with noise, so the predictors have something to remove
+                double value = switch (type) {
+                    case UINT8 -> 100 + 50 * Math.sin(i / 40.0) + random.nextInt(20);
+                    case INT8 -> 50 * Math.sin(i / 40.0) + random.nextInt(20) - 10;
+                    case UINT16, UINT32 -> 30000 + 20000 * Math.sin(i / 40.0) + random.nextInt(100);
+                    case INT16, INT32 -> 20000 * Math.sin(i / 40.0) + random.nextInt(100) - 50;
+                    default -> 273.15 + 20 * Math.sin(i / 40.0) + random.nextGaussian();
+                };
+                // Round to what the type can hold
+                type.put(scratch, 0, value);
+                values[i] = type.get(scratch, 0);
+            }
+        }
+
+        Path write(Path file) throws IOException {
+            int blockWidth = tiled ? 16 : width;
+            int blockHeight = tiled ? 16 : rowsPerStrip;
+            int blocksAcross = (width + blockWidth - 1) / blockWidth;
+            int blocksDown = (height + blockHeight - 1) / blockHeight;
+            int planes = planar ? bands : 1;
+            int samplesPerPixel = planar ? 1 : bands;
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(new byte[bigTiff ? 16 : 8]);
+            List<Long> offsets = new ArrayList<>();
+            List<Long> byteCounts = new ArrayList<>();
+            for (int plane = 0; plane < planes; plane++) {
+                for (int blockRow = 0; blockRow < blocksDown; blockRow++) {
+                    for (int blockColumn = 0; blockColumn < blocksAcross; blockColumn++) {
+                        int rows = tiled ? blockHeight : Math.min(blockHeight, height - blockRow * blockHeight);
+                        byte[] raw = block(plane, blockColumn * blockWidth, blockRow * blockHeight, blockWidth, rows,
+                                samplesPerPixel);
+                        byte[] encoded = encode(raw, rows, blockWidth * samplesPerPixel, samplesPerPixel);
+                        if (offsets.size() == sparseBlock) {
+                            encoded = new byte[0];
+                        }
+                        offsets.add(encoded.length == 0 ? 0L : (long) out.size());
+                        byteCounts.add((long) encoded.length);
+                        out.write(encoded);
+                        if ((out.size() & 1) == 1) {
+                            out.write(0);
+                        }
+                    }
+                }
+            }
+
+            Directory ifd = new Directory();
+            ifd.integers(256, 4, width);
+            ifd.integers(257, 4, height);
+            int[] bits = new int[bands];
+            int[] formats = new int[bands];
+            Arrays.fill(bits, type.bits());
+            Arrays.fill(formats, type.sampleFormat());
+            ifd.integers(258, 3, bits);
+            ifd.integers(259, 3, compression);
+            ifd.integers(262, 3, 1);
+            ifd.integers(277, 3, bands);
+            ifd.integers(284, 3, planar ? 2 : 1);
+            if (predictor != 1) {
+                ifd.integers(317, 3, predictor);
+            }
+            ifd.integers(339, 3, formats);
+            long[] offsetArray = offsets.stream().mapToLong(Long::longValue).toArray();
+            long[] countArray = byteCounts.stream().mapToLong(Long::longValue).toArray();
+            int offsetType = bigTiff ? 16 : 4;
+            if (tiled) {
+                ifd.integers(322, 3, blockWidth);
+                ifd.integers(323, 3, blockHeight);
+                ifd.longs(324, offsetType, offsetArray);
+                ifd.longs(325, offsetType, countArray);
+            } else {
+                ifd.integers(278, 4, rowsPerStrip);
+                ifd.longs(273, offsetType, offsetArray);
+                ifd.longs(279, offsetType, countArray);
+            }
+            ascii.forEach(ifd::ascii);
+            doubles.forEach(ifd::doubles);
+            shorts.forEach((tag, values) -> ifd.integers(tag, 3, values));
+
+            long directoryOffset = out.size();
+            out.write(ifd.encode(directoryOffset));
+            ByteBuffer file1 = ByteBuffer.wrap(out.toByteArray()).order(order);
+            file1.put(0, (byte) (order == ByteOrder.LITTLE_ENDIAN ? 'I' : 'M'));
+            file1.put(1, (byte) (order == ByteOrder.LITTLE_ENDIAN ? 'I' : 'M'));
+            if (bigTiff) {
+                file1.putShort(2, (short) 43).putShort(4, (short) 8).putShort(6, (short) 0).putLong(8, directoryOffset);
+            } else {
+                file1.putShort(2, (short) 42).putInt(4, (int) directoryOffset);
+            }
+            Files.write(file, file1.array());
+            return file;
+        }
+
+        /**
+         * The samples of one block in the file's byte order, tiles padded with zeros.
+         */
+        private byte[] block(int plane, int x, int y, int blockWidth, int rows, int samplesPerPixel) {
+            int bytes = type.bytes();
+            ByteBuffer block = ByteBuffer.allocate(rows * blockWidth * samplesPerPixel * bytes).order(order);
+            for (int row = 0; row < rows && y + row < height; row++) {
+                for (int column = 0; column < blockWidth && x + column < width; column++) {
+                    for (int sample = 0; sample < samplesPerPixel; sample++) {
+                        int band = planar ? plane : sample;
+                        double value = values[((y + row) * width + x + column) * bands + band];
+                        type.put(block, ((row * blockWidth + column) * samplesPerPixel + sample) * bytes, value);
+                    }
+                }
+            }
+            return block.array();
+        }
+
+        private byte[] encode(byte[] raw, int rows, int samplesPerRow, int samplesPerPixel) {
+            int bytes = type.bytes();
+            if (predictor == 2) {
+                ByteBuffer data = ByteBuffer.wrap(raw).order(order);
+                for (int row = 0; row < rows; row++) {
+                    int start = row * samplesPerRow;
+                    for (int i = start + samplesPerRow - 1; i >= start + samplesPerPixel; i--) {
+                        int at = i * bytes;
+                        int before = (i - samplesPerPixel) * bytes;
+                        switch (bytes) {
+                            case 1 -> data.put(at, (byte) (data.get(at) - data.get(before)));
+                            case 2 -> data.putShort(at, (short) (data.getShort(at) - data.getShort(before)));
+                            default -> data.putInt(at, data.getInt(at) - data.getInt(before));
+                        }
+                    }
+                }
+            } else if (predictor == 3) {
+                // Split each row into byte planes, most significant first, then difference the bytes
+                byte[] split = new byte[raw.length];
+                int rowBytes = samplesPerRow * bytes;
+                for (int row = 0; row < rows; row++) {
+                    int start = row * rowBytes;
+                    for (int sample = 0; sample < samplesPerRow; sample++) {
+                        for (int b = 0; b < bytes; b++) {
+                            int source = order == ByteOrder.BIG_ENDIAN ? b : bytes - 1 - b;
+                            split[start + b * samplesPerRow + sample] = raw[start + sample * bytes + source];
+                        }
+                    }
+                    for (int i = start + rowBytes - 1; i >= start + samplesPerPixel; i--) {
+                        split[i] -= split[i - samplesPerPixel];
+                    }
+                }
+                raw = split;
+            }
+            return switch (compression) {
+                case 5 -> lzw(raw);
+                case 8 -> deflate(raw);
+                case 32773 -> packBits(raw);
+                default -> raw;
+            };
+        }
+
+        @Override
+        public String toString() {
+            return type + " x" + bands + " compression " + compression + " predictor " + predictor
+                    + (tiled ? " tiled" : " stripped") + (planar ? " planar" : "") + " " + order
+                    + (bigTiff ? " BigTIFF" : "");
+        }
+
+        /**
+         * Image file directory entries, encoded in the file's byte order.
+         */
+        private final class Directory {
+
+            private final TreeMap<Integer, Object[]> entries = new TreeMap<>();
+
+            void integers(int tag, int type, int... values) {
+                entries.put(tag, new Object[]{type, Arrays.stream(values).asLongStream().toArray()});
+            }
+
+            void longs(int tag, int type, long[] values) {
+                entries.put(tag, new Object[]{type, values});
+            }
+
+            void doubles(int tag, double[] values) {
+                entries.put(tag, new Object[]{12, values});
+            }
+
+            void ascii(int tag, String value) {
+                entries.put(tag, new Object[]{2, (value + '\0').getBytes(StandardCharsets.UTF_8)});
+            }
+
+            byte[] encode(long offset) {
+                int countSize = bigTiff ? 8 : 2;
+                int entrySize = bigTiff ? 20 : 12;
+                int inline = bigTiff ? 8 : 4;
+                int tableSize = countSize + entries.size() * entrySize + inline;
+                ByteBuffer table = ByteBuffer.allocate(tableSize).order(order);
+                ByteArrayOutputStream overflow = new ByteArrayOutputStream();
+                if (bigTiff) {
+                    table.putLong(entries.size());
+                } else {
+                    table.putShort((short) entries.size());
+                }
+                for (Map.Entry<Integer, Object[]> entry : entries.entrySet()) {
+                    int type = (Integer) entry.getValue()[0];
+                    byte[] data = values(type, entry.getValue()[1]);
+                    int count = data.length / size(type);
+                    table.putShort((short) (int) entry.getKey()).putShort((short) type);
+                    if (bigTiff) {
+                        table.putLong(count);
+                    } else {
+                        table.putInt(count);
+                    }
+                    if (data.length <= inline) {
+                        table.put(Arrays.copyOf(data, inline));
+                    } else {
+                        long at = offset + tableSize + overflow.size();
+                        if (bigTiff) {
+                            table.putLong(at);
+                        } else {
+                            table.putInt((int) at);
+                        }
+                        overflow.writeBytes(data);
+                        if ((overflow.size() & 1) == 1) {
+                            overflow.write(0);
+                        }
+                    }
+                }
+                table.position(tableSize);
+                ByteArrayOutputStream result = new ByteArrayOutputStream();
+                result.writeBytes(table.array());
+                result.writeBytes(overflow.toByteArray());
+                return result.toByteArray();
+            }
+
+            private byte[] values(int type, Object values) {
+                if (values instanceof byte[] bytes) {
+                    return bytes;
+                }
+                if (values instanceof double[] doubles) {
+                    ByteBuffer data = ByteBuffer.allocate(doubles.length * 8).order(order);
+                    for (double value : doubles) {
+                        data.putDouble(value);
+                    }
+                    return data.array();
+                }
+                long[] longs = (long[]) values;
+                ByteBuffer data = ByteBuffer.allocate(longs.length * size(type)).order(order);
+                for (long value : longs) {
+                    switch (type) {
+                        case 3 -> data.putShort((short) value);
+                        case 4 -> data.putInt((int) value);
+                        default -> data.putLong(value);
+                    }
+                }
+                return data.array();
+            }
+
+            private int size(int type) {
+                return switch (type) {
+                    case 2 -> 1;
+                    case 3 -> 2;
+                    case 4 -> 4;
+                    default -> 8;
+                };
+            }
+        }
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[4096];
+        while (!deflater.finished()) {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    private static byte[] packBits(byte[] raw) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int i = 0;
+        while (i < raw.length) {
+            int run = 1;
+            while (i + run < raw.length && run < 128 && raw[i + run] == raw[i]) {
+                run++;
+            }
+            if (run > 1) {
+                out.write(1 - run);
+                out.write(raw[i]);
+                i += run;
+                continue;
+            }
+            int literal = 1;
+            while (i + literal < raw.length && literal < 128
+                    && (i + literal + 1 >= raw.length || raw[i + literal] != raw[i + literal + 1])) {
+                literal++;
+            }
+            out.write(literal - 1);
+            out.write(raw, i, literal);
+            i += literal;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * TIFF LZW: codes written most significant bit first, starting with a clear code, widened
+     * one code early and cleared before the table is full.
+     */
+    private static byte[] lzw(byte[] raw) {
+        LzwBits out = new LzwBits();
+        Map<Integer, Integer> table = new HashMap<>();
+        int width = 9;
+        int next = 258;
+        out.write(256, width);
+        int current = -1;
+        for (byte value : raw) {
+            int b = value & 0xFF;
+            if (current < 0) {
+                current = b;
+                continue;
+            }
+            Integer code = table.get(current << 8 | b);
+            if (code != null) {
+                current = code;
+                continue;
+            }
+            out.write(current, width);
+            table.put(current << 8 | b, next++);
+            if (next >= 4094) {
+                out.write(256, width);
+                table.clear();
+                next = 258;
+                width = 9;
+            } else if (next >= 1 << width) {
+                width++;
+            }
+            current = b;
+        }
+        if (current >= 0) {
+            out.write(current, width);
+            next++;
+            if (next >= 1 << width && width < 12) {
+                width++;
+            }
+        }
+        out.write(257, width);
+        return out.toByteArray();
+    }
+
+    private static final class LzwBits {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private long bits;
+        private int count;
+
+        void write(int code, int width) {
+            bits = bits << width | code;
+            count += width;
+            while (count >= 8) {
+                bytes.write((int) (bits >>> (count - 8)));
+                count -= 8;
+            }
+        }
+
+        byte[] toByteArray() {
+            if (count > 0) {
+                bytes.write((int) (bits << (8 - count)));
+                count = 0;
+            }
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.adeprogramming.javagis.raster;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Encodes images with {@link PngEncoder} and decodes them with {@link ImageIO}, which must give
+ * back the same pixels, also when the encoder is reused for images of other sizes.
+ */
+class PngEncoderTest {
+
+    private final PngEncoder encoder = new PngEncoder(Deflater.BEST_SPEED);
+    private final Random random = new Random(36);
+
+    @AfterEach
+    void tearDown() {
+        encoder.close();
+    }
+
+    @Test
+    void randomPixelsDecodeUnchanged() throws IOException {
+        int[] argb = new int[97 * 61];
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = random.nextInt();
+        }
+
+        assertArrayEquals(argb, decode(encoder.encode(argb, 97, 61), 97, 61));
+    }
+
+    @Test
+    void gradientWithTransparencyDecodesUnchanged() throws IOException {
+        int[] argb = new int[256 * 256];
+        for (int y = 0; y < 256; y++) {
+            for (int x = 0; x < 256; x++) {
+                argb[y * 256 + x] = (255 - y) << 24 | x << 16 | y << 8 | (x ^ y);
+            }
+        }
+
+        assertArrayEquals(argb, decode(encoder.encode(argb, 256, 256), 256, 256));
+    }
+
+    @Test
+    void encoderIsReusedAcrossSizes() throws IOException {
+        for (int[] size : new int[][]{{300, 200}, {1, 1}, {17, 3}, {300, 200}}) {
+            int[] argb = new int[size[0] * size[1]];
+            for (int i = 0; i < argb.length; i++) {
+                argb[i] = random.nextInt();
+            }
+            assertArrayEquals(argb, decode(encoder.encode(argb, size[0], size[1]), size[0], size[1]),
+                    size[0] + "x" + size[1]);
+        }
+    }
+
+    private static int[] decode(byte[] png, int width, int height) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        assertEquals(width, image.getWidth());
+        assertEquals(height, image.getHeight());
+        assertEquals(4, image.getColorModel().getNumComponents());
+        return image.getRGB(0, 0, width, height, null, 0, width);
+    }
+}
@@ -0,0 +1,126 @@
+package com.adeprogramming.javagis.repository;
+
+import com.adeprogramming.javagis.model.agricultural.AgriculturalField;
+import com.adeprogramming.javagis.model.environmental.MonitoringStation;
+import com.adeprogramming.javagis.model.spatial.SpatialEntity;
+import com.adeprogramming.javagis.repository.agricultural.AgriculturalFieldRepository;
+import com.adeprogramming.javagis.repository.environmental.MonitoringStationRepository;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs the {@code findWithinDistance} queries against PostGIS, with stations and fields just
+ * inside and just outside the radius. They lie east and west of the query point on the equator,
+ * where the geodesic between two points is the equator itself, so their distance in metres is
+ * exactly the equatorial radius times the difference in longitude.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers
+class WithinDistanceQueryTest {
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> POSTGIS = new PostgreSQLContainer<>(
+            DockerImageName.parse("postgis/postgis:16-3.4").asCompatibleSubstituteFor("postgres"));
+
+    private static final double EQUATORIAL_RADIUS = 6378137;
+    private static final double CENTRE = 30;
+    private static final double RADIUS = 1000;
+    // Far below the spacing of the stations, far above the error of the spheroid distance
+    private static final double MARGIN = 0.5;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+
+    @Autowired
+    MonitoringStationRepository monitoringStationRepository;
+
+    @Autowired
+    AgriculturalFieldRepository agriculturalFieldRepository;
+
+    @Test
+    void stationsAreFoundUpToTheRadius() {
+        monitoringStationRepository.saveAllAndFlush(List.of(
+                station("centre", 0),
+                station("east-inside", RADIUS - MARGIN),
+                station("west-inside", -(RADIUS - MARGIN)),
+                station("east-outside", RADIUS + MARGIN),
+                station("west-outside", -(RADIUS + MARGIN)),
+                station("far", 100 * RADIUS)));
+
+        assertEquals(List.of("centre", "east-inside", "west-inside"),
+                names(monitoringStationRepository.findWithinDistance(point(0), RADIUS)));
+        assertEquals(List.of("centre"), names(monitoringStationRepository.findWithinDistance(point(0), MARGIN)));
+        assertEquals(List.of("centre", "east-inside", "east-outside"),
+                names(monitoringStationRepository.findWithinDistance(point(RADIUS / 2), RADIUS / 2 + MARGIN * 2)));
+    }
+
+    @Test
+    void fieldsAreFoundUpToTheRadiusFromTheirNearestEdge() {
+        agriculturalFieldRepository.saveAllAndFlush(List.of(
+                field("east-inside", RADIUS - MARGIN, RADIUS + 200),
+                field("west-inside", -(RADIUS + 200), -(RADIUS - MARGIN)),
+                field("east-outside", RADIUS + MARGIN, RADIUS + 200),
+                field("west-outside", -(RADIUS + 200), -(RADIUS + MARGIN)),
+                field("around", -100, 100)));
+
+        assertEquals(List.of("around", "east-inside", "west-inside"),
+                names(agriculturalFieldRepository.findWithinDistance(point(0), RADIUS)));
+        assertEquals(List.of("around", "east-inside", "east-outside", "west-inside", "west-outside"),
+                names(agriculturalFieldRepository.findWithinDistance(point(0), RADIUS + MARGIN * 2)));
+    }
+
+    private MonitoringStation station(String name, double metresEast) {
+        MonitoringStation station = new MonitoringStation();
+        station.setStationId(name);
+        station.setName(name);
+        station.setStationType(MonitoringStation.StationType.AIR_QUALITY);
+        station.setGeometry(point(metresEast));
+        return station;
+    }
+
+    /**
+     * A field spanning two distances east of the query point, and 100 m north and south of the equator.
+     */
+    private AgriculturalField field(String name, double westMetres, double eastMetres) {
+        double west = longitude(westMetres);
+        double east = longitude(eastMetres);
+        double half = Math.toDegrees(100 / EQUATORIAL_RADIUS);
+        Polygon boundary = geometryFactory.createPolygon(new Coordinate[]{
+                new Coordinate(west, -half), new Coordinate(east, -half), new Coordinate(east, half),
+                new Coordinate(west, half), new Coordinate(west, -half)});
+        AgriculturalField field = new AgriculturalField();
+        field.setFieldId(name);
+        field.setName(name);
+        field.setGeometry(boundary);
+        return field;
+    }
+
+    private Point point(double metresEast) {
+        return geometryFactory.createPoint(new Coordinate(longitude(metresEast), 0));
+    }
+
+    private static double longitude(double metresEast) {
+        return CENTRE + Math.toDegrees(metresEast / EQUATORIAL_RADIUS);
+    }
+
+    private static List<String> names(List<? extends SpatialEntity> entities) {
+        return entities.stream().map(SpatialEntity::getName).sorted().toList();
+    }
+}
@@ -0,0 +1,134 @@
+package com.adeprogramming.javagis.service.environmental;
+
+import com.adeprogramming.javagis.analytics.interpolation.SamplePoints;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Checks that the cache evicts the least recently used entries once it holds more bytes than
+ * allowed, drops whole buckets on invalidation and discards results computed from an
+ * invalidated bucket.
+ */
+class BucketCacheTest {
+
+    private static final long HOUR = 3_600_000;
+
+    private final BucketCache.BucketKey first = new BucketCache.BucketKey(1, HOUR);
+    private final BucketCache.BucketKey second = new BucketCache.BucketKey(1, 2 * HOUR);
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvictedBySize() {
+        BucketCache<String> cache = new BucketCache<>(300, 16);
+        BucketCache.Bucket bucket = cache.bucket(first);
+        cache.put(bucket, "a", new byte[100]);
+        cache.put(bucket, "b", new byte[100]);
+        cache.put(cache.bucket(second), "c", new byte[100]);
+        assertNotNull(cache.get(first, "a"));
+
+        cache.put(bucket, "d", new byte[100]);
+
+        assertNull(cache.get(first, "b"));
+        assertNotNull(cache.get(first, "a"));
+        assertNotNull(cache.get(second, "c"));
+        assertNotNull(cache.get(first, "d"));
+        assertEquals(new BucketCache.Stats(3, 300, 2, 4, 1, 0), cache.getStats());
+    }
+
+    @Test
+    void replacedEntriesAreCountedOnce() {
+        BucketCache<String> cache = new BucketCache<>(300, 16);
+        BucketCache.Bucket bucket = cache.bucket(first);
+        cache.put(bucket, "a", new byte[100]);
+        cache.put(bucket, "a", new byte[150]);
+        cache.put(bucket, "b", new byte[150]);
+
+        assertEquals(150, cache.get(first, "a").length);
+        assertEquals(300, cache.getStats().bytes());
+    }
+
+    @Test
+    void entryLargerThanTheCacheIsNotKept() {
+        BucketCache<String> cache = new BucketCache<>(300, 16);
+        BucketCache.Bucket bucket = cache.bucket(first);
+        cache.put(bucket, "a", new byte[100]);
+        cache.put(bucket, "b", new byte[301]);
+
+        assertNull(cache.get(first, "a"));
+        assertNull(cache.get(first, "b"));
+        assertEquals(0, cache.getStats().bytes());
+        assertEquals(0, cache.getStats().entries());
+    }
+
+    @Test
+    void invalidationDropsTheBucketWithItsEntriesAndReadings() {
+        BucketCache<String> cache = new BucketCache<>(1000, 16);
+        BucketCache.Bucket bucket = cache.bucket(first);
+        bucket.setSamples(4326, new SamplePoints(new double[]{1}, new double[]{2}, new double[]{3}));
+        cache.put(bucket, "a", new byte[100]);
+        cache.put(cache.bucket(second), "a", new byte[100]);
+
+        cache.invalidate(first);
+        cache.invalidate(new BucketCache.BucketKey(2, HOUR));
+
+        assertNull(cache.get(first, "a"));
+        assertNotNull(cache.get(second, "a"));
+        BucketCache.Bucket fresh = cache.bucket(first);
+        assertNotSame(bucket, fresh);
+        assertNull(fresh.getSamples(4326));
+        assertEquals(new BucketCache.Stats(1, 100, 2, 1, 1, 1), cache.getStats());
+    }
+
+    @Test
+    void resultOfAnInvalidatedBucketIsDiscarded() {
+        BucketCache<String> cache = new BucketCache<>(1000, 16);
+        BucketCache.Bucket stale = cache.bucket(first);
+
+        // New readings land while a tile is being rendered from the old ones
+        cache.invalidate(first);
+        cache.put(stale, "a", new byte[]{1});
+        assertNull(cache.get(first, "a"));
+
+        // Nor is it cached once the bucket is taken again for the new readings
+        BucketCache.Bucket fresh = cache.bucket(first);
+        cache.put(stale, "a", new byte[]{1});
+        assertNull(cache.get(first, "a"));
+
+        cache.put(fresh, "a", new byte[]{2});
+        assertArrayEquals(new byte[]{2}, cache.get(first, "a"));
+        assertEquals(1, cache.getStats().bytes());
+    }
+
+    @Test
+    void leastRecentlyUsedBucketIsDroppedBeyondTheLimit() {
+        BucketCache<String> cache = new BucketCache<>(1000, 2);
+        cache.put(cache.bucket(first), "a", new byte[100]);
+        cache.put(cache.bucket(second), "a", new byte[100]);
+        BucketCache.Bucket firstBucket = cache.bucket(first);
+
+        BucketCache.BucketKey third = new BucketCache.BucketKey(1, 3 * HOUR);
+        cache.put(cache.bucket(third), "a", new byte[100]);
+
+        assertSame(firstBucket, cache.bucket(first));
+        assertNull(cache.get(second, "a"));
+        assertNotNull(cache.get(first, "a"));
+        assertNotNull(cache.get(third, "a"));
+        assertEquals(200, cache.getStats().bytes());
+        assertEquals(2, cache.getStats().buckets());
+    }
+
+    @Test
+    void bucketsAreClosedAtTheirEnd() {
+        assertEquals(HOUR, BucketCache.BucketKey.of(1, HOUR, HOUR).bucketEnd());
+        assertEquals(HOUR, BucketCache.BucketKey.of(1, 1, HOUR).bucketEnd());
+        assertEquals(2 * HOUR, BucketCache.BucketKey.of(1, HOUR + 1, HOUR).bucketEnd());
+        assertEquals(0, BucketCache.BucketKey.of(1, 0, HOUR).bucketEnd());
+        assertEquals(0, BucketCache.BucketKey.of(1, -1, HOUR).bucketEnd());
+        assertEquals(-HOUR, BucketCache.BucketKey.of(1, -HOUR - 1, HOUR).bucketEnd());
+    }
+}
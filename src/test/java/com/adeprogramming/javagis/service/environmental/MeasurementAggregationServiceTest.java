@@ -0,0 +1,192 @@
+package com.adeprogramming.javagis.service.environmental;
+
+import com.adeprogramming.javagis.model.environmental.MonitoringStation;
+import com.adeprogramming.javagis.payload.environmental.AreaAggregationResponse;
+import com.adeprogramming.javagis.repository.environmental.MonitoringStationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs the area aggregation against PostGIS: bucket alignment and the stations, parameters and
+ * times it takes in, and that whole-day buckets come out the same from the daily rollups as from
+ * the raw measurements, which are read until every station in the area has been back-filled.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers
+@Import({MeasurementAggregationService.class, MeasurementStatisticsService.class,
+        MeasurementParameterDictionary.class, MeasurementSketchBackfill.class})
+class MeasurementAggregationServiceTest {
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> POSTGIS = new PostgreSQLContainer<>(
+            DockerImageName.parse("postgis/postgis:16-3.4").asCompatibleSubstituteFor("postgres"));
+
+    private static final int PARAMETER = 1;
+    private static final int OTHER_PARAMETER = 2;
+    private static final LocalDateTime DAY = LocalDateTime.of(2024, 5, 1, 0, 0);
+
+    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Autowired
+    MonitoringStationRepository monitoringStationRepository;
+
+    @Autowired
+    MeasurementAggregationService measurementAggregationService;
+
+    @Autowired
+    MeasurementSketchBackfill measurementSketchBackfill;
+
+    private Geometry area;
+    private long first;
+    private long second;
+    private long outside;
+    private long inactive;
+
+    @BeforeEach
+    void createStations() {
+        area = measurementAggregationService.readArea(
+                "{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[10,0],[10,10],[0,10],[0,0]]]}");
+        first = station("ST-1", 1, 1, true);
+        second = station("ST-2", 2, 2, true);
+        outside = station("ST-3", 20, 20, true);
+        inactive = station("ST-4", 3, 3, false);
+    }
+
+    @Test
+    void bucketsAreAlignedToFromAndOnlyCoverTheArea() {
+        LocalDateTime from = DAY.plusMinutes(30);
+        insert(first, PARAMETER, from.plusMinutes(10), 10, false);
+        insert(first, PARAMETER, from.plusMinutes(50), 20, false);
+        insert(second, PARAMETER, from.plusHours(1), 30, true);
+        insert(second, PARAMETER, from.plusHours(3).plusMinutes(5), 5, false);
+        // Outside the area, inactive, another parameter and at the exclusive end
+        insert(outside, PARAMETER, from.plusMinutes(15), 100, false);
+        insert(inactive, PARAMETER, from.plusMinutes(15), 100, false);
+        insert(first, OTHER_PARAMETER, from.plusMinutes(15), 100, false);
+        insert(first, PARAMETER, from.plusHours(4), 100, false);
+
+        AreaAggregationResponse response = measurementAggregationService.aggregate(
+                area, PARAMETER, from, from.plusHours(4), Duration.ofHours(1), true);
+
+        long origin = from.toInstant(ZoneOffset.UTC).toEpochMilli();
+        long hour = Duration.ofHours(1).toMillis();
+        assertEquals(MeasurementAggregationService.SOURCE_MEASUREMENTS, response.getSource());
+        assertArrayEquals(new long[]{origin, origin + hour, origin + 3 * hour}, response.getTimestamps());
+        assertArrayEquals(new long[]{2, 1, 1}, response.getCounts());
+        assertArrayEquals(new double[]{15, 30, 5}, response.getMean(), 1e-9);
+        assertArrayEquals(new double[]{10, 30, 5}, response.getMin(), 1e-9);
+        assertArrayEquals(new double[]{20, 30, 5}, response.getMax(), 1e-9);
+        assertArrayEquals(new int[]{1, 1, 1}, response.getStations());
+        assertArrayEquals(new long[]{0, 1, 0}, response.getExceedances());
+    }
+
+    @Test
+    void rollupsAreOnlyReadOnceTheAreaIsBackfilled() {
+        writeThreeDays();
+
+        AreaAggregationResponse raw = aggregateDays(Duration.ofDays(1), false);
+        AreaAggregationResponse notBackfilled = aggregateDays(Duration.ofDays(1), true);
+        assertEquals(MeasurementAggregationService.SOURCE_MEASUREMENTS, notBackfilled.getSource());
+        assertArrayEquals(raw.getCounts(), notBackfilled.getCounts());
+
+        measurementSketchBackfill.backfill(first);
+        assertEquals(MeasurementAggregationService.SOURCE_MEASUREMENTS,
+                aggregateDays(Duration.ofDays(1), true).getSource(), "one station is still missing");
+
+        measurementSketchBackfill.backfill(second);
+        assertEquals(MeasurementAggregationService.SOURCE_DAILY_ROLLUPS,
+                aggregateDays(Duration.ofDays(1), true).getSource());
+    }
+
+    @Test
+    void rollupsMatchRawMeasurements() {
+        writeThreeDays();
+        measurementSketchBackfill.backfill(first);
+        measurementSketchBackfill.backfill(second);
+        entityManager.clear();
+
+        for (Duration bucket : new Duration[]{Duration.ofDays(1), Duration.ofDays(2)}) {
+            AreaAggregationResponse raw = aggregateDays(bucket, false);
+            AreaAggregationResponse rollups = aggregateDays(bucket, true);
+
+            assertEquals(MeasurementAggregationService.SOURCE_MEASUREMENTS, raw.getSource());
+            assertEquals(MeasurementAggregationService.SOURCE_DAILY_ROLLUPS, rollups.getSource());
+            assertArrayEquals(raw.getTimestamps(), rollups.getTimestamps(), bucket.toString());
+            assertArrayEquals(raw.getCounts(), rollups.getCounts(), bucket.toString());
+            assertArrayEquals(raw.getMean(), rollups.getMean(), 1e-9, bucket.toString());
+            assertArrayEquals(raw.getMin(), rollups.getMin(), 1e-9, bucket.toString());
+            assertArrayEquals(raw.getMax(), rollups.getMax(), 1e-9, bucket.toString());
+            assertArrayEquals(raw.getStations(), rollups.getStations(), bucket.toString());
+            assertArrayEquals(raw.getExceedances(), rollups.getExceedances(), bucket.toString());
+        }
+        assertArrayEquals(new long[]{5, 2}, aggregateDays(Duration.ofDays(2), true).getCounts());
+    }
+
+    /**
+     * Readings on the first, second and fourth day of the range, so one bucket stays empty.
+     */
+    private void writeThreeDays() {
+        insert(first, PARAMETER, DAY.plusHours(1), 10, false);
+        insert(first, PARAMETER, DAY.plusHours(23), 12, true);
+        insert(second, PARAMETER, DAY.plusHours(2), 40, false);
+        insert(second, PARAMETER, DAY.plusDays(1).plusHours(6), 8, false);
+        insert(first, PARAMETER, DAY.plusDays(1).plusHours(7), 9.5, false);
+        insert(second, PARAMETER, DAY.plusDays(3).plusHours(12), 41, true);
+        insert(first, PARAMETER, DAY.plusDays(3).plusHours(13), 3, false);
+        insert(first, OTHER_PARAMETER, DAY.plusHours(3), 100, false);
+        insert(outside, PARAMETER, DAY.plusHours(3), 100, false);
+    }
+
+    private AreaAggregationResponse aggregateDays(Duration bucket, boolean useRollups) {
+        return measurementAggregationService.aggregate(
+                area, PARAMETER, DAY, DAY.plusDays(4), bucket, useRollups);
+    }
+
+    private long station(String stationId, double longitude, double latitude, boolean active) {
+        MonitoringStation station = new MonitoringStation();
+        station.setStationId(stationId);
+        station.setName(stationId);
+        station.setStationType(MonitoringStation.StationType.AIR_QUALITY);
+        station.setGeometry(geometryFactory.createPoint(new Coordinate(longitude, latitude)));
+        station.setActive(active);
+        return monitoringStationRepository.saveAndFlush(station).getId();
+    }
+
+    private void insert(long stationKey, int parameterCode, LocalDateTime time, double value, boolean exceeded) {
+        jdbcTemplate.update("INSERT INTO measurements (station_id, parameter_code, parameter_value, " +
+                        "measurement_time, quality_flag, threshold_exceeded, created_at, active) " +
+                        "VALUES (?, ?, ?, ?, 'VALID', ?, now(), true)",
+                stationKey, parameterCode, value, Timestamp.valueOf(time), exceeded);
+    }
+}
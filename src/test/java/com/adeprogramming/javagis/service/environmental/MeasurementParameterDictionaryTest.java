@@ -0,0 +1,116 @@
+package com.adeprogramming.javagis.service.environmental;
+
+import com.adeprogramming.javagis.model.environmental.MeasurementParameter;
+import com.adeprogramming.javagis.repository.environmental.MeasurementParameterRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the mapping between (parameter name, unit) pairs and catalog codes, and when the
+ * dictionary goes to the catalog table.
+ */
+class MeasurementParameterDictionaryTest {
+
+    private MeasurementParameterRepository repository;
+    private MeasurementParameterDictionary dictionary;
+
+    @BeforeEach
+    void loadCatalog() {
+        repository = mock(MeasurementParameterRepository.class);
+        when(repository.findAll()).thenReturn(List.of(
+                parameter(1, "PM10", "µg/m³"),
+                parameter(2, "NO2", "µg/m³"),
+                parameter(5, "NO2", "ppb")));
+        dictionary = new MeasurementParameterDictionary(repository, mock(PlatformTransactionManager.class));
+        dictionary.reload();
+    }
+
+    @Test
+    void knownPairsAreEncodedAndDecodedFromMemory() {
+        assertEquals(1, dictionary.encode("PM10", "µg/m³"));
+        assertEquals(5, dictionary.encode("NO2", "ppb"));
+        assertEquals(new MeasurementParameterDictionary.Entry(2, "NO2", "µg/m³"), dictionary.decode(2));
+        assertSame(dictionary.decode(2), dictionary.decode(2), "entries are shared");
+        assertNull(dictionary.find("PM10", "ppb"));
+
+        verify(repository, never()).saveAndFlush(any());
+        verify(repository, never()).findById(any());
+    }
+
+    @Test
+    void newPairsAreRegisteredOnce() {
+        when(repository.saveAndFlush(any())).thenReturn(parameter(9, "O3", "µg/m³"));
+
+        assertEquals(9, dictionary.encode("O3", "µg/m³"));
+        assertEquals(9, dictionary.encode("O3", "µg/m³"));
+        assertEquals("O3", dictionary.decode(9).name());
+        verify(repository, times(1)).saveAndFlush(any());
+    }
+
+    @Test
+    void pairsRegisteredConcurrentlyByAnotherNodeAreReused() {
+        when(repository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("uk_measurement_parameters_name_unit"));
+        when(repository.findByNameAndUnit("O3", "ppb")).thenReturn(Optional.of(parameter(12, "O3", "ppb")));
+
+        assertEquals(12, dictionary.encode("O3", "ppb"));
+        assertEquals(12, dictionary.find("O3", "ppb"));
+    }
+
+    @Test
+    void unknownCodesAreLoadedOnDecode() {
+        when(repository.findById(7L)).thenReturn(Optional.of(parameter(7, "SO2", "µg/m³")));
+
+        assertEquals("SO2", dictionary.decode(7).name());
+        assertEquals(7, dictionary.find("SO2", "µg/m³"));
+        assertNull(dictionary.decode(40));
+        assertNull(dictionary.decode(-1));
+        verify(repository, times(1)).findById(7L);
+    }
+
+    @Test
+    void unitsMayBeOmittedOnlyForParametersRecordedInOneUnit() {
+        assertEquals(1, dictionary.resolve("PM10", null));
+        assertNull(dictionary.resolve("NO2", null));
+        assertEquals(5, dictionary.resolve("NO2", "ppb"));
+        assertNull(dictionary.resolve("O3", null));
+
+        assertTrue(dictionary.isAmbiguous("NO2"));
+        assertFalse(dictionary.isAmbiguous("PM10"));
+        assertArrayEquals(new int[]{2, 5}, dictionary.codesForName("NO2"));
+        assertArrayEquals(new int[0], dictionary.codesForName("O3"));
+    }
+
+    @Test
+    void reloadReplacesTheCatalog() {
+        when(repository.findAll()).thenReturn(List.of(parameter(3, "PM2.5", "µg/m³")));
+        dictionary.reload();
+
+        assertEquals(3, dictionary.find("PM2.5", "µg/m³"));
+        assertNull(dictionary.find("PM10", "µg/m³"));
+        assertArrayEquals(new int[0], dictionary.codesForName("NO2"));
+    }
+
+    private static MeasurementParameter parameter(long id, String name, String unit) {
+        MeasurementParameter parameter = new MeasurementParameter(name, unit);
+        parameter.setId(id);
+        return parameter;
+    }
+}
@@ -0,0 +1,136 @@
+package com.adeprogramming.javagis.service.environmental;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Runs the parameter code migration against PostgreSQL on a table in the legacy layout, with
+ * rows in several back-fill ID ranges, and inserts as nodes of both versions would.
+ */
+@Testcontainers
+class MeasurementParameterInitializerTest {
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private JdbcTemplate jdbcTemplate;
+    private MeasurementParameterDictionary dictionary;
+
+    @BeforeEach
+    void createLegacySchema() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword()));
+        jdbcTemplate.execute("DROP TABLE IF EXISTS measurements, measurement_parameters");
+        jdbcTemplate.execute("DROP FUNCTION IF EXISTS measurements_sync_parameter()");
+        jdbcTemplate.execute("CREATE TABLE measurement_parameters (id SERIAL PRIMARY KEY, " +
+                "name VARCHAR(255) NOT NULL, unit VARCHAR(255) NOT NULL, created_at TIMESTAMP NOT NULL, " +
+                "updated_at TIMESTAMP, active BOOLEAN NOT NULL, " +
+                "CONSTRAINT uk_measurement_parameters_name_unit UNIQUE (name, unit))");
+        jdbcTemplate.execute("CREATE TABLE measurements (id BIGSERIAL PRIMARY KEY, station_id BIGINT NOT NULL, " +
+                "parameter_name VARCHAR(255), unit VARCHAR(255), parameter_value DOUBLE PRECISION NOT NULL, " +
+                "measurement_time TIMESTAMP NOT NULL)");
+        legacyInsert(1, "PM10", "µg/m³");
+        legacyInsert(1, "NO2", "ppb");
+        legacyInsert(2, "PM10", "µg/m³");
+        // In the third back-fill range, with the ranges between empty
+        jdbcTemplate.update("INSERT INTO measurements (id, station_id, parameter_name, unit, parameter_value, " +
+                "measurement_time) VALUES (250000, 3, 'NO2', 'µg/m³', 1, now())");
+        dictionary = mock(MeasurementParameterDictionary.class);
+    }
+
+    @Test
+    void backFillsEveryRangeAndBuildsTheIndex() throws Exception {
+        migrate(false);
+
+        assertEquals(0, count("SELECT COUNT(*) FROM measurements WHERE parameter_code IS NULL"));
+        assertEquals(3, count("SELECT COUNT(*) FROM measurement_parameters"));
+        assertEquals(0, count("SELECT COUNT(*) FROM measurements m JOIN measurement_parameters p " +
+                "ON p.id = m.parameter_code WHERE p.name <> m.parameter_name OR p.unit <> m.unit"));
+        assertEquals(1, count("SELECT COUNT(*) FROM pg_index WHERE indexrelid = to_regclass('" +
+                MeasurementParameterInitializer.INDEX_NAME + "') AND indisvalid"));
+        assertEquals(MeasurementParameterInitializer.BACK_FILLED, jdbcTemplate.queryForObject(
+                "SELECT col_description(attrelid, attnum) FROM pg_attribute " +
+                "WHERE attrelid = 'measurements'::regclass AND attname = 'parameter_code'", String.class));
+        verify(dictionary).reload();
+    }
+
+    @Test
+    void nodesOfBothVersionsInsertAfterTheFirstStep() throws Exception {
+        migrate(false);
+
+        legacyInsert(4, "O3", "µg/m³");
+        Integer code = jdbcTemplate.queryForObject(
+                "SELECT id FROM measurement_parameters WHERE name = 'NO2' AND unit = 'ppb'", Integer.class);
+        jdbcTemplate.update("INSERT INTO measurements (station_id, parameter_code, parameter_value, measurement_time) " +
+                "VALUES (5, ?, 2, now())", code);
+
+        Map<String, Object> old = jdbcTemplate.queryForMap(
+                "SELECT p.name, p.unit FROM measurements m JOIN measurement_parameters p ON p.id = m.parameter_code " +
+                "WHERE m.station_id = 4");
+        assertEquals("O3", old.get("name"));
+        Map<String, Object> current = jdbcTemplate.queryForMap(
+                "SELECT parameter_name, unit FROM measurements WHERE station_id = 5");
+        assertEquals("NO2", current.get("parameter_name"));
+        assertEquals("ppb", current.get("unit"));
+    }
+
+    @Test
+    void anInterruptedBackFillResumes() throws Exception {
+        migrate(false);
+        // As if the previous start stopped after the trigger, before the back-fill finished
+        jdbcTemplate.execute("COMMENT ON COLUMN measurements.parameter_code IS NULL");
+        jdbcTemplate.update("UPDATE measurements SET parameter_code = NULL WHERE id = 250000");
+
+        migrate(false);
+
+        assertEquals(0, count("SELECT COUNT(*) FROM measurements WHERE parameter_code IS NULL"));
+        assertEquals(1, count("SELECT COUNT(*) FROM pg_trigger WHERE tgname = 'measurements_sync_parameter'"));
+    }
+
+    @Test
+    void legacyColumnsAreDroppedOnlyOnOptIn() throws Exception {
+        migrate(false);
+        assertEquals(2, count("SELECT COUNT(*) FROM information_schema.columns " +
+                "WHERE table_name = 'measurements' AND column_name IN ('parameter_name', 'unit')"));
+
+        migrate(true);
+
+        assertEquals(0, count("SELECT COUNT(*) FROM information_schema.columns " +
+                "WHERE table_name = 'measurements' AND column_name IN ('parameter_name', 'unit')"));
+        assertEquals("NO", jdbcTemplate.queryForObject("SELECT is_nullable FROM information_schema.columns " +
+                "WHERE table_name = 'measurements' AND column_name = 'parameter_code'", String.class));
+        assertEquals(0, count("SELECT COUNT(*) FROM pg_trigger WHERE tgname = 'measurements_sync_parameter'"));
+        assertEquals(List.of(4L), jdbcTemplate.queryForList("SELECT COUNT(*) FROM measurements", Long.class));
+
+        // Nothing is left to migrate on later starts
+        migrate(true);
+        verify(dictionary, times(2)).reload();
+    }
+
+    private void migrate(boolean dropLegacyColumns) throws Exception {
+        new MeasurementParameterInitializer(jdbcTemplate, dictionary, dropLegacyColumns).run();
+    }
+
+    private void legacyInsert(long station, String name, String unit) {
+        jdbcTemplate.update("INSERT INTO measurements (station_id, parameter_name, unit, parameter_value, " +
+                "measurement_time) VALUES (?, ?, ?, 1, now())", station, name, unit);
+    }
+
+    private long count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Long.class);
+    }
+}
@@ -0,0 +1,187 @@
+package com.adeprogramming.javagis.service.environmental;
+
+import com.adeprogramming.javagis.model.environmental.Measurement;
+import com.adeprogramming.javagis.model.environmental.MeasurementParameter;
+import com.adeprogramming.javagis.model.environmental.MonitoringStation;
+import com.adeprogramming.javagis.payload.environmental.MeasurementPageResponse;
+import com.adeprogramming.javagis.repository.environmental.MeasurementParameterRepository;
+import com.adeprogramming.javagis.repository.environmental.MeasurementRepository;
+import com.adeprogramming.javagis.repository.environmental.MonitoringStationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the paging cursor and runs the keyset page queries against PostGIS: pages of
+ * readings sharing a measurement time, the bounds of the window, readings of one parameter,
+ * and a window pinned by the cursor while later readings arrive.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers
+@Import({MeasurementQueryService.class, MeasurementParameterDictionary.class})
+class MeasurementQueryServiceTest {
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> POSTGIS = new PostgreSQLContainer<>(
+            DockerImageName.parse("postgis/postgis:16-3.4").asCompatibleSubstituteFor("postgres"));
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2024, 6, 1, 0, 0);
+    private static final LocalDateTime TO = FROM.plusHours(10);
+
+    @Autowired
+    MeasurementQueryService measurementQueryService;
+
+    @Autowired
+    MeasurementParameterDictionary measurementParameterDictionary;
+
+    @Autowired
+    MonitoringStationRepository monitoringStationRepository;
+
+    @Autowired
+    MeasurementRepository measurementRepository;
+
+    @Autowired
+    MeasurementParameterRepository measurementParameterRepository;
+
+    private MonitoringStation station;
+    private int pm10;
+    private int no2;
+
+    @BeforeEach
+    void writeReadings() {
+        station = new MonitoringStation();
+        station.setStationId("ST-1");
+        station.setName("ST-1");
+        station.setStationType(MonitoringStation.StationType.AIR_QUALITY);
+        station = monitoringStationRepository.saveAndFlush(station);
+
+        pm10 = Math.toIntExact(measurementParameterRepository.saveAndFlush(new MeasurementParameter("PM10", "µg/m³")).getId());
+        no2 = Math.toIntExact(measurementParameterRepository.saveAndFlush(new MeasurementParameter("NO2", "µg/m³")).getId());
+        measurementParameterDictionary.reload();
+
+        // Two parameters per hour share each measurement time; the first and last hours are outside
+        List<Measurement> measurements = new ArrayList<>();
+        for (int hour = -1; hour <= 10; hour++) {
+            measurements.add(measurement(pm10, FROM.plusHours(hour), hour));
+            measurements.add(measurement(no2, FROM.plusHours(hour), 100 + hour));
+        }
+        measurementRepository.saveAllAndFlush(measurements);
+    }
+
+    @Test
+    void cursorsRoundTrip() {
+        MeasurementQueryService.Cursor cursor =
+                new MeasurementQueryService.Cursor(FROM, TO, FROM.plusMinutes(90).plusNanos(1000), 42L);
+
+        assertEquals(cursor, MeasurementQueryService.Cursor.decode(cursor.encode()));
+        assertTrue(cursor.encode().matches("[A-Za-z0-9_-]+"), "URL-safe without padding");
+    }
+
+    @Test
+    void malformedCursorsAreRejected() {
+        for (String raw : List.of("", "2024-06-01T00:00|7", "a|b|c|d",
+                FROM + "|" + TO + "|" + FROM + "|x", TO + "|" + FROM + "|" + FROM + "|1")) {
+            String token = Base64.getUrlEncoder().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+            assertThrows(IllegalArgumentException.class, () -> MeasurementQueryService.Cursor.decode(token), raw);
+        }
+        assertThrows(IllegalArgumentException.class, () -> MeasurementQueryService.Cursor.decode("not base64!"));
+    }
+
+    @Test
+    void pagesCoverTheWindowOnceInOrder() {
+        List<Double> values = new ArrayList<>();
+        String after = null;
+        int pages = 0;
+        do {
+            MeasurementPageResponse page = measurementQueryService.getStationMeasurements(
+                    station.getId(), after == null ? FROM : null, after == null ? TO : null,
+                    null, null, after, 3).orElseThrow();
+            assertEquals(FROM.toString(), page.getFrom());
+            assertEquals(TO.toString(), page.getTo());
+            page.getItems().forEach(item -> values.add(item.getValue()));
+            after = page.getNextCursor();
+            pages++;
+        } while (after != null);
+
+        List<Double> expected = new ArrayList<>();
+        for (int hour = 0; hour < 10; hour++) {
+            expected.add((double) hour);
+            expected.add(100.0 + hour);
+        }
+        assertEquals(expected, values, "ordered by time, then by id, the window end excluded");
+        assertEquals(7, pages);
+    }
+
+    @Test
+    void pagesOfOneParameter() {
+        MeasurementPageResponse first = measurementQueryService.getStationMeasurements(
+                station.getId(), FROM, TO, "NO2", null, null, 6).orElseThrow();
+        MeasurementPageResponse second = measurementQueryService.getStationMeasurements(
+                station.getId(), null, null, "NO2", null, first.getNextCursor(), 6).orElseThrow();
+
+        assertEquals(List.of(100.0, 101.0, 102.0, 103.0, 104.0, 105.0), values(first));
+        assertEquals(List.of(106.0, 107.0, 108.0, 109.0), values(second));
+        assertNull(second.getNextCursor());
+        assertEquals("NO2", second.getItems().get(0).getParameterName());
+    }
+
+    @Test
+    void theWindowIsPinnedByTheCursor() {
+        MeasurementPageResponse first = measurementQueryService.getStationMeasurements(
+                station.getId(), FROM, TO, null, null, null, 18).orElseThrow();
+        // Arrives after the first page, past the end of its window
+        measurementRepository.saveAndFlush(measurement(pm10, TO.plusMinutes(1), 999));
+
+        MeasurementPageResponse second = measurementQueryService.getStationMeasurements(
+                station.getId(), null, null, null, null, first.getNextCursor(), 18).orElseThrow();
+
+        assertEquals(List.of(9.0, 109.0), values(second));
+        assertEquals(TO.toString(), second.getTo());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void aCursorIsNotReusedForAnotherWindow() {
+        String after = measurementQueryService.getStationMeasurements(
+                station.getId(), FROM, TO, null, null, null, 2).orElseThrow().getNextCursor();
+
+        assertThrows(IllegalArgumentException.class, () -> measurementQueryService.getStationMeasurements(
+                station.getId(), FROM, TO.plusHours(1), null, null, after, 2));
+        assertEquals(2, measurementQueryService.getStationMeasurements(
+                station.getId(), FROM, TO, null, null, after, 2).orElseThrow().getItems().size());
+    }
+
+    private Measurement measurement(int parameterCode, LocalDateTime time, double value) {
+        Measurement measurement = new Measurement();
+        measurement.setStation(station);
+        measurement.setParameterCode(parameterCode);
+        measurement.setParameterValue(value);
+        measurement.setMeasurementTime(time);
+        return measurement;
+    }
+
+    private static List<Double> values(MeasurementPageResponse page) {
+        return page.getItems().stream().map(MeasurementPageResponse.Item::getValue).toList();
+    }
+}
@@ -0,0 +1,163 @@
+package com.adeprogramming.javagis.service.environmental;
+
+import com.adeprogramming.javagis.model.environmental.MonitoringStation;
+import com.adeprogramming.javagis.payload.environmental.MeasurementStatisticsResponse;
+import com.adeprogramming.javagis.repository.environmental.MonitoringStationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the sketch back-fill against PostGIS, with days written before the sketches existed,
+ * a day only partly sketched and a day sketched in full, and checks what the statistics
+ * report before and after it.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers
+@Import({MeasurementStatisticsService.class, MeasurementParameterDictionary.class, MeasurementSketchBackfill.class})
+class MeasurementSketchBackfillTest {
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> POSTGIS = new PostgreSQLContainer<>(
+            DockerImageName.parse("postgis/postgis:16-3.4").asCompatibleSubstituteFor("postgres"));
+
+    private static final int PARAMETER = 1;
+    private static final LocalDate BEFORE = LocalDate.of(2024, 5, 1);
+    private static final LocalDate ROLLOUT = BEFORE.plusDays(1);
+    private static final LocalDate AFTER = BEFORE.plusDays(2);
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Autowired
+    MonitoringStationRepository monitoringStationRepository;
+
+    @Autowired
+    MeasurementStatisticsService measurementStatisticsService;
+
+    @Autowired
+    MeasurementSketchBackfill measurementSketchBackfill;
+
+    private long stationKey;
+
+    @BeforeEach
+    void writeReadings() {
+        MonitoringStation station = new MonitoringStation();
+        station.setStationId("ST-1");
+        station.setName("ST-1");
+        station.setStationType(MonitoringStation.StationType.AIR_QUALITY);
+        stationKey = monitoringStationRepository.saveAndFlush(station).getId();
+
+        // Written before the sketches existed
+        for (int hour = 0; hour < 4; hour++) {
+            insert(BEFORE, hour, 10 + hour, hour == 3);
+        }
+        // Two readings before the rollout, one after it
+        insert(ROLLOUT, 0, 20, false);
+        insert(ROLLOUT, 1, 21, false);
+        insert(ROLLOUT, 2, 22, false);
+        sketch(ROLLOUT, 22);
+        // Written after the rollout
+        insert(AFTER, 0, 30, false);
+        insert(AFTER, 1, 31, false);
+        sketch(AFTER, 30, 31);
+    }
+
+    @Test
+    void incompleteDaysAreLeftOutAndReported() {
+        MeasurementStatisticsResponse response = statistics();
+
+        assertFalse(response.isComplete());
+        assertEquals(List.of(BEFORE.toString(), ROLLOUT.toString()), response.getIncompleteDays());
+        assertEquals(1, response.getDaysCovered());
+        assertEquals(2, response.getCount());
+        assertEquals(30, response.getMin());
+        assertEquals(31, response.getMax());
+    }
+
+    @Test
+    void backfillRebuildsOnlyIncompleteSketches() {
+        assertEquals(2, measurementSketchBackfill.backfill(stationKey));
+        entityManager.clear();
+
+        MeasurementStatisticsResponse response = statistics();
+        assertTrue(response.isComplete());
+        assertEquals(List.of(), response.getIncompleteDays());
+        assertEquals(3, response.getDaysCovered());
+        assertEquals(9, response.getCount());
+        assertEquals(1, response.getExceedanceCount());
+        assertEquals(10, response.getMin());
+        assertEquals(31, response.getMax());
+        assertEquals((10 + 11 + 12 + 13 + 20 + 21 + 22 + 30 + 31) / 9.0, response.getMean(), 1e-9);
+
+        assertEquals(List.of(), measurementStatisticsService.findIncompleteSketches(stationKey));
+        assertEquals(Boolean.TRUE, jdbcTemplate.queryForObject(
+                "SELECT sketches_backfilled FROM monitoring_stations WHERE id = ?", Boolean.class, stationKey));
+    }
+
+    @Test
+    void sketchesOfDeletedReadingsAreRebuilt() {
+        jdbcTemplate.update("DELETE FROM measurements WHERE station_id = ? AND measurement_time >= ?",
+                stationKey, Timestamp.valueOf(AFTER.atStartOfDay()));
+
+        assertEquals(List.of(new MeasurementStatisticsService.DailySketchKey(stationKey, PARAMETER, BEFORE),
+                        new MeasurementStatisticsService.DailySketchKey(stationKey, PARAMETER, ROLLOUT),
+                        new MeasurementStatisticsService.DailySketchKey(stationKey, PARAMETER, AFTER)),
+                measurementStatisticsService.findIncompleteSketches(stationKey));
+        assertEquals(0, measurementStatisticsService.rebuildDaily(
+                new MeasurementStatisticsService.DailySketchKey(stationKey, PARAMETER, AFTER)));
+        assertEquals(0L, jdbcTemplate.queryForObject(
+                "SELECT sample_count FROM measurement_daily_sketches WHERE station_id = ? AND day = ?",
+                Long.class, stationKey, Date.valueOf(AFTER)));
+    }
+
+    private MeasurementStatisticsResponse statistics() {
+        return measurementStatisticsService
+                .getStatistics("ST-1", PARAMETER, BEFORE, AFTER, List.of(0.5), null)
+                .orElseThrow();
+    }
+
+    private void insert(LocalDate day, int hour, double value, boolean exceeded) {
+        jdbcTemplate.update("INSERT INTO measurements (station_id, parameter_code, parameter_value, " +
+                        "measurement_time, quality_flag, threshold_exceeded, created_at, active) " +
+                        "VALUES (?, ?, ?, ?, 'VALID', ?, now(), true)",
+                stationKey, PARAMETER, value, Timestamp.valueOf(day.atTime(hour, 0)), exceeded);
+    }
+
+    /**
+     * Merge values into a sketch as ingest does.
+     */
+    private void sketch(LocalDate day, double... values) {
+        DailySketchAccumulator accumulator = new DailySketchAccumulator();
+        for (double value : values) {
+            accumulator.add(value, false);
+        }
+        measurementStatisticsService.mergeDaily(Map.of(
+                new MeasurementStatisticsService.DailySketchKey(stationKey, PARAMETER, day), accumulator));
+    }
+}
@@ -0,0 +1,139 @@
+package com.adeprogramming.javagis.service.environmental.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the ring buffer bounds, FIFO order and, with several producers and consumers, that
+ * every element is taken exactly once.
+ */
+class BoundedMpmcQueueTest {
+
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(4, new BoundedMpmcQueue<Integer>(3).capacity());
+        assertEquals(4, new BoundedMpmcQueue<Integer>(4).capacity());
+        assertEquals(8, new BoundedMpmcQueue<Integer>(5).capacity());
+        assertEquals(65536, new BoundedMpmcQueue<Integer>(65536).capacity());
+    }
+
+    @Test
+    void offerFailsWhenFullAndOrderIsKeptAcrossLaps() {
+        BoundedMpmcQueue<Integer> queue = new BoundedMpmcQueue<>(4);
+        int next = 0;
+        int expected = 0;
+        for (int lap = 0; lap < 5; lap++) {
+            while (queue.offer(next)) {
+                next++;
+            }
+            assertEquals(4, queue.size());
+            assertEquals(expected++, (int) queue.poll());
+            assertEquals(expected++, (int) queue.poll());
+        }
+        List<Integer> rest = new ArrayList<>();
+        assertEquals(2, queue.drainTo(rest, 10));
+        assertEquals(List.of(expected, expected + 1), rest);
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void drainToStopsAtMax() {
+        BoundedMpmcQueue<Integer> queue = new BoundedMpmcQueue<>(8);
+        for (int i = 0; i < 6; i++) {
+            assertTrue(queue.offer(i));
+        }
+        List<Integer> batch = new ArrayList<>();
+        assertEquals(4, queue.drainTo(batch, 4));
+        assertEquals(List.of(0, 1, 2, 3), batch);
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    void concurrentProducersAndConsumersTakeEachElementOnce() throws InterruptedException {
+        int producers = 4;
+        int consumers = 4;
+        int perProducer = 200_000;
+        BoundedMpmcQueue<Integer> queue = new BoundedMpmcQueue<>(1024);
+        BitSet[] seen = new BitSet[consumers];
+        int[][] lastPerProducer = new int[consumers][producers];
+        AtomicInteger taken = new AtomicInteger();
+        AtomicInteger outOfOrder = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads.add(new Thread(() -> {
+                await(start);
+                for (int i = 0; i < perProducer; i++) {
+                    while (!queue.offer(producer * perProducer + i)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            }));
+        }
+        for (int c = 0; c < consumers; c++) {
+            BitSet consumed = seen[c] = new BitSet(producers * perProducer);
+            int[] last = lastPerProducer[c];
+            Arrays.fill(last, -1);
+            threads.add(new Thread(() -> {
+                await(start);
+                while (taken.get() < producers * perProducer) {
+                    Integer element = queue.poll();
+                    if (element == null) {
+                        Thread.onSpinWait();
+                        continue;
+                    }
+                    taken.incrementAndGet();
+                    consumed.set(element);
+                    // Elements of one producer reach a consumer in the order they were offered
+                    int producer = element / perProducer;
+                    if (element % perProducer <= last[producer]) {
+                        outOfOrder.incrementAndGet();
+                    }
+                    last[producer] = element % perProducer;
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(60_000);
+            assertFalse(thread.isAlive(), "queue threads did not finish");
+        }
+
+        BitSet all = new BitSet();
+        int total = 0;
+        for (BitSet consumed : seen) {
+            assertFalse(all.intersects(consumed), "an element was taken twice");
+            all.or(consumed);
+            total += consumed.cardinality();
+        }
+        assertEquals(producers * perProducer, total);
+        assertEquals(producers * perProducer, all.cardinality());
+        assertEquals(0, outOfOrder.get());
+        assertNull(queue.poll());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
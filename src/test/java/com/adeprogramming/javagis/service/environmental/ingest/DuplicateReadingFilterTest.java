@@ -0,0 +1,61 @@
+package com.adeprogramming.javagis.service.environmental.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks which readings the filter reports as duplicates and that its memory stays bounded.
+ */
+class DuplicateReadingFilterTest {
+
+    private static final long TIME = 1_717_236_000_000L;
+
+    @Test
+    void writtenReadingsAreDuplicates() {
+        DuplicateReadingFilter filter = new DuplicateReadingFilter(Duration.ofHours(6), 1000);
+        filter.markWritten(1, 7, TIME);
+
+        assertTrue(filter.isDuplicate(1, 7, TIME));
+        assertFalse(filter.isDuplicate(2, 7, TIME), "other station");
+        assertFalse(filter.isDuplicate(1, 8, TIME), "other parameter");
+        assertFalse(filter.isDuplicate(1, 7, TIME + 1), "other time");
+        assertEquals(4, filter.getStats().checked());
+        assertEquals(1, filter.getStats().dropped());
+    }
+
+    @Test
+    void keysAreExactForAllParameterCodes() {
+        assertNotEquals(DuplicateReadingFilter.key(0x3FFFFF, TIME), DuplicateReadingFilter.key(0, TIME + 1));
+        assertNotEquals(DuplicateReadingFilter.key(1, TIME), DuplicateReadingFilter.key(2, TIME));
+        assertEquals(DuplicateReadingFilter.key(5, TIME), DuplicateReadingFilter.key(5, TIME));
+    }
+
+    @Test
+    void entryBudgetBoundsMemory() {
+        DuplicateReadingFilter filter = new DuplicateReadingFilter(Duration.ofHours(6), 1000);
+        for (int i = 0; i < 10_000; i++) {
+            filter.markWritten(1, 1, TIME + i);
+        }
+
+        assertTrue(filter.getStats().entries() <= 1000, "entries " + filter.getStats().entries());
+        assertTrue(filter.isDuplicate(1, 1, TIME + 9_999), "the latest readings are kept");
+        assertFalse(filter.isDuplicate(1, 1, TIME), "the oldest readings are discarded");
+    }
+
+    @Test
+    void readingsExpireAfterTwoWindows() throws InterruptedException {
+        DuplicateReadingFilter filter = new DuplicateReadingFilter(Duration.ofMillis(50), 1000);
+        filter.markWritten(1, 1, TIME);
+
+        Thread.sleep(60);
+        assertTrue(filter.isDuplicate(1, 1, TIME), "kept for one more window");
+        Thread.sleep(60);
+        assertFalse(filter.isDuplicate(1, 1, TIME));
+    }
+}
@@ -0,0 +1,164 @@
+package com.adeprogramming.javagis.service.environmental.ingest;
+
+import com.adeprogramming.javagis.model.environmental.Measurement;
+import com.adeprogramming.javagis.payload.environmental.MeasurementReading;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that journaled readings are replayed after a restart, that a torn or corrupt tail
+ * ends the replay of a segment without failing it, and which segments are kept or deleted.
+ */
+class IngestJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void uncommittedReadingsAreReplayedAfterRestart() throws IOException {
+        List<MeasurementReading> first = readings("ST-1", 3);
+        List<MeasurementReading> second = readings("ST-2", 2);
+        second.get(0).setNotes("calibrated");
+        second.get(0).setThresholdValue(12.5);
+        second.get(1).setQualityFlag(Measurement.QualityFlag.values()[0]);
+
+        IngestJournal journal = new IngestJournal(directory, 1 << 20);
+        journal.append(first);
+        journal.append(second);
+        journal.close();
+
+        List<List<MeasurementReading>> replayed = replay(new IngestJournal(directory, 1 << 20));
+        assertEquals(List.of(first, second), replayed);
+        assertTrue(segments().isEmpty(), "replayed segments are deleted");
+    }
+
+    @Test
+    void subMillisecondTimesAreKept() throws IOException {
+        List<MeasurementReading> readings = readings("ST-1", 2);
+        readings.get(0).setMeasurementTime(LocalDateTime.of(2024, 6, 1, 12, 0, 0, 123_456_000));
+        readings.get(1).setMeasurementTime(LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999_999_999));
+
+        IngestJournal journal = new IngestJournal(directory, 1 << 20);
+        journal.append(readings);
+        journal.close();
+
+        List<List<MeasurementReading>> replayed = replay(new IngestJournal(directory, 1 << 20));
+        assertEquals(List.of(readings), replayed);
+        assertEquals(123_456_000, replayed.get(0).get(0).getMeasurementTime().getNano());
+    }
+
+    @Test
+    void committedSegmentsAreDeleted() throws IOException {
+        IngestJournal journal = new IngestJournal(directory, 1);
+        IngestJournal.Segment segment = journal.append(readings("ST-1", 4));
+        assertEquals(2, segments().size());
+
+        journal.markCommitted(segment, 3);
+        assertEquals(2, segments().size());
+        journal.markCommitted(segment, 1);
+        assertEquals(1, segments().size());
+        journal.close();
+        assertEquals(0, segments().size());
+    }
+
+    @Test
+    void tornTailEndsReplayOfSegment() throws IOException {
+        IngestJournal journal = new IngestJournal(directory, 1 << 20);
+        journal.append(readings("ST-1", 2));
+        journal.append(readings("ST-2", 5));
+        journal.close();
+        Path segment = segments().get(0);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            // Cut the second record in the middle of its payload, as a crash during a write would
+            file.setLength(file.length() - 20);
+        }
+
+        List<List<MeasurementReading>> replayed = replay(new IngestJournal(directory, 1 << 20));
+        assertEquals(List.of(readings("ST-1", 2)), replayed);
+        assertTrue(Files.notExists(segment));
+    }
+
+    @Test
+    void badChecksumEndsReplayOfSegment() throws IOException {
+        IngestJournal journal = new IngestJournal(directory, 1 << 20);
+        journal.append(readings("ST-1", 2));
+        journal.append(readings("ST-2", 2));
+        journal.close();
+        Path segment = segments().get(0);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            long position = file.length() - 12;
+            file.seek(position);
+            int b = file.read();
+            file.seek(position);
+            file.write(b ^ 0xff);
+        }
+
+        assertEquals(List.of(readings("ST-1", 2)), replay(new IngestJournal(directory, 1 << 20)));
+    }
+
+    @Test
+    void segmentWithUnwrittenRecordIsKept() throws IOException {
+        IngestJournal journal = new IngestJournal(directory, 1 << 20);
+        journal.append(readings("ST-1", 1));
+        journal.append(readings("ST-2", 1));
+        journal.append(readings("ST-3", 1));
+        journal.close();
+        Path segment = segments().get(0);
+
+        List<String> attempted = new ArrayList<>();
+        IngestJournal reopened = new IngestJournal(directory, 1 << 20);
+        reopened.replay(readings -> {
+            String station = readings.get(0).getStationId();
+            attempted.add(station);
+            if (station.equals("ST-2")) {
+                throw new IllegalStateException("connection refused");
+            }
+            return !station.equals("ST-3");
+        });
+        reopened.close();
+        assertEquals(List.of("ST-1", "ST-2", "ST-3"), attempted);
+        assertTrue(Files.exists(segment));
+
+        assertEquals(3, replay(new IngestJournal(directory, 1 << 20)).size());
+        assertTrue(Files.notExists(segment));
+    }
+
+    private static List<List<MeasurementReading>> replay(IngestJournal journal) throws IOException {
+        List<List<MeasurementReading>> replayed = new ArrayList<>();
+        journal.replay(readings -> replayed.add(readings));
+        journal.close();
+        return replayed;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private static List<MeasurementReading> readings(String stationId, int count) {
+        List<MeasurementReading> readings = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            readings.add(MeasurementReading.builder()
+                    .stationId(stationId)
+                    .parameterName("PM10")
+                    .value(10.0 + i)
+                    .unit("µg/m³")
+                    .measurementTime(LocalDateTime.of(2024, 6, 1, 12, i))
+                    .build());
+        }
+        return readings;
+    }
+}
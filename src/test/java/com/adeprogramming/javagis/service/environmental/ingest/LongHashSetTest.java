@@ -0,0 +1,58 @@
+package com.adeprogramming.javagis.service.environmental.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the primitive set against {@link HashSet} through growth, collisions and the zero key.
+ */
+class LongHashSetTest {
+
+    @Test
+    void matchesHashSet() {
+        Random random = new Random(5);
+        LongHashSet set = new LongHashSet(4);
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 200_000; i++) {
+            // A small key space, so keys repeat and probe sequences collide
+            long key = random.nextInt(50_000) - 25_000L;
+            assertEquals(expected.add(key), set.add(key));
+            long probe = random.nextInt(60_000) - 30_000L;
+            assertEquals(expected.contains(probe), set.contains(probe), "key " + probe);
+        }
+        assertEquals(expected.size(), set.size());
+    }
+
+    @Test
+    void zeroIsAnOrdinaryKey() {
+        LongHashSet set = new LongHashSet(16);
+        assertFalse(set.contains(0));
+
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        assertTrue(set.contains(0));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    void clearEmptiesTheSet() {
+        LongHashSet set = new LongHashSet(16);
+        for (long key = 0; key < 1000; key++) {
+            set.add(key << 22);
+        }
+
+        set.clear();
+
+        assertEquals(0, set.size());
+        assertFalse(set.contains(0));
+        assertFalse(set.contains(999L << 22));
+        assertTrue(set.add(999L << 22));
+    }
+}
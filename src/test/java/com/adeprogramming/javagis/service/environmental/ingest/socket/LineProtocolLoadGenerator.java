@@ -0,0 +1,101 @@
+package com.adeprogramming.javagis.service.environmental.ingest.socket;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load generator for the line protocol listener.
+ * Opens a number of gateway connections and streams synthetic readings as fast as the
+ * listener accepts them, printing the achieved rate once per second.
+ * <p>
+ * Usage: {@code LineProtocolLoadGenerator [host] [port] [connections] [seconds] [stations] [token]}.
+ * Station IDs are {@code LOAD-0000} upwards and must exist for readings to be written.
+ */
+public class LineProtocolLoadGenerator {
+
+    private static final String[] PARAMETERS = {"NO2", "PM10", "PM2.5", "O3"};
+    private static final String[] UNITS = {"µg/m³", "µg/m³", "µg/m³", "µg/m³"};
+    private static final int BATCH_LINES = 500;
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 7070;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+        int stations = args.length > 4 ? Integer.parseInt(args[4]) : 100;
+        String token = args.length > 5 ? args[5] : null;
+
+        AtomicLong sent = new AtomicLong();
+        long deadline = System.currentTimeMillis() + seconds * 1000L;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    stream(new InetSocketAddress(host, port), token, stations, deadline, sent);
+                } catch (IOException e) {
+                    System.err.println("Connection failed: " + e.getMessage());
+                }
+            }, "load-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+
+        long previous = 0;
+        while (System.currentTimeMillis() < deadline) {
+            Thread.sleep(1000);
+            long total = sent.get();
+            System.out.printf("%,d readings/s (%,d total)%n", total - previous, total);
+            previous = total;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        System.out.printf("Sent %,d readings over %d connections in %d s (%,.0f readings/s)%n",
+                sent.get(), connections, seconds, sent.get() / (double) seconds);
+    }
+
+    private static void stream(InetSocketAddress address, String token, int stations, long deadline, AtomicLong sent)
+            throws IOException {
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            channel.socket().setTcpNoDelay(true);
+            if (token != null) {
+                write(channel, ByteBuffer.wrap(("AUTH " + token + "\n").getBytes(StandardCharsets.UTF_8)));
+            }
+
+            String[] stationIds = new String[stations];
+            for (int i = 0; i < stations; i++) {
+                stationIds[i] = String.format("LOAD-%04d", i);
+            }
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            StringBuilder lines = new StringBuilder(BATCH_LINES * 48);
+            long timestamp = System.currentTimeMillis() - random.nextLong(86_400_000L);
+            while (System.currentTimeMillis() < deadline) {
+                lines.setLength(0);
+                for (int i = 0; i < BATCH_LINES; i++) {
+                    int parameter = random.nextInt(PARAMETERS.length);
+                    lines.append(stationIds[random.nextInt(stations)]).append(',')
+                            .append(PARAMETERS[parameter]).append(',')
+                            .append(Math.round(random.nextDouble(0, 120) * 100) / 100.0).append(',')
+                            .append(UNITS[parameter]).append(',')
+                            .append(timestamp++).append('\n');
+                }
+                write(channel, ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8)));
+                sent.addAndGet(BATCH_LINES);
+            }
+        }
+    }
+
+    private static void write(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.adeprogramming.javagis.service.environmental.ingest.socket;
+
+import com.adeprogramming.javagis.payload.environmental.MeasurementReading;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Checks the in-place parsing of gateway lines, including the fast number decoding against
+ * {@link Double#parseDouble}, and that malformed lines are rejected.
+ */
+class LineProtocolParserTest {
+
+    private final LineProtocolParser parser = new LineProtocolParser();
+
+    @Test
+    void wellFormedLineIsParsed() {
+        MeasurementReading reading = parse("ST-001,PM10,23.5,µg/m³,1717243200000\n");
+
+        assertNotNull(reading);
+        assertEquals("ST-001", reading.getStationId());
+        assertEquals("PM10", reading.getParameterName());
+        assertEquals(23.5, reading.getValue());
+        assertEquals("µg/m³", reading.getUnit());
+        assertEquals(LocalDateTime.of(2024, 6, 1, 12, 0), reading.getMeasurementTime());
+    }
+
+    @Test
+    void lineInTheMiddleOfADirectBufferIsParsed() {
+        String lines = "ST-001,PM10,1,ug,0\r\nST-002,NO2,-4.25,ppb,1000\r\nST-003,O3,7,ppb,2000\r\n";
+        ByteBuffer buffer = ByteBuffer.allocateDirect(256);
+        buffer.put(lines.getBytes(StandardCharsets.UTF_8)).flip();
+        int start = lines.indexOf('\n') + 1;
+        int end = lines.indexOf('\n', start);
+
+        MeasurementReading reading = parser.parse(buffer, start, end);
+        assertNotNull(reading);
+        assertEquals("ST-002", reading.getStationId());
+        assertEquals("ppb", reading.getUnit());
+        assertEquals(-4.25, reading.getValue());
+        assertEquals(LocalDateTime.of(1970, 1, 1, 0, 0, 1), reading.getMeasurementTime());
+    }
+
+    @Test
+    void repeatedNamesAreServedFromTheCache() {
+        MeasurementReading first = parse("ST-001,PM10,1,ug,0\n");
+        MeasurementReading second = parse("ST-001,PM10,2,ug,1\n");
+        assertSame(first.getStationId(), second.getStationId());
+        assertSame(first.getParameterName(), second.getParameterName());
+    }
+
+    @Test
+    void numbersMatchParseDouble() {
+        Random random = new Random(11);
+        for (int i = 0; i < 100_000; i++) {
+            String text = switch (i % 4) {
+                case 0 -> Integer.toString(random.nextInt());
+                case 1 -> String.format(Locale.ROOT, "%." + random.nextInt(8) + "f", random.nextGaussian() * 1000);
+                case 2 -> Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(30) - 15));
+                default -> Long.toString(random.nextLong() >>> random.nextInt(64)) + "." + random.nextInt(1000);
+            };
+            MeasurementReading reading = parse("S,P," + text + ",u,0\n");
+            assertNotNull(reading, text);
+            assertEquals(Double.parseDouble(text), reading.getValue(), text);
+        }
+    }
+
+    @Test
+    void malformedLinesAreRejected() {
+        assertNull(parse("ST-001,PM10,23.5,ug\n"));
+        assertNull(parse("ST-001,PM10,23.5,ug,0,extra\n"));
+        assertNull(parse("ST-001,,23.5,ug,0\n"));
+        assertNull(parse("ST-001,PM10,,ug,0\n"));
+        assertNull(parse("ST-001,PM10,abc,ug,0\n"));
+        assertNull(parse("ST-001,PM10,-,ug,0\n"));
+        assertNull(parse("ST-001,PM10,NaN,ug,0\n"));
+        assertNull(parse("ST-001,PM10,Infinity,ug,0\n"));
+        assertNull(parse("ST-001,PM10,1,ug,-5\n"));
+        assertNull(parse("ST-001,PM10,1,ug,2024-06-01\n"));
+        assertNull(parse("ST-001,PM10,1,ug,1234567890123456789\n"));
+        assertNull(parse("\n"));
+    }
+
+    private MeasurementReading parse(String line) {
+        ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        return parser.parse(buffer, 0, buffer.limit() - 1);
+    }
+}
@@ -0,0 +1,247 @@
+package com.adeprogramming.javagis.service.environmental.live;
+
+import com.adeprogramming.javagis.model.environmental.Measurement;
+import com.adeprogramming.javagis.payload.environmental.LiveMeasurementEvent;
+import com.adeprogramming.javagis.repository.environmental.MonitoringStationRepository;
+import com.adeprogramming.javagis.service.environmental.MeasurementParameterDictionary;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.mockito.ArgumentMatchers;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks routing by station, parameter, area and exceedance, the overflow notice sent to a slow
+ * stream, the eviction of a stream whose write stays blocked, and that stations missing from the
+ * location cache are looked up on the loader thread rather than the dispatcher thread.
+ */
+class LiveMeasurementDispatcherTest {
+
+    private static final long TIME = 1_717_236_000_000L;
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final MonitoringStationRepository monitoringStationRepository = mock(MonitoringStationRepository.class);
+    private final MeasurementParameterDictionary measurementParameterDictionary =
+            mock(MeasurementParameterDictionary.class);
+
+    private int bufferSize = 256;
+    private LiveMeasurementDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        when(jdbcTemplate.query(eq(LiveMeasurementDispatcher.SELECT_STATION_LOCATIONS),
+                ArgumentMatchers.<RowMapper<LiveMeasurementDispatcher.StationLocation>>any()))
+                .thenReturn(List.of(
+                        new LiveMeasurementDispatcher.StationLocation(1, "S1", 10, 50),
+                        new LiveMeasurementDispatcher.StationLocation(2, "S2", 20, 60)));
+        when(measurementParameterDictionary.decode(1))
+                .thenReturn(new MeasurementParameterDictionary.Entry(1, "NO2", "µg/m³"));
+        when(measurementParameterDictionary.decode(2))
+                .thenReturn(new MeasurementParameterDictionary.Entry(2, "PM10", "µg/m³"));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
+    }
+
+    private void start(int bufferSize, Duration writeTimeout) {
+        dispatcher = new LiveMeasurementDispatcher(jdbcTemplate, monitoringStationRepository,
+                measurementParameterDictionary, 64, bufferSize, 100, 2,
+                Duration.ofMinutes(5), Duration.ofMinutes(5), writeTimeout, 4);
+        dispatcher.start();
+    }
+
+    private RecordingEmitter subscribe(Set<Long> stationKeys, Set<String> parameterNames,
+                                       Envelope bbox, boolean exceedancesOnly) {
+        RecordingEmitter emitter = new RecordingEmitter();
+        LiveSubscription subscription = new LiveSubscription(stationKeys, parameterNames, bbox, exceedancesOnly);
+        assertTrue(dispatcher.register(new LiveSubscriber(emitter, subscription, bufferSize)));
+        return emitter;
+    }
+
+    private static LiveMeasurement measurement(long stationKey, int parameterCode, double value, boolean exceeded) {
+        return new LiveMeasurement(stationKey, parameterCode, TIME, value, Measurement.QualityFlag.VALID,
+                exceeded, exceeded ? 40.0 : null);
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline > 0) {
+                fail("Timed out waiting for " + what);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void measurementsAreRoutedByStationParameterAreaAndExceedance() throws InterruptedException {
+        start(bufferSize, Duration.ofMinutes(1));
+        RecordingEmitter byStation = subscribe(Set.of(1L), Set.of(), null, false);
+        RecordingEmitter byParameter = subscribe(Set.of(), Set.of("PM10"), null, false);
+        RecordingEmitter byArea = subscribe(Set.of(), Set.of(), new Envelope(15, 25, 55, 65), false);
+        RecordingEmitter exceedances = subscribe(Set.of(), Set.of(), null, true);
+
+        dispatcher.publish(List.of(
+                measurement(1, 1, 10, false),
+                measurement(2, 1, 20, false),
+                measurement(1, 2, 50, true)));
+        await(() -> dispatcher.getStats().delivered() == 5, "five deliveries");
+
+        assertEquals(List.of("measurement:S1:10.0", "exceedance:S1:50.0"), byStation.events());
+        assertEquals(List.of("exceedance:S1:50.0"), byParameter.events());
+        assertEquals(List.of("measurement:S2:20.0"), byArea.events());
+        assertEquals(List.of("exceedance:S1:50.0"), exceedances.events());
+        assertEquals(3, dispatcher.getStats().published());
+    }
+
+    @Test
+    void slowStreamIsToldHowManyEventsItMissed() throws InterruptedException {
+        bufferSize = 4;
+        start(bufferSize, Duration.ofMinutes(1));
+        RecordingEmitter slow = subscribe(Set.of(), Set.of(), null, false);
+        slow.block();
+
+        dispatcher.publish(List.of(measurement(1, 1, 0, false)));
+        assertTrue(slow.entered.await(10, TimeUnit.SECONDS));
+        dispatcher.publish(List.of(
+                measurement(1, 1, 1, false), measurement(1, 1, 2, false), measurement(1, 1, 3, false),
+                measurement(1, 1, 4, false), measurement(1, 1, 5, false), measurement(1, 1, 6, false)));
+        await(() -> dispatcher.getStats().overflowed() == 2, "two overflows");
+
+        slow.release();
+        await(() -> slow.events().size() == 6, "the buffered events");
+        assertEquals(List.of("measurement:S1:0.0", "overflow:2",
+                "measurement:S1:3.0", "measurement:S1:4.0", "measurement:S1:5.0", "measurement:S1:6.0"),
+                slow.events());
+    }
+
+    @Test
+    void blockedStreamIsEvictedWithoutHoldingUpOthers() throws InterruptedException {
+        start(bufferSize, Duration.ofMillis(100));
+        RecordingEmitter blocked = subscribe(Set.of(), Set.of(), null, false);
+        RecordingEmitter other = subscribe(Set.of(), Set.of(), null, false);
+        blocked.block();
+
+        dispatcher.publish(List.of(measurement(1, 1, 1, false)));
+        assertTrue(blocked.entered.await(10, TimeUnit.SECONDS));
+        await(() -> dispatcher.getStats().evicted() == 1, "the eviction");
+        assertEquals(1, dispatcher.getStats().subscribers());
+
+        dispatcher.publish(List.of(measurement(1, 1, 2, false)));
+        await(() -> other.events().size() == 2, "the other stream");
+        assertEquals(List.of("measurement:S1:1.0", "measurement:S1:2.0"), other.events());
+
+        blocked.release();
+        await(() -> blocked.failure != null, "the blocked stream to be completed");
+        assertInstanceOf(IOException.class, blocked.failure);
+        assertEquals(List.of("measurement:S1:1.0"), blocked.events());
+    }
+
+    @Test
+    void unknownStationIsLookedUpOffTheDispatcherThread() throws InterruptedException {
+        List<String> lookupThreads = new CopyOnWriteArrayList<>();
+        when(jdbcTemplate.query(eq(LiveMeasurementDispatcher.SELECT_STATION_LOCATION),
+                ArgumentMatchers.<RowMapper<LiveMeasurementDispatcher.StationLocation>>any(), eq(3L)))
+                .thenAnswer(invocation -> {
+                    lookupThreads.add(Thread.currentThread().getName());
+                    return List.of(new LiveMeasurementDispatcher.StationLocation(3, "S3", 30, 70));
+                });
+        start(bufferSize, Duration.ofMinutes(1));
+        RecordingEmitter all = subscribe(Set.of(), Set.of(), null, false);
+
+        dispatcher.publish(List.of(measurement(3, 1, 1, false), measurement(3, 1, 2, false)));
+        await(() -> all.events().size() == 2, "the held measurements");
+        assertEquals(Set.of("measurement:S3:1.0", "measurement:S3:2.0"), Set.copyOf(all.events()));
+
+        dispatcher.publish(List.of(measurement(3, 1, 3, false)));
+        await(() -> all.events().size() == 3, "the cached station");
+        assertEquals(List.of("live-stations"), lookupThreads);
+    }
+
+    /**
+     * Records what is sent instead of writing to a connection, and can block writes like a
+     * client that stopped reading.
+     */
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private static final Pattern EVENT_NAME = Pattern.compile("event:(\\S+)");
+
+        final CountDownLatch entered = new CountDownLatch(1);
+        private final List<String> events = new CopyOnWriteArrayList<>();
+        private volatile CountDownLatch gate;
+        volatile Throwable failure;
+
+        void block() {
+            gate = new CountDownLatch(1);
+        }
+
+        void release() {
+            gate.countDown();
+        }
+
+        List<String> events() {
+            return List.copyOf(events);
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            entered.countDown();
+            CountDownLatch current = gate;
+            if (current != null) {
+                try {
+                    current.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted");
+                }
+            }
+            String name = null;
+            for (ResponseBodyEmitter.DataWithMediaType part : builder.build()) {
+                Object data = part.getData();
+                if (data instanceof String text) {
+                    Matcher matcher = EVENT_NAME.matcher(text);
+                    if (name == null && matcher.find()) {
+                        name = matcher.group(1);
+                    }
+                } else if (data instanceof LiveMeasurementEvent event) {
+                    events.add(name + ":" + event.getStationId() + ":" + event.getValue());
+                } else if (data instanceof Map<?, ?> overflow) {
+                    events.add(name + ":" + overflow.get("dropped"));
+                }
+            }
+        }
+
+        @Override
+        public void completeWithError(Throwable ex) {
+            failure = ex;
+        }
+    }
+}
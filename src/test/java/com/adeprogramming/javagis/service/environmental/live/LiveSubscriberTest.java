@@ -0,0 +1,121 @@
+package com.adeprogramming.javagis.service.environmental.live;
+
+import com.adeprogramming.javagis.payload.environmental.LiveMeasurementEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the drop-oldest buffer, the overflow count reported on drain, that the buffer is
+ * released once drained and when a blocked write counts as evicted.
+ */
+class LiveSubscriberTest {
+
+    private static LiveSubscriber subscriber(int capacity) {
+        return new LiveSubscriber(new SseEmitter(),
+                new LiveSubscription(Set.of(), Set.of(), null, false), capacity);
+    }
+
+    private static LiveMeasurementEvent event(double value) {
+        return LiveMeasurementEvent.builder().stationId("S1").value(value).build();
+    }
+
+    private static List<Double> values(List<LiveMeasurementEvent> events) {
+        return events.stream().map(LiveMeasurementEvent::getValue).toList();
+    }
+
+    @Test
+    void fullBufferDropsTheOldestEvents() {
+        LiveSubscriber subscriber = subscriber(4);
+        for (int i = 0; i < 4; i++) {
+            assertFalse(subscriber.enqueue(event(i)));
+        }
+        assertTrue(subscriber.enqueue(event(4)));
+        assertTrue(subscriber.enqueue(event(5)));
+
+        List<LiveMeasurementEvent> events = new ArrayList<>();
+        LiveSubscriber.Pending pending = subscriber.drainTo(events);
+        assertEquals(List.of(2.0, 3.0, 4.0, 5.0), values(events));
+        assertEquals(2, pending.dropped());
+        assertFalse(pending.heartbeat());
+        assertFalse(subscriber.hasPending());
+    }
+
+    @Test
+    void droppedCountIsResetByTheDrain() {
+        LiveSubscriber subscriber = subscriber(2);
+        for (int i = 0; i < 5; i++) {
+            subscriber.enqueue(event(i));
+        }
+        assertEquals(3, subscriber.drainTo(new ArrayList<>()).dropped());
+
+        subscriber.enqueue(event(5));
+        List<LiveMeasurementEvent> events = new ArrayList<>();
+        assertEquals(0, subscriber.drainTo(events).dropped());
+        assertEquals(List.of(5.0), values(events));
+    }
+
+    @Test
+    void orderIsKeptWhileTheBufferGrows() {
+        LiveSubscriber subscriber = subscriber(100);
+        for (int i = 0; i < 30; i++) {
+            subscriber.enqueue(event(i));
+        }
+        assertEquals(32, subscriber.allocated());
+
+        List<LiveMeasurementEvent> events = new ArrayList<>();
+        subscriber.drainTo(events);
+        assertEquals(30, events.size());
+        for (int i = 0; i < 30; i++) {
+            assertEquals(i, events.get(i).getValue());
+        }
+    }
+
+    @Test
+    void bufferIsReleasedOnceDrained() {
+        LiveSubscriber subscriber = subscriber(256);
+        assertEquals(0, subscriber.allocated());
+
+        subscriber.enqueue(event(1));
+        assertTrue(subscriber.allocated() > 0);
+        assertTrue(subscriber.allocated() < 256, "a single event does not allocate the whole buffer");
+
+        subscriber.drainTo(new ArrayList<>());
+        assertEquals(0, subscriber.allocated());
+    }
+
+    @Test
+    void heartbeatIsPendingWithoutEvents() {
+        LiveSubscriber subscriber = subscriber(4);
+        subscriber.requestHeartbeat();
+        assertTrue(subscriber.hasPending());
+
+        List<LiveMeasurementEvent> events = new ArrayList<>();
+        assertTrue(subscriber.drainTo(events).heartbeat());
+        assertTrue(events.isEmpty());
+        assertFalse(subscriber.hasPending());
+    }
+
+    @Test
+    void onlyWritesStartedBeforeTheDeadlineAreEvicted() {
+        LiveSubscriber subscriber = subscriber(4);
+        assertFalse(subscriber.evictIfBlockedSince(System.nanoTime()), "not writing");
+
+        subscriber.startSend();
+        long started = System.nanoTime();
+        assertFalse(subscriber.evictIfBlockedSince(started - 1_000_000_000L), "started after the deadline");
+        assertFalse(subscriber.finishSend());
+
+        subscriber.startSend();
+        assertTrue(subscriber.evictIfBlockedSince(System.nanoTime()));
+        assertFalse(subscriber.evictIfBlockedSince(System.nanoTime()), "evicted once");
+        assertTrue(subscriber.finishSend());
+    }
+}
@@ -0,0 +1,80 @@
+package com.adeprogramming.javagis.service.environmental.tiles;
+
+import com.adeprogramming.javagis.analytics.interpolation.SamplePoints;
+import com.adeprogramming.javagis.service.environmental.MeasurementSurfaceService;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that tiles outside the tile matrix are rejected before any readings are loaded, and
+ * that a tile without stations nearby is a transparent PNG served from the cache afterwards.
+ */
+class HeatmapTileServiceTest {
+
+    private static final int PARAMETER = 7;
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 6, 1, 12, 30);
+
+    private final MeasurementSurfaceService surfaceService = mock(MeasurementSurfaceService.class);
+    private final HeatmapTileService service = new HeatmapTileService(surfaceService, Duration.ofHours(1),
+            DataSize.ofMegabytes(1), 16, 12, 50_000, 2, "0:000000,100:ffffff");
+
+    @Test
+    void tilesOutsideTheMatrixAreRejected() {
+        int[][] tiles = {{-1, 0, 0}, {23, 0, 0}, {0, 1, 0}, {0, 0, 1}, {0, -1, 0}, {0, 0, -1},
+                {3, 8, 0}, {3, 0, 8}, {22, 1 << 22, 0}, {22, 0, 1 << 22}};
+        for (int[] tile : tiles) {
+            for (TileMatrixSet set : TileMatrixSet.values()) {
+                assertThrows(IllegalArgumentException.class,
+                        () -> service.getTile(PARAMETER, TIME, set, tile[0], tile[1], tile[2], null),
+                        set + " " + tile[0] + "/" + tile[1] + "/" + tile[2]);
+            }
+        }
+        verifyNoInteractions(surfaceService);
+        assertEquals(0, service.getStats().misses());
+    }
+
+    @Test
+    void tilesWithoutStationsAreTransparentAndCached() throws IOException {
+        SamplePoints none = new SamplePoints(new double[0], new double[0], new double[0]);
+        when(surfaceService.latestReadings(eq(PARAMETER), any(), any())).thenReturn(none);
+        when(surfaceService.project(any(), anyInt(), anyInt())).thenReturn(none);
+
+        byte[] tile = service.getTile(PARAMETER, TIME, TileMatrixSet.WEB_MERCATOR_QUAD, 22, (1 << 22) - 1, 0, null);
+        assertSame(tile, service.getTile(PARAMETER, TIME, TileMatrixSet.WEB_MERCATOR_QUAD, 22, (1 << 22) - 1, 0, null));
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(tile));
+        assertEquals(HeatmapTileService.TILE_SIZE, image.getWidth());
+        assertEquals(HeatmapTileService.TILE_SIZE, image.getHeight());
+        for (int pixel : image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth())) {
+            assertEquals(0, pixel >>> 24);
+        }
+        verify(surfaceService, times(1)).latestReadings(eq(PARAMETER),
+                eq(LocalDateTime.of(2024, 6, 1, 13, 0)), eq(Duration.ofHours(1)));
+        assertEquals(1, service.getStats().hits());
+    }
+
+    @Test
+    void malformedRampsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> service.getTile(PARAMETER, TIME,
+                TileMatrixSet.EUROPEAN_ETRS89_LAEA_QUAD, 0, 0, 0, "0:ff0000"));
+    }
+}
@@ -0,0 +1,78 @@
+package com.adeprogramming.javagis.service.environmental.tiles;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the tile bounds of both tile matrix sets against the tiles known to contain Berlin,
+ * and the scale factors search radii are stretched by.
+ */
+class TileMatrixSetTest {
+
+    private static final double EARTH_RADIUS = 6378137.0;
+
+    @Test
+    void setsAreFoundByEpsgCode() {
+        assertSame(TileMatrixSet.WEB_MERCATOR_QUAD, TileMatrixSet.of(3857));
+        assertSame(TileMatrixSet.EUROPEAN_ETRS89_LAEA_QUAD, TileMatrixSet.of(3035));
+        assertThrows(IllegalArgumentException.class, () -> TileMatrixSet.of(4326));
+    }
+
+    @Test
+    void webMercatorTilesMatchTheXyzScheme() {
+        TileMatrixSet set = TileMatrixSet.WEB_MERCATOR_QUAD;
+        assertEquals(-20037508.342789244, set.getMinX(), 1e-6);
+        assertEquals(20037508.342789244, set.getMaxY(), 1e-6);
+        assertEquals(40075016.68557849, set.tileSpan(0), 1e-6);
+        assertEquals(40075016.68557849 / 1024, set.tileSpan(10), 1e-9);
+
+        // Berlin, 13.4 E 52.5 N, lies in tile 10/550/335
+        double x = EARTH_RADIUS * Math.toRadians(13.4);
+        double y = EARTH_RADIUS * Math.log(Math.tan(Math.PI / 4 + Math.toRadians(52.5) / 2));
+        assertTrue(contains(set, 10, 550, 335, x, y));
+        assertTrue(!contains(set, 10, 551, 335, x, y) && !contains(set, 10, 550, 336, x, y));
+    }
+
+    @Test
+    void laeaTilesMatchTheEuropeanQuad() {
+        TileMatrixSet set = TileMatrixSet.EUROPEAN_ETRS89_LAEA_QUAD;
+        assertEquals(2_000_000, set.getMinX());
+        assertEquals(5_500_000, set.getMaxY());
+        assertEquals(4_500_000, set.tileSpan(0));
+        assertEquals(562_500, set.tileSpan(3));
+
+        // Berlin in EPSG:3035
+        double x = 4551801.973;
+        double y = 3271028.983;
+        assertTrue(contains(set, 3, 4, 3, x, y));
+        assertTrue(contains(set, 4, 9, 7, x, y));
+        assertTrue(!contains(set, 4, 9, 8, x, y) && !contains(set, 4, 8, 7, x, y));
+    }
+
+    @Test
+    void webMercatorStretchesDistancesAwayFromTheEquator() {
+        TileMatrixSet set = TileMatrixSet.WEB_MERCATOR_QUAD;
+        assertEquals(1, set.scaleFactor(0), 1e-12);
+        double sixtyNorth = EARTH_RADIUS * Math.log(Math.tan(Math.PI / 4 + Math.toRadians(60) / 2));
+        assertEquals(2, set.scaleFactor(sixtyNorth), 1e-9);
+        assertEquals(2, set.scaleFactor(-sixtyNorth), 1e-9);
+    }
+
+    @Test
+    void laeaDoesNotScaleDistances() {
+        TileMatrixSet set = TileMatrixSet.EUROPEAN_ETRS89_LAEA_QUAD;
+        assertEquals(1, set.scaleFactor(1_000_000));
+        assertEquals(1, set.scaleFactor(5_500_000));
+    }
+
+    private static boolean contains(TileMatrixSet set, int z, int column, int row, double x, double y) {
+        double span = set.tileSpan(z);
+        double minX = set.getMinX() + column * span;
+        double maxY = set.getMaxY() - row * span;
+        return x >= minX && x < minX + span && y <= maxY && y > maxY - span;
+    }
+}
@@ -0,0 +1,150 @@
+package com.adeprogramming.javagis.service.satellite;
+
+import com.adeprogramming.javagis.raster.CogWriter;
+import com.adeprogramming.javagis.raster.GeoReference;
+import com.adeprogramming.javagis.raster.GeoTiffReader;
+import com.adeprogramming.javagis.raster.SampleType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the difference raster, whose tiles are computed by several workers and finish in
+ * any order, is written with every tile in its place, on the tile grid of the earlier scene.
+ */
+class ChangeDetectionServiceTest {
+
+    private static final int TILE = 16;
+    private static final double[] TRANSFORM = {600000, 10, 0, 5300000, 0, -10};
+    private static final GeoReference GEO_REFERENCE = new GeoReference(new double[]{10, 10, 0},
+            new double[]{0, 0, 0, 600000, 5300000, 0}, null,
+            new int[]{1, 1, 0, 2, 1024, 0, 1, 1, 3072, 0, 1, 32632}, null, null);
+    // Red, green and near-infrared samples, with 0 as no data
+    private static final NdviBands BANDS = new NdviBands(SampleType.UINT16, 0, 4, 0.0);
+
+    @TempDir
+    Path directory;
+
+    private final Random random = new Random(29);
+
+    @Test
+    void tilesAreWrittenInPlace() throws IOException {
+        for (int parallelism : new int[]{1, 3, 8}) {
+            int width = 150 + random.nextInt(20);
+            int height = 90 + random.nextInt(20);
+            short[] before = scene(width, height);
+            short[] after = scene(width, height);
+            Path target = directory.resolve("change-" + parallelism + ".tif");
+
+            ChangeDetectionService service = service(parallelism);
+            try {
+                RasterGrid grid = RasterGrid.of(32632, TRANSFORM, width, height, 3, SampleType.UINT16);
+                service.writeDifference(write("before.tif", width, height, before), grid, BANDS,
+                        write("after.tif", width, height, after), grid, BANDS, target);
+            } finally {
+                service.shutdown();
+            }
+
+            try (GeoTiffReader reader = new GeoTiffReader(target)) {
+                assertEquals(width, reader.getWidth());
+                assertEquals(height, reader.getHeight());
+                assertEquals(TILE, reader.getBlockWidth());
+                assertEquals(SampleType.FLOAT32, reader.getSampleType());
+                assertTrue(Double.isNaN(reader.getNoData()));
+                assertEquals(32632, reader.getGeoReference().epsg());
+
+                ByteBuffer change = ByteBuffer.allocate(width * height * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                reader.readWindow(0, 0, width, height, change);
+                for (int pixel = 0; pixel < width * height; pixel++) {
+                    float expected = (float) (ndvi(after, pixel) - ndvi(before, pixel));
+                    float actual = change.getFloat(pixel * Float.BYTES);
+                    if (Float.compare(expected, actual) != 0) {
+                        assertEquals(expected, actual, "pixel " + pixel % width + "," + pixel / width
+                                + " with " + parallelism + " workers");
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void singleTileSceneNeedsOneWorker() throws IOException {
+        short[] before = scene(10, 7);
+        short[] after = scene(10, 7);
+        Path target = directory.resolve("small.tif");
+        ChangeDetectionService service = service(4);
+        try {
+            RasterGrid grid = RasterGrid.of(32632, TRANSFORM, 10, 7, 3, SampleType.UINT16);
+            assertEquals(0, service.writeDifference(write("before.tif", 10, 7, before), grid, BANDS,
+                    write("after.tif", 10, 7, after), grid, BANDS, target));
+        } finally {
+            service.shutdown();
+        }
+        try (GeoTiffReader reader = new GeoTiffReader(target)) {
+            ByteBuffer change = ByteBuffer.allocate(70 * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            reader.readWindow(0, 0, 10, 7, change);
+            assertEquals((float) (ndvi(after, 69) - ndvi(before, 69)), change.getFloat(69 * Float.BYTES));
+        }
+    }
+
+    @Test
+    void workerFailureEndsTheWrite() throws IOException {
+        // The later scene is smaller than the grid says, so reading its last tiles fails
+        Path before = write("before.tif", 100, 100, scene(100, 100));
+        Path after = write("after.tif", 100, 60, scene(100, 60));
+        ChangeDetectionService service = service(4);
+        try {
+            RasterGrid grid = RasterGrid.of(32632, TRANSFORM, 100, 100, 3, SampleType.UINT16);
+            assertThrows(IllegalArgumentException.class, () -> service.writeDifference(before, grid, BANDS,
+                    after, grid, BANDS, directory.resolve("failed.tif")));
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    private ChangeDetectionService service(int parallelism) {
+        return new ChangeDetectionService(null, null, null, null, null, null, null, directory, true, 0.15,
+                parallelism);
+    }
+
+    /**
+     * Red, green and near-infrared samples that differ from pixel to pixel, some of them no data.
+     */
+    private short[] scene(int width, int height) {
+        short[] samples = new short[width * height * 3];
+        for (int pixel = 0; pixel < width * height; pixel++) {
+            boolean empty = random.nextInt(25) == 0;
+            samples[pixel * 3] = (short) (empty ? 0 : 200 + random.nextInt(3000));
+            samples[pixel * 3 + 1] = (short) random.nextInt(3000);
+            samples[pixel * 3 + 2] = (short) (1000 + random.nextInt(5000));
+        }
+        return samples;
+    }
+
+    private static double ndvi(short[] samples, int pixel) {
+        int red = samples[pixel * 3] & 0xFFFF;
+        int nir = samples[pixel * 3 + 2] & 0xFFFF;
+        return red == 0 || nir == 0 ? Double.NaN : (nir - red) / (double) (nir + red);
+    }
+
+    private Path write(String name, int width, int height, short[] samples) throws IOException {
+        Path file = directory.resolve(name);
+        ByteBuffer rows = ByteBuffer.allocate(samples.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        rows.asShortBuffer().put(samples);
+        try (CogWriter writer = new CogWriter(file, width, height, 3, SampleType.UINT16, 0.0, GEO_REFERENCE, null,
+                TILE, true)) {
+            writer.writeRows(rows, height);
+            writer.finish();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,103 @@
+package com.adeprogramming.javagis.service.satellite;
+
+import com.adeprogramming.javagis.model.satellite.SatelliteScene;
+import com.adeprogramming.javagis.repository.satellite.SatelliteSceneRepository;
+import com.adeprogramming.javagis.service.spatial.CoordinateTransformService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the clean-up at startup after conversions cut short by a restart: scenes left
+ * processing are marked failed, and the uploads and partial COGs written before the restart
+ * are deleted while newer files are kept.
+ */
+class SatelliteSceneServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private final SatelliteSceneRepository satelliteSceneRepository = mock(SatelliteSceneRepository.class);
+
+    private Path uploads;
+    private Path cogs;
+    private SatelliteSceneService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        uploads = Files.createDirectories(directory.resolve("uploads"));
+        cogs = Files.createDirectories(directory.resolve("cog"));
+        service = new SatelliteSceneService(satelliteSceneRepository, mock(CoordinateTransformService.class),
+                new ObjectMapper(), mock(ApplicationEventPublisher.class), uploads, cogs, 256, true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void interruptedScenesAreMarkedFailed() {
+        SatelliteScene scene = new SatelliteScene();
+        scene.setSceneId("S2A_20240501");
+        scene.setStatus(SatelliteScene.SceneStatus.PROCESSING);
+        when(satelliteSceneRepository.findByStatus(eq(SatelliteScene.SceneStatus.PROCESSING), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(scene)));
+
+        service.recoverInterrupted();
+
+        assertEquals(SatelliteScene.SceneStatus.FAILED, scene.getStatus());
+        assertNotNull(scene.getError());
+        verify(satelliteSceneRepository).save(scene);
+    }
+
+    @Test
+    void leftoversFromBeforeTheRestartAreDeleted() throws IOException {
+        when(satelliteSceneRepository.findByStatus(eq(SatelliteScene.SceneStatus.PROCESSING), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of()));
+        Path oldUpload = file(uploads, ".upload-1.tif", true);
+        Path newUpload = file(uploads, ".upload-2.tif", false);
+        Path scene = file(uploads, "scene.tif", true);
+        Path oldPartial = file(cogs, "S2A_20240501.tif.partial", true);
+        Path newPartial = file(cogs, "S2A_20240502.tif.partial", false);
+        Path cog = file(cogs, "S2A_20240430.tif", true);
+
+        service.recoverInterrupted();
+
+        assertFalse(Files.exists(oldUpload));
+        assertTrue(Files.exists(newUpload), "written since startup");
+        assertTrue(Files.exists(scene), "not an upload");
+        assertFalse(Files.exists(oldPartial));
+        assertTrue(Files.exists(newPartial), "written since startup");
+        assertTrue(Files.exists(cog), "a finished COG");
+    }
+
+    private static Path file(Path directory, String name, boolean beforeStartup) throws IOException {
+        Path file = Files.write(directory.resolve(name), new byte[]{1});
+        Instant modified = beforeStartup ? Instant.now().minusSeconds(3600) : Instant.now().plusSeconds(3600);
+        Files.setLastModifiedTime(file, FileTime.from(modified));
+        return file;
+    }
+}
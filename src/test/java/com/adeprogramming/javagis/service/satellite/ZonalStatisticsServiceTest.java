@@ -0,0 +1,184 @@
+package com.adeprogramming.javagis.service.satellite;
+
+import com.adeprogramming.javagis.analytics.zonal.ZonalStatistics;
+import com.adeprogramming.javagis.config.CrsRegistry;
+import com.adeprogramming.javagis.model.agricultural.AgriculturalField;
+import com.adeprogramming.javagis.raster.CogWriter;
+import com.adeprogramming.javagis.raster.GeoReference;
+import com.adeprogramming.javagis.raster.SampleType;
+import com.adeprogramming.javagis.service.spatial.CoordinateTransformService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Measures fields over a small generated cloud-optimised GeoTIFF with red and near-infrared
+ * bands: the NDVI statistics of fields whose pixels are known, no-data pixels left out of the
+ * valid count, the tiles read, and fields outside the raster or in an unknown CRS.
+ */
+class ZonalStatisticsServiceTest {
+
+    private static final int SIZE = 40;
+    private static final int TILE = 16;
+    private static final double PIXEL = 10;
+    private static final double WEST = 600000;
+    private static final double NORTH = 5300000;
+    private static final int UTM_32N = 32632;
+    private static final double[] TRANSFORM = {WEST, PIXEL, 0, NORTH, 0, -PIXEL};
+    private static final GeoReference GEO_REFERENCE = new GeoReference(new double[]{PIXEL, PIXEL, 0},
+            new double[]{0, 0, 0, WEST, NORTH, 0}, null,
+            new int[]{1, 1, 0, 2, 1024, 0, 1, 1, 3072, 0, 1, UTM_32N}, null, null);
+    // Red and near-infrared samples, with 0 as no data
+    private static final NdviBands BANDS = new NdviBands(SampleType.UINT16, 0, 2, 0.0);
+    private static final RasterGrid GRID = RasterGrid.of(UTM_32N, TRANSFORM, SIZE, SIZE, 2, SampleType.UINT16);
+
+    @TempDir
+    Path directory;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+    private final CoordinateTransformService coordinateTransformService =
+            new CoordinateTransformService(CrsRegistry.load(CrsRegistry.DEFAULT_RESOURCE), 1, 16384);
+
+    @AfterEach
+    void tearDown() {
+        coordinateTransformService.shutdown();
+    }
+
+    @Test
+    void fieldsAreMeasured() throws IOException {
+        Path raster = writeScene();
+        List<AgriculturalField> fields = List.of(
+                // Within the first tile, with the pixels set in writeScene
+                field("A", rectangle(2, 3, 4, 2), UTM_32N),
+                // Across the corner of four tiles
+                field("B", rectangle(14, 14, 4, 4), UTM_32N),
+                // About 25 km west of the raster
+                field("C", geometryFactory.toGeometry(new Envelope(10.0, 10.01, 47.8, 47.81)),
+                        CoordinateTransformService.WGS84),
+                field("D", rectangle(0, 0, 2, 2), 999_999),
+                // In WGS 84, across two tiles
+                field("E", coordinateTransformService.transform(rectangle(30, 20, 4, 2), UTM_32N,
+                        CoordinateTransformService.WGS84), CoordinateTransformService.WGS84));
+
+        for (int parallelism : new int[]{1, 3}) {
+            ZonalStatisticsService service = new ZonalStatisticsService(null, null, null, null,
+                    coordinateTransformService, null, parallelism);
+            ZonalStatisticsService.ZonalResult result;
+            try {
+                result = service.measure(raster, GRID, fields, BANDS::ndvi, () -> new ZonalStatistics(
+                        ZonalStatisticsService.HISTOGRAM_MIN, ZonalStatisticsService.HISTOGRAM_MAX,
+                        ZonalStatisticsService.HISTOGRAM_BINS));
+            } finally {
+                service.shutdown();
+            }
+            String workers = parallelism + " workers";
+
+            ZonalStatisticsService.Zone a = result.zones()[0];
+            assertNotNull(a, workers);
+            assertEquals(8, a.pixelCount(), workers);
+            assertEquals(6, a.statistics().getCount(), workers);
+            assertEquals((0.55 + 0.55 + 0.05 + 0.65 + 0.85 - 0.45) / 6, a.statistics().getMean(), 1e-12, workers);
+            assertEquals(-0.45, a.statistics().getMin(), 1e-12, workers);
+            assertEquals(0.85, a.statistics().getMax(), 1e-12, workers);
+            long[] histogram = new long[ZonalStatisticsService.HISTOGRAM_BINS];
+            histogram[5] = 1;
+            histogram[10] = 1;
+            histogram[15] = 2;
+            histogram[16] = 1;
+            histogram[18] = 1;
+            assertArrayEquals(histogram, a.statistics().getHistogram(), workers);
+
+            assertBackground(result.zones()[1], 16, workers);
+            assertNull(result.zones()[2], workers);
+            assertNull(result.zones()[3], workers);
+            assertBackground(result.zones()[4], 8, workers);
+
+            assertEquals(1, result.failed(), workers);
+            assertEquals(1 + 4 + 2, result.tilesRead(), workers);
+        }
+    }
+
+    private static void assertBackground(ZonalStatisticsService.Zone zone, int pixels, String message) {
+        assertNotNull(zone, message);
+        assertEquals(pixels, zone.pixelCount(), message);
+        assertEquals(pixels, zone.statistics().getCount(), message);
+        assertEquals(1.0 / 3, zone.statistics().getMean(), 1e-12, message);
+        assertEquals(1.0 / 3, zone.statistics().getMin(), 1e-12, message);
+        assertEquals(1.0 / 3, zone.statistics().getMax(), 1e-12, message);
+        assertEquals(pixels, zone.statistics().getHistogram()[13], message);
+    }
+
+    /**
+     * Write a scene whose pixels have an NDVI of 1/3, except for the first rows of field A:
+     * <pre>
+     * row 3: 0.55     0.55  0.05   0.65
+     * row 4: no red   0.85  -0.45  no near-infrared
+     * </pre>
+     */
+    private Path writeScene() throws IOException {
+        short[] samples = new short[SIZE * SIZE * 2];
+        for (int pixel = 0; pixel < SIZE * SIZE; pixel++) {
+            set(samples, pixel % SIZE, pixel / SIZE, 1000, 2000);
+        }
+        set(samples, 2, 3, 900, 3100);
+        set(samples, 3, 3, 900, 3100);
+        set(samples, 4, 3, 950, 1050);
+        set(samples, 5, 3, 700, 3300);
+        set(samples, 2, 4, 0, 3000);
+        set(samples, 3, 4, 300, 3700);
+        set(samples, 4, 4, 2900, 1100);
+        set(samples, 5, 4, 1500, 0);
+
+        Path file = directory.resolve("scene.tif");
+        ByteBuffer rows = ByteBuffer.allocate(samples.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        rows.asShortBuffer().put(samples);
+        try (CogWriter writer = new CogWriter(file, SIZE, SIZE, 2, SampleType.UINT16, 0.0, GEO_REFERENCE, null,
+                TILE, true)) {
+            writer.writeRows(rows, SIZE);
+            writer.finish();
+        }
+        return file;
+    }
+
+    private static void set(short[] samples, int column, int row, int red, int nir) {
+        int pixel = row * SIZE + column;
+        samples[pixel * 2] = (short) red;
+        samples[pixel * 2 + 1] = (short) nir;
+    }
+
+    /**
+     * @return the outline of a block of whole pixels, in the CRS of the raster
+     */
+    private Geometry rectangle(int column, int row, int columns, int rows) {
+        double west = WEST + column * PIXEL;
+        double east = west + columns * PIXEL;
+        double north = NORTH - row * PIXEL;
+        double south = north - rows * PIXEL;
+        return geometryFactory.createPolygon(new Coordinate[]{new Coordinate(west, south),
+                new Coordinate(east, south), new Coordinate(east, north), new Coordinate(west, north),
+                new Coordinate(west, south)});
+    }
+
+    private static AgriculturalField field(String fieldId, Geometry geometry, int srid) {
+        AgriculturalField field = new AgriculturalField();
+        field.setFieldId(fieldId);
+        field.setGeometry(geometry);
+        field.setSrid(srid);
+        return field;
+    }
+}
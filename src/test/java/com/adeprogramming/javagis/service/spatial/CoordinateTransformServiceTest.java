@@ -0,0 +1,134 @@
+package com.adeprogramming.javagis.service.spatial;
+
+import com.adeprogramming.javagis.config.CrsRegistry;
+import org.geotools.api.referencing.operation.MathTransform;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the accepted CRS notations, the reuse of decoded CRSs and transforms, that the chunked
+ * parallel transform gives the serial result, and envelopes and geometries transformed between
+ * WGS 84 and ETRS89 / LAEA Europe against coordinates computed with the formulas of the
+ * projection.
+ */
+class CoordinateTransformServiceTest {
+
+    private static final CrsRegistry REGISTRY = CrsRegistry.load(CrsRegistry.DEFAULT_RESOURCE);
+    private static final int LAEA_EUROPE = 3035;
+
+    private final CoordinateTransformService service = new CoordinateTransformService(REGISTRY, 4, 100);
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void epsgCodesAreParsedFromEverySupportedForm() {
+        assertEquals(3035, CoordinateTransformService.parseEpsg("EPSG:3035"));
+        assertEquals(3035, CoordinateTransformService.parseEpsg("epsg:3035"));
+        assertEquals(3035, CoordinateTransformService.parseEpsg(" 3035 "));
+        assertEquals(3035, CoordinateTransformService.parseEpsg("urn:ogc:def:crs:EPSG::3035"));
+        assertEquals(3035, CoordinateTransformService.parseEpsg("urn:ogc:def:crs:EPSG:9.8.15:3035"));
+        assertEquals(3035, CoordinateTransformService.parseEpsg("http://www.opengis.net/def/crs/EPSG/0/3035"));
+        assertEquals(4326, CoordinateTransformService.parseEpsg("urn:ogc:def:crs:OGC:1.3:CRS84"));
+        assertEquals(4326, CoordinateTransformService.parseEpsg("http://www.opengis.net/def/crs/OGC/1.3/CRS84"));
+    }
+
+    @Test
+    void otherCrsNotationsAreRejected() {
+        for (String code : new String[]{"ESRI:102100", "http://www.opengis.net/def/crs/OGC/1.3/CRS83",
+                "EPSG:", "EPSG:LAEA", "", "3035.5"}) {
+            assertThrows(IllegalArgumentException.class, () -> CoordinateTransformService.parseEpsg(code), code);
+        }
+    }
+
+    @Test
+    void crsAndTransformsAreReused() {
+        assertSame(REGISTRY.get(CoordinateTransformService.WGS84), service.getCrs(CoordinateTransformService.WGS84));
+        assertSame(service.getCrs(32632), service.getCrs(32632), "decoded once");
+
+        MathTransform forward = service.getTransform(CoordinateTransformService.WGS84, LAEA_EUROPE);
+        assertSame(forward, service.getTransform(CoordinateTransformService.WGS84, LAEA_EUROPE));
+        assertNotSame(forward, service.getTransform(LAEA_EUROPE, CoordinateTransformService.WGS84));
+        assertSame(service.getTransform(CoordinateTransformService.WGS84, 32632),
+                service.getTransform(CoordinateTransformService.WGS84, 32632));
+
+        assertNull(service.findTransform(REGISTRY.get(LAEA_EUROPE), LAEA_EUROPE));
+        assertSame(forward, service.findTransform(REGISTRY.get(CoordinateTransformService.WGS84), LAEA_EUROPE));
+        assertThrows(IllegalArgumentException.class, () -> service.getCrs(999_999));
+    }
+
+    @Test
+    void chunkedTransformEqualsSerialTransform() throws Exception {
+        MathTransform transform = service.getTransform(CoordinateTransformService.WGS84, LAEA_EUROPE);
+        Random random = new Random(42);
+        // Not a multiple of the chunk size, so the halves and the last chunk differ in size
+        for (int count : new int[]{1, 100, 101, 1_037, 25_013}) {
+            double[] coordinates = new double[count * 2];
+            for (int i = 0; i < count; i++) {
+                coordinates[2 * i] = -10 + random.nextDouble() * 40;
+                coordinates[2 * i + 1] = 35 + random.nextDouble() * 35;
+            }
+            double[] serial = coordinates.clone();
+            transform.transform(serial, 0, serial, 0, count);
+
+            service.transform(CoordinateTransformService.WGS84, LAEA_EUROPE, coordinates, count);
+            assertArrayEquals(serial, coordinates, "count " + count);
+        }
+    }
+
+    @Test
+    void onlyTheGivenCountIsTransformed() {
+        double[] coordinates = {10, 52, 10, 52};
+        service.transform(CoordinateTransformService.WGS84, LAEA_EUROPE, coordinates, 1);
+        assertArrayEquals(new double[]{4321000, 3210000, 10, 52}, coordinates, 1e-3);
+    }
+
+    @Test
+    void envelopeEdgesAreSampled() {
+        Envelope transformed = service.transform(new Envelope(5, 15, 47, 55),
+                CoordinateTransformService.WGS84, LAEA_EUROPE);
+
+        assertEquals(3940723.785, transformed.getMinX(), 0.05);
+        assertEquals(4701276.215, transformed.getMaxX(), 0.05);
+        assertEquals(3554926.833, transformed.getMaxY(), 0.05);
+        // The 47th parallel bows south between the corners, which lie at 2666879.859
+        assertEquals(2654053.480, transformed.getMinY(), 0.05);
+
+        Envelope same = service.transform(new Envelope(5, 15, 47, 55), LAEA_EUROPE, LAEA_EUROPE);
+        assertEquals(new Envelope(5, 15, 47, 55), same);
+    }
+
+    @Test
+    void geometryRoundTripsBetweenWgs84AndLaea() throws ParseException {
+        Geometry field = new WKTReader().read("POLYGON ((13.4 52.5, 13.41 52.5, 13.41 52.51, 13.4 52.51, 13.4 52.5), " +
+                "(13.402 52.502, 13.402 52.504, 13.404 52.504, 13.404 52.502, 13.402 52.502))");
+
+        Geometry projected = service.transform(field, CoordinateTransformService.WGS84, LAEA_EUROPE);
+        assertEquals(LAEA_EUROPE, projected.getSRID());
+        Coordinate corner = projected.getCoordinates()[0];
+        assertEquals(4551801.973, corner.x, 0.05);
+        assertEquals(3271028.983, corner.y, 0.05);
+        assertTrue(field.equalsExact(new WKTReader().read(field.toText())), "the source is not modified");
+
+        Geometry back = service.transform(projected, LAEA_EUROPE, CoordinateTransformService.WGS84);
+        assertEquals(CoordinateTransformService.WGS84, back.getSRID());
+        assertTrue(field.equalsExact(back, 1e-8), back.toText());
+    }
+}
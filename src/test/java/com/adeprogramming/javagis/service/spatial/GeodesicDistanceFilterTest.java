@@ -0,0 +1,94 @@
+package com.adeprogramming.javagis.service.spatial;
+
+import org.geotools.referencing.GeodeticCalculator;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.PrecisionModel;
+
+import java.awt.geom.Point2D;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the in-memory distance refinement against geodesic distances on the WGS 84 ellipsoid.
+ * Targets are placed at a known geodesic distance from the query by solving the direct problem,
+ * so the filter must accept them just beyond that distance and reject them just short of it.
+ */
+class GeodesicDistanceFilterTest {
+
+    private static final double TOLERANCE = 1e-6;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+    private final GeodeticCalculator calculator = new GeodeticCalculator();
+    private final Random random = new Random(42);
+
+    @Test
+    void pointsMatchGeodesicDistance() {
+        for (int i = 0; i < 2_000; i++) {
+            Point origin = point(random.nextDouble() * 340 - 170, random.nextDouble() * 140 - 70);
+            double azimuth = random.nextDouble() * 360 - 180;
+            double distance = 10 + random.nextDouble() * 200_000;
+            Point target = destination(origin, azimuth, distance);
+
+            GeodesicDistanceFilter beyond = new GeodesicDistanceFilter(origin, distance * (1 + TOLERANCE));
+            assertTrue(beyond.getSearchEnvelope().covers(target.getCoordinate()), "search envelope misses " + target);
+            assertTrue(beyond.test(target), () -> "rejected " + target + " at " + distance + " m from " + origin);
+            assertFalse(new GeodesicDistanceFilter(origin, distance * (1 - TOLERANCE)).test(target),
+                    () -> "accepted " + target + " at " + distance + " m from " + origin);
+        }
+    }
+
+    @Test
+    void polygonsMatchGeodesicDistanceToTheirClosestVertex() {
+        for (int i = 0; i < 500; i++) {
+            Point origin = point(random.nextDouble() * 340 - 170, random.nextDouble() * 140 - 70);
+            double azimuth = random.nextDouble() * 300 - 150;
+            double distance = 100 + random.nextDouble() * 50_000;
+
+            // A narrow triangle pointing at the origin, so its apex is the closest point
+            Point apex = destination(origin, azimuth, distance);
+            Point left = destination(origin, azimuth - 1, distance * 1.5);
+            Point right = destination(origin, azimuth + 1, distance * 1.5);
+            Geometry triangle = geometryFactory.createPolygon(new Coordinate[]{
+                    apex.getCoordinate(), left.getCoordinate(), right.getCoordinate(), apex.getCoordinate()});
+
+            assertTrue(new GeodesicDistanceFilter(origin, distance * (1 + TOLERANCE)).test(triangle),
+                    () -> "rejected " + triangle + " at " + distance + " m from " + origin);
+            assertFalse(new GeodesicDistanceFilter(origin, distance * (1 - TOLERANCE)).test(triangle),
+                    () -> "accepted " + triangle + " at " + distance + " m from " + origin);
+        }
+    }
+
+    @Test
+    void distanceIsInMetresNotDegrees() {
+        Point origin = point(10, 50);
+        GeodesicDistanceFilter filter = new GeodesicDistanceFilter(origin, 1_000);
+
+        assertTrue(filter.test(point(10.01, 50)));
+        assertFalse(filter.test(point(10.02, 50)));
+        assertFalse(filter.test(point(10, 50.01)));
+    }
+
+    @Test
+    void containedQueryIsAtZeroDistance() {
+        Geometry field = point(10, 50).buffer(0.01);
+
+        assertTrue(new GeodesicDistanceFilter(point(10.001, 50.001), 0).test(field));
+    }
+
+    private Point destination(Point origin, double azimuth, double distance) {
+        calculator.setStartingGeographicPoint(origin.getX(), origin.getY());
+        calculator.setDirection(azimuth, distance);
+        Point2D destination = calculator.getDestinationGeographicPoint();
+        return point(destination.getX(), destination.getY());
+    }
+
+    private Point point(double longitude, double latitude) {
+        return geometryFactory.createPoint(new Coordinate(longitude, latitude));
+    }
+}
@@ -0,0 +1,116 @@
+package com.adeprogramming.javagis.service.spatial;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmark of the nearest-station endpoint, comparing the in-memory best-first R-tree search
+ * with the PostGIS {@code <->} search over the same random query points. Both paths are warmed
+ * up first; then each point is sent to both, latency percentiles are printed per path, and the
+ * queries where the two disagree on the stations found are counted.
+ * <p>
+ * Usage: {@code NearestNeighbourBenchmark [baseUrl] [token] [queries] [k] [stationType] [minLon,minLat,maxLon,maxLat]}.
+ * The token is a JWT from {@code /api/auth/signin}; the default area covers Europe.
+ */
+public class NearestNeighbourBenchmark {
+
+    private static final int WARM_UP_QUERIES = 200;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080/api";
+        String token = args.length > 1 ? args[1] : null;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+        int k = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        String stationType = args.length > 4 && !args[4].isEmpty() ? args[4] : null;
+        double[] area = args.length > 5
+                ? Arrays.stream(args[5].split(",")).mapToDouble(Double::parseDouble).toArray()
+                : new double[]{-10, 35, 30, 60};
+
+        HttpClient client = HttpClient.newHttpClient();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < WARM_UP_QUERIES; i++) {
+            double lon = random.nextDouble(area[0], area[2]);
+            double lat = random.nextDouble(area[1], area[3]);
+            query(client, baseUrl, token, lon, lat, k, stationType, true);
+            query(client, baseUrl, token, lon, lat, k, stationType, false);
+        }
+
+        long[] index = new long[queries];
+        long[] database = new long[queries];
+        int disagreements = 0;
+        for (int i = 0; i < queries; i++) {
+            double lon = random.nextDouble(area[0], area[2]);
+            double lat = random.nextDouble(area[1], area[3]);
+
+            long start = System.nanoTime();
+            Result fromIndex = query(client, baseUrl, token, lon, lat, k, stationType, true);
+            index[i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Result fromDatabase = query(client, baseUrl, token, lon, lat, k, stationType, false);
+            database[i] = System.nanoTime() - start;
+
+            if (!fromIndex.ids().equals(fromDatabase.ids())) {
+                disagreements++;
+            }
+            if (i == 0) {
+                System.out.printf("Sources: %s and %s%n", fromIndex.source(), fromDatabase.source());
+            }
+        }
+
+        print("spatial index", index);
+        print("database", database);
+        System.out.printf("%d of %d queries found different stations%n", disagreements, queries);
+    }
+
+    private static Result query(HttpClient client, String baseUrl, String token, double lon, double lat,
+                                int k, String stationType, boolean useIndex) throws Exception {
+        String uri = String.format(Locale.ROOT, "%s/api/environmental/stations/nearest?lon=%.6f&lat=%.6f&k=%d&useIndex=%b",
+                baseUrl, lon, lat, k, useIndex);
+        if (stationType != null) {
+            uri += "&stationType=" + stationType;
+        }
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(uri)).GET();
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("HTTP " + response.statusCode() + ": " + response.body());
+        }
+
+        JsonNode body = MAPPER.readTree(response.body());
+        List<Long> ids = new ArrayList<>();
+        for (JsonNode neighbour : body.path("neighbours")) {
+            ids.add(neighbour.path("id").asLong());
+        }
+        return new Result(body.path("source").asText(), ids);
+    }
+
+    private static void print(String path, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        System.out.printf(Locale.ROOT, "%-14s mean %7.2f ms  p50 %7.2f ms  p95 %7.2f ms  p99 %7.2f ms%n", path,
+                Arrays.stream(sorted).average().orElse(0) / 1e6,
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.95) / 1e6, percentile(sorted, 0.99) / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        return sorted[Math.min((int) (quantile * sorted.length), sorted.length - 1)];
+    }
+
+    private record Result(String source, List<Long> ids) {
+    }
+}
@@ -0,0 +1,211 @@
+package com.adeprogramming.javagis.service.spatial;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Writes packed trees, reopens them and compares envelope and best-first nearest queries with a
+ * brute-force scan of the items written.
+ */
+class PackedRTreeTest {
+
+    @TempDir
+    Path directory;
+
+    private final Random random = new Random(13);
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+
+    @Test
+    void reopenedTreeHoldsEveryItem() throws IOException {
+        long[] ids = new long[1000];
+        Envelope[] envelopes = new Envelope[ids.length];
+        Point[] points = new Point[ids.length];
+        Path file = directory.resolve("stations-1.jsix");
+        try (PackedRTree.Writer writer = PackedRTree.writer(file)) {
+            WKBWriter wkbWriter = new WKBWriter(2);
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = 3L * i + 7;
+                points[i] = point(random.nextDouble() * 1000, random.nextDouble() * 1000);
+                envelopes[i] = points[i].getEnvelopeInternal();
+                writer.add(ids[i], envelopes[i], wkbWriter.write(points[i]), 1_000 + i);
+            }
+            writer.finish().close();
+        }
+        assertFalse(Files.exists(directory.resolve("stations-1.jsix.tmp")));
+
+        try (PackedRTree tree = PackedRTree.open(file)) {
+            assertEquals(ids.length, tree.size());
+            assertEquals(1_000 + ids.length - 1, tree.getWatermark());
+            WKBReader reader = new WKBReader();
+            for (int i = 0; i < ids.length; i++) {
+                int item = tree.find(ids[i]);
+                assertTrue(item >= 0, "id " + ids[i]);
+                assertEquals(ids[i], tree.id(item));
+                assertEquals(envelopes[i], tree.envelope(item));
+                Point point = (Point) tree.geometry(item, reader);
+                assertEquals(points[i].getX(), point.getX());
+                assertEquals(points[i].getY(), point.getY());
+                assertEquals(ids[i], tree.sortedId(i));
+            }
+            assertEquals(-1, tree.find(8));
+            assertEquals(-1, tree.find(Long.MAX_VALUE));
+        }
+    }
+
+    @Test
+    void queryMatchesBruteForce() throws IOException {
+        for (int n : new int[]{1, 15, 16, 17, 257, 5000}) {
+            Envelope[] envelopes = randomBoxes(n);
+            try (PackedRTree tree = write("boxes-" + n + ".jsix", envelopes)) {
+                for (int q = 0; q < 200; q++) {
+                    double x = random.nextDouble() * 1100 - 50;
+                    double y = random.nextDouble() * 1100 - 50;
+                    Envelope search = new Envelope(x, x + random.nextDouble() * 200, y, y + random.nextDouble() * 200);
+
+                    List<Long> found = new ArrayList<>();
+                    tree.query(search, item -> found.add(tree.id(item)));
+                    List<Long> expected = new ArrayList<>();
+                    for (int i = 0; i < n; i++) {
+                        if (envelopes[i].intersects(search)) {
+                            expected.add((long) i);
+                        }
+                    }
+                    found.sort(null);
+                    assertEquals(expected, found, n + " items, search " + search);
+                }
+            }
+        }
+    }
+
+    @Test
+    void nearestReturnsItemsInDistanceOrder() throws IOException {
+        Envelope[] envelopes = randomBoxes(3000);
+        try (PackedRTree tree = write("nearest.jsix", envelopes)) {
+            for (int q = 0; q < 50; q++) {
+                double x = random.nextDouble() * 1000;
+                double y = random.nextDouble() * 1000;
+                double radius = q % 2 == 0 ? Double.POSITIVE_INFINITY : 100;
+                PackedRTree.NearestCursor cursor = tree.nearest((minX, minY, maxX, maxY) -> {
+                    double distance = boxDistance(x, y, minX, minY, maxX, maxY);
+                    return distance <= radius ? distance : Double.POSITIVE_INFINITY;
+                });
+
+                List<Double> expected = new ArrayList<>();
+                for (Envelope envelope : envelopes) {
+                    double distance = boxDistance(x, y, envelope.getMinX(), envelope.getMinY(),
+                            envelope.getMaxX(), envelope.getMaxY());
+                    if (distance <= radius) {
+                        expected.add(distance);
+                    }
+                }
+                expected.sort(null);
+
+                List<Double> found = new ArrayList<>();
+                boolean[] seen = new boolean[envelopes.length];
+                for (int item = cursor.next(); item >= 0; item = cursor.next()) {
+                    int id = (int) tree.id(item);
+                    assertFalse(seen[id], "item returned twice");
+                    seen[id] = true;
+                    found.add(cursor.distance());
+                }
+                assertEquals(expected, found);
+            }
+        }
+    }
+
+    @Test
+    void emptyTreeFindsNothing() throws IOException {
+        try (PackedRTree tree = write("empty.jsix", new Envelope[0])) {
+            assertEquals(0, tree.size());
+            assertEquals(0, tree.getWatermark());
+            tree.query(new Envelope(-1e9, 1e9, -1e9, 1e9), item -> {
+                throw new AssertionError("found " + item);
+            });
+            assertEquals(-1, tree.nearest((minX, minY, maxX, maxY) -> 0).next());
+            assertEquals(-1, tree.find(1));
+        }
+    }
+
+    @Test
+    void duplicateIdsAreRejected() throws IOException {
+        Path file = directory.resolve("duplicates.jsix");
+        byte[] wkb = new WKBWriter(2).write(point(1, 1));
+        try (PackedRTree.Writer writer = PackedRTree.writer(file)) {
+            writer.add(5, new Envelope(1, 1, 1, 1), wkb, 0);
+            writer.add(5, new Envelope(1, 1, 1, 1), wkb, 0);
+            assertThrows(IllegalStateException.class, writer::finish);
+        }
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void unfinishedAndForeignFilesAreNotOpened() throws IOException {
+        Path file = directory.resolve("unfinished.jsix");
+        try (PackedRTree.Writer writer = PackedRTree.writer(file)) {
+            writer.add(1, new Envelope(1, 1, 1, 1), new WKBWriter(2).write(point(1, 1)), 0);
+        }
+        assertFalse(Files.exists(file));
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count(), "the temporary file is removed");
+        }
+
+        Path foreign = directory.resolve("foreign.jsix");
+        byte[] bytes = new byte[256];
+        Arrays.fill(bytes, (byte) 1);
+        Files.write(foreign, bytes);
+        assertThrows(IOException.class, () -> PackedRTree.open(foreign));
+    }
+
+    private PackedRTree write(String name, Envelope[] envelopes) throws IOException {
+        byte[] wkb = new WKBWriter(2).write(point(0, 0));
+        try (PackedRTree.Writer writer = PackedRTree.writer(directory.resolve(name))) {
+            for (int i = 0; i < envelopes.length; i++) {
+                writer.add(i, envelopes[i], wkb, i);
+            }
+            return writer.finish();
+        }
+    }
+
+    /**
+     * Points and small boxes, some clustered on a few locations.
+     */
+    private Envelope[] randomBoxes(int n) {
+        Envelope[] envelopes = new Envelope[n];
+        for (int i = 0; i < n; i++) {
+            double x = i % 10 == 0 ? 500 : random.nextDouble() * 1000;
+            double y = i % 10 == 0 ? 500 : random.nextDouble() * 1000;
+            double size = i % 3 == 0 ? 0 : random.nextDouble() * 20;
+            envelopes[i] = new Envelope(x, x + size, y, y + size);
+        }
+        return envelopes;
+    }
+
+    private Point point(double x, double y) {
+        return geometryFactory.createPoint(new Coordinate(x, y));
+    }
+
+    private static double boxDistance(double x, double y, double minX, double minY, double maxX, double maxY) {
+        double dx = Math.max(0, Math.max(minX - x, x - maxX));
+        double dy = Math.max(0, Math.max(minY - y, y - maxY));
+        return Math.hypot(dx, dy);
+    }
+}
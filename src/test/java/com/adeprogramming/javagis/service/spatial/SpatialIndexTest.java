@@ -0,0 +1,287 @@
+package com.adeprogramming.javagis.service.spatial;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.io.WKBWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Builds an index from a table of points, writes it out, reopens the snapshot after the table
+ * changed, and compares envelope and nearest queries with a brute-force scan of the table after
+ * each step.
+ */
+class SpatialIndexTest {
+
+    @TempDir
+    Path directory;
+
+    private final Random random = new Random(17);
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+    private final Table table = new Table();
+    private ScheduledThreadPoolExecutor worker;
+
+    @BeforeEach
+    void startWorker() {
+        worker = newWorker();
+    }
+
+    @AfterEach
+    void stopWorker() {
+        worker.shutdownNow();
+    }
+
+    @Test
+    void loadsFromSourceAndAppliesChanges() throws Exception {
+        for (long id = 1; id <= 2000; id++) {
+            table.put(id, randomPoint(), 1_000);
+        }
+        SpatialIndex index = new SpatialIndex("stations", directory, 10_000, worker);
+        index.load(table);
+        assertTrue(index.isReady());
+        assertEquals(1, table.fullReads);
+        assertMatchesTable(index);
+
+        for (int i = 0; i < 300; i++) {
+            long id = 1 + random.nextInt(2500);
+            if (random.nextInt(4) == 0) {
+                table.remove(id);
+                index.remove(id);
+            } else {
+                Point point = table.put(id, randomPoint(), 2_000 + i);
+                index.upsert(id, point, 2_000 + i);
+            }
+        }
+        assertMatchesTable(index);
+    }
+
+    @Test
+    void reopenedSnapshotCatchesUpWithTheTable() throws Exception {
+        for (long id = 1; id <= 3000; id++) {
+            table.put(id, randomPoint(), 1_000 + id);
+        }
+        new SpatialIndex("stations", directory, 10_000, worker).load(table);
+        drain();
+        assertEquals(1, snapshots().size());
+
+        // Changed while the application was down: moved, deleted and new stations
+        long modified = 100_000;
+        for (long id = 1; id <= 3000; id += 7) {
+            table.put(id, randomPoint(), modified++);
+        }
+        for (long id = 3; id <= 3000; id += 11) {
+            table.remove(id);
+        }
+        for (long id = 5000; id < 5100; id++) {
+            table.put(id, randomPoint(), modified++);
+        }
+
+        worker = newWorker();
+        SpatialIndex reopened = new SpatialIndex("stations", directory, 10_000, worker);
+        reopened.load(table);
+        assertEquals(1, table.fullReads, "the snapshot is reused");
+        assertMatchesTable(reopened);
+
+        // The caught-up state is written back and replaces the old snapshot
+        drain();
+        List<Path> files = snapshots();
+        assertEquals(1, files.size());
+        try (PackedRTree tree = PackedRTree.open(files.get(0))) {
+            assertEquals(table.rows.size(), tree.size());
+            assertEquals(modified - 1, tree.getWatermark());
+        }
+
+        worker = newWorker();
+        Table unchanged = table.copy();
+        SpatialIndex again = new SpatialIndex("stations", directory, 10_000, worker);
+        again.load(unchanged);
+        assertEquals(0, unchanged.changesFound);
+        assertMatchesTable(again);
+    }
+
+    @Test
+    void compactionKeepsChangesMadeWhileWriting() throws Exception {
+        for (long id = 1; id <= 500; id++) {
+            table.put(id, randomPoint(), 1_000);
+        }
+        SpatialIndex index = new SpatialIndex("stations", directory, 50, worker);
+        index.load(table);
+        for (int i = 0; i < 1000; i++) {
+            long id = 1 + random.nextInt(700);
+            if (random.nextInt(5) == 0) {
+                table.remove(id);
+                index.remove(id);
+            } else {
+                Point point = table.put(id, randomPoint(), 2_000 + i);
+                index.upsert(id, point, 2_000 + i);
+            }
+        }
+        assertMatchesTable(index);
+        drain();
+        assertMatchesTable(index);
+        assertEquals(1, snapshots().size(), "replaced snapshots are deleted");
+    }
+
+    @Test
+    void unreadableSnapshotIsSkipped() throws Exception {
+        for (long id = 1; id <= 100; id++) {
+            table.put(id, randomPoint(), 1_000);
+        }
+        new SpatialIndex("stations", directory, 10_000, worker).load(table);
+        drain();
+        Files.write(directory.resolve("stations-" + Long.MAX_VALUE + ".jsix"), new byte[]{1, 2, 3});
+
+        worker = newWorker();
+        SpatialIndex reopened = new SpatialIndex("stations", directory, 10_000, worker);
+        reopened.load(table);
+        assertEquals(1, table.fullReads);
+        assertMatchesTable(reopened);
+    }
+
+    private void assertMatchesTable(SpatialIndex index) {
+        assertEquals(table.rows.size(), index.size());
+        for (int q = 0; q < 100; q++) {
+            double x = random.nextDouble() * 1000;
+            double y = random.nextDouble() * 1000;
+            Envelope search = new Envelope(x, x + random.nextDouble() * 150, y, y + random.nextDouble() * 150);
+            List<Long> found = new ArrayList<>(index.query(search, geometry -> true));
+            found.sort(null);
+            List<Long> expected = new ArrayList<>();
+            for (Map.Entry<Long, Point> row : table.rows.entrySet()) {
+                if (search.intersects(row.getValue().getEnvelopeInternal())) {
+                    expected.add(row.getKey());
+                }
+            }
+            assertEquals(expected, found);
+
+            Point query = geometryFactory.createPoint(new Coordinate(x, y));
+            double maxDistance = q % 2 == 0 ? Double.POSITIVE_INFINITY : 80;
+            SpatialIndex.NearestCursor cursor = index.nearest(new SpatialIndex.Distance() {
+                @Override
+                public double distance(Geometry geometry) {
+                    return query.distance(geometry);
+                }
+
+                @Override
+                public double distance(double minX, double minY, double maxX, double maxY) {
+                    return Math.hypot(Math.max(0, Math.max(minX - x, x - maxX)),
+                            Math.max(0, Math.max(minY - y, y - maxY)));
+                }
+            }, maxDistance);
+            List<Double> distances = new ArrayList<>();
+            for (Point point : table.rows.values()) {
+                if (query.distance(point) <= maxDistance) {
+                    distances.add(query.distance(point));
+                }
+            }
+            distances.sort(null);
+            // The nearest ten, or every one within the radius
+            int k = maxDistance == Double.POSITIVE_INFINITY ? Math.min(10, distances.size()) : distances.size();
+            for (int i = 0; i < k; i++) {
+                SpatialIndex.Neighbour neighbour = cursor.next();
+                assertEquals(distances.get(i), neighbour.distance(), 1e-9);
+                assertEquals(neighbour.distance(), query.distance(table.rows.get(neighbour.id())), 1e-9);
+            }
+            if (maxDistance != Double.POSITIVE_INFINITY) {
+                assertEquals(null, cursor.next());
+            }
+        }
+    }
+
+    private void drain() throws InterruptedException {
+        worker.shutdown();
+        assertTrue(worker.awaitTermination(30, TimeUnit.SECONDS));
+    }
+
+    private List<Path> snapshots() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".jsix")).toList();
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor newWorker() {
+        ScheduledThreadPoolExecutor worker = new ScheduledThreadPoolExecutor(1);
+        // Files replaced during a test are left open rather than closed after a delay
+        worker.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        return worker;
+    }
+
+    private Point randomPoint() {
+        return geometryFactory.createPoint(new Coordinate(random.nextDouble() * 1000, random.nextDouble() * 1000));
+    }
+
+    /**
+     * A stations table in memory, read the way the service reads PostGIS: rows modified after
+     * the watermark, and ids merged with the sorted ids of the snapshot.
+     */
+    private final class Table implements SpatialIndex.Source {
+
+        final TreeMap<Long, Point> rows = new TreeMap<>();
+        final Map<Long, Long> modified = new TreeMap<>();
+        int fullReads;
+        int changesFound;
+
+        Point put(long id, Point point, long time) {
+            rows.put(id, point);
+            modified.put(id, time);
+            return point;
+        }
+
+        void remove(long id) {
+            rows.remove(id);
+            modified.remove(id);
+        }
+
+        Table copy() {
+            Table copy = new Table();
+            copy.rows.putAll(rows);
+            copy.modified.putAll(modified);
+            return copy;
+        }
+
+        @Override
+        public void writeAll(PackedRTree.Writer writer) throws IOException {
+            fullReads++;
+            WKBWriter wkbWriter = new WKBWriter(2);
+            for (Map.Entry<Long, Point> row : rows.entrySet()) {
+                writer.add(row.getKey(), row.getValue().getEnvelopeInternal(), wkbWriter.write(row.getValue()),
+                        modified.get(row.getKey()));
+            }
+        }
+
+        @Override
+        public void readChanges(PackedRTree snapshot, SpatialIndex.Changes changes) {
+            for (Map.Entry<Long, Point> row : rows.entrySet()) {
+                if (modified.get(row.getKey()) > snapshot.getWatermark() || snapshot.find(row.getKey()) < 0) {
+                    changes.upsert(row.getKey(), row.getValue(), modified.get(row.getKey()));
+                }
+            }
+            for (int k = 0; k < snapshot.size(); k++) {
+                if (!rows.containsKey(snapshot.sortedId(k))) {
+                    changes.remove(snapshot.sortedId(k));
+                }
+            }
+            changesFound = changes.size();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.adeprogramming.javagis.service.spatial.imports;
+
+import com.adeprogramming.javagis.service.agricultural.imports.FieldColumn;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks the mapping of shapefile-style attributes, with truncated names and dBase value types,
+ * to field columns.
+ */
+class AttributeMappingTest {
+
+    @Test
+    void defaultAttributesIgnoreCase() {
+        Object[] values = AttributeMapping.parse(FieldColumn.class, null).map(attributes(
+                "PARCEL_ID", 1017.0,
+                "Curr_Crop", "Winter wheat ",
+                "PLANTING_D", Date.from(LocalDate.of(2024, 10, 2).atStartOfDay().toInstant(ZoneOffset.UTC)),
+                "HARVEST_DA", "2025-07-20",
+                "STATUS", "fallow"));
+
+        assertEquals("1017", values[FieldColumn.FIELD_ID.ordinal()]);
+        assertNull(values[FieldColumn.NAME.ordinal()]);
+        assertEquals("Winter wheat", values[FieldColumn.CURRENT_CROP.ordinal()]);
+        assertEquals(LocalDate.of(2024, 10, 2), values[FieldColumn.PLANTING_DATE.ordinal()]);
+        assertEquals(LocalDate.of(2025, 7, 20), values[FieldColumn.EXPECTED_HARVEST_DATE.ordinal()]);
+        assertEquals("FALLOW", values[FieldColumn.STATUS.ordinal()]);
+        assertNull(values[FieldColumn.SOIL_TYPE.ordinal()]);
+    }
+
+    @Test
+    void explicitMappingOverridesDefaults() {
+        AttributeMapping<FieldColumn> mapping = AttributeMapping.parse(FieldColumn.class, "field_id:FLIK, current_crop:KULTUR");
+        Object[] values = mapping.map(attributes("ID", "ignored", "FLIK", "DENILI0123456789", "KULTUR", 115L,
+                "NAME", "North field", "SPRAY_DATE", "20240612"));
+
+        assertEquals("DENILI0123456789", values[FieldColumn.FIELD_ID.ordinal()]);
+        assertEquals("North field", values[FieldColumn.NAME.ordinal()]);
+        assertEquals("115", values[FieldColumn.CURRENT_CROP.ordinal()]);
+        assertEquals(LocalDate.of(2024, 6, 12), values[FieldColumn.LAST_SPRAY_DATE.ordinal()]);
+    }
+
+    @Test
+    void invalidValuesAreRejected() {
+        AttributeMapping<FieldColumn> mapping = AttributeMapping.parse(FieldColumn.class, null);
+        assertThrows(IllegalArgumentException.class, () -> mapping.map(attributes("ID", "1", "STATUS", "sold")));
+        assertThrows(IllegalArgumentException.class, () -> mapping.map(attributes("ID", "1", "PLANTED", "2 May")));
+        assertThrows(IllegalArgumentException.class, () -> AttributeMapping.parse(FieldColumn.class, "acreage:HA"));
+        assertThrows(IllegalArgumentException.class, () -> AttributeMapping.parse(FieldColumn.class, "field_id"));
+        assertThrows(IllegalArgumentException.class,
+                () -> AttributeMapping.parse(FieldColumn.class, "name:A,name:B"));
+    }
+
+    private static Map<String, Object> attributes(Object... namesAndValues) {
+        Map<String, Object> attributes = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            attributes.put((String) namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return attributes;
+    }
+}
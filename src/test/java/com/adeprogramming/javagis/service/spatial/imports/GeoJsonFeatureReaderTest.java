@@ -0,0 +1,215 @@
+package com.adeprogramming.javagis.service.spatial.imports;
+
+import com.adeprogramming.javagis.service.agricultural.imports.FieldColumn;
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Checks the geometries built from the token stream for every GeoJSON type, the CRS a collection
+ * declares, feature IDs and properties, and that a malformed geometry only fails its feature
+ * while malformed JSON ends the file.
+ */
+class GeoJsonFeatureReaderTest {
+
+    private static final CoordinateReferenceSystem ETRS89_LAEA = mock(CoordinateReferenceSystem.class);
+
+    private final WKTReader wktReader = new WKTReader();
+
+    @Test
+    void everyGeometryTypeIsBuilt() throws IOException, ParseException {
+        List<ImportFeature> features = readAll(collection(
+                feature("{\"type\":\"Point\",\"coordinates\":[1.5,2.5,100]}"),
+                feature("{\"type\":\"MultiPoint\",\"coordinates\":[[1,2],[3,4]]}"),
+                feature("{\"type\":\"LineString\",\"coordinates\":[[0,0],[1,1],[2,0]]}"),
+                feature("{\"type\":\"MultiLineString\",\"coordinates\":[[[0,0],[1,1]],[[2,2],[3,3]]]}"),
+                feature("{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[10,0],[10,10],[0,10],[0,0]]," +
+                        "[[2,2],[2,4],[4,4],[4,2],[2,2]]]}"),
+                feature("{\"type\":\"MultiPolygon\",\"coordinates\":[[[[0,0],[1,0],[1,1],[0,0]]]," +
+                        "[[[5,5],[6,5],[6,6],[5,5]]]]}"),
+                feature("{\"type\":\"GeometryCollection\",\"geometries\":[" +
+                        "{\"type\":\"Point\",\"coordinates\":[1,2]}," +
+                        "{\"type\":\"GeometryCollection\",\"geometries\":[" +
+                        "{\"type\":\"LineString\",\"coordinates\":[[0,0],[1,1]]}]}]}"),
+                // The type may follow the coordinates
+                feature("{\"coordinates\":[[7,8],[9,10]],\"type\":\"LineString\"}"),
+                feature("{\"type\":\"Polygon\",\"coordinates\":[]}"),
+                feature("null")));
+
+        List<String> expected = List.of(
+                "POINT (1.5 2.5)",
+                "MULTIPOINT ((1 2), (3 4))",
+                "LINESTRING (0 0, 1 1, 2 0)",
+                "MULTILINESTRING ((0 0, 1 1), (2 2, 3 3))",
+                "POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0), (2 2, 2 4, 4 4, 4 2, 2 2))",
+                "MULTIPOLYGON (((0 0, 1 0, 1 1, 0 0)), ((5 5, 6 5, 6 6, 5 5)))",
+                "GEOMETRYCOLLECTION (POINT (1 2), GEOMETRYCOLLECTION (LINESTRING (0 0, 1 1)))",
+                "LINESTRING (7 8, 9 10)",
+                "POLYGON EMPTY");
+        assertEquals(expected.size() + 1, features.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Geometry geometry = features.get(i).geometry();
+            assertNull(features.get(i).error(), features.get(i).reference());
+            assertTrue(wktReader.read(expected.get(i)).equalsExact(geometry), expected.get(i) + " != " + geometry);
+        }
+        assertNull(features.get(expected.size()).geometry());
+        assertNull(features.get(expected.size()).error());
+    }
+
+    @Test
+    void declaredCrsIsLookedUp() throws IOException {
+        List<Integer> requested = new ArrayList<>();
+        String json = "{\"type\":\"FeatureCollection\",\"crs\":{\"type\":\"name\"," +
+                "\"properties\":{\"name\":\"urn:ogc:def:crs:EPSG::3035\"}},\"features\":[" +
+                feature("{\"type\":\"Point\",\"coordinates\":[4321000,3210000]}") + "]}";
+        try (GeoJsonFeatureReader reader = new GeoJsonFeatureReader(stream(json), code -> {
+            requested.add(code);
+            return ETRS89_LAEA;
+        }, null)) {
+            assertSame(ETRS89_LAEA, reader.getCrs());
+            assertEquals(4321000, reader.next().geometry().getCoordinate().x);
+        }
+        assertEquals(List.of(3035), requested);
+    }
+
+    @Test
+    void defaultCrsAppliesWithoutDeclaration() throws IOException {
+        try (GeoJsonFeatureReader reader = new GeoJsonFeatureReader(stream(collection()), code -> {
+            throw new AssertionError("nothing declared");
+        }, ETRS89_LAEA)) {
+            assertSame(ETRS89_LAEA, reader.getCrs());
+            assertNull(reader.next());
+        }
+        try (GeoJsonFeatureReader reader = new GeoJsonFeatureReader(stream(collection()), code -> null, null)) {
+            assertNull(reader.getCrs(), "WGS 84");
+        }
+    }
+
+    @Test
+    void unknownCrsIsRejected() {
+        String json = "{\"type\":\"FeatureCollection\",\"crs\":{\"type\":\"name\"," +
+                "\"properties\":{\"name\":\"EPSG:999999\"}},\"features\":[]}";
+        assertThrows(IllegalArgumentException.class, () -> new GeoJsonFeatureReader(stream(json), code -> {
+            throw new IllegalArgumentException("Unknown EPSG code " + code);
+        }, null));
+    }
+
+    @Test
+    void featureIdIsTheBusinessIdUnlessAPropertyNamesOne() throws IOException {
+        AttributeMapping<FieldColumn> mapping = AttributeMapping.parse(FieldColumn.class, null);
+        List<ImportFeature> features = readAll(collection(
+                "{\"type\":\"Feature\",\"id\":\"F-1\",\"geometry\":null,\"properties\":{\"name\":\"North\"}}",
+                "{\"type\":\"Feature\",\"id\":17,\"geometry\":null,\"properties\":{\"field_id\":\"F-2\"}}",
+                "{\"type\":\"Feature\",\"id\":\"F-3\",\"geometry\":null,\"properties\":{\"ID\":\"F-30\"}}",
+                "{\"type\":\"Feature\",\"geometry\":null,\"properties\":{\"name\":\"Without ID\"}}"));
+
+        assertEquals("F-1", mapping.map(features.get(0).attributes())[FieldColumn.FIELD_ID.ordinal()]);
+        assertEquals("North", mapping.map(features.get(0).attributes())[FieldColumn.NAME.ordinal()]);
+        assertEquals("F-2", mapping.map(features.get(1).attributes())[FieldColumn.FIELD_ID.ordinal()]);
+        assertEquals("F-30", mapping.map(features.get(2).attributes())[FieldColumn.FIELD_ID.ordinal()],
+                "a property named id wins over the feature id");
+        assertNull(mapping.map(features.get(3).attributes())[FieldColumn.FIELD_ID.ordinal()]);
+
+        assertEquals("feature 1 (F-1)", features.get(0).reference());
+        assertEquals("feature 2 (17)", features.get(1).reference());
+        assertEquals("feature 4", features.get(3).reference());
+    }
+
+    @Test
+    void propertiesKeepTheirJsonTypes() throws IOException {
+        ImportFeature feature = readAll(collection("{\"type\":\"Feature\",\"geometry\":null,\"properties\":" +
+                "{\"text\":\"a\",\"count\":3,\"area\":1.25,\"organic\":true,\"owner\":null," +
+                "\"tags\":[\"x\",\"y\"],\"soil\":{\"ph\":6.5}}}")).get(0);
+
+        assertEquals("a", feature.attributes().get("TEXT"), "looked up ignoring case");
+        assertEquals(3, ((Number) feature.attributes().get("count")).intValue());
+        assertEquals(1.25, feature.attributes().get("area"));
+        assertEquals(true, feature.attributes().get("organic"));
+        assertTrue(feature.attributes().containsKey("owner"));
+        assertNull(feature.attributes().get("owner"));
+        assertEquals("[\"x\",\"y\"]", feature.attributes().get("tags"));
+        assertEquals("{\"ph\":6.5}", feature.attributes().get("soil"));
+    }
+
+    @Test
+    void malformedGeometriesOnlyFailTheirFeature() throws IOException {
+        List<ImportFeature> features = readAll(collection(
+                feature("{\"type\":\"Point\",\"coordinates\":[\"a\",2]}"),
+                feature("{\"type\":\"Point\",\"coordinates\":[1]}"),
+                feature("{\"type\":\"LineString\",\"coordinates\":[[0,0],[1]]}"),
+                feature("{\"type\":\"LineString\",\"coordinates\":[[0,0]]}"),
+                feature("{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[1,0],[1,1],[0,1]]]}"),
+                feature("{\"type\":\"Polygon\",\"coordinates\":[[0,0],[1,0],[1,1],[0,0]]}"),
+                feature("{\"type\":\"Curve\",\"coordinates\":[[0,0],[1,1]]}"),
+                feature("{\"coordinates\":[1,2]}"),
+                feature("{\"type\":\"GeometryCollection\"}"),
+                feature("{\"type\":\"Point\",\"coordinates\":[3,4]}")));
+
+        assertEquals(10, features.size());
+        for (ImportFeature feature : features.subList(0, 9)) {
+            assertNull(feature.geometry(), feature.reference());
+            assertNotNull(feature.error(), feature.reference());
+            assertTrue(feature.error().startsWith("Malformed geometry: "), feature.error());
+        }
+        assertTrue(features.get(4).error().contains("closed"), features.get(4).error());
+        assertEquals("POINT (3 4)", features.get(9).geometry().toText(), "reading goes on");
+    }
+
+    @Test
+    void truncatedJsonFailsCleanly() throws IOException {
+        String json = "{\"type\":\"FeatureCollection\",\"features\":[" +
+                feature("{\"type\":\"Point\",\"coordinates\":[1,2]}") +
+                ",{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[1,";
+        GeoJsonFeatureReader reader = new GeoJsonFeatureReader(stream(json), code -> null, null);
+        assertEquals("POINT (1 2)", reader.next().geometry().toText());
+        assertThrows(IOException.class, reader::next);
+        reader.close();
+
+        assertThrows(IOException.class, () -> new GeoJsonFeatureReader(
+                stream("{\"type\":\"FeatureCollection\",\"feat"), code -> null, null));
+        assertThrows(IOException.class, () -> new GeoJsonFeatureReader(
+                stream("{\"type\":\"Feature\",\"geometry\":null}"), code -> null, null));
+        assertThrows(IOException.class, () -> new GeoJsonFeatureReader(stream("[]"), code -> null, null));
+    }
+
+    private static List<ImportFeature> readAll(String json) throws IOException {
+        List<ImportFeature> features = new ArrayList<>();
+        try (GeoJsonFeatureReader reader = new GeoJsonFeatureReader(stream(json), code -> null, null)) {
+            assertEquals(-1, reader.getFeatureCount());
+            ImportFeature feature;
+            while ((feature = reader.next()) != null) {
+                features.add(feature);
+            }
+            assertNull(reader.next(), "stays at the end");
+        }
+        return features;
+    }
+
+    private static String collection(String... features) {
+        return "{\"type\":\"FeatureCollection\",\"features\":[" + String.join(",", features) + "]}";
+    }
+
+    private static String feature(String geometry) {
+        return "{\"type\":\"Feature\",\"properties\":{},\"geometry\":" + geometry + "}";
+    }
+
+    private static ByteArrayInputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,308 @@
+package com.adeprogramming.javagis.service.spatial.imports;
+
+import com.adeprogramming.javagis.config.CrsRegistry;
+import com.adeprogramming.javagis.model.agricultural.AgriculturalField;
+import com.adeprogramming.javagis.payload.spatial.ImportResponse;
+import com.adeprogramming.javagis.service.agricultural.imports.FieldColumn;
+import com.adeprogramming.javagis.service.agricultural.imports.FieldImportTarget;
+import com.adeprogramming.javagis.service.spatial.CoordinateTransformService;
+import com.adeprogramming.javagis.service.spatial.SpatialIndexService;
+import org.geotools.api.data.SimpleFeatureStore;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.CRS;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.WKBReader;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Writes shapefiles in ETRS89-LAEA with GeoTools and reads them back: extraction of zip archives,
+ * the CRS of the {@code .prj} file, the attribute encoding of the {@code .cpg} file, and a whole
+ * import that reprojects fields to WGS 84, maps their attributes and reports bad features on
+ * their own.
+ */
+class ShapefileFeatureReaderTest {
+
+    private static final CrsRegistry REGISTRY = CrsRegistry.load(CrsRegistry.DEFAULT_RESOURCE);
+    private static final CoordinateReferenceSystem LAEA = REGISTRY.get(3035);
+    private static final Date PLANTED = Date.from(LocalDate.of(2024, 4, 15).atStartOfDay().toInstant(ZoneOffset.UTC));
+
+    // 13.4 E 52.5 N in EPSG:3035
+    private static final double EASTING = 4551801.973;
+    private static final double NORTHING = 3271028.983;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+    private final CoordinateTransformService coordinateTransformService =
+            new CoordinateTransformService(REGISTRY, 1, 16384);
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void tearDown() {
+        coordinateTransformService.shutdown();
+    }
+
+    @Test
+    void zippedShapefileIsExtractedAndRemovedOnClose() throws Exception {
+        Path archive = zip("fields.zip", writeShapefile(directory.resolve("export"), "fields", StandardCharsets.UTF_8,
+                        new Object[]{square(0), "DEBBLI0000001", "Große Wiese", PLANTED, "wheat", "active"},
+                        new Object[]{square(200), "DEBBLI0000002", "Kleine Wiese", null, "rye", "fallow"}),
+                "export/", "__MACOSX/export/._fields.shp", "export/readme.txt");
+        Path work = directory.resolve("work");
+
+        try (ShapefileFeatureReader reader = new ShapefileFeatureReader(archive, work)) {
+            assertTrue(Files.isRegularFile(work.resolve("fields.shp")));
+            assertFalse(Files.exists(work.resolve("readme.txt")));
+            assertFalse(Files.exists(work.resolve("._fields.shp")));
+            assertEquals(2, reader.getFeatureCount());
+            assertTrue(CRS.equalsIgnoreMetadata(LAEA, reader.getCrs()));
+
+            ImportFeature first = reader.next();
+            assertEquals("record 1", first.reference());
+            assertNull(first.error());
+            assertEquals("DEBBLI0000001", first.attributes().get("flik"));
+            assertEquals("Große Wiese", first.attributes().get("Name"));
+            assertNotNull(first.attributes().get("PLANTED"));
+            assertEquals(10_000, first.geometry().getArea(), 1e-3);
+
+            ImportFeature second = reader.next();
+            assertEquals("record 2", second.reference());
+            assertEquals("Kleine Wiese", second.attributes().get("NAME"));
+            assertNull(second.attributes().get("PLANTED"));
+            assertNull(reader.next());
+        }
+        assertFalse(Files.exists(work));
+    }
+
+    @Test
+    void attributesAreDecodedWithTheCodePage() throws Exception {
+        Path shp = writeShapefile(directory, "fields", Charset.forName("windows-1252"),
+                new Object[]{square(0), "DEBBLI0000001", "Große Wiese – Nord", null, null, null});
+
+        Files.writeString(directory.resolve("fields.cpg"), "1252");
+        try (ShapefileFeatureReader reader = new ShapefileFeatureReader(shp, directory.resolve("unused"))) {
+            assertEquals("Große Wiese – Nord", reader.next().attributes().get("NAME"));
+        }
+
+        // Without a .cpg file the attributes are read as ISO-8859-1
+        Files.delete(directory.resolve("fields.cpg"));
+        try (ShapefileFeatureReader reader = new ShapefileFeatureReader(shp, directory.resolve("unused"))) {
+            assertEquals("Große Wiese \u0096 Nord", reader.next().attributes().get("NAME"));
+        }
+        assertTrue(Files.exists(shp));
+        assertFalse(Files.exists(directory.resolve("unused")));
+    }
+
+    @Test
+    void archivesMustHoldExactlyOneShapefile() throws Exception {
+        Path work = directory.resolve("work");
+        Files.delete(writeShapefile(directory.resolve("one"), "fields", StandardCharsets.UTF_8));
+        Path none = zip("none.zip", directory.resolve("one/fields.shp"), "data/", "data/readme.txt");
+        assertThrows(IllegalArgumentException.class, () -> new ShapefileFeatureReader(none, work));
+        assertFalse(Files.exists(work));
+
+        writeShapefile(directory.resolve("two"), "fields", StandardCharsets.UTF_8);
+        writeShapefile(directory.resolve("two"), "parcels", StandardCharsets.UTF_8);
+        Path two = zip("two.zip", directory.resolve("two/fields.shp"), "");
+        assertThrows(IllegalArgumentException.class, () -> new ShapefileFeatureReader(two, work));
+        assertFalse(Files.exists(work));
+
+        Path text = Files.writeString(directory.resolve("fields.txt"), "not a shapefile");
+        assertThrows(IllegalArgumentException.class, () -> new ShapefileFeatureReader(text, work));
+    }
+
+    @Test
+    void importReprojectsMapsAttributesAndReportsBadFeatures() throws Exception {
+        Path uploads = directory.resolve("uploads");
+        zip("fields.zip", writeShapefile(directory.resolve("export"), "fields", StandardCharsets.UTF_8,
+                new Object[]{square(0), "DEBBLI0000001", "Große Wiese", PLANTED, "wheat", "fallow"},
+                new Object[]{square(200), "", "No ID", null, null, null},
+                new Object[]{square(400), "DEBBLI0000003", null, null, null, "flooded"}), "");
+        Files.createDirectories(uploads);
+        Files.move(directory.resolve("fields.zip"), uploads.resolve("fields.zip"));
+
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        List<Object[]> written = new ArrayList<>();
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), any(int[].class))).thenAnswer(invocation -> {
+            // The service reuses its batch list
+            List<Object[]> rows = invocation.getArgument(1);
+            written.addAll(rows);
+            return new int[rows.size()];
+        });
+        FeatureImportService service = new FeatureImportService(jdbcTemplate, coordinateTransformService,
+                uploads, 2, 10);
+        FieldImportTarget target = new FieldImportTarget(mock(SpatialIndexService.class));
+
+        ImportResponse response;
+        try {
+            String id = service.importShapefile(target, "fields.zip", "field_id:FLIK").getId();
+            response = awaitFinished(service, target, id);
+        } finally {
+            service.shutdown();
+        }
+
+        assertEquals(ImportResponse.ImportStatus.COMPLETED, response.getStatus());
+        assertTrue(response.getSourceCrs().contains("3035") || response.getSourceCrs().contains("LAEA"),
+                response.getSourceCrs());
+        assertEquals(3, response.getTotal());
+        assertEquals(3, response.getProcessed());
+        assertEquals(1, response.getWritten());
+        assertEquals(2, response.getFailed());
+        assertEquals(List.of("record 2: No field ID", "record 3: Invalid status 'flooded'"), response.getErrors());
+
+        assertEquals(1, written.size());
+        Object[] row = written.get(0);
+        assertEquals("DEBBLI0000001", row[FieldColumn.FIELD_ID.ordinal()]);
+        assertEquals("Große Wiese", row[FieldColumn.NAME.ordinal()]);
+        assertEquals("wheat", row[FieldColumn.CURRENT_CROP.ordinal()]);
+        assertEquals(LocalDate.of(2024, 4, 15), row[FieldColumn.PLANTING_DATE.ordinal()]);
+        assertEquals(AgriculturalField.FieldStatus.FALLOW.name(), row[FieldColumn.STATUS.ordinal()]);
+        assertNull(row[FieldColumn.OWNER_NAME.ordinal()]);
+
+        int fixed = FieldColumn.values().length;
+        Geometry field = new WKBReader().read((byte[]) row[fixed]);
+        assertTrue(field.getEnvelopeInternal().getMinX() > 13.39 && field.getEnvelopeInternal().getMaxX() < 13.41,
+                field.toText());
+        assertTrue(Stream.of(field.getCoordinates()).anyMatch(corner ->
+                Math.abs(corner.x - 13.4) < 1e-6 && Math.abs(corner.y - 52.5) < 1e-6), field.toText());
+        // LAEA is equal-area, so the square of 100 m keeps its hectare
+        assertEquals(1.0, (double) row[fixed + 1], 1e-3);
+        assertEquals("shapefile:fields.zip", row[fixed + 3]);
+
+        try (Stream<Path> left = Files.list(uploads)) {
+            assertArrayEquals(new Path[]{uploads.resolve("fields.zip")}, left.toArray());
+        }
+    }
+
+    private static ImportResponse awaitFinished(FeatureImportService service, ImportTarget target, String id)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            ImportResponse response = service.getImport(target, id).orElseThrow();
+            if (response.getFinishedAt() != null) {
+                return response;
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("The import did not finish");
+    }
+
+    /**
+     * A square field of 100 m with its south-west corner the given distance east of 13.4 E 52.5 N.
+     */
+    private MultiPolygon square(double offset) {
+        double x = EASTING + offset;
+        Polygon polygon = geometryFactory.createPolygon(new Coordinate[]{
+                new Coordinate(x, NORTHING), new Coordinate(x, NORTHING + 100),
+                new Coordinate(x + 100, NORTHING + 100), new Coordinate(x + 100, NORTHING),
+                new Coordinate(x, NORTHING)});
+        return geometryFactory.createMultiPolygon(new Polygon[]{polygon});
+    }
+
+    /**
+     * Write a shapefile of fields without a {@code .cpg} file.
+     *
+     * @param rows the geometry, FLIK, NAME, PLANTED, CROP and STATUS of each field
+     * @return the {@code .shp} file
+     */
+    private static Path writeShapefile(Path directory, String name, Charset charset, Object[]... rows)
+            throws IOException {
+        Files.createDirectories(directory);
+        Path shp = directory.resolve(name + ".shp");
+
+        SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+        builder.setName(name);
+        builder.setCRS(LAEA);
+        builder.add("the_geom", MultiPolygon.class);
+        builder.length(20).add("FLIK", String.class);
+        builder.length(40).add("NAME", String.class);
+        builder.add("PLANTED", Date.class);
+        builder.length(20).add("CROP", String.class);
+        builder.length(20).add("STATUS", String.class);
+        SimpleFeatureType type = builder.buildFeatureType();
+
+        ShapefileDataStore store = new ShapefileDataStore(shp.toUri().toURL());
+        try {
+            store.setCharset(charset);
+            store.setTimeZone(TimeZone.getTimeZone("UTC"));
+            store.createSchema(type);
+            List<SimpleFeature> features = new ArrayList<>();
+            for (Object[] row : rows) {
+                features.add(SimpleFeatureBuilder.build(type, row, null));
+            }
+            ((SimpleFeatureStore) store.getFeatureSource()).addFeatures(DataUtilities.collection(features));
+        } finally {
+            store.dispose();
+        }
+        Files.deleteIfExists(directory.resolve(name + ".cpg"));
+        return shp;
+    }
+
+    /**
+     * Zip the files of a shapefile's directory, with a prefix to their names, and add text entries.
+     *
+     * @return the archive, in the temporary directory
+     */
+    private Path zip(String fileName, Path shp, String prefix, String... textEntries) throws IOException {
+        Path archive = directory.resolve(fileName);
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(archive));
+             Stream<Path> files = Files.list(shp.getParent())) {
+            if (!prefix.isEmpty()) {
+                out.putNextEntry(new ZipEntry(prefix));
+                out.closeEntry();
+            }
+            for (Path file : files.sorted().toList()) {
+                out.putNextEntry(new ZipEntry(prefix + file.getFileName()));
+                Files.copy(file, out);
+                out.closeEntry();
+            }
+            for (String entry : textEntries) {
+                out.putNextEntry(new ZipEntry(entry));
+                out.write(entry.getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+        return archive;
+    }
+}
@@ -0,0 +1,169 @@
+package com.adeprogramming.javagis.stac;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark of the STAC asset endpoint under concurrent range reads, the access pattern of
+ * clients reading tiles of a cloud-optimised GeoTIFF. Each thread sends range requests for
+ * random offsets of the asset as fast as they are answered, and checks the status and length
+ * of every response. The benchmark runs twice, first with a single range per request, then with
+ * several ranges per request, answered as {@code multipart/byteranges}. The two are reported
+ * separately since only single ranges can use Tomcat's sendfile. The achieved request and byte
+ * rates are printed once per second, followed by latency percentiles of each run.
+ * <p>
+ * Usage: {@code AssetRangeBenchmark [assetUrl] [threads] [seconds] [rangeKiB] [rangesPerRequest]},
+ * where the seconds and the number of ranges apply to each run. The asset URL is an href of a
+ * satellite scene item, e.g. {@code http://localhost:8080/api/stac/assets/scenes/S2A_T32UPU_20240601}.
+ */
+public class AssetRangeBenchmark {
+
+    private static final int MAX_SAMPLES = 1 << 18;
+
+    public static void main(String[] args) throws Exception {
+        String assetUrl = args.length > 0 ? args[0] : "http://localhost:8080/api/stac/assets/scenes/scene";
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int rangeBytes = (args.length > 3 ? Integer.parseInt(args[3]) : 256) * 1024;
+        int rangesPerRequest = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+        if (rangesPerRequest < 2) {
+            System.err.println("The multi-range run needs at least 2 ranges per request");
+            return;
+        }
+
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        URI uri = URI.create(assetUrl);
+        HttpResponse<Void> head = client.send(HttpRequest.newBuilder(uri)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.discarding());
+        if (head.statusCode() != 200) {
+            System.err.println("HEAD " + assetUrl + " answered " + head.statusCode());
+            return;
+        }
+        long length = head.headers().firstValueAsLong("Content-Length").orElseThrow();
+        if (length < (long) rangeBytes * rangesPerRequest) {
+            System.err.printf("The asset has only %,d bytes%n", length);
+            return;
+        }
+        System.out.printf("Asset of %,d bytes, %d threads, ranges of %,d bytes%n", length, threads, rangeBytes);
+
+        String single = run(client, uri, length, threads, seconds, rangeBytes, 1);
+        String multiple = run(client, uri, length, threads, seconds, rangeBytes, rangesPerRequest);
+        System.out.println();
+        System.out.println("1 range per request: " + single);
+        System.out.println(rangesPerRequest + " ranges per request: " + multiple);
+    }
+
+    /**
+     * Send range requests from all threads for the given time, printing the rates once per second
+     * and the latency percentiles at the end.
+     *
+     * @return the overall request and byte rates
+     */
+    private static String run(HttpClient client, URI uri, long length, int threads, int seconds, int rangeBytes,
+                              int rangesPerRequest) throws InterruptedException {
+        System.out.printf("%n%d range%s per request for %d s%n", rangesPerRequest, rangesPerRequest > 1 ? "s" : "",
+                seconds);
+        AtomicLong requests = new AtomicLong();
+        AtomicLong bytes = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        long deadline = System.currentTimeMillis() + seconds * 1000L;
+        long[][] latencies = new long[threads][MAX_SAMPLES];
+        int[] samples = new int[threads];
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            long[] threadLatencies = latencies[i];
+            int index = i;
+            Thread worker = new Thread(() -> {
+                int count = 0;
+                while (System.currentTimeMillis() < deadline) {
+                    long start = System.nanoTime();
+                    long received = read(client, uri, length, rangeBytes, rangesPerRequest);
+                    if (received < 0) {
+                        errors.incrementAndGet();
+                        continue;
+                    }
+                    if (count < threadLatencies.length) {
+                        threadLatencies[count++] = System.nanoTime() - start;
+                    }
+                    requests.incrementAndGet();
+                    bytes.addAndGet(received);
+                }
+                samples[index] = count;
+            }, "range-" + i);
+            worker.start();
+            workers.add(worker);
+        }
+
+        long previousRequests = 0;
+        long previousBytes = 0;
+        while (System.currentTimeMillis() < deadline) {
+            Thread.sleep(1000);
+            long totalRequests = requests.get();
+            long totalBytes = bytes.get();
+            System.out.printf(Locale.ROOT, "%,d requests/s, %.1f MiB/s%n", totalRequests - previousRequests,
+                    (totalBytes - previousBytes) / 1048576.0);
+            previousRequests = totalRequests;
+            previousBytes = totalBytes;
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        long[] all = new long[Arrays.stream(samples).sum()];
+        int offset = 0;
+        for (int i = 0; i < threads; i++) {
+            System.arraycopy(latencies[i], 0, all, offset, samples[i]);
+            offset += samples[i];
+        }
+        Arrays.sort(all);
+        String rates = String.format(Locale.ROOT, "%,d requests in %d s (%,.0f requests/s, %.1f MiB/s), %,d errors",
+                requests.get(), seconds, requests.get() / (double) seconds,
+                bytes.get() / 1048576.0 / seconds, errors.get());
+        System.out.println(rates);
+        if (all.length > 0) {
+            System.out.printf(Locale.ROOT, "latency ms: p50 %.2f, p90 %.2f, p99 %.2f, max %.2f%n",
+                    percentile(all, 0.5), percentile(all, 0.9), percentile(all, 0.99), all[all.length - 1] / 1e6);
+        }
+        return rates;
+    }
+
+    /**
+     * @return the number of bytes received, -1 if the response was not the expected one
+     */
+    private static long read(HttpClient client, URI uri, long length, int rangeBytes, int rangesPerRequest) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // Ranges in separate slices of the file, so they are not merged
+        long slice = length / rangesPerRequest;
+        StringBuilder header = new StringBuilder("bytes=");
+        for (int i = 0; i < rangesPerRequest; i++) {
+            long start = i * slice + random.nextLong(slice - rangeBytes + 1);
+            header.append(i > 0 ? "," : "").append(start).append('-').append(start + rangeBytes - 1);
+        }
+        try {
+            HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(uri)
+                    .header("Range", header.toString()).build(), HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 206) {
+                return -1;
+            }
+            int body = response.body().length;
+            if (rangesPerRequest == 1 ? body != rangeBytes : body < (long) rangeBytes * rangesPerRequest) {
+                return -1;
+            }
+            return body;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(p * (sorted.length - 1)))] / 1e6;
+    }
+}
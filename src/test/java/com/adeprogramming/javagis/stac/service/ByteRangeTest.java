@@ -0,0 +1,55 @@
+package com.adeprogramming.javagis.stac.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the parsing of Range headers against a file of 1000 bytes.
+ */
+class ByteRangeTest {
+
+    private static final long LENGTH = 1000;
+
+    @Test
+    void singleRangesAreCutToTheFile() {
+        assertEquals(List.of(new ByteRange(0, 499)), parse("bytes=0-499"));
+        assertEquals(List.of(new ByteRange(900, 999)), parse("bytes=900-"));
+        assertEquals(List.of(new ByteRange(800, 999)), parse("bytes=-200"));
+        assertEquals(List.of(new ByteRange(0, 999)), parse("bytes=-5000"));
+        assertEquals(List.of(new ByteRange(990, 999)), parse("bytes=990-2000"));
+    }
+
+    @Test
+    void multipleRangesAreSortedAndMerged() {
+        assertEquals(List.of(new ByteRange(0, 9), new ByteRange(500, 599)), parse("bytes=500-599, 0-9"));
+        assertEquals(List.of(new ByteRange(0, 149)), parse("bytes=0-99,50-149"));
+        assertEquals(List.of(new ByteRange(0, 199)), parse("bytes=100-199,0-99"));
+    }
+
+    @Test
+    void rangesPastTheEndAreNotSatisfiable() {
+        assertEquals(List.of(), parse("bytes=1000-1099"));
+        assertEquals(List.of(), parse("bytes=-0"));
+        assertEquals(List.of(new ByteRange(0, 0)), parse("bytes=2000-,0-0"));
+    }
+
+    @Test
+    void malformedHeadersAreIgnored() {
+        assertTrue(ByteRange.parse("bytes=500-400", LENGTH, 10).isEmpty());
+        assertTrue(ByteRange.parse("bytes=a-b", LENGTH, 10).isEmpty());
+        assertTrue(ByteRange.parse("bytes=", LENGTH, 10).isEmpty());
+        assertTrue(ByteRange.parse("lines=0-9", LENGTH, 10).isEmpty());
+        assertTrue(ByteRange.parse("bytes=0-0,2-2,4-4", LENGTH, 2).isEmpty());
+    }
+
+    private static List<ByteRange> parse(String header) {
+        Optional<List<ByteRange>> ranges = ByteRange.parse(header, LENGTH, 10);
+        assertTrue(ranges.isPresent());
+        return ranges.get();
+    }
+}
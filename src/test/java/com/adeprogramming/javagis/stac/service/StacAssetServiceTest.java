@@ -0,0 +1,285 @@
+package com.adeprogramming.javagis.stac.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Serves a file of 1000 bytes to mock requests: whole, as one range, as {@code multipart/byteranges},
+ * with unsatisfiable ranges, under the conditional headers, for HEAD requests and through
+ * Tomcat's sendfile.
+ */
+class StacAssetServiceTest {
+
+    private static final int LENGTH = 1000;
+    private static final String CONTENT_TYPE = "image/tiff; application=geotiff; profile=cloud-optimized";
+    // The file is modified half a second after this; HTTP dates drop the fraction
+    private static final Instant MODIFIED = Instant.parse("2024-05-01T12:00:00Z");
+    private static final String ETAG = "\"3e8-" + Long.toHexString(MODIFIED.toEpochMilli()) + "\"";
+    private static final DateTimeFormatter HTTP_DATE =
+            DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+
+    @TempDir
+    Path directory;
+
+    private final StacAssetService service = new StacAssetService(100);
+    private final byte[] content = new byte[LENGTH];
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        new Random(50).nextBytes(content);
+        file = Files.write(directory.resolve("scene.tif"), content);
+        Files.setLastModifiedTime(file, FileTime.from(MODIFIED.plusMillis(500)));
+    }
+
+    @Test
+    void wholeFileIsSent() throws IOException {
+        MockHttpServletResponse response = serve(request("GET"));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT_TYPE, response.getContentType());
+        assertEquals(LENGTH, response.getContentLengthLong());
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals(ETAG, response.getHeader(HttpHeaders.ETAG));
+        assertEquals(httpDate(MODIFIED), response.getHeader(HttpHeaders.LAST_MODIFIED));
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void singleRangeIsPartialContent() throws IOException {
+        MockHttpServletRequest request = request("GET");
+        request.addHeader(HttpHeaders.RANGE, "bytes=100-199");
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals(CONTENT_TYPE, response.getContentType());
+        assertEquals("bytes 100-199/1000", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(100, response.getContentLengthLong());
+        assertArrayEquals(Arrays.copyOfRange(content, 100, 200), response.getContentAsByteArray());
+
+        request = request("GET");
+        request.addHeader(HttpHeaders.RANGE, "bytes=-10");
+        response = serve(request);
+        assertEquals("bytes 990-999/1000", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(content, 990, 1000), response.getContentAsByteArray());
+    }
+
+    @Test
+    void multipleRangesAreMultipart() throws IOException {
+        MockHttpServletRequest request = request("GET");
+        request.addHeader(HttpHeaders.RANGE, "bytes=500-509, 0-9, 995-");
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(206, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+        String contentType = response.getContentType();
+        assertTrue(contentType.startsWith("multipart/byteranges; boundary="), contentType);
+        String boundary = contentType.substring(contentType.indexOf('=') + 1);
+
+        byte[] body = response.getContentAsByteArray();
+        assertEquals(response.getContentLengthLong(), body.length);
+        // Each byte is one character in ISO-8859-1, so the parts can be cut out of the text
+        String text = new String(body, StandardCharsets.ISO_8859_1);
+        assertTrue(text.endsWith("\r\n--" + boundary + "--\r\n"));
+        String[] parts = text.substring(0, text.length() - ("--" + boundary + "--\r\n").length())
+                .split("\r\n--" + boundary + "\r\n", -1);
+        assertEquals("", parts[0]);
+        assertEquals(4, parts.length);
+
+        int[][] expected = {{0, 9}, {500, 509}, {995, 999}};
+        for (int i = 0; i < expected.length; i++) {
+            String part = parts[i + 1];
+            int bodyStart = part.indexOf("\r\n\r\n") + 4;
+            String headers = part.substring(0, bodyStart);
+            assertTrue(headers.contains(HttpHeaders.CONTENT_TYPE + ": " + CONTENT_TYPE + "\r\n"), headers);
+            assertTrue(headers.contains(HttpHeaders.CONTENT_RANGE + ": bytes " + expected[i][0] + "-"
+                    + expected[i][1] + "/1000\r\n"), headers);
+            // The last part keeps the CRLF that opens the closing delimiter
+            byte[] bytes = part.substring(bodyStart, part.length() - (i + 1 < expected.length ? 0 : 2))
+                    .getBytes(StandardCharsets.ISO_8859_1);
+            assertArrayEquals(Arrays.copyOfRange(content, expected[i][0], expected[i][1] + 1), bytes, "part " + i);
+        }
+    }
+
+    @Test
+    void unsatisfiableRangeIsRejected() throws IOException {
+        MockHttpServletRequest request = request("GET");
+        request.addHeader(HttpHeaders.RANGE, "bytes=1000-1999");
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */1000", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void malformedRangeIsIgnored() throws IOException {
+        MockHttpServletRequest request = request("GET");
+        request.addHeader(HttpHeaders.RANGE, "lines=1-2");
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void rangeOfAnotherVersionSendsTheWholeFile() throws IOException {
+        for (String ifRange : new String[]{"\"3e8-0\"", "W/" + ETAG, httpDate(MODIFIED.minusSeconds(60))}) {
+            MockHttpServletRequest request = request("GET");
+            request.addHeader(HttpHeaders.RANGE, "bytes=0-9");
+            request.addHeader(HttpHeaders.IF_RANGE, ifRange);
+            MockHttpServletResponse response = serve(request);
+
+            assertEquals(200, response.getStatus(), ifRange);
+            assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE), ifRange);
+            assertArrayEquals(content, response.getContentAsByteArray(), ifRange);
+        }
+
+        for (String ifRange : new String[]{ETAG, httpDate(MODIFIED)}) {
+            MockHttpServletRequest request = request("GET");
+            request.addHeader(HttpHeaders.RANGE, "bytes=0-9");
+            request.addHeader(HttpHeaders.IF_RANGE, ifRange);
+            MockHttpServletResponse response = serve(request);
+
+            assertEquals(206, response.getStatus(), ifRange);
+            assertEquals("bytes 0-9/1000", response.getHeader(HttpHeaders.CONTENT_RANGE), ifRange);
+        }
+    }
+
+    @Test
+    void conditionalRequestsAreAnswered() throws IOException {
+        assertConditional(304, HttpHeaders.IF_NONE_MATCH, ETAG);
+        assertConditional(304, HttpHeaders.IF_NONE_MATCH, "\"other\", W/" + ETAG);
+        assertConditional(304, HttpHeaders.IF_NONE_MATCH, "*");
+        assertConditional(200, HttpHeaders.IF_NONE_MATCH, "\"other\"");
+        assertConditional(304, HttpHeaders.IF_MODIFIED_SINCE, httpDate(MODIFIED));
+        assertConditional(200, HttpHeaders.IF_MODIFIED_SINCE, httpDate(MODIFIED.minusSeconds(1)));
+
+        assertConditional(412, HttpHeaders.IF_MATCH, "\"other\"");
+        // If-Match uses the strong comparison
+        assertConditional(412, HttpHeaders.IF_MATCH, "W/" + ETAG);
+        assertConditional(200, HttpHeaders.IF_MATCH, "\"other\", " + ETAG);
+        assertConditional(412, HttpHeaders.IF_UNMODIFIED_SINCE, httpDate(MODIFIED.minusSeconds(1)));
+        assertConditional(200, HttpHeaders.IF_UNMODIFIED_SINCE, httpDate(MODIFIED));
+    }
+
+    @Test
+    void headSendsNoBody() throws IOException {
+        MockHttpServletResponse response = serve(request("HEAD"));
+        assertEquals(200, response.getStatus());
+        assertEquals(LENGTH, response.getContentLengthLong());
+        assertEquals(0, response.getContentAsByteArray().length);
+
+        MockHttpServletRequest request = request("HEAD");
+        request.addHeader(HttpHeaders.RANGE, "bytes=100-199");
+        response = serve(request);
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 100-199/1000", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(100, response.getContentLengthLong());
+        assertEquals(0, response.getContentAsByteArray().length);
+
+        request = request("HEAD");
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-9,500-509");
+        response = serve(request);
+        assertEquals(206, response.getStatus());
+        assertTrue(response.getContentLengthLong() > 20);
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void sendfileIsUsedWhenTheConnectorSupportsIt() throws IOException {
+        MockHttpServletRequest request = sendfileRequest();
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(LENGTH, response.getContentLengthLong());
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(file.toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(0L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals((long) LENGTH, request.getAttribute("org.apache.tomcat.sendfile.end"));
+
+        request = sendfileRequest();
+        request.addHeader(HttpHeaders.RANGE, "bytes=100-199");
+        response = serve(request);
+        assertEquals(206, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+        // The end is exclusive
+        assertEquals(100L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(200L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+
+        // Multipart bodies are written by the service
+        request = sendfileRequest();
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-9,500-509");
+        response = serve(request);
+        assertEquals(response.getContentLengthLong(), response.getContentAsByteArray().length);
+        assertNull(request.getAttribute("org.apache.tomcat.sendfile.filename"));
+
+        // Nor is sendfile asked for a body that is not sent
+        request = sendfileRequest();
+        request.setMethod("HEAD");
+        serve(request);
+        assertNull(request.getAttribute("org.apache.tomcat.sendfile.filename"));
+    }
+
+    @Test
+    void missingFileFailsBeforeAnythingIsSent() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertThrows(NoSuchFileException.class, () -> service.serve(directory.resolve("missing.tif"), CONTENT_TYPE,
+                request("GET"), response));
+        assertTrue(response.getHeaderNames().isEmpty());
+    }
+
+    private void assertConditional(int status, String header, String value) throws IOException {
+        MockHttpServletRequest request = request("GET");
+        request.addHeader(header, value);
+        MockHttpServletResponse response = serve(request);
+
+        String message = header + ": " + value;
+        assertEquals(status, response.getStatus(), message);
+        assertEquals(ETAG, response.getHeader(HttpHeaders.ETAG), message);
+        assertEquals(status == 200 ? LENGTH : 0, response.getContentAsByteArray().length, message);
+    }
+
+    private MockHttpServletResponse serve(MockHttpServletRequest request) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        service.serve(file, CONTENT_TYPE, request, response);
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String method) {
+        return new MockHttpServletRequest(method, "/api/stac/assets/scene.tif");
+    }
+
+    private static MockHttpServletRequest sendfileRequest() {
+        MockHttpServletRequest request = request("GET");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        return request;
+    }
+
+    private static String httpDate(Instant instant) {
+        return HTTP_DATE.format(instant.atOffset(ZoneOffset.UTC));
+    }
+}